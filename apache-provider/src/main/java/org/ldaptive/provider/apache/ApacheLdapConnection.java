@@ -849,6 +849,7 @@ public class ApacheLdapConnection implements ProviderConnection
       request = sr;
       util = new ApacheLdapUtils(sr.getSortBehavior());
       util.setBinaryAttributes(sr.getBinaryAttributes());
+      util.setBinaryAttributeDetector(config.getBinaryAttributeDetector());
     }
 
 
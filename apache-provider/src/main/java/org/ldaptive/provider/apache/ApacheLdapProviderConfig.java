@@ -57,12 +57,16 @@ public class ApacheLdapProviderConfig extends ProviderConfig<Control>
   {
     return
       String.format(
-        "[%s@%d::operationExceptionResultCodes=%s, properties=%s, controlProcessor=%s, ldapConnectionConfig=%s]",
+        "[%s@%d::operationExceptionResultCodes=%s, properties=%s, controlProcessor=%s, " +
+        "binaryAttributeDetector=%s, concurrentConnectAttempts=%s, connectAttemptDelay=%s, ldapConnectionConfig=%s]",
         getClass().getName(),
         hashCode(),
         Arrays.toString(getOperationExceptionResultCodes()),
         getProperties(),
         getControlProcessor(),
+        getBinaryAttributeDetector(),
+        getConcurrentConnectAttempts(),
+        getConnectAttemptDelay(),
         connectionConfig);
   }
 }
@@ -22,6 +22,7 @@ import org.ldaptive.LdapEntry;
 import org.ldaptive.SearchEntry;
 import org.ldaptive.SortBehavior;
 import org.ldaptive.control.ResponseControl;
+import org.ldaptive.schema.BinaryAttributeDetector;
 
 /**
  * Provides methods for converting between Apache Ldap specific objects and ldaptive specific objects.
@@ -37,6 +38,9 @@ public class ApacheLdapUtils
   /** Attributes that should be treated as binary. */
   private List<String> binaryAttrs;
 
+  /** Detects binary attributes from the schema. */
+  private BinaryAttributeDetector binaryAttrDetector;
+
 
   /** Default constructor. */
   public ApacheLdapUtils()
@@ -80,6 +84,29 @@ public class ApacheLdapUtils
   }
 
 
+  /**
+   * Returns the binary attribute detector.
+   *
+   * @return  binary attribute detector
+   */
+  public BinaryAttributeDetector getBinaryAttributeDetector()
+  {
+    return binaryAttrDetector;
+  }
+
+
+  /**
+   * Sets the binary attribute detector. Attributes it reports as binary are treated as binary in addition to the list
+   * of binary attributes.
+   *
+   * @param  detector  binary attribute detector
+   */
+  public void setBinaryAttributeDetector(final BinaryAttributeDetector detector)
+  {
+    binaryAttrDetector = detector;
+  }
+
+
   /**
    * Returns an apache ldap value for the supplied object.
    *
@@ -136,6 +163,8 @@ public class ApacheLdapUtils
       isBinary = true;
     } else if (binaryAttrs != null && binaryAttrs.contains(a.getUpId())) {
       isBinary = true;
+    } else if (binaryAttrDetector != null && binaryAttrDetector.isBinary(a.getUpId())) {
+      isBinary = true;
     }
 
     final LdapAttribute la = new LdapAttribute(sortBehavior, isBinary);
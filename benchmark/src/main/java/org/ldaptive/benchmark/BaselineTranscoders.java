@@ -0,0 +1,350 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.benchmark;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringTokenizer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.ldaptive.LdapUtils;
+
+/**
+ * Regular expression and buffer based transcoders that ldaptive 1.2.4 used for generalized time, file time, SIDs and
+ * GUIDs. Benchmarks compare these with the current implementations.
+ *
+ * @author  Middleware Services
+ */
+public final class BaselineTranscoders
+{
+
+  /** Generalized time format regular expression. */
+  private static final Pattern TIME_REGEX = Pattern.compile(
+    "(\\d{4})((?:\\x30[\\x31-\\x39])|(?:\\x31[\\x30-\\x32]))" +
+    "((?:\\x30[\\x31-\\x39])|(?:[\\x31-\\x32][\\x30-\\x39])|(?:\\x33[\\x30-\\x31]))" +
+    "((?:[\\x30-\\x31][\\x30-\\x39])|(?:\\x32[\\x30-\\x33]))" +
+    "([\\x30-\\x35][\\x30-\\x39])?([\\x30-\\x35][\\x30-\\x39])?" +
+    "([,.](\\d+))?(Z|(?:[+-]((?:[\\x30-\\x31][\\x30-\\x39])|(?:\\x32[\\x30-\\x33]))([\\x30-\\x35][\\x30-\\x39])?))");
+
+  /** Date format. */
+  private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyyMMddHHmmss.SSS'Z'");
+
+  /** Number of milliseconds between standard Unix era (1/1/1970) and filetime start (1/1/1601). */
+  private static final long ERA_OFFSET = 11644473600000L;
+
+  /** File time uses 100-nanosecond intervals. */
+  private static final long ONE_HUNDRED_NANOSECOND_INTERVAL = 10000L;
+
+  /** Default constructor. */
+  private BaselineTranscoders() {}
+
+
+  /**
+   * Parses a generalized time with a regular expression.
+   *
+   * @param  value  generalized time
+   *
+   * @return  date time
+   */
+  public static ZonedDateTime decodeGeneralizedTime(final String value)
+  {
+    final Matcher m = TIME_REGEX.matcher(value);
+    if (!m.matches()) {
+      throw new IllegalArgumentException("Invalid generalized time string.");
+    }
+
+    // CheckStyle:MagicNumber OFF
+    final ZoneId zoneId;
+    final String tzString = m.group(9);
+    if ("Z".equals(tzString)) {
+      zoneId = ZoneOffset.UTC;
+    } else {
+      zoneId = ZoneId.of("GMT" + tzString);
+    }
+
+    final int year = Integer.parseInt(m.group(1));
+    final int month = Integer.parseInt(m.group(2));
+    final int dayOfMonth = Integer.parseInt(m.group(3));
+    final int hour = Integer.parseInt(m.group(4));
+    int scale = 3600000;
+    int minutes = 0;
+    if (m.group(5) != null) {
+      scale = 60000;
+      minutes = Integer.parseInt(m.group(5));
+    }
+    int seconds = 0;
+    if (m.group(6) != null) {
+      scale = 1000;
+      seconds = Integer.parseInt(m.group(6));
+    }
+    int millis = 0;
+    if (m.group(7) != null) {
+      millis = (int) (Double.parseDouble('.' + m.group(8)) * scale);
+    }
+    // CheckStyle:MagicNumber ON
+
+    return ZonedDateTime.of(
+      LocalDateTime.of(year, month, dayOfMonth, hour, minutes, seconds).plus(millis, ChronoUnit.MILLIS), zoneId);
+  }
+
+
+  /**
+   * Formats a generalized time with a date time formatter.
+   *
+   * @param  value  date time
+   *
+   * @return  generalized time
+   */
+  public static String encodeGeneralizedTime(final ZonedDateTime value)
+  {
+    if (value.getZone().normalized().equals(ZoneOffset.UTC)) {
+      return value.format(DATE_FORMAT);
+    } else {
+      return value.withZoneSameInstant(ZoneOffset.UTC).format(DATE_FORMAT);
+    }
+  }
+
+
+  /**
+   * Parses a file time.
+   *
+   * @param  value  file time
+   *
+   * @return  date time
+   */
+  public static ZonedDateTime decodeFileTime(final String value)
+  {
+    final Instant i = Instant.ofEpochMilli(Long.parseLong(value) / ONE_HUNDRED_NANOSECOND_INTERVAL - ERA_OFFSET);
+    return ZonedDateTime.ofInstant(i, ZoneId.of("Z"));
+  }
+
+
+  /**
+   * Formats a file time.
+   *
+   * @param  value  date time
+   *
+   * @return  file time
+   */
+  public static String encodeFileTime(final ZonedDateTime value)
+  {
+    return String.valueOf((value.toInstant().toEpochMilli() + ERA_OFFSET) * ONE_HUNDRED_NANOSECOND_INTERVAL);
+  }
+
+
+  /**
+   * Converts a binary SID to it's string format with a byte buffer.
+   *
+   * @param  sid  to convert
+   *
+   * @return  string format of the SID
+   */
+  public static String sidToString(final byte[] sid)
+  {
+    // CheckStyle:MagicNumber OFF
+    final ByteBuffer sidBuffer = ByteBuffer.wrap(sid);
+    final StringBuilder sb = new StringBuilder("S");
+    sb.append("-").append(sidBuffer.get() & 0xFF);
+    final int countSubAuth = sidBuffer.get() & 0xFF;
+    sidBuffer.limit(8);
+    sb.append("-").append(getLong(sidBuffer, true));
+    for (int i = 0; i < countSubAuth; i++) {
+      sidBuffer.limit(sidBuffer.position() + 4);
+      sb.append("-").append(getLong(sidBuffer, false));
+    }
+    return sb.toString();
+    // CheckStyle:MagicNumber ON
+  }
+
+
+  /**
+   * Converts a string SID to it's binary format with a tokenizer and byte buffer.
+   *
+   * @param  sid  to convert
+   *
+   * @return  binary format of the SID
+   */
+  public static byte[] sidToBytes(final String sid)
+  {
+    // CheckStyle:MagicNumber OFF
+    final StringTokenizer st = new StringTokenizer(sid, "-");
+    st.nextToken();
+    final int revision = Integer.valueOf(st.nextToken());
+    final long authority = Long.valueOf(st.nextToken());
+    final List<String> subAuthorities = new ArrayList<>();
+    while (st.hasMoreTokens()) {
+      subAuthorities.add(st.nextToken());
+    }
+    final ByteBuffer sidBuffer = ByteBuffer.allocate(8 + (4 * subAuthorities.size()));
+    sidBuffer.put((byte) (revision & 0xFF));
+    sidBuffer.put((byte) (subAuthorities.size() & 0xFF));
+    sidBuffer.limit(8);
+    putLong(sidBuffer, authority, true);
+    for (String subAuthority : subAuthorities) {
+      sidBuffer.limit(sidBuffer.position() + 4);
+      putLong(sidBuffer, Long.valueOf(subAuthority), false);
+    }
+    return sidBuffer.array();
+    // CheckStyle:MagicNumber ON
+  }
+
+
+  /**
+   * Converts a binary GUID to it's string format with a byte buffer.
+   *
+   * @param  guid  to convert
+   *
+   * @return  string format of the GUID
+   */
+  public static String guidToString(final byte[] guid)
+  {
+    // CheckStyle:MagicNumber OFF
+    final ByteBuffer guidBuffer = ByteBuffer.wrap(guid);
+    final StringBuilder sb = new StringBuilder("{");
+    guidBuffer.limit(4);
+    sb.append(LdapUtils.hexEncode(getBytes(guidBuffer, true)));
+    guidBuffer.limit(6);
+    sb.append("-").append(LdapUtils.hexEncode(getBytes(guidBuffer, true)));
+    guidBuffer.limit(8);
+    sb.append("-").append(LdapUtils.hexEncode(getBytes(guidBuffer, true)));
+    guidBuffer.limit(10);
+    sb.append("-").append(LdapUtils.hexEncode(getBytes(guidBuffer, false)));
+    guidBuffer.limit(guidBuffer.capacity());
+    sb.append("-").append(LdapUtils.hexEncode(getBytes(guidBuffer, false)));
+    sb.append("}");
+    return sb.toString();
+    // CheckStyle:MagicNumber ON
+  }
+
+
+  /**
+   * Converts a string GUID to it's binary format with a tokenizer and byte buffer.
+   *
+   * @param  guid  to convert
+   *
+   * @return  binary format of the GUID
+   */
+  public static byte[] guidToBytes(final String guid)
+  {
+    // CheckStyle:MagicNumber OFF
+    final StringTokenizer st = new StringTokenizer(guid.substring(1, guid.length() - 1), "-");
+    final ByteBuffer guidBuffer = ByteBuffer.allocate(16);
+    putBytes(guidBuffer, LdapUtils.hexDecode(st.nextToken().toCharArray()), true);
+    putBytes(guidBuffer, LdapUtils.hexDecode(st.nextToken().toCharArray()), true);
+    putBytes(guidBuffer, LdapUtils.hexDecode(st.nextToken().toCharArray()), true);
+    putBytes(guidBuffer, LdapUtils.hexDecode(st.nextToken().toCharArray()), false);
+    putBytes(guidBuffer, LdapUtils.hexDecode(st.nextToken().toCharArray()), false);
+    return guidBuffer.array();
+    // CheckStyle:MagicNumber ON
+  }
+
+
+  /**
+   * Reads a long from the supplied byte buffer.
+   *
+   * @param  buffer  to read from
+   * @param  bigEndian  whether the bytes are big endian
+   *
+   * @return  long value
+   */
+  private static long getLong(final ByteBuffer buffer, final boolean bigEndian)
+  {
+    // CheckStyle:MagicNumber OFF
+    long value = buffer.get() & 0xFF;
+    if (bigEndian) {
+      while (buffer.hasRemaining()) {
+        value <<= Byte.SIZE;
+        value |= buffer.get() & 0xFF;
+      }
+    } else {
+      int offset = Byte.SIZE;
+      while (buffer.hasRemaining()) {
+        value |= (buffer.get() & 0xFF) << offset;
+        offset += Byte.SIZE;
+      }
+    }
+    return value & 0xFFFFFFFFL;
+    // CheckStyle:MagicNumber ON
+  }
+
+
+  /**
+   * Writes a long into the supplied byte buffer.
+   *
+   * @param  buffer  to write to
+   * @param  value  to write
+   * @param  bigEndian  whether to write the bytes big endian
+   */
+  private static void putLong(final ByteBuffer buffer, final long value, final boolean bigEndian)
+  {
+    // CheckStyle:MagicNumber OFF
+    if (bigEndian) {
+      int offset = Byte.SIZE * (buffer.limit() - buffer.position() - 1);
+      while (buffer.hasRemaining()) {
+        buffer.put((byte) ((value >> offset) & 0xFF));
+        offset -= Byte.SIZE;
+      }
+    } else {
+      int offset = 0;
+      while (buffer.hasRemaining()) {
+        buffer.put((byte) ((value >> offset) & 0xFF));
+        offset += Byte.SIZE;
+      }
+    }
+    // CheckStyle:MagicNumber ON
+  }
+
+
+  /**
+   * Reads bytes from the supplied byte buffer.
+   *
+   * @param  buffer  to read from
+   * @param  bigEndian  whether to return the bytes as big endian
+   *
+   * @return  bytes
+   */
+  private static byte[] getBytes(final ByteBuffer buffer, final boolean bigEndian)
+  {
+    final byte[] bytes = new byte[buffer.limit() - buffer.position()];
+    if (bigEndian) {
+      int offset = bytes.length - 1;
+      while (buffer.hasRemaining()) {
+        bytes[offset--] = buffer.get();
+      }
+    } else {
+      int offset = 0;
+      while (buffer.hasRemaining()) {
+        bytes[offset++] = buffer.get();
+      }
+    }
+    return bytes;
+  }
+
+
+  /**
+   * Writes bytes into the supplied byte buffer.
+   *
+   * @param  buffer  to write to
+   * @param  bytes  to write
+   * @param  bigEndian  whether to write the bytes big endian
+   */
+  private static void putBytes(final ByteBuffer buffer, final byte[] bytes, final boolean bigEndian)
+  {
+    if (bigEndian) {
+      for (int i = bytes.length - 1; i >= 0; i--) {
+        buffer.put(bytes[i]);
+      }
+    } else {
+      for (byte b : bytes) {
+        buffer.put(b);
+      }
+    }
+  }
+}
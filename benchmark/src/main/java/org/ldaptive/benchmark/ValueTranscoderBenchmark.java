@@ -0,0 +1,281 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.benchmark;
+
+import java.time.ZonedDateTime;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.ldaptive.ad.GlobalIdentifier;
+import org.ldaptive.ad.SecurityIdentifier;
+import org.ldaptive.ad.io.FileTimeValueTranscoder;
+import org.ldaptive.io.GeneralizedTimeValueTranscoder;
+import org.ldaptive.io.UUIDValueTranscoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the throughput of the value transcoders used for every value of common directory attributes, comparing each
+ * with the implementation in {@link BaselineTranscoders}. Build with -Pbenchmark and run with:
+ *
+ * <pre>
+   java -jar benchmark/target/benchmarks.jar ValueTranscoderBenchmark -prof gc
+ * </pre>
+ *
+ * @author  Middleware Services
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+public class ValueTranscoderBenchmark
+{
+
+  /** Generalized time values with and without fractions and offsets. */
+  private static final String[] GENERALIZED_TIMES = {
+    "20160517053150.193Z",
+    "20060928095056.142+0100",
+    "19970715174107.418-1030",
+    "201905271357.780Z",
+    "2008032123,504+0100",
+  };
+
+  /** File time values. */
+  private static final String[] FILE_TIMES = {
+    "131663340000000000",
+    "132223548000000000",
+    "130317732000000000",
+  };
+
+  /** String SIDs. */
+  private static final String[] SIDS = {
+    "S-1-5-21-1051162837-3568060411-1686669321-1105",
+    "S-1-5-21-1051162837-3568060411-1686669321-3173",
+    "S-1-5-18",
+  };
+
+  /** String GUIDs. */
+  private static final String[] GUIDS = {
+    "{B1DB3CCA-72BD-4F31-9EBF-C70CD44BDA32}",
+    "{0F0BF778-1C43-4D0C-82E6-BAD22D6AB646}",
+    "{36B403E2-BA7F-4A83-8049-B3CD202C7032}",
+  };
+
+  /** String UUIDs. */
+  private static final String[] UUIDS = {
+    "313def52-1e6b-102a-99ba-d6537704ad77",
+    "86641130-5f20-1031-8c17-394bb0fda920",
+    "7bb84c1c-1b19-102a-8e02-cbbda55d336d",
+  };
+
+  /** Generalized time transcoder. */
+  private final GeneralizedTimeValueTranscoder generalizedTime = new GeneralizedTimeValueTranscoder();
+
+  /** File time transcoder. */
+  private final FileTimeValueTranscoder fileTime = new FileTimeValueTranscoder();
+
+  /** UUID transcoder. */
+  private final UUIDValueTranscoder uuid = new UUIDValueTranscoder();
+
+  /** Decoded generalized times. */
+  private final ZonedDateTime[] dateTimes = new ZonedDateTime[GENERALIZED_TIMES.length];
+
+  /** Binary SIDs. */
+  private final byte[][] binarySids = new byte[SIDS.length][];
+
+  /** Binary GUIDs. */
+  private final byte[][] binaryGuids = new byte[GUIDS.length][];
+
+  /** Decoded UUIDs. */
+  private final UUID[] uuids = new UUID[UUIDS.length];
+
+
+  /** Creates a new value transcoder benchmark. */
+  public ValueTranscoderBenchmark()
+  {
+    for (int i = 0; i < GENERALIZED_TIMES.length; i++) {
+      dateTimes[i] = generalizedTime.decodeStringValue(GENERALIZED_TIMES[i]);
+    }
+    for (int i = 0; i < SIDS.length; i++) {
+      binarySids[i] = SecurityIdentifier.toBytes(SIDS[i]);
+    }
+    for (int i = 0; i < GUIDS.length; i++) {
+      binaryGuids[i] = GlobalIdentifier.toBytes(GUIDS[i]);
+    }
+    for (int i = 0; i < UUIDS.length; i++) {
+      uuids[i] = UUID.fromString(UUIDS[i]);
+    }
+  }
+
+
+  /**
+   * Decodes generalized times.
+   *
+   * @param  bh  consumes results
+   */
+  @Benchmark
+  public void decodeGeneralizedTime(final Blackhole bh)
+  {
+    for (String s : GENERALIZED_TIMES) {
+      bh.consume(generalizedTime.decodeStringValue(s));
+    }
+  }
+
+
+  /**
+   * Decodes generalized times with the baseline implementation.
+   *
+   * @param  bh  consumes results
+   */
+  @Benchmark
+  public void decodeGeneralizedTimeBaseline(final Blackhole bh)
+  {
+    for (String s : GENERALIZED_TIMES) {
+      bh.consume(BaselineTranscoders.decodeGeneralizedTime(s));
+    }
+  }
+
+
+  /**
+   * Encodes generalized times.
+   *
+   * @param  bh  consumes results
+   */
+  @Benchmark
+  public void encodeGeneralizedTime(final Blackhole bh)
+  {
+    for (ZonedDateTime d : dateTimes) {
+      bh.consume(generalizedTime.encodeStringValue(d));
+    }
+  }
+
+
+  /**
+   * Encodes generalized times with the baseline implementation.
+   *
+   * @param  bh  consumes results
+   */
+  @Benchmark
+  public void encodeGeneralizedTimeBaseline(final Blackhole bh)
+  {
+    for (ZonedDateTime d : dateTimes) {
+      bh.consume(BaselineTranscoders.encodeGeneralizedTime(d));
+    }
+  }
+
+
+  /**
+   * Decodes and encodes file times.
+   *
+   * @param  bh  consumes results
+   */
+  @Benchmark
+  public void transcodeFileTime(final Blackhole bh)
+  {
+    for (String s : FILE_TIMES) {
+      bh.consume(fileTime.encodeStringValue(fileTime.decodeStringValue(s)));
+    }
+  }
+
+
+  /**
+   * Decodes and encodes file times with the baseline implementation.
+   *
+   * @param  bh  consumes results
+   */
+  @Benchmark
+  public void transcodeFileTimeBaseline(final Blackhole bh)
+  {
+    for (String s : FILE_TIMES) {
+      bh.consume(BaselineTranscoders.encodeFileTime(BaselineTranscoders.decodeFileTime(s)));
+    }
+  }
+
+
+  /**
+   * Converts SIDs to strings and back.
+   *
+   * @param  bh  consumes results
+   */
+  @Benchmark
+  public void transcodeSid(final Blackhole bh)
+  {
+    for (byte[] b : binarySids) {
+      bh.consume(SecurityIdentifier.toBytes(SecurityIdentifier.toString(b)));
+    }
+  }
+
+
+  /**
+   * Converts SIDs to strings and back with the baseline implementation.
+   *
+   * @param  bh  consumes results
+   */
+  @Benchmark
+  public void transcodeSidBaseline(final Blackhole bh)
+  {
+    for (byte[] b : binarySids) {
+      bh.consume(BaselineTranscoders.sidToBytes(BaselineTranscoders.sidToString(b)));
+    }
+  }
+
+
+  /**
+   * Converts GUIDs to strings and back.
+   *
+   * @param  bh  consumes results
+   */
+  @Benchmark
+  public void transcodeGuid(final Blackhole bh)
+  {
+    for (byte[] b : binaryGuids) {
+      bh.consume(GlobalIdentifier.toBytes(GlobalIdentifier.toString(b)));
+    }
+  }
+
+
+  /**
+   * Converts GUIDs to strings and back with the baseline implementation.
+   *
+   * @param  bh  consumes results
+   */
+  @Benchmark
+  public void transcodeGuidBaseline(final Blackhole bh)
+  {
+    for (byte[] b : binaryGuids) {
+      bh.consume(BaselineTranscoders.guidToBytes(BaselineTranscoders.guidToString(b)));
+    }
+  }
+
+
+  /**
+   * Decodes and encodes UUIDs.
+   *
+   * @param  bh  consumes results
+   */
+  @Benchmark
+  public void transcodeUuid(final Blackhole bh)
+  {
+    for (UUID u : uuids) {
+      bh.consume(uuid.decodeStringValue(uuid.encodeStringValue(u)));
+    }
+  }
+
+
+  /**
+   * Decodes and encodes UUIDs with the JDK.
+   *
+   * @param  bh  consumes results
+   */
+  @Benchmark
+  public void transcodeUuidBaseline(final Blackhole bh)
+  {
+    for (UUID u : uuids) {
+      bh.consume(UUID.fromString(u.toString()));
+    }
+  }
+}
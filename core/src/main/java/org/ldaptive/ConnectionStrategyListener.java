@@ -0,0 +1,33 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive;
+
+import java.time.Duration;
+
+/**
+ * Interface for connection strategies that need to be notified of the outcome of each connection attempt made with the
+ * URLs they produce. Provider connection factories invoke these methods for connection strategies that implement this
+ * interface.
+ *
+ * @author  Middleware Services
+ */
+public interface ConnectionStrategyListener
+{
+
+
+  /**
+   * Invoked when a connection to the supplied URL has been established.
+   *
+   * @param  url  that was connected to
+   * @param  connectTime  time taken to establish the connection
+   */
+  void connectionSucceeded(String url, Duration connectTime);
+
+
+  /**
+   * Invoked when a connection to the supplied URL could not be established.
+   *
+   * @param  url  that could not be connected to
+   * @param  cause  of the failure
+   */
+  void connectionFailed(String url, Exception cause);
+}
@@ -2,13 +2,16 @@
 package org.ldaptive;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Hashtable;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
 import javax.naming.Context;
 import javax.naming.NamingEnumeration;
 import javax.naming.NamingException;
@@ -23,6 +26,12 @@ import org.slf4j.LoggerFactory;
  * DNS SRV connection strategy. Queries a DNS server for SRV records and uses those records to construct a list of URLs.
  * A time to live can be set to control how often the DNS server is consulted. See http://www.ietf.org/rfc/rfc2782.txt.
  *
+ * <p>Only the first lookup for a name is performed on the calling thread. Once a portion of the time to live has
+ * elapsed, see {@link #setRefreshAhead(double)}, the records are refreshed in the background while the cached records
+ * continue to be used. If a refresh fails the cached records are used until a later refresh succeeds, even if they have
+ * expired. Records are grouped by priority and weight on each refresh, every call to {@link
+ * #getLdapUrls(ConnectionFactoryMetadata)} performs a weighted random selection within each priority.</p>
+ *
  * @author  Middleware Services
  */
 public class DnsSrvConnectionStrategy implements ConnectionStrategy
@@ -37,17 +46,40 @@ public class DnsSrvConnectionStrategy implements ConnectionStrategy
   /** Default time to live for DNS results. Value is {@value}. */
   private static final long DEFAULT_TTL = 60L * 60L * 1000L;
 
+  /** Default portion of the time to live after which records are refreshed. Value is {@value}. */
+  private static final double DEFAULT_REFRESH_AHEAD = 0.75;
+
+  /** Time in milliseconds to wait before retrying a failed refresh. Value is {@value}. */
+  private static final long FAILED_REFRESH_INTERVAL = 5000L;
+
+  /** Executor used to refresh SRV records. */
+  private static final ExecutorService REFRESH_EXECUTOR = Executors.newCachedThreadPool(
+    r -> {
+      final Thread t = new Thread(r, "ldaptive-" + DnsSrvConnectionStrategy.class.getSimpleName());
+      t.setDaemon(true);
+      return t;
+    });
+
   /** Logger for this class. */
   protected final Logger logger = LoggerFactory.getLogger(getClass());
 
+  /** Lock used to serialize lookups performed on the calling thread. */
+  private final Object lookupLock = new Object();
+
+  /** Whether a background refresh is in progress. */
+  private final AtomicBoolean refreshing = new AtomicBoolean();
+
   /** JNDI environment. */
   private Map<String, Object> jndiEnv = new HashMap<>();
 
   /** Time to live for SRV records in milliseconds. */
   private long srvTtl;
 
+  /** Portion of the time to live after which records are refreshed. */
+  private double refreshAhead = DEFAULT_REFRESH_AHEAD;
+
   /** SRV records from the last DNS lookup. */
-  private List<SrvRecord> srvRecords;
+  private volatile Snapshot srvRecords;
 
 
   /** Creates a new DNS SRV connection strategy. */
@@ -129,6 +161,33 @@ public class DnsSrvConnectionStrategy implements ConnectionStrategy
   }
 
 
+  /**
+   * Returns the portion of the time to live after which SRV records are refreshed in the background.
+   *
+   * @return  refresh ahead ratio
+   */
+  public double getRefreshAhead()
+  {
+    return refreshAhead;
+  }
+
+
+  /**
+   * Sets the portion of the time to live after which SRV records are refreshed in the background. For example, a value
+   * of 0.75 with a time to live of one hour refreshes the records after 45 minutes. A value of 1 refreshes the records
+   * once they have expired.
+   *
+   * @param  ratio  between 0 and 1
+   */
+  public void setRefreshAhead(final double ratio)
+  {
+    if (ratio <= 0 || ratio > 1) {
+      throw new IllegalArgumentException("Refresh ahead must be greater than 0 and less than or equal to 1");
+    }
+    refreshAhead = ratio;
+  }
+
+
   /**
    * Returns a list of URLs retrieved from DNS SRV records. The LDAP URL in the supplied metadata can be a space
    * delimited list of DNS servers, each will be tried in order.
@@ -136,6 +195,9 @@ public class DnsSrvConnectionStrategy implements ConnectionStrategy
    * @param  metadata  which can be used to produce the URL list
    *
    * @return  list of URLs to attempt connections to
+   *
+   * @throws  IllegalArgumentException  if no SRV records have been retrieved for the supplied metadata and the DNS
+   * lookup fails
    */
   @Override
   public String[] getLdapUrls(final ConnectionFactoryMetadata metadata)
@@ -143,30 +205,128 @@ public class DnsSrvConnectionStrategy implements ConnectionStrategy
     if (metadata == null || metadata.getLdapUrl() == null) {
       return null;
     }
-    if (srvRecords == null ||
-        srvRecords.isEmpty() ||
-        System.currentTimeMillis() >= srvRecords.get(0).getExpirationTime()) {
-      try {
-        srvRecords = sortSrvRecords(retrieveDNSRecords(metadata.getLdapUrl(), jndiEnv, srvTtl));
-      } catch (NamingException e) {
-        throw new IllegalArgumentException("Could not retrieve DNS SRV record for " + metadata.getLdapUrl(), e);
+    Snapshot snapshot = srvRecords;
+    if (snapshot == null || !snapshot.name.equals(metadata.getLdapUrl())) {
+      snapshot = lookup(metadata.getLdapUrl());
+    } else {
+      final long now = System.currentTimeMillis();
+      if (now >= snapshot.refreshTime) {
+        refreshAsync(snapshot.name);
       }
-      if (srvRecords.isEmpty()) {
-        throw new IllegalArgumentException("No DNS SRV records found for " + metadata.getLdapUrl());
+      if (now >= snapshot.expirationTime) {
+        logger.debug("Using expired SRV records from internal cache: {}", snapshot);
+      } else {
+        logger.debug("Using SRV records from internal cache: {}", snapshot);
       }
-      logger.debug("Retrieved SRV records from DNS: {}", srvRecords);
-    } else {
-      logger.debug("Using SRV records from internal cache: {}", srvRecords);
     }
 
-    final String[] urls = new String[srvRecords.size()];
-    for (int i = 0; i < srvRecords.size(); i++) {
-      urls[i] = srvRecords.get(i).getLdapURL();
+    final List<SrvRecord> records = snapshot.select();
+    final String[] urls = new String[records.size()];
+    for (int i = 0; i < records.size(); i++) {
+      urls[i] = records.get(i).getLdapURL();
     }
     return urls;
   }
 
 
+  /**
+   * Retrieves the SRV records for the supplied name on the calling thread. Concurrent callers wait for a single lookup.
+   *
+   * @param  name  of the SRV records
+   *
+   * @return  SRV record snapshot
+   *
+   * @throws  IllegalArgumentException  if the DNS lookup fails or no records are found
+   */
+  private Snapshot lookup(final String name)
+  {
+    synchronized (lookupLock) {
+      Snapshot snapshot = srvRecords;
+      if (snapshot == null || !snapshot.name.equals(name)) {
+        try {
+          snapshot = createSnapshot(name);
+        } catch (NamingException e) {
+          throw new IllegalArgumentException("Could not retrieve DNS SRV record for " + name, e);
+        }
+        if (snapshot.size == 0) {
+          throw new IllegalArgumentException("No DNS SRV records found for " + name);
+        }
+        logger.debug("Retrieved SRV records from DNS: {}", snapshot);
+        srvRecords = snapshot;
+      }
+      return snapshot;
+    }
+  }
+
+
+  /**
+   * Refreshes the SRV records for the supplied name in the background. Only one refresh runs at a time.
+   *
+   * @param  name  of the SRV records
+   */
+  private void refreshAsync(final String name)
+  {
+    if (refreshing.compareAndSet(false, true)) {
+      REFRESH_EXECUTOR.execute(
+        () -> {
+          try {
+            refresh(name);
+          } finally {
+            refreshing.set(false);
+          }
+        });
+    }
+  }
+
+
+  /**
+   * Retrieves the SRV records for the supplied name and replaces the cached records. If the records cannot be retrieved
+   * the cached records are retained and another refresh is attempted after {@link #FAILED_REFRESH_INTERVAL}.
+   *
+   * @param  name  of the SRV records
+   */
+  protected void refresh(final String name)
+  {
+    Exception failure = null;
+    try {
+      final Snapshot snapshot = createSnapshot(name);
+      if (snapshot.size > 0) {
+        logger.debug("Refreshed SRV records from DNS: {}", snapshot);
+        srvRecords = snapshot;
+      } else {
+        failure = new NamingException("No DNS SRV records found for " + name);
+      }
+    } catch (NamingException | RuntimeException e) {
+      failure = e;
+    }
+    if (failure != null) {
+      logger.warn("Could not refresh DNS SRV records for {}, continuing to use cached records", name, failure);
+      final Snapshot current = srvRecords;
+      if (current != null && current.name.equals(name)) {
+        srvRecords = current.retryAfter(System.currentTimeMillis() + FAILED_REFRESH_INTERVAL);
+      }
+    }
+  }
+
+
+  /**
+   * Retrieves the SRV records for the supplied name and groups them for selection.
+   *
+   * @param  name  of the SRV records
+   *
+   * @return  SRV record snapshot
+   *
+   * @throws  NamingException  if the DNS record cannot be retrieved
+   */
+  private Snapshot createSnapshot(final String name)
+    throws NamingException
+  {
+    final long now = System.currentTimeMillis();
+    final List<SrvRecord> records = retrieveDNSRecords(name, jndiEnv, srvTtl);
+    return new Snapshot(name, records, now + (long) (srvTtl * refreshAhead), now + srvTtl);
+  }
+
+
   /**
    * Uses JNDI to retrieve the DNS SRV record from the supplied url. The supplied properties are passed into the JNDI
    * context.
@@ -231,56 +391,7 @@ public class DnsSrvConnectionStrategy implements ConnectionStrategy
    */
   protected List<SrvRecord> sortSrvRecords(final List<SrvRecord> records)
   {
-    // group records and order them by priority
-    final Map<Long, List<SrvRecord>> priorityRecords = new TreeMap<>();
-    for (SrvRecord record : records) {
-      final List<SrvRecord> priority;
-      if (!priorityRecords.containsKey(record.getPriority())) {
-        priority = new ArrayList<>();
-        priorityRecords.put(record.getPriority(), priority);
-      } else {
-        priority = priorityRecords.get(record.getPriority());
-      }
-      priority.add(record);
-    }
-
-    // order records by priority then by weight
-    // unweighted records are ordered last
-    final List<SrvRecord> sortedRecords = new ArrayList<>();
-    for (Map.Entry<Long, List<SrvRecord>> entry : priorityRecords.entrySet()) {
-      final Map<Long, SrvRecord> weighted = new HashMap<>();
-      final List<SrvRecord> unweighted = new ArrayList<>();
-      long totalWeight = 0;
-      for (SrvRecord record : entry.getValue()) {
-        if (record.getWeight() == 0) {
-          unweighted.add(record);
-        } else {
-          totalWeight += record.getWeight();
-          weighted.put(totalWeight, record);
-        }
-      }
-
-      while (!weighted.isEmpty()) {
-        SrvRecord record = null;
-        final Iterator<Long> i = weighted.keySet().iterator();
-        final long random = ThreadLocalRandom.current().nextLong(totalWeight + 1);
-        while (i.hasNext()) {
-          final Long weight = i.next();
-          if (weight >= random) {
-            record = weighted.get(weight);
-            totalWeight -= record.getWeight();
-            i.remove();
-            break;
-          }
-        }
-        sortedRecords.add(record);
-      }
-      if (!unweighted.isEmpty()) {
-        sortedRecords.addAll(unweighted);
-      }
-    }
-
-    return sortedRecords;
+    return new Snapshot(null, records, 0, 0).select();
   }
 
 
@@ -289,15 +400,202 @@ public class DnsSrvConnectionStrategy implements ConnectionStrategy
   {
     return
       String.format(
-        "[%s@%d::jndiEnv=%s, srvTtl=%s, srvRecords=%s]",
+        "[%s@%d::jndiEnv=%s, srvTtl=%s, refreshAhead=%s, srvRecords=%s]",
         getClass().getName(),
         hashCode(),
         jndiEnv,
         srvTtl,
+        refreshAhead,
         srvRecords);
   }
 
 
+  /** Immutable set of SRV records retrieved by a single DNS lookup, grouped by priority for weighted selection. */
+  private static final class Snapshot
+  {
+
+    /** Name the records were retrieved for. */
+    private final String name;
+
+    /** Records ordered by priority. */
+    private final PriorityGroup[] groups;
+
+    /** Total number of records. */
+    private final int size;
+
+    /** Time in milliseconds after which the records should be refreshed. */
+    private final long refreshTime;
+
+    /** Time in milliseconds after which the records have expired. */
+    private final long expirationTime;
+
+
+    /**
+     * Creates a new snapshot.
+     *
+     * @param  n  name the records were retrieved for
+     * @param  records  retrieved from DNS
+     * @param  refresh  time after which the records should be refreshed
+     * @param  expiration  time after which the records have expired
+     */
+    Snapshot(final String n, final List<SrvRecord> records, final long refresh, final long expiration)
+    {
+      name = n;
+      final Map<Long, List<SrvRecord>> priorityRecords = new TreeMap<>();
+      for (SrvRecord record : records) {
+        priorityRecords.computeIfAbsent(record.getPriority(), k -> new ArrayList<>()).add(record);
+      }
+      groups = new PriorityGroup[priorityRecords.size()];
+      int i = 0;
+      for (List<SrvRecord> group : priorityRecords.values()) {
+        groups[i++] = new PriorityGroup(group);
+      }
+      size = records.size();
+      refreshTime = refresh;
+      expirationTime = expiration;
+    }
+
+
+    /**
+     * Creates a new snapshot with the same records as the supplied snapshot.
+     *
+     * @param  snapshot  to copy records from
+     * @param  refresh  time after which the records should be refreshed
+     */
+    private Snapshot(final Snapshot snapshot, final long refresh)
+    {
+      name = snapshot.name;
+      groups = snapshot.groups;
+      size = snapshot.size;
+      refreshTime = refresh;
+      expirationTime = snapshot.expirationTime;
+    }
+
+
+    /**
+     * Returns a copy of this snapshot that should be refreshed at the supplied time.
+     *
+     * @param  time  after which the records should be refreshed
+     *
+     * @return  snapshot
+     */
+    Snapshot retryAfter(final long time)
+    {
+      return new Snapshot(this, time);
+    }
+
+
+    /**
+     * Returns the records ordered according to RFC 2782. Records with the lowest priority are first. Records with the
+     * same priority are arranged by weight with higher weights having a greater chance to be ordered first. Unweighted
+     * records are ordered last within their priority.
+     *
+     * @return  ordered records
+     */
+    List<SrvRecord> select()
+    {
+      final List<SrvRecord> ordered = new ArrayList<>(size);
+      for (PriorityGroup group : groups) {
+        group.select(ordered);
+      }
+      return ordered;
+    }
+
+
+    @Override
+    public String toString()
+    {
+      final List<SrvRecord> records = new ArrayList<>(size);
+      for (PriorityGroup group : groups) {
+        Collections.addAll(records, group.weighted);
+        Collections.addAll(records, group.unweighted);
+      }
+      return
+        String.format(
+          "[name=%s, refreshTime=%s, expirationTime=%s, records=%s]",
+          name,
+          refreshTime,
+          expirationTime,
+          records);
+    }
+  }
+
+
+  /** Records with the same priority and their precomputed weights. */
+  private static final class PriorityGroup
+  {
+
+    /** Records with a non-zero weight. */
+    private final SrvRecord[] weighted;
+
+    /** Weight of each weighted record. */
+    private final long[] weights;
+
+    /** Sum of all weights. */
+    private final long totalWeight;
+
+    /** Records with a zero weight. */
+    private final SrvRecord[] unweighted;
+
+
+    /**
+     * Creates a new priority group.
+     *
+     * @param  records  with the same priority
+     */
+    PriorityGroup(final List<SrvRecord> records)
+    {
+      final List<SrvRecord> w = new ArrayList<>(records.size());
+      final List<SrvRecord> u = new ArrayList<>(records.size());
+      for (SrvRecord record : records) {
+        if (record.getWeight() == 0) {
+          u.add(record);
+        } else {
+          w.add(record);
+        }
+      }
+      weighted = w.toArray(new SrvRecord[w.size()]);
+      unweighted = u.toArray(new SrvRecord[u.size()]);
+      weights = new long[weighted.length];
+      long total = 0;
+      for (int i = 0; i < weighted.length; i++) {
+        weights[i] = weighted[i].getWeight();
+        total += weights[i];
+      }
+      totalWeight = total;
+    }
+
+
+    /**
+     * Adds the records in this group to the supplied list. Each weighted record is chosen with a probability
+     * proportional to its weight among the records not yet chosen.
+     *
+     * @param  ordered  to add records to
+     */
+    void select(final List<SrvRecord> ordered)
+    {
+      if (weighted.length == 1) {
+        ordered.add(weighted[0]);
+      } else if (weighted.length > 1) {
+        final long[] remaining = weights.clone();
+        long total = totalWeight;
+        for (int n = 0; n < weighted.length; n++) {
+          final long random = ThreadLocalRandom.current().nextLong(total) + 1;
+          long sum = 0;
+          int i = -1;
+          while (sum < random) {
+            sum += remaining[++i];
+          }
+          ordered.add(weighted[i]);
+          total -= remaining[i];
+          remaining[i] = 0;
+        }
+      }
+      Collections.addAll(ordered, unweighted);
+    }
+  }
+
+
   /** SRV record. */
   protected static class SrvRecord
   {
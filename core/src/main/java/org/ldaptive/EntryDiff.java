@@ -0,0 +1,273 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.ldaptive.filter.StandardMatchingRule;
+import org.ldaptive.schema.AttributeType;
+import org.ldaptive.schema.Schema;
+
+/**
+ * Computes the attribute modifications needed to change one entry into another at the value level. Unlike {@link
+ * LdapEntry#computeModifications(LdapEntry, LdapEntry)}, which replaces every attribute that differs, only the values
+ * that were added or removed are modified, so a change to one value of a large multi-valued attribute produces a
+ * modification of one value. Values are compared by the hash of their normalized form, so the cost of comparing two
+ * attributes grows linearly with the number of values.
+ *
+ * <p>When a {@link Schema} is supplied, values are normalized with the equality rule of each attribute type, or of its
+ * superior types, if it is one of the {@link StandardMatchingRule}s; for example values of a caseIgnoreMatch attribute
+ * that differ only in case or whitespace are equal. Otherwise values are compared exactly, byte for byte.</p>
+ *
+ * @author  Middleware Services
+ */
+public class EntryDiff
+{
+
+  /** Maximum number of superior types to follow when resolving rules. */
+  private static final int MAX_SUPERIOR_DEPTH = 16;
+
+  /** Schema used to resolve matching rules. */
+  private final Schema schema;
+
+  /** Equality rules by lower case attribute name. */
+  private final Map<String, StandardMatchingRule> equalityRules = new ConcurrentHashMap<>();
+
+
+  /** Creates a new entry diff that compares values exactly. */
+  public EntryDiff()
+  {
+    this(null);
+  }
+
+
+  /**
+   * Creates a new entry diff.
+   *
+   * @param  s  schema used to resolve matching rules, may be null
+   */
+  public EntryDiff(final Schema s)
+  {
+    schema = s;
+  }
+
+
+  /**
+   * Returns the schema used to resolve matching rules.
+   *
+   * @return  schema or null
+   */
+  public Schema getSchema()
+  {
+    return schema;
+  }
+
+
+  /**
+   * Returns the attribute modifications needed to change the supplied target entry into the supplied source entry.
+   * Attributes missing from the target are added and attributes missing from the source are removed. For attributes in
+   * both, values missing from the source are deleted and values missing from the target are added, unless no value is
+   * kept, in which case the attribute is replaced.
+   *
+   * @param  source  ldap entry containing new data
+   * @param  target  ldap entry containing existing data
+   *
+   * @return  attribute modifications needed to change target into source or an empty array
+   */
+  public AttributeModification[] computeModifications(final LdapEntry source, final LdapEntry target)
+  {
+    final List<AttributeModification> mods = new ArrayList<>();
+    for (LdapAttribute sourceAttr : source.getAttributes()) {
+      final LdapAttribute targetAttr = target.getAttribute(sourceAttr.getName());
+      if (targetAttr == null || targetAttr.size() == 0) {
+        if (sourceAttr.size() > 0) {
+          mods.add(new AttributeModification(AttributeModificationType.ADD, sourceAttr));
+        }
+      } else if (sourceAttr.size() == 0) {
+        mods.add(new AttributeModification(AttributeModificationType.REMOVE, createAttribute(targetAttr, null)));
+      } else {
+        computeModifications(sourceAttr, targetAttr, mods);
+      }
+    }
+    for (LdapAttribute targetAttr : target.getAttributes()) {
+      if (targetAttr.size() > 0 && source.getAttribute(targetAttr.getName()) == null) {
+        mods.add(new AttributeModification(AttributeModificationType.REMOVE, createAttribute(targetAttr, null)));
+      }
+    }
+    return mods.toArray(new AttributeModification[mods.size()]);
+  }
+
+
+  /**
+   * Adds the modifications needed to change the values of the target attribute into the values of the source
+   * attribute.
+   *
+   * @param  source  attribute containing new values
+   * @param  target  attribute containing existing values
+   * @param  mods  to add modifications to
+   */
+  private void computeModifications(
+    final LdapAttribute source,
+    final LdapAttribute target,
+    final List<AttributeModification> mods)
+  {
+    final StandardMatchingRule rule = getEqualityRule(source.getName(false));
+    final boolean binary = source.isBinary() || target.isBinary();
+    final Map<Object, Object> targetValues = new LinkedHashMap<>(target.size() * 2);
+    for (Object value : getValues(target)) {
+      targetValues.putIfAbsent(createKey(rule, binary, value), value);
+    }
+    final Set<Object> sourceKeys = new HashSet<>(source.size() * 2);
+    final List<Object> sourceValues = new ArrayList<>(source.size());
+    final List<Object> added = new ArrayList<>();
+    for (Object value : getValues(source)) {
+      final Object key = createKey(rule, binary, value);
+      if (sourceKeys.add(key)) {
+        sourceValues.add(value);
+        if (!targetValues.containsKey(key)) {
+          added.add(value);
+        }
+      }
+    }
+    final List<Object> removed = new ArrayList<>();
+    for (Map.Entry<Object, Object> entry : targetValues.entrySet()) {
+      if (!sourceKeys.contains(entry.getKey())) {
+        removed.add(entry.getValue());
+      }
+    }
+    if (!added.isEmpty() && removed.size() == targetValues.size()) {
+      mods.add(
+        new AttributeModification(AttributeModificationType.REPLACE, createAttribute(source, sourceValues)));
+    } else {
+      if (!removed.isEmpty()) {
+        mods.add(new AttributeModification(AttributeModificationType.REMOVE, createAttribute(target, removed)));
+      }
+      if (!added.isEmpty()) {
+        mods.add(new AttributeModification(AttributeModificationType.ADD, createAttribute(source, added)));
+      }
+    }
+  }
+
+
+  /**
+   * Returns the equality rule for the supplied attribute.
+   *
+   * @param  name  of the attribute without options
+   *
+   * @return  equality rule, octet string if there is no schema or the schema does not define a supported rule
+   */
+  private StandardMatchingRule getEqualityRule(final String name)
+  {
+    if (schema == null) {
+      return StandardMatchingRule.OCTET_STRING;
+    }
+    return equalityRules.computeIfAbsent(name.toLowerCase(), this::resolveEqualityRule);
+  }
+
+
+  /**
+   * Resolves the equality rule for the supplied attribute from the schema, inheriting the rule from superior types.
+   *
+   * @param  name  of the attribute
+   *
+   * @return  equality rule
+   */
+  private StandardMatchingRule resolveEqualityRule(final String name)
+  {
+    String ruleName = null;
+    AttributeType type = schema.getAttributeType(name);
+    // guard against cycles in malformed schemas
+    for (int depth = 0; ruleName == null && type != null && depth < MAX_SUPERIOR_DEPTH; depth++) {
+      ruleName = type.getEqualityMatchingRule();
+      type = type.getSuperiorType() != null ? schema.getAttributeType(type.getSuperiorType()) : null;
+    }
+    final StandardMatchingRule rule = StandardMatchingRule.forEqualityName(ruleName);
+    return rule != null ? rule : StandardMatchingRule.OCTET_STRING;
+  }
+
+
+  /**
+   * Returns the values of the supplied attribute in their native type.
+   *
+   * @param  attr  to read values from
+   *
+   * @return  byte arrays if the attribute is binary, otherwise strings
+   */
+  private static Collection<?> getValues(final LdapAttribute attr)
+  {
+    return attr.isBinary() ? attr.getBinaryValues() : attr.getStringValues();
+  }
+
+
+  /**
+   * Returns an object whose equals and hashCode reflect the normalized form of the supplied value. Values that are not
+   * valid for the rule are compared exactly.
+   *
+   * @param  rule  equality rule
+   * @param  binary  whether either attribute being compared is binary
+   * @param  value  string or byte array
+   *
+   * @return  comparison key
+   */
+  private static Object createKey(final StandardMatchingRule rule, final boolean binary, final Object value)
+  {
+    final Object key;
+    if (rule == StandardMatchingRule.OCTET_STRING) {
+      if (binary) {
+        key = ByteBuffer.wrap(
+          value instanceof byte[] ? (byte[]) value : ((String) value).getBytes(StandardCharsets.UTF_8));
+      } else {
+        key = value;
+      }
+    } else {
+      final String s = value instanceof byte[] ? new String((byte[]) value, StandardCharsets.UTF_8) : (String) value;
+      String normalized;
+      try {
+        normalized = rule.normalize(s);
+      } catch (IllegalArgumentException e) {
+        normalized = s;
+      }
+      key = normalized;
+    }
+    return key;
+  }
+
+
+  /**
+   * Creates an attribute with the name and type of the supplied attribute and the supplied values.
+   *
+   * @param  attr  to copy the name and type of
+   * @param  values  of the new attribute or null for no values
+   *
+   * @return  ldap attribute
+   */
+  private static LdapAttribute createAttribute(final LdapAttribute attr, final List<Object> values)
+  {
+    final LdapAttribute la = new LdapAttribute(attr.isBinary());
+    la.setName(attr.getName());
+    if (values != null) {
+      for (Object value : values) {
+        if (value instanceof byte[]) {
+          la.addBinaryValue((byte[]) value);
+        } else {
+          la.addStringValue((String) value);
+        }
+      }
+    }
+    return la;
+  }
+
+
+  @Override
+  public String toString()
+  {
+    return String.format("[%s@%d::schema=%s]", getClass().getName(), hashCode(), schema);
+  }
+}
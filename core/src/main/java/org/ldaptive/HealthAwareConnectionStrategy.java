@@ -0,0 +1,611 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Connection strategy that tracks the health of each URL and orders URLs accordingly. After {@link
+ * #getFailureThreshold()} consecutive connection failures a URL is ejected: it is moved to the end of the URL list for
+ * the ejection time, which doubles on each subsequent ejection up to {@link #getMaxEjectionTime()}. Once the ejection
+ * time has elapsed the URL is returned to the available URLs for a trial connection; a successful connection resets its
+ * state. If {@link #startProbing(Duration)} is invoked, ejected URLs are also probed in the background with a TCP
+ * connection and reinstated as soon as the probe succeeds.
+ *
+ * <p>Available URLs are ordered by a weighted random selection that favors URLs with a lower exponentially weighted
+ * moving average (EWMA) latency. Only connect latency, the time the provider connection factory takes to establish a
+ * connection, is measured; the latency of operations on established connections is not. URLs without a latency sample
+ * are weighted as the fastest known URL so that they are sampled. Set {@link #setLatencyWeighted(boolean)} to
+ * false to keep the configured URL order instead.</p>
+ *
+ * @author  Middleware Services
+ */
+public class HealthAwareConnectionStrategy implements ConnectionStrategy, ConnectionStrategyListener
+{
+
+  /** Default failure threshold. */
+  public static final int DEFAULT_FAILURE_THRESHOLD = 1;
+
+  /** Default ejection time. */
+  public static final Duration DEFAULT_EJECTION_TIME = Duration.ofSeconds(10);
+
+  /** Default maximum ejection time. */
+  public static final Duration DEFAULT_MAX_EJECTION_TIME = Duration.ofMinutes(5);
+
+  /** Default EWMA smoothing factor. */
+  public static final double DEFAULT_SMOOTHING_FACTOR = 0.3;
+
+  /** Default probe timeout. */
+  public static final Duration DEFAULT_PROBE_TIMEOUT = Duration.ofSeconds(3);
+
+  /** Maximum exponent applied to the ejection time. */
+  private static final int MAX_BACKOFF_EXPONENT = 30;
+
+  /** Logger for this class. */
+  protected final Logger logger = LoggerFactory.getLogger(getClass());
+
+  /** Health of each URL. */
+  private final Map<String, UrlHealth> health = new ConcurrentHashMap<>();
+
+  /** Consecutive failures required to eject a URL. */
+  private int failureThreshold = DEFAULT_FAILURE_THRESHOLD;
+
+  /** Initial ejection time. */
+  private Duration ejectionTime = DEFAULT_EJECTION_TIME;
+
+  /** Maximum ejection time. */
+  private Duration maxEjectionTime = DEFAULT_MAX_EJECTION_TIME;
+
+  /** EWMA smoothing factor. */
+  private double smoothingFactor = DEFAULT_SMOOTHING_FACTOR;
+
+  /** Whether to order available URLs by latency. */
+  private boolean latencyWeighted = true;
+
+  /** Timeout for background probes. */
+  private Duration probeTimeout = DEFAULT_PROBE_TIMEOUT;
+
+  /** Executor for background probes. */
+  private ScheduledExecutorService probeExecutor;
+
+  /** Last URL string that was parsed. */
+  private volatile String lastLdapUrl;
+
+  /** URLs parsed from {@link #lastLdapUrl}. */
+  private volatile String[] lastUrls;
+
+
+  /**
+   * Returns the number of consecutive failures required to eject a URL.
+   *
+   * @return  failure threshold
+   */
+  public int getFailureThreshold()
+  {
+    return failureThreshold;
+  }
+
+
+  /**
+   * Sets the number of consecutive failures required to eject a URL.
+   *
+   * @param  i  failure threshold
+   */
+  public void setFailureThreshold(final int i)
+  {
+    if (i < 1) {
+      throw new IllegalArgumentException("Failure threshold must be greater than zero");
+    }
+    failureThreshold = i;
+  }
+
+
+  /**
+   * Returns the time a URL is ejected for on its first ejection.
+   *
+   * @return  ejection time
+   */
+  public Duration getEjectionTime()
+  {
+    return ejectionTime;
+  }
+
+
+  /**
+   * Sets the time a URL is ejected for on its first ejection.
+   *
+   * @param  time  ejection time
+   */
+  public void setEjectionTime(final Duration time)
+  {
+    if (time == null || time.isNegative()) {
+      throw new IllegalArgumentException("Ejection time cannot be null or negative");
+    }
+    ejectionTime = time;
+  }
+
+
+  /**
+   * Returns the maximum time a URL is ejected for.
+   *
+   * @return  maximum ejection time
+   */
+  public Duration getMaxEjectionTime()
+  {
+    return maxEjectionTime;
+  }
+
+
+  /**
+   * Sets the maximum time a URL is ejected for.
+   *
+   * @param  time  maximum ejection time
+   */
+  public void setMaxEjectionTime(final Duration time)
+  {
+    if (time == null || time.isNegative()) {
+      throw new IllegalArgumentException("Maximum ejection time cannot be null or negative");
+    }
+    maxEjectionTime = time;
+  }
+
+
+  /**
+   * Returns the weight given to each new latency sample.
+   *
+   * @return  EWMA smoothing factor
+   */
+  public double getSmoothingFactor()
+  {
+    return smoothingFactor;
+  }
+
+
+  /**
+   * Sets the weight given to each new latency sample. Must be greater than zero and less than or equal to one.
+   *
+   * @param  d  EWMA smoothing factor
+   */
+  public void setSmoothingFactor(final double d)
+  {
+    if (d <= 0 || d > 1) {
+      throw new IllegalArgumentException("Smoothing factor must be in the range (0, 1]");
+    }
+    smoothingFactor = d;
+  }
+
+
+  /**
+   * Returns whether available URLs are ordered by latency.
+   *
+   * @return  whether available URLs are ordered by latency
+   */
+  public boolean isLatencyWeighted()
+  {
+    return latencyWeighted;
+  }
+
+
+  /**
+   * Sets whether available URLs are ordered by latency.
+   *
+   * @param  b  whether available URLs are ordered by latency
+   */
+  public void setLatencyWeighted(final boolean b)
+  {
+    latencyWeighted = b;
+  }
+
+
+  /**
+   * Returns the timeout for background probes.
+   *
+   * @return  probe timeout
+   */
+  public Duration getProbeTimeout()
+  {
+    return probeTimeout;
+  }
+
+
+  /**
+   * Sets the timeout for background probes.
+   *
+   * @param  time  probe timeout
+   */
+  public void setProbeTimeout(final Duration time)
+  {
+    if (time == null || time.isNegative()) {
+      throw new IllegalArgumentException("Probe timeout cannot be null or negative");
+    }
+    probeTimeout = time;
+  }
+
+
+  /**
+   * Starts probing ejected URLs in the background on the supplied interval.
+   *
+   * @param  interval  between probes
+   */
+  public synchronized void startProbing(final Duration interval)
+  {
+    if (interval == null || interval.isNegative() || interval.isZero()) {
+      throw new IllegalArgumentException("Probe interval must be positive");
+    }
+    if (probeExecutor != null) {
+      throw new IllegalStateException("Probing has already been started");
+    }
+    probeExecutor = Executors.newSingleThreadScheduledExecutor(
+      r -> {
+        final Thread t = new Thread(r, "ldaptive-" + getClass().getSimpleName());
+        t.setDaemon(true);
+        return t;
+      });
+    probeExecutor.scheduleWithFixedDelay(
+      this::probeEjected,
+      interval.toMillis(),
+      interval.toMillis(),
+      TimeUnit.MILLISECONDS);
+  }
+
+
+  /** Stops probing ejected URLs. */
+  public synchronized void stopProbing()
+  {
+    if (probeExecutor != null) {
+      probeExecutor.shutdownNow();
+      probeExecutor = null;
+    }
+  }
+
+
+  /**
+   * Returns whether the supplied URL is currently ejected.
+   *
+   * @param  url  to check
+   *
+   * @return  whether the URL is ejected
+   */
+  public boolean isEjected(final String url)
+  {
+    final UrlHealth h = health.get(url);
+    return h != null && h.isEjected(System.nanoTime());
+  }
+
+
+  /**
+   * Returns the current connect latency estimate for the supplied URL.
+   *
+   * @param  url  to get the latency for
+   *
+   * @return  latency estimate or null if no latency has been recorded
+   */
+  public Duration getLatency(final String url)
+  {
+    final UrlHealth h = health.get(url);
+    if (h == null) {
+      return null;
+    }
+    final double latency = h.getLatency();
+    return Double.isNaN(latency) ? null : Duration.ofNanos((long) latency);
+  }
+
+
+  /**
+   * Return a list of URLs with available URLs first, ordered by latency if {@link #isLatencyWeighted()}, followed by
+   * ejected URLs ordered by the time their ejection ends.
+   *
+   * @param  metadata  which can be used to produce the URL list
+   *
+   * @return  list of URLs to attempt connections to
+   */
+  @Override
+  public String[] getLdapUrls(final ConnectionFactoryMetadata metadata)
+  {
+    if (metadata == null || metadata.getLdapUrl() == null) {
+      return null;
+    }
+
+    final String[] urls = parseUrls(metadata.getLdapUrl());
+    final long now = System.nanoTime();
+    final List<String> available = new ArrayList<>(urls.length);
+    final List<String> ejected = new ArrayList<>(urls.length);
+    double minLatency = Double.NaN;
+    for (String url : urls) {
+      final UrlHealth h = health.get(url);
+      if (h != null && h.isEjected(now)) {
+        ejected.add(url);
+      } else {
+        available.add(url);
+        if (h != null) {
+          final double latency = h.getLatency();
+          if (!Double.isNaN(latency) && (Double.isNaN(minLatency) || latency < minLatency)) {
+            minLatency = latency;
+          }
+        }
+      }
+    }
+
+    final List<String> ordered = new ArrayList<>(urls.length);
+    if (latencyWeighted && available.size() > 1 && !Double.isNaN(minLatency)) {
+      final ThreadLocalRandom random = ThreadLocalRandom.current();
+      final Map<String, Double> keys = new HashMap<>(available.size());
+      for (String url : available) {
+        final UrlHealth h = health.get(url);
+        double latency = h != null ? h.getLatency() : Double.NaN;
+        if (Double.isNaN(latency)) {
+          latency = minLatency;
+        }
+        // weighted random ordering with weight 1/latency, larger keys are ordered first
+        keys.put(url, Math.log(1 - random.nextDouble()) * Math.max(latency, 1));
+      }
+      available.sort(Comparator.comparing(keys::get, Comparator.reverseOrder()));
+    }
+    ordered.addAll(available);
+    if (!ejected.isEmpty()) {
+      ejected.sort(Comparator.comparingLong(url -> health.get(url).getEjectedUntil()));
+      ordered.addAll(ejected);
+    }
+    return ordered.toArray(new String[ordered.size()]);
+  }
+
+
+  @Override
+  public void connectionSucceeded(final String url, final Duration connectTime)
+  {
+    getHealth(url).success(connectTime.toNanos());
+  }
+
+
+  @Override
+  public void connectionFailed(final String url, final Exception cause)
+  {
+    final UrlHealth h = getHealth(url);
+    final long until = h.failure(System.nanoTime());
+    if (until > 0) {
+      logger.warn(
+        "Ejecting {} for {}ms after {} consecutive failures",
+        url,
+        TimeUnit.NANOSECONDS.toMillis(until - System.nanoTime()),
+        h.getConsecutiveFailures());
+    }
+  }
+
+
+  /** Attempts a TCP connection to each ejected URL and reinstates those that succeed. */
+  protected void probeEjected()
+  {
+    final long now = System.nanoTime();
+    for (Map.Entry<String, UrlHealth> entry : health.entrySet()) {
+      if (entry.getValue().isEjected(now)) {
+        if (probe(entry.getKey())) {
+          logger.info("Probe succeeded, reinstating {}", entry.getKey());
+          entry.getValue().reinstate();
+        } else {
+          logger.debug("Probe failed for {}", entry.getKey());
+        }
+      }
+    }
+  }
+
+
+  /**
+   * Attempts a TCP connection to the host and port of the supplied URL.
+   *
+   * @param  url  to probe
+   *
+   * @return  whether a connection could be established
+   */
+  protected boolean probe(final String url)
+  {
+    boolean success = false;
+    try (Socket socket = new Socket()) {
+      final LdapURL.Entry entry = new LdapURL(url).getEntry();
+      socket.connect(new InetSocketAddress(entry.getHostname(), entry.getPort()), (int) probeTimeout.toMillis());
+      success = true;
+    } catch (IOException | RuntimeException e) {
+      logger.trace("Could not connect to {}", url, e);
+    }
+    return success;
+  }
+
+
+  /**
+   * Returns the individual URLs in the supplied space delimited URL string. The most recent result is cached.
+   *
+   * @param  ldapUrl  space delimited URLs
+   *
+   * @return  URLs
+   */
+  private String[] parseUrls(final String ldapUrl)
+  {
+    String[] urls = lastUrls;
+    if (urls == null || !ldapUrl.equals(lastLdapUrl)) {
+      urls = ldapUrl.split(" ");
+      lastUrls = urls;
+      lastLdapUrl = ldapUrl;
+    }
+    return urls;
+  }
+
+
+  /**
+   * Returns the health for the supplied URL, creating it if necessary.
+   *
+   * @param  url  to get health for
+   *
+   * @return  URL health
+   */
+  private UrlHealth getHealth(final String url)
+  {
+    return health.computeIfAbsent(url, k -> new UrlHealth());
+  }
+
+
+  @Override
+  public String toString()
+  {
+    return
+      String.format(
+        "[%s@%d::failureThreshold=%s, ejectionTime=%s, maxEjectionTime=%s, smoothingFactor=%s, " +
+        "latencyWeighted=%s, probeTimeout=%s, health=%s]",
+        getClass().getName(),
+        hashCode(),
+        failureThreshold,
+        ejectionTime,
+        maxEjectionTime,
+        smoothingFactor,
+        latencyWeighted,
+        probeTimeout,
+        health);
+  }
+
+
+  /** Health statistics for a single URL. */
+  private class UrlHealth
+  {
+
+    /** Number of consecutive connection failures. */
+    private int consecutiveFailures;
+
+    /** Number of consecutive ejections. */
+    private int ejections;
+
+    /** Time the current ejection ends, in nanoseconds. Zero if not ejected. */
+    private long ejectedUntil;
+
+    /** EWMA connect latency in nanoseconds. */
+    private double connectLatency = Double.NaN;
+
+
+    /**
+     * Records a successful connection.
+     *
+     * @param  latency  connect time in nanoseconds
+     */
+    synchronized void success(final long latency)
+    {
+      consecutiveFailures = 0;
+      ejections = 0;
+      ejectedUntil = 0;
+      connectLatency = ewma(connectLatency, latency);
+    }
+
+
+    /**
+     * Records a failed connection, ejecting the URL if the failure threshold has been reached.
+     *
+     * @param  now  current time in nanoseconds
+     *
+     * @return  time the ejection ends or zero if the URL was not ejected
+     */
+    synchronized long failure(final long now)
+    {
+      consecutiveFailures++;
+      if (consecutiveFailures < failureThreshold) {
+        return 0;
+      }
+      final int exponent = Math.min(ejections, MAX_BACKOFF_EXPONENT);
+      ejections++;
+      final long base = ejectionTime.toNanos();
+      final long max = maxEjectionTime.toNanos();
+      ejectedUntil = now + (base > max >> exponent ? max : base << exponent);
+      return ejectedUntil;
+    }
+
+
+    /** Ends the current ejection, a single failure ejects the URL again with an increased ejection time. */
+    synchronized void reinstate()
+    {
+      ejectedUntil = 0;
+      consecutiveFailures = failureThreshold - 1;
+    }
+
+
+    /**
+     * Returns whether this URL is ejected.
+     *
+     * @param  now  current time in nanoseconds
+     *
+     * @return  whether this URL is ejected
+     */
+    synchronized boolean isEjected(final long now)
+    {
+      return ejectedUntil != 0 && ejectedUntil - now > 0;
+    }
+
+
+    /**
+     * Returns the time the current ejection ends.
+     *
+     * @return  ejection end time in nanoseconds
+     */
+    synchronized long getEjectedUntil()
+    {
+      return ejectedUntil;
+    }
+
+
+    /**
+     * Returns the number of consecutive failures.
+     *
+     * @return  consecutive failures
+     */
+    synchronized int getConsecutiveFailures()
+    {
+      return consecutiveFailures;
+    }
+
+
+    /**
+     * Returns the connect latency.
+     *
+     * @return  latency in nanoseconds or NaN if no connection has succeeded
+     */
+    synchronized double getLatency()
+    {
+      return connectLatency;
+    }
+
+
+    /**
+     * Returns the moving average updated with the supplied sample.
+     *
+     * @param  average  current average
+     * @param  sample  new sample
+     *
+     * @return  updated average
+     */
+    private double ewma(final double average, final long sample)
+    {
+      return Double.isNaN(average) ? sample : average + smoothingFactor * (sample - average);
+    }
+
+
+    @Override
+    public synchronized String toString()
+    {
+      return
+        String.format(
+          "[consecutiveFailures=%s, ejections=%s, ejected=%s, connectLatency=%s]",
+          consecutiveFailures,
+          ejections,
+          isEjected(System.nanoTime()),
+          connectLatency);
+    }
+  }
+}
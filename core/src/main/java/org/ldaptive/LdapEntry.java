@@ -312,7 +312,7 @@ public class LdapEntry extends AbstractLdapBean
 
   /**
    * Returns the list of attribute modifications needed to change the supplied target entry into the supplied source
-   * entry.
+   * entry. Attributes whose values differ are replaced as a whole; see {@link EntryDiff} to modify individual values.
    *
    * @param  source  ldap entry containing new data
    * @param  target  ldap entry containing existing data
@@ -0,0 +1,1114 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.ldaptive.async.AsyncRequest;
+import org.ldaptive.control.RequestControl;
+import org.ldaptive.extended.ExtendedRequest;
+import org.ldaptive.extended.UnsolicitedNotificationListener;
+import org.ldaptive.provider.ConnectionException;
+import org.ldaptive.provider.MultiplexedProviderConnection;
+import org.ldaptive.provider.ProviderConnection;
+import org.ldaptive.provider.SearchItem;
+import org.ldaptive.provider.SearchIterator;
+import org.ldaptive.provider.SearchListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hands out lightweight virtual connections that share a small, fixed set of physical connections. Every operation
+ * performed on a virtual connection borrows a slot on the least loaded physical connection for the duration of that
+ * operation; responses are correlated by message ID in the provider. The number of outstanding operations per physical
+ * connection is bounded by {@link #getMaxInFlight()} and callers waiting for a slot are served in FIFO order.
+ *
+ * <p>Physical connections are opened and initialized with the {@link ConnectionConfig#getConnectionInitializer()} of
+ * the underlying connection factory, so all virtual connections share that authorization identity. Binding a virtual
+ * connection is not supported. Physical connections that fail with a {@link ConnectionException} are reopened by the
+ * next operation that is dispatched to them.</p>
+ *
+ * <p>Providers whose connections implement {@link MultiplexedProviderConnection} and report multiplexing enabled are
+ * used concurrently, any other provider is limited to a single outstanding operation per physical connection.</p>
+ *
+ * @author  Middleware Services
+ */
+public class MultiplexedConnectionFactory implements ConnectionFactory
+{
+
+  /** Default number of physical connections, value is {@value}. */
+  public static final int DEFAULT_CONNECTION_COUNT = 2;
+
+  /** Default maximum number of outstanding operations per physical connection, value is {@value}. */
+  public static final int DEFAULT_MAX_IN_FLIGHT = 32;
+
+  /** Logger for this class. */
+  protected final Logger logger = LoggerFactory.getLogger(getClass());
+
+  /** Creates the physical connections. */
+  private DefaultConnectionFactory connectionFactory;
+
+  /** Number of physical connections. */
+  private int connectionCount = DEFAULT_CONNECTION_COUNT;
+
+  /** Maximum number of outstanding operations per physical connection. */
+  private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+
+  /** Maximum time to wait for a free slot, null waits indefinitely. */
+  private Duration blockWaitTime;
+
+  /** Unsolicited notification listeners registered through virtual connections. */
+  private final List<UnsolicitedNotificationListener> notificationListeners = new CopyOnWriteArrayList<>();
+
+  /** Guards selection of physical connections. */
+  private final Object dispatchLock = new Object();
+
+  /** Highest number of outstanding operations observed on a single physical connection. */
+  private final AtomicInteger peakInFlight = new AtomicInteger();
+
+  /** Physical connections. */
+  private volatile SharedConnection[] connections;
+
+  /** Slots available across all physical connections. */
+  private Semaphore slots;
+
+  /** Index of the physical connection to consider first on the next dispatch. */
+  private int nextIndex;
+
+
+  /** Default constructor. */
+  public MultiplexedConnectionFactory() {}
+
+
+  /**
+   * Creates a new multiplexed connection factory.
+   *
+   * @param  cf  connection factory used to create physical connections
+   */
+  public MultiplexedConnectionFactory(final DefaultConnectionFactory cf)
+  {
+    connectionFactory = cf;
+  }
+
+
+  /**
+   * Creates a new multiplexed connection factory.
+   *
+   * @param  cf  connection factory used to create physical connections
+   * @param  count  number of physical connections
+   * @param  max  maximum number of outstanding operations per physical connection
+   */
+  public MultiplexedConnectionFactory(final DefaultConnectionFactory cf, final int count, final int max)
+  {
+    connectionFactory = cf;
+    setConnectionCount(count);
+    setMaxInFlight(max);
+  }
+
+
+  /**
+   * Returns the connection factory used to create physical connections.
+   *
+   * @return  connection factory
+   */
+  public DefaultConnectionFactory getConnectionFactory()
+  {
+    return connectionFactory;
+  }
+
+
+  /**
+   * Sets the connection factory used to create physical connections.
+   *
+   * @param  cf  connection factory
+   */
+  public void setConnectionFactory(final DefaultConnectionFactory cf)
+  {
+    checkNotInitialized();
+    logger.trace("setting connectionFactory: {}", cf);
+    connectionFactory = cf;
+  }
+
+
+  /**
+   * Returns the number of physical connections.
+   *
+   * @return  number of physical connections
+   */
+  public int getConnectionCount()
+  {
+    return connectionCount;
+  }
+
+
+  /**
+   * Sets the number of physical connections.
+   *
+   * @param  count  number of physical connections
+   */
+  public void setConnectionCount(final int count)
+  {
+    checkNotInitialized();
+    if (count < 1) {
+      throw new IllegalArgumentException("Connection count must be greater than zero");
+    }
+    logger.trace("setting connectionCount: {}", count);
+    connectionCount = count;
+  }
+
+
+  /**
+   * Returns the maximum number of outstanding operations per physical connection.
+   *
+   * @return  maximum number of outstanding operations
+   */
+  public int getMaxInFlight()
+  {
+    return maxInFlight;
+  }
+
+
+  /**
+   * Sets the maximum number of outstanding operations per physical connection.
+   *
+   * @param  max  maximum number of outstanding operations
+   */
+  public void setMaxInFlight(final int max)
+  {
+    checkNotInitialized();
+    if (max < 1) {
+      throw new IllegalArgumentException("Max in flight must be greater than zero");
+    }
+    logger.trace("setting maxInFlight: {}", max);
+    maxInFlight = max;
+  }
+
+
+  /**
+   * Returns the maximum time to wait for a free slot.
+   *
+   * @return  block wait time, null waits indefinitely
+   */
+  public Duration getBlockWaitTime()
+  {
+    return blockWaitTime;
+  }
+
+
+  /**
+   * Sets the maximum time to wait for a free slot.
+   *
+   * @param  time  block wait time, null waits indefinitely
+   */
+  public void setBlockWaitTime(final Duration time)
+  {
+    if (time != null && time.isNegative()) {
+      throw new IllegalArgumentException("Block wait time cannot be negative");
+    }
+    logger.trace("setting blockWaitTime: {}", time);
+    blockWaitTime = time;
+  }
+
+
+  /**
+   * Returns whether {@link #initialize()} has been successfully invoked.
+   *
+   * @return  whether this factory has been initialized
+   */
+  public boolean isInitialized()
+  {
+    return connections != null;
+  }
+
+
+  /**
+   * Opens the physical connections. Invoked automatically by the first virtual connection that is opened.
+   *
+   * @throws  IllegalStateException  if no connection factory has been configured
+   * @throws  LdapException  if a physical connection cannot be opened
+   */
+  public synchronized void initialize()
+    throws LdapException
+  {
+    if (connections == null) {
+      if (connectionFactory == null) {
+        throw new IllegalStateException("No connection factory configured");
+      }
+      final SharedConnection[] shared = new SharedConnection[connectionCount];
+      boolean multiplexed = true;
+      try {
+        for (int i = 0; i < shared.length; i++) {
+          shared[i] = new SharedConnection(i);
+          final ProviderConnection pc = shared[i].getProviderConnection();
+          if (!(pc instanceof MultiplexedProviderConnection) ||
+              !((MultiplexedProviderConnection) pc).isMultiplexingEnabled()) {
+            multiplexed = false;
+          }
+        }
+      } catch (LdapException | RuntimeException e) {
+        for (SharedConnection sc : shared) {
+          if (sc != null) {
+            sc.close();
+          }
+        }
+        throw e;
+      }
+      final int capacity = multiplexed ? maxInFlight : 1;
+      if (!multiplexed && maxInFlight > 1) {
+        logger.warn("Provider connections do not support multiplexing, limiting each connection to one operation");
+      }
+      for (SharedConnection sc : shared) {
+        sc.capacity = capacity;
+      }
+      slots = new Semaphore(capacity * shared.length, true);
+      connections = shared;
+      logger.debug("initialized {} with {} connections of capacity {}", this, shared.length, capacity);
+    }
+  }
+
+
+  /**
+   * Returns a virtual connection. Connections returned from this method must be opened before they can perform ldap
+   * operations, opening a virtual connection does not open a new socket.
+   *
+   * @return  virtual connection
+   */
+  @Override
+  public Connection getConnection()
+  {
+    return new VirtualConnection();
+  }
+
+
+  /**
+   * Returns the number of operations currently outstanding across all physical connections.
+   *
+   * @return  number of outstanding operations
+   */
+  public int getInFlightCount()
+  {
+    int count = 0;
+    final SharedConnection[] shared = connections;
+    if (shared != null) {
+      for (SharedConnection sc : shared) {
+        count += sc.inFlight.get();
+      }
+    }
+    return count;
+  }
+
+
+  /**
+   * Returns the highest number of outstanding operations observed on any single physical connection.
+   *
+   * @return  peak number of outstanding operations per physical connection
+   */
+  public int getPeakInFlight()
+  {
+    return peakInFlight.get();
+  }
+
+
+  /** Closes all physical connections. Virtual connections cannot be used until this factory is initialized again. */
+  public synchronized void close()
+  {
+    final SharedConnection[] shared = connections;
+    connections = null;
+    if (shared != null) {
+      for (SharedConnection sc : shared) {
+        sc.close();
+      }
+    }
+  }
+
+
+  /**
+   * Waits for a free slot and reserves it on the least loaded physical connection. Ties are broken in round robin
+   * order. The returned connection must be passed to {@link #release(SharedConnection)} when the operation completes.
+   *
+   * @return  physical connection with a reserved slot
+   *
+   * @throws  LdapException  if no slot becomes available in time or the physical connection cannot be reopened
+   */
+  protected SharedConnection acquire()
+    throws LdapException
+  {
+    final SharedConnection[] shared = connections;
+    if (shared == null) {
+      throw new IllegalStateException("Factory has not been initialized");
+    }
+    try {
+      if (blockWaitTime == null) {
+        slots.acquire();
+      } else if (!slots.tryAcquire(blockWaitTime.toMillis(), TimeUnit.MILLISECONDS)) {
+        throw new LdapException(
+          "Timed out waiting for a connection slot after " + blockWaitTime,
+          ResultCode.LDAP_TIMEOUT);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new LdapException("Interrupted waiting for a connection slot", e, ResultCode.LOCAL_ERROR);
+    }
+
+    SharedConnection selected = null;
+    synchronized (dispatchLock) {
+      for (int i = 0; i < shared.length; i++) {
+        final SharedConnection sc = shared[(nextIndex + i) % shared.length];
+        if (sc.inFlight.get() < sc.capacity && (selected == null || sc.inFlight.get() < selected.inFlight.get())) {
+          selected = sc;
+        }
+      }
+      nextIndex = (nextIndex + 1) % shared.length;
+      // a slot permit guarantees that some connection has capacity
+      final int count = selected.inFlight.incrementAndGet();
+      peakInFlight.accumulateAndGet(count, Math::max);
+    }
+    try {
+      selected.getProviderConnection();
+    } catch (LdapException | RuntimeException e) {
+      release(selected);
+      throw e;
+    }
+    return selected;
+  }
+
+
+  /**
+   * Releases a slot reserved by {@link #acquire()}.
+   *
+   * @param  sc  physical connection to release the slot on
+   */
+  protected void release(final SharedConnection sc)
+  {
+    sc.inFlight.decrementAndGet();
+    slots.release();
+  }
+
+
+  /**
+   * Throws an exception if this factory has been initialized.
+   *
+   * @throws  IllegalStateException  if this factory has been initialized
+   */
+  private void checkNotInitialized()
+  {
+    if (isInitialized()) {
+      throw new IllegalStateException("Factory has already been initialized");
+    }
+  }
+
+
+  @Override
+  public String toString()
+  {
+    return
+      String.format(
+        "[%s@%d::connectionFactory=%s, connectionCount=%s, maxInFlight=%s, blockWaitTime=%s]",
+        getClass().getName(),
+        hashCode(),
+        connectionFactory,
+        connectionCount,
+        maxInFlight,
+        blockWaitTime);
+  }
+
+
+  /**
+   * Operation that is executed against a provider connection.
+   *
+   * @param  <T>  type of operation result
+   */
+  private interface ProviderOperation<T>
+  {
+
+
+    /**
+     * Executes this operation.
+     *
+     * @param  conn  provider connection
+     *
+     * @return  operation result
+     *
+     * @throws  LdapException  if the operation fails
+     */
+    T execute(ProviderConnection conn)
+      throws LdapException;
+  }
+
+
+  /** Physical connection shared by many virtual connections. */
+  protected class SharedConnection
+  {
+
+    /** Index of this connection. */
+    private final int index;
+
+    /** Underlying connection. */
+    private final Connection connection;
+
+    /** Number of outstanding operations. */
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /** Maximum number of outstanding operations. */
+    private volatile int capacity = 1;
+
+    /** Whether this connection failed and must be reopened. */
+    private volatile boolean broken;
+
+
+    /**
+     * Creates a new shared connection.
+     *
+     * @param  i  index of this connection
+     */
+    SharedConnection(final int i)
+    {
+      index = i;
+      connection = connectionFactory.getConnection();
+    }
+
+
+    /**
+     * Returns the provider connection, opening or reopening the underlying connection as needed.
+     *
+     * @return  provider connection
+     *
+     * @throws  LdapException  if the underlying connection cannot be opened
+     */
+    public synchronized ProviderConnection getProviderConnection()
+      throws LdapException
+    {
+      if (broken || !connection.isOpen()) {
+        if (connection.isOpen()) {
+          logger.debug("reopening shared connection {} of {}", index, MultiplexedConnectionFactory.this);
+          connection.close();
+        }
+        connection.open();
+        for (UnsolicitedNotificationListener listener : notificationListeners) {
+          connection.getProviderConnection().addUnsolicitedNotificationListener(listener);
+        }
+        broken = false;
+      }
+      return connection.getProviderConnection();
+    }
+
+
+    /**
+     * Returns the number of outstanding operations on this connection.
+     *
+     * @return  number of outstanding operations
+     */
+    public int getInFlight()
+    {
+      return inFlight.get();
+    }
+
+
+    /**
+     * Records the supplied exception, marking this connection to be reopened if it indicates a connection failure.
+     *
+     * @param  e  exception thrown by an operation on this connection
+     */
+    void failed(final Exception e)
+    {
+      if (e instanceof ConnectionException && !broken) {
+        logger.debug("shared connection {} of {} failed", index, MultiplexedConnectionFactory.this, e);
+        broken = true;
+      }
+    }
+
+
+    /**
+     * Invokes {@link MultiplexedProviderConnection#beginNestedOperations()} or {@link
+     * MultiplexedProviderConnection#endNestedOperations()} on the underlying connection if it is open.
+     *
+     * @param  begin  whether to begin or end nested operations
+     */
+    synchronized void nestedOperations(final boolean begin)
+    {
+      if (connection.isOpen() && connection.getProviderConnection() instanceof MultiplexedProviderConnection) {
+        final MultiplexedProviderConnection conn = (MultiplexedProviderConnection) connection.getProviderConnection();
+        if (begin) {
+          conn.beginNestedOperations();
+        } else {
+          conn.endNestedOperations();
+        }
+      }
+    }
+
+
+    /** Closes the underlying connection. */
+    synchronized void close()
+    {
+      connection.close();
+    }
+  }
+
+
+  /** Connection handed out by this factory, every operation is dispatched to a shared connection. */
+  protected class VirtualConnection implements Connection
+  {
+
+    /** Provider connection that dispatches operations. */
+    private final VirtualProviderConnection providerConnection = new VirtualProviderConnection();
+
+    /** Whether this connection is open. */
+    private volatile boolean open;
+
+
+    @Override
+    public ConnectionConfig getConnectionConfig()
+    {
+      return connectionFactory.getConnectionConfig();
+    }
+
+
+    /**
+     * Opens this virtual connection, initializing the factory if necessary.
+     *
+     * @return  empty response
+     *
+     * @throws  IllegalStateException  if the connection is already open
+     * @throws  LdapException  if the physical connections cannot be opened
+     */
+    @Override
+    public synchronized Response<Void> open()
+      throws LdapException
+    {
+      if (open) {
+        throw new IllegalStateException("Connection already open");
+      }
+      initialize();
+      open = true;
+      return new Response<>(null, null);
+    }
+
+
+    /**
+     * Binding is not supported, physical connections are shared by all virtual connections.
+     *
+     * @param  request  bind request
+     *
+     * @return  never
+     *
+     * @throws  UnsupportedOperationException  always
+     */
+    @Override
+    public Response<Void> open(final BindRequest request)
+    {
+      throw new UnsupportedOperationException("Multiplexed connections cannot be bound individually");
+    }
+
+
+    @Override
+    public boolean isOpen()
+    {
+      return open;
+    }
+
+
+    /**
+     * Returns the provider connection that dispatches operations to the physical connections.
+     *
+     * @return  provider connection
+     *
+     * @throws  IllegalStateException  if the connection is not open
+     */
+    @Override
+    public ProviderConnection getProviderConnection()
+    {
+      if (!open) {
+        throw new IllegalStateException("Connection is not open");
+      }
+      return providerConnection;
+    }
+
+
+    @Override
+    public void close()
+    {
+      open = false;
+    }
+
+
+    /**
+     * Closes this virtual connection. Controls are ignored since the physical connection remains open.
+     *
+     * @param  controls  ignored
+     */
+    @Override
+    public void close(final RequestControl[] controls)
+    {
+      close();
+    }
+
+
+    @Override
+    public synchronized Response<Void> reopen()
+      throws LdapException
+    {
+      close();
+      return open();
+    }
+
+
+    /**
+     * Binding is not supported, physical connections are shared by all virtual connections.
+     *
+     * @param  request  bind request
+     *
+     * @return  never
+     *
+     * @throws  UnsupportedOperationException  always
+     */
+    @Override
+    public Response<Void> reopen(final BindRequest request)
+    {
+      throw new UnsupportedOperationException("Multiplexed connections cannot be bound individually");
+    }
+
+
+    @Override
+    public String toString()
+    {
+      return String.format("[%s@%d::open=%s]", getClass().getName(), hashCode(), open);
+    }
+  }
+
+
+  /**
+   * Provider connection that reserves a slot on a shared connection for each operation. Operations may be performed
+   * concurrently by multiple threads.
+   */
+  protected class VirtualProviderConnection implements MultiplexedProviderConnection
+  {
+
+    /** Outstanding asynchronous searches by message ID. */
+    private final Map<Integer, ReleasingSearchListener> asyncSearches = new ConcurrentHashMap<>();
+
+
+    @Override
+    public boolean isMultiplexingEnabled()
+    {
+      return true;
+    }
+
+
+    /** Forwards to every physical connection, since operations of the current thread may use any of them. */
+    @Override
+    public void beginNestedOperations()
+    {
+      nestedOperations(true);
+    }
+
+
+    @Override
+    public void endNestedOperations()
+    {
+      nestedOperations(false);
+    }
+
+
+    /**
+     * Begins or ends nested operations on every open physical connection.
+     *
+     * @param  begin  whether to begin or end nested operations
+     */
+    private void nestedOperations(final boolean begin)
+    {
+      final SharedConnection[] shared = connections;
+      if (shared != null) {
+        for (SharedConnection sc : shared) {
+          sc.nestedOperations(begin);
+        }
+      }
+    }
+
+
+    /**
+     * Binding is not supported, physical connections are shared by all virtual connections.
+     *
+     * @param  request  bind request
+     *
+     * @return  never
+     *
+     * @throws  UnsupportedOperationException  always
+     */
+    @Override
+    public Response<Void> bind(final BindRequest request)
+    {
+      throw new UnsupportedOperationException("Multiplexed connections cannot be bound individually");
+    }
+
+
+    @Override
+    public Response<Void> add(final AddRequest request)
+      throws LdapException
+    {
+      return execute(conn -> conn.add(request));
+    }
+
+
+    @Override
+    public Response<Boolean> compare(final CompareRequest request)
+      throws LdapException
+    {
+      return execute(conn -> conn.compare(request));
+    }
+
+
+    @Override
+    public Response<Void> delete(final DeleteRequest request)
+      throws LdapException
+    {
+      return execute(conn -> conn.delete(request));
+    }
+
+
+    @Override
+    public Response<Void> modify(final ModifyRequest request)
+      throws LdapException
+    {
+      return execute(conn -> conn.modify(request));
+    }
+
+
+    @Override
+    public Response<Void> modifyDn(final ModifyDnRequest request)
+      throws LdapException
+    {
+      return execute(conn -> conn.modifyDn(request));
+    }
+
+
+    @Override
+    public SearchIterator search(final SearchRequest request)
+      throws LdapException
+    {
+      final SharedConnection sc = acquire();
+      try {
+        return new ReleasingSearchIterator(sc, sc.getProviderConnection().search(request));
+      } catch (LdapException | RuntimeException e) {
+        sc.failed(e);
+        release(sc);
+        throw e;
+      }
+    }
+
+
+    @Override
+    public void searchAsync(final SearchRequest request, final SearchListener listener)
+      throws LdapException
+    {
+      final SharedConnection sc = acquire();
+      try {
+        sc.getProviderConnection().searchAsync(request, new ReleasingSearchListener(sc, listener, this));
+      } catch (LdapException | RuntimeException e) {
+        sc.failed(e);
+        release(sc);
+        throw e;
+      }
+    }
+
+
+    /**
+     * Abandons an outstanding asynchronous search started on this connection. Unknown message IDs are ignored.
+     *
+     * @param  messageId  of the search to abandon
+     * @param  controls  request controls
+     *
+     * @throws  LdapException  if the abandon request cannot be sent
+     */
+    @Override
+    public void abandon(final int messageId, final RequestControl[] controls)
+      throws LdapException
+    {
+      final ReleasingSearchListener listener = asyncSearches.remove(messageId);
+      if (listener != null) {
+        listener.abandon(controls);
+      } else {
+        logger.debug("ignoring abandon of unknown message ID {}", messageId);
+      }
+    }
+
+
+    @Override
+    public Response<?> extendedOperation(final ExtendedRequest request)
+      throws LdapException
+    {
+      return execute(conn -> conn.extendedOperation(request));
+    }
+
+
+    @Override
+    public void addUnsolicitedNotificationListener(final UnsolicitedNotificationListener listener)
+    {
+      notificationListeners.add(listener);
+      final SharedConnection[] shared = connections;
+      if (shared != null) {
+        for (SharedConnection sc : shared) {
+          try {
+            sc.getProviderConnection().addUnsolicitedNotificationListener(listener);
+          } catch (LdapException e) {
+            logger.debug("could not register listener on shared connection {}", sc.index, e);
+          }
+        }
+      }
+    }
+
+
+    @Override
+    public void removeUnsolicitedNotificationListener(final UnsolicitedNotificationListener listener)
+    {
+      notificationListeners.remove(listener);
+      final SharedConnection[] shared = connections;
+      if (shared != null) {
+        for (SharedConnection sc : shared) {
+          if (sc.connection.isOpen()) {
+            sc.connection.getProviderConnection().removeUnsolicitedNotificationListener(listener);
+          }
+        }
+      }
+    }
+
+
+    /**
+     * Does nothing, physical connections are closed with {@link MultiplexedConnectionFactory#close()}.
+     *
+     * @param  controls  ignored
+     */
+    @Override
+    public void close(final RequestControl[] controls) {}
+
+
+    /**
+     * Reserves a slot, executes the supplied operation and releases the slot.
+     *
+     * @param  <T>  type of operation result
+     * @param  operation  to execute
+     *
+     * @return  operation result
+     *
+     * @throws  LdapException  if no slot is available or the operation fails
+     */
+    private <T> T execute(final ProviderOperation<T> operation)
+      throws LdapException
+    {
+      final SharedConnection sc = acquire();
+      try {
+        return operation.execute(sc.getProviderConnection());
+      } catch (LdapException | RuntimeException e) {
+        sc.failed(e);
+        throw e;
+      } finally {
+        release(sc);
+      }
+    }
+  }
+
+
+  /** Search iterator that releases its slot when closed. */
+  protected class ReleasingSearchIterator implements SearchIterator
+  {
+
+    /** Shared connection the search was sent on. */
+    private final SharedConnection sharedConnection;
+
+    /** Provider search iterator. */
+    private final SearchIterator iterator;
+
+    /** Whether the slot has been released. */
+    private final AtomicBoolean released = new AtomicBoolean();
+
+
+    /**
+     * Creates a new releasing search iterator.
+     *
+     * @param  sc  shared connection the search was sent on
+     * @param  si  provider search iterator
+     */
+    public ReleasingSearchIterator(final SharedConnection sc, final SearchIterator si)
+    {
+      sharedConnection = sc;
+      iterator = si;
+    }
+
+
+    @Override
+    public boolean hasNext()
+      throws LdapException
+    {
+      try {
+        return iterator.hasNext();
+      } catch (LdapException e) {
+        sharedConnection.failed(e);
+        throw e;
+      }
+    }
+
+
+    @Override
+    public SearchItem next()
+      throws LdapException
+    {
+      try {
+        return iterator.next();
+      } catch (LdapException e) {
+        sharedConnection.failed(e);
+        throw e;
+      }
+    }
+
+
+    @Override
+    public Response<Void> getResponse()
+    {
+      return iterator.getResponse();
+    }
+
+
+    @Override
+    public void close()
+      throws LdapException
+    {
+      try {
+        iterator.close();
+      } finally {
+        if (released.compareAndSet(false, true)) {
+          release(sharedConnection);
+        }
+      }
+    }
+  }
+
+
+  /** Search listener that releases its slot when the search completes or is abandoned. */
+  protected class ReleasingSearchListener implements SearchListener
+  {
+
+    /** Shared connection the search was sent on. */
+    private final SharedConnection sharedConnection;
+
+    /** Listener to delegate to. */
+    private final SearchListener listener;
+
+    /** Connection that tracks this search for abandon. */
+    private final VirtualProviderConnection owner;
+
+    /** Whether the slot has been released. */
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    /** Provider async request. */
+    private volatile AsyncRequest asyncRequest;
+
+
+    /**
+     * Creates a new releasing search listener.
+     *
+     * @param  sc  shared connection the search was sent on
+     * @param  sl  listener to delegate to
+     * @param  conn  connection that tracks this search for abandon
+     */
+    public ReleasingSearchListener(
+      final SharedConnection sc,
+      final SearchListener sl,
+      final VirtualProviderConnection conn)
+    {
+      sharedConnection = sc;
+      listener = sl;
+      owner = conn;
+    }
+
+
+    @Override
+    public void asyncRequestReceived(final AsyncRequest request)
+    {
+      asyncRequest = request;
+      owner.asyncSearches.put(request.getMessageId(), this);
+      listener.asyncRequestReceived(
+        new AsyncRequest() {
+          @Override
+          public int getMessageId()
+          {
+            return request.getMessageId();
+          }
+
+          @Override
+          public void abandon()
+            throws LdapException
+          {
+            ReleasingSearchListener.this.abandon(null);
+          }
+
+          @Override
+          public void abandon(final RequestControl[] controls)
+            throws LdapException
+          {
+            ReleasingSearchListener.this.abandon(controls);
+          }
+        });
+    }
+
+
+    @Override
+    public void searchItemReceived(final SearchItem item)
+    {
+      listener.searchItemReceived(item);
+    }
+
+
+    @Override
+    public void responseReceived(final Response<Void> response)
+    {
+      releaseSlot();
+      listener.responseReceived(response);
+    }
+
+
+    @Override
+    public void exceptionReceived(final Exception exception)
+    {
+      sharedConnection.failed(exception);
+      releaseSlot();
+      listener.exceptionReceived(exception);
+    }
+
+
+    /**
+     * Abandons the search and releases its slot.
+     *
+     * @param  controls  request controls
+     *
+     * @throws  LdapException  if the abandon request cannot be sent
+     */
+    void abandon(final RequestControl[] controls)
+      throws LdapException
+    {
+      try {
+        if (asyncRequest != null) {
+          asyncRequest.abandon(controls);
+        }
+      } finally {
+        releaseSlot();
+      }
+    }
+
+
+    /** Releases the slot if it has not already been released. */
+    private void releaseSlot()
+    {
+      if (released.compareAndSet(false, true)) {
+        if (asyncRequest != null) {
+          owner.asyncSearches.remove(asyncRequest.getMessageId(), this);
+        }
+        release(sharedConnection);
+      }
+    }
+  }
+}
@@ -0,0 +1,625 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.ObjectStreamException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Search result that stores its entries outside of the heap, for results too large to hold as {@link LdapEntry}
+ * objects. Each entry is encoded into direct or memory mapped byte buffer segments when it is added, and the heap holds
+ * only a compact index of about twenty bytes per entry that locates entries by position and by DN hash. Entries are
+ * decoded into new {@link LdapEntry} objects each time they are accessed, so changes to a returned entry are not stored
+ * unless it is added again. Entries are ordered by when they were first added and search entry controls are not
+ * retained.
+ *
+ * <p>A search operation reads directly into this result when it is configured with a factory:</p>
+ *
+ * <pre>
+   final SearchOperation search = new SearchOperation(conn);
+   search.setSearchResultFactory(request -&gt; new OffHeapSearchResult());
+   try (OffHeapSearchResult result = (OffHeapSearchResult) search.execute(request).getResult()) {
+     new LdifWriter(writer).write(result);
+   }
+ * </pre>
+ *
+ * <p>Storage is released when the result is closed or becomes unreachable. Space used by replaced or removed entries
+ * is only reclaimed by {@link #clear()}. This class is not thread safe.</p>
+ *
+ * @author  Middleware Services
+ */
+public class OffHeapSearchResult extends SearchResult implements Closeable
+{
+
+  /** Default size of each storage segment in bytes. Value is {@value}. */
+  public static final int DEFAULT_SEGMENT_SIZE = 16777216;
+
+  /** serial version uid. */
+  private static final long serialVersionUID = -4237869235613450811L;
+
+  /** Initial number of entries the index can hold. */
+  private static final int INITIAL_CAPACITY = 256;
+
+  /** Bits the segment number is shifted by in an entry location. */
+  private static final int SEGMENT_SHIFT = 32;
+
+  /** Mask of the offset in an entry location. */
+  private static final long OFFSET_MASK = 0xFFFFFFFFL;
+
+  /** Bits the DN hash is shifted by before it is spread across the table. */
+  private static final int HASH_SHIFT = 16;
+
+  /** Location of a removed entry. */
+  private static final long REMOVED = -1;
+
+  /** Size of each storage segment in bytes. */
+  private final int segmentSize;
+
+  /** File segments are mapped from, null if segments are direct buffers. */
+  private final transient FileChannel channel;
+
+  /** Storage segments. */
+  private final transient List<ByteBuffer> segments = new ArrayList<>();
+
+  /** Segment that entries are currently written to. */
+  private int currentSegment;
+
+  /** Number of bytes mapped from the file. */
+  private long mappedSize;
+
+  /** Number of bytes of encoded entries. */
+  private long dataSize;
+
+  /** Location of each entry by index, segment number in the high bits and offset in the low bits. */
+  private long[] locations = new long[INITIAL_CAPACITY];
+
+  /** Hash of the lower case DN of each entry by index. */
+  private int[] hashes = new int[INITIAL_CAPACITY];
+
+  /** Open addressing table of entry index plus one by DN hash, zero for an empty slot. */
+  private int[] table = new int[INITIAL_CAPACITY * 2];
+
+  /** Number of indexes used, including removed entries. */
+  private int count;
+
+  /** Number of removed entries. */
+  private int removed;
+
+
+  /** Creates a new off heap search result that stores entries in direct byte buffers. */
+  public OffHeapSearchResult()
+  {
+    this(DEFAULT_SEGMENT_SIZE);
+  }
+
+
+  /**
+   * Creates a new off heap search result that stores entries in direct byte buffers.
+   *
+   * @param  size  of each storage segment in bytes
+   */
+  public OffHeapSearchResult(final int size)
+  {
+    super(SortBehavior.ORDERED);
+    if (size < 1) {
+      throw new IllegalArgumentException("Segment size must be greater than zero");
+    }
+    segmentSize = size;
+    channel = null;
+  }
+
+
+  /**
+   * Creates a new off heap search result that stores entries in segments memory mapped from the supplied file. The file
+   * is created or truncated, and deleted when this result is closed.
+   *
+   * @param  file  to store entries in
+   * @param  size  of each storage segment in bytes
+   *
+   * @throws  IOException  if the file cannot be opened
+   */
+  public OffHeapSearchResult(final Path file, final int size)
+    throws IOException
+  {
+    super(SortBehavior.ORDERED);
+    if (size < 1) {
+      throw new IllegalArgumentException("Segment size must be greater than zero");
+    }
+    segmentSize = size;
+    channel = FileChannel.open(
+      file,
+      StandardOpenOption.CREATE,
+      StandardOpenOption.TRUNCATE_EXISTING,
+      StandardOpenOption.READ,
+      StandardOpenOption.WRITE,
+      StandardOpenOption.DELETE_ON_CLOSE);
+  }
+
+
+  /**
+   * Returns the size of each storage segment.
+   *
+   * @return  segment size in bytes
+   */
+  public int getSegmentSize()
+  {
+    return segmentSize;
+  }
+
+
+  /**
+   * Returns the number of bytes of encoded entries written to storage, including entries that have since been replaced
+   * or removed.
+   *
+   * @return  data size in bytes
+   */
+  public long getDataSize()
+  {
+    return dataSize;
+  }
+
+
+  @Override
+  public Collection<LdapEntry> getEntries()
+  {
+    return new AbstractCollection<LdapEntry>()
+    {
+      @Override
+      public Iterator<LdapEntry> iterator()
+      {
+        return new EntryIterator();
+      }
+
+
+      @Override
+      public int size()
+      {
+        return OffHeapSearchResult.this.size();
+      }
+    };
+  }
+
+
+  @Override
+  public LdapEntry getEntry()
+  {
+    final Iterator<LdapEntry> i = new EntryIterator();
+    return i.hasNext() ? i.next() : null;
+  }
+
+
+  @Override
+  public LdapEntry getEntry(final String dn)
+  {
+    final int i = find(dn.toLowerCase());
+    return i != -1 ? decode(locations[i]) : null;
+  }
+
+
+  @Override
+  public String[] getEntryDns()
+  {
+    final String[] dns = new String[size()];
+    int j = 0;
+    for (int i = 0; i < count; i++) {
+      if (locations[i] != REMOVED) {
+        dns[j++] = readDn(locations[i]).toLowerCase();
+      }
+    }
+    return dns;
+  }
+
+
+  @Override
+  public void addEntry(final LdapEntry... entry)
+  {
+    for (LdapEntry e : entry) {
+      final String dn = e.getDn().toLowerCase();
+      final int i = find(dn);
+      final long location = write(e);
+      if (i != -1) {
+        locations[i] = location;
+      } else {
+        append(dn.hashCode(), location);
+      }
+    }
+  }
+
+
+  @Override
+  public void removeEntry(final LdapEntry... entry)
+  {
+    for (LdapEntry e : entry) {
+      removeEntry(e.getDn());
+    }
+  }
+
+
+  @Override
+  public void removeEntry(final String dn)
+  {
+    final int i = find(dn.toLowerCase());
+    if (i != -1) {
+      locations[i] = REMOVED;
+      removed++;
+    }
+  }
+
+
+  @Override
+  public int size()
+  {
+    return count - removed;
+  }
+
+
+  @Override
+  public void clear()
+  {
+    locations = new long[INITIAL_CAPACITY];
+    hashes = new int[INITIAL_CAPACITY];
+    table = new int[INITIAL_CAPACITY * 2];
+    count = 0;
+    removed = 0;
+    dataSize = 0;
+    currentSegment = 0;
+    for (ByteBuffer segment : segments) {
+      segment.clear();
+    }
+  }
+
+
+  /**
+   * Removes every entry and releases storage. Direct buffers are released when they are garbage collected, the mapped
+   * file is closed and deleted.
+   *
+   * @throws  IOException  if the mapped file cannot be closed
+   */
+  @Override
+  public void close()
+    throws IOException
+  {
+    clear();
+    segments.clear();
+    mappedSize = 0;
+    if (channel != null) {
+      channel.close();
+    }
+  }
+
+
+  /**
+   * Returns the index of the entry with the supplied DN.
+   *
+   * @param  dn  lower case DN
+   *
+   * @return  entry index or -1 if no entry has the DN
+   */
+  private int find(final String dn)
+  {
+    final int hash = dn.hashCode();
+    int index = -1;
+    int slot = spread(hash) & (table.length - 1);
+    while (index == -1 && table[slot] != 0) {
+      final int i = table[slot] - 1;
+      if (hashes[i] == hash && locations[i] != REMOVED && readDn(locations[i]).toLowerCase().equals(dn)) {
+        index = i;
+      }
+      slot = (slot + 1) & (table.length - 1);
+    }
+    return index;
+  }
+
+
+  /**
+   * Adds a new entry to the index.
+   *
+   * @param  hash  of the lower case DN
+   * @param  location  of the encoded entry
+   */
+  private void append(final int hash, final long location)
+  {
+    if (count == locations.length) {
+      if (removed > count / 2) {
+        compact();
+      } else {
+        locations = Arrays.copyOf(locations, count * 2);
+        hashes = Arrays.copyOf(hashes, count * 2);
+      }
+    }
+    locations[count] = location;
+    hashes[count] = hash;
+    count++;
+    if (count * 2 > table.length) {
+      rehash(table.length * 2);
+    } else {
+      insert(count - 1);
+    }
+  }
+
+
+  /** Removes the index positions of removed entries. */
+  private void compact()
+  {
+    int j = 0;
+    for (int i = 0; i < count; i++) {
+      if (locations[i] != REMOVED) {
+        locations[j] = locations[i];
+        hashes[j] = hashes[i];
+        j++;
+      }
+    }
+    count = j;
+    removed = 0;
+    rehash(table.length);
+  }
+
+
+  /**
+   * Rebuilds the DN hash table.
+   *
+   * @param  size  of the new table, a power of two
+   */
+  private void rehash(final int size)
+  {
+    table = new int[size];
+    for (int i = 0; i < count; i++) {
+      if (locations[i] != REMOVED) {
+        insert(i);
+      }
+    }
+  }
+
+
+  /**
+   * Inserts the entry at the supplied index into the DN hash table.
+   *
+   * @param  index  of the entry
+   */
+  private void insert(final int index)
+  {
+    int slot = spread(hashes[index]) & (table.length - 1);
+    while (table[slot] != 0) {
+      slot = (slot + 1) & (table.length - 1);
+    }
+    table[slot] = index + 1;
+  }
+
+
+  /**
+   * Spreads the high bits of the supplied hash into the low bits used to select a table slot.
+   *
+   * @param  hash  of a DN
+   *
+   * @return  spread hash
+   */
+  private static int spread(final int hash)
+  {
+    return hash ^ (hash >>> HASH_SHIFT);
+  }
+
+
+  /**
+   * Encodes the supplied entry into storage.
+   *
+   * @param  entry  to encode
+   *
+   * @return  location of the encoded entry
+   */
+  private long write(final LdapEntry entry)
+  {
+    final byte[] dn = entry.getDn().getBytes(StandardCharsets.UTF_8);
+    final List<byte[]> data = new ArrayList<>();
+    int size = Integer.BYTES + dn.length + Integer.BYTES;
+    for (LdapAttribute attr : entry.getAttributes()) {
+      final byte[] name = attr.getName().getBytes(StandardCharsets.UTF_8);
+      data.add(name);
+      size += Integer.BYTES + name.length + 1 + Integer.BYTES;
+      if (attr.isBinary()) {
+        for (byte[] value : attr.getBinaryValues()) {
+          data.add(value);
+          size += Integer.BYTES + value.length;
+        }
+      } else {
+        for (String s : attr.getStringValues()) {
+          final byte[] value = s.getBytes(StandardCharsets.UTF_8);
+          data.add(value);
+          size += Integer.BYTES + value.length;
+        }
+      }
+    }
+
+    final ByteBuffer segment = allocate(size);
+    final long location = ((long) currentSegment << SEGMENT_SHIFT) | segment.position();
+    segment.putInt(dn.length).put(dn).putInt(entry.size());
+    final Iterator<byte[]> i = data.iterator();
+    for (LdapAttribute attr : entry.getAttributes()) {
+      final byte[] name = i.next();
+      segment.putInt(name.length).put(name).put((byte) (attr.isBinary() ? 1 : 0)).putInt(attr.size());
+      for (int j = 0; j < attr.size(); j++) {
+        final byte[] value = i.next();
+        segment.putInt(value.length).put(value);
+      }
+    }
+    dataSize += size;
+    return location;
+  }
+
+
+  /**
+   * Returns a segment with at least the supplied number of bytes remaining, adding a segment if necessary.
+   *
+   * @param  size  number of bytes needed
+   *
+   * @return  segment positioned at the first free byte
+   */
+  private ByteBuffer allocate(final int size)
+  {
+    while (currentSegment < segments.size() && segments.get(currentSegment).remaining() < size) {
+      currentSegment++;
+    }
+    if (currentSegment == segments.size()) {
+      final int capacity = Math.max(segmentSize, size);
+      if (channel != null) {
+        try {
+          segments.add(channel.map(FileChannel.MapMode.READ_WRITE, mappedSize, capacity));
+        } catch (IOException e) {
+          throw new IllegalStateException("Could not map segment of " + channel, e);
+        }
+        mappedSize += capacity;
+      } else {
+        segments.add(ByteBuffer.allocateDirect(capacity));
+      }
+    }
+    return segments.get(currentSegment);
+  }
+
+
+  /**
+   * Returns a buffer positioned at the supplied location.
+   *
+   * @param  location  of an encoded entry
+   *
+   * @return  byte buffer that does not share its position with storage
+   */
+  private ByteBuffer read(final long location)
+  {
+    final ByteBuffer buffer = segments.get((int) (location >>> SEGMENT_SHIFT)).duplicate();
+    buffer.position((int) (location & OFFSET_MASK));
+    return buffer;
+  }
+
+
+  /**
+   * Decodes only the DN of the entry at the supplied location.
+   *
+   * @param  location  of an encoded entry
+   *
+   * @return  entry DN
+   */
+  private String readDn(final long location)
+  {
+    return getString(read(location));
+  }
+
+
+  /**
+   * Decodes the entry at the supplied location.
+   *
+   * @param  location  of an encoded entry
+   *
+   * @return  ldap entry
+   */
+  private LdapEntry decode(final long location)
+  {
+    final ByteBuffer buffer = read(location);
+    final LdapEntry entry = new LdapEntry(getString(buffer));
+    final int attrCount = buffer.getInt();
+    for (int i = 0; i < attrCount; i++) {
+      final String name = getString(buffer);
+      final LdapAttribute attr = new LdapAttribute(buffer.get() == 1);
+      attr.setName(name);
+      final int valueCount = buffer.getInt();
+      for (int j = 0; j < valueCount; j++) {
+        final byte[] value = new byte[buffer.getInt()];
+        buffer.get(value);
+        if (attr.isBinary()) {
+          attr.addBinaryValue(value);
+        } else {
+          attr.addStringValue(new String(value, StandardCharsets.UTF_8));
+        }
+      }
+      entry.addAttribute(attr);
+    }
+    return entry;
+  }
+
+
+  /**
+   * Reads a length prefixed UTF-8 string.
+   *
+   * @param  buffer  to read from
+   *
+   * @return  string
+   */
+  private static String getString(final ByteBuffer buffer)
+  {
+    final byte[] bytes = new byte[buffer.getInt()];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+
+  /**
+   * Serializes this result as a {@link SearchResult} containing the same entries and references.
+   *
+   * @return  search result stored on the heap
+   *
+   * @throws  ObjectStreamException  never
+   */
+  protected Object writeReplace()
+    throws ObjectStreamException
+  {
+    final SearchResult result = new SearchResult(SortBehavior.ORDERED);
+    result.addEntries(getEntries());
+    result.addReferences(getReferences());
+    return result;
+  }
+
+
+  /** Iterates over the entries that have not been removed, decoding each. */
+  private final class EntryIterator implements Iterator<LdapEntry>
+  {
+
+    /** Index of the next entry. */
+    private int next = advance(0);
+
+
+    /**
+     * Returns the index of the first entry at or after the supplied index that has not been removed.
+     *
+     * @param  from  index to start at
+     *
+     * @return  entry index or the number of indexes used
+     */
+    private int advance(final int from)
+    {
+      int i = from;
+      while (i < count && locations[i] == REMOVED) {
+        i++;
+      }
+      return i;
+    }
+
+
+    @Override
+    public boolean hasNext()
+    {
+      return next < count;
+    }
+
+
+    @Override
+    public LdapEntry next()
+    {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      final LdapEntry entry = decode(locations[next]);
+      next = advance(next + 1);
+      return entry;
+    }
+  }
+}
@@ -4,6 +4,9 @@ package org.ldaptive;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import org.ldaptive.filter.Filter;
+import org.ldaptive.filter.FilterParser;
+import org.ldaptive.filter.FilterTemplate;
 
 /**
  * Simple bean for an ldap search filter and it's parameters.
@@ -16,12 +19,24 @@ public class SearchFilter
   /** hash code seed. */
   private static final int HASH_CODE_SEED = 311;
 
+  /** Upper case hex digits used to encode binary values. */
+  private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+  /** Mask for the low nibble of a byte. */
+  private static final int NIBBLE_MASK = 0x0F;
+
+  /** Bits in a nibble. */
+  private static final int NIBBLE_BITS = 4;
+
   /** filter. */
   private String searchFilter;
 
   /** filter parameters. */
   private final Map<String, Object> parameters = new HashMap<>();
 
+  /** parsed filter. */
+  private Filter parsedFilter;
+
 
   /** Default constructor. */
   public SearchFilter() {}
@@ -38,6 +53,22 @@ public class SearchFilter
   }
 
 
+  /**
+   * Creates a new search filter from the supplied parsed filter. Providers that accept structured filters use it
+   * directly rather than parsing the filter string.
+   *
+   * @param  filter  to set
+   */
+  public SearchFilter(final Filter filter)
+  {
+    if (filter == null) {
+      throw new IllegalArgumentException("Filter cannot be null");
+    }
+    searchFilter = filter.format();
+    parsedFilter = filter;
+  }
+
+
   /**
    * Creates a new search filter with the supplied filter and parameters.
    *
@@ -70,6 +101,32 @@ public class SearchFilter
   public void setFilter(final String filter)
   {
     searchFilter = filter;
+    parsedFilter = null;
+  }
+
+
+  /**
+   * Returns the parsed filter this search filter was created with.
+   *
+   * @return  parsed filter or null if this search filter was created from a string
+   */
+  public Filter getParsedFilter()
+  {
+    return parsedFilter;
+  }
+
+
+  /**
+   * Returns this filter with it's parameters replaced as a parsed filter. The parsed filter this search filter was
+   * created with is returned if no parameters have been set.
+   *
+   * @return  parsed filter
+   *
+   * @throws  IllegalArgumentException  if the formatted filter is not valid
+   */
+  public Filter parse()
+  {
+    return parsedFilter != null && parameters.isEmpty() ? parsedFilter : FilterParser.parse(format());
   }
 
 
@@ -129,16 +186,10 @@ public class SearchFilter
    */
   public String format()
   {
-    String s = searchFilter;
-    if (!parameters.isEmpty()) {
-      for (Map.Entry<String, Object> e : parameters.entrySet()) {
-        final String encoded = encode(e.getValue());
-        if (encoded != null) {
-          s = s.replace("{" + e.getKey() + "}", encoded);
-        }
-      }
+    if (parameters.isEmpty() || searchFilter == null) {
+      return searchFilter;
     }
-    return s;
+    return FilterTemplate.compile(searchFilter).format(parameters);
   }
 
 
@@ -155,11 +206,8 @@ public class SearchFilter
       return null;
     }
 
-    final char[] c = LdapUtils.hexEncode(value);
-    final StringBuilder sb = new StringBuilder(c.length + c.length / 2);
-    for (int i = 0; i < c.length; i += 2) {
-      sb.append('\\').append(c[i]).append(c[i + 1]);
-    }
+    final StringBuilder sb = new StringBuilder(value.length * 3);
+    appendEncoded(sb, value);
     return sb.toString();
   }
 
@@ -195,15 +243,28 @@ public class SearchFilter
       return null;
     }
 
-    final String str;
-    if (obj instanceof String) {
-      str = encodeValue((String) obj);
-    } else if (obj instanceof byte[]) {
-      str = encodeValue((byte[]) obj);
+    final StringBuilder sb = new StringBuilder();
+    appendEncoded(sb, obj);
+    return sb.toString();
+  }
+
+
+  /**
+   * Appends the encoded form of the supplied object to the supplied builder. Byte arrays are hex encoded, the string
+   * format of any other object is escaped per RFC 2254.
+   *
+   * @param  sb  to append to
+   * @param  obj  to encode
+   */
+  public static void appendEncoded(final StringBuilder sb, final Object obj)
+  {
+    if (obj instanceof byte[]) {
+      for (byte b : (byte[]) obj) {
+        sb.append('\\').append(HEX_DIGITS[(b >> NIBBLE_BITS) & NIBBLE_MASK]).append(HEX_DIGITS[b & NIBBLE_MASK]);
+      }
     } else {
-      str = encodeValue(obj.toString());
+      escape(sb, obj.toString());
     }
-    return str;
   }
 
 
@@ -215,9 +276,22 @@ public class SearchFilter
    * @return  escaped string
    */
   private static String escape(final String s)
+  {
+    final StringBuilder sb = new StringBuilder(s.length());
+    escape(sb, s);
+    return sb.toString();
+  }
+
+
+  /**
+   * Appends the supplied string to the supplied builder, escaping it per RFC 2254.
+   *
+   * @param  sb  to append to
+   * @param  s  to escape
+   */
+  private static void escape(final StringBuilder sb, final String s)
   {
     final int len = s.length();
-    final StringBuilder sb = new StringBuilder(len);
     char ch;
     for (int i = 0; i < len; i++) {
       ch = s.charAt(i);
@@ -247,7 +321,6 @@ public class SearchFilter
         sb.append(ch);
       }
     }
-    return sb.toString();
   }
 
 
@@ -1,11 +1,18 @@
 /* See LICENSE for licensing and NOTICE for copyright. */
 package org.ldaptive;
 
+import java.util.function.Function;
 import org.ldaptive.cache.Cache;
+import org.ldaptive.handler.ConcurrentSearchEntryHandler;
 import org.ldaptive.handler.HandlerResult;
+import org.ldaptive.handler.SearchEntryHandler;
+import org.ldaptive.handler.SearchReferenceHandler;
 import org.ldaptive.intermediate.IntermediateResponse;
+import org.ldaptive.provider.MultiplexedProviderConnection;
+import org.ldaptive.provider.ProviderConnection;
 import org.ldaptive.provider.SearchItem;
 import org.ldaptive.provider.SearchIterator;
+import org.ldaptive.referral.ConcurrentSearchReferenceHandler;
 
 /**
  * Executes an ldap search operation.
@@ -18,6 +25,9 @@ public class SearchOperation extends AbstractOperation<SearchRequest, SearchResu
   /** Cache to use when performing searches. */
   private Cache<SearchRequest> cache;
 
+  /** Creates the search result that entries are read into. */
+  private Function<SearchRequest, SearchResult> searchResultFactory;
+
 
   /**
    * Creates a new search operation.
@@ -66,6 +76,29 @@ public class SearchOperation extends AbstractOperation<SearchRequest, SearchResu
   }
 
 
+  /**
+   * Returns the factory that creates the search result entries are read into.
+   *
+   * @return  search result factory or null if a {@link SearchResult} is created
+   */
+  public Function<SearchRequest, SearchResult> getSearchResultFactory()
+  {
+    return searchResultFactory;
+  }
+
+
+  /**
+   * Sets the factory that creates the search result entries are read into. Use this to read large results directly
+   * into an {@link OffHeapSearchResult}.
+   *
+   * @param  factory  search result factory
+   */
+  public void setSearchResultFactory(final Function<SearchRequest, SearchResult> factory)
+  {
+    searchResultFactory = factory;
+  }
+
+
   @Override
   protected Response<SearchResult> invoke(final SearchRequest request)
     throws LdapException
@@ -100,8 +133,22 @@ public class SearchOperation extends AbstractOperation<SearchRequest, SearchResu
   protected Response<SearchResult> executeSearch(final SearchRequest request)
     throws LdapException
   {
-    final SearchIterator si = getConnection().getProviderConnection().search(request);
-    final SearchResult result = readResult(request, si);
+    final ProviderConnection conn = getConnection().getProviderConnection();
+    // handlers may perform operations on this connection while its results are still being read
+    final boolean nested = conn instanceof MultiplexedProviderConnection && hasHandlers(request);
+    if (nested) {
+      ((MultiplexedProviderConnection) conn).beginNestedOperations();
+    }
+    final SearchIterator si;
+    final SearchResult result;
+    try {
+      si = conn.search(request);
+      result = readResult(request, si);
+    } finally {
+      if (nested) {
+        ((MultiplexedProviderConnection) conn).endNestedOperations();
+      }
+    }
     final Response<Void> response = si.getResponse();
     return
       new Response<>(
@@ -129,14 +176,22 @@ public class SearchOperation extends AbstractOperation<SearchRequest, SearchResu
   protected SearchResult readResult(final SearchRequest request, final SearchIterator si)
     throws LdapException
   {
-    final SearchResult result = new SearchResult(request.getSortBehavior());
+    final SearchResult result = createSearchResult(request);
+    final ConcurrentSearchReferenceHandler.ReferenceChase chase = startReferenceChase(request);
+    final ConcurrentSearchEntryHandler.HandlerExecution execution = startHandlerExecution(request);
     try {
       while (si.hasNext()) {
         final SearchItem item = si.next();
         logger.trace("Received search item={}", item);
         if (item.isSearchEntry()) {
           final SearchEntry se = item.getSearchEntry();
-          if (se != null) {
+          if (se != null && execution != null) {
+            execution.submit(se, result);
+            if (execution.isAborted()) {
+              logger.debug("Aborting search on entry=%s", se);
+              break;
+            }
+          } else if (se != null) {
             final HandlerResult<SearchEntry> hr = executeHandlers(request.getSearchEntryHandlers(), request, se);
             if (hr.getResult() != null) {
               result.addEntry(hr.getResult());
@@ -148,7 +203,9 @@ public class SearchOperation extends AbstractOperation<SearchRequest, SearchResu
           }
         } else if (item.isSearchReference()) {
           final SearchReference sr = item.getSearchReference();
-          if (sr != null) {
+          if (sr != null && chase != null) {
+            chase.submit(sr);
+          } else if (sr != null) {
             final HandlerResult<SearchReference> hr = executeHandlers(
               request.getSearchReferenceHandlers(),
               request,
@@ -184,10 +241,115 @@ public class SearchOperation extends AbstractOperation<SearchRequest, SearchResu
             }
           }
         }
+        if (chase != null) {
+          chase.drain(result);
+        }
+        if (execution != null) {
+          execution.drain(result);
+        }
+      }
+      if (execution != null) {
+        execution.complete(result);
+      }
+      if (chase != null) {
+        chase.complete(result);
       }
     } finally {
+      if (execution != null) {
+        execution.cancel();
+      }
+      if (chase != null) {
+        chase.cancel();
+      }
       si.close();
     }
     return result;
   }
+
+
+  /**
+   * Creates the search result that entries for the supplied request are read into.
+   *
+   * @param  request  search request
+   *
+   * @return  search result from the search result factory, or a search result with the request sort behavior if no
+   *          factory is configured
+   */
+  protected SearchResult createSearchResult(final SearchRequest request)
+  {
+    return searchResultFactory != null ?
+      searchResultFactory.apply(request) : new SearchResult(request.getSortBehavior());
+  }
+
+
+  /**
+   * Returns whether the supplied request has any entry, reference or intermediate response handlers.
+   *
+   * @param  request  search request
+   *
+   * @return  whether the request has handlers
+   */
+  protected boolean hasHandlers(final SearchRequest request)
+  {
+    return
+      hasElements(request.getSearchEntryHandlers()) ||
+      hasElements(request.getSearchReferenceHandlers()) ||
+      hasElements(request.getIntermediateResponseHandlers());
+  }
+
+
+  /**
+   * Returns whether the supplied array is not null and not empty.
+   *
+   * @param  array  to inspect
+   *
+   * @return  whether the array has elements
+   */
+  private static boolean hasElements(final Object[] array)
+  {
+    return array != null && array.length > 0;
+  }
+
+
+  /**
+   * Begins concurrent entry handling if the request contains a {@link ConcurrentSearchEntryHandler}.
+   *
+   * @param  request  search request
+   *
+   * @return  handler execution or null if entries should be handled by the reading thread
+   */
+  protected ConcurrentSearchEntryHandler.HandlerExecution startHandlerExecution(final SearchRequest request)
+  {
+    ConcurrentSearchEntryHandler.HandlerExecution execution = null;
+    if (request.getSearchEntryHandlers() != null) {
+      for (SearchEntryHandler handler : request.getSearchEntryHandlers()) {
+        if (execution == null && handler instanceof ConcurrentSearchEntryHandler) {
+          execution = ((ConcurrentSearchEntryHandler) handler).start(getConnection(), request);
+        }
+      }
+    }
+    return execution;
+  }
+
+
+  /**
+   * Begins a concurrent reference chase if the request contains a {@link ConcurrentSearchReferenceHandler}. Search
+   * reference handlers are not invoked for references that are chased.
+   *
+   * @param  request  search request
+   *
+   * @return  reference chase or null if references should be handled by the search reference handlers
+   */
+  protected ConcurrentSearchReferenceHandler.ReferenceChase startReferenceChase(final SearchRequest request)
+  {
+    ConcurrentSearchReferenceHandler.ReferenceChase chase = null;
+    if (request.getSearchReferenceHandlers() != null) {
+      for (SearchReferenceHandler handler : request.getSearchReferenceHandlers()) {
+        if (chase == null && handler instanceof ConcurrentSearchReferenceHandler) {
+          chase = ((ConcurrentSearchReferenceHandler) handler).start(getConnection(), request);
+        }
+      }
+    }
+    return chase;
+  }
 }
@@ -6,6 +6,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
@@ -286,19 +287,19 @@ public class SearchResult extends AbstractLdapBean
    */
   public SearchResult subResult(final int fromIndex, final int toIndex)
   {
-    if (fromIndex < 0 || toIndex > resultEntries.size() || fromIndex > toIndex) {
+    if (fromIndex < 0 || toIndex > size() || fromIndex > toIndex) {
       throw new IndexOutOfBoundsException("Illegal index value");
     }
 
     final SearchResult result = new SearchResult(getSortBehavior());
-    if (resultEntries.isEmpty() || fromIndex == toIndex) {
+    if (fromIndex == toIndex) {
       return result;
     }
 
     int i = 0;
-    for (Map.Entry<String, LdapEntry> e : resultEntries.entrySet()) {
+    for (LdapEntry e : getEntries()) {
       if (i >= fromIndex && i < toIndex) {
-        result.addEntry(e.getValue());
+        result.addEntry(e);
       }
       i++;
     }
@@ -332,17 +333,35 @@ public class SearchResult extends AbstractLdapBean
     }
     if (o instanceof SearchResult) {
       final SearchResult v = (SearchResult) o;
-      return LdapUtils.areEqual(resultEntries, v.resultEntries) &&
-             LdapUtils.areEqual(searchReferences, v.searchReferences);
+      return areEntriesEqual(v) && LdapUtils.areEqual(getReferences(), v.getReferences());
     }
     return false;
   }
 
 
+  /**
+   * Returns whether the supplied result contains the same entries as this result, without regard to order.
+   *
+   * @param  result  to compare
+   *
+   * @return  whether both results contain equal entries with the same DNs
+   */
+  private boolean areEntriesEqual(final SearchResult result)
+  {
+    boolean equal = size() == result.size();
+    final Iterator<LdapEntry> i = getEntries().iterator();
+    while (equal && i.hasNext()) {
+      final LdapEntry e = i.next();
+      equal = LdapUtils.areEqual(e, result.getEntry(e.getDn()));
+    }
+    return equal;
+  }
+
+
   @Override
   public int hashCode()
   {
-    return LdapUtils.computeHashCode(HASH_CODE_SEED, resultEntries.values(), searchReferences);
+    return LdapUtils.computeHashCode(HASH_CODE_SEED, getEntries(), getReferences());
   }
 
 
@@ -354,8 +373,8 @@ public class SearchResult extends AbstractLdapBean
         "[%s@%d::entries=%s, references=%s]",
         getClass().getName(),
         hashCode(),
-        resultEntries.values(),
-        searchReferences);
+        getEntries(),
+        getReferences());
   }
 
 
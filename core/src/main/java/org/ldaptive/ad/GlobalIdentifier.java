@@ -1,10 +1,6 @@
 /* See LICENSE for licensing and NOTICE for copyright. */
 package org.ldaptive.ad;
 
-import java.nio.ByteBuffer;
-import java.util.StringTokenizer;
-import org.ldaptive.LdapUtils;
-
 /**
  * Class to represent an active directory GUID. Provides conversion from binary to string and vice versa.
  *
@@ -13,6 +9,27 @@ import org.ldaptive.LdapUtils;
 public final class GlobalIdentifier
 {
 
+  /** Number of bytes in a GUID. */
+  private static final int GUID_LENGTH = 16;
+
+  /** Number of characters in the string format of a GUID, including braces. */
+  private static final int STRING_LENGTH = 38;
+
+  /**
+   * Index of each byte of the binary format in the order it appears in the string format. The first three groups are
+   * little endian in the binary format.
+   */
+  private static final int[] BYTE_ORDER = {3, 2, 1, 0, 5, 4, 7, 6, 8, 9, 10, 11, 12, 13, 14, 15};
+
+  /** Index of the first hex character of each byte in the string format, in the order of {@link #BYTE_ORDER}. */
+  private static final int[] CHAR_POSITION = {1, 3, 5, 7, 10, 12, 15, 17, 20, 22, 25, 27, 29, 31, 33, 35};
+
+  /** Index of each dash in the string format. */
+  private static final int[] DASH_POSITION = {9, 14, 19, 24};
+
+  /** Hex characters. */
+  private static final char[] HEX_CHARS = "0123456789ABCDEF".toCharArray();
+
 
   /** Default constructor. */
   private GlobalIdentifier() {}
@@ -27,36 +44,25 @@ public final class GlobalIdentifier
    */
   public static String toString(final byte[] guid)
   {
-    // CheckStyle:MagicNumber OFF
-
-    // create a byte buffer for reading the guid
-    final ByteBuffer guidBuffer = ByteBuffer.wrap(guid);
-
-    // string identifier
-    final StringBuilder sb = new StringBuilder("{");
-    // encode the first 4 bytes, big endian
-    guidBuffer.limit(4);
-    sb.append(LdapUtils.hexEncode(getBytes(guidBuffer, true)));
-
-    // encode the next 2 bytes, big endian
-    guidBuffer.limit(6);
-    sb.append("-").append(LdapUtils.hexEncode(getBytes(guidBuffer, true)));
-
-    // encode the next 2 bytes, big endian
-    guidBuffer.limit(8);
-    sb.append("-").append(LdapUtils.hexEncode(getBytes(guidBuffer, true)));
-
-    // encode the next 2 bytes, little endian
-    guidBuffer.limit(10);
-    sb.append("-").append(LdapUtils.hexEncode(getBytes(guidBuffer, false)));
-
-    // encode the last 6 bytes, little endian
-    guidBuffer.limit(guidBuffer.capacity());
-    sb.append("-").append(LdapUtils.hexEncode(getBytes(guidBuffer, false)));
-    sb.append("}");
+    if (guid.length != GUID_LENGTH) {
+      throw new IllegalArgumentException("GUID must be " + GUID_LENGTH + " bytes");
+    }
 
-    return sb.toString();
+    // CheckStyle:MagicNumber OFF
+    final char[] c = new char[STRING_LENGTH];
+    c[0] = '{';
+    for (int i = 0; i < GUID_LENGTH; i++) {
+      final int b = guid[BYTE_ORDER[i]] & 0xFF;
+      c[CHAR_POSITION[i]] = HEX_CHARS[b >>> 4];
+      c[CHAR_POSITION[i] + 1] = HEX_CHARS[b & 0x0F];
+    }
+    for (int pos : DASH_POSITION) {
+      c[pos] = '-';
+    }
+    c[STRING_LENGTH - 1] = '}';
     // CheckStyle:MagicNumber ON
+
+    return new String(c);
   }
 
 
@@ -69,80 +75,54 @@ public final class GlobalIdentifier
    */
   public static byte[] toBytes(final String guid)
   {
-    // CheckStyle:MagicNumber OFF
-
-    // remove the enclosing brackets {...}
-    final StringTokenizer st = new StringTokenizer(guid.substring(1, guid.length() - 1), "-");
-    // first token is 4 bytes, big endian
-    final String data1 = st.nextToken();
-    // second token is 2 bytes, big endian
-    final String data2 = st.nextToken();
-    // third token is 2 bytes, big endian
-    final String data3 = st.nextToken();
-    // fourth token is 2 bytes, little endian
-    final String data4 = st.nextToken();
-    // fifth token is 6 bytes, little endian
-    final String data5 = st.nextToken();
-
-    final ByteBuffer guidBuffer = ByteBuffer.allocate(16);
-    putBytes(guidBuffer, LdapUtils.hexDecode(data1.toCharArray()), true);
-    putBytes(guidBuffer, LdapUtils.hexDecode(data2.toCharArray()), true);
-    putBytes(guidBuffer, LdapUtils.hexDecode(data3.toCharArray()), true);
-    putBytes(guidBuffer, LdapUtils.hexDecode(data4.toCharArray()), false);
-    putBytes(guidBuffer, LdapUtils.hexDecode(data5.toCharArray()), false);
-
-    return guidBuffer.array();
-    // CheckStyle:MagicNumber ON
-  }
-
+    if (guid.length() != STRING_LENGTH || guid.charAt(0) != '{' || guid.charAt(STRING_LENGTH - 1) != '}') {
+      throw new IllegalArgumentException("Invalid GUID " + guid);
+    }
+    for (int pos : DASH_POSITION) {
+      if (guid.charAt(pos) != '-') {
+        throw new IllegalArgumentException("Invalid GUID " + guid);
+      }
+    }
 
-  /**
-   * Reads bytes from the supplied byte buffer. The byte buffer limit must be set appropriately by the caller.
-   *
-   * @param  buffer  to read bytes from
-   * @param  bigEndian  whether to return the bytes as big endian
-   *
-   * @return  long value
-   */
-  private static byte[] getBytes(final ByteBuffer buffer, final boolean bigEndian)
-  {
     // CheckStyle:MagicNumber OFF
-    final byte[] bytes = new byte[buffer.limit() - buffer.position()];
-    if (bigEndian) {
-      int offset = bytes.length - 1;
-      while (buffer.hasRemaining()) {
-        bytes[offset--] = (byte) (buffer.get() & 0xFF);
-      }
-    } else {
-      int offset = 0;
-      while (buffer.hasRemaining()) {
-        bytes[offset++] = (byte) (buffer.get() & 0xFF);
-      }
+    final byte[] bytes = new byte[GUID_LENGTH];
+    for (int i = 0; i < GUID_LENGTH; i++) {
+      final int high = hexValue(guid, CHAR_POSITION[i]);
+      final int low = hexValue(guid, CHAR_POSITION[i] + 1);
+      bytes[BYTE_ORDER[i]] = (byte) ((high << 4) | low);
     }
-    return bytes;
     // CheckStyle:MagicNumber ON
+
+    return bytes;
   }
 
 
   /**
-   * Writes a long into the supplied byte buffer. The byte buffer limit must be set appropriately by the caller.
+   * Returns the value of the hex character at the supplied index.
+   *
+   * @param  guid  string format of the GUID
+   * @param  i  index of the hex character
    *
-   * @param  buffer  to write long to
-   * @param  bytes  to write
-   * @param  bigEndian  whether to write the bytes as big endian
+   * @return  value between 0 and 15
    */
-  private static void putBytes(final ByteBuffer buffer, final byte[] bytes, final boolean bigEndian)
+  private static int hexValue(final String guid, final int i)
   {
+    final char c = guid.charAt(i);
+    final int value;
     // CheckStyle:MagicNumber OFF
-    if (bigEndian) {
-      for (int i = bytes.length - 1; i >= 0; i--) {
-        buffer.put((byte) (bytes[i] & 0xFF));
-      }
+    if (c >= '0' && c <= '9') {
+      value = c - '0';
+    } else if (c >= 'A' && c <= 'F') {
+      value = c - 'A' + 10;
+    } else if (c >= 'a' && c <= 'f') {
+      value = c - 'a' + 10;
     } else {
-      for (byte b : bytes) {
-        buffer.put((byte) (b & 0xFF));
-      }
+      value = -1;
     }
     // CheckStyle:MagicNumber ON
+    if (value < 0) {
+      throw new IllegalArgumentException("Invalid hex character '" + c + "' in GUID " + guid);
+    }
+    return value;
   }
 }
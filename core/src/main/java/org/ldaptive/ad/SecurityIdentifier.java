@@ -1,11 +1,6 @@
 /* See LICENSE for licensing and NOTICE for copyright. */
 package org.ldaptive.ad;
 
-import java.nio.ByteBuffer;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.StringTokenizer;
-
 /**
  * Class to represent an active directory SID. Provides conversion from binary to string and vice versa.
  *
@@ -14,6 +9,12 @@ import java.util.StringTokenizer;
 public final class SecurityIdentifier
 {
 
+  /** Number of bytes preceding the sub-authorities. */
+  private static final int HEADER_LENGTH = 8;
+
+  /** Number of bytes in a sub-authority. */
+  private static final int SUB_AUTHORITY_LENGTH = 4;
+
 
   /** Default constructor. */
   private SecurityIdentifier() {}
@@ -36,28 +37,38 @@ public final class SecurityIdentifier
     // X: authority
     // Yn: sub-authority
 
-    // create a byte buffer for reading the sid
-    final ByteBuffer sidBuffer = ByteBuffer.wrap(sid);
+    // byte[1] is the count of sub-authorities
+    final int countSubAuth = sid[1] & 0xFF;
+    if (sid.length < HEADER_LENGTH + countSubAuth * SUB_AUTHORITY_LENGTH) {
+      throw new IllegalArgumentException("SID of length " + sid.length + " cannot contain " + countSubAuth +
+        " sub-authorities");
+    }
 
-    // string identifier
-    final StringBuilder sb = new StringBuilder("S");
+    // each sub-authority is at most 10 digits
+    final StringBuilder sb = new StringBuilder(24 + countSubAuth * 11);
+    sb.append('S');
 
     // byte[0] is the revision
-    sb.append("-").append(sidBuffer.get() & 0xFF);
-
-    // byte[1] is the count of sub-authorities
-    final int countSubAuth = sidBuffer.get() & 0xFF;
+    sb.append('-').append(sid[0] & 0xFF);
 
-    // byte[2] - byte[7] is the authority (48 bits)
-    sidBuffer.limit(8);
-    sb.append("-").append(getLong(sidBuffer, true));
+    // byte[2] - byte[7] is the authority (48 bits, big endian)
+    long authority = 0;
+    for (int i = 2; i < HEADER_LENGTH; i++) {
+      authority = (authority << Byte.SIZE) | (sid[i] & 0xFF);
+    }
+    sb.append('-').append(authority & 0xFFFFFFFFL);
 
     // byte[8] - ? is the sub-authorities,
     // (32 bits per authority, little endian)
     for (int i = 0; i < countSubAuth; i++) {
-      // values are unsigned, so get 4 bytes as a long
-      sidBuffer.limit(sidBuffer.position() + 4);
-      sb.append("-").append(getLong(sidBuffer, false));
+      final int offset = HEADER_LENGTH + i * SUB_AUTHORITY_LENGTH;
+      // values are unsigned, so read 4 bytes as a long
+      final long subAuthority =
+        (sid[offset] & 0xFFL) |
+        (sid[offset + 1] & 0xFFL) << 8 |
+        (sid[offset + 2] & 0xFFL) << 16 |
+        (sid[offset + 3] & 0xFFL) << 24;
+      sb.append('-').append(subAuthority);
     }
 
     return sb.toString();
@@ -82,96 +93,95 @@ public final class SecurityIdentifier
     // X: authority
     // Yn: sub-authority
 
-    final StringTokenizer st = new StringTokenizer(sid, "-");
-    // first token is the 'S'
-    st.nextToken();
-
-    // second token is the revision
-    final int revision = Integer.valueOf(st.nextToken());
-    // third token is the authority
-    final long authority = Long.valueOf(st.nextToken());
-    // remaining token are the sub authorities
-    final List<String> subAuthorities = new ArrayList<>();
-    while (st.hasMoreTokens()) {
-      subAuthorities.add(st.nextToken());
+    // count the components following the 'S'
+    int components = 0;
+    for (int i = 0; i < sid.length(); i++) {
+      if (sid.charAt(i) == '-') {
+        components++;
+      }
     }
+    if (components < 2 || sid.charAt(sid.length() - 1) == '-') {
+      throw new IllegalArgumentException("Invalid SID " + sid);
+    }
+    final int countSubAuth = components - 2;
 
     // revision is 1 byte
     // sub-authorities count is 1 byte
     // authority is 6 bytes
     // 4 bytes for each sub-authority
-    final int size = 8 + (4 * subAuthorities.size());
-    final ByteBuffer sidBuffer = ByteBuffer.allocate(size);
-    sidBuffer.put((byte) (revision & 0xFF));
-    sidBuffer.put((byte) (subAuthorities.size() & 0xFF));
-    sidBuffer.limit(8);
-    putLong(sidBuffer, authority, true);
-    for (String subAuthority : subAuthorities) {
-      sidBuffer.limit(sidBuffer.position() + 4);
-      putLong(sidBuffer, Long.valueOf(subAuthority), false);
+    final byte[] bytes = new byte[HEADER_LENGTH + SUB_AUTHORITY_LENGTH * countSubAuth];
+
+    // first component is the 'S', second is the revision
+    int pos = sid.indexOf('-') + 1;
+    int end = sid.indexOf('-', pos);
+    bytes[0] = (byte) (parseLong(sid, pos, end) & 0xFF);
+    bytes[1] = (byte) (countSubAuth & 0xFF);
+
+    // third component is the authority
+    pos = end + 1;
+    end = nextComponent(sid, pos);
+    final long authority = parseLong(sid, pos, end);
+    for (int i = HEADER_LENGTH - 1; i >= 2; i--) {
+      bytes[i] = (byte) ((authority >> (Byte.SIZE * (HEADER_LENGTH - 1 - i))) & 0xFF);
     }
 
-    return sidBuffer.array();
+    // remaining components are the sub authorities
+    for (int i = 0; i < countSubAuth; i++) {
+      pos = end + 1;
+      end = nextComponent(sid, pos);
+      final long subAuthority = parseLong(sid, pos, end);
+      final int offset = HEADER_LENGTH + i * SUB_AUTHORITY_LENGTH;
+      for (int j = 0; j < SUB_AUTHORITY_LENGTH; j++) {
+        bytes[offset + j] = (byte) ((subAuthority >> (Byte.SIZE * j)) & 0xFF);
+      }
+    }
+
+    return bytes;
     // CheckStyle:MagicNumber ON
   }
 
 
   /**
-   * Reads a long from the supplied byte buffer. The byte buffer limit must be set appropriately by the caller.
+   * Returns the index of the dash that ends the component beginning at the supplied position.
    *
-   * @param  buffer  to read long from
-   * @param  bigEndian  whether to read the bytes as big endian
+   * @param  sid  string format of the SID
+   * @param  pos  beginning of the component
    *
-   * @return  long value
+   * @return  index of the next dash or the length of the SID
    */
-  private static long getLong(final ByteBuffer buffer, final boolean bigEndian)
+  private static int nextComponent(final String sid, final int pos)
   {
-    // CheckStyle:MagicNumber OFF
-    long value = buffer.get() & 0xFF;
-    if (bigEndian) {
-      // shift the value to the right, or with the next byte
-      while (buffer.hasRemaining()) {
-        value <<= Byte.SIZE;
-        value |= buffer.get() & 0xFF;
-      }
-    } else {
-      // shift the next byte to the right, or with the value
-      int offset = Byte.SIZE;
-      while (buffer.hasRemaining()) {
-        value |= (buffer.get() & 0xFF) << offset;
-        offset += Byte.SIZE;
-      }
-    }
-    return value & 0xFFFFFFFFL;
-    // CheckStyle:MagicNumber ON
+    final int end = sid.indexOf('-', pos);
+    return end >= 0 ? end : sid.length();
   }
 
 
   /**
-   * Writes a long into the supplied byte buffer. The byte buffer limit must be set appropriately by the caller.
+   * Parses the decimal number between the supplied indexes.
+   *
+   * @param  sid  string format of the SID
+   * @param  start  index of the first digit, inclusive
+   * @param  end  index of the last digit, exclusive
+   *
+   * @return  parsed number
    *
-   * @param  buffer  to write long to
-   * @param  value  to write
-   * @param  bigEndian  whether to write the bytes as big endian
+   * @throws  NumberFormatException  if the component is empty or contains a character that is not a digit
    */
-  private static void putLong(final ByteBuffer buffer, final long value, final boolean bigEndian)
+  private static long parseLong(final String sid, final int start, final int end)
   {
     // CheckStyle:MagicNumber OFF
-    if (bigEndian) {
-      int offset = Byte.SIZE * (buffer.limit() - buffer.position() - 1);
-      while (buffer.hasRemaining()) {
-        // get the high bits and decrement down
-        buffer.put((byte) ((value >> offset) & 0xFF));
-        offset -= Byte.SIZE;
-      }
-    } else {
-      int offset = 0;
-      while (buffer.hasRemaining()) {
-        // get the low bits and increment up
-        buffer.put((byte) ((value >> offset) & 0xFF));
-        offset += Byte.SIZE;
+    if (start >= end || end - start > 18) {
+      throw new NumberFormatException("Invalid SID component in " + sid);
+    }
+    long value = 0;
+    for (int i = start; i < end; i++) {
+      final char c = sid.charAt(i);
+      if (c < '0' || c > '9') {
+        throw new NumberFormatException("Invalid SID component in " + sid);
       }
+      value = value * 10 + c - '0';
     }
+    return value;
     // CheckStyle:MagicNumber ON
   }
 }
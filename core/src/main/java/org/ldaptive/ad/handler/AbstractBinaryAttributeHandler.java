@@ -8,6 +8,7 @@ import org.ldaptive.LdapUtils;
 import org.ldaptive.SearchEntry;
 import org.ldaptive.SearchRequest;
 import org.ldaptive.handler.AbstractSearchEntryHandler;
+import org.ldaptive.handler.AttributeEntryHandler;
 
 /**
  * Base class for entry handlers that convert a binary attribute to it's string form.
@@ -15,6 +16,7 @@ import org.ldaptive.handler.AbstractSearchEntryHandler;
  * @author  Middleware Services
  */
 public abstract class AbstractBinaryAttributeHandler extends AbstractSearchEntryHandler
+  implements AttributeEntryHandler
 {
 
   /** hash code seed. */
@@ -52,18 +54,9 @@ public abstract class AbstractBinaryAttributeHandler extends AbstractSearchEntry
   {
     for (LdapAttribute la : entry.getAttributes()) {
       if (attributeName.equalsIgnoreCase(la.getName())) {
-        if (la.isBinary()) {
-          final LdapAttribute newAttr = new LdapAttribute(la.getSortBehavior());
-          newAttr.setName(la.getName());
-          for (byte[] b : la.getBinaryValues()) {
-            newAttr.addStringValue(convertValue(b));
-          }
+        final LdapAttribute newAttr = processAttribute(conn, request, la);
+        if (newAttr != la) {
           entry.addAttribute(newAttr);
-          logger.debug("Processed attribute {}", newAttr);
-          handleAttribute(conn, request, newAttr);
-        } else {
-          logger.warn("Attribute {} must be set as a binary attribute", attributeName);
-          handleAttribute(conn, request, la);
         }
       } else {
         handleAttribute(conn, request, la);
@@ -72,6 +65,41 @@ public abstract class AbstractBinaryAttributeHandler extends AbstractSearchEntry
   }
 
 
+  @Override
+  public String[] getHandledAttributeNames()
+  {
+    return new String[] {attributeName};
+  }
+
+
+  @Override
+  public String processDn(final Connection conn, final SearchRequest request, final String dn)
+  {
+    return dn;
+  }
+
+
+  @Override
+  public LdapAttribute processAttribute(final Connection conn, final SearchRequest request, final LdapAttribute attr)
+    throws LdapException
+  {
+    final LdapAttribute processed;
+    if (attr.isBinary()) {
+      processed = new LdapAttribute(attr.getSortBehavior());
+      processed.setName(attr.getName());
+      for (byte[] b : attr.getBinaryValues()) {
+        processed.addStringValue(convertValue(b));
+      }
+      logger.debug("Processed attribute {}", processed);
+    } else {
+      logger.warn("Attribute {} must be set as a binary attribute", attributeName);
+      processed = attr;
+    }
+    handleAttribute(conn, request, processed);
+    return processed;
+  }
+
+
   /**
    * Converts the supplied binary value to it's string form.
    *
@@ -3,8 +3,6 @@ package org.ldaptive.ad.handler;
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import org.ldaptive.Connection;
 import org.ldaptive.LdapAttribute;
 import org.ldaptive.LdapException;
@@ -37,38 +35,32 @@ public class RangeEntryHandler extends AbstractSearchEntryHandler
   /** The character indicating that the end of the range has been reached. */
   private static final String END_OF_RANGE = "*";
 
-  /** The format used to calculate attribute IDs for subsequent searches. */
-  private static final String RANGE_FORMAT = "%1$s;Range=%2$s-%3$s";
-
-  /** The expression matching the range attribute ID "&lt;id&gt;range=&lt;X&gt;-&lt;Y&gt;". */
-  private static final String RANGE_PATTERN_STRING = "^(.*?);Range=([\\d\\*]+)-([\\d\\*]+)";
-
-  /** The pattern matching the range attribute ID. */
-  private static final Pattern RANGE_PATTERN = Pattern.compile(RANGE_PATTERN_STRING, Pattern.CASE_INSENSITIVE);
+  /** The range option, "&lt;id&gt;;range=&lt;X&gt;-&lt;Y&gt;", used to compute attribute IDs of later searches. */
+  private static final String RANGE_OPTION = ";Range=";
 
 
   @Override
   protected void handleAttributes(final Connection conn, final SearchRequest request, final SearchEntry entry)
     throws LdapException
   {
-    final Map<LdapAttribute, Matcher> matchingAttrs = new HashMap<>();
+    final Map<LdapAttribute, String[]> matchingAttrs = new HashMap<>();
     for (LdapAttribute la : entry.getAttributes()) {
-      // Match attribute ID against the pattern
-      final Matcher matcher = RANGE_PATTERN.matcher(la.getName());
+      // Match attribute ID against the range syntax
+      final String[] range = parseRange(la.getName());
 
-      // If the attribute ID matches the pattern
-      if (matcher.find()) {
-        matchingAttrs.put(la, matcher);
+      // If the attribute ID contains the range syntax
+      if (range != null) {
+        matchingAttrs.put(la, range);
       }
     }
 
-    for (Map.Entry<LdapAttribute, Matcher> mEntry : matchingAttrs.entrySet()) {
+    for (Map.Entry<LdapAttribute, String[]> mEntry : matchingAttrs.entrySet()) {
       final LdapAttribute la = mEntry.getKey();
-      final Matcher matcher = mEntry.getValue();
-      final String msg = String.format("attribute '%s' entry '%s'", la.getName(), entry.getDn());
+      final String[] range = mEntry.getValue();
+      final String msg = "attribute '" + la.getName() + "' entry '" + entry.getDn() + "'";
 
       // Determine the attribute name without the range syntax
-      final String attrTypeName = matcher.group(1);
+      final String attrTypeName = range[0];
       logger.debug("Found Range option {}", msg);
       if (attrTypeName == null || attrTypeName.isEmpty()) {
         logger.error("Unable to determine the attribute type name for {}", msg);
@@ -98,11 +90,11 @@ public class RangeEntryHandler extends AbstractSearchEntryHandler
 
         // Determine next attribute ID
         // CheckStyle:MagicNumber OFF
-        final int start = Integer.parseInt(matcher.group(2));
-        final int end = Integer.parseInt(matcher.group(3));
+        final int start = Integer.parseInt(range[1]);
+        final int end = Integer.parseInt(range[2]);
         // CheckStyle:MagicNumber ON
         final int diff = end - start;
-        final String nextAttrID = String.format(RANGE_FORMAT, attrTypeName, end + 1, end + diff + 1);
+        final String nextAttrID = attrTypeName + RANGE_OPTION + (end + 1) + '-' + (end + diff + 1);
 
         // Search for next increment of values
         logger.debug("Searching for '{}' to increment {}", nextAttrID, msg);
@@ -121,6 +113,73 @@ public class RangeEntryHandler extends AbstractSearchEntryHandler
   }
 
 
+  /**
+   * Parses the range option of the supplied attribute name. The first occurrence of ";range=" that is followed by
+   * "&lt;X&gt;-&lt;Y&gt;" is used, where X and Y consist of digits and '*'. The option name is not case sensitive.
+   *
+   * @param  name  of the attribute
+   *
+   * @return  attribute type name, X and Y or null if the name does not contain a range option
+   */
+  private static String[] parseRange(final String name)
+  {
+    String[] range = null;
+    int pos = indexOfRange(name, 0);
+    while (range == null && pos >= 0) {
+      final int startBegin = pos + RANGE_OPTION.length();
+      final int startEnd = skipRangeChars(name, startBegin);
+      if (startEnd > startBegin && startEnd < name.length() && name.charAt(startEnd) == '-') {
+        final int endEnd = skipRangeChars(name, startEnd + 1);
+        if (endEnd > startEnd + 1) {
+          range = new String[] {
+            name.substring(0, pos),
+            name.substring(startBegin, startEnd),
+            name.substring(startEnd + 1, endEnd),
+          };
+        }
+      }
+      pos = indexOfRange(name, pos + 1);
+    }
+    return range;
+  }
+
+
+  /**
+   * Returns the index of the next range option in the supplied attribute name, ignoring case.
+   *
+   * @param  name  of the attribute
+   * @param  from  index to begin searching at
+   *
+   * @return  index of the range option or -1
+   */
+  private static int indexOfRange(final String name, final int from)
+  {
+    int pos = name.indexOf(';', from);
+    while (pos >= 0 && !name.regionMatches(true, pos, RANGE_OPTION, 0, RANGE_OPTION.length())) {
+      pos = name.indexOf(';', pos + 1);
+    }
+    return pos;
+  }
+
+
+  /**
+   * Returns the index of the first character at or after the supplied index that is not a digit or '*'.
+   *
+   * @param  name  of the attribute
+   * @param  from  index to begin at
+   *
+   * @return  index of the first character that is not part of a range value
+   */
+  private static int skipRangeChars(final String name, final int from)
+  {
+    int pos = from;
+    while (pos < name.length() && (name.charAt(pos) == '*' || (name.charAt(pos) >= '0' && name.charAt(pos) <= '9'))) {
+      pos++;
+    }
+    return pos;
+  }
+
+
   @Override
   public boolean equals(final Object o)
   {
@@ -2,7 +2,7 @@
 package org.ldaptive.ad.io;
 
 import java.time.Instant;
-import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import org.ldaptive.io.AbstractStringValueTranscoder;
 
@@ -20,19 +20,26 @@ public class FileTimeValueTranscoder extends AbstractStringValueTranscoder<Zoned
   /** File time uses 100-nanosecond intervals. For conversion purposes this is 1x10^6 / 100. */
   private static final long ONE_HUNDRED_NANOSECOND_INTERVAL = 10000L;
 
+  /** Number of nanoseconds in a millisecond. */
+  private static final int NANOS_PER_MILLI = 1000000;
+
+  /** Number of milliseconds in a second. */
+  private static final long MILLIS_PER_SECOND = 1000L;
+
 
   @Override
   public ZonedDateTime decodeStringValue(final String value)
   {
     final Instant i = Instant.ofEpochMilli(Long.parseLong(value) / ONE_HUNDRED_NANOSECOND_INTERVAL - ERA_OFFSET);
-    return ZonedDateTime.ofInstant(i, ZoneId.of("Z"));
+    return ZonedDateTime.ofInstant(i, ZoneOffset.UTC);
   }
 
 
   @Override
   public String encodeStringValue(final ZonedDateTime value)
   {
-    return String.valueOf((value.toInstant().toEpochMilli() + ERA_OFFSET) * ONE_HUNDRED_NANOSECOND_INTERVAL);
+    final long millis = value.toEpochSecond() * MILLIS_PER_SECOND + value.getNano() / NANOS_PER_MILLI;
+    return Long.toString((millis + ERA_OFFSET) * ONE_HUNDRED_NANOSECOND_INTERVAL);
   }
 
 
@@ -0,0 +1,726 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.concurrent;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import org.ldaptive.AddOperation;
+import org.ldaptive.AddRequest;
+import org.ldaptive.Connection;
+import org.ldaptive.DeleteOperation;
+import org.ldaptive.DeleteRequest;
+import org.ldaptive.LdapException;
+import org.ldaptive.ModifyOperation;
+import org.ldaptive.ModifyRequest;
+import org.ldaptive.Request;
+import org.ldaptive.Response;
+import org.ldaptive.ResultCode;
+import org.ldaptive.ext.MergeOperation;
+import org.ldaptive.ext.MergeRequest;
+import org.ldaptive.pool.PooledConnectionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Executes a stream of add, modify, delete and merge requests across the connections of a connection pool. Requests
+ * are assigned to one of {@link #getConcurrency()} lanes by DN, and each lane executes its requests in the order they
+ * were submitted on a single pooled connection, so requests for the same DN are never reordered or executed
+ * concurrently. At most {@link #getCapacity()} requests are queued or executing at once; the thread submitting requests
+ * blocks until earlier requests complete, so arbitrarily large iterables may be supplied without buffering them.
+ *
+ * <p>Requests that fail with one of {@link #getRetryResultCodes()}, or with an exception that has no result code, such
+ * as a connection failure, are retried up to {@link #getRetry()} times on a new connection after waiting {@link
+ * #getRetryWait()} multiplied by {@link #getRetryBackoff()} and the number of previous retries. The outcome of every
+ * request is either returned in the {@link BulkWriteResult} or delivered to a {@link BulkWriteListener}:</p>
+ *
+ * <pre>
+   final BulkWriteExecutor executor = new BulkWriteExecutor(pooledConnectionFactory);
+   executor.setConcurrency(8);
+   final BulkWriteResult result = executor.execute(requests, item -&gt; {
+     if (!item.isSuccess()) {
+       log.warn("{} failed", item.getDn(), item.getException());
+     }
+   });
+ * </pre>
+ *
+ * <p>Since each lane holds a pooled connection while it has requests waiting, the concurrency should not exceed the
+ * maximum size of the pool. A cached thread pool is used by default.</p>
+ *
+ * @author  Middleware Services
+ */
+public class BulkWriteExecutor
+{
+
+  /** Default number of lanes. Value is {@value}. */
+  public static final int DEFAULT_CONCURRENCY = 4;
+
+  /** Default maximum number of requests queued or executing. Value is {@value}. */
+  public static final int DEFAULT_CAPACITY = 1000;
+
+  /** Default number of retries. Value is {@value}. */
+  public static final int DEFAULT_RETRY = 3;
+
+  /** Default retry backoff multiplier. Value is {@value}. */
+  public static final int DEFAULT_RETRY_BACKOFF = 2;
+
+  /** Default time to wait before retrying. */
+  public static final Duration DEFAULT_RETRY_WAIT = Duration.ofMillis(100);
+
+  /** Marks the end of the requests for a lane. */
+  private static final BulkWriteItem END = new BulkWriteItem(-1, null, null);
+
+  /** Logger for this class. */
+  protected final Logger logger = LoggerFactory.getLogger(getClass());
+
+  /** To execute requests with. */
+  private final PooledConnectionFactory connectionFactory;
+
+  /** To run lanes on. */
+  private final ExecutorService service;
+
+  /** Number of lanes. */
+  private int concurrency = DEFAULT_CONCURRENCY;
+
+  /** Maximum number of requests queued or executing. */
+  private int capacity = DEFAULT_CAPACITY;
+
+  /** Number of times a request is retried. */
+  private int retry = DEFAULT_RETRY;
+
+  /** Time to wait before retrying. */
+  private Duration retryWait = DEFAULT_RETRY_WAIT;
+
+  /** Multiplier applied to the retry wait for each subsequent retry. */
+  private int retryBackoff = DEFAULT_RETRY_BACKOFF;
+
+  /** Result codes that indicate a request may succeed if retried. */
+  private ResultCode[] retryResultCodes = new ResultCode[] {
+    ResultCode.BUSY,
+    ResultCode.UNAVAILABLE,
+    ResultCode.SERVER_DOWN,
+    ResultCode.LDAP_TIMEOUT,
+    ResultCode.CONNECT_ERROR,
+  };
+
+
+  /**
+   * Creates a new bulk write executor.
+   *
+   * @param  factory  pooled connection factory
+   */
+  public BulkWriteExecutor(final PooledConnectionFactory factory)
+  {
+    this(factory, Executors.newCachedThreadPool());
+  }
+
+
+  /**
+   * Creates a new bulk write executor.
+   *
+   * @param  factory  pooled connection factory
+   * @param  es  executor service
+   */
+  public BulkWriteExecutor(final PooledConnectionFactory factory, final ExecutorService es)
+  {
+    if (factory == null) {
+      throw new IllegalArgumentException("Connection factory cannot be null");
+    }
+    if (es == null) {
+      throw new IllegalArgumentException("Executor service cannot be null");
+    }
+    connectionFactory = factory;
+    service = es;
+  }
+
+
+  /**
+   * Returns the connection factory.
+   *
+   * @return  pooled connection factory
+   */
+  public PooledConnectionFactory getConnectionFactory()
+  {
+    return connectionFactory;
+  }
+
+
+  /**
+   * Returns the number of lanes requests are distributed across.
+   *
+   * @return  concurrency
+   */
+  public int getConcurrency()
+  {
+    return concurrency;
+  }
+
+
+  /**
+   * Sets the number of lanes requests are distributed across.
+   *
+   * @param  i  concurrency
+   */
+  public void setConcurrency(final int i)
+  {
+    if (i < 1) {
+      throw new IllegalArgumentException("Concurrency must be greater than zero");
+    }
+    logger.trace("setting concurrency: {}", i);
+    concurrency = i;
+  }
+
+
+  /**
+   * Returns the maximum number of requests queued or executing.
+   *
+   * @return  capacity
+   */
+  public int getCapacity()
+  {
+    return capacity;
+  }
+
+
+  /**
+   * Sets the maximum number of requests queued or executing.
+   *
+   * @param  i  capacity
+   */
+  public void setCapacity(final int i)
+  {
+    if (i < 1) {
+      throw new IllegalArgumentException("Capacity must be greater than zero");
+    }
+    logger.trace("setting capacity: {}", i);
+    capacity = i;
+  }
+
+
+  /**
+   * Returns the number of times a request is retried.
+   *
+   * @return  retry
+   */
+  public int getRetry()
+  {
+    return retry;
+  }
+
+
+  /**
+   * Sets the number of times a request is retried.
+   *
+   * @param  i  retry
+   */
+  public void setRetry(final int i)
+  {
+    if (i < 0) {
+      throw new IllegalArgumentException("Retry cannot be negative");
+    }
+    logger.trace("setting retry: {}", i);
+    retry = i;
+  }
+
+
+  /**
+   * Returns the time to wait before retrying.
+   *
+   * @return  retry wait
+   */
+  public Duration getRetryWait()
+  {
+    return retryWait;
+  }
+
+
+  /**
+   * Sets the time to wait before retrying.
+   *
+   * @param  time  retry wait
+   */
+  public void setRetryWait(final Duration time)
+  {
+    if (time == null || time.isNegative()) {
+      throw new IllegalArgumentException("Retry wait cannot be null or negative");
+    }
+    logger.trace("setting retryWait: {}", time);
+    retryWait = time;
+  }
+
+
+  /**
+   * Returns the multiplier applied to the retry wait for each subsequent retry.
+   *
+   * @return  retry backoff
+   */
+  public int getRetryBackoff()
+  {
+    return retryBackoff;
+  }
+
+
+  /**
+   * Sets the multiplier applied to the retry wait for each subsequent retry. Zero waits the same time before every
+   * retry.
+   *
+   * @param  backoff  retry backoff
+   */
+  public void setRetryBackoff(final int backoff)
+  {
+    if (backoff < 0) {
+      throw new IllegalArgumentException("Retry backoff cannot be negative");
+    }
+    logger.trace("setting retryBackoff: {}", backoff);
+    retryBackoff = backoff;
+  }
+
+
+  /**
+   * Returns the result codes that indicate a request may succeed if retried.
+   *
+   * @return  retry result codes
+   */
+  public ResultCode[] getRetryResultCodes()
+  {
+    return retryResultCodes;
+  }
+
+
+  /**
+   * Sets the result codes that indicate a request may succeed if retried.
+   *
+   * @param  codes  retry result codes
+   */
+  public void setRetryResultCodes(final ResultCode... codes)
+  {
+    if (codes == null) {
+      throw new IllegalArgumentException("Retry result codes cannot be null");
+    }
+    logger.trace("setting retryResultCodes: {}", Arrays.toString(codes));
+    retryResultCodes = codes;
+  }
+
+
+  /**
+   * Executes the supplied requests and waits for them to complete.
+   *
+   * @param  requests  to execute
+   *
+   * @return  outcome of every request
+   */
+  public BulkWriteResult execute(final Request... requests)
+  {
+    return execute(Arrays.asList(requests), null);
+  }
+
+
+  /**
+   * Executes the supplied requests and waits for them to complete.
+   *
+   * @param  requests  to execute
+   *
+   * @return  outcome of every request
+   */
+  public BulkWriteResult execute(final Iterable<? extends Request> requests)
+  {
+    return execute(requests, null);
+  }
+
+
+  /**
+   * Executes the supplied requests and waits for them to complete. Requests are read from the iterable as capacity
+   * becomes available.
+   *
+   * @param  requests  to execute
+   * @param  listener  to deliver the outcome of each request to, or null to return the outcomes in the result
+   *
+   * @return  summary of the requests and their outcomes if no listener was supplied
+   *
+   * @throws  IllegalArgumentException  if a request is not an add, modify, delete or merge request, in which case no
+   *                                    further requests are read and those already submitted are completed
+   */
+  public BulkWriteResult execute(final Iterable<? extends Request> requests, final BulkWriteListener listener)
+  {
+    return new Execution(listener).execute(requests);
+  }
+
+
+  /**
+   * Returns the DN targeted by the supplied request.
+   *
+   * @param  request  add, modify, delete or merge request
+   *
+   * @return  DN of the request
+   *
+   * @throws  IllegalArgumentException  if the request type is not supported
+   */
+  protected String getDn(final Request request)
+  {
+    final String dn;
+    if (request instanceof AddRequest) {
+      dn = ((AddRequest) request).getDn();
+    } else if (request instanceof ModifyRequest) {
+      dn = ((ModifyRequest) request).getDn();
+    } else if (request instanceof DeleteRequest) {
+      dn = ((DeleteRequest) request).getDn();
+    } else if (request instanceof MergeRequest && ((MergeRequest) request).getEntry() != null) {
+      dn = ((MergeRequest) request).getEntry().getDn();
+    } else {
+      throw new IllegalArgumentException("Unsupported request " + request);
+    }
+    if (dn == null) {
+      throw new IllegalArgumentException("Request DN cannot be null: " + request);
+    }
+    return dn;
+  }
+
+
+  /**
+   * Executes the supplied request on the supplied connection.
+   *
+   * @param  conn  to execute the request on
+   * @param  request  add, modify, delete or merge request
+   *
+   * @return  response
+   *
+   * @throws  LdapException  if the operation fails
+   */
+  protected Response<Void> executeRequest(final Connection conn, final Request request)
+    throws LdapException
+  {
+    final Response<Void> response;
+    if (request instanceof AddRequest) {
+      response = new AddOperation(conn).execute((AddRequest) request);
+    } else if (request instanceof ModifyRequest) {
+      response = new ModifyOperation(conn).execute((ModifyRequest) request);
+    } else if (request instanceof DeleteRequest) {
+      response = new DeleteOperation(conn).execute((DeleteRequest) request);
+    } else if (request instanceof MergeRequest) {
+      response = new MergeOperation(conn).execute((MergeRequest) request);
+    } else {
+      throw new IllegalArgumentException("Unsupported request " + request);
+    }
+    return response;
+  }
+
+
+  /**
+   * Returns whether a request that failed with the supplied exception may succeed if retried.
+   *
+   * @param  e  that caused the request to fail
+   *
+   * @return  whether the exception has no result code or one of the retry result codes
+   */
+  protected boolean isRetryable(final LdapException e)
+  {
+    boolean retryable = e.getResultCode() == null;
+    for (int i = 0; !retryable && i < retryResultCodes.length; i++) {
+      retryable = retryResultCodes[i] == e.getResultCode();
+    }
+    return retryable;
+  }
+
+
+  /** Invokes {@link ExecutorService#shutdown()} on the underlying executor service. */
+  public void shutdown()
+  {
+    service.shutdown();
+  }
+
+
+  @Override
+  public String toString()
+  {
+    return
+      String.format(
+        "[%s@%d::connectionFactory=%s, concurrency=%s, capacity=%s, retry=%s, retryWait=%s, retryBackoff=%s, " +
+        "retryResultCodes=%s]",
+        getClass().getName(),
+        hashCode(),
+        connectionFactory,
+        concurrency,
+        capacity,
+        retry,
+        retryWait,
+        retryBackoff,
+        Arrays.toString(retryResultCodes));
+  }
+
+
+  /** Executes the requests of a single invocation of {@link #execute(Iterable, BulkWriteListener)}. */
+  private final class Execution
+  {
+
+    /** To deliver outcomes to, may be null. */
+    private final BulkWriteListener listener;
+
+    /** Outcomes, if no listener was supplied. */
+    private final List<BulkWriteItem> items;
+
+    /** Lanes requests are distributed across. */
+    private final List<Lane> lanes = new ArrayList<>(concurrency);
+
+    /** Limits the number of requests queued or executing. */
+    private final Semaphore permits = new Semaphore(capacity);
+
+    /** Counted down as each lane finishes. */
+    private final CountDownLatch finished = new CountDownLatch(concurrency);
+
+    /** Number of requests that succeeded. */
+    private final AtomicLong successCount = new AtomicLong();
+
+    /** Number of requests that failed. */
+    private final AtomicLong failureCount = new AtomicLong();
+
+    /** Number of retries. */
+    private final AtomicLong retryCount = new AtomicLong();
+
+    /** Whether remaining requests should fail without being executed. */
+    private volatile boolean cancelled;
+
+
+    /**
+     * Creates a new execution.
+     *
+     * @param  l  listener or null
+     */
+    Execution(final BulkWriteListener l)
+    {
+      listener = l;
+      items = l == null ? Collections.synchronizedList(new ArrayList<>()) : null;
+    }
+
+
+    /**
+     * Submits every request to its lane and waits for the lanes to finish.
+     *
+     * @param  requests  to execute
+     *
+     * @return  bulk write result
+     */
+    BulkWriteResult execute(final Iterable<? extends Request> requests)
+    {
+      final long start = System.nanoTime();
+      for (int i = 0; i < concurrency; i++) {
+        final Lane lane = new Lane();
+        lanes.add(lane);
+        service.execute(lane);
+      }
+      boolean interrupted = false;
+      try {
+        long sequence = 0;
+        for (Request request : requests) {
+          final String dn = getDn(request);
+          permits.acquire();
+          lanes.get(Math.floorMod(dn.toLowerCase().hashCode(), concurrency)).queue.add(
+            new BulkWriteItem(sequence++, request, dn));
+        }
+      } catch (InterruptedException e) {
+        logger.warn("Interrupted submitting requests, cancelling bulk write", e);
+        cancelled = true;
+        interrupted = true;
+      } finally {
+        for (Lane lane : lanes) {
+          lane.queue.add(END);
+        }
+        boolean done = false;
+        while (!done) {
+          try {
+            finished.await();
+            done = true;
+          } catch (InterruptedException e) {
+            logger.warn("Interrupted waiting for requests, cancelling bulk write", e);
+            cancelled = true;
+            interrupted = true;
+          }
+        }
+        if (interrupted) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      if (items != null) {
+        items.sort(Comparator.comparingLong(BulkWriteItem::getSequence));
+      }
+      final BulkWriteResult result = new BulkWriteResult(
+        items,
+        successCount.get(),
+        failureCount.get(),
+        retryCount.get(),
+        Duration.ofNanos(System.nanoTime() - start));
+      logger.debug("bulk write complete {}", result);
+      return result;
+    }
+
+
+    /**
+     * Executes the supplied item, retrying transient failures. A runtime exception fails the item without a retry.
+     *
+     * @param  item  to execute
+     * @param  conn  connection held by the lane, may be null
+     *
+     * @return  connection to use for the next item, may be null
+     */
+    private Connection process(final BulkWriteItem item, final Connection conn)
+    {
+      Connection c = conn;
+      boolean done = false;
+      while (!done) {
+        Response<Void> response = null;
+        LdapException exception = null;
+        boolean unexpected = false;
+        if (cancelled) {
+          exception = new LdapException("Bulk write cancelled", ResultCode.USER_CANCELLED, item.getDn());
+        } else {
+          try {
+            if (c == null) {
+              c = connectionFactory.getConnection();
+            }
+            response = executeRequest(c, item.getRequest());
+            final ResultCode code = response != null ? response.getResultCode() : null;
+            if (code != null && code != ResultCode.SUCCESS) {
+              exception = new LdapException("Request failed: " + response, code, item.getDn());
+            }
+          } catch (LdapException e) {
+            exception = e;
+          } catch (RuntimeException e) {
+            logger.warn("Unexpected exception executing {}", item, e);
+            exception = new LdapException("Request failed unexpectedly", e, ResultCode.LOCAL_ERROR, item.getDn());
+            unexpected = true;
+          }
+        }
+        item.complete(response, exception);
+        if (unexpected) {
+          // the state of the connection is unknown
+          close(c);
+          c = null;
+          done = true;
+        } else if (exception != null && !cancelled && item.getAttempts() <= retry && isRetryable(exception)) {
+          logger.debug("Retry attempt {} of {} for {}", item.getAttempts(), retry, item, exception);
+          retryCount.incrementAndGet();
+          close(c);
+          c = null;
+          waitForRetry(item.getAttempts() - 1);
+        } else {
+          done = true;
+        }
+      }
+      if (item.isSuccess()) {
+        successCount.incrementAndGet();
+      } else {
+        failureCount.incrementAndGet();
+      }
+      if (listener != null) {
+        try {
+          listener.itemComplete(item);
+        } catch (Exception e) {
+          logger.warn("{} threw unexpected exception", listener, e);
+        }
+      } else {
+        items.add(item);
+      }
+      return c;
+    }
+
+
+    /**
+     * Sleeps before a retry.
+     *
+     * @param  count  number of previous retries
+     */
+    private void waitForRetry(final int count)
+    {
+      long sleepTime = retryWait.toMillis();
+      if (retryBackoff > 0 && count > 0) {
+        sleepTime = sleepTime * retryBackoff * count;
+      }
+      if (sleepTime > 0) {
+        try {
+          Thread.sleep(sleepTime);
+        } catch (InterruptedException e) {
+          logger.debug("Retry wait interrupted, cancelling bulk write", e);
+          cancelled = true;
+        }
+      }
+    }
+
+
+    /**
+     * Returns the supplied connection to the pool.
+     *
+     * @param  conn  to close, may be null
+     */
+    private void close(final Connection conn)
+    {
+      if (conn != null) {
+        conn.close();
+      }
+    }
+
+
+    /**
+     * Executes the requests for a subset of DNs in the order they were submitted. The lane holds a connection while it
+     * has requests waiting and returns it to the pool when it has none.
+     */
+    private final class Lane implements Runnable
+    {
+
+      /** Requests waiting to be executed. */
+      private final BlockingQueue<BulkWriteItem> queue = new LinkedBlockingQueue<>();
+
+
+      @Override
+      public void run()
+      {
+        Connection conn = null;
+        try {
+          BulkWriteItem item = take();
+          while (item != END) {
+            try {
+              conn = process(item, conn);
+            } finally {
+              permits.release();
+            }
+            if (queue.isEmpty()) {
+              close(conn);
+              conn = null;
+            }
+            item = take();
+          }
+        } finally {
+          close(conn);
+          finished.countDown();
+        }
+      }
+
+
+      /**
+       * Waits for the next item. Interrupting the lane cancels the bulk write.
+       *
+       * @return  next item
+       */
+      private BulkWriteItem take()
+      {
+        BulkWriteItem item = null;
+        while (item == null) {
+          try {
+            item = queue.take();
+          } catch (InterruptedException e) {
+            logger.warn("Interrupted waiting for requests, cancelling bulk write", e);
+            cancelled = true;
+          }
+        }
+        return item;
+      }
+    }
+  }
+}
@@ -0,0 +1,155 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.concurrent;
+
+import org.ldaptive.LdapException;
+import org.ldaptive.Request;
+import org.ldaptive.Response;
+
+/**
+ * Outcome of a single request executed by a {@link BulkWriteExecutor}.
+ *
+ * @author  Middleware Services
+ */
+public final class BulkWriteItem
+{
+
+  /** Position of the request in the submitted requests. */
+  private final long sequence;
+
+  /** Request. */
+  private final Request request;
+
+  /** DN the request targets. */
+  private final String dn;
+
+  /** Response of the last attempt. */
+  private Response<Void> response;
+
+  /** Exception thrown by the last attempt. */
+  private LdapException exception;
+
+  /** Number of times the request was executed. */
+  private int attempts;
+
+
+  /**
+   * Creates a new bulk write item.
+   *
+   * @param  seq  position of the request
+   * @param  req  request
+   * @param  targetDn  DN the request targets
+   */
+  BulkWriteItem(final long seq, final Request req, final String targetDn)
+  {
+    sequence = seq;
+    request = req;
+    dn = targetDn;
+  }
+
+
+  /**
+   * Returns the position of the request in the submitted requests, starting at zero.
+   *
+   * @return  sequence
+   */
+  public long getSequence()
+  {
+    return sequence;
+  }
+
+
+  /**
+   * Returns the request.
+   *
+   * @return  request
+   */
+  public Request getRequest()
+  {
+    return request;
+  }
+
+
+  /**
+   * Returns the DN the request targets.
+   *
+   * @return  dn
+   */
+  public String getDn()
+  {
+    return dn;
+  }
+
+
+  /**
+   * Returns the response of the last attempt.
+   *
+   * @return  response or null if the last attempt threw an exception
+   */
+  public Response<Void> getResponse()
+  {
+    return response;
+  }
+
+
+  /**
+   * Returns the exception thrown by the last attempt.
+   *
+   * @return  exception or null if the request succeeded
+   */
+  public LdapException getException()
+  {
+    return exception;
+  }
+
+
+  /**
+   * Returns the number of times the request was executed.
+   *
+   * @return  attempts
+   */
+  public int getAttempts()
+  {
+    return attempts;
+  }
+
+
+  /**
+   * Returns whether the request succeeded.
+   *
+   * @return  whether the last attempt did not throw an exception
+   */
+  public boolean isSuccess()
+  {
+    return exception == null;
+  }
+
+
+  /**
+   * Records the outcome of an attempt.
+   *
+   * @param  res  response or null
+   * @param  e  exception or null
+   */
+  void complete(final Response<Void> res, final LdapException e)
+  {
+    attempts++;
+    response = res;
+    exception = e;
+  }
+
+
+  @Override
+  public String toString()
+  {
+    return
+      String.format(
+        "[%s@%d::sequence=%s, dn=%s, attempts=%s, response=%s, exception=%s]",
+        getClass().getName(),
+        hashCode(),
+        sequence,
+        dn,
+        attempts,
+        response,
+        exception);
+  }
+}
@@ -0,0 +1,20 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.concurrent;
+
+/**
+ * Receives the outcome of each request executed by a {@link BulkWriteExecutor}.
+ *
+ * @author  Middleware Services
+ */
+public interface BulkWriteListener
+{
+
+
+  /**
+   * Invoked once for each request when it has succeeded or failed, on the thread that executed it. Items for the same
+   * DN are reported in the order they were submitted.
+   *
+   * @param  item  that completed
+   */
+  void itemComplete(BulkWriteItem item);
+}
@@ -0,0 +1,141 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.concurrent;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Summary of the requests executed by a {@link BulkWriteExecutor}.
+ *
+ * @author  Middleware Services
+ */
+public final class BulkWriteResult
+{
+
+  /** Number of milliseconds in a second. */
+  private static final double MILLIS_PER_SECOND = 1000d;
+
+  /** Outcome of each request, ordered by sequence. */
+  private final List<BulkWriteItem> items;
+
+  /** Number of requests that succeeded. */
+  private final long successCount;
+
+  /** Number of requests that failed. */
+  private final long failureCount;
+
+  /** Number of times a request was retried. */
+  private final long retryCount;
+
+  /** Time taken to execute every request. */
+  private final Duration elapsedTime;
+
+
+  /**
+   * Creates a new bulk write result.
+   *
+   * @param  list  of outcomes or null if outcomes were delivered to a listener
+   * @param  success  number of requests that succeeded
+   * @param  failure  number of requests that failed
+   * @param  retry  number of retries
+   * @param  elapsed  time taken
+   */
+  BulkWriteResult(
+    final List<BulkWriteItem> list,
+    final long success,
+    final long failure,
+    final long retry,
+    final Duration elapsed)
+  {
+    items = list != null ? Collections.unmodifiableList(list) : Collections.emptyList();
+    successCount = success;
+    failureCount = failure;
+    retryCount = retry;
+    elapsedTime = elapsed;
+  }
+
+
+  /**
+   * Returns the outcome of each request ordered by sequence. Empty if the outcomes were delivered to a {@link
+   * BulkWriteListener}.
+   *
+   * @return  unmodifiable list of items
+   */
+  public List<BulkWriteItem> getItems()
+  {
+    return items;
+  }
+
+
+  /**
+   * Returns the number of requests that succeeded.
+   *
+   * @return  success count
+   */
+  public long getSuccessCount()
+  {
+    return successCount;
+  }
+
+
+  /**
+   * Returns the number of requests that failed.
+   *
+   * @return  failure count
+   */
+  public long getFailureCount()
+  {
+    return failureCount;
+  }
+
+
+  /**
+   * Returns the number of times a request was retried.
+   *
+   * @return  retry count
+   */
+  public long getRetryCount()
+  {
+    return retryCount;
+  }
+
+
+  /**
+   * Returns the time taken to execute every request.
+   *
+   * @return  elapsed time
+   */
+  public Duration getElapsedTime()
+  {
+    return elapsedTime;
+  }
+
+
+  /**
+   * Returns the number of requests completed per second.
+   *
+   * @return  throughput
+   */
+  public double getThroughput()
+  {
+    final long millis = Math.max(1, elapsedTime.toMillis());
+    return (successCount + failureCount) * MILLIS_PER_SECOND / millis;
+  }
+
+
+  @Override
+  public String toString()
+  {
+    return
+      String.format(
+        "[%s@%d::successCount=%s, failureCount=%s, retryCount=%s, elapsedTime=%s, throughput=%.1f/s]",
+        getClass().getName(),
+        hashCode(),
+        successCount,
+        failureCount,
+        retryCount,
+        elapsedTime,
+        getThroughput());
+  }
+}
@@ -0,0 +1,94 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.control;
+
+/**
+ * Base class for response controls that defer decoding. {@link #decode(byte[])} only retains the BER encoded value;
+ * the value is parsed the first time an accessor invokes {@link #materialize()}. This avoids parsing controls that are
+ * attached to every entry of a result but never inspected. Note that decoding errors are raised by the first accessor
+ * rather than by {@link #decode(byte[])}.
+ *
+ * @author  Middleware Services
+ */
+public abstract class AbstractLazyResponseControl extends AbstractControl implements ResponseControl
+{
+
+  /** BER encoded value waiting to be decoded. */
+  private byte[] encoded;
+
+  /** Whether a decode is pending. */
+  private volatile boolean pending;
+
+
+  /**
+   * Creates a new abstract lazy response control.
+   *
+   * @param  id  OID of this control
+   */
+  public AbstractLazyResponseControl(final String id)
+  {
+    super(id);
+  }
+
+
+  /**
+   * Creates a new abstract lazy response control.
+   *
+   * @param  id  OID of this control
+   * @param  b  whether this control is critical
+   */
+  public AbstractLazyResponseControl(final String id, final boolean b)
+  {
+    super(id, b);
+  }
+
+
+  /**
+   * Returns whether this control has been decoded.
+   *
+   * @return  whether the control value has been decoded
+   */
+  public boolean isDecoded()
+  {
+    return !pending;
+  }
+
+
+  @Override
+  public final void decode(final byte[] berValue)
+  {
+    synchronized (this) {
+      encoded = berValue;
+      pending = berValue != null;
+    }
+  }
+
+
+  /**
+   * Decodes the retained BER value if one is pending. Must be invoked by every accessor and mutator of decoded state.
+   * Safe to invoke from parse handlers during decoding.
+   */
+  protected final void materialize()
+  {
+    if (pending) {
+      synchronized (this) {
+        if (encoded != null) {
+          final byte[] berValue = encoded;
+          encoded = null;
+          try {
+            decodeValue(berValue);
+          } finally {
+            pending = false;
+          }
+        }
+      }
+    }
+  }
+
+
+  /**
+   * Initializes this control with the supplied BER encoded data.
+   *
+   * @param  berValue  BER encoded response control
+   */
+  protected abstract void decodeValue(byte[] berValue);
+}
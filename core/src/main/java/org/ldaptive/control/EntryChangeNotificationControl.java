@@ -28,7 +28,7 @@ import org.ldaptive.asn1.OctetStringType;
  *
  * @author  Middleware Services
  */
-public class EntryChangeNotificationControl extends AbstractControl implements ResponseControl
+public class EntryChangeNotificationControl extends AbstractLazyResponseControl
 {
 
   /** OID of this control. */
@@ -130,6 +130,7 @@ public class EntryChangeNotificationControl extends AbstractControl implements R
    */
   public PersistentSearchChangeType getChangeType()
   {
+    materialize();
     return changeType;
   }
 
@@ -141,6 +142,7 @@ public class EntryChangeNotificationControl extends AbstractControl implements R
    */
   public void setChangeType(final PersistentSearchChangeType type)
   {
+    materialize();
     changeType = type;
   }
 
@@ -152,6 +154,7 @@ public class EntryChangeNotificationControl extends AbstractControl implements R
    */
   public String getPreviousDn()
   {
+    materialize();
     return previousDn;
   }
 
@@ -163,6 +166,7 @@ public class EntryChangeNotificationControl extends AbstractControl implements R
    */
   public void setPreviousDn(final String dn)
   {
+    materialize();
     previousDn = dn;
   }
 
@@ -174,6 +178,7 @@ public class EntryChangeNotificationControl extends AbstractControl implements R
    */
   public long getChangeNumber()
   {
+    materialize();
     return changeNumber;
   }
 
@@ -185,6 +190,7 @@ public class EntryChangeNotificationControl extends AbstractControl implements R
    */
   public void setChangeNumber(final long number)
   {
+    materialize();
     changeNumber = number;
   }
 
@@ -197,9 +203,9 @@ public class EntryChangeNotificationControl extends AbstractControl implements R
     }
     if (o instanceof EntryChangeNotificationControl && super.equals(o)) {
       final EntryChangeNotificationControl v = (EntryChangeNotificationControl) o;
-      return LdapUtils.areEqual(changeType, v.changeType) &&
-             LdapUtils.areEqual(previousDn, v.previousDn) &&
-             LdapUtils.areEqual(changeNumber, v.changeNumber);
+      return LdapUtils.areEqual(getChangeType(), v.getChangeType()) &&
+             LdapUtils.areEqual(getPreviousDn(), v.getPreviousDn()) &&
+             LdapUtils.areEqual(getChangeNumber(), v.getChangeNumber());
     }
     return false;
   }
@@ -208,6 +214,7 @@ public class EntryChangeNotificationControl extends AbstractControl implements R
   @Override
   public int hashCode()
   {
+    materialize();
     return LdapUtils.computeHashCode(HASH_CODE_SEED, getOID(), getCriticality(), changeType, previousDn, changeNumber);
   }
 
@@ -221,14 +228,14 @@ public class EntryChangeNotificationControl extends AbstractControl implements R
         getClass().getName(),
         hashCode(),
         getCriticality(),
-        changeType,
-        previousDn,
-        changeNumber);
+        getChangeType(),
+        getPreviousDn(),
+        getChangeNumber());
   }
 
 
   @Override
-  public void decode(final byte[] berValue)
+  protected void decodeValue(final byte[] berValue)
   {
     logger.trace("decoding control: {}", LdapUtils.base64Encode(berValue));
 
@@ -29,7 +29,7 @@ import org.ldaptive.asn1.UuidType;
  *
  * @author  Middleware Services
  */
-public class SyncStateControl extends AbstractControl implements ResponseControl
+public class SyncStateControl extends AbstractLazyResponseControl
 {
 
   /** OID of this control. */
@@ -189,6 +189,7 @@ public class SyncStateControl extends AbstractControl implements ResponseControl
    */
   public State getSyncState()
   {
+    materialize();
     return syncState;
   }
 
@@ -200,6 +201,7 @@ public class SyncStateControl extends AbstractControl implements ResponseControl
    */
   public void setSyncState(final State state)
   {
+    materialize();
     syncState = state;
   }
 
@@ -211,6 +213,7 @@ public class SyncStateControl extends AbstractControl implements ResponseControl
    */
   public UUID getEntryUuid()
   {
+    materialize();
     return entryUuid;
   }
 
@@ -222,6 +225,7 @@ public class SyncStateControl extends AbstractControl implements ResponseControl
    */
   public void setEntryUuid(final UUID uuid)
   {
+    materialize();
     entryUuid = uuid;
   }
 
@@ -233,6 +237,7 @@ public class SyncStateControl extends AbstractControl implements ResponseControl
    */
   public byte[] getCookie()
   {
+    materialize();
     return cookie;
   }
 
@@ -244,6 +249,7 @@ public class SyncStateControl extends AbstractControl implements ResponseControl
    */
   public void setCookie(final byte[] value)
   {
+    materialize();
     cookie = value;
   }
 
@@ -256,9 +262,9 @@ public class SyncStateControl extends AbstractControl implements ResponseControl
     }
     if (o instanceof SyncStateControl && super.equals(o)) {
       final SyncStateControl v = (SyncStateControl) o;
-      return LdapUtils.areEqual(syncState, v.syncState) &&
-             LdapUtils.areEqual(entryUuid, v.entryUuid) &&
-             LdapUtils.areEqual(cookie, v.cookie);
+      return LdapUtils.areEqual(getSyncState(), v.getSyncState()) &&
+             LdapUtils.areEqual(getEntryUuid(), v.getEntryUuid()) &&
+             LdapUtils.areEqual(getCookie(), v.getCookie());
     }
     return false;
   }
@@ -267,6 +273,7 @@ public class SyncStateControl extends AbstractControl implements ResponseControl
   @Override
   public int hashCode()
   {
+    materialize();
     return LdapUtils.computeHashCode(HASH_CODE_SEED, getOID(), getCriticality(), syncState, entryUuid, cookie);
   }
 
@@ -280,14 +287,14 @@ public class SyncStateControl extends AbstractControl implements ResponseControl
         getClass().getName(),
         hashCode(),
         getCriticality(),
-        syncState,
-        entryUuid,
-        LdapUtils.base64Encode(cookie));
+        getSyncState(),
+        getEntryUuid(),
+        LdapUtils.base64Encode(getCookie()));
   }
 
 
   @Override
-  public void decode(final byte[] berValue)
+  protected void decodeValue(final byte[] berValue)
   {
     logger.trace("decoding control: {}", LdapUtils.base64Encode(berValue));
 
@@ -0,0 +1,296 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.control.util;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cookie manager that stores the cookie in a file. Cookies are written to a temporary file which is synced to disk and
+ * then renamed over the cookie file, so the file always contains a complete cookie. Since syncing is expensive, writes
+ * are batched: the file is only updated once {@link #getSyncCount()} cookies have been written or {@link
+ * #getSyncInterval()} has elapsed since the last update. A pending cookie is also stored by a background thread when
+ * the sync interval elapses without further writes. Invoke {@link #flush()} to store the latest cookie immediately and
+ * {@link #close()} once no more cookies will be written.
+ *
+ * @author  Middleware Services
+ */
+public class FileCookieManager implements CookieManager, Flushable, Closeable
+{
+
+  /** Default number of cookie writes between file updates. */
+  public static final int DEFAULT_SYNC_COUNT = 10;
+
+  /** Default maximum time between file updates. */
+  public static final Duration DEFAULT_SYNC_INTERVAL = Duration.ofSeconds(1);
+
+  /** Stores cookies whose sync interval elapses without further writes. */
+  private static final ScheduledExecutorService SYNC_EXECUTOR = Executors.newSingleThreadScheduledExecutor(
+    r -> {
+      final Thread t = new Thread(r, "ldaptive-" + FileCookieManager.class.getSimpleName());
+      t.setDaemon(true);
+      return t;
+    });
+
+  /** Logger for this class. */
+  protected final Logger logger = LoggerFactory.getLogger(getClass());
+
+  /** File to store the cookie in. */
+  private final Path cookieFile;
+
+  /** Temporary file used to replace the cookie file. */
+  private final Path tempFile;
+
+  /** Number of cookie writes between file updates. */
+  private int syncCount = DEFAULT_SYNC_COUNT;
+
+  /** Maximum time between file updates. */
+  private Duration syncInterval = DEFAULT_SYNC_INTERVAL;
+
+  /** Current cookie. */
+  private byte[] cookie;
+
+  /** Whether the cookie has been read from the file. */
+  private boolean loaded;
+
+  /** Number of cookie writes since the last file update. */
+  private int pendingWrites;
+
+  /** Time of the last file update. */
+  private long lastSync = System.nanoTime();
+
+  /** Pending file update, null if no writes are pending. */
+  private ScheduledFuture<?> scheduledSync;
+
+  /** Whether this cookie manager has been closed. */
+  private boolean closed;
+
+
+  /**
+   * Creates a new file cookie manager.
+   *
+   * @param  path  of the file to store the cookie in
+   */
+  public FileCookieManager(final Path path)
+  {
+    if (path == null) {
+      throw new IllegalArgumentException("Cookie file cannot be null");
+    }
+    cookieFile = path;
+    tempFile = path.resolveSibling(path.getFileName() + ".tmp");
+  }
+
+
+  /**
+   * Returns the file the cookie is stored in.
+   *
+   * @return  cookie file
+   */
+  public Path getCookieFile()
+  {
+    return cookieFile;
+  }
+
+
+  /**
+   * Returns the number of cookie writes between file updates.
+   *
+   * @return  sync count
+   */
+  public int getSyncCount()
+  {
+    return syncCount;
+  }
+
+
+  /**
+   * Sets the number of cookie writes between file updates. A value of one updates the file on every write.
+   *
+   * @param  count  sync count
+   */
+  public void setSyncCount(final int count)
+  {
+    if (count < 1) {
+      throw new IllegalArgumentException("Sync count must be greater than zero");
+    }
+    syncCount = count;
+  }
+
+
+  /**
+   * Returns the maximum time a written cookie waits before it is stored in the file. Pending cookies are stored once
+   * the interval elapses, even if no further cookies are written.
+   *
+   * @return  sync interval
+   */
+  public Duration getSyncInterval()
+  {
+    return syncInterval;
+  }
+
+
+  /**
+   * Sets the maximum time between file updates.
+   *
+   * @param  interval  sync interval
+   */
+  public void setSyncInterval(final Duration interval)
+  {
+    if (interval == null || interval.isNegative()) {
+      throw new IllegalArgumentException("Sync interval cannot be null or negative");
+    }
+    syncInterval = interval;
+  }
+
+
+  /**
+   * Returns the latest cookie. The cookie file is read on first use.
+   *
+   * @return  cookie or null if no cookie has been stored
+   *
+   * @throws  IllegalStateException  if the cookie file cannot be read
+   */
+  @Override
+  public synchronized byte[] readCookie()
+  {
+    if (!loaded) {
+      try {
+        if (Files.exists(cookieFile)) {
+          final byte[] b = Files.readAllBytes(cookieFile);
+          cookie = b.length > 0 ? b : null;
+        }
+      } catch (IOException e) {
+        throw new IllegalStateException("Could not read cookie from " + cookieFile, e);
+      }
+      loaded = true;
+    }
+    return cookie;
+  }
+
+
+  /**
+   * Stores the supplied cookie, updating the cookie file if the sync count or sync interval has been reached.
+   *
+   * @param  b  cookie to store
+   *
+   * @throws  IllegalStateException  if the cookie file cannot be written or this cookie manager is closed
+   */
+  @Override
+  public synchronized void writeCookie(final byte[] b)
+  {
+    if (closed) {
+      throw new IllegalStateException("Cookie manager for " + cookieFile + " is closed");
+    }
+    cookie = b;
+    loaded = true;
+    pendingWrites++;
+    if (pendingWrites >= syncCount || System.nanoTime() - lastSync >= syncInterval.toNanos()) {
+      try {
+        sync();
+      } catch (IOException e) {
+        throw new IllegalStateException("Could not write cookie to " + cookieFile, e);
+      }
+    } else if (scheduledSync == null) {
+      scheduledSync = SYNC_EXECUTOR.schedule(this::scheduledFlush, syncInterval.toNanos(), TimeUnit.NANOSECONDS);
+    }
+  }
+
+
+  /**
+   * Writes the latest cookie to the cookie file if it has not already been written.
+   *
+   * @throws  IOException  if the cookie file cannot be written
+   */
+  @Override
+  public synchronized void flush()
+    throws IOException
+  {
+    if (pendingWrites > 0) {
+      sync();
+    }
+  }
+
+
+  /**
+   * Writes the latest cookie to the cookie file if it has not already been written and prevents further writes.
+   *
+   * @throws  IOException  if the cookie file cannot be written
+   */
+  @Override
+  public synchronized void close()
+    throws IOException
+  {
+    closed = true;
+    flush();
+  }
+
+
+  /** Writes the latest cookie to the cookie file once the sync interval has elapsed. */
+  private void scheduledFlush()
+  {
+    try {
+      flush();
+    } catch (IOException e) {
+      logger.warn("Could not write cookie to {}", cookieFile, e);
+    }
+  }
+
+
+  /**
+   * Writes the latest cookie to the temporary file, forces it to disk and renames it over the cookie file.
+   *
+   * @throws  IOException  if the cookie file cannot be written
+   */
+  private void sync()
+    throws IOException
+  {
+    if (scheduledSync != null) {
+      scheduledSync.cancel(false);
+      scheduledSync = null;
+    }
+    try (FileChannel channel = FileChannel.open(
+        tempFile,
+        StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING)) {
+      if (cookie != null) {
+        final ByteBuffer buffer = ByteBuffer.wrap(cookie);
+        while (buffer.hasRemaining()) {
+          channel.write(buffer);
+        }
+      }
+      channel.force(true);
+    }
+    Files.move(tempFile, cookieFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    logger.trace("synced {} cookie writes to {}", pendingWrites, cookieFile);
+    pendingWrites = 0;
+    lastSync = System.nanoTime();
+  }
+
+
+  @Override
+  public String toString()
+  {
+    return
+      String.format(
+        "[%s@%d::cookieFile=%s, syncCount=%s, syncInterval=%s]",
+        getClass().getName(),
+        hashCode(),
+        cookieFile,
+        syncCount,
+        syncInterval);
+  }
+}
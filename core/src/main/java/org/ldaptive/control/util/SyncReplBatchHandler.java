@@ -0,0 +1,22 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.control.util;
+
+import java.util.List;
+
+/**
+ * Processes batches of sync repl items delivered by a {@link SyncReplConsumer}.
+ *
+ * @author  Middleware Services
+ */
+public interface SyncReplBatchHandler
+{
+
+
+  /**
+   * Processes the supplied batch. The cookie for a batch is only stored after this method returns, so any exception
+   * causes the batch to be redelivered the next time the consumer is started with the same cookie manager.
+   *
+   * @param  batch  of sync repl items in the order they were received
+   */
+  void handle(List<SyncReplItem> batch);
+}
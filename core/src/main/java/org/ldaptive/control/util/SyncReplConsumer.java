@@ -0,0 +1,652 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.control.util;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.ldaptive.Connection;
+import org.ldaptive.LdapException;
+import org.ldaptive.SearchRequest;
+import org.ldaptive.async.AsyncRequest;
+import org.ldaptive.control.SyncDoneControl;
+import org.ldaptive.control.SyncStateControl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Consumes a sync repl search and delivers the items it produces to a {@link SyncReplBatchHandler} in batches. Items
+ * are buffered in a queue of fixed capacity; when the queue is full the thread reading from the connection blocks until
+ * the consumer catches up, which applies backpressure to the server rather than buffering without bound.
+ *
+ * <p>A batch is delivered once {@link #getBatchSize()} items have been received, {@link #getBatchDelay()} has elapsed
+ * since the first item of the batch was received, or the search completes. When {@link #isCoalesceEntries()} is true,
+ * entries in the same batch that share an entryUUID are reduced to the last one received. The latest cookie in a batch
+ * is written to the cookie manager after the batch has been handled, so a consumer restarted with a durable cookie
+ * manager such as {@link FileCookieManager} resumes after the last handled batch instead of performing a full
+ * refresh.</p>
+ *
+ * @author  Middleware Services
+ */
+public class SyncReplConsumer
+{
+
+  /** Default number of items in a batch. */
+  public static final int DEFAULT_BATCH_SIZE = 100;
+
+  /** Default time to wait for a batch to fill. */
+  public static final Duration DEFAULT_BATCH_DELAY = Duration.ofMillis(100);
+
+  /** Default number of items to buffer. */
+  public static final int DEFAULT_CAPACITY = 1000;
+
+  /** Logger for this class. */
+  protected final Logger logger = LoggerFactory.getLogger(getClass());
+
+  /** Client that performs the sync repl search. */
+  private final SyncReplClient client;
+
+  /** Cookie manager to store cookies in once a batch is handled. */
+  private final CookieManager cookieManager;
+
+  /** Handler to deliver batches to. */
+  private final SyncReplBatchHandler batchHandler;
+
+  /** Maximum number of items in a batch. */
+  private int batchSize = DEFAULT_BATCH_SIZE;
+
+  /** Time to wait for a batch to fill. */
+  private Duration batchDelay = DEFAULT_BATCH_DELAY;
+
+  /** Number of items to buffer. */
+  private int capacity = DEFAULT_CAPACITY;
+
+  /** Whether to coalesce entries with the same entryUUID. */
+  private boolean coalesceEntries = true;
+
+  /** Thread delivering batches. */
+  private volatile Thread consumerThread;
+
+  /** Whether the consumer has been asked to stop. */
+  private volatile boolean stopping;
+
+  /** Async request for the sync repl search. */
+  private volatile AsyncRequest asyncRequest;
+
+  /** Exception thrown by the batch handler. */
+  private volatile RuntimeException handlerException;
+
+  /** Number of batches delivered. */
+  private final AtomicLong batchCount = new AtomicLong();
+
+  /** Number of items delivered. */
+  private final AtomicLong itemCount = new AtomicLong();
+
+  /** Number of entries removed by coalescing. */
+  private final AtomicLong coalescedCount = new AtomicLong();
+
+
+  /**
+   * Creates a new sync repl consumer.
+   *
+   * @param  conn  to execute the sync repl search on
+   * @param  persist  whether to refresh and persist or just refresh
+   * @param  manager  for reading and writing cookies
+   * @param  handler  to deliver batches to
+   */
+  public SyncReplConsumer(
+    final Connection conn,
+    final boolean persist,
+    final CookieManager manager,
+    final SyncReplBatchHandler handler)
+  {
+    this(new SyncReplClient(conn, persist), manager, handler);
+  }
+
+
+  /**
+   * Creates a new sync repl consumer.
+   *
+   * @param  syncReplClient  to execute the sync repl search with
+   * @param  manager  for reading and writing cookies
+   * @param  handler  to deliver batches to
+   */
+  public SyncReplConsumer(
+    final SyncReplClient syncReplClient,
+    final CookieManager manager,
+    final SyncReplBatchHandler handler)
+  {
+    if (manager == null || handler == null) {
+      throw new IllegalArgumentException("Cookie manager and batch handler cannot be null");
+    }
+    client = syncReplClient;
+    cookieManager = manager;
+    batchHandler = handler;
+  }
+
+
+  /**
+   * Returns the maximum number of items in a batch.
+   *
+   * @return  batch size
+   */
+  public int getBatchSize()
+  {
+    return batchSize;
+  }
+
+
+  /**
+   * Sets the maximum number of items in a batch.
+   *
+   * @param  size  batch size
+   */
+  public void setBatchSize(final int size)
+  {
+    checkStopped();
+    if (size < 1) {
+      throw new IllegalArgumentException("Batch size must be greater than zero");
+    }
+    batchSize = size;
+  }
+
+
+  /**
+   * Returns the time to wait for a batch to fill after its first item is received.
+   *
+   * @return  batch delay
+   */
+  public Duration getBatchDelay()
+  {
+    return batchDelay;
+  }
+
+
+  /**
+   * Sets the time to wait for a batch to fill after its first item is received.
+   *
+   * @param  delay  batch delay
+   */
+  public void setBatchDelay(final Duration delay)
+  {
+    checkStopped();
+    if (delay == null || delay.isNegative()) {
+      throw new IllegalArgumentException("Batch delay cannot be null or negative");
+    }
+    batchDelay = delay;
+  }
+
+
+  /**
+   * Returns the number of items buffered before the connection stops being read.
+   *
+   * @return  capacity
+   */
+  public int getCapacity()
+  {
+    return capacity;
+  }
+
+
+  /**
+   * Sets the number of items buffered before the connection stops being read.
+   *
+   * @param  i  capacity
+   */
+  public void setCapacity(final int i)
+  {
+    checkStopped();
+    if (i < 1) {
+      throw new IllegalArgumentException("Capacity must be greater than zero");
+    }
+    capacity = i;
+  }
+
+
+  /**
+   * Returns whether entries in a batch with the same entryUUID are reduced to the last one received.
+   *
+   * @return  whether to coalesce entries
+   */
+  public boolean isCoalesceEntries()
+  {
+    return coalesceEntries;
+  }
+
+
+  /**
+   * Sets whether entries in a batch with the same entryUUID are reduced to the last one received.
+   *
+   * @param  b  whether to coalesce entries
+   */
+  public void setCoalesceEntries(final boolean b)
+  {
+    checkStopped();
+    coalesceEntries = b;
+  }
+
+
+  /**
+   * Returns the number of batches delivered.
+   *
+   * @return  batch count
+   */
+  public long getBatchCount()
+  {
+    return batchCount.get();
+  }
+
+
+  /**
+   * Returns the number of items delivered.
+   *
+   * @return  item count
+   */
+  public long getItemCount()
+  {
+    return itemCount.get();
+  }
+
+
+  /**
+   * Returns the number of entries removed by coalescing.
+   *
+   * @return  coalesced count
+   */
+  public long getCoalescedCount()
+  {
+    return coalescedCount.get();
+  }
+
+
+  /**
+   * Returns the exception thrown by the batch handler that stopped this consumer.
+   *
+   * @return  handler exception or null
+   */
+  public RuntimeException getHandlerException()
+  {
+    return handlerException;
+  }
+
+
+  /**
+   * Returns whether this consumer is delivering batches.
+   *
+   * @return  whether the consumer thread is alive
+   */
+  public boolean isRunning()
+  {
+    final Thread t = consumerThread;
+    return t != null && t.isAlive();
+  }
+
+
+  /**
+   * Executes the sync repl search and starts delivering batches. See {@link SyncReplClient#execute(SearchRequest,
+   * CookieManager, int)} for the modifications made to the supplied request.
+   *
+   * @param  request  search request to execute
+   *
+   * @throws  LdapException  if the search fails
+   * @throws  IllegalStateException  if this consumer is already running
+   */
+  public synchronized void start(final SearchRequest request)
+    throws LdapException
+  {
+    if (isRunning()) {
+      throw new IllegalStateException("Consumer is already running");
+    }
+    consume(client.execute(request, new ReadOnlyCookieManager(cookieManager), capacity));
+  }
+
+
+  /**
+   * Starts a thread that delivers the items in the supplied queue in batches.
+   *
+   * @param  queue  to read sync repl items from
+   */
+  protected synchronized void consume(final BlockingQueue<SyncReplItem> queue)
+  {
+    stopping = false;
+    handlerException = null;
+    asyncRequest = null;
+    consumerThread = new Thread(
+      () -> run(queue),
+      "ldaptive-" + SyncReplConsumer.class.getSimpleName() + "@" + hashCode());
+    consumerThread.setDaemon(true);
+    consumerThread.start();
+  }
+
+
+  /**
+   * Stops delivering batches and abandons the sync repl search. Waits for a batch that is being handled to complete.
+   * Items that have not been handled are discarded; their changes are received again when the consumer is restarted
+   * since their cookie was never stored.
+   */
+  public void stop()
+  {
+    final Thread t;
+    synchronized (this) {
+      t = consumerThread;
+      stopping = true;
+    }
+    if (t != null) {
+      abandon();
+      try {
+        t.join();
+      } catch (InterruptedException e) {
+        logger.debug("Interrupted waiting for consumer thread to stop", e);
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+
+  /**
+   * Delivers batches from the supplied queue until the search completes, the consumer is stopped or the batch handler
+   * throws.
+   *
+   * @param  queue  to read sync repl items from
+   */
+  private void run(final BlockingQueue<SyncReplItem> queue)
+  {
+    boolean done = false;
+    try {
+      while (!done && !stopping) {
+        final List<SyncReplItem> batch = nextBatch(queue);
+        if (!batch.isEmpty()) {
+          done = isTerminal(batch.get(batch.size() - 1));
+          deliver(batch);
+        }
+      }
+      if (!done) {
+        discard(queue);
+      }
+    } catch (InterruptedException e) {
+      logger.debug("Consumer interrupted", e);
+    } catch (RuntimeException e) {
+      logger.warn("Batch handler failed, stopping consumer", e);
+      handlerException = e;
+      stopping = true;
+      abandon();
+      drain(queue);
+    }
+    if (cookieManager instanceof Flushable) {
+      try {
+        ((Flushable) cookieManager).flush();
+      } catch (IOException e) {
+        logger.warn("Could not flush cookie manager {}", cookieManager, e);
+      }
+    }
+    logger.debug("consumer stopped after {} batches", batchCount);
+  }
+
+
+  /**
+   * Reads the next batch from the supplied queue. Returns an empty batch if no item arrives within the batch delay.
+   *
+   * @param  queue  to read sync repl items from
+   *
+   * @return  batch of sync repl items
+   *
+   * @throws  InterruptedException  if the thread is interrupted
+   */
+  private List<SyncReplItem> nextBatch(final BlockingQueue<SyncReplItem> queue)
+    throws InterruptedException
+  {
+    final List<SyncReplItem> batch = new ArrayList<>(batchSize);
+    long deadline = System.nanoTime() + batchDelay.toNanos();
+    boolean full = false;
+    while (!full) {
+      final SyncReplItem item = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+      if (item == null) {
+        full = true;
+      } else if (item.isAsyncRequest()) {
+        asyncRequest = item.getAsyncRequest();
+        if (batch.isEmpty()) {
+          deadline = System.nanoTime() + batchDelay.toNanos();
+        }
+      } else {
+        if (batch.isEmpty()) {
+          deadline = System.nanoTime() + batchDelay.toNanos();
+        }
+        batch.add(item);
+        full = batch.size() >= batchSize || isTerminal(item);
+      }
+    }
+    return batch;
+  }
+
+
+  /**
+   * Delivers the supplied batch to the batch handler and stores its latest cookie.
+   *
+   * @param  batch  to deliver
+   */
+  private void deliver(final List<SyncReplItem> batch)
+  {
+    final byte[] cookie = findCookie(batch);
+    final List<SyncReplItem> items = coalesceEntries ? coalesce(batch) : batch;
+    logger.trace("delivering batch of {} items", items.size());
+    batchHandler.handle(Collections.unmodifiableList(items));
+    batchCount.incrementAndGet();
+    itemCount.addAndGet(items.size());
+    if (cookie != null) {
+      cookieManager.writeCookie(cookie);
+    }
+  }
+
+
+  /**
+   * Removes every entry from the supplied batch that is followed by an entry with the same entryUUID. The relative
+   * order of the remaining items is preserved.
+   *
+   * @param  batch  to coalesce
+   *
+   * @return  coalesced batch
+   */
+  protected List<SyncReplItem> coalesce(final List<SyncReplItem> batch)
+  {
+    final Map<UUID, Integer> lastIndex = new HashMap<>();
+    int entries = 0;
+    for (int i = 0; i < batch.size(); i++) {
+      final UUID uuid = getEntryUuid(batch.get(i));
+      if (uuid != null) {
+        lastIndex.put(uuid, i);
+        entries++;
+      }
+    }
+    if (lastIndex.size() == entries) {
+      return batch;
+    }
+
+    final List<SyncReplItem> coalesced = new ArrayList<>(batch.size() - entries + lastIndex.size());
+    for (int i = 0; i < batch.size(); i++) {
+      final UUID uuid = getEntryUuid(batch.get(i));
+      if (uuid == null || lastIndex.get(uuid) == i) {
+        coalesced.add(batch.get(i));
+      }
+    }
+    coalescedCount.addAndGet(batch.size() - coalesced.size());
+    return coalesced;
+  }
+
+
+  /**
+   * Discards items from the supplied queue until the search completes or no item arrives within the batch delay. Keeps
+   * the connection readable while the search is abandoned.
+   *
+   * @param  queue  to discard items from
+   *
+   * @throws  InterruptedException  if the thread is interrupted
+   */
+  private void discard(final BlockingQueue<SyncReplItem> queue)
+    throws InterruptedException
+  {
+    SyncReplItem item = queue.poll(batchDelay.toNanos(), TimeUnit.NANOSECONDS);
+    while (item != null && !isTerminal(item)) {
+      if (item.isAsyncRequest()) {
+        asyncRequest = item.getAsyncRequest();
+        abandon();
+      }
+      item = queue.poll(batchDelay.toNanos(), TimeUnit.NANOSECONDS);
+    }
+  }
+
+
+  /**
+   * Invokes {@link #discard(BlockingQueue)} and logs any interruption.
+   *
+   * @param  queue  to discard items from
+   */
+  private void drain(final BlockingQueue<SyncReplItem> queue)
+  {
+    try {
+      discard(queue);
+    } catch (InterruptedException e) {
+      logger.debug("Consumer interrupted", e);
+    }
+  }
+
+
+  /** Abandons the sync repl search if its async request has been received. */
+  private void abandon()
+  {
+    final AsyncRequest request = asyncRequest;
+    if (request != null) {
+      try {
+        request.abandon();
+      } catch (LdapException e) {
+        logger.warn("Could not abandon sync repl search {}", request, e);
+      }
+    }
+  }
+
+
+  /**
+   * Throws if this consumer is running.
+   *
+   * @throws  IllegalStateException  if the consumer is running
+   */
+  private void checkStopped()
+  {
+    if (isRunning()) {
+      throw new IllegalStateException("Cannot modify a running consumer");
+    }
+  }
+
+
+  /**
+   * Returns whether the supplied item is the last item produced by a search.
+   *
+   * @param  item  to inspect
+   *
+   * @return  whether the item is a response or an exception
+   */
+  private static boolean isTerminal(final SyncReplItem item)
+  {
+    return item.isResponse() || item.isException();
+  }
+
+
+  /**
+   * Returns the entryUUID of the supplied item.
+   *
+   * @param  item  to inspect
+   *
+   * @return  entryUUID or null if the item is not an entry with a sync state control
+   */
+  private static UUID getEntryUuid(final SyncReplItem item)
+  {
+    final SyncStateControl ctl = item.isEntry() ? item.getEntry().getSyncStateControl() : null;
+    return ctl != null ? ctl.getEntryUuid() : null;
+  }
+
+
+  /**
+   * Returns the last cookie in the supplied batch.
+   *
+   * @param  batch  to search
+   *
+   * @return  cookie or null if no item in the batch contains a cookie
+   */
+  private static byte[] findCookie(final List<SyncReplItem> batch)
+  {
+    byte[] cookie = null;
+    for (SyncReplItem item : batch) {
+      byte[] b = null;
+      if (item.isEntry() && item.getEntry().getSyncStateControl() != null) {
+        b = item.getEntry().getSyncStateControl().getCookie();
+      } else if (item.isMessage()) {
+        b = item.getMessage().getCookie();
+      } else if (item.isResponse()) {
+        final SyncDoneControl ctl = item.getResponse().getSyncDoneControl();
+        b = ctl != null ? ctl.getCookie() : null;
+      }
+      if (b != null) {
+        cookie = b;
+      }
+    }
+    return cookie;
+  }
+
+
+  @Override
+  public String toString()
+  {
+    return
+      String.format(
+        "[%s@%d::cookieManager=%s, batchSize=%s, batchDelay=%s, capacity=%s, coalesceEntries=%s, batchCount=%s]",
+        getClass().getName(),
+        hashCode(),
+        cookieManager,
+        batchSize,
+        batchDelay,
+        capacity,
+        coalesceEntries,
+        batchCount);
+  }
+
+
+  /**
+   * Cookie manager supplied to {@link SyncReplClient} that reads from the underlying manager and ignores writes.
+   * Cookies are only written by the consumer once their batch has been handled.
+   */
+  private static class ReadOnlyCookieManager implements CookieManager
+  {
+
+    /** Underlying cookie manager. */
+    private final CookieManager cookieManager;
+
+
+    /**
+     * Creates a new read only cookie manager.
+     *
+     * @param  manager  to read cookies from
+     */
+    ReadOnlyCookieManager(final CookieManager manager)
+    {
+      cookieManager = manager;
+    }
+
+
+    @Override
+    public byte[] readCookie()
+    {
+      return cookieManager.readCookie();
+    }
+
+
+    @Override
+    public void writeCookie(final byte[] cookie) {}
+  }
+}
@@ -0,0 +1,455 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.ext;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.Set;
+import org.ldaptive.AddRequest;
+import org.ldaptive.AttributeModification;
+import org.ldaptive.Connection;
+import org.ldaptive.DeleteRequest;
+import org.ldaptive.DnParser;
+import org.ldaptive.LdapAttribute;
+import org.ldaptive.LdapEntry;
+import org.ldaptive.LdapException;
+import org.ldaptive.ModifyRequest;
+import org.ldaptive.Request;
+import org.ldaptive.Response;
+import org.ldaptive.ResultCode;
+import org.ldaptive.SearchFilter;
+import org.ldaptive.SearchOperation;
+import org.ldaptive.SearchRequest;
+import org.ldaptive.SearchResult;
+import org.ldaptive.SearchScope;
+import org.ldaptive.concurrent.BulkWriteExecutor;
+import org.ldaptive.concurrent.BulkWriteListener;
+import org.ldaptive.concurrent.BulkWriteResult;
+import org.ldaptive.pool.PooledConnectionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Executes many merge requests with the same outcome as executing a {@link MergeOperation} for each, but without a
+ * search round trip per entry. Requests are read in batches of {@link #getBatchSize()}; the target entries of a batch
+ * are fetched with one single level search per parent DN whose filter matches the RDN of every entry in the batch under
+ * that parent, for example <code>(|(uid=jdoe)(uid=jsmith))</code>. Each source entry is then compared with its target
+ * and only the add, modify or delete that is needed is written through a {@link BulkWriteExecutor}, which continues to
+ * write one batch while the next is fetched. Merges that require no change produce no write and no item in the
+ * result:
+ *
+ * <pre>
+   final BatchMergeExecutor executor = new BatchMergeExecutor(pooledConnectionFactory);
+   executor.getBulkWriteExecutor().setConcurrency(8);
+   final BulkWriteResult result = executor.execute(mergeRequests);
+ * </pre>
+ *
+ * <p>Requests whose target cannot be fetched in a batch, such as those with a multi-valued RDN, those whose DN
+ * appeared in an earlier request or those whose batch search fails, are written as merge requests and executed with a
+ * {@link MergeOperation}, which searches for the target immediately before writing it. Targets are fetched on a
+ * connection from the same pool, so the pool should allow one more connection than the bulk write concurrency.</p>
+ *
+ * @author  Middleware Services
+ */
+public class BatchMergeExecutor
+{
+
+  /** Default number of merge requests fetched at once. Value is {@value}. */
+  public static final int DEFAULT_BATCH_SIZE = 100;
+
+  /** Logger for this class. */
+  protected final Logger logger = LoggerFactory.getLogger(getClass());
+
+  /** To write changes with. */
+  private final BulkWriteExecutor writer;
+
+  /** Number of merge requests fetched at once. */
+  private int batchSize = DEFAULT_BATCH_SIZE;
+
+
+  /**
+   * Creates a new batch merge executor.
+   *
+   * @param  factory  pooled connection factory
+   */
+  public BatchMergeExecutor(final PooledConnectionFactory factory)
+  {
+    this(new BulkWriteExecutor(factory));
+  }
+
+
+  /**
+   * Creates a new batch merge executor.
+   *
+   * @param  executor  to write changes with
+   */
+  public BatchMergeExecutor(final BulkWriteExecutor executor)
+  {
+    if (executor == null) {
+      throw new IllegalArgumentException("Bulk write executor cannot be null");
+    }
+    writer = executor;
+  }
+
+
+  /**
+   * Returns the executor changes are written with.
+   *
+   * @return  bulk write executor
+   */
+  public BulkWriteExecutor getBulkWriteExecutor()
+  {
+    return writer;
+  }
+
+
+  /**
+   * Returns the number of merge requests whose targets are fetched at once.
+   *
+   * @return  batch size
+   */
+  public int getBatchSize()
+  {
+    return batchSize;
+  }
+
+
+  /**
+   * Sets the number of merge requests whose targets are fetched at once.
+   *
+   * @param  i  batch size
+   */
+  public void setBatchSize(final int i)
+  {
+    if (i < 1) {
+      throw new IllegalArgumentException("Batch size must be greater than zero");
+    }
+    logger.trace("setting batchSize: {}", i);
+    batchSize = i;
+  }
+
+
+  /**
+   * Executes the supplied merge requests and waits for the resulting writes to complete.
+   *
+   * @param  requests  to execute
+   *
+   * @return  outcome of every write
+   */
+  public BulkWriteResult execute(final MergeRequest... requests)
+  {
+    return execute(Arrays.asList(requests), null);
+  }
+
+
+  /**
+   * Executes the supplied merge requests and waits for the resulting writes to complete.
+   *
+   * @param  requests  to execute
+   *
+   * @return  outcome of every write
+   */
+  public BulkWriteResult execute(final Iterable<? extends MergeRequest> requests)
+  {
+    return execute(requests, null);
+  }
+
+
+  /**
+   * Executes the supplied merge requests and waits for the resulting writes to complete. Requests are read from the
+   * iterable as the bulk write executor has capacity.
+   *
+   * @param  requests  to execute
+   * @param  listener  to deliver the outcome of each write to, or null to return the outcomes in the result
+   *
+   * @return  summary of the writes and their outcomes if no listener was supplied
+   */
+  public BulkWriteResult execute(final Iterable<? extends MergeRequest> requests, final BulkWriteListener listener)
+  {
+    return writer.execute(() -> new WriteRequests(requests.iterator()), listener);
+  }
+
+
+  /**
+   * Returns the request needed to merge the source entry of the supplied request into the supplied target.
+   *
+   * @param  request  merge request
+   * @param  target  entry that exists in the LDAP or null if the entry does not exist
+   *
+   * @return  add, modify or delete request or null if no change is needed
+   */
+  protected Request createWriteRequest(final MergeRequest request, final LdapEntry target)
+  {
+    final LdapEntry source = request.getEntry();
+    Request write = null;
+    if (target == null) {
+      if (!request.getDeleteEntry()) {
+        write = new AddRequest(source.getDn(), source.getAttributes());
+      }
+    } else if (request.getDeleteEntry()) {
+      write = new DeleteRequest(target.getDn());
+    } else {
+      final List<AttributeModification> mods = MergeOperation.computeModifications(request, source, target);
+      if (!mods.isEmpty()) {
+        write = new ModifyRequest(target.getDn(), mods.toArray(new AttributeModification[mods.size()]));
+      }
+    }
+    logger.debug("computed {} for request {}", write, request);
+    return write;
+  }
+
+
+  /** Invokes {@link BulkWriteExecutor#shutdown()}. */
+  public void shutdown()
+  {
+    writer.shutdown();
+  }
+
+
+  @Override
+  public String toString()
+  {
+    return String.format("[%s@%d::writer=%s, batchSize=%s]", getClass().getName(), hashCode(), writer, batchSize);
+  }
+
+
+  /**
+   * Returns the index of the comma separating the first RDN of the supplied DN from the remaining RDNs. Escaped and
+   * quoted commas are ignored.
+   *
+   * @param  dn  to inspect
+   *
+   * @return  index of the separator or -1 if the DN contains a single RDN
+   */
+  private static int indexOfRdnSeparator(final String dn)
+  {
+    int index = -1;
+    boolean quoted = false;
+    for (int i = 0; i < dn.length() && index == -1; i++) {
+      final char c = dn.charAt(i);
+      if (c == '\\') {
+        i++;
+      } else if (c == '"') {
+        quoted = !quoted;
+      } else if ((c == ',' || c == ';') && !quoted) {
+        index = i;
+      }
+    }
+    return index;
+  }
+
+
+  /**
+   * Returns the first RDN of the supplied DN if it has a single attribute value and a parent.
+   *
+   * @param  dn  to parse
+   *
+   * @return  RDN attribute or null
+   */
+  private static LdapAttribute parseRdn(final String dn)
+  {
+    LdapAttribute rdn = null;
+    final int sep = dn != null ? indexOfRdnSeparator(dn) : -1;
+    if (sep > 0) {
+      try {
+        final List<LdapAttribute> attrs = DnParser.convertDnToAttributes(dn.substring(0, sep));
+        if (attrs.size() == 1) {
+          rdn = attrs.get(0);
+        }
+      } catch (RuntimeException e) {
+        rdn = null;
+      }
+    }
+    return rdn;
+  }
+
+
+  /**
+   * Returns a key that identifies the supplied RDN by both its attribute name and value, ignoring case.
+   *
+   * @param  rdn  RDN attribute
+   *
+   * @return  lower case name and value
+   */
+  private static String rdnKey(final LdapAttribute rdn)
+  {
+    return rdn.getName().toLowerCase() + "=" + rdn.getStringValue().toLowerCase();
+  }
+
+
+  /** Converts merge requests into the writes needed to perform them, fetching targets a batch at a time. */
+  private final class WriteRequests implements Iterator<Request>
+  {
+
+    /** Merge requests. */
+    private final Iterator<? extends MergeRequest> source;
+
+    /** Writes for the current batch. */
+    private final Queue<Request> ready = new ArrayDeque<>();
+
+    /** Lower case DNs of the requests read so far. */
+    private final Set<String> seen = new HashSet<>();
+
+
+    /**
+     * Creates a new write requests.
+     *
+     * @param  requests  merge requests
+     */
+    WriteRequests(final Iterator<? extends MergeRequest> requests)
+    {
+      source = requests;
+    }
+
+
+    @Override
+    public boolean hasNext()
+    {
+      while (ready.isEmpty() && source.hasNext()) {
+        nextBatch();
+      }
+      return !ready.isEmpty();
+    }
+
+
+    @Override
+    public Request next()
+    {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      return ready.remove();
+    }
+
+
+    /** Reads the next batch of merge requests, fetches their targets and queues the resulting writes. */
+    private void nextBatch()
+    {
+      final List<MergeRequest> batch = new ArrayList<>(batchSize);
+      while (batch.size() < batchSize && source.hasNext()) {
+        batch.add(source.next());
+      }
+      final LdapAttribute[] rdns = new LdapAttribute[batch.size()];
+      final Map<String, List<Integer>> groups = new HashMap<>();
+      for (int i = 0; i < batch.size(); i++) {
+        final LdapEntry entry = batch.get(i).getEntry();
+        final String dn = entry != null ? entry.getDn() : null;
+        if (dn != null && seen.add(dn.toLowerCase())) {
+          rdns[i] = parseRdn(dn);
+          if (rdns[i] != null) {
+            final String key = String.format(
+              "%s:%s:%s",
+              rdns[i].getName().toLowerCase(),
+              dn.substring(indexOfRdnSeparator(dn) + 1).trim().toLowerCase(),
+              Arrays.toString(batch.get(i).getSearchAttributes()));
+            groups.computeIfAbsent(key, k -> new ArrayList<>()).add(i);
+          }
+        }
+      }
+
+      final LdapEntry[] targets = new LdapEntry[batch.size()];
+      final boolean[] fetched = new boolean[batch.size()];
+      if (!groups.isEmpty()) {
+        Connection conn = null;
+        try {
+          conn = writer.getConnectionFactory().getConnection();
+          for (List<Integer> group : groups.values()) {
+            fetch(conn, batch, rdns, group, targets, fetched);
+          }
+        } catch (LdapException e) {
+          logger.warn("Could not fetch targets, executing merge requests individually", e);
+        } finally {
+          if (conn != null) {
+            conn.close();
+          }
+        }
+      }
+
+      for (int i = 0; i < batch.size(); i++) {
+        if (fetched[i]) {
+          final Request write = createWriteRequest(batch.get(i), targets[i]);
+          if (write != null) {
+            ready.add(write);
+          }
+        } else {
+          ready.add(batch.get(i));
+        }
+      }
+    }
+
+
+    /**
+     * Fetches the targets of a group of merge requests that share a parent DN, RDN attribute and search attributes.
+     *
+     * @param  conn  to search on
+     * @param  batch  merge requests
+     * @param  rdns  RDN of each merge request
+     * @param  group  indexes of the merge requests to fetch
+     * @param  targets  to store the fetched targets in
+     * @param  fetched  to record the merge requests whose targets were fetched in
+     */
+    private void fetch(
+      final Connection conn,
+      final List<MergeRequest> batch,
+      final LdapAttribute[] rdns,
+      final List<Integer> group,
+      final LdapEntry[] targets,
+      final boolean[] fetched)
+    {
+      final int first = group.get(0);
+      final String dn = batch.get(first).getEntry().getDn();
+      final String name = rdns[first].getName();
+      final StringBuilder filter = new StringBuilder(group.size() > 1 ? "(|" : "");
+      for (int i : group) {
+        filter.append('(').append(name).append('=').append(SearchFilter.encodeValue(rdns[i].getStringValue()))
+          .append(')');
+      }
+      if (group.size() > 1) {
+        filter.append(')');
+      }
+      final SearchRequest request = new SearchRequest(
+        dn.substring(indexOfRdnSeparator(dn) + 1).trim(),
+        new SearchFilter(filter.toString()));
+      request.setReturnAttributes(batch.get(first).getSearchAttributes());
+      request.setSearchScope(SearchScope.ONELEVEL);
+
+      // siblings may match the filter through a different RDN attribute, so targets are keyed by the whole RDN
+      final Map<String, LdapEntry> found = new HashMap<>(group.size());
+      boolean success = false;
+      try {
+        final Response<SearchResult> response = new SearchOperation(conn).execute(request);
+        if (response.getResultCode() == ResultCode.SUCCESS) {
+          for (LdapEntry entry : response.getResult().getEntries()) {
+            final LdapAttribute rdn = parseRdn(entry.getDn());
+            if (rdn != null) {
+              found.put(rdnKey(rdn), entry);
+            }
+          }
+          success = true;
+        } else {
+          logger.warn("Could not fetch targets for {}, search returned {}", request, response);
+        }
+      } catch (LdapException e) {
+        if (e.getResultCode() == ResultCode.NO_SUCH_OBJECT) {
+          success = true;
+        } else {
+          logger.warn("Could not fetch targets for {}", request, e);
+        }
+      }
+      if (success) {
+        logger.debug("fetched {} of {} targets with {}", found.size(), group.size(), request);
+        for (int i : group) {
+          targets[i] = found.get(rdnKey(rdns[i]));
+          fetched[i] = true;
+        }
+      }
+    }
+  }
+}
@@ -4,7 +4,9 @@ package org.ldaptive.ext;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import org.ldaptive.AbstractOperation;
 import org.ldaptive.AddOperation;
 import org.ldaptive.AddRequest;
@@ -32,9 +34,9 @@ import org.ldaptive.SearchResult;
  *   <li>if the entry exists in the LDAP, execute a modify</li>
  * </ul>
  *
- * <p>{@link LdapEntry#computeModifications(LdapEntry, LdapEntry)} is used to determine the list of attribute
- * modifications that are necessary to perform the merge. Either {@link MergeRequest#getIncludeAttributes()} or {@link
- * MergeRequest#getExcludeAttributes()} will be used, but not both.</p>
+ * <p>{@link LdapEntry#computeModifications(LdapEntry, LdapEntry)}, or {@link MergeRequest#getEntryDiff()} if one is
+ * set, is used to determine the list of attribute modifications that are necessary to perform the merge. Either {@link
+ * MergeRequest#getIncludeAttributes()} or {@link MergeRequest#getExcludeAttributes()} will be used, but not both.</p>
  *
  * @author  Middleware Services
  */
@@ -114,9 +116,8 @@ public class MergeOperation extends AbstractOperation<MergeRequest, Void>
 
 
   /**
-   * Retrieves the attribute modifications from {@link LdapEntry#computeModifications(LdapEntry, LdapEntry)} and
-   * executes a {@link ModifyOperation} with those results. If no modifications are necessary, no operation is
-   * performed.
+   * Computes the attribute modifications needed to change the target into the source and executes a {@link
+   * ModifyOperation} with those results. If no modifications are necessary, no operation is performed.
    *
    * @param  request  merge request
    * @param  source  ldap entry to merge into the LDAP
@@ -130,51 +131,29 @@ public class MergeOperation extends AbstractOperation<MergeRequest, Void>
     throws LdapException
   {
     Response<Void> response;
-    final AttributeModification[] modifications = LdapEntry.computeModifications(source, target);
-    if (modifications != null && modifications.length > 0) {
-      final List<AttributeModification> resultModifications = new ArrayList<>(modifications.length);
-      final String[] includeAttrs = request.getIncludeAttributes();
-      final String[] excludeAttrs = request.getExcludeAttributes();
-      if (includeAttrs != null && includeAttrs.length > 0) {
-        final List<String> l = Arrays.asList(includeAttrs);
-        for (AttributeModification am : modifications) {
-          if (l.contains(am.getAttribute().getName())) {
-            resultModifications.add(am);
-          }
-        }
-      } else if (excludeAttrs != null && excludeAttrs.length > 0) {
-        final List<String> l = Arrays.asList(excludeAttrs);
-        for (AttributeModification am : modifications) {
-          if (!l.contains(am.getAttribute().getName())) {
-            resultModifications.add(am);
-          }
-        }
-      } else {
-        Collections.addAll(resultModifications, modifications);
-      }
-      if (!resultModifications.isEmpty()) {
-        logger.info(
-          "modifying target entry {} with modifications {} from source entry " +
-          "{} for request {}",
-          target,
-          resultModifications,
-          source,
-          request);
-
-        final ModifyOperation modify = new ModifyOperation(getConnection());
-        response = modify.execute(
-          new ModifyRequest(
-            target.getDn(),
-            resultModifications.toArray(new AttributeModification[resultModifications.size()])));
-        logger.info(
-          "modified target entry {} with modifications {} from source entry " +
-          "{} for request {}",
-          target,
-          resultModifications,
-          source,
-          request);
-        return response;
-      }
+    final List<AttributeModification> resultModifications = computeModifications(request, source, target);
+    if (!resultModifications.isEmpty()) {
+      logger.info(
+        "modifying target entry {} with modifications {} from source entry " +
+        "{} for request {}",
+        target,
+        resultModifications,
+        source,
+        request);
+
+      final ModifyOperation modify = new ModifyOperation(getConnection());
+      response = modify.execute(
+        new ModifyRequest(
+          target.getDn(),
+          resultModifications.toArray(new AttributeModification[resultModifications.size()])));
+      logger.info(
+        "modified target entry {} with modifications {} from source entry " +
+        "{} for request {}",
+        target,
+        resultModifications,
+        source,
+        request);
+      return response;
     }
     response = new Response<>(null, null);
     logger.info(
@@ -187,6 +166,48 @@ public class MergeOperation extends AbstractOperation<MergeRequest, Void>
   }
 
 
+  /**
+   * Returns the attribute modifications from {@link MergeRequest#getEntryDiff()}, or {@link
+   * LdapEntry#computeModifications(LdapEntry, LdapEntry)} if the request has none, that are allowed by the include or
+   * exclude attributes of the supplied request.
+   *
+   * @param  request  merge request
+   * @param  source  ldap entry to merge into the LDAP
+   * @param  target  ldap entry that exists in the LDAP
+   *
+   * @return  attribute modifications to perform
+   */
+  static List<AttributeModification> computeModifications(
+    final MergeRequest request,
+    final LdapEntry source,
+    final LdapEntry target)
+  {
+    final AttributeModification[] modifications = request.getEntryDiff() != null ?
+      request.getEntryDiff().computeModifications(source, target) : LdapEntry.computeModifications(source, target);
+    final List<AttributeModification> resultModifications = new ArrayList<>(modifications.length);
+    final String[] includeAttrs = request.getIncludeAttributes();
+    final String[] excludeAttrs = request.getExcludeAttributes();
+    if (includeAttrs != null && includeAttrs.length > 0) {
+      final Set<String> s = new HashSet<>(Arrays.asList(includeAttrs));
+      for (AttributeModification am : modifications) {
+        if (s.contains(am.getAttribute().getName())) {
+          resultModifications.add(am);
+        }
+      }
+    } else if (excludeAttrs != null && excludeAttrs.length > 0) {
+      final Set<String> s = new HashSet<>(Arrays.asList(excludeAttrs));
+      for (AttributeModification am : modifications) {
+        if (!s.contains(am.getAttribute().getName())) {
+          resultModifications.add(am);
+        }
+      }
+    } else {
+      Collections.addAll(resultModifications, modifications);
+    }
+    return resultModifications;
+  }
+
+
   /**
    * Executes an {@link AddOperation} for the supplied entry.
    *
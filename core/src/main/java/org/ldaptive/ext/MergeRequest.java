@@ -3,6 +3,7 @@ package org.ldaptive.ext;
 
 import java.util.Arrays;
 import org.ldaptive.AbstractRequest;
+import org.ldaptive.EntryDiff;
 import org.ldaptive.LdapEntry;
 
 /**
@@ -28,6 +29,9 @@ public class MergeRequest extends AbstractRequest
   /** Attribute names to exclude when performing a merge. */
   private String[] excludeAttrs;
 
+  /** Computes modifications at the value level. */
+  private EntryDiff entryDiff;
+
 
   /** Default constructor. */
   public MergeRequest() {}
@@ -167,13 +171,36 @@ public class MergeRequest extends AbstractRequest
   }
 
 
+  /**
+   * Returns the entry diff used to compute the modifications of a merge.
+   *
+   * @return  entry diff or null if {@link LdapEntry#computeModifications(LdapEntry, LdapEntry)} is used
+   */
+  public EntryDiff getEntryDiff()
+  {
+    return entryDiff;
+  }
+
+
+  /**
+   * Sets the entry diff used to compute the modifications of a merge. If null, modified attributes are replaced as a
+   * whole.
+   *
+   * @param  diff  entry diff
+   */
+  public void setEntryDiff(final EntryDiff diff)
+  {
+    entryDiff = diff;
+  }
+
+
   @Override
   public String toString()
   {
     return
       String.format(
         "[%s@%d::ldapEntry=%s, deleteEntry=%s, searchAttributes=%s, " +
-        "includeAttributes=%s, excludeAttributes=%s, controls=%s, " +
+        "includeAttributes=%s, excludeAttributes=%s, entryDiff=%s, controls=%s, " +
         "referralHandler=%s, intermediateResponseHandlers=%s]",
         getClass().getName(),
         hashCode(),
@@ -182,6 +209,7 @@ public class MergeRequest extends AbstractRequest
         Arrays.toString(searchAttrs),
         Arrays.toString(includeAttrs),
         Arrays.toString(excludeAttrs),
+        entryDiff,
         Arrays.toString(getControls()),
         getReferralHandler(),
         Arrays.toString(getIntermediateResponseHandlers()));
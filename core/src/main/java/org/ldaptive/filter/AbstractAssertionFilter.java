@@ -0,0 +1,123 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.filter;
+
+import java.nio.charset.StandardCharsets;
+import org.ldaptive.LdapUtils;
+
+/**
+ * Base class for filters that compare an attribute with an assertion value.
+ *
+ * @author  Middleware Services
+ */
+public abstract class AbstractAssertionFilter extends AbstractFilter
+{
+
+  /** Attribute description. */
+  private final String attributeDescription;
+
+  /** Assertion value. */
+  private final byte[] assertionValue;
+
+
+  /**
+   * Creates a new abstract assertion filter.
+   *
+   * @param  attr  attribute description
+   * @param  value  assertion value
+   */
+  public AbstractAssertionFilter(final String attr, final byte[] value)
+  {
+    if (attr == null || attr.isEmpty()) {
+      throw new IllegalArgumentException("Attribute description cannot be null or empty");
+    }
+    if (value == null) {
+      throw new IllegalArgumentException("Assertion value cannot be null");
+    }
+    attributeDescription = attr;
+    assertionValue = value;
+  }
+
+
+  /**
+   * Creates a new abstract assertion filter.
+   *
+   * @param  attr  attribute description
+   * @param  value  assertion value
+   */
+  public AbstractAssertionFilter(final String attr, final String value)
+  {
+    this(attr, value != null ? value.getBytes(StandardCharsets.UTF_8) : null);
+  }
+
+
+  /**
+   * Returns the attribute description.
+   *
+   * @return  attribute description
+   */
+  public String getAttributeDescription()
+  {
+    return attributeDescription;
+  }
+
+
+  /**
+   * Returns the assertion value.
+   *
+   * @return  assertion value
+   */
+  public byte[] getAssertionValue()
+  {
+    return assertionValue.clone();
+  }
+
+
+  /**
+   * Returns the assertion value as a UTF-8 string.
+   *
+   * @return  assertion value
+   */
+  public String getAssertionValueAsString()
+  {
+    return new String(assertionValue, StandardCharsets.UTF_8);
+  }
+
+
+  /**
+   * Returns the operator that separates the attribute description from the assertion value.
+   *
+   * @return  filter operator
+   */
+  protected abstract String getOperator();
+
+
+  @Override
+  public void format(final StringBuilder sb)
+  {
+    sb.append('(').append(attributeDescription).append(getOperator());
+    appendValue(sb, assertionValue);
+    sb.append(')');
+  }
+
+
+  @Override
+  public boolean equals(final Object o)
+  {
+    if (o == this) {
+      return true;
+    }
+    if (o != null && getClass() == o.getClass()) {
+      final AbstractAssertionFilter v = (AbstractAssertionFilter) o;
+      return LdapUtils.areEqual(attributeDescription, v.attributeDescription) &&
+             LdapUtils.areEqual(assertionValue, v.assertionValue);
+    }
+    return false;
+  }
+
+
+  @Override
+  public int hashCode()
+  {
+    return LdapUtils.computeHashCode(getType().ordinal(), attributeDescription, assertionValue);
+  }
+}
@@ -0,0 +1,89 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.filter;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.ldaptive.LdapUtils;
+
+/**
+ * Base class for filters that combine a set of component filters.
+ *
+ * @author  Middleware Services
+ */
+public abstract class AbstractCompositeFilter extends AbstractFilter
+{
+
+  /** Component filters. */
+  private final List<Filter> components;
+
+
+  /**
+   * Creates a new abstract composite filter.
+   *
+   * @param  filters  component filters
+   */
+  public AbstractCompositeFilter(final Filter... filters)
+  {
+    if (filters == null || filters.length == 0) {
+      throw new IllegalArgumentException("Component filters cannot be null or empty");
+    }
+    for (Filter f : filters) {
+      if (f == null) {
+        throw new IllegalArgumentException("Component filter cannot be null");
+      }
+    }
+    components = Collections.unmodifiableList(Arrays.asList(filters.clone()));
+  }
+
+
+  /**
+   * Returns the component filters.
+   *
+   * @return  unmodifiable list of component filters
+   */
+  public List<Filter> getComponents()
+  {
+    return components;
+  }
+
+
+  /**
+   * Returns the character that identifies this filter type in its string representation.
+   *
+   * @return  filter type character
+   */
+  protected abstract char getTypeCharacter();
+
+
+  @Override
+  public void format(final StringBuilder sb)
+  {
+    sb.append('(').append(getTypeCharacter());
+    for (Filter f : components) {
+      f.format(sb);
+    }
+    sb.append(')');
+  }
+
+
+  @Override
+  public boolean equals(final Object o)
+  {
+    if (o == this) {
+      return true;
+    }
+    if (o != null && getClass() == o.getClass()) {
+      final AbstractCompositeFilter v = (AbstractCompositeFilter) o;
+      return LdapUtils.areEqual(components, v.components);
+    }
+    return false;
+  }
+
+
+  @Override
+  public int hashCode()
+  {
+    return LdapUtils.computeHashCode(getTypeCharacter(), components);
+  }
+}
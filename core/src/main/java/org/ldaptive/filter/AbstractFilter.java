@@ -0,0 +1,61 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.filter;
+
+/**
+ * Base class for search filters.
+ *
+ * @author  Middleware Services
+ */
+public abstract class AbstractFilter implements Filter
+{
+
+  /** Hex digits used to escape assertion values. */
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  /** Smallest printable ASCII character. */
+  private static final int MIN_PRINTABLE = 0x20;
+
+  /** Largest printable ASCII character. */
+  private static final int MAX_PRINTABLE = 0x7E;
+
+  /** Mask for the low nibble of a byte. */
+  private static final int NIBBLE_MASK = 0x0F;
+
+  /** Bits in a nibble. */
+  private static final int NIBBLE_BITS = 4;
+
+
+  @Override
+  public String format()
+  {
+    final StringBuilder sb = new StringBuilder();
+    format(sb);
+    return sb.toString();
+  }
+
+
+  /**
+   * Appends the supplied assertion value to the supplied builder. Printable ASCII characters other than '*', '(', ')'
+   * and '\' are appended as is, all other bytes are escaped as \XX.
+   *
+   * @param  sb  to append to
+   * @param  value  to escape
+   */
+  protected static void appendValue(final StringBuilder sb, final byte[] value)
+  {
+    for (byte b : value) {
+      if (b < MIN_PRINTABLE || b > MAX_PRINTABLE || b == '*' || b == '(' || b == ')' || b == '\\') {
+        sb.append('\\').append(HEX_DIGITS[(b >> NIBBLE_BITS) & NIBBLE_MASK]).append(HEX_DIGITS[b & NIBBLE_MASK]);
+      } else {
+        sb.append((char) b);
+      }
+    }
+  }
+
+
+  @Override
+  public String toString()
+  {
+    return String.format("[%s@%d::filter=%s]", getClass().getName(), hashCode(), format());
+  }
+}
@@ -0,0 +1,36 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.filter;
+
+/**
+ * Filter that matches if all of its component filters match.
+ *
+ * @author  Middleware Services
+ */
+public class AndFilter extends AbstractCompositeFilter
+{
+
+
+  /**
+   * Creates a new and filter.
+   *
+   * @param  filters  component filters
+   */
+  public AndFilter(final Filter... filters)
+  {
+    super(filters);
+  }
+
+
+  @Override
+  public Type getType()
+  {
+    return Type.AND;
+  }
+
+
+  @Override
+  protected char getTypeCharacter()
+  {
+    return '&';
+  }
+}
@@ -0,0 +1,49 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.filter;
+
+/**
+ * Filter that matches entries with an attribute value approximately equal to the assertion value.
+ *
+ * @author  Middleware Services
+ */
+public class ApproximateFilter extends AbstractAssertionFilter
+{
+
+
+  /**
+   * Creates a new approximate filter.
+   *
+   * @param  attr  attribute description
+   * @param  value  assertion value
+   */
+  public ApproximateFilter(final String attr, final byte[] value)
+  {
+    super(attr, value);
+  }
+
+
+  /**
+   * Creates a new approximate filter.
+   *
+   * @param  attr  attribute description
+   * @param  value  assertion value
+   */
+  public ApproximateFilter(final String attr, final String value)
+  {
+    super(attr, value);
+  }
+
+
+  @Override
+  public Type getType()
+  {
+    return Type.APPROXIMATE;
+  }
+
+
+  @Override
+  protected String getOperator()
+  {
+    return "~=";
+  }
+}
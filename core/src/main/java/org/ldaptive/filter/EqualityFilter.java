@@ -0,0 +1,49 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.filter;
+
+/**
+ * Filter that matches entries with an attribute value equal to the assertion value.
+ *
+ * @author  Middleware Services
+ */
+public class EqualityFilter extends AbstractAssertionFilter
+{
+
+
+  /**
+   * Creates a new equality filter.
+   *
+   * @param  attr  attribute description
+   * @param  value  assertion value
+   */
+  public EqualityFilter(final String attr, final byte[] value)
+  {
+    super(attr, value);
+  }
+
+
+  /**
+   * Creates a new equality filter.
+   *
+   * @param  attr  attribute description
+   * @param  value  assertion value
+   */
+  public EqualityFilter(final String attr, final String value)
+  {
+    super(attr, value);
+  }
+
+
+  @Override
+  public Type getType()
+  {
+    return Type.EQUALITY;
+  }
+
+
+  @Override
+  protected String getOperator()
+  {
+    return "=";
+  }
+}
@@ -0,0 +1,172 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.filter;
+
+import java.nio.charset.StandardCharsets;
+import org.ldaptive.LdapUtils;
+
+/**
+ * Filter that matches entries using a matching rule assertion of the form attr[:dn][:rule]:=value or
+ * [:dn]:rule:=value.
+ *
+ * @author  Middleware Services
+ */
+public class ExtensibleFilter extends AbstractFilter
+{
+
+  /** hash code seed. */
+  private static final int HASH_CODE_SEED = 10499;
+
+  /** Matching rule. */
+  private final String matchingRule;
+
+  /** Attribute description. */
+  private final String attributeDescription;
+
+  /** Match value. */
+  private final byte[] matchValue;
+
+  /** Whether to match attributes in the entry DN. */
+  private final boolean dnAttributes;
+
+
+  /**
+   * Creates a new extensible filter. At least one of the matching rule or the attribute description must be supplied.
+   *
+   * @param  rule  matching rule or null
+   * @param  attr  attribute description or null
+   * @param  value  match value
+   * @param  dn  whether to match attributes in the entry DN
+   */
+  public ExtensibleFilter(final String rule, final String attr, final byte[] value, final boolean dn)
+  {
+    if ((rule == null || rule.isEmpty()) && (attr == null || attr.isEmpty())) {
+      throw new IllegalArgumentException("Extensible match requires a type or matching rule");
+    }
+    if (value == null) {
+      throw new IllegalArgumentException("Match value cannot be null");
+    }
+    matchingRule = rule != null && !rule.isEmpty() ? rule : null;
+    attributeDescription = attr != null && !attr.isEmpty() ? attr : null;
+    matchValue = value;
+    dnAttributes = dn;
+  }
+
+
+  /**
+   * Creates a new extensible filter. At least one of the matching rule or the attribute description must be supplied.
+   *
+   * @param  rule  matching rule or null
+   * @param  attr  attribute description or null
+   * @param  value  match value
+   * @param  dn  whether to match attributes in the entry DN
+   */
+  public ExtensibleFilter(final String rule, final String attr, final String value, final boolean dn)
+  {
+    this(rule, attr, value != null ? value.getBytes(StandardCharsets.UTF_8) : null, dn);
+  }
+
+
+  /**
+   * Returns the matching rule.
+   *
+   * @return  matching rule or null
+   */
+  public String getMatchingRule()
+  {
+    return matchingRule;
+  }
+
+
+  /**
+   * Returns the attribute description.
+   *
+   * @return  attribute description or null
+   */
+  public String getAttributeDescription()
+  {
+    return attributeDescription;
+  }
+
+
+  /**
+   * Returns the match value.
+   *
+   * @return  match value
+   */
+  public byte[] getMatchValue()
+  {
+    return matchValue.clone();
+  }
+
+
+  /**
+   * Returns the match value as a UTF-8 string.
+   *
+   * @return  match value
+   */
+  public String getMatchValueAsString()
+  {
+    return new String(matchValue, StandardCharsets.UTF_8);
+  }
+
+
+  /**
+   * Returns whether attributes in the entry DN are matched.
+   *
+   * @return  whether to match DN attributes
+   */
+  public boolean getDnAttributes()
+  {
+    return dnAttributes;
+  }
+
+
+  @Override
+  public Type getType()
+  {
+    return Type.EXTENSIBLE;
+  }
+
+
+  @Override
+  public void format(final StringBuilder sb)
+  {
+    sb.append('(');
+    if (attributeDescription != null) {
+      sb.append(attributeDescription);
+    }
+    if (dnAttributes) {
+      sb.append(":dn");
+    }
+    if (matchingRule != null) {
+      sb.append(':').append(matchingRule);
+    }
+    sb.append(":=");
+    appendValue(sb, matchValue);
+    sb.append(')');
+  }
+
+
+  @Override
+  public boolean equals(final Object o)
+  {
+    if (o == this) {
+      return true;
+    }
+    if (o instanceof ExtensibleFilter) {
+      final ExtensibleFilter v = (ExtensibleFilter) o;
+      return LdapUtils.areEqual(matchingRule, v.matchingRule) &&
+             LdapUtils.areEqual(attributeDescription, v.attributeDescription) &&
+             LdapUtils.areEqual(matchValue, v.matchValue) &&
+             LdapUtils.areEqual(dnAttributes, v.dnAttributes);
+    }
+    return false;
+  }
+
+
+  @Override
+  public int hashCode()
+  {
+    return LdapUtils.computeHashCode(HASH_CODE_SEED, matchingRule, attributeDescription, matchValue, dnAttributes);
+  }
+}
@@ -0,0 +1,70 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.filter;
+
+/**
+ * Immutable search filter as defined in RFC 4511. Instances are produced by {@link FilterParser} or constructed
+ * directly and may be shared between threads.
+ *
+ * @author  Middleware Services
+ */
+public interface Filter
+{
+
+  /** Filter types. */
+  enum Type {
+
+    /** and filter. */
+    AND,
+
+    /** or filter. */
+    OR,
+
+    /** not filter. */
+    NOT,
+
+    /** equality match filter. */
+    EQUALITY,
+
+    /** substring filter. */
+    SUBSTRING,
+
+    /** greater or equal filter. */
+    GREATER_OR_EQUAL,
+
+    /** less or equal filter. */
+    LESS_OR_EQUAL,
+
+    /** presence filter. */
+    PRESENCE,
+
+    /** approximate match filter. */
+    APPROXIMATE,
+
+    /** extensible match filter. */
+    EXTENSIBLE
+  }
+
+
+  /**
+   * Returns the type of this filter.
+   *
+   * @return  filter type
+   */
+  Type getType();
+
+
+  /**
+   * Appends the string representation of this filter, see RFC 4515, to the supplied builder.
+   *
+   * @param  sb  to append to
+   */
+  void format(StringBuilder sb);
+
+
+  /**
+   * Returns the string representation of this filter, see RFC 4515.
+   *
+   * @return  formatted filter
+   */
+  String format();
+}
@@ -0,0 +1,654 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.filter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import org.ldaptive.DnParser;
+import org.ldaptive.LdapAttribute;
+import org.ldaptive.LdapEntry;
+import org.ldaptive.SearchResult;
+import org.ldaptive.schema.AttributeType;
+import org.ldaptive.schema.Schema;
+
+/**
+ * Evaluates search filters against entries on the client. Filters are evaluated with the three valued logic of RFC 4511
+ * section 4.5.1.7, so an assertion that cannot be evaluated, e.g. an integer comparison against a non-numeric value,
+ * is undefined and does not match even when it is negated.
+ *
+ * <p>When a {@link Schema} is supplied, the equality, ordering and substrings rules of each attribute type, or of its
+ * superior types, are used if they are one of the {@link StandardMatchingRule}s. Otherwise values are compared with
+ * caseIgnoreMatch, or with octetStringMatch for binary attributes.</p>
+ *
+ * <p>Entries only contain the attributes that were requested, so filters evaluated against cached or streamed entries
+ * should only reference attributes that were returned. This class is thread safe.</p>
+ *
+ * @author  Middleware Services
+ */
+public class FilterEvaluator
+{
+
+  /** Index of the equality rule. */
+  private static final int EQUALITY = 0;
+
+  /** Index of the ordering rule. */
+  private static final int ORDERING = 1;
+
+  /** Index of the substrings rule. */
+  private static final int SUBSTRINGS = 2;
+
+  /** Maximum number of superior types to follow when resolving rules. */
+  private static final int MAX_SUPERIOR_DEPTH = 16;
+
+  /** Schema used to resolve matching rules. */
+  private final Schema schema;
+
+  /** Matching rules by lower case attribute name. */
+  private final Map<String, StandardMatchingRule[]> attributeRules = new ConcurrentHashMap<>();
+
+
+  /** Creates a new filter evaluator that uses the default matching rules. */
+  public FilterEvaluator()
+  {
+    this(null);
+  }
+
+
+  /**
+   * Creates a new filter evaluator.
+   *
+   * @param  s  schema used to resolve matching rules, may be null
+   */
+  public FilterEvaluator(final Schema s)
+  {
+    schema = s;
+  }
+
+
+  /**
+   * Returns the schema used to resolve matching rules.
+   *
+   * @return  schema or null
+   */
+  public Schema getSchema()
+  {
+    return schema;
+  }
+
+
+  /**
+   * Returns whether the supplied entry matches the supplied filter.
+   *
+   * @param  filter  to evaluate
+   * @param  entry  to evaluate the filter against
+   *
+   * @return  whether the filter evaluates to true
+   */
+  public boolean matches(final Filter filter, final LdapEntry entry)
+  {
+    if (filter == null) {
+      throw new IllegalArgumentException("Filter cannot be null");
+    }
+    return evaluate(filter, entry) == Result.TRUE;
+  }
+
+
+  /**
+   * Returns a predicate that evaluates the supplied filter.
+   *
+   * @param  filter  to evaluate
+   *
+   * @return  predicate that matches entries the filter evaluates to true for
+   */
+  public Predicate<LdapEntry> predicate(final Filter filter)
+  {
+    if (filter == null) {
+      throw new IllegalArgumentException("Filter cannot be null");
+    }
+    return e -> evaluate(filter, e) == Result.TRUE;
+  }
+
+
+  /**
+   * Returns a new search result containing the entries of the supplied result that match the supplied filter. This can
+   * be used to answer a narrower query from the result of a broader query. References are not copied.
+   *
+   * @param  filter  to evaluate
+   * @param  result  to filter
+   *
+   * @return  search result containing the matching entries
+   */
+  public SearchResult filter(final Filter filter, final SearchResult result)
+  {
+    final Predicate<LdapEntry> p = predicate(filter);
+    final SearchResult filtered = new SearchResult(result.getSortBehavior());
+    for (LdapEntry e : result.getEntries()) {
+      if (p.test(e)) {
+        filtered.addEntry(e);
+      }
+    }
+    return filtered;
+  }
+
+
+  /**
+   * Evaluates the supplied filter.
+   *
+   * @param  filter  to evaluate
+   * @param  entry  to evaluate the filter against
+   *
+   * @return  result of the evaluation
+   */
+  protected Result evaluate(final Filter filter, final LdapEntry entry)
+  {
+    final Result result;
+    switch (filter.getType()) {
+
+    case AND:
+      result = evaluateAnd((AndFilter) filter, entry);
+      break;
+
+    case OR:
+      result = evaluateOr((OrFilter) filter, entry);
+      break;
+
+    case NOT:
+      result = evaluate(((NotFilter) filter).getComponent(), entry).negate();
+      break;
+
+    case EQUALITY:
+    case APPROXIMATE:
+      result = evaluateAssertion((AbstractAssertionFilter) filter, entry);
+      break;
+
+    case GREATER_OR_EQUAL:
+    case LESS_OR_EQUAL:
+      result = evaluateOrdering((AbstractAssertionFilter) filter, entry);
+      break;
+
+    case SUBSTRING:
+      result = evaluateSubstring((SubstringFilter) filter, entry);
+      break;
+
+    case PRESENCE:
+      result = Result.valueOf(
+        !getAttributes(entry, ((PresenceFilter) filter).getAttributeDescription()).isEmpty());
+      break;
+
+    case EXTENSIBLE:
+      result = evaluateExtensible((ExtensibleFilter) filter, entry);
+      break;
+
+    default:
+      throw new IllegalArgumentException("Unknown filter type: " + filter.getType());
+    }
+    return result;
+  }
+
+
+  /**
+   * Evaluates an and filter. An empty and filter is true.
+   *
+   * @param  filter  to evaluate
+   * @param  entry  to evaluate the filter against
+   *
+   * @return  false if any component is false, undefined if any component is undefined, otherwise true
+   */
+  private Result evaluateAnd(final AndFilter filter, final LdapEntry entry)
+  {
+    Result result = Result.TRUE;
+    for (Filter f : filter.getComponents()) {
+      final Result r = evaluate(f, entry);
+      if (r == Result.FALSE) {
+        result = Result.FALSE;
+        break;
+      } else if (r == Result.UNDEFINED) {
+        result = Result.UNDEFINED;
+      }
+    }
+    return result;
+  }
+
+
+  /**
+   * Evaluates an or filter. An empty or filter is false.
+   *
+   * @param  filter  to evaluate
+   * @param  entry  to evaluate the filter against
+   *
+   * @return  true if any component is true, undefined if any component is undefined, otherwise false
+   */
+  private Result evaluateOr(final OrFilter filter, final LdapEntry entry)
+  {
+    Result result = Result.FALSE;
+    for (Filter f : filter.getComponents()) {
+      final Result r = evaluate(f, entry);
+      if (r == Result.TRUE) {
+        result = Result.TRUE;
+        break;
+      } else if (r == Result.UNDEFINED) {
+        result = Result.UNDEFINED;
+      }
+    }
+    return result;
+  }
+
+
+  /**
+   * Evaluates an equality or approximate filter. Approximate filters are evaluated with the equality rule.
+   *
+   * @param  filter  to evaluate
+   * @param  entry  to evaluate the filter against
+   *
+   * @return  result of the evaluation
+   */
+  private Result evaluateAssertion(final AbstractAssertionFilter filter, final LdapEntry entry)
+  {
+    return evaluateEquality(
+      getAttributes(entry, filter.getAttributeDescription()),
+      getRule(filter.getAttributeDescription(), EQUALITY),
+      filter.getAssertionValue());
+  }
+
+
+  /**
+   * Evaluates an equality assertion against the supplied attributes.
+   *
+   * @param  attributes  to match
+   * @param  rule  to match with, null to use the default rule
+   * @param  assertion  value
+   *
+   * @return  result of the evaluation
+   */
+  private Result evaluateEquality(
+    final List<LdapAttribute> attributes,
+    final StandardMatchingRule rule,
+    final byte[] assertion)
+  {
+    Result result = Result.FALSE;
+    for (LdapAttribute la : attributes) {
+      final StandardMatchingRule r = resolve(rule, la);
+      final String value = normalize(r, decode(r, assertion));
+      if (value == null) {
+        result = Result.UNDEFINED;
+        break;
+      }
+      if (anyValue(la, r, v -> v.equals(value))) {
+        result = Result.TRUE;
+        break;
+      }
+    }
+    return result;
+  }
+
+
+  /**
+   * Evaluates a greater or equal or less or equal filter.
+   *
+   * @param  filter  to evaluate
+   * @param  entry  to evaluate the filter against
+   *
+   * @return  result of the evaluation
+   */
+  private Result evaluateOrdering(final AbstractAssertionFilter filter, final LdapEntry entry)
+  {
+    final boolean greater = filter.getType() == Filter.Type.GREATER_OR_EQUAL;
+    final StandardMatchingRule rule = getRule(filter.getAttributeDescription(), ORDERING);
+    Result result = Result.FALSE;
+    for (LdapAttribute la : getAttributes(entry, filter.getAttributeDescription())) {
+      final StandardMatchingRule r = resolve(rule, la);
+      final String value = normalize(r, decode(r, filter.getAssertionValue()));
+      if (value == null) {
+        result = Result.UNDEFINED;
+        break;
+      }
+      if (anyValue(la, r, v -> greater ? r.compare(v, value) >= 0 : r.compare(v, value) <= 0)) {
+        result = Result.TRUE;
+        break;
+      }
+    }
+    return result;
+  }
+
+
+  /**
+   * Evaluates a substring filter. The filter is undefined if the schema defines an equality rule but no substrings rule
+   * for the attribute, or if any substring is not valid for the rule.
+   *
+   * @param  filter  to evaluate
+   * @param  entry  to evaluate the filter against
+   *
+   * @return  result of the evaluation
+   */
+  private Result evaluateSubstring(final SubstringFilter filter, final LdapEntry entry)
+  {
+    final StandardMatchingRule rule = getRule(filter.getAttributeDescription(), SUBSTRINGS);
+    if (rule == null && getRule(filter.getAttributeDescription(), EQUALITY) != null) {
+      return Result.UNDEFINED;
+    }
+    Result result = Result.FALSE;
+    for (LdapAttribute la : getAttributes(entry, filter.getAttributeDescription())) {
+      final StandardMatchingRule r = resolve(rule, la);
+      final String initial = filter.getInitial() != null ? normalize(r, decode(r, filter.getInitial())) : null;
+      final String[] any = new String[filter.getAny() != null ? filter.getAny().length : 0];
+      for (int i = 0; i < any.length; i++) {
+        any[i] = normalize(r, decode(r, filter.getAny()[i]));
+      }
+      final String last = filter.getFinal() != null ? normalize(r, decode(r, filter.getFinal())) : null;
+      if (filter.getInitial() != null && initial == null ||
+          Arrays.asList(any).contains(null) ||
+          filter.getFinal() != null && last == null) {
+        result = Result.UNDEFINED;
+      } else if (anyValue(la, r, v -> matchesSubstring(v, initial, any, last))) {
+        result = Result.TRUE;
+        break;
+      }
+    }
+    return result;
+  }
+
+
+  /**
+   * Evaluates an extensible filter. Only the equality rules of {@link StandardMatchingRule} are supported, any other
+   * rule is undefined.
+   *
+   * @param  filter  to evaluate
+   * @param  entry  to evaluate the filter against
+   *
+   * @return  result of the evaluation
+   */
+  private Result evaluateExtensible(final ExtensibleFilter filter, final LdapEntry entry)
+  {
+    final String attr = filter.getAttributeDescription();
+    final StandardMatchingRule rule;
+    if (filter.getMatchingRule() != null) {
+      rule = StandardMatchingRule.forEqualityName(filter.getMatchingRule());
+    } else {
+      rule = getRule(attr, EQUALITY);
+    }
+    final Result result;
+    if (filter.getMatchingRule() != null && rule == null) {
+      result = Result.UNDEFINED;
+    } else {
+      final List<LdapAttribute> attributes = new ArrayList<>();
+      if (attr != null) {
+        attributes.addAll(getAttributes(entry, attr));
+      } else {
+        attributes.addAll(entry.getAttributes());
+      }
+      if (filter.getDnAttributes() && entry.getDn() != null) {
+        for (LdapAttribute la : DnParser.convertDnToAttributes(entry.getDn())) {
+          if (attr == null || matchesDescription(la, attr)) {
+            attributes.add(la);
+          }
+        }
+      }
+      result = evaluateEquality(attributes, rule, filter.getMatchValue());
+    }
+    return result;
+  }
+
+
+  /**
+   * Returns whether the supplied normalized value matches the supplied normalized substrings.
+   *
+   * @param  value  normalized attribute value
+   * @param  initial  normalized initial substring or null
+   * @param  any  normalized any substrings
+   * @param  last  normalized final substring or null
+   *
+   * @return  whether the value matches
+   */
+  private static boolean matchesSubstring(
+    final String value,
+    final String initial,
+    final String[] any,
+    final String last)
+  {
+    int pos = 0;
+    boolean match = true;
+    if (initial != null) {
+      match = value.startsWith(initial);
+      pos = initial.length();
+    }
+    for (int i = 0; match && i < any.length; i++) {
+      final int index = value.indexOf(any[i], pos);
+      match = index != -1;
+      pos = index + any[i].length();
+    }
+    if (match && last != null) {
+      match = value.length() - last.length() >= pos && value.endsWith(last);
+    }
+    return match;
+  }
+
+
+  /**
+   * Returns whether any value of the supplied attribute satisfies the supplied predicate. Values that are not valid for
+   * the rule never match.
+   *
+   * @param  attr  whose values are tested
+   * @param  rule  used to normalize values
+   * @param  predicate  tested against each normalized value
+   *
+   * @return  whether any value matches
+   */
+  private static boolean anyValue(
+    final LdapAttribute attr,
+    final StandardMatchingRule rule,
+    final Predicate<String> predicate)
+  {
+    final Collection<?> values = attr.isBinary() ? attr.getBinaryValues() : attr.getStringValues();
+    for (Object o : values) {
+      final String value = normalize(rule, o instanceof byte[] ? decode(rule, (byte[]) o) : (String) o);
+      if (value != null && predicate.test(value)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+
+  /**
+   * Returns the attributes of the supplied entry that match the supplied attribute description. An attribute matches
+   * if it has the same name and every option of the description.
+   *
+   * @param  entry  to read attributes from
+   * @param  description  attribute name with optional options
+   *
+   * @return  matching attributes
+   */
+  private static List<LdapAttribute> getAttributes(final LdapEntry entry, final String description)
+  {
+    final List<LdapAttribute> attributes = new ArrayList<>(1);
+    for (LdapAttribute la : entry.getAttributes()) {
+      if (matchesDescription(la, description)) {
+        attributes.add(la);
+      }
+    }
+    return attributes;
+  }
+
+
+  /**
+   * Returns whether the supplied attribute matches the supplied attribute description.
+   *
+   * @param  attr  to match
+   * @param  description  attribute name with optional options
+   *
+   * @return  whether the attribute has the same name and every option of the description
+   */
+  private static boolean matchesDescription(final LdapAttribute attr, final String description)
+  {
+    final String[] parts = description.split(";");
+    boolean match = attr.getName(false).equalsIgnoreCase(parts[0]);
+    for (int i = 1; match && i < parts.length; i++) {
+      match = false;
+      for (String option : attr.getOptions()) {
+        if (option.equalsIgnoreCase(parts[i])) {
+          match = true;
+          break;
+        }
+      }
+    }
+    return match;
+  }
+
+
+  /**
+   * Returns the matching rule configured in the schema for the supplied attribute.
+   *
+   * @param  description  attribute name with optional options
+   * @param  index  of the rule to return, one of equality, ordering or substrings
+   *
+   * @return  matching rule or null if the schema does not define a supported rule
+   */
+  private StandardMatchingRule getRule(final String description, final int index)
+  {
+    if (schema == null || description == null) {
+      return null;
+    }
+    final String name = description.split(";")[0].toLowerCase();
+    return attributeRules.computeIfAbsent(name, this::resolveRules)[index];
+  }
+
+
+  /**
+   * Resolves the equality, ordering and substrings rules for the supplied attribute from the schema, inheriting rules
+   * from superior types.
+   *
+   * @param  name  of the attribute
+   *
+   * @return  equality, ordering and substrings rules, any of which may be null
+   */
+  private StandardMatchingRule[] resolveRules(final String name)
+  {
+    final String[] ruleNames = new String[SUBSTRINGS + 1];
+    AttributeType type = schema.getAttributeType(name);
+    // guard against cycles in malformed schemas
+    for (int depth = 0; type != null && depth < MAX_SUPERIOR_DEPTH; depth++) {
+      if (ruleNames[EQUALITY] == null) {
+        ruleNames[EQUALITY] = type.getEqualityMatchingRule();
+      }
+      if (ruleNames[ORDERING] == null) {
+        ruleNames[ORDERING] = type.getOrderingMatchingRule();
+      }
+      if (ruleNames[SUBSTRINGS] == null) {
+        ruleNames[SUBSTRINGS] = type.getSubstringMatchingRule();
+      }
+      type = type.getSuperiorType() != null ? schema.getAttributeType(type.getSuperiorType()) : null;
+    }
+    final StandardMatchingRule[] rules = new StandardMatchingRule[SUBSTRINGS + 1];
+    for (int i = 0; i < rules.length; i++) {
+      rules[i] = StandardMatchingRule.forName(ruleNames[i]);
+    }
+    // an attribute without an ordering rule is ordered with its equality rule
+    if (rules[ORDERING] == null) {
+      rules[ORDERING] = rules[EQUALITY];
+    }
+    return rules;
+  }
+
+
+  /**
+   * Returns the supplied rule or the default rule for the supplied attribute.
+   *
+   * @param  rule  resolved from the schema, may be null
+   * @param  attr  being matched
+   *
+   * @return  matching rule
+   */
+  private static StandardMatchingRule resolve(final StandardMatchingRule rule, final LdapAttribute attr)
+  {
+    if (rule != null) {
+      return rule;
+    }
+    return attr.isBinary() ? StandardMatchingRule.OCTET_STRING : StandardMatchingRule.CASE_IGNORE;
+  }
+
+
+  /**
+   * Decodes the supplied bytes for the supplied rule. Octet strings are decoded one character per byte so that they
+   * compare byte for byte, all other values are decoded as UTF-8.
+   *
+   * @param  rule  being matched
+   * @param  value  to decode
+   *
+   * @return  decoded value
+   */
+  private static String decode(final StandardMatchingRule rule, final byte[] value)
+  {
+    return new String(
+      value,
+      rule == StandardMatchingRule.OCTET_STRING ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
+  }
+
+
+  /**
+   * Normalizes the supplied value.
+   *
+   * @param  rule  to normalize with
+   * @param  value  to normalize
+   *
+   * @return  normalized value or null if the value is not valid for the rule
+   */
+  private static String normalize(final StandardMatchingRule rule, final String value)
+  {
+    try {
+      return rule.normalize(value);
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+
+  /** Result of evaluating a filter. */
+  protected enum Result {
+
+    /** filter matched. */
+    TRUE,
+
+    /** filter did not match. */
+    FALSE,
+
+    /** filter could not be evaluated. */
+    UNDEFINED;
+
+
+    /**
+     * Returns the negation of this result. Undefined remains undefined.
+     *
+     * @return  negated result
+     */
+    public Result negate()
+    {
+      final Result r;
+      if (this == TRUE) {
+        r = FALSE;
+      } else if (this == FALSE) {
+        r = TRUE;
+      } else {
+        r = UNDEFINED;
+      }
+      return r;
+    }
+
+
+    /**
+     * Returns the result for the supplied boolean.
+     *
+     * @param  b  boolean
+     *
+     * @return  true or false result
+     */
+    public static Result valueOf(final boolean b)
+    {
+      return b ? TRUE : FALSE;
+    }
+  }
+}
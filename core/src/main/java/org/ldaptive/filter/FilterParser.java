@@ -0,0 +1,298 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.filter;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parses the string representation of a search filter, see RFC 4515, into an immutable {@link Filter}.
+ *
+ * @author  Middleware Services
+ */
+public final class FilterParser
+{
+
+  /** Radix of escaped values. */
+  private static final int HEX_RADIX = 16;
+
+  /** Filter to parse. */
+  private final String filter;
+
+  /** Current position in the filter. */
+  private int position;
+
+
+  /**
+   * Creates a new filter parser.
+   *
+   * @param  s  filter to parse
+   */
+  private FilterParser(final String s)
+  {
+    filter = s;
+  }
+
+
+  /**
+   * Parses the supplied filter. Filters that are not enclosed in parentheses are accepted.
+   *
+   * @param  filter  to parse
+   *
+   * @return  parsed filter
+   *
+   * @throws  IllegalArgumentException  if the filter is not valid
+   */
+  public static Filter parse(final String filter)
+  {
+    if (filter == null || filter.trim().isEmpty()) {
+      throw new IllegalArgumentException("Filter cannot be null or empty");
+    }
+    final String s = filter.trim();
+    final FilterParser parser = new FilterParser(s.charAt(0) == '(' ? s : "(" + s + ")");
+    final Filter parsed = parser.readFilter();
+    if (parser.position != parser.filter.length()) {
+      throw new IllegalArgumentException("Unexpected characters at position " + parser.position + " in " + filter);
+    }
+    return parsed;
+  }
+
+
+  /**
+   * Reads a parenthesized filter beginning at the current position.
+   *
+   * @return  filter
+   */
+  private Filter readFilter()
+  {
+    expect('(');
+    if (position >= filter.length()) {
+      throw new IllegalArgumentException("Unexpected end of filter " + filter);
+    }
+
+    final Filter parsed;
+    final char c = filter.charAt(position);
+    if (c == '&') {
+      position++;
+      parsed = new AndFilter(readFilterList());
+    } else if (c == '|') {
+      position++;
+      parsed = new OrFilter(readFilterList());
+    } else if (c == '!') {
+      position++;
+      parsed = new NotFilter(readFilter());
+    } else {
+      final int end = filter.indexOf(')', position);
+      if (end == -1) {
+        throw new IllegalArgumentException("Missing closing parenthesis in " + filter);
+      }
+      parsed = parseItem(filter.substring(position, end));
+      position = end;
+    }
+    expect(')');
+    return parsed;
+  }
+
+
+  /**
+   * Reads one or more filters beginning at the current position.
+   *
+   * @return  filters
+   */
+  private Filter[] readFilterList()
+  {
+    final List<Filter> filters = new ArrayList<>();
+    while (position < filter.length() && filter.charAt(position) == '(') {
+      filters.add(readFilter());
+    }
+    if (filters.isEmpty()) {
+      throw new IllegalArgumentException("Filter list cannot be empty in " + filter);
+    }
+    return filters.toArray(new Filter[filters.size()]);
+  }
+
+
+  /**
+   * Advances past the supplied character.
+   *
+   * @param  c  expected at the current position
+   */
+  private void expect(final char c)
+  {
+    if (position >= filter.length() || filter.charAt(position) != c) {
+      throw new IllegalArgumentException("Expected '" + c + "' at position " + position + " in " + filter);
+    }
+    position++;
+  }
+
+
+  /**
+   * Parses a filter item, which is a simple, present, substring or extensible filter.
+   *
+   * @param  item  without enclosing parentheses
+   *
+   * @return  filter
+   */
+  private static Filter parseItem(final String item)
+  {
+    final int eq = item.indexOf('=');
+    if (eq < 1) {
+      throw new IllegalArgumentException("Invalid filter item: " + item);
+    }
+
+    final Filter parsed;
+    final String value = item.substring(eq + 1);
+    switch (item.charAt(eq - 1)) {
+
+    case '~':
+      parsed = new ApproximateFilter(item.substring(0, eq - 1), unescape(value));
+      break;
+
+    case '>':
+      parsed = new GreaterOrEqualFilter(item.substring(0, eq - 1), unescape(value));
+      break;
+
+    case '<':
+      parsed = new LessOrEqualFilter(item.substring(0, eq - 1), unescape(value));
+      break;
+
+    case ':':
+      parsed = parseExtensible(item.substring(0, eq - 1), value);
+      break;
+
+    default:
+      final String attr = item.substring(0, eq);
+      if ("*".equals(value)) {
+        parsed = new PresenceFilter(attr);
+      } else if (value.indexOf('*') != -1) {
+        parsed = parseSubstrings(attr, value);
+      } else {
+        parsed = new EqualityFilter(attr, unescape(value));
+      }
+      break;
+    }
+    return parsed;
+  }
+
+
+  /**
+   * Parses a substring filter.
+   *
+   * @param  attr  attribute description
+   * @param  value  escaped value containing at least one wildcard
+   *
+   * @return  substring filter
+   */
+  private static Filter parseSubstrings(final String attr, final String value)
+  {
+    final int first = value.indexOf('*');
+    final int last = value.lastIndexOf('*');
+    final List<byte[]> any = new ArrayList<>();
+    int start = first + 1;
+    int next = value.indexOf('*', start);
+    while (next != -1) {
+      if (next > start) {
+        any.add(unescape(value.substring(start, next)));
+      }
+      start = next + 1;
+      next = value.indexOf('*', start);
+    }
+    return
+      new SubstringFilter(
+        attr,
+        first > 0 ? unescape(value.substring(0, first)) : null,
+        any.toArray(new byte[any.size()][]),
+        last < value.length() - 1 ? unescape(value.substring(last + 1)) : null);
+  }
+
+
+  /**
+   * Parses an extensible match filter of the form attr[:dn][:rule]:=value or [:dn]:rule:=value.
+   *
+   * @param  description  portion of the item preceding ':='
+   * @param  value  escaped match value
+   *
+   * @return  extensible filter
+   */
+  private static Filter parseExtensible(final String description, final String value)
+  {
+    final String[] parts = description.split(":", -1);
+    boolean dnAttributes = false;
+    String matchingRule = null;
+    for (int i = 1; i < parts.length; i++) {
+      if ("dn".equalsIgnoreCase(parts[i])) {
+        dnAttributes = true;
+      } else if (!parts[i].isEmpty()) {
+        matchingRule = parts[i];
+      }
+    }
+    return new ExtensibleFilter(matchingRule, parts[0], unescape(value), dnAttributes);
+  }
+
+
+  /**
+   * Converts an escaped assertion value to bytes. Escapes have the form \XX where XX is a hex encoded byte. A backslash
+   * that is not followed by two hex digits escapes the next character.
+   *
+   * @param  value  to unescape
+   *
+   * @return  UTF-8 encoded value with escapes decoded
+   */
+  public static byte[] unescape(final String value)
+  {
+    if (value.indexOf('\\') == -1) {
+      return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream(value.length());
+    int start = 0;
+    int i = value.indexOf('\\');
+    while (i != -1) {
+      writeUtf8(bytes, value.substring(start, i));
+      if (isHexPair(value, i + 1)) {
+        final int end = i + 1 + 2;
+        bytes.write(Integer.parseInt(value.substring(i + 1, end), HEX_RADIX));
+        start = end;
+      } else if (i + 1 < value.length()) {
+        writeUtf8(bytes, value.substring(i + 1, i + 2));
+        start = i + 2;
+      } else {
+        throw new IllegalArgumentException("Invalid escape at end of value: " + value);
+      }
+      i = value.indexOf('\\', start);
+    }
+    writeUtf8(bytes, value.substring(start));
+    return bytes.toByteArray();
+  }
+
+
+  /**
+   * Writes the UTF-8 encoding of the supplied string to the supplied stream.
+   *
+   * @param  out  to write to
+   * @param  s  to encode
+   */
+  private static void writeUtf8(final ByteArrayOutputStream out, final String s)
+  {
+    final byte[] b = s.getBytes(StandardCharsets.UTF_8);
+    out.write(b, 0, b.length);
+  }
+
+
+  /**
+   * Returns whether the two characters beginning at the supplied index are hex digits.
+   *
+   * @param  value  to inspect
+   * @param  index  of the first character
+   *
+   * @return  whether a hex pair exists at index
+   */
+  private static boolean isHexPair(final String value, final int index)
+  {
+    return
+      index + 1 < value.length() &&
+      Character.digit(value.charAt(index), HEX_RADIX) != -1 &&
+      Character.digit(value.charAt(index + 1), HEX_RADIX) != -1;
+  }
+}
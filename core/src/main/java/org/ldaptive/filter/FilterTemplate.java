@@ -0,0 +1,266 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.filter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.ldaptive.LdapUtils;
+import org.ldaptive.SearchFilter;
+
+/**
+ * Search filter containing parameter slots of the form {name}. The template is scanned once when it is compiled and
+ * each format call renders the filter in a single pass, encoding parameter values with {@link
+ * SearchFilter#appendEncoded(StringBuilder, Object)}. Slots without a value are rendered unchanged. Instances are
+ * immutable and safe for concurrent use.
+ *
+ * @author  Middleware Services
+ */
+public final class FilterTemplate
+{
+
+  /** hash code seed. */
+  private static final int HASH_CODE_SEED = 10501;
+
+  /** Maximum number of templates held by {@link #compile(String)}. */
+  private static final int MAX_CACHE_SIZE = 256;
+
+  /** Builders larger than this are not reused. */
+  private static final int MAX_BUILDER_CAPACITY = 4096;
+
+  /** Compiled templates. */
+  private static final Map<String, FilterTemplate> CACHE = new ConcurrentHashMap<>();
+
+  /** Builder reused by each thread to render templates. */
+  private static final ThreadLocal<StringBuilder> BUILDER = new ThreadLocal<>();
+
+  /** Template string. */
+  private final String template;
+
+  /** Literal text surrounding the slots, always one element longer than the slot names. */
+  private final String[] literals;
+
+  /** Parameter name of each slot. */
+  private final String[] names;
+
+  /** Parameter position of each slot or -1 if the name is not an integer. */
+  private final int[] positions;
+
+
+  /**
+   * Creates a new filter template.
+   *
+   * @param  s  template to compile
+   */
+  public FilterTemplate(final String s)
+  {
+    if (s == null) {
+      throw new IllegalArgumentException("Template cannot be null");
+    }
+    template = s;
+
+    final List<String> literalList = new ArrayList<>();
+    final List<String> nameList = new ArrayList<>();
+    int start = 0;
+    int open = s.indexOf('{');
+    while (open != -1) {
+      final int close = s.indexOf('}', open + 1);
+      if (close == -1) {
+        open = -1;
+      } else {
+        final int nested = s.lastIndexOf('{', close);
+        if (nested > open) {
+          open = nested;
+        } else {
+          if (close > open + 1) {
+            literalList.add(s.substring(start, open));
+            nameList.add(s.substring(open + 1, close));
+            start = close + 1;
+          }
+          open = s.indexOf('{', close + 1);
+        }
+      }
+    }
+    literalList.add(s.substring(start));
+    literals = literalList.toArray(new String[literalList.size()]);
+    names = nameList.toArray(new String[nameList.size()]);
+    positions = new int[names.length];
+    for (int i = 0; i < names.length; i++) {
+      positions[i] = parsePosition(names[i]);
+    }
+  }
+
+
+  /**
+   * Returns a compiled template for the supplied string. Recently compiled templates are cached.
+   *
+   * @param  s  template to compile
+   *
+   * @return  filter template
+   */
+  public static FilterTemplate compile(final String s)
+  {
+    FilterTemplate t = CACHE.get(s);
+    if (t == null) {
+      t = new FilterTemplate(s);
+      if (CACHE.size() >= MAX_CACHE_SIZE) {
+        CACHE.clear();
+      }
+      CACHE.put(s, t);
+    }
+    return t;
+  }
+
+
+  /**
+   * Returns the template string.
+   *
+   * @return  template
+   */
+  public String getTemplate()
+  {
+    return template;
+  }
+
+
+  /**
+   * Returns the parameter names in the order their slots appear in the template.
+   *
+   * @return  parameter names
+   */
+  public String[] getParameterNames()
+  {
+    return names.clone();
+  }
+
+
+  /**
+   * Renders this template with the supplied named parameters. Positional parameters are named by their index.
+   *
+   * @param  params  parameter values by name
+   *
+   * @return  formatted filter
+   */
+  public String format(final Map<String, ?> params)
+  {
+    final StringBuilder sb = getBuilder();
+    format(params, sb);
+    return sb.toString();
+  }
+
+
+  /**
+   * Renders this template with the supplied positional parameters. Slots are matched by index, e.g. {0}.
+   *
+   * @param  params  parameter values by position
+   *
+   * @return  formatted filter
+   */
+  public String format(final Object... params)
+  {
+    final StringBuilder sb = getBuilder();
+    for (int i = 0; i < names.length; i++) {
+      sb.append(literals[i]);
+      final int pos = positions[i];
+      appendSlot(sb, i, params != null && pos >= 0 && pos < params.length ? params[pos] : null);
+    }
+    sb.append(literals[names.length]);
+    return sb.toString();
+  }
+
+
+  /**
+   * Renders this template with the supplied named parameters into the supplied builder.
+   *
+   * @param  params  parameter values by name
+   * @param  sb  to append to
+   */
+  public void format(final Map<String, ?> params, final StringBuilder sb)
+  {
+    for (int i = 0; i < names.length; i++) {
+      sb.append(literals[i]);
+      appendSlot(sb, i, params != null ? params.get(names[i]) : null);
+    }
+    sb.append(literals[names.length]);
+  }
+
+
+  /**
+   * Appends the supplied value to the supplied builder or the slot itself if the value is null.
+   *
+   * @param  sb  to append to
+   * @param  slot  index of the slot
+   * @param  value  to append
+   */
+  private void appendSlot(final StringBuilder sb, final int slot, final Object value)
+  {
+    if (value != null) {
+      SearchFilter.appendEncoded(sb, value);
+    } else {
+      sb.append('{').append(names[slot]).append('}');
+    }
+  }
+
+
+  /**
+   * Returns an empty builder for the current thread.
+   *
+   * @return  string builder
+   */
+  private static StringBuilder getBuilder()
+  {
+    StringBuilder sb = BUILDER.get();
+    if (sb == null || sb.capacity() > MAX_BUILDER_CAPACITY) {
+      sb = new StringBuilder();
+      BUILDER.set(sb);
+    }
+    sb.setLength(0);
+    return sb;
+  }
+
+
+  /**
+   * Returns the position represented by the supplied parameter name.
+   *
+   * @param  name  to parse
+   *
+   * @return  position or -1 if the name is not a non-negative integer
+   */
+  private static int parsePosition(final String name)
+  {
+    int pos = -1;
+    final boolean digits = name.chars().allMatch(c -> c >= '0' && c <= '9');
+    if (digits && name.length() < String.valueOf(Integer.MAX_VALUE).length()) {
+      pos = Integer.parseInt(name);
+    }
+    return pos;
+  }
+
+
+  @Override
+  public boolean equals(final Object o)
+  {
+    if (o == this) {
+      return true;
+    }
+    if (o instanceof FilterTemplate) {
+      final FilterTemplate v = (FilterTemplate) o;
+      return LdapUtils.areEqual(template, v.template);
+    }
+    return false;
+  }
+
+
+  @Override
+  public int hashCode()
+  {
+    return LdapUtils.computeHashCode(HASH_CODE_SEED, template);
+  }
+
+
+  @Override
+  public String toString()
+  {
+    return String.format("[%s@%d::template=%s]", getClass().getName(), hashCode(), template);
+  }
+}
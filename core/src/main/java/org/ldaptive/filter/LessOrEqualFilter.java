@@ -0,0 +1,49 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.filter;
+
+/**
+ * Filter that matches entries with an attribute value less than or equal to the assertion value.
+ *
+ * @author  Middleware Services
+ */
+public class LessOrEqualFilter extends AbstractAssertionFilter
+{
+
+
+  /**
+   * Creates a new less or equal filter.
+   *
+   * @param  attr  attribute description
+   * @param  value  assertion value
+   */
+  public LessOrEqualFilter(final String attr, final byte[] value)
+  {
+    super(attr, value);
+  }
+
+
+  /**
+   * Creates a new less or equal filter.
+   *
+   * @param  attr  attribute description
+   * @param  value  assertion value
+   */
+  public LessOrEqualFilter(final String attr, final String value)
+  {
+    super(attr, value);
+  }
+
+
+  @Override
+  public Type getType()
+  {
+    return Type.LESS_OR_EQUAL;
+  }
+
+
+  @Override
+  protected String getOperator()
+  {
+    return "<=";
+  }
+}
@@ -0,0 +1,81 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.filter;
+
+import org.ldaptive.LdapUtils;
+
+/**
+ * Filter that matches if its component filter does not match.
+ *
+ * @author  Middleware Services
+ */
+public class NotFilter extends AbstractFilter
+{
+
+  /** hash code seed. */
+  private static final int HASH_CODE_SEED = 10463;
+
+  /** Component filter. */
+  private final Filter component;
+
+
+  /**
+   * Creates a new not filter.
+   *
+   * @param  filter  component filter
+   */
+  public NotFilter(final Filter filter)
+  {
+    if (filter == null) {
+      throw new IllegalArgumentException("Component filter cannot be null");
+    }
+    component = filter;
+  }
+
+
+  /**
+   * Returns the component filter.
+   *
+   * @return  component filter
+   */
+  public Filter getComponent()
+  {
+    return component;
+  }
+
+
+  @Override
+  public Type getType()
+  {
+    return Type.NOT;
+  }
+
+
+  @Override
+  public void format(final StringBuilder sb)
+  {
+    sb.append("(!");
+    component.format(sb);
+    sb.append(')');
+  }
+
+
+  @Override
+  public boolean equals(final Object o)
+  {
+    if (o == this) {
+      return true;
+    }
+    if (o instanceof NotFilter) {
+      final NotFilter v = (NotFilter) o;
+      return LdapUtils.areEqual(component, v.component);
+    }
+    return false;
+  }
+
+
+  @Override
+  public int hashCode()
+  {
+    return LdapUtils.computeHashCode(HASH_CODE_SEED, component);
+  }
+}
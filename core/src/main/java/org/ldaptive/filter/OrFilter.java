@@ -0,0 +1,36 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.filter;
+
+/**
+ * Filter that matches if any of its component filters match.
+ *
+ * @author  Middleware Services
+ */
+public class OrFilter extends AbstractCompositeFilter
+{
+
+
+  /**
+   * Creates a new or filter.
+   *
+   * @param  filters  component filters
+   */
+  public OrFilter(final Filter... filters)
+  {
+    super(filters);
+  }
+
+
+  @Override
+  public Type getType()
+  {
+    return Type.OR;
+  }
+
+
+  @Override
+  protected char getTypeCharacter()
+  {
+    return '|';
+  }
+}
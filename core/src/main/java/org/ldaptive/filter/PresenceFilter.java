@@ -0,0 +1,79 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.filter;
+
+import org.ldaptive.LdapUtils;
+
+/**
+ * Filter that matches entries containing an attribute.
+ *
+ * @author  Middleware Services
+ */
+public class PresenceFilter extends AbstractFilter
+{
+
+  /** hash code seed. */
+  private static final int HASH_CODE_SEED = 10477;
+
+  /** Attribute description. */
+  private final String attributeDescription;
+
+
+  /**
+   * Creates a new presence filter.
+   *
+   * @param  attr  attribute description
+   */
+  public PresenceFilter(final String attr)
+  {
+    if (attr == null || attr.isEmpty()) {
+      throw new IllegalArgumentException("Attribute description cannot be null or empty");
+    }
+    attributeDescription = attr;
+  }
+
+
+  /**
+   * Returns the attribute description.
+   *
+   * @return  attribute description
+   */
+  public String getAttributeDescription()
+  {
+    return attributeDescription;
+  }
+
+
+  @Override
+  public Type getType()
+  {
+    return Type.PRESENCE;
+  }
+
+
+  @Override
+  public void format(final StringBuilder sb)
+  {
+    sb.append('(').append(attributeDescription).append("=*)");
+  }
+
+
+  @Override
+  public boolean equals(final Object o)
+  {
+    if (o == this) {
+      return true;
+    }
+    if (o instanceof PresenceFilter) {
+      final PresenceFilter v = (PresenceFilter) o;
+      return LdapUtils.areEqual(attributeDescription, v.attributeDescription);
+    }
+    return false;
+  }
+
+
+  @Override
+  public int hashCode()
+  {
+    return LdapUtils.computeHashCode(HASH_CODE_SEED, attributeDescription);
+  }
+}
@@ -0,0 +1,296 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.filter;
+
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import org.ldaptive.DnParser;
+import org.ldaptive.LdapAttribute;
+import org.ldaptive.io.GeneralizedTimeValueTranscoder;
+
+/**
+ * Matching rules understood by {@link FilterEvaluator}. Each rule normalizes values so that equal values have equal
+ * normalized forms and orders normalized values. Rules are resolved by the name or OID of any of the RFC 4517 equality,
+ * ordering and substrings rules they implement.
+ *
+ * @author  Middleware Services
+ */
+public enum StandardMatchingRule {
+
+  /** caseIgnoreMatch and related rules. */
+  CASE_IGNORE(
+    new String[] {
+      "caseIgnoreMatch", "2.5.13.2",
+      "caseIgnoreIA5Match", "1.3.6.1.4.1.1466.109.114.2",
+      "caseIgnoreListMatch", "2.5.13.11",
+      "objectIdentifierMatch", "2.5.13.0",
+      "booleanMatch", "2.5.13.13",
+    },
+    new String[] {
+      "caseIgnoreOrderingMatch", "2.5.13.3",
+      "caseIgnoreSubstringsMatch", "2.5.13.4",
+      "caseIgnoreIA5SubstringsMatch", "1.3.6.1.4.1.1466.109.114.3",
+      "caseIgnoreListSubstringsMatch", "2.5.13.12",
+    }) {
+
+    @Override
+    public String normalize(final String value)
+    {
+      return collapseWhitespace(value).toLowerCase();
+    }
+  },
+
+  /** caseExactMatch and related rules. */
+  CASE_EXACT(
+    new String[] {
+      "caseExactMatch", "2.5.13.5",
+      "caseExactIA5Match", "1.3.6.1.4.1.1466.109.114.1",
+    },
+    new String[] {
+      "caseExactOrderingMatch", "2.5.13.6",
+      "caseExactSubstringsMatch", "2.5.13.7",
+    }) {
+
+    @Override
+    public String normalize(final String value)
+    {
+      return collapseWhitespace(value);
+    }
+  },
+
+  /** octetStringMatch and related rules. Values are compared byte for byte. */
+  OCTET_STRING(
+    new String[] {"octetStringMatch", "2.5.13.17"},
+    new String[] {"octetStringOrderingMatch", "2.5.13.18"}) {
+
+    @Override
+    public String normalize(final String value)
+    {
+      return value;
+    }
+  },
+
+  /** integerMatch and related rules. */
+  INTEGER(
+    new String[] {"integerMatch", "2.5.13.14"},
+    new String[] {"integerOrderingMatch", "2.5.13.15"}) {
+
+    @Override
+    public String normalize(final String value)
+    {
+      return new BigInteger(value.trim()).toString();
+    }
+
+
+    @Override
+    public int compare(final String value1, final String value2)
+    {
+      return new BigInteger(value1).compareTo(new BigInteger(value2));
+    }
+  },
+
+  /**
+   * generalizedTimeMatch and related rules. Values are normalized to UTC with millisecond precision, so times with
+   * different offsets or fractions that represent the same instant are equal. The normalized form has a fixed width,
+   * so it orders chronologically.
+   */
+  GENERALIZED_TIME(
+    new String[] {"generalizedTimeMatch", "2.5.13.27"},
+    new String[] {"generalizedTimeOrderingMatch", "2.5.13.28"}) {
+
+    @Override
+    public String normalize(final String value)
+    {
+      return TIME_TRANSCODER.encodeStringValue(TIME_TRANSCODER.decodeStringValue(value.trim()));
+    }
+  },
+
+  /** numericStringMatch and related rules. */
+  NUMERIC_STRING(
+    new String[] {"numericStringMatch", "2.5.13.8"},
+    new String[] {"numericStringOrderingMatch", "2.5.13.9", "numericStringSubstringsMatch", "2.5.13.10"}) {
+
+    @Override
+    public String normalize(final String value)
+    {
+      return removeCharacters(value, " ");
+    }
+  },
+
+  /** telephoneNumberMatch and related rules. */
+  TELEPHONE_NUMBER(
+    new String[] {"telephoneNumberMatch", "2.5.13.20"},
+    new String[] {"telephoneNumberSubstringsMatch", "2.5.13.21"}) {
+
+    @Override
+    public String normalize(final String value)
+    {
+      return removeCharacters(value, " -").toLowerCase();
+    }
+  },
+
+  /** distinguishedNameMatch. Attribute names and values of each RDN are compared without regard to case. */
+  DISTINGUISHED_NAME(
+    new String[] {"distinguishedNameMatch", "2.5.13.1"},
+    new String[0]) {
+
+    @Override
+    public String normalize(final String value)
+    {
+      final StringBuilder sb = new StringBuilder(value.length());
+      for (LdapAttribute rdn : DnParser.convertDnToAttributes(value)) {
+        if (sb.length() > 0) {
+          sb.append(',');
+        }
+        sb.append(rdn.getName().toLowerCase()).append('=').append(CASE_IGNORE.normalize(rdn.getStringValue()));
+      }
+      return sb.toString();
+    }
+  };
+
+  /** Parses and formats generalized time values. */
+  private static final GeneralizedTimeValueTranscoder TIME_TRANSCODER = new GeneralizedTimeValueTranscoder();
+
+  /** Rules by lower case name and OID. */
+  private static final Map<String, StandardMatchingRule> RULES;
+
+  /** Equality rules by lower case name and OID. */
+  private static final Map<String, StandardMatchingRule> EQUALITY_RULES;
+
+  /** Names and OIDs of the equality rules implemented by this rule. */
+  private final String[] equalityNames;
+
+  /** Names and OIDs of the ordering and substrings rules implemented by this rule. */
+  private final String[] otherNames;
+
+  /** Initialize the rule indexes. */
+  static {
+    final Map<String, StandardMatchingRule> rules = new HashMap<>();
+    final Map<String, StandardMatchingRule> equalityRules = new HashMap<>();
+    for (StandardMatchingRule rule : values()) {
+      for (String name : rule.equalityNames) {
+        rules.put(name.toLowerCase(), rule);
+        equalityRules.put(name.toLowerCase(), rule);
+      }
+      for (String name : rule.otherNames) {
+        rules.put(name.toLowerCase(), rule);
+      }
+    }
+    RULES = Collections.unmodifiableMap(rules);
+    EQUALITY_RULES = Collections.unmodifiableMap(equalityRules);
+  }
+
+
+  /**
+   * Creates a new standard matching rule.
+   *
+   * @param  equality  names and OIDs of equality rules
+   * @param  other  names and OIDs of ordering and substrings rules
+   */
+  StandardMatchingRule(final String[] equality, final String[] other)
+  {
+    equalityNames = equality;
+    otherNames = other;
+  }
+
+
+  /**
+   * Returns the normalized form of the supplied value.
+   *
+   * @param  value  to normalize
+   *
+   * @return  normalized value
+   *
+   * @throws  IllegalArgumentException  if the value is not valid for this rule
+   */
+  public abstract String normalize(String value);
+
+
+  /**
+   * Compares two normalized values.
+   *
+   * @param  value1  normalized value
+   * @param  value2  normalized value
+   *
+   * @return  negative, zero or positive if value1 is less than, equal to or greater than value2
+   */
+  public int compare(final String value1, final String value2)
+  {
+    return value1.compareTo(value2);
+  }
+
+
+  /**
+   * Returns the rule that implements the equality, ordering or substrings rule with the supplied name or OID.
+   *
+   * @param  name  of the matching rule
+   *
+   * @return  matching rule or null if the rule is not supported
+   */
+  public static StandardMatchingRule forName(final String name)
+  {
+    return name != null ? RULES.get(name.toLowerCase()) : null;
+  }
+
+
+  /**
+   * Returns the rule that implements the equality rule with the supplied name or OID.
+   *
+   * @param  name  of the equality matching rule
+   *
+   * @return  matching rule or null if the rule is not a supported equality rule
+   */
+  public static StandardMatchingRule forEqualityName(final String name)
+  {
+    return name != null ? EQUALITY_RULES.get(name.toLowerCase()) : null;
+  }
+
+
+  /**
+   * Removes leading and trailing whitespace and replaces internal runs of whitespace with a single space.
+   *
+   * @param  value  to collapse
+   *
+   * @return  collapsed value
+   */
+  private static String collapseWhitespace(final String value)
+  {
+    final StringBuilder sb = new StringBuilder(value.length());
+    boolean space = false;
+    for (int i = 0; i < value.length(); i++) {
+      final char c = value.charAt(i);
+      if (Character.isWhitespace(c)) {
+        space = sb.length() > 0;
+      } else {
+        if (space) {
+          sb.append(' ');
+          space = false;
+        }
+        sb.append(c);
+      }
+    }
+    return sb.toString();
+  }
+
+
+  /**
+   * Removes every occurrence of the supplied characters.
+   *
+   * @param  value  to remove characters from
+   * @param  chars  to remove
+   *
+   * @return  value without the supplied characters
+   */
+  private static String removeCharacters(final String value, final String chars)
+  {
+    final StringBuilder sb = new StringBuilder(value.length());
+    for (int i = 0; i < value.length(); i++) {
+      final char c = value.charAt(i);
+      if (chars.indexOf(c) == -1) {
+        sb.append(c);
+      }
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,193 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.filter;
+
+import java.nio.charset.StandardCharsets;
+import org.ldaptive.LdapUtils;
+
+/**
+ * Filter that matches entries with an attribute value containing the supplied substrings in order.
+ *
+ * @author  Middleware Services
+ */
+public class SubstringFilter extends AbstractFilter
+{
+
+  /** hash code seed. */
+  private static final int HASH_CODE_SEED = 10487;
+
+  /** Attribute description. */
+  private final String attributeDescription;
+
+  /** Substring the value must start with. */
+  private final byte[] initial;
+
+  /** Substrings the value must contain in order. */
+  private final byte[][] any;
+
+  /** Substring the value must end with. */
+  private final byte[] finalValue;
+
+
+  /**
+   * Creates a new substring filter. At least one substring must be supplied.
+   *
+   * @param  attr  attribute description
+   * @param  startsWith  initial substring or null
+   * @param  contains  any substrings or null
+   * @param  endsWith  final substring or null
+   */
+  public SubstringFilter(final String attr, final byte[] startsWith, final byte[][] contains, final byte[] endsWith)
+  {
+    if (attr == null || attr.isEmpty()) {
+      throw new IllegalArgumentException("Attribute description cannot be null or empty");
+    }
+    if (startsWith == null && (contains == null || contains.length == 0) && endsWith == null) {
+      throw new IllegalArgumentException("Substring filter must contain at least one substring");
+    }
+    attributeDescription = attr;
+    initial = startsWith;
+    any = contains != null ? contains.clone() : new byte[0][];
+    finalValue = endsWith;
+  }
+
+
+  /**
+   * Creates a new substring filter. At least one substring must be supplied.
+   *
+   * @param  attr  attribute description
+   * @param  startsWith  initial substring or null
+   * @param  contains  any substrings or null
+   * @param  endsWith  final substring or null
+   */
+  public SubstringFilter(final String attr, final String startsWith, final String[] contains, final String endsWith)
+  {
+    this(attr, toBytes(startsWith), toBytes(contains), toBytes(endsWith));
+  }
+
+
+  /**
+   * Returns the attribute description.
+   *
+   * @return  attribute description
+   */
+  public String getAttributeDescription()
+  {
+    return attributeDescription;
+  }
+
+
+  /**
+   * Returns the initial substring.
+   *
+   * @return  initial substring or null
+   */
+  public byte[] getInitial()
+  {
+    return initial != null ? initial.clone() : null;
+  }
+
+
+  /**
+   * Returns the any substrings.
+   *
+   * @return  any substrings, never null
+   */
+  public byte[][] getAny()
+  {
+    return any.clone();
+  }
+
+
+  /**
+   * Returns the final substring.
+   *
+   * @return  final substring or null
+   */
+  public byte[] getFinal()
+  {
+    return finalValue != null ? finalValue.clone() : null;
+  }
+
+
+  @Override
+  public Type getType()
+  {
+    return Type.SUBSTRING;
+  }
+
+
+  @Override
+  public void format(final StringBuilder sb)
+  {
+    sb.append('(').append(attributeDescription).append('=');
+    if (initial != null) {
+      appendValue(sb, initial);
+    }
+    sb.append('*');
+    for (byte[] b : any) {
+      appendValue(sb, b);
+      sb.append('*');
+    }
+    if (finalValue != null) {
+      appendValue(sb, finalValue);
+    }
+    sb.append(')');
+  }
+
+
+  @Override
+  public boolean equals(final Object o)
+  {
+    if (o == this) {
+      return true;
+    }
+    if (o instanceof SubstringFilter) {
+      final SubstringFilter v = (SubstringFilter) o;
+      return LdapUtils.areEqual(attributeDescription, v.attributeDescription) &&
+             LdapUtils.areEqual(initial, v.initial) &&
+             LdapUtils.areEqual(any, v.any) &&
+             LdapUtils.areEqual(finalValue, v.finalValue);
+    }
+    return false;
+  }
+
+
+  @Override
+  public int hashCode()
+  {
+    return LdapUtils.computeHashCode(HASH_CODE_SEED, attributeDescription, initial, any, finalValue);
+  }
+
+
+  /**
+   * Returns the UTF-8 encoding of the supplied string.
+   *
+   * @param  s  to encode
+   *
+   * @return  encoded string or null if s is null
+   */
+  private static byte[] toBytes(final String s)
+  {
+    return s != null ? s.getBytes(StandardCharsets.UTF_8) : null;
+  }
+
+
+  /**
+   * Returns the UTF-8 encoding of the supplied strings.
+   *
+   * @param  s  to encode
+   *
+   * @return  encoded strings or null if s is null
+   */
+  private static byte[][] toBytes(final String[] s)
+  {
+    if (s == null) {
+      return null;
+    }
+    final byte[][] b = new byte[s.length][];
+    for (int i = 0; i < s.length; i++) {
+      b[i] = toBytes(s[i]);
+    }
+    return b;
+  }
+}
@@ -0,0 +1,55 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.handler;
+
+import org.ldaptive.Connection;
+import org.ldaptive.LdapAttribute;
+import org.ldaptive.LdapException;
+import org.ldaptive.SearchRequest;
+
+/**
+ * Search entry handler that only modifies the DN and individual attributes of an entry. Each attribute is processed
+ * independently of the other attributes in the entry, which allows {@link SearchEntryHandlerPipeline} to apply several
+ * of these handlers in a single pass over the attributes.
+ *
+ * @author  Middleware Services
+ */
+public interface AttributeEntryHandler extends SearchEntryHandler
+{
+
+
+  /**
+   * Returns the names of the attributes this handler processes. Names are compared without regard to case and include
+   * any attribute options.
+   *
+   * @return  attribute names or null if every attribute is processed
+   */
+  String[] getHandledAttributeNames();
+
+
+  /**
+   * Processes the DN of an entry.
+   *
+   * @param  conn  the search was performed on
+   * @param  request  used to find the search entry
+   * @param  dn  of the search entry
+   *
+   * @return  handled dn
+   */
+  String processDn(Connection conn, SearchRequest request, String dn);
+
+
+  /**
+   * Processes a single attribute. Only invoked for the attributes returned by {@link #getHandledAttributeNames()}.
+   *
+   * @param  conn  the search was performed on
+   * @param  request  used to find the search entry
+   * @param  attr  to handle
+   *
+   * @return  attribute that replaces the supplied attribute in the entry, which may be the supplied attribute if it was
+   *          modified in place, or null to remove the attribute
+   *
+   * @throws  LdapException  if the LDAP returns an error
+   */
+  LdapAttribute processAttribute(Connection conn, SearchRequest request, LdapAttribute attr)
+    throws LdapException;
+}
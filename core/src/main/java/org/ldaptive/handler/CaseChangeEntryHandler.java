@@ -14,7 +14,7 @@ import org.ldaptive.SearchRequest;
  *
  * @author  Middleware Services
  */
-public class CaseChangeEntryHandler extends AbstractSearchEntryHandler
+public class CaseChangeEntryHandler extends AbstractSearchEntryHandler implements AttributeEntryHandler
 {
 
   /** hash code seed. */
@@ -156,10 +156,33 @@ public class CaseChangeEntryHandler extends AbstractSearchEntryHandler
   }
 
 
+  @Override
+  public String[] getHandledAttributeNames()
+  {
+    return attributeNames;
+  }
+
+
+  @Override
+  public String processDn(final Connection conn, final SearchRequest request, final String dn)
+  {
+    return CaseChange.perform(dnCaseChange, dn);
+  }
+
+
+  @Override
+  public LdapAttribute processAttribute(final Connection conn, final SearchRequest request, final LdapAttribute attr)
+    throws LdapException
+  {
+    handleAttribute(conn, request, attr);
+    return attr;
+  }
+
+
   @Override
   protected String handleDn(final Connection conn, final SearchRequest request, final SearchEntry entry)
   {
-    return CaseChange.perform(dnCaseChange, entry.getDn());
+    return processDn(conn, request, entry.getDn());
   }
 
 
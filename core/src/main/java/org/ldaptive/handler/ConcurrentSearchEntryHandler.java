@@ -0,0 +1,570 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.handler;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import org.ldaptive.BindRequest;
+import org.ldaptive.Connection;
+import org.ldaptive.ConnectionConfig;
+import org.ldaptive.Response;
+import org.ldaptive.SearchEntry;
+import org.ldaptive.SearchRequest;
+import org.ldaptive.SearchResult;
+import org.ldaptive.SortBehavior;
+import org.ldaptive.control.RequestControl;
+import org.ldaptive.provider.MultiplexedProviderConnection;
+import org.ldaptive.provider.ProviderConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Search entry handler that moves entry handling off the thread reading search results. When a search request contains
+ * this handler, {@link org.ldaptive.SearchOperation} hands every entry to a {@link HandlerExecution}, which invokes the
+ * request's search entry handlers on a shared worker pool, at most {@link #getMaxParallelism()} entries at a time. The
+ * reader blocks once {@link #getCapacity()} entries are waiting to be handled or merged, so a slow handler applies back
+ * pressure to the server rather than buffering the whole result. Reading from the network and expensive handlers, such
+ * as those that perform additional searches, then overlap.
+ *
+ * <p>When the request sort behavior is {@link SortBehavior#ORDERED}, entries are added to the search result in the
+ * order they were received. If a handler aborts the search, entries received after the aborted entry are discarded.
+ * Handlers must be thread safe. Handlers may only perform operations on the search connection if its provider
+ * connection is a {@link MultiplexedProviderConnection} with multiplexing enabled, otherwise {@link
+ * Connection#getProviderConnection()} throws {@link IllegalStateException} when invoked by a handler.</p>
+ *
+ * <p>Invoked directly through {@link #handle(Connection, SearchRequest, SearchEntry)} this handler returns the entry
+ * unaltered.</p>
+ *
+ * @author  Middleware Services
+ */
+public class ConcurrentSearchEntryHandler implements SearchEntryHandler
+{
+
+  /** Default maximum number of entries handled at once. Value is {@value}. */
+  public static final int DEFAULT_MAX_PARALLELISM = 4;
+
+  /** Default maximum number of entries waiting to be handled or merged. Value is {@value}. */
+  public static final int DEFAULT_CAPACITY = 100;
+
+  /** Executes entry handlers. */
+  private static final ExecutorService HANDLER_EXECUTOR = Executors.newCachedThreadPool(
+    r -> {
+      final Thread t = new Thread(r, "ldaptive-" + ConcurrentSearchEntryHandler.class.getSimpleName());
+      t.setDaemon(true);
+      return t;
+    });
+
+  /** Logger for this class. */
+  protected final Logger logger = LoggerFactory.getLogger(getClass());
+
+  /** Maximum number of entries handled at once. */
+  private final int maxParallelism;
+
+  /** Maximum number of entries waiting to be handled or merged. */
+  private final int capacity;
+
+
+  /** Creates a new concurrent search entry handler. */
+  public ConcurrentSearchEntryHandler()
+  {
+    this(DEFAULT_MAX_PARALLELISM, DEFAULT_CAPACITY);
+  }
+
+
+  /**
+   * Creates a new concurrent search entry handler.
+   *
+   * @param  parallelism  maximum number of entries handled at once
+   * @param  size  maximum number of entries waiting to be handled or merged
+   */
+  public ConcurrentSearchEntryHandler(final int parallelism, final int size)
+  {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("Max parallelism must be greater than zero");
+    }
+    if (size < parallelism) {
+      throw new IllegalArgumentException("Capacity must be at least max parallelism");
+    }
+    maxParallelism = parallelism;
+    capacity = size;
+  }
+
+
+  /**
+   * Returns the maximum number of entries handled at once.
+   *
+   * @return  max parallelism
+   */
+  public int getMaxParallelism()
+  {
+    return maxParallelism;
+  }
+
+
+  /**
+   * Returns the maximum number of entries waiting to be handled or merged.
+   *
+   * @return  capacity
+   */
+  public int getCapacity()
+  {
+    return capacity;
+  }
+
+
+  @Override
+  public HandlerResult<SearchEntry> handle(final Connection conn, final SearchRequest request, final SearchEntry entry)
+  {
+    return new HandlerResult<>(entry);
+  }
+
+
+  /**
+   * Begins handling entries for a single search.
+   *
+   * @param  conn  the search is executing on
+   * @param  request  the search is executing
+   *
+   * @return  handler execution
+   */
+  public HandlerExecution start(final Connection conn, final SearchRequest request)
+  {
+    return new HandlerExecution(conn, request);
+  }
+
+
+  @Override
+  public void initializeRequest(final SearchRequest request) {}
+
+
+  @Override
+  public String toString()
+  {
+    return
+      String.format(
+        "[%s@%d::maxParallelism=%s, capacity=%s]",
+        getClass().getName(),
+        hashCode(),
+        maxParallelism,
+        capacity);
+  }
+
+
+  /**
+   * Handles the entries of a single search. {@link #submit(SearchEntry, SearchResult)}, {@link #drain(SearchResult)}
+   * and {@link #complete(SearchResult)} must be invoked by the thread reading the search results; the handlers
+   * themselves run on a shared executor.
+   */
+  public final class HandlerExecution
+  {
+
+    /** Connection the search is executing on, as seen by handlers. */
+    private final Connection connection;
+
+    /** Search request. */
+    private final SearchRequest searchRequest;
+
+    /** Whether entries must be merged in the order they were received. */
+    private final boolean ordered;
+
+    /** Entries waiting for a free worker. */
+    private final Queue<Task> waiting = new ArrayDeque<>();
+
+    /** Tasks that have finished and not been merged. */
+    private final BlockingQueue<Task> finished = new LinkedBlockingQueue<>();
+
+    /** Finished tasks waiting for earlier tasks to be merged, by sequence. Only used when ordered. */
+    private final Map<Long, Task> pending = new HashMap<>();
+
+    /** Sequence of the next entry submitted. */
+    private long nextSequence;
+
+    /** Sequence of the next entry to merge. Only used when ordered. */
+    private long nextMerge;
+
+    /** Number of entries submitted and not merged. */
+    private int outstanding;
+
+    /** Number of tasks running. */
+    private int inFlight;
+
+    /** Sequence of the first entry whose handlers aborted the search. */
+    private volatile long abortSequence = Long.MAX_VALUE;
+
+    /** Whether handling has been cancelled. */
+    private volatile boolean cancelled;
+
+    /** Connection nested operations were begun on by the consuming thread, null once ended. */
+    private MultiplexedProviderConnection nested;
+
+
+    /**
+     * Creates a new handler execution. If handlers share a multiplexed connection, the current thread, which consumes
+     * the search and submits entries, begins nested operations on it until {@link #cancel()}, so the connection keeps
+     * reading responses for the handlers while the consumer waits for them.
+     *
+     * @param  conn  the search is executing on
+     * @param  request  the search is executing
+     */
+    private HandlerExecution(final Connection conn, final SearchRequest request)
+    {
+      if (conn == null) {
+        connection = null;
+      } else if (isMultiplexed(conn)) {
+        connection = conn;
+        nested = (MultiplexedProviderConnection) conn.getProviderConnection();
+        nested.beginNestedOperations();
+      } else {
+        connection = new HandlerConnection(conn);
+      }
+      searchRequest = request;
+      ordered = request.getSortBehavior() == SortBehavior.ORDERED;
+    }
+
+
+    /**
+     * Schedules the supplied entry to be handled and merges any entries that have been handled. Blocks while the
+     * number of entries that have not been merged is at capacity.
+     *
+     * @param  entry  search entry
+     * @param  result  to merge into
+     */
+    public void submit(final SearchEntry entry, final SearchResult result)
+    {
+      final Task task = new Task(nextSequence++, entry);
+      outstanding++;
+      synchronized (this) {
+        waiting.add(task);
+      }
+      dispatch();
+      drain(result);
+      try {
+        while (outstanding >= capacity && !isAborted()) {
+          merge(finished.take(), result);
+        }
+      } catch (InterruptedException e) {
+        logger.warn("Interrupted waiting for entries to be handled", e);
+        Thread.currentThread().interrupt();
+      }
+    }
+
+
+    /** Starts waiting tasks while fewer than the maximum are running. */
+    private synchronized void dispatch()
+    {
+      while (inFlight < maxParallelism && !waiting.isEmpty() && !cancelled) {
+        final Task task = waiting.remove();
+        inFlight++;
+        HANDLER_EXECUTOR.execute(() -> run(task));
+      }
+    }
+
+
+    /**
+     * Invokes the search entry handlers of the request for the supplied task.
+     *
+     * @param  task  to run
+     */
+    private void run(final Task task)
+    {
+      try {
+        if (!cancelled && task.sequence < abortSequence) {
+          boolean abort = false;
+          SearchEntry processed = task.entry;
+          for (SearchEntryHandler handler : searchRequest.getSearchEntryHandlers()) {
+            if (handler != null && handler != ConcurrentSearchEntryHandler.this) {
+              try {
+                final HandlerResult<SearchEntry> hr = handler.handle(connection, searchRequest, processed);
+                if (hr != null) {
+                  if (hr.getAbort()) {
+                    abort = true;
+                  }
+                  processed = hr.getResult();
+                }
+              } catch (Exception e) {
+                logger.warn("{} threw unexpected exception", handler, e);
+              }
+            }
+          }
+          task.result = processed;
+          if (abort) {
+            abort(task.sequence);
+          }
+        }
+      } finally {
+        finished.add(task);
+        synchronized (this) {
+          inFlight--;
+        }
+        dispatch();
+      }
+    }
+
+
+    /**
+     * Records that the handlers of the supplied entry aborted the search.
+     *
+     * @param  sequence  of the entry
+     */
+    private synchronized void abort(final long sequence)
+    {
+      if (sequence < abortSequence) {
+        logger.debug("Handlers aborted search on entry {}", sequence);
+        abortSequence = sequence;
+      }
+    }
+
+
+    /**
+     * Returns whether a handler has aborted the search.
+     *
+     * @return  whether the search should stop reading entries
+     */
+    public boolean isAborted()
+    {
+      return abortSequence != Long.MAX_VALUE;
+    }
+
+
+    /**
+     * Merges the entries that have been handled into the supplied result without waiting.
+     *
+     * @param  result  to merge into
+     */
+    public void drain(final SearchResult result)
+    {
+      Task task = finished.poll();
+      while (task != null) {
+        merge(task, result);
+        task = finished.poll();
+      }
+    }
+
+
+    /**
+     * Waits for every submitted entry to be handled, merging each into the supplied result.
+     *
+     * @param  result  to merge into
+     */
+    public void complete(final SearchResult result)
+    {
+      try {
+        while (outstanding > 0) {
+          merge(finished.take(), result);
+        }
+      } catch (InterruptedException e) {
+        logger.warn("Interrupted waiting for entries to be handled", e);
+        Thread.currentThread().interrupt();
+        cancel();
+      }
+    }
+
+
+    /**
+     * Stops handling entries that have not started. Handlers that are running complete. Must be invoked by the thread
+     * that created this execution.
+     */
+    public void cancel()
+    {
+      cancelled = true;
+      if (nested != null) {
+        nested.endNestedOperations();
+        nested = null;
+      }
+      synchronized (this) {
+        finished.addAll(waiting);
+        waiting.clear();
+      }
+    }
+
+
+    /**
+     * Adds the entry of a finished task to the search result, preserving the order entries were received in if
+     * required.
+     *
+     * @param  task  that finished
+     * @param  result  to merge into
+     */
+    private void merge(final Task task, final SearchResult result)
+    {
+      if (ordered) {
+        pending.put(task.sequence, task);
+        Task next = pending.remove(nextMerge);
+        while (next != null) {
+          add(next, result);
+          nextMerge++;
+          next = pending.remove(nextMerge);
+        }
+      } else {
+        add(task, result);
+      }
+    }
+
+
+    /**
+     * Adds the handled entry of the supplied task to the search result unless it was received after an aborted entry.
+     *
+     * @param  task  that finished
+     * @param  result  to add to
+     */
+    private void add(final Task task, final SearchResult result)
+    {
+      outstanding--;
+      if (task.result != null && task.sequence <= abortSequence) {
+        result.addEntry(task.result);
+      }
+    }
+  }
+
+
+  /**
+   * Returns whether the provider connection of the supplied connection supports concurrent operations.
+   *
+   * @param  conn  to inspect
+   *
+   * @return  whether handlers may perform operations on the connection
+   */
+  private static boolean isMultiplexed(final Connection conn)
+  {
+    final ProviderConnection pc = conn.isOpen() ? conn.getProviderConnection() : null;
+    return pc instanceof MultiplexedProviderConnection && ((MultiplexedProviderConnection) pc).isMultiplexingEnabled();
+  }
+
+
+  /**
+   * Connection supplied to handlers when the search connection does not support concurrent operations. The search
+   * connection is still being read by another thread, so any attempt to use or change it fails.
+   */
+  private static final class HandlerConnection implements Connection
+  {
+
+    /** Connection the search is executing on. */
+    private final Connection connection;
+
+
+    /**
+     * Creates a new handler connection.
+     *
+     * @param  conn  the search is executing on
+     */
+    HandlerConnection(final Connection conn)
+    {
+      connection = conn;
+    }
+
+
+    @Override
+    public ConnectionConfig getConnectionConfig()
+    {
+      return connection.getConnectionConfig();
+    }
+
+
+    @Override
+    public Response<Void> open()
+    {
+      throw createException();
+    }
+
+
+    @Override
+    public Response<Void> open(final BindRequest request)
+    {
+      throw createException();
+    }
+
+
+    @Override
+    public boolean isOpen()
+    {
+      return connection.isOpen();
+    }
+
+
+    @Override
+    public ProviderConnection getProviderConnection()
+    {
+      throw createException();
+    }
+
+
+    @Override
+    public void close()
+    {
+      throw createException();
+    }
+
+
+    @Override
+    public void close(final RequestControl[] controls)
+    {
+      throw createException();
+    }
+
+
+    @Override
+    public Response<Void> reopen()
+    {
+      throw createException();
+    }
+
+
+    @Override
+    public Response<Void> reopen(final BindRequest request)
+    {
+      throw createException();
+    }
+
+
+    /**
+     * Returns the exception thrown when a handler attempts to use the search connection.
+     *
+     * @return  illegal state exception
+     */
+    private IllegalStateException createException()
+    {
+      return new IllegalStateException(
+        "Search entry handlers cannot use " + connection + " concurrently, its provider does not support multiplexing");
+    }
+
+
+    @Override
+    public String toString()
+    {
+      return String.format("[%s@%d::connection=%s]", getClass().getName(), hashCode(), connection);
+    }
+  }
+
+
+  /** Entry being handled along with its sequence and the handled entry. */
+  private static final class Task
+  {
+
+    /** Order the entry was received in. */
+    private final long sequence;
+
+    /** Search entry. */
+    private final SearchEntry entry;
+
+    /** Handled entry, null if the handlers removed it or have not run. */
+    private volatile SearchEntry result;
+
+
+    /**
+     * Creates a new task.
+     *
+     * @param  seq  order the entry was received in
+     * @param  se  search entry
+     */
+    Task(final long seq, final SearchEntry se)
+    {
+      sequence = seq;
+      entry = se;
+    }
+  }
+}
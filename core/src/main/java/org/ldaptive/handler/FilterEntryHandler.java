@@ -0,0 +1,145 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.handler;
+
+import org.ldaptive.Connection;
+import org.ldaptive.LdapException;
+import org.ldaptive.LdapUtils;
+import org.ldaptive.SearchEntry;
+import org.ldaptive.SearchRequest;
+import org.ldaptive.filter.Filter;
+import org.ldaptive.filter.FilterEvaluator;
+import org.ldaptive.schema.Schema;
+
+/**
+ * Removes entries from the result that do not match a filter. Useful for applying criteria the server cannot evaluate,
+ * such as matching on attributes produced by other handlers. See {@link FilterEvaluator}.
+ *
+ * @author  Middleware Services
+ */
+public class FilterEntryHandler extends AbstractSearchEntryHandler
+{
+
+  /** hash code seed. */
+  private static final int HASH_CODE_SEED = 831;
+
+  /** Filter that entries must match. */
+  private Filter filter;
+
+  /** Evaluates the filter. */
+  private FilterEvaluator evaluator = new FilterEvaluator();
+
+
+  /** Default constructor. */
+  public FilterEntryHandler() {}
+
+
+  /**
+   * Creates a new filter entry handler.
+   *
+   * @param  f  filter that entries must match
+   */
+  public FilterEntryHandler(final Filter f)
+  {
+    setFilter(f);
+  }
+
+
+  /**
+   * Creates a new filter entry handler.
+   *
+   * @param  f  filter that entries must match
+   * @param  s  schema used to resolve matching rules
+   */
+  public FilterEntryHandler(final Filter f, final Schema s)
+  {
+    setFilter(f);
+    setSchema(s);
+  }
+
+
+  /**
+   * Returns the filter that entries must match.
+   *
+   * @return  filter
+   */
+  public Filter getFilter()
+  {
+    return filter;
+  }
+
+
+  /**
+   * Sets the filter that entries must match.
+   *
+   * @param  f  filter
+   */
+  public void setFilter(final Filter f)
+  {
+    filter = f;
+  }
+
+
+  /**
+   * Returns the schema used to resolve matching rules.
+   *
+   * @return  schema or null
+   */
+  public Schema getSchema()
+  {
+    return evaluator.getSchema();
+  }
+
+
+  /**
+   * Sets the schema used to resolve matching rules.
+   *
+   * @param  s  schema
+   */
+  public void setSchema(final Schema s)
+  {
+    evaluator = new FilterEvaluator(s);
+  }
+
+
+  @Override
+  public HandlerResult<SearchEntry> handle(final Connection conn, final SearchRequest request, final SearchEntry entry)
+    throws LdapException
+  {
+    if (filter == null) {
+      throw new IllegalStateException("Filter has not been configured");
+    }
+    if (entry != null && !evaluator.matches(filter, entry)) {
+      logger.trace("removing entry {} that does not match {}", entry.getDn(), filter);
+      return new HandlerResult<>(null);
+    }
+    return new HandlerResult<>(entry);
+  }
+
+
+  @Override
+  public boolean equals(final Object o)
+  {
+    if (o == this) {
+      return true;
+    }
+    if (o instanceof FilterEntryHandler) {
+      final FilterEntryHandler v = (FilterEntryHandler) o;
+      return LdapUtils.areEqual(filter, v.filter) && LdapUtils.areEqual(getSchema(), v.getSchema());
+    }
+    return false;
+  }
+
+
+  @Override
+  public int hashCode()
+  {
+    return LdapUtils.computeHashCode(HASH_CODE_SEED, filter, getSchema());
+  }
+
+
+  @Override
+  public String toString()
+  {
+    return String.format("[%s@%d::filter=%s]", getClass().getName(), hashCode(), filter);
+  }
+}
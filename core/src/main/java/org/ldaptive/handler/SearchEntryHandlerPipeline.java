@@ -0,0 +1,319 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.handler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import org.ldaptive.Connection;
+import org.ldaptive.LdapAttribute;
+import org.ldaptive.LdapException;
+import org.ldaptive.LdapUtils;
+import org.ldaptive.SearchEntry;
+import org.ldaptive.SearchRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Applies a sequence of search entry handlers as a single handler. When the request is initialized, consecutive {@link
+ * AttributeEntryHandler}s are compiled into a dispatch table keyed by attribute name, so each entry's attributes are
+ * visited once for the whole run rather than once per handler, and only the handlers that target an attribute are
+ * invoked for it. Other handlers are invoked in their position in the sequence. Results are the same as configuring the
+ * handlers individually:
+ *
+ * <pre>
+   request.setSearchEntryHandlers(
+     new SearchEntryHandlerPipeline(
+       new ObjectSidHandler(), new ObjectGuidHandler(), new CaseChangeEntryHandler(), new DnAttributeEntryHandler()));
+ * </pre>
+ *
+ * @author  Middleware Services
+ */
+public class SearchEntryHandlerPipeline implements SearchEntryHandler
+{
+
+  /** hash code seed. */
+  private static final int HASH_CODE_SEED = 833;
+
+  /** Logger for this class. */
+  protected final Logger logger = LoggerFactory.getLogger(getClass());
+
+  /** Handlers in the order they are applied. */
+  private final SearchEntryHandler[] handlers;
+
+  /** Compiled stages, either search entry handlers or fused attribute handlers. */
+  private volatile Object[] stages;
+
+
+  /**
+   * Creates a new search entry handler pipeline.
+   *
+   * @param  h  handlers in the order they are applied
+   */
+  public SearchEntryHandlerPipeline(final SearchEntryHandler... h)
+  {
+    if (h == null || h.length == 0) {
+      throw new IllegalArgumentException("Handlers cannot be null or empty");
+    }
+    handlers = h;
+  }
+
+
+  /**
+   * Returns the handlers in the order they are applied.
+   *
+   * @return  search entry handlers
+   */
+  public SearchEntryHandler[] getHandlers()
+  {
+    return handlers;
+  }
+
+
+  @Override
+  public HandlerResult<SearchEntry> handle(final Connection conn, final SearchRequest request, final SearchEntry entry)
+    throws LdapException
+  {
+    Object[] s = stages;
+    if (s == null) {
+      s = compile();
+      stages = s;
+    }
+    SearchEntry processed = entry;
+    boolean abort = false;
+    for (Object stage : s) {
+      if (stage instanceof FusedHandlers) {
+        if (processed != null) {
+          ((FusedHandlers) stage).apply(conn, request, processed);
+        }
+      } else {
+        try {
+          final HandlerResult<SearchEntry> hr = ((SearchEntryHandler) stage).handle(conn, request, processed);
+          if (hr != null) {
+            if (hr.getAbort()) {
+              abort = true;
+            }
+            processed = hr.getResult();
+          }
+        } catch (Exception e) {
+          logger.warn("{} threw unexpected exception", stage, e);
+        }
+      }
+    }
+    return new HandlerResult<>(processed, abort);
+  }
+
+
+  /**
+   * Initializes the request for every handler and compiles the handlers with their current configuration.
+   *
+   * @param  request  to initialize
+   */
+  @Override
+  public void initializeRequest(final SearchRequest request)
+  {
+    for (SearchEntryHandler handler : handlers) {
+      handler.initializeRequest(request);
+    }
+    stages = compile();
+  }
+
+
+  /**
+   * Groups consecutive attribute entry handlers into fused stages.
+   *
+   * @return  compiled stages
+   */
+  private Object[] compile()
+  {
+    final List<Object> compiled = new ArrayList<>(handlers.length);
+    final List<AttributeEntryHandler> run = new ArrayList<>();
+    for (SearchEntryHandler handler : handlers) {
+      if (handler instanceof AttributeEntryHandler) {
+        run.add((AttributeEntryHandler) handler);
+      } else {
+        if (!run.isEmpty()) {
+          compiled.add(new FusedHandlers(run));
+          run.clear();
+        }
+        compiled.add(handler);
+      }
+    }
+    if (!run.isEmpty()) {
+      compiled.add(new FusedHandlers(run));
+    }
+    logger.debug("compiled {} handlers into {} stages", handlers.length, compiled.size());
+    return compiled.toArray();
+  }
+
+
+  @Override
+  public boolean equals(final Object o)
+  {
+    if (o == this) {
+      return true;
+    }
+    if (o instanceof SearchEntryHandlerPipeline) {
+      final SearchEntryHandlerPipeline v = (SearchEntryHandlerPipeline) o;
+      return LdapUtils.areEqual(handlers, v.handlers);
+    }
+    return false;
+  }
+
+
+  @Override
+  public int hashCode()
+  {
+    return LdapUtils.computeHashCode(HASH_CODE_SEED, (Object) handlers);
+  }
+
+
+  @Override
+  public String toString()
+  {
+    return String.format("[%s@%d::handlers=%s]", getClass().getName(), hashCode(), Arrays.toString(handlers));
+  }
+
+
+  /** Attribute entry handlers applied in a single pass over the attributes of an entry. */
+  private final class FusedHandlers
+  {
+
+    /** Handlers in the order they are applied. */
+    private final AttributeEntryHandler[] fused;
+
+    /** Indexes of the handlers to apply by lower case attribute name. */
+    private final Map<String, int[]> dispatch;
+
+    /** Indexes of the handlers that apply to every attribute. */
+    private final int[] wildcard;
+
+
+    /**
+     * Creates a new fused handlers.
+     *
+     * @param  list  of handlers in the order they are applied
+     */
+    FusedHandlers(final List<AttributeEntryHandler> list)
+    {
+      fused = list.toArray(new AttributeEntryHandler[list.size()]);
+      final List<Integer> all = new ArrayList<>();
+      final Map<String, SortedSet<Integer>> named = new HashMap<>();
+      for (int i = 0; i < fused.length; i++) {
+        final String[] names = fused[i].getHandledAttributeNames();
+        if (names == null) {
+          all.add(i);
+        } else {
+          for (String name : names) {
+            named.computeIfAbsent(name.toLowerCase(), k -> new TreeSet<>()).add(i);
+          }
+        }
+      }
+      wildcard = toArray(all);
+      final Map<String, int[]> table = new HashMap<>(named.size());
+      for (Map.Entry<String, SortedSet<Integer>> e : named.entrySet()) {
+        e.getValue().addAll(all);
+        table.put(e.getKey(), toArray(e.getValue()));
+      }
+      dispatch = Collections.unmodifiableMap(table);
+    }
+
+
+    /**
+     * Returns the indexes of the handlers that apply to the supplied attribute name.
+     *
+     * @param  name  of the attribute
+     *
+     * @return  handler indexes in ascending order
+     */
+    private int[] lookup(final String name)
+    {
+      final int[] indexes = dispatch.get(name.toLowerCase());
+      return indexes != null ? indexes : wildcard;
+    }
+
+
+    /**
+     * Applies every handler to the DN and attributes of the supplied entry. If a handler renames an attribute, the
+     * remaining handlers are selected by the new name.
+     *
+     * @param  conn  the search was performed on
+     * @param  request  used to find the search entry
+     * @param  entry  to process
+     */
+    void apply(final Connection conn, final SearchRequest request, final SearchEntry entry)
+    {
+      String dn = entry.getDn();
+      for (AttributeEntryHandler handler : fused) {
+        try {
+          dn = handler.processDn(conn, request, dn);
+        } catch (Exception e) {
+          logger.warn("{} threw unexpected exception", handler, e);
+        }
+      }
+      entry.setDn(dn);
+      for (LdapAttribute attr : entry.getAttributes().toArray(new LdapAttribute[entry.size()])) {
+        final String key = attr.getName();
+        LdapAttribute processed = attr;
+        int[] indexes = lookup(key);
+        int next = 0;
+        int i = 0;
+        while (processed != null && i < indexes.length) {
+          if (indexes[i] >= next) {
+            final String name = processed.getName();
+            try {
+              processed = fused[indexes[i]].processAttribute(conn, request, processed);
+            } catch (Exception e) {
+              logger.warn("{} threw unexpected exception", fused[indexes[i]], e);
+            }
+            next = indexes[i] + 1;
+            if (processed != null && !processed.getName().equalsIgnoreCase(name)) {
+              indexes = lookup(processed.getName());
+              i = 0;
+              continue;
+            }
+          }
+          i++;
+        }
+        if (processed == null) {
+          entry.removeAttribute(key);
+        } else if (!processed.getName().equalsIgnoreCase(key)) {
+          entry.removeAttribute(key);
+          entry.addAttribute(processed);
+        } else if (processed != attr) {
+          entry.addAttribute(processed);
+        }
+      }
+    }
+
+
+    /**
+     * Converts the supplied integers to an array.
+     *
+     * @param  c  integers
+     *
+     * @return  int array
+     */
+    private int[] toArray(final Collection<Integer> c)
+    {
+      final int[] array = new int[c.size()];
+      int i = 0;
+      for (Integer n : c) {
+        array[i++] = n;
+      }
+      return array;
+    }
+
+
+    @Override
+    public String toString()
+    {
+      return String.format("[%s::handlers=%s]", getClass().getName(), Arrays.toString(fused));
+    }
+  }
+}
@@ -9,50 +9,24 @@ import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * Decodes and encodes a generalized time for use in an ldap attribute value. See
- * http://tools.ietf.org/html/rfc4517#section-3.3.13
+ * http://tools.ietf.org/html/rfc4517#section-3.3.13. Values are parsed and formatted a character at a time, since
+ * these transcoders are typically invoked for every value of every entry in a search result.
  *
  * @author  Middleware Services
  */
 public class GeneralizedTimeValueTranscoder extends AbstractStringValueTranscoder<ZonedDateTime>
 {
 
-  /** Pattern for capturing the year in generalized time. */
-  private static final String YEAR_PATTERN = "(\\d{4})";
+  /** Length of a formatted generalized time. */
+  private static final int FORMAT_LENGTH = 19;
 
-  /** Pattern for capturing the month in generalized time. */
-  private static final String MONTH_PATTERN = "((?:\\x30[\\x31-\\x39])|(?:\\x31[\\x30-\\x32]))";
+  /** Largest year that is formatted with four digits. */
+  private static final int MAX_YEAR = 9999;
 
-  /** Pattern for capturing the day in generalized time. */
-  private static final String DAY_PATTERN = "((?:\\x30[\\x31-\\x39])" +
-    "|(?:[\\x31-\\x32][\\x30-\\x39])" +
-    "|(?:\\x33[\\x30-\\x31]))";
-
-  /** Pattern for capturing hours in generalized time. */
-  private static final String HOUR_PATTERN = "((?:[\\x30-\\x31][\\x30-\\x39])|(?:\\x32[\\x30-\\x33]))";
-
-  /** Pattern for capturing optional minutes in generalized time. */
-  private static final String MIN_PATTERN = "([\\x30-\\x35][\\x30-\\x39])?";
-
-  /** Pattern for capturing optional seconds in generalized time. */
-  private static final String SECOND_PATTERN = "([\\x30-\\x35][\\x30-\\x39])?";
-
-  /** Pattern for capturing optional fraction in generalized time. */
-  private static final String FRACTION_PATTERN = "([,.](\\d+))?";
-
-  /** Pattern for capturing timezone in generalized time. */
-  private static final String TIMEZONE_PATTERN = "(Z|(?:[+-]" + HOUR_PATTERN + MIN_PATTERN + "))";
-
-  /** Generalized time format regular expression. */
-  private static final Pattern TIME_REGEX = Pattern.compile(
-    YEAR_PATTERN + MONTH_PATTERN + DAY_PATTERN + HOUR_PATTERN + MIN_PATTERN + SECOND_PATTERN + FRACTION_PATTERN +
-    TIMEZONE_PATTERN);
-
-  /** Date format. */
+  /** Date format for years that cannot be formatted with four digits. */
   private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyyMMddHHmmss.SSS'Z'");
 
   /** Describes the fractional part of a generalized time string. */
@@ -83,15 +57,25 @@ public class GeneralizedTimeValueTranscoder extends AbstractStringValueTranscode
 
 
     /**
-     * Converts the given fractional date part to milliseconds.
+     * Converts the given fractional date part to milliseconds, truncating any part of a millisecond. The conversion is
+     * exact for any number of digits.
      *
-     * @param  fraction  digits of fractional date part
+     * @param  value  containing the digits of fractional date part
+     * @param  start  index of the first digit, inclusive
+     * @param  end  index of the last digit, exclusive
      *
      * @return  fraction converted to milliseconds.
      */
-    int toMillis(final String fraction)
+    int toMillis(final String value, final int start, final int end)
     {
-      return (int) (Double.parseDouble('.' + fraction) * scaleFactor);
+      // floor((m + d * scale) / 10) == floor((floor(m) + d * scale) / 10), so digits are applied from the right
+      long millis = 0;
+      // CheckStyle:MagicNumber OFF
+      for (int i = end - 1; i >= start; i--) {
+        millis = (millis + (value.charAt(i) - '0') * (long) scaleFactor) / 10;
+      }
+      // CheckStyle:MagicNumber ON
+      return (int) millis;
     }
   }
 
@@ -110,11 +94,29 @@ public class GeneralizedTimeValueTranscoder extends AbstractStringValueTranscode
   @Override
   public String encodeStringValue(final ZonedDateTime value)
   {
+    final ZonedDateTime utc;
     if (value.getZone().normalized().equals(ZoneOffset.UTC)) {
-      return value.format(DATE_FORMAT);
+      utc = value;
     } else {
-      return value.withZoneSameInstant(ZoneOffset.UTC).format(DATE_FORMAT);
+      utc = value.withZoneSameInstant(ZoneOffset.UTC);
     }
+    if (utc.getYear() < 0 || utc.getYear() > MAX_YEAR) {
+      return utc.format(DATE_FORMAT);
+    }
+
+    // CheckStyle:MagicNumber OFF
+    final char[] c = new char[FORMAT_LENGTH];
+    formatDigits(c, 0, utc.getYear(), 4);
+    formatDigits(c, 4, utc.getMonthValue(), 2);
+    formatDigits(c, 6, utc.getDayOfMonth(), 2);
+    formatDigits(c, 8, utc.getHour(), 2);
+    formatDigits(c, 10, utc.getMinute(), 2);
+    formatDigits(c, 12, utc.getSecond(), 2);
+    c[14] = '.';
+    formatDigits(c, 15, utc.getNano() / 1000000, 3);
+    c[18] = 'Z';
+    // CheckStyle:MagicNumber ON
+    return new String(c);
   }
 
 
@@ -141,50 +143,164 @@ public class GeneralizedTimeValueTranscoder extends AbstractStringValueTranscode
       throw new IllegalArgumentException("String to parse cannot be null.");
     }
 
-    final Matcher m = TIME_REGEX.matcher(value);
-    if (!m.matches()) {
-      throw new ParseException("Invalid generalized time string.", value.length());
-    }
-
     // CheckStyle:MagicNumber OFF
-    final ZoneId zoneId;
-    final String tzString = m.group(9);
-    if ("Z".equals(tzString)) {
-      zoneId = ZoneOffset.UTC;
-    } else {
-      zoneId = ZoneId.of("GMT" + tzString);
-    }
+    final int length = value.length();
+    int pos = 0;
 
     // Set required time fields
-    final int year = Integer.parseInt(m.group(1));
-    final int month = Integer.parseInt(m.group(2));
-    final int dayOfMonth = Integer.parseInt(m.group(3));
-    final int hour = Integer.parseInt(m.group(4));
+    final int year = parseDigits(value, pos, 4, 0, 9999);
+    pos += 4;
+    final int month = parseDigits(value, pos, 2, 1, 12);
+    pos += 2;
+    final int dayOfMonth = parseDigits(value, pos, 2, 1, 31);
+    pos += 2;
+    final int hour = parseDigits(value, pos, 2, 0, 23);
+    pos += 2;
 
     FractionalPart fraction = FractionalPart.Hours;
 
     // Set optional minutes
     int minutes = 0;
-    if (m.group(5) != null) {
+    if (isDigits(value, pos, 2, 0, 59)) {
       fraction = FractionalPart.Minutes;
-      minutes = Integer.parseInt(m.group(5));
+      minutes = parseDigits(value, pos, 2, 0, 59);
+      pos += 2;
     }
 
     // Set optional seconds
     int seconds = 0;
-    if (m.group(6) != null) {
+    if (isDigits(value, pos, 2, 0, 59)) {
       fraction = FractionalPart.Seconds;
-      seconds = Integer.parseInt(m.group(6));
+      seconds = parseDigits(value, pos, 2, 0, 59);
+      pos += 2;
     }
 
     // Set optional fractional part
     int millis = 0;
-    if (m.group(7) != null) {
-      millis = fraction.toMillis(m.group(8));
+    if (pos < length && (value.charAt(pos) == '.' || value.charAt(pos) == ',')) {
+      final int start = ++pos;
+      while (pos < length && isDigit(value.charAt(pos))) {
+        pos++;
+      }
+      if (pos == start) {
+        throw new ParseException("Invalid generalized time string.", pos);
+      }
+      millis = fraction.toMillis(value, start, pos);
+    }
+
+    // Set timezone
+    final ZoneId zoneId;
+    if (pos < length && value.charAt(pos) == 'Z') {
+      zoneId = ZoneOffset.UTC;
+      pos++;
+    } else if (pos < length && (value.charAt(pos) == '+' || value.charAt(pos) == '-')) {
+      final int sign = value.charAt(pos++) == '-' ? -1 : 1;
+      final int offsetHours = parseDigits(value, pos, 2, 0, 23);
+      pos += 2;
+      int offsetMinutes = 0;
+      if (pos < length) {
+        offsetMinutes = parseDigits(value, pos, 2, 0, 59);
+        pos += 2;
+      }
+      zoneId = ZoneId.ofOffset("GMT", ZoneOffset.ofHoursMinutes(sign * offsetHours, sign * offsetMinutes));
+    } else {
+      throw new ParseException("Invalid generalized time string.", pos);
+    }
+    if (pos != length) {
+      throw new ParseException("Invalid generalized time string.", pos);
     }
     // CheckStyle:MagicNumber ON
 
     return ZonedDateTime.of(
       LocalDateTime.of(year, month, dayOfMonth, hour, minutes, seconds).plus(millis, ChronoUnit.MILLIS), zoneId);
   }
+
+
+  /**
+   * Returns whether the supplied value contains a number with the supplied number of digits at the supplied position
+   * within the supplied range.
+   *
+   * @param  value  to inspect
+   * @param  pos  of the first digit
+   * @param  count  number of digits
+   * @param  min  minimum value, inclusive
+   * @param  max  maximum value, inclusive
+   *
+   * @return  whether the digits are present and within range
+   */
+  private static boolean isDigits(final String value, final int pos, final int count, final int min, final int max)
+  {
+    boolean valid = pos + count <= value.length();
+    int n = 0;
+    // CheckStyle:MagicNumber OFF
+    for (int i = pos; valid && i < pos + count; i++) {
+      final char c = value.charAt(i);
+      valid = isDigit(c);
+      n = n * 10 + c - '0';
+    }
+    // CheckStyle:MagicNumber ON
+    return valid && n >= min && n <= max;
+  }
+
+
+  /**
+   * Parses a number with the supplied number of digits at the supplied position.
+   *
+   * @param  value  to parse
+   * @param  pos  of the first digit
+   * @param  count  number of digits
+   * @param  min  minimum value, inclusive
+   * @param  max  maximum value, inclusive
+   *
+   * @return  parsed number
+   *
+   * @throws  ParseException  if the digits are not present or not within range
+   */
+  private static int parseDigits(final String value, final int pos, final int count, final int min, final int max)
+    throws ParseException
+  {
+    if (!isDigits(value, pos, count, min, max)) {
+      throw new ParseException("Invalid generalized time string.", pos);
+    }
+    int n = 0;
+    // CheckStyle:MagicNumber OFF
+    for (int i = pos; i < pos + count; i++) {
+      n = n * 10 + value.charAt(i) - '0';
+    }
+    // CheckStyle:MagicNumber ON
+    return n;
+  }
+
+
+  /**
+   * Returns whether the supplied character is an ASCII digit.
+   *
+   * @param  c  to inspect
+   *
+   * @return  whether c is between '0' and '9'
+   */
+  private static boolean isDigit(final char c)
+  {
+    return c >= '0' && c <= '9';
+  }
+
+
+  /**
+   * Writes the supplied number into the supplied array, zero padded to the supplied number of digits.
+   *
+   * @param  c  array to write to
+   * @param  pos  of the first digit
+   * @param  n  number to write
+   * @param  count  number of digits
+   */
+  private static void formatDigits(final char[] c, final int pos, final int n, final int count)
+  {
+    int remaining = n;
+    // CheckStyle:MagicNumber OFF
+    for (int i = pos + count - 1; i >= pos; i--) {
+      c[i] = (char) ('0' + remaining % 10);
+      remaining /= 10;
+    }
+    // CheckStyle:MagicNumber ON
+  }
 }
@@ -57,7 +57,9 @@ public class LdifWriter implements SearchResultWriter
 
 
   /**
-   * Writes the supplied search result to the writer.
+   * Writes the supplied search result to the writer. Each entry and reference is written as it is converted by {@link
+   * #createLdifEntry(LdapEntry)} and {@link #createSearchReference(SearchReference)}, so the whole result is never held
+   * as a single string. {@link #createLdif(SearchResult)} is not invoked.
    *
    * @param  result  search result to write
    *
@@ -67,7 +69,14 @@ public class LdifWriter implements SearchResultWriter
   public void write(final SearchResult result)
     throws IOException
   {
-    ldifWriter.write(createLdif(result));
+    if (result != null) {
+      for (LdapEntry le : result.getEntries()) {
+        ldifWriter.write(createLdifEntry(le));
+      }
+      for (SearchReference sr : result.getReferences()) {
+        ldifWriter.write(createSearchReference(sr));
+      }
+    }
     ldifWriter.flush();
   }
 
@@ -75,10 +84,14 @@ public class LdifWriter implements SearchResultWriter
   /**
    * Creates an LDIF using the supplied search result.
    *
+   * @deprecated  {@link #write(SearchResult)} no longer invokes this method, override {@link
+   *              #createLdifEntry(LdapEntry)} or {@link #createSearchReference(SearchReference)} to customize output
+   *
    * @param  result  search result
    *
    * @return  LDIF
    */
+  @Deprecated
   protected String createLdif(final SearchResult result)
   {
     // build string from results
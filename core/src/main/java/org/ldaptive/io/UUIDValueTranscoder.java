@@ -4,25 +4,53 @@ package org.ldaptive.io;
 import java.util.UUID;
 
 /**
- * Decodes and encodes a UUID for use in an ldap attribute value.
+ * Decodes and encodes a UUID for use in an ldap attribute value. Values in the canonical 36 character form are parsed
+ * and formatted directly; other forms accepted by {@link UUID#fromString(String)} are delegated to it.
  *
  * @author  Middleware Services
  */
 public class UUIDValueTranscoder extends AbstractStringValueTranscoder<UUID>
 {
 
+  /** Number of characters in the canonical form of a UUID. */
+  private static final int UUID_LENGTH = 36;
+
+  /** Index of each dash in the canonical form. */
+  private static final int[] DASH_POSITION = {8, 13, 18, 23};
+
+  /** Hex characters. */
+  private static final char[] HEX_CHARS = "0123456789abcdef".toCharArray();
+
 
   @Override
   public UUID decodeStringValue(final String value)
   {
-    return UUID.fromString(value);
+    if (!isCanonical(value)) {
+      return UUID.fromString(value);
+    }
+    // CheckStyle:MagicNumber OFF
+    final long mostSigBits = parseHex(value, 0, 8) << 32 | parseHex(value, 9, 13) << 16 | parseHex(value, 14, 18);
+    final long leastSigBits = parseHex(value, 19, 23) << 48 | parseHex(value, 24, 36);
+    // CheckStyle:MagicNumber ON
+    return new UUID(mostSigBits, leastSigBits);
   }
 
 
   @Override
   public String encodeStringValue(final UUID value)
   {
-    return value.toString();
+    final char[] c = new char[UUID_LENGTH];
+    // CheckStyle:MagicNumber OFF
+    formatHex(c, 0, 8, value.getMostSignificantBits() >>> 32);
+    formatHex(c, 9, 13, value.getMostSignificantBits() >>> 16);
+    formatHex(c, 14, 18, value.getMostSignificantBits());
+    formatHex(c, 19, 23, value.getLeastSignificantBits() >>> 48);
+    formatHex(c, 24, 36, value.getLeastSignificantBits());
+    // CheckStyle:MagicNumber ON
+    for (int pos : DASH_POSITION) {
+      c[pos] = '-';
+    }
+    return new String(c);
   }
 
 
@@ -31,4 +59,94 @@ public class UUIDValueTranscoder extends AbstractStringValueTranscoder<UUID>
   {
     return UUID.class;
   }
+
+
+  /**
+   * Returns whether the supplied value has the length, dashes and hex digits of the canonical form.
+   *
+   * @param  value  to inspect
+   *
+   * @return  whether value may be parsed directly
+   */
+  private static boolean isCanonical(final String value)
+  {
+    boolean canonical = value != null && value.length() == UUID_LENGTH;
+    int dash = 0;
+    for (int i = 0; canonical && i < UUID_LENGTH; i++) {
+      if (dash < DASH_POSITION.length && i == DASH_POSITION[dash]) {
+        canonical = value.charAt(i) == '-';
+        dash++;
+      } else {
+        canonical = hexValue(value.charAt(i)) >= 0;
+      }
+    }
+    return canonical;
+  }
+
+
+  /**
+   * Parses the hex characters between the supplied indexes, which must have been validated by {@link
+   * #isCanonical(String)}.
+   *
+   * @param  value  to parse
+   * @param  start  index of the first character, inclusive
+   * @param  end  index of the last character, exclusive
+   *
+   * @return  parsed value
+   */
+  private static long parseHex(final String value, final int start, final int end)
+  {
+    long n = 0;
+    // CheckStyle:MagicNumber OFF
+    for (int i = start; i < end; i++) {
+      n = n << 4 | hexValue(value.charAt(i));
+    }
+    // CheckStyle:MagicNumber ON
+    return n;
+  }
+
+
+  /**
+   * Returns the value of the supplied hex character.
+   *
+   * @param  c  hex character
+   *
+   * @return  value between 0 and 15 or -1 if c is not a hex character
+   */
+  private static int hexValue(final char c)
+  {
+    final int value;
+    // CheckStyle:MagicNumber OFF
+    if (c >= '0' && c <= '9') {
+      value = c - '0';
+    } else if (c >= 'a' && c <= 'f') {
+      value = c - 'a' + 10;
+    } else if (c >= 'A' && c <= 'F') {
+      value = c - 'A' + 10;
+    } else {
+      value = -1;
+    }
+    // CheckStyle:MagicNumber ON
+    return value;
+  }
+
+
+  /**
+   * Writes the low order bits of the supplied value as hex characters between the supplied indexes.
+   *
+   * @param  c  array to write to
+   * @param  start  index of the first character, inclusive
+   * @param  end  index of the last character, exclusive
+   * @param  value  to format
+   */
+  private static void formatHex(final char[] c, final int start, final int end, final long value)
+  {
+    long remaining = value;
+    // CheckStyle:MagicNumber OFF
+    for (int i = end - 1; i >= start; i--) {
+      c[i] = HEX_CHARS[(int) (remaining & 0x0F)];
+      remaining >>>= 4;
+    }
+    // CheckStyle:MagicNumber ON
+  }
 }
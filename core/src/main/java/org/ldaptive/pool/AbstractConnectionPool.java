@@ -4,6 +4,8 @@ package org.ldaptive.pool;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -12,6 +14,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -19,6 +22,7 @@ import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 import org.ldaptive.Connection;
@@ -58,6 +62,9 @@ public abstract class AbstractConnectionPool extends AbstractPool<Connection> im
   /** List of connections in use. */
   protected Queue<PooledConnectionProxy> active;
 
+  /** Number of connections being created in the background. */
+  protected final AtomicInteger pendingCount = new AtomicInteger();
+
   /** Connection factory to create connections with. */
   private DefaultConnectionFactory connectionFactory;
 
@@ -70,14 +77,26 @@ public abstract class AbstractConnectionPool extends AbstractPool<Connection> im
   /** Executor for scheduling pool tasks. */
   private ScheduledExecutorService poolExecutor;
 
+  /** Executor for creating connections in the background. */
+  private ExecutorService growExecutor;
+
+  /** Decides the pool size when adaptive sizing is enabled. */
+  private PoolSizingController sizingController;
+
   /** Whether {@link #initialize()} has been invoked. */
   private boolean initialized;
 
+  /** Whether {@link #close()} has been invoked. Guarded by {@link #poolLock}. */
+  private boolean closed;
+
   /**
    * Whether {@link #initialize()} should throw if pooling configuration requirements are not met.
    */
   private boolean failFastInitialize = true;
 
+  /** Whether {@link #initialize()} returns once the first connection is available. */
+  private boolean initializeInBackground;
+
 
   /**
    * Returns the connection factory for this pool.
@@ -172,6 +191,31 @@ public abstract class AbstractConnectionPool extends AbstractPool<Connection> im
   }
 
 
+  /**
+   * Returns whether {@link #initialize()} returns as soon as the first connection is available. Default is false.
+   *
+   * @return  whether the pool is filled to its minimum size in the background
+   */
+  public boolean getInitializeInBackground()
+  {
+    return initializeInBackground;
+  }
+
+
+  /**
+   * Sets whether {@link #initialize()} returns as soon as the first connection is available. The remaining connections
+   * up to {@link PoolConfig#getMinPoolSize()} are created in the background and become available for check out as each
+   * one is ready.
+   *
+   * @param  b  whether the pool is filled to its minimum size in the background
+   */
+  public void setInitializeInBackground(final boolean b)
+  {
+    logger.trace("setting initializeInBackground: {}", b);
+    initializeInBackground = b;
+  }
+
+
   /**
    * Returns whether this pool has been initialized.
    *
@@ -247,13 +291,28 @@ public abstract class AbstractConnectionPool extends AbstractPool<Connection> im
 
     available = new Queue<>(queueType);
     active = new Queue<>(queueType);
-
-    IllegalStateException growException = null;
+    poolLock.lock();
     try {
-      grow(getPoolConfig().getMinPoolSize(), true);
-    } catch (IllegalStateException e) {
-      growException = e;
+      closed = false;
+    } finally {
+      poolLock.unlock();
+    }
+
+    growExecutor = Executors.newCachedThreadPool(
+      r -> {
+        final Thread t = new Thread(r, "ldaptive-" + AbstractConnectionPool.class.getSimpleName() + "-grow");
+        t.setDaemon(true);
+        return t;
+      });
+
+    final GrowTask task = new GrowTask(getPoolConfig().getMinPoolSize(), true);
+    task.start();
+    if (initializeInBackground) {
+      task.awaitFirst();
+    } else {
+      task.awaitDone();
     }
+    final IllegalStateException growException = task.getLastThrown();
     if (available.isEmpty() && getPoolConfig().getMinPoolSize() > 0) {
       if (failFastInitialize) {
         throw new IllegalStateException(
@@ -302,6 +361,22 @@ public abstract class AbstractConnectionPool extends AbstractPool<Connection> im
       TimeUnit.MILLISECONDS);
     logger.debug("validate pool task scheduled for {}", this);
 
+    if (getPoolConfig().isAdaptiveSizing()) {
+      sizingController = new PoolSizingController(getPoolConfig());
+      poolExecutor.scheduleAtFixedRate(
+        () -> {
+          try {
+            resize();
+          } catch (Exception e) {
+            logger.error("resize task failed for {}", AbstractConnectionPool.this, e);
+          }
+        },
+        getPoolConfig().getSizingPeriod().toMillis(),
+        getPoolConfig().getSizingPeriod().toMillis(),
+        TimeUnit.MILLISECONDS);
+      logger.debug("resize pool task scheduled for {}", this);
+    }
+
     initialized = true;
     logger.info("pool initialized {}", this);
   }
@@ -321,47 +396,34 @@ public abstract class AbstractConnectionPool extends AbstractPool<Connection> im
 
   /**
    * Attempts to grow the pool to the supplied size. If the pool size is greater than or equal to the supplied size,
-   * this method is a no-op.
+   * this method is a no-op. Connections are created concurrently, up to {@link PoolConfig#getGrowParallelism()} at a
+   * time, without holding the pool lock. Each connection is available for check out as soon as it is ready. This
+   * method blocks until all connections have been created.
    *
    * @param  size  to grow the pool to
    * @param  throwOnFailure  whether to throw illegal state exception
    *
    * @throws  IllegalStateException  if the pool cannot grow to the supplied size and {@link
-   *                                 #createAvailableConnection(boolean)} throws
+   *                                 #createConnection(boolean)} throws
    */
   protected void grow(final int size, final boolean throwOnFailure)
   {
-    logger.trace("waiting for pool lock to initialize pool {}", poolLock.getQueueLength());
-
-    int count = 0;
+    final int count;
     poolLock.lock();
     try {
-      IllegalStateException lastThrown = null;
-      int currentPoolSize = active.size() + available.size();
       logger.debug("checking connection pool size >= {} for {}", size, this);
-      while (currentPoolSize < size && count < size * 2) {
-        try {
-          final PooledConnectionProxy pc = createAvailableConnection(throwOnFailure);
-          if (pc != null && getPoolConfig().isValidateOnCheckIn()) {
-            if (validate(pc.getConnection())) {
-              logger.trace("connection passed initialize validation: {}", pc);
-            } else {
-              logger.warn("connection failed initialize validation: {}", pc);
-              removeAvailableConnection(pc);
-            }
-          }
-        } catch (IllegalStateException e) {
-          lastThrown = e;
-        }
-        currentPoolSize = active.size() + available.size();
-        count++;
-      }
-      if (lastThrown != null && currentPoolSize < size) {
-        throw lastThrown;
-      }
+      count = size - (active.size() + available.size() + pendingCount.get());
     } finally {
       poolLock.unlock();
     }
+    if (count > 0) {
+      final GrowTask task = new GrowTask(count, throwOnFailure);
+      task.start();
+      task.awaitDone();
+      if (task.getLastThrown() != null && activeCount() + availableCount() < size) {
+        throw task.getLastThrown();
+      }
+    }
   }
 
 
@@ -376,6 +438,13 @@ public abstract class AbstractConnectionPool extends AbstractPool<Connection> im
     throwIfNotInitialized();
     logger.debug("closing connection pool of size {} for {}", available.size() + active.size(), this);
     poolLock.lock();
+    try {
+      closed = true;
+    } finally {
+      poolLock.unlock();
+    }
+    shutdownGrowExecutor();
+    poolLock.lock();
     try {
       while (!available.isEmpty()) {
         final PooledConnectionProxy pc = available.remove();
@@ -394,12 +463,35 @@ public abstract class AbstractConnectionPool extends AbstractPool<Connection> im
 
     logger.debug("shutting down executor");
     poolExecutor.shutdown();
+    sizingController = null;
     logger.debug("executor shutdown");
     logger.info("pool closed {}", this);
     initialized = false;
   }
 
 
+  /**
+   * Stops creating connections in the background and waits for connections being created to finish, for up to the
+   * connect timeout of the connection factory. Connections that finish afterward are closed by {@link
+   * #addAvailableConnection(PooledConnectionProxy)}.
+   */
+  private void shutdownGrowExecutor()
+  {
+    logger.debug("shutting down grow executor");
+    growExecutor.shutdownNow();
+    final Duration timeout = connectionFactory.getConnectionConfig().getConnectTimeout();
+    try {
+      if (!growExecutor.awaitTermination(
+          timeout != null ? timeout.toMillis() : Long.MAX_VALUE, TimeUnit.MILLISECONDS)) {
+        logger.warn("connections still being created after close of {}", this);
+      }
+    } catch (InterruptedException e) {
+      logger.warn("interrupted waiting for connections to be created for {}", this, e);
+      Thread.currentThread().interrupt();
+    }
+  }
+
+
   /**
    * Returns a connection from the pool.
    *
@@ -493,18 +585,36 @@ public abstract class AbstractConnectionPool extends AbstractPool<Connection> im
   {
     final PooledConnectionProxy pc = createConnection(throwOnFailure);
     if (pc != null) {
-      poolLock.lock();
-      try {
+      addAvailableConnection(pc);
+    } else {
+      logger.warn("unable to create available connection");
+    }
+    return pc;
+  }
+
+
+  /**
+   * Places a new connection in the available pool and notifies a thread waiting for a connection. If this pool has been
+   * closed the connection is closed instead.
+   *
+   * @param  pc  connection to add
+   */
+  protected void addAvailableConnection(final PooledConnectionProxy pc)
+  {
+    poolLock.lock();
+    try {
+      if (closed) {
+        pc.getConnection().close();
+        logger.debug("closed connection created after pool close: {}", pc);
+      } else {
         available.add(pc);
         pc.getPooledConnectionStatistics().addAvailableStat();
         logger.info("added available connection: {}", pc);
-      } finally {
-        poolLock.unlock();
+        poolNotEmpty.signal();
       }
-    } else {
-      logger.warn("unable to create available connection");
+    } finally {
+      poolLock.unlock();
     }
-    return pc;
   }
 
 
@@ -801,11 +911,132 @@ public abstract class AbstractConnectionPool extends AbstractPool<Connection> im
       } else {
         logger.debug("no available connections, no validation performed for {}", this);
       }
-      grow(getPoolConfig().getMinPoolSize());
-      logger.debug("pool size after validation is {}", available.size() + active.size());
     } finally {
       poolLock.unlock();
     }
+    grow(getPoolConfig().getMinPoolSize());
+    logger.debug("pool size after validation is {}", availableCount() + activeCount());
+  }
+
+
+  /**
+   * Asks the sizing controller for a decision and applies it. Growth is performed in the background by {@link
+   * #prewarm(int)}, shrinking closes the available connection that has been idle the longest. Invoked periodically
+   * when {@link PoolConfig#isAdaptiveSizing()} is enabled.
+   *
+   * @throws  IllegalStateException  if this pool has not been initialized or adaptive sizing is not enabled
+   */
+  public void resize()
+  {
+    throwIfNotInitialized();
+    if (sizingController == null) {
+      throw new IllegalStateException("Adaptive sizing is not enabled");
+    }
+    final PoolSizingController.Decision decision = sizingController.evaluate(
+      activeCount(),
+      availableCount() + pendingCount.get());
+    switch (decision.getAction()) {
+
+    case GROW:
+      logger.info("growing pool to {} for {}", decision, this);
+      prewarm(decision.getTargetSize() - decision.getCurrentSize());
+      break;
+
+    case SHRINK:
+      logger.info("shrinking pool to {} for {}", decision, this);
+      removeIdleConnection();
+      break;
+
+    default:
+      logger.debug("keeping pool size {} for {}", decision, this);
+      break;
+    }
+  }
+
+
+  /**
+   * Returns the most recent adaptive sizing decision.
+   *
+   * @return  sizing decision or null if adaptive sizing is not enabled or no decision has been made
+   */
+  public PoolSizingController.Decision getLastSizingDecision()
+  {
+    final PoolSizingController controller = sizingController;
+    return controller != null ? controller.getLastDecision() : null;
+  }
+
+
+  /**
+   * Creates the supplied number of available connections concurrently in the background. Each connection is added to
+   * the pool as soon as it is ready and threads blocked on an empty pool are notified. Connections being created are
+   * reported by {@link #pendingCount}.
+   *
+   * @param  count  number of connections to create
+   */
+  protected void prewarm(final int count)
+  {
+    if (count > 0) {
+      new GrowTask(count, false).start();
+    }
+  }
+
+
+  /** Closes the available connection that has been idle the longest, if the pool is above its minimum size. */
+  protected void removeIdleConnection()
+  {
+    PooledConnectionProxy idle = null;
+    poolLock.lock();
+    try {
+      if (active.size() + available.size() > getPoolConfig().getMinPoolSize()) {
+        for (PooledConnectionProxy pc : available) {
+          final Instant last = pc.getPooledConnectionStatistics().getLastAvailableState();
+          final Instant idleLast = idle != null ? idle.getPooledConnectionStatistics().getLastAvailableState() : null;
+          if (idle == null || (last != null && (idleLast == null || last.isBefore(idleLast)))) {
+            idle = pc;
+          }
+        }
+        if (idle != null) {
+          available.remove(idle);
+        }
+      }
+    } finally {
+      poolLock.unlock();
+    }
+    if (idle != null) {
+      idle.getConnection().close();
+      logger.info("destroyed idle connection: {}", idle);
+    }
+  }
+
+
+  /**
+   * Reports a completed check out to the sizing controller, if adaptive sizing is enabled.
+   *
+   * @param  startTime  time the check out began, see {@link System#nanoTime()}
+   */
+  protected void recordCheckOut(final long startTime)
+  {
+    final PoolSizingController controller = sizingController;
+    if (controller != null) {
+      controller.checkOutCompleted(System.nanoTime() - startTime, activeCount());
+    }
+  }
+
+
+  /**
+   * Reports a check in to the sizing controller, if adaptive sizing is enabled.
+   *
+   * @param  pc  connection being checked in
+   */
+  protected void recordCheckIn(final PooledConnectionProxy pc)
+  {
+    final PoolSizingController controller = sizingController;
+    if (controller != null) {
+      final Instant checkedOut = pc.getPooledConnectionStatistics().getLastActiveStat();
+      if (checkedOut != null) {
+        controller.checkInCompleted(Duration.between(checkedOut, Instant.now()).toNanos());
+      }
+    }
   }
 
 
@@ -919,6 +1150,161 @@ public abstract class AbstractConnectionPool extends AbstractPool<Connection> im
   }
 
 
+  /**
+   * Creates a number of connections concurrently on the grow executor, up to {@link PoolConfig#getGrowParallelism()}
+   * at a time. Each connection may be attempted twice. Connections are validated if {@link
+   * PoolConfig#isValidateOnCheckIn()} is set before they are added to the available pool.
+   */
+  private class GrowTask
+  {
+
+    /** Connections left to create. */
+    private final AtomicInteger remaining;
+
+    /** Creation attempts left. */
+    private final AtomicInteger attempts;
+
+    /** Whether to throw illegal state exception. */
+    private final boolean throwOnFailure;
+
+    /** Released when the first connection is added or all workers are done. */
+    private final CountDownLatch firstLatch = new CountDownLatch(1);
+
+    /** Released when all workers are done. */
+    private final CountDownLatch doneLatch;
+
+    /** Last exception thrown by a creation attempt. */
+    private volatile IllegalStateException lastThrown;
+
+
+    /**
+     * Creates a new grow task.
+     *
+     * @param  count  number of connections to create
+     * @param  b  whether to throw illegal state exception
+     */
+    GrowTask(final int count, final boolean b)
+    {
+      remaining = new AtomicInteger(Math.max(count, 0));
+      attempts = new AtomicInteger(Math.max(count, 0) * 2);
+      throwOnFailure = b;
+      doneLatch = new CountDownLatch(Math.min(remaining.get(), getPoolConfig().getGrowParallelism()));
+    }
+
+
+    /** Submits the workers to the grow executor. */
+    void start()
+    {
+      pendingCount.addAndGet(remaining.get());
+      final long workers = doneLatch.getCount();
+      if (workers == 0) {
+        firstLatch.countDown();
+      }
+      for (int i = 0; i < workers; i++) {
+        try {
+          growExecutor.execute(this::work);
+        } catch (RuntimeException e) {
+          logger.warn("could not schedule connection creation for {}", AbstractConnectionPool.this, e);
+          work();
+        }
+      }
+    }
+
+
+    /** Creates connections until none remain. */
+    private void work()
+    {
+      try {
+        while (remaining.getAndDecrement() > 0) {
+          try {
+            boolean added = false;
+            while (!added && attempts.getAndDecrement() > 0 && !growExecutor.isShutdown()) {
+              added = createAndAdd();
+            }
+            if (added) {
+              firstLatch.countDown();
+            }
+          } finally {
+            pendingCount.decrementAndGet();
+          }
+        }
+      } finally {
+        doneLatch.countDown();
+        if (doneLatch.getCount() == 0) {
+          firstLatch.countDown();
+        }
+      }
+    }
+
+
+    /**
+     * Creates, validates and adds a single connection.
+     *
+     * @return  whether a connection was added to the available pool
+     */
+    private boolean createAndAdd()
+    {
+      boolean added = false;
+      try {
+        final PooledConnectionProxy pc = createConnection(throwOnFailure);
+        if (pc != null) {
+          if (getPoolConfig().isValidateOnCheckIn() && !validate(pc.getConnection())) {
+            logger.warn("connection failed initialize validation: {}", pc);
+            pc.getConnection().close();
+          } else {
+            addAvailableConnection(pc);
+            added = true;
+          }
+        }
+      } catch (IllegalStateException e) {
+        lastThrown = e;
+      }
+      return added;
+    }
+
+
+    /** Waits until the first connection is added or all workers are done. */
+    void awaitFirst()
+    {
+      await(firstLatch);
+    }
+
+
+    /** Waits until all workers are done. */
+    void awaitDone()
+    {
+      await(doneLatch);
+    }
+
+
+    /**
+     * Waits for the supplied latch, restoring the interrupt status if interrupted.
+     *
+     * @param  latch  to wait for
+     */
+    private void await(final CountDownLatch latch)
+    {
+      try {
+        latch.await();
+      } catch (InterruptedException e) {
+        logger.warn("interrupted waiting for pool to grow", e);
+        Thread.currentThread().interrupt();
+      }
+    }
+
+
+    /**
+     * Returns the last exception thrown by a creation attempt.
+     *
+     * @return  last exception or null
+     */
+    IllegalStateException getLastThrown()
+    {
+      return lastThrown;
+    }
+  }
+
+
   /**
    * Contains a connection that is participating in this pool. Used to track how long a connection has been in use and
    * override certain method invocations.
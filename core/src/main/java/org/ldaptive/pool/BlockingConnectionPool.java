@@ -3,23 +3,47 @@ package org.ldaptive.pool;
 
 import java.time.Duration;
 import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import org.ldaptive.Connection;
 import org.ldaptive.DefaultConnectionFactory;
 
 /**
  * Implements a pool of connections that has a set minimum and maximum size. The pool will not grow beyond the maximum
  * size and when the pool is exhausted, requests for new connections will block. The length of time the pool will block
- * is determined by {@link #getBlockWaitTime()}. By default the pool will block indefinitely and there is no guarantee
- * that waiting threads will be serviced in the order in which they made their request. This implementation should be
- * used when you need to control the <em>exact</em> number of connections that can be created. See {@link
- * AbstractConnectionPool}.
+ * is determined by {@link #getBlockWaitTime()}, or per request by {@link #getConnection(Duration)}. By default the pool
+ * will block indefinitely. Waiting threads are queued in the order in which they made their request, optionally ahead
+ * of that by priority, and connections that are returned to the pool are handed directly to the first waiter. Queue
+ * depth and wait times are reported by {@link #getWaiterCount()} and {@link #getWaitTimeHistogram()}. This
+ * implementation should be used when you need to control the <em>exact</em> number of connections that can be
+ * created. See {@link AbstractConnectionPool}.
  *
  * @author  Middleware Services
  */
 public class BlockingConnectionPool extends AbstractConnectionPool
 {
 
+  /** Threads waiting for a connection. */
+  private final PriorityBlockingQueue<Waiter> waiters = new PriorityBlockingQueue<>();
+
+  /** Arrival order of waiters. */
+  private final AtomicLong waiterSequence = new AtomicLong();
+
+  /** Largest number of concurrent waiters. */
+  private final AtomicInteger peakWaiterCount = new AtomicInteger();
+
+  /** Number of waits that timed out. */
+  private final LongAdder timeoutCount = new LongAdder();
+
+  /** Time spent waiting for connections. */
+  private final WaitTimeHistogram waitTimeHistogram = new WaitTimeHistogram();
+
   /** Duration to wait for an available connection. */
   private Duration blockWaitTime;
 
@@ -80,9 +104,52 @@ public class BlockingConnectionPool extends AbstractConnectionPool
   @Override
   public Connection getConnection()
     throws PoolException
+  {
+    return getConnection(blockWaitTime, 0);
+  }
+
+
+  /**
+   * Returns a connection from the pool, waiting no longer than the supplied time for one to become available.
+   *
+   * @param  timeout  maximum time to wait for an available connection, null waits indefinitely
+   *
+   * @return  connection
+   *
+   * @throws  PoolException  if this operation fails
+   * @throws  BlockingTimeoutException  if the timeout expires before a connection becomes available
+   * @throws  PoolInterruptedException  if the current thread is interrupted
+   */
+  public Connection getConnection(final Duration timeout)
+    throws PoolException
+  {
+    return getConnection(timeout, 0);
+  }
+
+
+  /**
+   * Returns a connection from the pool, waiting no longer than the supplied time for one to become available. When
+   * threads are waiting, returned connections are handed to the waiter with the highest priority; waiters with the
+   * same priority are served in the order they arrived.
+   *
+   * @param  timeout  maximum time to wait for an available connection, null waits indefinitely
+   * @param  priority  of this request relative to other waiters, higher values are served first
+   *
+   * @return  connection
+   *
+   * @throws  PoolException  if this operation fails
+   * @throws  BlockingTimeoutException  if the timeout expires before a connection becomes available
+   * @throws  PoolInterruptedException  if the current thread is interrupted
+   */
+  public Connection getConnection(final Duration timeout, final int priority)
+    throws PoolException
   {
     throwIfNotInitialized();
+    if (timeout != null && timeout.isNegative()) {
+      throw new IllegalArgumentException("Timeout cannot be negative");
+    }
 
+    final long startTime = System.nanoTime();
     PooledConnectionProxy pc = null;
     boolean create = false;
     logger.trace("waiting on pool lock for check out {}", poolLock.getQueueLength());
@@ -105,13 +172,14 @@ public class BlockingConnectionPool extends AbstractConnectionPool
         create = true;
       } else {
         logger.trace("pool is full, block until connection is available");
-        pc = blockAvailableConnection();
       }
     } finally {
       poolLock.unlock();
     }
 
-    if (create) {
+    if (pc == null && !create) {
+      pc = blockAvailableConnection(remaining(timeout, startTime), priority);
+    } else if (create) {
       // previous block determined a creation should occur
       // block here until create occurs without locking the whole pool
       // if the pool is already maxed or creates are failing,
@@ -122,7 +190,7 @@ public class BlockingConnectionPool extends AbstractConnectionPool
         poolLock.lock();
         try {
           logger.trace("create connection in pool of size {}", available.size() + active.size());
-          if (available.size() + active.size() == getPoolConfig().getMaxPoolSize()) {
+          if (available.size() + active.size() + pendingCount.get() >= getPoolConfig().getMaxPoolSize()) {
             logger.trace("pool at maximum size, create not allowed");
             b = false;
           }
@@ -136,12 +204,12 @@ public class BlockingConnectionPool extends AbstractConnectionPool
         checkOutLock.unlock();
       }
       if (pc == null) {
-        if (available.isEmpty() && active.isEmpty()) {
+        if (available.isEmpty() && active.isEmpty() && pendingCount.get() == 0) {
           logger.error("Could not service check out request");
           throw new PoolExhaustedException("Pool is empty and connection creation failed");
         }
         logger.debug("create failed, block until connection is available");
-        pc = blockAvailableConnection();
+        pc = blockAvailableConnection(remaining(timeout, startTime), priority);
       } else {
         logger.trace("created new active connection: {}", pc);
       }
@@ -154,6 +222,7 @@ public class BlockingConnectionPool extends AbstractConnectionPool
       throw new PoolExhaustedException("Pool is empty and connection creation failed");
     }
 
+    recordCheckOut(startTime);
     return createConnectionProxy(pc);
   }
 
@@ -183,7 +252,7 @@ public class BlockingConnectionPool extends AbstractConnectionPool
 
 
   /**
-   * This blocks until a connection can be acquired.
+   * This blocks until a connection can be acquired, waiting no longer than {@link #getBlockWaitTime()}.
    *
    * @return  connection from the pool
    *
@@ -194,54 +263,167 @@ public class BlockingConnectionPool extends AbstractConnectionPool
   protected PooledConnectionProxy blockAvailableConnection()
     throws PoolException
   {
+    return blockAvailableConnection(blockWaitTime, 0);
+  }
+
+
+  /**
+   * This blocks until a connection can be acquired. If no connection is available the current thread joins the waiter
+   * queue and is handed the first connection returned to the pool after all waiters ahead of it have been served.
+   *
+   * @param  timeout  maximum time to wait, null waits indefinitely
+   * @param  priority  of this request relative to other waiters, higher values are served first
+   *
+   * @return  connection from the pool
+   *
+   * @throws  PoolException  if this method fails
+   * @throws  BlockingTimeoutException  if the timeout expires before a connection becomes available
+   * @throws  PoolInterruptedException  if the current thread is interrupted
+   */
+  protected PooledConnectionProxy blockAvailableConnection(final Duration timeout, final int priority)
+    throws PoolException
+  {
+    final long startTime = System.nanoTime();
     PooledConnectionProxy pc = null;
+    Waiter waiter = null;
     logger.trace("waiting on pool lock for block available {}", poolLock.getQueueLength());
     poolLock.lock();
     try {
-      while (pc == null) {
-        logger.trace("available pool is empty, waiting...");
-        if (blockWaitTime != null) {
-          if (!poolNotEmpty.await(blockWaitTime.toMillis(), TimeUnit.MILLISECONDS)) {
-            logger.debug("block time exceeded, throwing exception");
-            throw new BlockingTimeoutException("Block time exceeded");
-          }
-        } else {
-          poolNotEmpty.await();
-        }
-        logger.trace("notified to continue...");
-        try {
-          pc = retrieveAvailableConnection();
-        } catch (NoSuchElementException e) {
-          logger.trace("notified to continue but pool was empty");
-        }
+      // connections are only placed in the available queue while holding the pool lock and waiters are drained after
+      // every such placement, so a waiter added here cannot miss a connection
+      if (!available.isEmpty()) {
+        pc = retrieveAvailableConnection();
+      } else {
+        waiter = new Waiter(priority, waiterSequence.getAndIncrement());
+        waiters.add(waiter);
+        peakWaiterCount.accumulateAndGet(waiters.size(), Math::max);
+      }
+    } finally {
+      poolLock.unlock();
+    }
+    if (waiter != null) {
+      logger.trace("available pool is empty, waiting...");
+      pc = awaitConnection(waiter, timeout, startTime);
+      logger.trace("received connection from waiter queue: {}", pc);
+    }
+    return pc;
+  }
+
+
+  /**
+   * Waits for a connection to be handed to the supplied waiter.
+   *
+   * @param  waiter  to wait on
+   * @param  timeout  maximum time to wait, null waits indefinitely
+   * @param  startTime  time the wait started in nanoseconds
+   *
+   * @return  connection handed to the waiter
+   *
+   * @throws  PoolException  if the wait times out or is interrupted
+   */
+  private PooledConnectionProxy awaitConnection(final Waiter waiter, final Duration timeout, final long startTime)
+    throws PoolException
+  {
+    PooledConnectionProxy pc;
+    try {
+      pc = timeout != null ? waiter.get(timeout.toNanos(), TimeUnit.NANOSECONDS) : waiter.get();
+    } catch (TimeoutException e) {
+      pc = abandonWait(waiter);
+      if (pc == null) {
+        logger.debug("block time exceeded, throwing exception");
+        timeoutCount.increment();
+        recordCheckOut(startTime);
+        throw new BlockingTimeoutException("Block time exceeded");
       }
     } catch (InterruptedException e) {
+      pc = abandonWait(waiter);
+      if (pc != null) {
+        returnActiveConnection(pc);
+      }
       logger.error("waiting for available connection interrupted", e);
       throw new PoolInterruptedException("Interrupted while waiting for an available connection", e);
-    } finally {
-      poolLock.unlock();
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Waiter completed exceptionally", e);
     }
+    waitTimeHistogram.record(System.nanoTime() - startTime);
     return pc;
   }
 
 
-  @Override
-  public void putConnection(final Connection c)
+  /**
+   * Removes the supplied waiter from the waiter queue. If a connection was handed to the waiter before it could be
+   * cancelled, that connection is returned.
+   *
+   * @param  waiter  to cancel
+   *
+   * @return  connection handed to the waiter or null
+   */
+  private PooledConnectionProxy abandonWait(final Waiter waiter)
   {
-    throwIfNotInitialized();
+    final boolean cancelled = waiter.cancel(false);
+    waiters.remove(waiter);
+    return cancelled ? null : waiter.join();
+  }
 
-    final PooledConnectionProxy pc = retrieveConnectionProxy(c);
-    final boolean valid = validateAndPassivateConnection(pc);
-    logger.trace("waiting on pool lock for check in {}", poolLock.getQueueLength());
+
+  /**
+   * Hands the supplied connection directly to the next waiter without locking the pool. The connection remains in the
+   * active queue.
+   *
+   * @param  pc  connection to hand off
+   *
+   * @return  whether a waiter accepted the connection
+   */
+  private boolean handOff(final PooledConnectionProxy pc)
+  {
+    boolean handed = false;
+    Waiter waiter = waiters.poll();
+    while (!handed && waiter != null) {
+      handed = waiter.complete(pc);
+      if (!handed) {
+        waiter = waiters.poll();
+      }
+    }
+    if (handed) {
+      pc.getPooledConnectionStatistics().addActiveStat();
+    }
+    return handed;
+  }
+
+
+  /** Hands available connections to waiters until either queue is empty. Must be invoked holding the pool lock. */
+  private void drainWaiters()
+  {
+    Waiter waiter = available.isEmpty() ? null : waiters.poll();
+    while (waiter != null) {
+      final PooledConnectionProxy pc = available.remove();
+      active.add(pc);
+      if (waiter.complete(pc)) {
+        pc.getPooledConnectionStatistics().addActiveStat();
+        logger.trace("handed off available connection: {}", pc);
+      } else {
+        active.remove(pc);
+        available.add(pc);
+      }
+      waiter = available.isEmpty() ? null : waiters.poll();
+    }
+  }
+
+
+  /**
+   * Moves the supplied connection from the active queue to the available queue and serves any waiters.
+   *
+   * @param  pc  connection to return
+   */
+  private void returnActiveConnection(final PooledConnectionProxy pc)
+  {
     poolLock.lock();
     try {
-      if (!valid) {
-        removeAvailableAndActiveConnection(pc);
-      } else if (active.remove(pc)) {
+      if (active.remove(pc)) {
         available.add(pc);
         pc.getPooledConnectionStatistics().addAvailableStat();
         logger.trace("returned active connection: {}", pc);
-        poolNotEmpty.signal();
+        drainWaiters();
       } else if (available.contains(pc)) {
         logger.warn("returned available connection: {}", pc);
       } else {
@@ -251,4 +433,142 @@ public class BlockingConnectionPool extends AbstractConnectionPool
       poolLock.unlock();
     }
   }
+
+
+  @Override
+  protected void addAvailableConnection(final PooledConnectionProxy pc)
+  {
+    poolLock.lock();
+    try {
+      super.addAvailableConnection(pc);
+      drainWaiters();
+    } finally {
+      poolLock.unlock();
+    }
+  }
+
+
+  @Override
+  public void putConnection(final Connection c)
+  {
+    throwIfNotInitialized();
+
+    final PooledConnectionProxy pc = retrieveConnectionProxy(c);
+    recordCheckIn(pc);
+    final boolean valid = validateAndPassivateConnection(pc);
+    if (valid && handOff(pc)) {
+      logger.trace("handed off active connection: {}", pc);
+    } else if (valid) {
+      logger.trace("waiting on pool lock for check in {}", poolLock.getQueueLength());
+      returnActiveConnection(pc);
+    } else {
+      logger.trace("waiting on pool lock for check in {}", poolLock.getQueueLength());
+      poolLock.lock();
+      try {
+        removeAvailableAndActiveConnection(pc);
+      } finally {
+        poolLock.unlock();
+      }
+    }
+  }
+
+
+  /**
+   * Returns the number of threads waiting for a connection.
+   *
+   * @return  waiter count
+   */
+  public int getWaiterCount()
+  {
+    return waiters.size();
+  }
+
+
+  /**
+   * Returns the largest number of threads that have waited for a connection at the same time.
+   *
+   * @return  peak waiter count
+   */
+  public int getPeakWaiterCount()
+  {
+    return peakWaiterCount.get();
+  }
+
+
+  /**
+   * Returns the number of waits that ended because the timeout expired.
+   *
+   * @return  timeout count
+   */
+  public long getTimeoutCount()
+  {
+    return timeoutCount.sum();
+  }
+
+
+  /**
+   * Returns the time spent by threads that waited for and received a connection. Check outs that did not wait are not
+   * recorded.
+   *
+   * @return  wait time histogram
+   */
+  public WaitTimeHistogram getWaitTimeHistogram()
+  {
+    return waitTimeHistogram;
+  }
+
+
+  /**
+   * Returns the portion of the supplied timeout that remains.
+   *
+   * @param  timeout  total time allowed, may be null
+   * @param  startTime  time the timeout began in nanoseconds
+   *
+   * @return  remaining time, never negative, or null if timeout is null
+   */
+  protected static Duration remaining(final Duration timeout, final long startTime)
+  {
+    if (timeout == null) {
+      return null;
+    }
+    final long left = timeout.toNanos() - (System.nanoTime() - startTime);
+    return Duration.ofNanos(Math.max(0, left));
+  }
+
+
+  /**
+   * Thread waiting for a connection. Waiters are ordered by priority, highest first, and then by arrival. Completing
+   * the waiter hands it a connection; a waiter that gives up is cancelled so that a concurrent hand off fails and moves
+   * on to the next waiter.
+   */
+  private static final class Waiter extends CompletableFuture<PooledConnectionProxy> implements Comparable<Waiter>
+  {
+
+    /** Priority of the request. */
+    private final int priority;
+
+    /** Arrival order of the request. */
+    private final long sequence;
+
+
+    /**
+     * Creates a new waiter.
+     *
+     * @param  p  priority
+     * @param  seq  arrival order
+     */
+    Waiter(final int p, final long seq)
+    {
+      priority = p;
+      sequence = seq;
+    }
+
+
+    @Override
+    public int compareTo(final Waiter w)
+    {
+      final int c = Integer.compare(w.priority, priority);
+      return c != 0 ? c : Long.compare(sequence, w.sequence);
+    }
+  }
 }
@@ -33,6 +33,24 @@ public class PoolConfig extends AbstractConfig
   /** Default per connection validate timeout, value is 5 seconds. */
   public static final Duration DEFAULT_VALIDATE_TIMEOUT = Duration.ofSeconds(5);
 
+  /** Default grow parallelism, value is {@value}. */
+  public static final int DEFAULT_GROW_PARALLELISM = 4;
+
+  /** Default adaptive sizing, value is {@value}. */
+  public static final boolean DEFAULT_ADAPTIVE_SIZING = false;
+
+  /** Default sizing period, value is 1 second. */
+  public static final Duration DEFAULT_SIZING_PERIOD = Duration.ofSeconds(1);
+
+  /** Default sizing wait threshold, value is 10 milliseconds. */
+  public static final Duration DEFAULT_SIZING_WAIT_THRESHOLD = Duration.ofMillis(10);
+
+  /** Default sizing headroom, value is {@value}. */
+  public static final double DEFAULT_SIZING_HEADROOM = 0.25;
+
+  /** Default sizing shrink delay, value is 1 minute. */
+  public static final Duration DEFAULT_SIZING_SHRINK_DELAY = Duration.ofMinutes(1);
+
   /** Minimum pool size. */
   private int minPoolSize = DEFAULT_MIN_POOL_SIZE;
 
@@ -54,6 +72,24 @@ public class PoolConfig extends AbstractConfig
   /** Maximum length of time a connection validation should block. */
   private Duration validateTimeout = DEFAULT_VALIDATE_TIMEOUT;
 
+  /** Maximum number of connections created concurrently when the pool grows. */
+  private int growParallelism = DEFAULT_GROW_PARALLELISM;
+
+  /** Whether the pool size should adapt to demand. */
+  private boolean adaptiveSizing = DEFAULT_ADAPTIVE_SIZING;
+
+  /** Time between pool sizing decisions. */
+  private Duration sizingPeriod = DEFAULT_SIZING_PERIOD;
+
+  /** Mean check out wait time above which the pool grows. */
+  private Duration sizingWaitThreshold = DEFAULT_SIZING_WAIT_THRESHOLD;
+
+  /** Fraction of estimated demand kept available as spare connections. */
+  private double sizingHeadroom = DEFAULT_SIZING_HEADROOM;
+
+  /** Time demand must stay below the pool size before the pool shrinks. */
+  private Duration sizingShrinkDelay = DEFAULT_SIZING_SHRINK_DELAY;
+
 
   /**
    * Returns the min pool size. Default value is {@link #DEFAULT_MIN_POOL_SIZE}. This value represents the size of the
@@ -235,13 +271,179 @@ public class PoolConfig extends AbstractConfig
   }
 
 
+  /**
+   * Returns the maximum number of connections created concurrently when the pool grows. Connections are created outside
+   * the pool lock, so check outs are not blocked while the pool grows.
+   *
+   * @return  grow parallelism
+   */
+  public int getGrowParallelism()
+  {
+    return growParallelism;
+  }
+
+
+  /**
+   * Sets the maximum number of connections created concurrently when the pool grows.
+   *
+   * @param  i  grow parallelism
+   */
+  public void setGrowParallelism(final int i)
+  {
+    checkImmutable();
+    if (i < 1) {
+      throw new IllegalArgumentException("Grow parallelism must be greater than zero");
+    }
+    logger.trace("setting growParallelism: {}", i);
+    growParallelism = i;
+  }
+
+
+  /**
+   * Returns whether the pool size adapts to demand. When enabled the pool periodically estimates the number of
+   * connections needed from check out wait time, utilization and connection hold time, creates connections ahead of
+   * demand and releases idle connections once demand subsides. The pool size always remains between {@link
+   * #getMinPoolSize()} and {@link #getMaxPoolSize()}.
+   *
+   * @return  whether adaptive sizing is enabled
+   */
+  public boolean isAdaptiveSizing()
+  {
+    return adaptiveSizing;
+  }
+
+
+  /**
+   * Sets whether the pool size adapts to demand.
+   *
+   * @param  b  whether adaptive sizing is enabled
+   */
+  public void setAdaptiveSizing(final boolean b)
+  {
+    checkImmutable();
+    logger.trace("setting adaptiveSizing: {}", b);
+    adaptiveSizing = b;
+  }
+
+
+  /**
+   * Returns the time between pool sizing decisions.
+   *
+   * @return  sizing period
+   */
+  public Duration getSizingPeriod()
+  {
+    return sizingPeriod;
+  }
+
+
+  /**
+   * Sets the time between pool sizing decisions.
+   *
+   * @param  time  between pool sizing decisions
+   */
+  public void setSizingPeriod(final Duration time)
+  {
+    checkImmutable();
+    if (time == null || time.isNegative() || time.isZero()) {
+      throw new IllegalArgumentException("Sizing period must be greater than zero");
+    }
+    logger.trace("setting sizingPeriod: {}", time);
+    sizingPeriod = time;
+  }
+
+
+  /**
+   * Returns the mean check out wait time above which the pool grows regardless of the estimated demand.
+   *
+   * @return  sizing wait threshold
+   */
+  public Duration getSizingWaitThreshold()
+  {
+    return sizingWaitThreshold;
+  }
+
+
+  /**
+   * Sets the mean check out wait time above which the pool grows regardless of the estimated demand.
+   *
+   * @param  time  sizing wait threshold
+   */
+  public void setSizingWaitThreshold(final Duration time)
+  {
+    checkImmutable();
+    if (time == null || time.isNegative()) {
+      throw new IllegalArgumentException("Sizing wait threshold cannot be null or negative");
+    }
+    logger.trace("setting sizingWaitThreshold: {}", time);
+    sizingWaitThreshold = time;
+  }
+
+
+  /**
+   * Returns the fraction of the estimated demand that is kept as spare connections. A value of 0.25 sizes the pool
+   * 25% above the number of connections that are expected to be in use.
+   *
+   * @return  sizing headroom
+   */
+  public double getSizingHeadroom()
+  {
+    return sizingHeadroom;
+  }
+
+
+  /**
+   * Sets the fraction of the estimated demand that is kept as spare connections.
+   *
+   * @param  d  sizing headroom
+   */
+  public void setSizingHeadroom(final double d)
+  {
+    checkImmutable();
+    if (d < 0) {
+      throw new IllegalArgumentException("Sizing headroom cannot be negative");
+    }
+    logger.trace("setting sizingHeadroom: {}", d);
+    sizingHeadroom = d;
+  }
+
+
+  /**
+   * Returns the time the estimated demand must stay below the pool size before the pool shrinks. Once this time has
+   * elapsed the pool releases one idle connection per sizing period.
+   *
+   * @return  sizing shrink delay
+   */
+  public Duration getSizingShrinkDelay()
+  {
+    return sizingShrinkDelay;
+  }
+
+
+  /**
+   * Sets the time the estimated demand must stay below the pool size before the pool shrinks.
+   *
+   * @param  time  sizing shrink delay
+   */
+  public void setSizingShrinkDelay(final Duration time)
+  {
+    checkImmutable();
+    if (time == null || time.isNegative()) {
+      throw new IllegalArgumentException("Sizing shrink delay cannot be null or negative");
+    }
+    logger.trace("setting sizingShrinkDelay: {}", time);
+    sizingShrinkDelay = time;
+  }
+
+
   @Override
   public String toString()
   {
     return
       String.format(
         "[%s@%d::minPoolSize=%s, maxPoolSize=%s, validateOnCheckIn=%s, validateOnCheckOut=%s, " +
-        "validatePeriodically=%s, validatePeriod=%s, validateTimeout=%s]",
+        "validatePeriodically=%s, validatePeriod=%s, validateTimeout=%s, growParallelism=%s, adaptiveSizing=%s, " +
+        "sizingPeriod=%s, sizingWaitThreshold=%s, sizingHeadroom=%s, sizingShrinkDelay=%s]",
         getClass().getName(),
         hashCode(),
         minPoolSize,
@@ -250,6 +452,12 @@ public class PoolConfig extends AbstractConfig
         validateOnCheckOut,
         validatePeriodically,
         validatePeriod,
-        validateTimeout);
+        validateTimeout,
+        growParallelism,
+        adaptiveSizing,
+        sizingPeriod,
+        sizingWaitThreshold,
+        sizingHeadroom,
+        sizingShrinkDelay);
   }
 }
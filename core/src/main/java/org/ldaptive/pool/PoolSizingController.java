@@ -0,0 +1,380 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.pool;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decides the size of a connection pool from observed demand. Check outs report how long they waited and how many
+ * connections were active, check ins report how long the connection was held. Each call to {@link #evaluate(int, int)}
+ * closes the current observation window and estimates the number of connections in use from the check out rate and the
+ * mean hold time (Little's law), never less than the peak number of active connections. The estimate is increased by
+ * {@link PoolConfig#getSizingHeadroom()}; if check outs waited longer than {@link PoolConfig#getSizingWaitThreshold()}
+ * the pool grows by at least the headroom regardless of the estimate. The pool shrinks one connection per evaluation,
+ * and only after the estimate has stayed below the pool size for {@link PoolConfig#getSizingShrinkDelay()}.
+ *
+ * @author  Middleware Services
+ */
+public class PoolSizingController
+{
+
+  /** Nanoseconds per second. */
+  private static final double NANOS_PER_SECOND = 1_000_000_000d;
+
+  /** Logger for this class. */
+  protected final Logger logger = LoggerFactory.getLogger(getClass());
+
+  /** Pool configuration. */
+  private final PoolConfig config;
+
+  /** Number of check outs in the current window. */
+  private final LongAdder checkOutCount = new LongAdder();
+
+  /** Total check out wait time in the current window. */
+  private final LongAdder checkOutWait = new LongAdder();
+
+  /** Number of check ins in the current window. */
+  private final LongAdder checkInCount = new LongAdder();
+
+  /** Total connection hold time in the current window. */
+  private final LongAdder checkInHold = new LongAdder();
+
+  /** Peak number of active connections in the current window. */
+  private final AtomicInteger peakActive = new AtomicInteger();
+
+  /** Start of the current window. */
+  private long windowStart = System.nanoTime();
+
+  /** Mean hold time of the last window that had check ins. */
+  private long meanHoldTime;
+
+  /** Time the estimate first fell below the pool size, zero if it has not. */
+  private long belowSince;
+
+  /** Most recent decision. */
+  private volatile Decision lastDecision;
+
+
+  /**
+   * Creates a new pool sizing controller.
+   *
+   * @param  pc  pool configuration
+   */
+  public PoolSizingController(final PoolConfig pc)
+  {
+    config = pc;
+  }
+
+
+  /**
+   * Records a completed check out.
+   *
+   * @param  waitTime  time the check out waited in nanoseconds
+   * @param  activeCount  number of active connections after the check out
+   */
+  public void checkOutCompleted(final long waitTime, final int activeCount)
+  {
+    checkOutCount.increment();
+    checkOutWait.add(waitTime);
+    peakActive.accumulateAndGet(activeCount, Math::max);
+  }
+
+
+  /**
+   * Records a completed check in.
+   *
+   * @param  holdTime  time the connection was checked out in nanoseconds
+   */
+  public void checkInCompleted(final long holdTime)
+  {
+    checkInCount.increment();
+    checkInHold.add(holdTime);
+  }
+
+
+  /**
+   * Returns the most recent decision.
+   *
+   * @return  last decision or null if {@link #evaluate(int, int)} has not been invoked
+   */
+  public Decision getLastDecision()
+  {
+    return lastDecision;
+  }
+
+
+  /**
+   * Closes the current observation window and decides the pool size.
+   *
+   * @param  activeCount  number of active connections
+   * @param  availableCount  number of available connections, including connections being created
+   *
+   * @return  sizing decision
+   */
+  public Decision evaluate(final int activeCount, final int availableCount)
+  {
+    return evaluate(activeCount, availableCount, System.nanoTime());
+  }
+
+
+  /**
+   * Closes the current observation window at the supplied time and decides the pool size.
+   *
+   * @param  activeCount  number of active connections
+   * @param  availableCount  number of available connections, including connections being created
+   * @param  now  current time in nanoseconds, see {@link System#nanoTime()}
+   *
+   * @return  sizing decision
+   */
+  public synchronized Decision evaluate(final int activeCount, final int availableCount, final long now)
+  {
+    final int size = activeCount + availableCount;
+    final long elapsed = Math.max(1, now - windowStart);
+    final long checkOuts = checkOutCount.sumThenReset();
+    final long waits = checkOutWait.sumThenReset();
+    final long checkIns = checkInCount.sumThenReset();
+    final long holds = checkInHold.sumThenReset();
+    final int peak = Math.max(peakActive.getAndSet(activeCount), activeCount);
+    windowStart = now;
+
+    final long meanWaitTime = checkOuts > 0 ? waits / checkOuts : 0;
+    if (checkIns > 0) {
+      meanHoldTime = holds / checkIns;
+    }
+    final double throughput = checkOuts * NANOS_PER_SECOND / elapsed;
+    final double demand = Math.max(throughput * meanHoldTime / NANOS_PER_SECOND, peak);
+    int needed = (int) Math.ceil(demand * (1 + config.getSizingHeadroom()));
+    if (meanWaitTime > config.getSizingWaitThreshold().toNanos()) {
+      needed = Math.max(needed, size + Math.max(1, (int) Math.ceil(size * config.getSizingHeadroom())));
+    }
+    int target = Math.max(config.getMinPoolSize(), Math.min(config.getMaxPoolSize(), needed));
+
+    final Action action;
+    if (target > size) {
+      action = Action.GROW;
+      belowSince = 0;
+    } else if (target < size) {
+      if (belowSince == 0) {
+        belowSince = now;
+      }
+      if (now - belowSince >= config.getSizingShrinkDelay().toNanos()) {
+        action = Action.SHRINK;
+        target = size - 1;
+      } else {
+        action = Action.HOLD;
+        target = size;
+      }
+    } else {
+      action = Action.HOLD;
+      belowSince = 0;
+    }
+    lastDecision = new Decision(
+      action,
+      size,
+      target,
+      checkOuts,
+      Duration.ofNanos(meanWaitTime),
+      Duration.ofNanos(meanHoldTime),
+      size > 0 ? (double) peak / size : 0,
+      throughput);
+    logger.trace("evaluated {}", lastDecision);
+    return lastDecision;
+  }
+
+
+  @Override
+  public String toString()
+  {
+    return String.format("[%s@%d::lastDecision=%s]", getClass().getName(), hashCode(), lastDecision);
+  }
+
+
+  /** Action taken by a sizing decision. */
+  public enum Action {
+
+    /** Create connections ahead of demand. */
+    GROW,
+
+    /** Release an idle connection. */
+    SHRINK,
+
+    /** Keep the current size. */
+    HOLD
+  }
+
+
+  /** Outcome of a sizing evaluation along with the observations that produced it. */
+  public static final class Decision
+  {
+
+    /** Action to take. */
+    private final Action action;
+
+    /** Pool size when the decision was made. */
+    private final int currentSize;
+
+    /** Pool size to reach. */
+    private final int targetSize;
+
+    /** Number of check outs in the window. */
+    private final long checkOutCount;
+
+    /** Mean check out wait time. */
+    private final Duration meanWaitTime;
+
+    /** Mean time connections were held. */
+    private final Duration meanHoldTime;
+
+    /** Peak active connections divided by pool size. */
+    private final double utilization;
+
+    /** Check outs per second. */
+    private final double throughput;
+
+
+    // CheckStyle:ParameterNumber OFF
+    /**
+     * Creates a new decision.
+     *
+     * @param  a  action to take
+     * @param  current  pool size when the decision was made
+     * @param  target  pool size to reach
+     * @param  count  number of check outs in the window
+     * @param  wait  mean check out wait time
+     * @param  hold  mean time connections were held
+     * @param  util  peak active connections divided by pool size
+     * @param  rate  check outs per second
+     */
+    public Decision(
+      final Action a,
+      final int current,
+      final int target,
+      final long count,
+      final Duration wait,
+      final Duration hold,
+      final double util,
+      final double rate)
+    {
+      action = a;
+      currentSize = current;
+      targetSize = target;
+      checkOutCount = count;
+      meanWaitTime = wait;
+      meanHoldTime = hold;
+      utilization = util;
+      throughput = rate;
+    }
+    // CheckStyle:ParameterNumber ON
+
+
+    /**
+     * Returns the action to take.
+     *
+     * @return  action
+     */
+    public Action getAction()
+    {
+      return action;
+    }
+
+
+    /**
+     * Returns the pool size when the decision was made.
+     *
+     * @return  current size
+     */
+    public int getCurrentSize()
+    {
+      return currentSize;
+    }
+
+
+    /**
+     * Returns the pool size to reach.
+     *
+     * @return  target size
+     */
+    public int getTargetSize()
+    {
+      return targetSize;
+    }
+
+
+    /**
+     * Returns the number of check outs observed.
+     *
+     * @return  check out count
+     */
+    public long getCheckOutCount()
+    {
+      return checkOutCount;
+    }
+
+
+    /**
+     * Returns the mean check out wait time.
+     *
+     * @return  mean wait time
+     */
+    public Duration getMeanWaitTime()
+    {
+      return meanWaitTime;
+    }
+
+
+    /**
+     * Returns the mean time connections were held.
+     *
+     * @return  mean hold time
+     */
+    public Duration getMeanHoldTime()
+    {
+      return meanHoldTime;
+    }
+
+
+    /**
+     * Returns the peak number of active connections divided by the pool size.
+     *
+     * @return  utilization
+     */
+    public double getUtilization()
+    {
+      return utilization;
+    }
+
+
+    /**
+     * Returns the number of check outs per second.
+     *
+     * @return  throughput
+     */
+    public double getThroughput()
+    {
+      return throughput;
+    }
+
+
+    @Override
+    public String toString()
+    {
+      return
+        String.format(
+          "[%s@%d::action=%s, currentSize=%s, targetSize=%s, checkOutCount=%s, meanWaitTime=%s, meanHoldTime=%s, " +
+          "utilization=%.2f, throughput=%.2f]",
+          getClass().getName(),
+          hashCode(),
+          action,
+          currentSize,
+          targetSize,
+          checkOutCount,
+          meanWaitTime,
+          meanHoldTime,
+          utilization,
+          throughput);
+    }
+  }
+}
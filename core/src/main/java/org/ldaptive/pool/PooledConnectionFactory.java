@@ -1,12 +1,15 @@
 /* See LICENSE for licensing and NOTICE for copyright. */
 package org.ldaptive.pool;
 
+import java.time.Duration;
 import org.ldaptive.Connection;
 import org.ldaptive.ConnectionFactory;
 import org.ldaptive.LdapException;
 
 /**
- * Leverages a pool to obtain connections for performing ldap operations.
+ * Leverages a pool to obtain connections for performing ldap operations. If an affinity idle time is set, connections
+ * closed by a thread stay bound to that thread and are reused by its next check out, see {@link
+ * ThreadConnectionCache}.
  *
  * @author  Middleware Services
  */
@@ -14,7 +17,13 @@ public class PooledConnectionFactory implements ConnectionFactory
 {
 
   /** Connection pool. */
-  private ConnectionPool pool;
+  private volatile ConnectionPool pool;
+
+  /** Time a closed connection stays bound to the thread that closed it. */
+  private volatile Duration affinityIdleTime;
+
+  /** Connections bound to threads, null if thread affinity is disabled or no connection has been requested. */
+  private volatile ThreadConnectionCache threadCache;
 
 
   /** Default constructor. */
@@ -48,9 +57,69 @@ public class PooledConnectionFactory implements ConnectionFactory
    *
    * @param  cp  connection pool
    */
-  public void setConnectionPool(final ConnectionPool cp)
+  public synchronized void setConnectionPool(final ConnectionPool cp)
   {
     pool = cp;
+    resetThreadCache();
+  }
+
+
+  /**
+   * Returns the time a closed connection stays bound to the thread that closed it. Null, the default, disables thread
+   * affinity.
+   *
+   * @return  affinity idle time
+   */
+  public Duration getAffinityIdleTime()
+  {
+    return affinityIdleTime;
+  }
+
+
+  /**
+   * Sets the time a closed connection stays bound to the thread that closed it. Null disables thread affinity.
+   *
+   * @param  time  affinity idle time
+   */
+  public synchronized void setAffinityIdleTime(final Duration time)
+  {
+    if (time != null && (time.isNegative() || time.isZero())) {
+      throw new IllegalArgumentException("Affinity idle time must be greater than zero");
+    }
+    affinityIdleTime = time;
+    resetThreadCache();
+  }
+
+
+  /**
+   * Returns the cache of connections bound to threads, creating it on first use. Only creation is synchronized, so
+   * checking out connections does not contend on this factory.
+   *
+   * @return  thread connection cache or null if thread affinity is disabled
+   */
+  public ThreadConnectionCache getThreadConnectionCache()
+  {
+    ThreadConnectionCache cache = threadCache;
+    if (cache == null && affinityIdleTime != null && pool != null) {
+      synchronized (this) {
+        cache = threadCache;
+        if (cache == null && affinityIdleTime != null && pool != null) {
+          cache = new ThreadConnectionCache(pool, affinityIdleTime);
+          threadCache = cache;
+        }
+      }
+    }
+    return cache;
+  }
+
+
+  /** Closes the thread connection cache so that it is recreated with the current properties. */
+  private void resetThreadCache()
+  {
+    if (threadCache != null) {
+      threadCache.close();
+      threadCache = null;
+    }
   }
 
 
@@ -65,13 +134,32 @@ public class PooledConnectionFactory implements ConnectionFactory
   public Connection getConnection()
     throws LdapException
   {
-    return pool.getConnection();
+    final ThreadConnectionCache cache = affinityIdleTime != null ? getThreadConnectionCache() : null;
+    return cache != null ? cache.getConnection() : pool.getConnection();
+  }
+
+
+  /**
+   * Returns the connection bound to the current thread, if any, to the pool. Invoke at the end of a unit of work, such
+   * as a request, when thread affinity is enabled.
+   */
+  public void releaseThreadConnection()
+  {
+    final ThreadConnectionCache cache = affinityIdleTime != null ? getThreadConnectionCache() : null;
+    if (cache != null) {
+      cache.release();
+    }
   }
 
 
   @Override
   public String toString()
   {
-    return String.format("[%s@%d::pool=%s]", getClass().getName(), hashCode(), pool);
+    return String.format(
+      "[%s@%d::pool=%s, affinityIdleTime=%s]",
+      getClass().getName(),
+      hashCode(),
+      pool,
+      affinityIdleTime);
   }
 }
@@ -1,6 +1,7 @@
 /* See LICENSE for licensing and NOTICE for copyright. */
 package org.ldaptive.pool;
 
+import java.time.Duration;
 import java.util.NoSuchElementException;
 import org.ldaptive.Connection;
 import org.ldaptive.DefaultConnectionFactory;
@@ -46,11 +47,15 @@ public class SoftLimitConnectionPool extends BlockingConnectionPool
 
 
   @Override
-  public Connection getConnection()
+  public Connection getConnection(final Duration timeout, final int priority)
     throws PoolException
   {
     throwIfNotInitialized();
+    if (timeout != null && timeout.isNegative()) {
+      throw new IllegalArgumentException("Timeout cannot be negative");
+    }
 
+    final long startTime = System.nanoTime();
     PooledConnectionProxy pc = null;
     logger.trace("waiting on pool lock for check out {}", poolLock.getQueueLength());
     poolLock.lock();
@@ -74,12 +79,12 @@ public class SoftLimitConnectionPool extends BlockingConnectionPool
       // no connection was available, create a new one
       pc = createActiveConnection();
       if (pc == null) {
-        if (available.isEmpty() && active.isEmpty()) {
+        if (available.isEmpty() && active.isEmpty() && pendingCount.get() == 0) {
           logger.error("Could not service check out request");
           throw new PoolExhaustedException("Pool is empty and connection creation failed");
         }
         logger.debug("create failed, block until a connection is available");
-        pc = blockAvailableConnection();
+        pc = blockAvailableConnection(remaining(timeout, startTime), priority);
       } else {
         logger.trace("created new active connection: {}", pc);
       }
@@ -92,6 +97,7 @@ public class SoftLimitConnectionPool extends BlockingConnectionPool
       throw new PoolExhaustedException("Pool is empty and connection creation failed");
     }
 
+    recordCheckOut(startTime);
     return createConnectionProxy(pc);
   }
 }
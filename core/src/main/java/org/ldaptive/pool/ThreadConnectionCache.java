@@ -0,0 +1,546 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.pool;
+
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import org.ldaptive.BindRequest;
+import org.ldaptive.Connection;
+import org.ldaptive.ConnectionConfig;
+import org.ldaptive.LdapException;
+import org.ldaptive.Response;
+import org.ldaptive.control.RequestControl;
+import org.ldaptive.provider.ProviderConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the most recently closed pooled connection bound to the thread that closed it. The next check out on that
+ * thread reuses the connection without going through the pool, which avoids the pool lock, proxy creation and check
+ * out validation. The pool's passivator and activator are still invoked before a bound connection is reused, so
+ * connection state such as the bound identity is reset as it would be by the pool.
+ *
+ * <p>Bound connections remain active in the pool. A connection is handed back to the pool when it has been idle
+ * longer than the idle time, when the owning thread exits, when {@link #release()} is invoked on the owning thread or
+ * when this cache is closed. Applications that serve requests from a thread pool should invoke {@link #release()} at
+ * the end of each request so that connections are not held by idle threads.</p>
+ *
+ * @author  Middleware Services
+ */
+public class ThreadConnectionCache
+{
+
+  /** Logger for this class. */
+  protected final Logger logger = LoggerFactory.getLogger(getClass());
+
+  /** Pool that supplies connections. */
+  private final ConnectionPool pool;
+
+  /** Time a connection may stay bound to a thread without being used. */
+  private final Duration idleTime;
+
+  /** Slot of the current thread. */
+  private final ThreadLocal<Slot> threadSlot = ThreadLocal.withInitial(this::createSlot);
+
+  /** Slots of every thread that has used this cache. */
+  private final Set<Slot> slots = ConcurrentHashMap.newKeySet();
+
+  /** Number of check outs served by a bound connection. */
+  private final LongAdder hitCount = new LongAdder();
+
+  /** Number of check outs served by the pool. */
+  private final LongAdder missCount = new LongAdder();
+
+  /** Whether this cache has been closed. */
+  private final AtomicBoolean closed = new AtomicBoolean();
+
+  /** Hands back idle connections and connections of threads that have exited. */
+  private ScheduledExecutorService reaper;
+
+
+  /**
+   * Creates a new thread connection cache.
+   *
+   * @param  cp  connection pool
+   * @param  time  that a connection may stay bound to a thread without being used
+   */
+  public ThreadConnectionCache(final ConnectionPool cp, final Duration time)
+  {
+    if (cp == null) {
+      throw new IllegalArgumentException("Connection pool cannot be null");
+    }
+    if (time == null || time.isNegative() || time.isZero()) {
+      throw new IllegalArgumentException("Idle time must be greater than zero");
+    }
+    pool = cp;
+    idleTime = time;
+  }
+
+
+  /**
+   * Returns the connection pool.
+   *
+   * @return  connection pool
+   */
+  public ConnectionPool getConnectionPool()
+  {
+    return pool;
+  }
+
+
+  /**
+   * Returns the time a connection may stay bound to a thread without being used.
+   *
+   * @return  idle time
+   */
+  public Duration getIdleTime()
+  {
+    return idleTime;
+  }
+
+
+  /**
+   * Returns the connection bound to the current thread if it is still usable, otherwise a connection from the pool.
+   *
+   * @return  connection
+   *
+   * @throws  PoolException  if a connection cannot be retrieved from the pool
+   */
+  public Connection getConnection()
+    throws PoolException
+  {
+    if (closed.get()) {
+      throw new IllegalStateException("Thread connection cache has been closed");
+    }
+    final Slot slot = threadSlot.get();
+    Connection conn = reuse(slot.bound.getAndSet(null));
+    if (conn != null) {
+      hitCount.increment();
+    } else {
+      conn = pool.getConnection();
+      missCount.increment();
+    }
+    return new BoundConnection(conn, slot);
+  }
+
+
+  /**
+   * Prepares a connection that was bound to a thread for reuse. Connections that cannot be reused are returned to the
+   * pool.
+   *
+   * @param  bc  bound connection, may be null
+   *
+   * @return  connection ready for use or null
+   */
+  private Connection reuse(final Binding bc)
+  {
+    Connection conn = null;
+    if (bc != null) {
+      if (bc.isExpired(System.nanoTime()) || !bc.connection.isOpen()) {
+        logger.debug("bound connection is no longer usable: {}", bc.connection);
+        bc.connection.close();
+      } else if (!passivate(bc.connection) || !activate(bc.connection)) {
+        logger.warn("bound connection failed passivation or activation: {}", bc.connection);
+        bc.connection.close();
+      } else {
+        conn = bc.connection;
+      }
+    }
+    return conn;
+  }
+
+
+  /**
+   * Invokes the pool passivator on the supplied connection.
+   *
+   * @param  conn  to passivate
+   *
+   * @return  whether passivation succeeded
+   */
+  private boolean passivate(final Connection conn)
+  {
+    final Passivator<Connection> passivator = pool.getPassivator();
+    return passivator == null || passivator.passivate(conn);
+  }
+
+
+  /**
+   * Invokes the pool activator on the supplied connection.
+   *
+   * @param  conn  to activate
+   *
+   * @return  whether activation succeeded
+   */
+  private boolean activate(final Connection conn)
+  {
+    final Activator<Connection> activator = pool.getActivator();
+    return activator == null || activator.activate(conn);
+  }
+
+
+  /**
+   * Binds the supplied connection to the slot. A connection already bound to the slot is returned to the pool.
+   *
+   * @param  conn  pooled connection that was closed
+   * @param  slot  of the thread that closed the connection
+   */
+  private void bind(final Connection conn, final Slot slot)
+  {
+    if (closed.get() || !conn.isOpen() || slot.isOwnerDead()) {
+      conn.close();
+    } else {
+      final Binding previous = slot.bound.getAndSet(new Binding(conn, System.nanoTime() + idleTime.toNanos()));
+      if (previous != null) {
+        previous.connection.close();
+      }
+      startReaper();
+      // the cache may have been closed while binding
+      if (closed.get()) {
+        slot.release();
+      }
+    }
+  }
+
+
+  /** Starts the reaper if it is not running. */
+  private synchronized void startReaper()
+  {
+    if (reaper == null && !closed.get()) {
+      reaper = Executors.newSingleThreadScheduledExecutor(
+        r -> {
+          final Thread t = new Thread(r, "ldaptive-" + ThreadConnectionCache.class.getSimpleName() + "@" + hashCode());
+          t.setDaemon(true);
+          return t;
+        });
+      final long period = Math.max(1, idleTime.toMillis() / 2);
+      reaper.scheduleWithFixedDelay(this::releaseIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+  }
+
+
+  /**
+   * Returns connections that have been idle longer than the idle time, or whose thread has exited, to the pool.
+   *
+   * @return  number of connections returned
+   */
+  public int releaseIdle()
+  {
+    int count = 0;
+    final long now = System.nanoTime();
+    for (Slot slot : slots) {
+      final Binding bc = slot.bound.get();
+      final boolean dead = slot.isOwnerDead();
+      if (bc != null && (dead || bc.isExpired(now)) && slot.bound.compareAndSet(bc, null)) {
+        logger.trace("returning idle connection {} to the pool", bc.connection);
+        closeQuietly(bc.connection);
+        count++;
+      }
+      if (dead) {
+        slots.remove(slot);
+      }
+    }
+    return count;
+  }
+
+
+  /** Returns the connection bound to the current thread, if any, to the pool. */
+  public void release()
+  {
+    threadSlot.get().release();
+  }
+
+
+  /**
+   * Returns the number of connections currently bound to threads.
+   *
+   * @return  bound connection count
+   */
+  public int getBoundCount()
+  {
+    int count = 0;
+    for (Slot slot : slots) {
+      if (slot.bound.get() != null) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+
+  /**
+   * Returns the number of check outs served by a connection bound to the thread.
+   *
+   * @return  hit count
+   */
+  public long getHitCount()
+  {
+    return hitCount.sum();
+  }
+
+
+  /**
+   * Returns the number of check outs served by the pool.
+   *
+   * @return  miss count
+   */
+  public long getMissCount()
+  {
+    return missCount.sum();
+  }
+
+
+  /** Returns every bound connection to the pool and stops binding connections to threads. */
+  public void close()
+  {
+    closed.set(true);
+    synchronized (this) {
+      if (reaper != null) {
+        reaper.shutdownNow();
+        reaper = null;
+      }
+    }
+    for (Slot slot : slots) {
+      slot.release();
+    }
+    slots.clear();
+  }
+
+
+  /**
+   * Closes the supplied connection, logging any exception so that a pool which has already been closed does not stop
+   * the reaper.
+   *
+   * @param  conn  to close
+   */
+  private void closeQuietly(final Connection conn)
+  {
+    try {
+      conn.close();
+    } catch (RuntimeException e) {
+      logger.debug("could not return connection {} to the pool", conn, e);
+    }
+  }
+
+
+  /**
+   * Creates and registers a slot for the current thread.
+   *
+   * @return  slot
+   */
+  private Slot createSlot()
+  {
+    final Slot slot = new Slot(Thread.currentThread());
+    slots.add(slot);
+    return slot;
+  }
+
+
+  @Override
+  public String toString()
+  {
+    return
+      String.format(
+        "[%s@%d::pool=%s, idleTime=%s, boundCount=%s, hitCount=%s, missCount=%s]",
+        getClass().getName(),
+        hashCode(),
+        pool,
+        idleTime,
+        getBoundCount(),
+        getHitCount(),
+        getMissCount());
+  }
+
+
+  /** Connection bound to a thread along with the time it expires. */
+  private static final class Binding
+  {
+
+    /** Pooled connection. */
+    private final Connection connection;
+
+    /** Time after which the connection must be returned to the pool. */
+    private final long expiration;
+
+
+    /**
+     * Creates a new binding.
+     *
+     * @param  conn  pooled connection
+     * @param  exp  expiration time in nanoseconds
+     */
+    Binding(final Connection conn, final long exp)
+    {
+      connection = conn;
+      expiration = exp;
+    }
+
+
+    /**
+     * Returns whether this binding has expired.
+     *
+     * @param  now  current time in nanoseconds
+     *
+     * @return  whether the connection has been idle too long
+     */
+    boolean isExpired(final long now)
+    {
+      return now - expiration > 0;
+    }
+  }
+
+
+  /** Holds the connection bound to a single thread. */
+  private final class Slot
+  {
+
+    /** Thread that owns this slot. */
+    private final WeakReference<Thread> owner;
+
+    /** Connection bound to the thread. */
+    private final AtomicReference<Binding> bound = new AtomicReference<>();
+
+
+    /**
+     * Creates a new slot.
+     *
+     * @param  t  owning thread
+     */
+    Slot(final Thread t)
+    {
+      owner = new WeakReference<>(t);
+    }
+
+
+    /**
+     * Returns whether the owning thread has exited.
+     *
+     * @return  whether the owner is dead
+     */
+    boolean isOwnerDead()
+    {
+      final Thread t = owner.get();
+      return t == null || !t.isAlive();
+    }
+
+
+    /** Returns the bound connection, if any, to the pool. */
+    void release()
+    {
+      final Binding bc = bound.getAndSet(null);
+      if (bc != null) {
+        closeQuietly(bc.connection);
+      }
+    }
+  }
+
+
+  /** Connection handed to callers. Closing it binds the underlying pooled connection to the thread. */
+  private final class BoundConnection implements Connection
+  {
+
+    /** Pooled connection. */
+    private final Connection connection;
+
+    /** Slot of the thread that checked out the connection. */
+    private final Slot slot;
+
+    /** Whether this connection has been closed. */
+    private final AtomicBoolean connectionClosed = new AtomicBoolean();
+
+
+    /**
+     * Creates a new bound connection.
+     *
+     * @param  conn  pooled connection
+     * @param  s  slot of the thread that checked out the connection
+     */
+    BoundConnection(final Connection conn, final Slot s)
+    {
+      connection = conn;
+      slot = s;
+    }
+
+
+    @Override
+    public ConnectionConfig getConnectionConfig()
+    {
+      return connection.getConnectionConfig();
+    }
+
+
+    @Override
+    public Response<Void> open()
+      throws LdapException
+    {
+      return connection.open();
+    }
+
+
+    @Override
+    public Response<Void> open(final BindRequest request)
+      throws LdapException
+    {
+      return connection.open(request);
+    }
+
+
+    @Override
+    public boolean isOpen()
+    {
+      return !connectionClosed.get() && connection.isOpen();
+    }
+
+
+    @Override
+    public ProviderConnection getProviderConnection()
+    {
+      return connection.getProviderConnection();
+    }
+
+
+    @Override
+    public void close()
+    {
+      if (connectionClosed.compareAndSet(false, true)) {
+        bind(connection, slot);
+      }
+    }
+
+
+    @Override
+    public void close(final RequestControl[] controls)
+    {
+      close();
+    }
+
+
+    @Override
+    public Response<Void> reopen()
+      throws LdapException
+    {
+      return connection.reopen();
+    }
+
+
+    @Override
+    public Response<Void> reopen(final BindRequest request)
+      throws LdapException
+    {
+      return connection.reopen(request);
+    }
+
+
+    @Override
+    public String toString()
+    {
+      return String.format("[%s@%d::connection=%s]", getClass().getName(), hashCode(), connection);
+    }
+  }
+}
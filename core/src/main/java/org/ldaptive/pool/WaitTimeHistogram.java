@@ -0,0 +1,178 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.pool;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts wait times in exponentially sized buckets. The first bucket holds waits under one millisecond, bucket
+ * <em>i</em> holds waits of at least 2<sup>i-1</sup> and less than 2<sup>i</sup> milliseconds, and the last bucket
+ * holds every wait of {@link #MAX_BOUND_MILLIS} milliseconds or more. Recording is lock free and safe for concurrent
+ * use.
+ *
+ * @author  Middleware Services
+ */
+public class WaitTimeHistogram
+{
+
+  /** Lower bound of the last bucket in milliseconds. */
+  public static final long MAX_BOUND_MILLIS = 32768;
+
+  /** Number of buckets. */
+  public static final int BUCKET_COUNT = Long.numberOfTrailingZeros(MAX_BOUND_MILLIS) + 2;
+
+  /** Wait counts by bucket. */
+  private final LongAdder[] buckets = new LongAdder[BUCKET_COUNT];
+
+  /** Total wait time in nanoseconds. */
+  private final LongAdder totalTime = new LongAdder();
+
+
+  /** Creates a new wait time histogram. */
+  public WaitTimeHistogram()
+  {
+    for (int i = 0; i < buckets.length; i++) {
+      buckets[i] = new LongAdder();
+    }
+  }
+
+
+  /**
+   * Records a wait.
+   *
+   * @param  nanos  wait time in nanoseconds
+   */
+  public void record(final long nanos)
+  {
+    final long millis = TimeUnit.NANOSECONDS.toMillis(Math.max(0, nanos));
+    buckets[Math.min(Long.SIZE - Long.numberOfLeadingZeros(millis), BUCKET_COUNT - 1)].increment();
+    totalTime.add(Math.max(0, nanos));
+  }
+
+
+  /**
+   * Returns the number of recorded waits.
+   *
+   * @return  wait count
+   */
+  public long getCount()
+  {
+    long count = 0;
+    for (LongAdder bucket : buckets) {
+      count += bucket.sum();
+    }
+    return count;
+  }
+
+
+  /**
+   * Returns the number of recorded waits in each bucket.
+   *
+   * @return  wait counts indexed by bucket
+   */
+  public long[] getCounts()
+  {
+    final long[] counts = new long[BUCKET_COUNT];
+    for (int i = 0; i < counts.length; i++) {
+      counts[i] = buckets[i].sum();
+    }
+    return counts;
+  }
+
+
+  /**
+   * Returns the exclusive upper bound of the supplied bucket.
+   *
+   * @param  bucket  index of the bucket
+   *
+   * @return  upper bound or null if the bucket is unbounded
+   */
+  public static Duration getUpperBound(final int bucket)
+  {
+    if (bucket < 0 || bucket >= BUCKET_COUNT) {
+      throw new IllegalArgumentException("Bucket must be between 0 and " + (BUCKET_COUNT - 1));
+    }
+    return bucket == BUCKET_COUNT - 1 ? null : Duration.ofMillis(1L << bucket);
+  }
+
+
+  /**
+   * Returns the mean of the recorded waits.
+   *
+   * @return  mean wait time
+   */
+  public Duration getMean()
+  {
+    final long count = getCount();
+    return Duration.ofNanos(count > 0 ? totalTime.sum() / count : 0);
+  }
+
+
+  /**
+   * Returns the upper bound of the bucket that contains the supplied percentile. For example, a return value of 8ms
+   * for the 0.99 percentile means that at least 99 percent of waits were shorter than 8 milliseconds.
+   *
+   * @param  percentile  between 0 and 1
+   *
+   * @return  upper bound of the bucket containing the percentile, zero if no waits have been recorded or null if the
+   *          percentile falls in the unbounded bucket
+   */
+  public Duration getPercentile(final double percentile)
+  {
+    if (percentile < 0 || percentile > 1) {
+      throw new IllegalArgumentException("Percentile must be between 0 and 1");
+    }
+    final long[] counts = getCounts();
+    long total = 0;
+    for (long count : counts) {
+      total += count;
+    }
+    Duration bound = Duration.ZERO;
+    if (total > 0) {
+      final long rank = Math.max(1, (long) Math.ceil(percentile * total));
+      long seen = 0;
+      int i = 0;
+      while (seen < rank) {
+        seen += counts[i++];
+      }
+      bound = getUpperBound(i - 1);
+    }
+    return bound;
+  }
+
+
+  /** Removes all recorded waits. */
+  public void reset()
+  {
+    for (LongAdder bucket : buckets) {
+      bucket.reset();
+    }
+    totalTime.reset();
+  }
+
+
+  @Override
+  public String toString()
+  {
+    final StringBuilder sb = new StringBuilder();
+    final long[] counts = getCounts();
+    for (int i = 0; i < counts.length; i++) {
+      if (counts[i] > 0) {
+        if (sb.length() > 0) {
+          sb.append(", ");
+        }
+        final Duration bound = getUpperBound(i);
+        sb.append(bound != null ? "<" + bound.toMillis() + "ms" : ">=" + MAX_BOUND_MILLIS + "ms")
+          .append('=').append(counts[i]);
+      }
+    }
+    return String.format(
+      "[%s@%d::count=%s, mean=%s, buckets={%s}]",
+      getClass().getName(),
+      hashCode(),
+      getCount(),
+      getMean(),
+      sb);
+  }
+}
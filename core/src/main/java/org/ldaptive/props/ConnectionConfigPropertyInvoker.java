@@ -5,6 +5,7 @@ import org.ldaptive.ActivePassiveConnectionStrategy;
 import org.ldaptive.ConnectionInitializer;
 import org.ldaptive.ConnectionStrategy;
 import org.ldaptive.DefaultConnectionStrategy;
+import org.ldaptive.HealthAwareConnectionStrategy;
 import org.ldaptive.RandomConnectionStrategy;
 import org.ldaptive.RoundRobinConnectionStrategy;
 
@@ -44,6 +45,8 @@ public class ConnectionConfigPropertyInvoker extends AbstractPropertyInvoker
           newValue = new RoundRobinConnectionStrategy();
         } else if ("RANDOM".equals(value)) {
           newValue = new RandomConnectionStrategy();
+        } else if ("HEALTH_AWARE".equals(value)) {
+          newValue = new HealthAwareConnectionStrategy();
         } else {
           newValue = createTypeFromPropertyValue(ConnectionStrategy.class, value);
         }
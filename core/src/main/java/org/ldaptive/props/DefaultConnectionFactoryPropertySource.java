@@ -111,6 +111,9 @@ public final class DefaultConnectionFactoryPropertySource extends AbstractProper
     if (pc.getControlProcessor() != null) {
       object.getProvider().getProviderConfig().setControlProcessor(pc.getControlProcessor());
     }
+    if (pc.getAllowedResponseControls() != null) {
+      object.getProvider().getProviderConfig().setAllowedResponseControls(pc.getAllowedResponseControls());
+    }
     if (!extraProps.isEmpty()) {
       object.getProvider().getProviderConfig().setProperties(extraProps);
     }
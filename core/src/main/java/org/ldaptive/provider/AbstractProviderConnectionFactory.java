@@ -1,8 +1,19 @@
 /* See LICENSE for licensing and NOTICE for copyright. */
 package org.ldaptive.provider;
 
+import java.time.Duration;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import org.ldaptive.ConnectionFactoryMetadata;
 import org.ldaptive.ConnectionStrategy;
+import org.ldaptive.ConnectionStrategyListener;
 import org.ldaptive.LdapException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -18,6 +29,14 @@ public abstract class AbstractProviderConnectionFactory<T extends ProviderConfig
   implements ProviderConnectionFactory<T>
 {
 
+  /** Executor used to run concurrent connection attempts. */
+  private static final ExecutorService CONNECT_EXECUTOR = Executors.newCachedThreadPool(
+    r -> {
+      final Thread t = new Thread(r, "ldaptive-" + AbstractProviderConnectionFactory.class.getSimpleName());
+      t.setDaemon(true);
+      return t;
+    });
+
   /** Logger for this class. */
   protected final Logger logger = LoggerFactory.getLogger(getClass());
 
@@ -66,28 +85,117 @@ public abstract class AbstractProviderConnectionFactory<T extends ProviderConfig
   }
 
 
+  /**
+   * Creates a connection using the URLs produced by the connection strategy. If {@link
+   * ProviderConfig#getConcurrentConnectAttempts()} is greater than one, connection attempts are raced, see {@link
+   * #createConcurrent(String[], ConnectionStrategyListener)}. Otherwise each URL is attempted in turn until a
+   * connection is established.
+   *
+   * @return  provider connection
+   *
+   * @throws  LdapException  if a connection cannot be established
+   */
   @Override
   public ProviderConnection create()
     throws LdapException
   {
-    LdapException lastThrown = null;
     final String[] urls = connectionStrategy.getLdapUrls(metadata);
     if (urls == null || urls.length == 0) {
       throw new ConnectionException(
         "Connection strategy " + connectionStrategy + " did not produce any LDAP URLs for " + metadata);
     }
 
+    final ConnectionStrategyListener listener = connectionStrategy instanceof ConnectionStrategyListener ?
+      (ConnectionStrategyListener) connectionStrategy : null;
+    ProviderConnection conn = null;
+    if (urls.length > 1 && providerConfig.getConcurrentConnectAttempts() > 1) {
+      conn = createConcurrent(urls, listener);
+    } else {
+      LdapException lastThrown = null;
+      for (String url : urls) {
+        try {
+          conn = attemptConnection(url, listener);
+          lastThrown = null;
+          break;
+        } catch (ConnectionException e) {
+          lastThrown = e;
+        }
+      }
+      if (lastThrown != null) {
+        throw lastThrown;
+      }
+    }
+    // only the connection that is returned counts, abandoned concurrent attempts do not
+    metadata.incrementCount();
+    return conn;
+  }
+
+
+  /**
+   * Races connection attempts to the supplied URLs. An attempt is started to the first URL, subsequent attempts are
+   * started in URL order whenever {@link ProviderConfig#getConnectAttemptDelay()} elapses without a connection or an
+   * attempt fails, so long as no more than {@link ProviderConfig#getConcurrentConnectAttempts()} attempts are in
+   * progress. The first connection established is returned, attempts that are still in progress are allowed to finish
+   * and any connections they produce are closed.
+   *
+   * @param  urls  to connect to
+   * @param  listener  to notify of connection attempts, may be null
+   *
+   * @return  provider connection
+   *
+   * @throws  LdapException  if a connection cannot be established
+   */
+  protected ProviderConnection createConcurrent(final String[] urls, final ConnectionStrategyListener listener)
+    throws LdapException
+  {
+    final int maxAttempts = providerConfig.getConcurrentConnectAttempts();
+    final long delay = providerConfig.getConnectAttemptDelay().toNanos();
+    final CompletionService<ProviderConnection> completionService = new ExecutorCompletionService<>(CONNECT_EXECUTOR);
+    final Map<Future<ProviderConnection>, String> attempts = new IdentityHashMap<>(urls.length);
+    LdapException lastThrown = null;
     ProviderConnection conn = null;
-    for (String url : urls) {
-      try {
-        logger.trace("[{}] Attempting connection to {} for strategy {}", metadata, url, connectionStrategy);
-        conn = createInternal(url);
-        metadata.incrementCount();
-        lastThrown = null;
-        break;
-      } catch (ConnectionException e) {
-        lastThrown = e;
-        logger.debug("Error connecting to LDAP URL: {}", url, e);
+    int next = 0;
+    boolean startNext = true;
+    try {
+      while (conn == null && (next < urls.length || !attempts.isEmpty())) {
+        if (startNext && next < urls.length) {
+          final String url = urls[next++];
+          logger.trace("[{}] Racing connection to {}", metadata, url);
+          attempts.put(completionService.submit(() -> attemptConnection(url, listener)), url);
+        }
+
+        final Future<ProviderConnection> completed;
+        if (next < urls.length && attempts.size() < maxAttempts) {
+          completed = completionService.poll(delay, TimeUnit.NANOSECONDS);
+        } else {
+          completed = completionService.take();
+        }
+        // start another attempt if the delay elapsed or an attempt failed
+        startNext = true;
+        if (completed != null) {
+          attempts.remove(completed);
+          try {
+            conn = completed.get();
+            lastThrown = null;
+          } catch (ExecutionException e) {
+            if (e.getCause() instanceof ConnectionException) {
+              lastThrown = (ConnectionException) e.getCause();
+            } else if (e.getCause() instanceof LdapException) {
+              throw (LdapException) e.getCause();
+            } else if (e.getCause() instanceof RuntimeException) {
+              throw (RuntimeException) e.getCause();
+            } else {
+              throw new ConnectionException(e);
+            }
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ConnectionException("Interrupted while establishing connection", e);
+    } finally {
+      if (!attempts.isEmpty()) {
+        closeAbandoned(attempts);
       }
     }
     if (lastThrown != null) {
@@ -97,6 +205,62 @@ public abstract class AbstractProviderConnectionFactory<T extends ProviderConfig
   }
 
 
+  /**
+   * Attempts a connection to the supplied URL and notifies the listener of the outcome.
+   *
+   * @param  url  to connect to
+   * @param  listener  to notify, may be null
+   *
+   * @return  provider connection
+   *
+   * @throws  LdapException  if a connection cannot be established
+   */
+  private ProviderConnection attemptConnection(final String url, final ConnectionStrategyListener listener)
+    throws LdapException
+  {
+    final long startTime = System.nanoTime();
+    try {
+      logger.trace("[{}] Attempting connection to {} for strategy {}", metadata, url, connectionStrategy);
+      final ProviderConnection conn = createInternal(url);
+      if (listener != null) {
+        listener.connectionSucceeded(url, Duration.ofNanos(System.nanoTime() - startTime));
+      }
+      return conn;
+    } catch (ConnectionException e) {
+      logger.debug("Error connecting to LDAP URL: {}", url, e);
+      if (listener != null) {
+        listener.connectionFailed(url, e);
+      }
+      throw e;
+    }
+  }
+
+
+  /**
+   * Waits for the supplied connection attempts to complete in the background and closes any connections they produce.
+   *
+   * @param  attempts  connection attempts that are no longer needed
+   */
+  private void closeAbandoned(final Map<Future<ProviderConnection>, String> attempts)
+  {
+    CONNECT_EXECUTOR.execute(
+      () -> {
+        for (Map.Entry<Future<ProviderConnection>, String> attempt : attempts.entrySet()) {
+          try {
+            final ProviderConnection c = attempt.getKey().get();
+            logger.trace("[{}] Closing abandoned connection to {}", metadata, attempt.getValue());
+            c.close(null);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+          } catch (Exception e) {
+            logger.trace("[{}] Abandoned connection attempt to {} failed", metadata, attempt.getValue(), e);
+          }
+        }
+      });
+  }
+
+
   /**
    * Create the provider connection and prepare the connection for use.
    *
@@ -131,7 +295,7 @@ public abstract class AbstractProviderConnectionFactory<T extends ProviderConfig
     private final String ldapUrl;
 
     /** connection count. */
-    private int count;
+    private volatile int count;
 
 
     /**
@@ -160,7 +324,7 @@ public abstract class AbstractProviderConnectionFactory<T extends ProviderConfig
 
 
     /** Increments the connection count. */
-    private void incrementCount()
+    private synchronized void incrementCount()
     {
       count++;
       // reset the count if it exceeds the size of an integer
@@ -3,7 +3,11 @@ package org.ldaptive.provider;
 
 import java.lang.reflect.Array;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import org.ldaptive.control.RequestControl;
 import org.ldaptive.control.ResponseControl;
 import org.slf4j.Logger;
@@ -25,6 +29,9 @@ public class ControlProcessor<T>
   /** Control handler. */
   private final ControlHandler<T> controlHandler;
 
+  /** OIDs of the response controls to produce. */
+  private Set<String> allowedResponseControls;
+
 
   /**
    * Creates a new control processor.
@@ -37,6 +44,30 @@ public class ControlProcessor<T>
   }
 
 
+  /**
+   * Returns the OIDs of the response controls that are produced. A null value, the default, produces every supported
+   * response control. See {@link ProviderConfig#setAllowedResponseControls(String...)}.
+   *
+   * @return  response control OIDs or null
+   */
+  public Set<String> getAllowedResponseControls()
+  {
+    return allowedResponseControls;
+  }
+
+
+  /**
+   * Sets the OIDs of the response controls that are produced. Invoked by the provider config this processor belongs to.
+   *
+   * @param  oids  response control OIDs or null
+   */
+  void setAllowedResponseControls(final String[] oids)
+  {
+    logger.trace("setting allowedResponseControls: {}", Arrays.toString(oids));
+    allowedResponseControls = oids != null ? Collections.unmodifiableSet(new HashSet<>(Arrays.asList(oids))) : null;
+  }
+
+
   /**
    * Converts the supplied request controls to a provider specific request controls.
    *
@@ -105,9 +136,13 @@ public class ControlProcessor<T>
 
     final List<ResponseControl> ctls = new ArrayList<>(responseControls.length);
     for (T c : responseControls) {
-      final ResponseControl ctl = processResponse(c);
-      if (ctl != null) {
-        ctls.add(ctl);
+      if (isAllowed(c)) {
+        final ResponseControl ctl = processResponse(c);
+        if (ctl != null) {
+          ctls.add(ctl);
+        }
+      } else {
+        logger.trace("discarding provider response control: {}", c);
       }
     }
     logger.trace("produced response controls: {}", ctls);
@@ -134,4 +169,19 @@ public class ControlProcessor<T>
     }
     return ctl;
   }
+
+
+  /**
+   * Returns whether the supplied provider control should be converted to a response control.
+   *
+   * @param  providerCtl  to inspect
+   *
+   * @return  whether no allowed response controls are configured or the control OID is allowed
+   */
+  protected boolean isAllowed(final T providerCtl)
+  {
+    return
+      allowedResponseControls == null ||
+      providerCtl != null && allowedResponseControls.contains(controlHandler.getOID(providerCtl));
+  }
 }
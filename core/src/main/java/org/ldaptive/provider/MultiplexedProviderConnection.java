@@ -0,0 +1,35 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.provider;
+
+/**
+ * Provider connection that correlates responses by message ID and can therefore have several operations outstanding at
+ * the same time. Operations may be invoked concurrently from multiple threads on connections that report {@link
+ * #isMultiplexingEnabled()}.
+ *
+ * @author  Middleware Services
+ */
+public interface MultiplexedProviderConnection extends ProviderConnection
+{
+
+
+  /**
+   * Returns whether this connection may be used by multiple threads to perform concurrent operations. Implementations
+   * may return false if the underlying library has been configured for synchronous use.
+   *
+   * @return  whether concurrent operations are supported
+   */
+  boolean isMultiplexingEnabled();
+
+
+  /**
+   * Indicates that the current thread consumes search results whose handling performs further operations on this
+   * connection, until a matching invocation of {@link #endNestedOperations()}. Implementations that limit the number of
+   * results buffered for a search do not apply the limit to searches consumed by such a thread, since the consumer
+   * depends on this connection to make progress. Invocations may be nested. The default implementation does nothing.
+   */
+  default void beginNestedOperations() {}
+
+
+  /** Ends the most recent invocation of {@link #beginNestedOperations()} by the current thread. */
+  default void endNestedOperations() {}
+}
@@ -1,11 +1,13 @@
 /* See LICENSE for licensing and NOTICE for copyright. */
 package org.ldaptive.provider;
 
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import org.ldaptive.AbstractConfig;
 import org.ldaptive.ResultCode;
+import org.ldaptive.schema.BinaryAttributeDetector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -19,6 +21,9 @@ import org.slf4j.LoggerFactory;
 public class ProviderConfig<C> extends AbstractConfig
 {
 
+  /** Default time to wait before racing a connection attempt to the next URL. */
+  private static final Duration DEFAULT_CONNECT_ATTEMPT_DELAY = Duration.ofMillis(250);
+
   /** Logger for this class. */
   protected final Logger logger = LoggerFactory.getLogger(getClass());
 
@@ -31,6 +36,18 @@ public class ProviderConfig<C> extends AbstractConfig
   /** Control processor. */
   private ControlProcessor<C> controlProcessor;
 
+  /** OIDs of the response controls to produce. */
+  private String[] allowedResponseControls;
+
+  /** Schema based binary attribute detection. */
+  private BinaryAttributeDetector binaryAttributeDetector;
+
+  /** Maximum number of connection attempts to run concurrently. */
+  private int concurrentConnectAttempts = 1;
+
+  /** Time to wait for a connection attempt before starting an attempt to the next URL. */
+  private Duration connectAttemptDelay = DEFAULT_CONNECT_ATTEMPT_DELAY;
+
 
   /**
    * Returns the result codes that trigger an operation exception.
@@ -101,6 +118,121 @@ public class ProviderConfig<C> extends AbstractConfig
     checkImmutable();
     logger.trace("setting controlProcessor: {}", processor);
     controlProcessor = processor;
+    if (controlProcessor != null) {
+      controlProcessor.setAllowedResponseControls(allowedResponseControls);
+    }
+  }
+
+
+  /**
+   * Returns the OIDs of the response controls that are produced. A null value, the default, produces every supported
+   * response control.
+   *
+   * @return  response control OIDs or null
+   */
+  public String[] getAllowedResponseControls()
+  {
+    return allowedResponseControls;
+  }
+
+
+  /**
+   * Sets the OIDs of the response controls that are produced. Provider controls with any other OID are discarded before
+   * they are decoded. Supply null to produce every supported response control.
+   *
+   * @param  oids  response control OIDs
+   */
+  public void setAllowedResponseControls(final String... oids)
+  {
+    checkImmutable();
+    logger.trace("setting allowedResponseControls: {}", Arrays.toString(oids));
+    allowedResponseControls = oids;
+    if (controlProcessor != null) {
+      controlProcessor.setAllowedResponseControls(oids);
+    }
+  }
+
+
+  /**
+   * Returns the binary attribute detector. When set, providers treat any attribute with a binary syntax in the schema
+   * as binary in addition to the binary attributes declared on the search request.
+   *
+   * @return  binary attribute detector
+   */
+  public BinaryAttributeDetector getBinaryAttributeDetector()
+  {
+    return binaryAttributeDetector;
+  }
+
+
+  /**
+   * Sets the binary attribute detector.
+   *
+   * @param  detector  binary attribute detector
+   */
+  public void setBinaryAttributeDetector(final BinaryAttributeDetector detector)
+  {
+    checkImmutable();
+    logger.trace("setting binaryAttributeDetector: {}", detector);
+    binaryAttributeDetector = detector;
+  }
+
+
+  /**
+   * Returns the maximum number of connection attempts to run concurrently. A value greater than one causes the URLs
+   * produced by the connection strategy to be raced: an attempt is made to the first URL and if it has not completed
+   * within {@link #getConnectAttemptDelay()} an attempt to the next URL is started. The first connection established is
+   * used and any others are closed. The default value of one attempts each URL in turn.
+   *
+   * @return  concurrent connect attempts
+   */
+  public int getConcurrentConnectAttempts()
+  {
+    return concurrentConnectAttempts;
+  }
+
+
+  /**
+   * Sets the maximum number of connection attempts to run concurrently.
+   *
+   * @param  attempts  concurrent connect attempts
+   */
+  public void setConcurrentConnectAttempts(final int attempts)
+  {
+    checkImmutable();
+    if (attempts < 1) {
+      throw new IllegalArgumentException("Concurrent connect attempts must be greater than zero");
+    }
+    logger.trace("setting concurrentConnectAttempts: {}", attempts);
+    concurrentConnectAttempts = attempts;
+  }
+
+
+  /**
+   * Returns the time to wait for a connection attempt to complete before starting an attempt to the next URL. Only
+   * used when {@link #getConcurrentConnectAttempts()} is greater than one.
+   *
+   * @return  connect attempt delay
+   */
+  public Duration getConnectAttemptDelay()
+  {
+    return connectAttemptDelay;
+  }
+
+
+  /**
+   * Sets the time to wait for a connection attempt to complete before starting an attempt to the next URL.
+   *
+   * @param  delay  connect attempt delay
+   */
+  public void setConnectAttemptDelay(final Duration delay)
+  {
+    checkImmutable();
+    if (delay == null || delay.isNegative()) {
+      throw new IllegalArgumentException("Connect attempt delay cannot be null or negative");
+    }
+    logger.trace("setting connectAttemptDelay: {}", delay);
+    connectAttemptDelay = delay;
   }
 
 
@@ -109,11 +241,17 @@ public class ProviderConfig<C> extends AbstractConfig
   {
     return
       String.format(
-        "[%s@%d::operationExceptionResultCodes=%s, properties=%s, controlProcessor=%s]",
+        "[%s@%d::operationExceptionResultCodes=%s, properties=%s, controlProcessor=%s, " +
+        "allowedResponseControls=%s, binaryAttributeDetector=%s, concurrentConnectAttempts=%s, " +
+        "connectAttemptDelay=%s]",
         getClass().getName(),
         hashCode(),
         Arrays.toString(operationExceptionResultCodes),
         properties,
-        controlProcessor);
+        controlProcessor,
+        Arrays.toString(allowedResponseControls),
+        binaryAttributeDetector,
+        concurrentConnectAttempts,
+        connectAttemptDelay);
   }
 }
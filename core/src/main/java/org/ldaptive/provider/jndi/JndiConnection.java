@@ -24,6 +24,7 @@ import org.ldaptive.CompareRequest;
 import org.ldaptive.DeleteRequest;
 import org.ldaptive.DerefAliases;
 import org.ldaptive.LdapException;
+import org.ldaptive.LdapUtils;
 import org.ldaptive.ModifyDnRequest;
 import org.ldaptive.ModifyRequest;
 import org.ldaptive.Request;
@@ -773,8 +774,13 @@ public class JndiConnection implements ProviderConnection
       } else {
         ctx.addToEnvironment(DEREF_ALIASES, DerefAliases.NEVER.name().toLowerCase());
       }
-      if (sr.getBinaryAttributes() != null) {
-        final String[] a = sr.getBinaryAttributes();
+      String[] binaryAttrs = sr.getBinaryAttributes();
+      if (config.getBinaryAttributeDetector() != null) {
+        final String[] schemaAttrs = config.getBinaryAttributeDetector().getBinaryAttributeNames();
+        binaryAttrs = binaryAttrs != null ? LdapUtils.concatArrays(binaryAttrs, schemaAttrs) : schemaAttrs;
+      }
+      if (binaryAttrs != null) {
+        final String[] a = binaryAttrs;
         final StringBuilder sb = new StringBuilder();
         for (int i = 0; i < a.length; i++) {
           sb.append(a[i]);
@@ -247,7 +247,8 @@ public class JndiProviderConfig extends ProviderConfig<Control>
   {
     return
       String.format(
-        "[%s@%d::operationExceptionResultCodes=%s, properties=%s, controlProcessor=%s, environment=%s, " +
+        "[%s@%d::operationExceptionResultCodes=%s, properties=%s, controlProcessor=%s, " +
+        "binaryAttributeDetector=%s, concurrentConnectAttempts=%s, connectAttemptDelay=%s, environment=%s, " +
         "tracePackets=%s, removeDnUrls=%s, searchIgnoreResultCodes=%s, classLoader=%s, sslSocketFactory=%s, " +
         "hostnameVerifier=%s]",
         getClass().getName(),
@@ -255,6 +256,9 @@ public class JndiProviderConfig extends ProviderConfig<Control>
         Arrays.toString(getOperationExceptionResultCodes()),
         getProperties(),
         getControlProcessor(),
+        getBinaryAttributeDetector(),
+        getConcurrentConnectAttempts(),
+        getConnectAttemptDelay(),
         environment,
         tracePackets,
         removeDnUrls,
@@ -0,0 +1,160 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.provider.nio;
+
+import java.nio.ByteBuffer;
+import org.ldaptive.asn1.DERParser;
+import org.ldaptive.asn1.DERTag;
+
+/**
+ * Single tag-length-value element read from a DER encoded buffer. The value is a view over the underlying buffer, no
+ * bytes are copied.
+ *
+ * @author  Middleware Services
+ */
+final class BerElement
+{
+
+  /** Parser used to read tags and lengths. */
+  private static final DERParser PARSER = new DERParser();
+
+  /** Tag of this element. */
+  private final DERTag tag;
+
+  /** Value of this element. */
+  private final ByteBuffer value;
+
+
+  /**
+   * Creates a new BER element.
+   *
+   * @param  t  tag
+   * @param  v  value
+   */
+  private BerElement(final DERTag t, final ByteBuffer v)
+  {
+    tag = t;
+    value = v;
+  }
+
+
+  /**
+   * Reads the next element from the supplied buffer and advances the buffer past it.
+   *
+   * @param  buffer  positioned at the start of an element
+   *
+   * @return  BER element
+   *
+   * @throws  IllegalArgumentException  if the buffer does not contain a complete element
+   */
+  static BerElement read(final ByteBuffer buffer)
+  {
+    final DERTag tag = PARSER.readTag(buffer);
+    if (tag == null) {
+      throw new IllegalArgumentException("Buffer does not contain a tag");
+    }
+    final int length = PARSER.readLength(buffer);
+    if (length < 0 || length > buffer.remaining()) {
+      throw new IllegalArgumentException("Invalid length " + length + " for tag " + tag);
+    }
+    final ByteBuffer value = buffer.slice();
+    value.limit(length);
+    buffer.position(buffer.position() + length);
+    return new BerElement(tag, value);
+  }
+
+
+  /**
+   * Returns the tag.
+   *
+   * @return  tag
+   */
+  DERTag getTag()
+  {
+    return tag;
+  }
+
+
+  /**
+   * Returns the tag number.
+   *
+   * @return  tag number
+   */
+  int getTagNo()
+  {
+    return tag.getTagNo();
+  }
+
+
+  /**
+   * Returns the value. The returned buffer is positioned at the first value byte and its limit is set after the last.
+   *
+   * @return  value
+   */
+  ByteBuffer getValue()
+  {
+    return value;
+  }
+
+
+  /**
+   * Returns a copy of the value bytes.
+   *
+   * @return  value bytes
+   */
+  byte[] getBytes()
+  {
+    final ByteBuffer dup = value.duplicate();
+    final byte[] bytes = new byte[dup.remaining()];
+    dup.get(bytes);
+    return bytes;
+  }
+
+
+  /**
+   * Returns the total number of bytes occupied by the element beginning at the supplied offset, including tag and
+   * length bytes, or -1 if not enough bytes are available to determine it.
+   *
+   * @param  bytes  containing a partial or complete element
+   * @param  offset  of the element
+   * @param  available  number of bytes available after offset
+   *
+   * @return  element length or -1
+   *
+   * @throws  IllegalArgumentException  if the length cannot be represented
+   */
+  static int frameLength(final byte[] bytes, final int offset, final int available)
+  {
+    int frame = -1;
+    if (available >= 2) {
+      // CheckStyle:MagicNumber OFF
+      final int first = bytes[offset + 1] & 0xFF;
+      if ((first & 0x80) == 0) {
+        frame = 2 + first;
+      } else {
+        final int count = first & 0x7F;
+        if (count == 0 || count > 4) {
+          throw new IllegalArgumentException("Unsupported length encoding: " + first);
+        }
+        if (available >= 2 + count) {
+          long length = 0;
+          for (int i = 0; i < count; i++) {
+            length = (length << 8) | (bytes[offset + 2 + i] & 0xFF);
+          }
+          if (length > Integer.MAX_VALUE - 2 - count) {
+            throw new IllegalArgumentException("Element length too large: " + length);
+          }
+          frame = (int) (2 + count + length);
+        }
+      }
+      // CheckStyle:MagicNumber ON
+    }
+    return frame;
+  }
+
+
+  @Override
+  public String toString()
+  {
+    return String.format("[%s@%d::tag=%s, length=%s]", getClass().getName(), hashCode(), tag, value.remaining());
+  }
+}
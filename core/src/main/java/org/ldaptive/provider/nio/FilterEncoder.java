@@ -0,0 +1,262 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.provider.nio;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.ldaptive.asn1.BooleanType;
+import org.ldaptive.asn1.ConstructedDEREncoder;
+import org.ldaptive.asn1.ContextDERTag;
+import org.ldaptive.asn1.DEREncoder;
+import org.ldaptive.asn1.OctetStringType;
+import org.ldaptive.asn1.UniversalDERTag;
+import org.ldaptive.filter.AbstractAssertionFilter;
+import org.ldaptive.filter.AbstractCompositeFilter;
+import org.ldaptive.filter.ExtensibleFilter;
+import org.ldaptive.filter.Filter;
+import org.ldaptive.filter.FilterParser;
+import org.ldaptive.filter.NotFilter;
+import org.ldaptive.filter.PresenceFilter;
+import org.ldaptive.filter.SubstringFilter;
+
+/**
+ * Encodes a search filter as the Filter choice defined in RFC 4511:
+ *
+ * <pre>
+   Filter ::= CHOICE {
+     and             [0] SET SIZE (1..MAX) OF filter Filter,
+     or              [1] SET SIZE (1..MAX) OF filter Filter,
+     not             [2] Filter,
+     equalityMatch   [3] AttributeValueAssertion,
+     substrings      [4] SubstringFilter,
+     greaterOrEqual  [5] AttributeValueAssertion,
+     lessOrEqual     [6] AttributeValueAssertion,
+     present         [7] AttributeDescription,
+     approxMatch     [8] AttributeValueAssertion,
+     extensibleMatch [9] MatchingRuleAssertion,
+     ...  }
+ * </pre>
+ *
+ * @author  Middleware Services
+ */
+public final class FilterEncoder
+{
+
+  /** And filter tag. */
+  private static final int AND = 0;
+
+  /** Or filter tag. */
+  private static final int OR = 1;
+
+  /** Not filter tag. */
+  private static final int NOT = 2;
+
+  /** Equality filter tag. */
+  private static final int EQUALITY = 3;
+
+  /** Substrings filter tag. */
+  private static final int SUBSTRINGS = 4;
+
+  /** Greater or equal filter tag. */
+  private static final int GREATER_OR_EQUAL = 5;
+
+  /** Less or equal filter tag. */
+  private static final int LESS_OR_EQUAL = 6;
+
+  /** Present filter tag. */
+  private static final int PRESENT = 7;
+
+  /** Approximate filter tag. */
+  private static final int APPROXIMATE = 8;
+
+  /** Extensible filter tag. */
+  private static final int EXTENSIBLE = 9;
+
+  /** Substring initial tag. */
+  private static final int SUBSTRING_INITIAL = 0;
+
+  /** Substring any tag. */
+  private static final int SUBSTRING_ANY = 1;
+
+  /** Substring final tag. */
+  private static final int SUBSTRING_FINAL = 2;
+
+  /** Extensible match matching rule tag. */
+  private static final int MATCHING_RULE = 1;
+
+  /** Extensible match type tag. */
+  private static final int MATCHING_TYPE = 2;
+
+  /** Extensible match value tag. */
+  private static final int MATCH_VALUE = 3;
+
+  /** Extensible match dn attributes tag. */
+  private static final int DN_ATTRIBUTES = 4;
+
+  /** Default constructor. */
+  private FilterEncoder() {}
+
+
+  /**
+   * Parses the supplied filter and returns an encoder for it. See {@link FilterParser#parse(String)}.
+   *
+   * @param  filter  to encode
+   *
+   * @return  filter encoder
+   *
+   * @throws  IllegalArgumentException  if the filter is not valid
+   */
+  public static DEREncoder encode(final String filter)
+  {
+    return encode(FilterParser.parse(filter));
+  }
+
+
+  /**
+   * Returns an encoder for the supplied parsed filter.
+   *
+   * @param  filter  to encode
+   *
+   * @return  filter encoder
+   */
+  public static DEREncoder encode(final Filter filter)
+  {
+    final DEREncoder encoder;
+    switch (filter.getType()) {
+
+    case AND:
+      encoder = new ConstructedDEREncoder(new ContextDERTag(AND, true), encodeComponents(filter));
+      break;
+
+    case OR:
+      encoder = new ConstructedDEREncoder(new ContextDERTag(OR, true), encodeComponents(filter));
+      break;
+
+    case NOT:
+      encoder = new ConstructedDEREncoder(new ContextDERTag(NOT, true), encode(((NotFilter) filter).getComponent()));
+      break;
+
+    case EQUALITY:
+      encoder = encodeAssertion(EQUALITY, (AbstractAssertionFilter) filter);
+      break;
+
+    case SUBSTRING:
+      encoder = encodeSubstrings((SubstringFilter) filter);
+      break;
+
+    case GREATER_OR_EQUAL:
+      encoder = encodeAssertion(GREATER_OR_EQUAL, (AbstractAssertionFilter) filter);
+      break;
+
+    case LESS_OR_EQUAL:
+      encoder = encodeAssertion(LESS_OR_EQUAL, (AbstractAssertionFilter) filter);
+      break;
+
+    case PRESENCE:
+      encoder = new OctetStringType(
+        new ContextDERTag(PRESENT, false),
+        ((PresenceFilter) filter).getAttributeDescription());
+      break;
+
+    case APPROXIMATE:
+      encoder = encodeAssertion(APPROXIMATE, (AbstractAssertionFilter) filter);
+      break;
+
+    case EXTENSIBLE:
+      encoder = encodeExtensible((ExtensibleFilter) filter);
+      break;
+
+    default:
+      throw new IllegalArgumentException("Unknown filter type " + filter.getType());
+    }
+    return encoder;
+  }
+
+
+  /**
+   * Encodes the components of an and or an or filter.
+   *
+   * @param  filter  composite filter
+   *
+   * @return  component encoders
+   */
+  private static DEREncoder[] encodeComponents(final Filter filter)
+  {
+    final List<Filter> components = ((AbstractCompositeFilter) filter).getComponents();
+    final DEREncoder[] encoders = new DEREncoder[components.size()];
+    for (int i = 0; i < encoders.length; i++) {
+      encoders[i] = encode(components.get(i));
+    }
+    return encoders;
+  }
+
+
+  /**
+   * Encodes an attribute value assertion.
+   *
+   * @param  tag  of the filter type
+   * @param  filter  assertion filter
+   *
+   * @return  filter encoder
+   */
+  private static DEREncoder encodeAssertion(final int tag, final AbstractAssertionFilter filter)
+  {
+    return
+      new ConstructedDEREncoder(
+        new ContextDERTag(tag, true),
+        new OctetStringType(filter.getAttributeDescription()),
+        new OctetStringType(filter.getAssertionValue()));
+  }
+
+
+  /**
+   * Encodes a substring filter.
+   *
+   * @param  filter  substring filter
+   *
+   * @return  filter encoder
+   */
+  private static DEREncoder encodeSubstrings(final SubstringFilter filter)
+  {
+    final List<DEREncoder> substrings = new ArrayList<>();
+    final byte[] initial = filter.getInitial();
+    if (initial != null) {
+      substrings.add(new OctetStringType(new ContextDERTag(SUBSTRING_INITIAL, false), initial));
+    }
+    for (byte[] b : filter.getAny()) {
+      substrings.add(new OctetStringType(new ContextDERTag(SUBSTRING_ANY, false), b));
+    }
+    final byte[] finalValue = filter.getFinal();
+    if (finalValue != null) {
+      substrings.add(new OctetStringType(new ContextDERTag(SUBSTRING_FINAL, false), finalValue));
+    }
+    return
+      new ConstructedDEREncoder(
+        new ContextDERTag(SUBSTRINGS, true),
+        new OctetStringType(filter.getAttributeDescription()),
+        new ConstructedDEREncoder(UniversalDERTag.SEQ, substrings.toArray(new DEREncoder[substrings.size()])));
+  }
+
+
+  /**
+   * Encodes an extensible match filter.
+   *
+   * @param  filter  extensible filter
+   *
+   * @return  filter encoder
+   */
+  private static DEREncoder encodeExtensible(final ExtensibleFilter filter)
+  {
+    final List<DEREncoder> encoders = new ArrayList<>();
+    if (filter.getMatchingRule() != null) {
+      encoders.add(new OctetStringType(new ContextDERTag(MATCHING_RULE, false), filter.getMatchingRule()));
+    }
+    if (filter.getAttributeDescription() != null) {
+      encoders.add(new OctetStringType(new ContextDERTag(MATCHING_TYPE, false), filter.getAttributeDescription()));
+    }
+    encoders.add(new OctetStringType(new ContextDERTag(MATCH_VALUE, false), filter.getMatchValue()));
+    if (filter.getDnAttributes()) {
+      encoders.add(new BooleanType(new ContextDERTag(DN_ATTRIBUTES, false), true));
+    }
+    return new ConstructedDEREncoder(new ContextDERTag(EXTENSIBLE, true), encoders.toArray(new DEREncoder[0]));
+  }
+}
@@ -0,0 +1,424 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.provider.nio;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+import org.ldaptive.LdapAttribute;
+import org.ldaptive.SearchEntry;
+import org.ldaptive.SortBehavior;
+import org.ldaptive.asn1.BooleanType;
+import org.ldaptive.asn1.IntegerType;
+import org.ldaptive.asn1.OctetStringType;
+import org.ldaptive.asn1.UniversalDERTag;
+import org.ldaptive.control.ResponseControl;
+
+/**
+ * LDAP message received from a directory, see RFC 4511 section 4.1.1. The protocol operation is decoded on demand by
+ * the method that matches its tag.
+ *
+ * @author  Middleware Services
+ */
+final class LdapMessage
+{
+
+  /** Bind response tag. */
+  static final int BIND_RESPONSE = 1;
+
+  /** Search result entry tag. */
+  static final int SEARCH_RESULT_ENTRY = 4;
+
+  /** Search result done tag. */
+  static final int SEARCH_RESULT_DONE = 5;
+
+  /** Modify response tag. */
+  static final int MODIFY_RESPONSE = 7;
+
+  /** Add response tag. */
+  static final int ADD_RESPONSE = 9;
+
+  /** Delete response tag. */
+  static final int DELETE_RESPONSE = 11;
+
+  /** Modify DN response tag. */
+  static final int MODIFY_DN_RESPONSE = 13;
+
+  /** Compare response tag. */
+  static final int COMPARE_RESPONSE = 15;
+
+  /** Search result reference tag. */
+  static final int SEARCH_RESULT_REFERENCE = 19;
+
+  /** Extended response tag. */
+  static final int EXTENDED_RESPONSE = 24;
+
+  /** Intermediate response tag. */
+  static final int INTERMEDIATE_RESPONSE = 25;
+
+  /** Controls tag. */
+  private static final int CONTROLS = 0;
+
+  /** Referral tag in an LDAP result. */
+  private static final int REFERRAL = 3;
+
+  /** Server SASL credentials tag in a bind response. */
+  private static final int SERVER_SASL_CREDS = 7;
+
+  /** Response name tag in an extended response. */
+  private static final int EXTENDED_RESPONSE_NAME = 10;
+
+  /** Response value tag in an extended response. */
+  private static final int EXTENDED_RESPONSE_VALUE = 11;
+
+  /** Response name tag in an intermediate response. */
+  private static final int INTERMEDIATE_RESPONSE_NAME = 0;
+
+  /** Response value tag in an intermediate response. */
+  private static final int INTERMEDIATE_RESPONSE_VALUE = 1;
+
+  /** Message ID. */
+  private final int messageId;
+
+  /** Protocol operation. */
+  private final BerElement protocolOp;
+
+  /** Response controls. */
+  private final NioControl[] controls;
+
+
+  /**
+   * Creates a new LDAP message.
+   *
+   * @param  id  message ID
+   * @param  op  protocol operation
+   * @param  c  response controls
+   */
+  private LdapMessage(final int id, final BerElement op, final NioControl[] c)
+  {
+    messageId = id;
+    protocolOp = op;
+    controls = c;
+  }
+
+
+  /**
+   * Decodes a complete LDAP message.
+   *
+   * @param  buffer  containing a single LDAP message
+   *
+   * @return  LDAP message
+   *
+   * @throws  IllegalArgumentException  if the buffer does not contain a valid LDAP message
+   */
+  static LdapMessage decode(final ByteBuffer buffer)
+  {
+    final BerElement message = BerElement.read(buffer);
+    if (message.getTag() != UniversalDERTag.SEQ) {
+      throw new IllegalArgumentException("LDAP message must be a sequence, found " + message.getTag());
+    }
+    final ByteBuffer seq = message.getValue();
+    final int id = IntegerType.decode(BerElement.read(seq).getValue()).intValue();
+    final BerElement op = BerElement.read(seq);
+    NioControl[] c = null;
+    if (seq.hasRemaining()) {
+      final BerElement ctls = BerElement.read(seq);
+      if (ctls.getTagNo() == CONTROLS && ctls.getTag().isConstructed()) {
+        c = decodeControls(ctls.getValue());
+      }
+    }
+    return new LdapMessage(id, op, c);
+  }
+
+
+  /**
+   * Returns the message ID.
+   *
+   * @return  message ID
+   */
+  int getMessageId()
+  {
+    return messageId;
+  }
+
+
+  /**
+   * Returns the tag number of the protocol operation.
+   *
+   * @return  protocol operation tag number
+   */
+  int getOperation()
+  {
+    return protocolOp.getTagNo();
+  }
+
+
+  /**
+   * Returns the response controls.
+   *
+   * @return  response controls or null
+   */
+  NioControl[] getControls()
+  {
+    return controls;
+  }
+
+
+  /**
+   * Decodes the protocol operation as an LDAP result, including the optional fields of bind and extended responses.
+   *
+   * @return  LDAP result
+   */
+  Result decodeResult()
+  {
+    final ByteBuffer op = protocolOp.getValue().duplicate();
+    final Result result = new Result();
+    result.resultCode = IntegerType.decode(BerElement.read(op).getValue()).intValue();
+    result.matchedDn = OctetStringType.decode(BerElement.read(op).getValue());
+    result.diagnosticMessage = OctetStringType.decode(BerElement.read(op).getValue());
+    while (op.hasRemaining()) {
+      final BerElement e = BerElement.read(op);
+      switch (e.getTagNo()) {
+
+      case REFERRAL:
+        result.referrals = decodeUrls(e.getValue());
+        break;
+
+      case SERVER_SASL_CREDS:
+        result.responseValue = e.getBytes();
+        break;
+
+      case EXTENDED_RESPONSE_NAME:
+        result.responseName = OctetStringType.decode(e.getValue());
+        break;
+
+      case EXTENDED_RESPONSE_VALUE:
+        result.responseValue = e.getBytes();
+        break;
+
+      default:
+        break;
+      }
+    }
+    return result;
+  }
+
+
+  /**
+   * Decodes the protocol operation as an intermediate response. Only the response name and value of the returned
+   * result are set.
+   *
+   * @return  intermediate response name and value
+   */
+  Result decodeIntermediateResponse()
+  {
+    final ByteBuffer op = protocolOp.getValue().duplicate();
+    final Result result = new Result();
+    while (op.hasRemaining()) {
+      final BerElement e = BerElement.read(op);
+      if (e.getTagNo() == INTERMEDIATE_RESPONSE_NAME) {
+        result.responseName = OctetStringType.decode(e.getValue());
+      } else if (e.getTagNo() == INTERMEDIATE_RESPONSE_VALUE) {
+        result.responseValue = e.getBytes();
+      }
+    }
+    return result;
+  }
+
+
+  /**
+   * Decodes the protocol operation as a search result entry.
+   *
+   * @param  c  response controls of the entry
+   * @param  sb  sort behavior of the entry
+   * @param  binary  predicate that determines whether an attribute is binary
+   *
+   * @return  search entry
+   */
+  SearchEntry decodeEntry(final ResponseControl[] c, final SortBehavior sb, final Predicate<String> binary)
+  {
+    final ByteBuffer op = protocolOp.getValue().duplicate();
+    final SearchEntry entry = new SearchEntry(messageId, c, sb);
+    entry.setDn(OctetStringType.decode(BerElement.read(op).getValue()));
+    final ByteBuffer attrs = BerElement.read(op).getValue();
+    while (attrs.hasRemaining()) {
+      final ByteBuffer attr = BerElement.read(attrs).getValue();
+      final String name = OctetStringType.decode(BerElement.read(attr).getValue());
+      final boolean isBinary = binary.test(name);
+      final LdapAttribute la = new LdapAttribute(sb, isBinary);
+      la.setName(name);
+      final ByteBuffer values = BerElement.read(attr).getValue();
+      while (values.hasRemaining()) {
+        final BerElement value = BerElement.read(values);
+        if (isBinary) {
+          la.addBinaryValue(value.getBytes());
+        } else {
+          la.addStringValue(OctetStringType.decode(value.getValue()));
+        }
+      }
+      entry.addAttribute(la);
+    }
+    return entry;
+  }
+
+
+  /**
+   * Decodes the protocol operation as a search result reference.
+   *
+   * @return  reference URLs
+   */
+  String[] decodeReference()
+  {
+    return decodeUrls(protocolOp.getValue().duplicate());
+  }
+
+
+  /**
+   * Decodes a sequence of URLs.
+   *
+   * @param  buffer  containing octet strings
+   *
+   * @return  URLs
+   */
+  private static String[] decodeUrls(final ByteBuffer buffer)
+  {
+    final List<String> urls = new ArrayList<>();
+    while (buffer.hasRemaining()) {
+      urls.add(OctetStringType.decode(BerElement.read(buffer).getValue()));
+    }
+    return urls.toArray(new String[urls.size()]);
+  }
+
+
+  /**
+   * Decodes a sequence of controls.
+   *
+   * @param  buffer  containing control sequences
+   *
+   * @return  controls
+   */
+  private static NioControl[] decodeControls(final ByteBuffer buffer)
+  {
+    final List<NioControl> list = new ArrayList<>();
+    while (buffer.hasRemaining()) {
+      final ByteBuffer control = BerElement.read(buffer).getValue();
+      final String oid = OctetStringType.decode(BerElement.read(control).getValue());
+      boolean critical = false;
+      byte[] value = null;
+      while (control.hasRemaining()) {
+        final BerElement e = BerElement.read(control);
+        if (e.getTag() == UniversalDERTag.BOOL) {
+          critical = BooleanType.decode(e.getValue());
+        } else {
+          value = e.getBytes();
+        }
+      }
+      list.add(new NioControl(oid, critical, value));
+    }
+    return list.toArray(new NioControl[list.size()]);
+  }
+
+
+  @Override
+  public String toString()
+  {
+    return
+      String.format(
+        "[%s@%d::messageId=%s, operation=%s, controls=%s]",
+        getClass().getName(),
+        hashCode(),
+        messageId,
+        protocolOp.getTagNo(),
+        controls != null ? controls.length : 0);
+  }
+
+
+  /** Fields of an LDAP result, bind response, extended response or intermediate response. */
+  static final class Result
+  {
+
+    /** Result code. */
+    private int resultCode;
+
+    /** Matched DN. */
+    private String matchedDn;
+
+    /** Diagnostic message. */
+    private String diagnosticMessage;
+
+    /** Referral URLs. */
+    private String[] referrals;
+
+    /** Response name. */
+    private String responseName;
+
+    /** Response value or server SASL credentials. */
+    private byte[] responseValue;
+
+
+    /**
+     * Returns the result code.
+     *
+     * @return  result code
+     */
+    int getResultCode()
+    {
+      return resultCode;
+    }
+
+
+    /**
+     * Returns the matched DN.
+     *
+     * @return  matched DN
+     */
+    String getMatchedDn()
+    {
+      return matchedDn;
+    }
+
+
+    /**
+     * Returns the diagnostic message.
+     *
+     * @return  diagnostic message
+     */
+    String getDiagnosticMessage()
+    {
+      return diagnosticMessage;
+    }
+
+
+    /**
+     * Returns the referral URLs.
+     *
+     * @return  referral URLs or null
+     */
+    String[] getReferrals()
+    {
+      return referrals;
+    }
+
+
+    /**
+     * Returns the response name.
+     *
+     * @return  response name or null
+     */
+    String getResponseName()
+    {
+      return responseName;
+    }
+
+
+    /**
+     * Returns the response value.
+     *
+     * @return  response value or null
+     */
+    byte[] getResponseValue()
+    {
+      return responseValue;
+    }
+  }
+}
@@ -0,0 +1,1105 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.provider.nio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import org.ldaptive.AddRequest;
+import org.ldaptive.BindRequest;
+import org.ldaptive.CompareRequest;
+import org.ldaptive.DeleteRequest;
+import org.ldaptive.LdapException;
+import org.ldaptive.LdapUtils;
+import org.ldaptive.ModifyDnRequest;
+import org.ldaptive.ModifyRequest;
+import org.ldaptive.Response;
+import org.ldaptive.ResultCode;
+import org.ldaptive.SearchReference;
+import org.ldaptive.SearchRequest;
+import org.ldaptive.asn1.DEREncoder;
+import org.ldaptive.async.AsyncRequest;
+import org.ldaptive.control.RequestControl;
+import org.ldaptive.control.ResponseControl;
+import org.ldaptive.extended.ExtendedRequest;
+import org.ldaptive.extended.ExtendedResponse;
+import org.ldaptive.extended.ExtendedResponseFactory;
+import org.ldaptive.extended.UnsolicitedNotificationListener;
+import org.ldaptive.intermediate.IntermediateResponseFactory;
+import org.ldaptive.provider.ConnectionException;
+import org.ldaptive.provider.MultiplexedProviderConnection;
+import org.ldaptive.provider.ProviderUtils;
+import org.ldaptive.provider.SearchItem;
+import org.ldaptive.provider.SearchIterator;
+import org.ldaptive.provider.SearchListener;
+import org.ldaptive.sasl.Mechanism;
+import org.ldaptive.sasl.SaslConfig;
+import org.ldaptive.schema.BinaryAttributeDetector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Nio provider implementation of ldap operations. Requests are encoded with {@link RequestEncoder} and written to the
+ * transport by the calling thread. Responses are read by a dedicated thread and dispatched by message ID, so multiple
+ * operations may be outstanding on the same connection.
+ *
+ * @author  Middleware Services
+ */
+public class NioConnection implements MultiplexedProviderConnection
+{
+
+  /** Attribute option that indicates binary transfer. */
+  private static final String BINARY_OPTION = ";binary";
+
+  /** Logger for this class. */
+  protected final Logger logger = LoggerFactory.getLogger(getClass());
+
+  /** Transport to read and write messages. */
+  private final NioTransport transport;
+
+  /** Provider configuration. */
+  private final NioProviderConfig config;
+
+  /** Amount of time to wait for a response, null or zero to wait indefinitely. */
+  private final Duration responseTimeout;
+
+  /** Next message ID. */
+  private final AtomicInteger messageId = new AtomicInteger();
+
+  /** Operations awaiting a response. */
+  private final Map<Integer, PendingOperation> pending = new ConcurrentHashMap<>();
+
+  /** Threads consuming searches whose handling performs operations on this connection, by number of registrations. */
+  private final Map<Thread, Integer> nestedOperations = new ConcurrentHashMap<>();
+
+  /** Receives unsolicited notifications. */
+  private final List<UnsolicitedNotificationListener> notificationListeners = new CopyOnWriteArrayList<>();
+
+  /** Thread that reads responses. */
+  private final Thread reader;
+
+  /** Whether this connection has been closed. */
+  private volatile boolean closed;
+
+
+  /**
+   * Creates a new nio connection and starts reading responses from the supplied transport.
+   *
+   * @param  t  transport to read and write messages
+   * @param  pc  provider configuration
+   * @param  timeout  amount of time to wait for a response, null or zero to wait indefinitely
+   */
+  public NioConnection(final NioTransport t, final NioProviderConfig pc, final Duration timeout)
+  {
+    transport = t;
+    config = pc;
+    responseTimeout = timeout;
+    reader = new Thread(this::readMessages, "ldaptive-" + NioConnection.class.getSimpleName());
+    reader.setDaemon(true);
+    reader.start();
+  }
+
+
+  /**
+   * Returns the transport.
+   *
+   * @return  transport
+   */
+  public NioTransport getTransport()
+  {
+    return transport;
+  }
+
+
+  /**
+   * Returns whether this connection is open.
+   *
+   * @return  whether this connection is open
+   */
+  public boolean isOpen()
+  {
+    return !closed && transport.getChannel().isOpen();
+  }
+
+
+  @Override
+  public boolean isMultiplexingEnabled()
+  {
+    return true;
+  }
+
+
+  @Override
+  public void close(final RequestControl[] controls)
+    throws LdapException
+  {
+    if (!closed) {
+      closed = true;
+      try {
+        transport.write(
+          RequestEncoder.encode(
+            nextMessageId(),
+            RequestEncoder.unbind(),
+            config.getControlProcessor().processRequestControls(controls)));
+      } catch (IOException e) {
+        logger.debug("Error writing unbind request", e);
+      } finally {
+        try {
+          transport.close();
+        } catch (IOException e) {
+          logger.debug("Error closing transport", e);
+        }
+        failPending(new ConnectionException("Connection closed", ResultCode.SERVER_DOWN));
+      }
+    }
+  }
+
+
+  @Override
+  public Response<Void> bind(final BindRequest request)
+    throws LdapException
+  {
+    final DEREncoder op;
+    if (request.getSaslConfig() != null) {
+      final SaslConfig sc = request.getSaslConfig();
+      if (sc.getMechanism() != Mechanism.EXTERNAL) {
+        throw new UnsupportedOperationException("SASL mechanism not supported: " + sc.getMechanism());
+      }
+      op = RequestEncoder.saslBind(
+        null,
+        Mechanism.EXTERNAL.name(),
+        sc.getAuthorizationId() != null ? LdapUtils.utf8Encode(sc.getAuthorizationId()) : null);
+    } else {
+      op = RequestEncoder.simpleBind(
+        request.getDn(),
+        request.getCredential() != null ? request.getCredential().getBytes() : null);
+    }
+    final LdapMessage message = execute(op, request.getControls());
+    final LdapMessage.Result result = message.decodeResult();
+    throwOnError(message, result);
+    return createResponse(null, message, result);
+  }
+
+
+  @Override
+  public Response<Void> add(final AddRequest request)
+    throws LdapException
+  {
+    return executeUpdate(RequestEncoder.add(request), request.getControls());
+  }
+
+
+  @Override
+  public Response<Boolean> compare(final CompareRequest request)
+    throws LdapException
+  {
+    final LdapMessage message = execute(RequestEncoder.compare(request), request.getControls());
+    final LdapMessage.Result result = message.decodeResult();
+    throwOnError(message, result);
+    return createResponse(result.getResultCode() == ResultCode.COMPARE_TRUE.value(), message, result);
+  }
+
+
+  @Override
+  public Response<Void> delete(final DeleteRequest request)
+    throws LdapException
+  {
+    return executeUpdate(RequestEncoder.delete(request.getDn()), request.getControls());
+  }
+
+
+  @Override
+  public Response<Void> modify(final ModifyRequest request)
+    throws LdapException
+  {
+    return executeUpdate(RequestEncoder.modify(request), request.getControls());
+  }
+
+
+  @Override
+  public Response<Void> modifyDn(final ModifyDnRequest request)
+    throws LdapException
+  {
+    return executeUpdate(RequestEncoder.modifyDn(request), request.getControls());
+  }
+
+
+  @Override
+  public SearchIterator search(final SearchRequest request)
+    throws LdapException
+  {
+    final NioSearchIterator i = new NioSearchIterator(request);
+    i.setMessageId(send(encodeSearch(request), request.getControls(), i));
+    return i;
+  }
+
+
+  @Override
+  public void searchAsync(final SearchRequest request, final SearchListener listener)
+    throws LdapException
+  {
+    final DEREncoder op = encodeSearch(request);
+    final int id = nextMessageId();
+    listener.asyncRequestReceived(new NioAsyncRequest(id));
+    send(id, op, request.getControls(), new NioAsyncSearch(request, listener));
+  }
+
+
+  @Override
+  public void abandon(final int id, final RequestControl[] controls)
+    throws LdapException
+  {
+    pending.remove(id);
+    send(RequestEncoder.abandon(id), controls, null);
+  }
+
+
+  @Override
+  public Response<?> extendedOperation(final ExtendedRequest request)
+    throws LdapException
+  {
+    final LdapMessage message = execute(
+      RequestEncoder.extended(request.getOID(), request.encode()),
+      request.getControls());
+    final LdapMessage.Result result = message.decodeResult();
+    throwOnError(message, result);
+    final ExtendedResponse<?> extRes = ExtendedResponseFactory.createExtendedResponse(
+      request.getOID(),
+      result.getResponseName(),
+      result.getResponseValue());
+    return createResponse(extRes.getValue(), message, result);
+  }
+
+
+  @Override
+  public void beginNestedOperations()
+  {
+    nestedOperations.merge(Thread.currentThread(), 1, Integer::sum);
+  }
+
+
+  @Override
+  public void endNestedOperations()
+  {
+    nestedOperations.computeIfPresent(Thread.currentThread(), (t, n) -> n > 1 ? n - 1 : null);
+  }
+
+
+  @Override
+  public void addUnsolicitedNotificationListener(final UnsolicitedNotificationListener listener)
+  {
+    notificationListeners.add(listener);
+  }
+
+
+  @Override
+  public void removeUnsolicitedNotificationListener(final UnsolicitedNotificationListener listener)
+  {
+    notificationListeners.remove(listener);
+  }
+
+
+  /**
+   * Executes an add, delete, modify or modify DN operation.
+   *
+   * @param  op  protocol operation
+   * @param  controls  request controls
+   *
+   * @return  response
+   *
+   * @throws  LdapException  if the operation fails
+   */
+  protected Response<Void> executeUpdate(final DEREncoder op, final RequestControl[] controls)
+    throws LdapException
+  {
+    final LdapMessage message = execute(op, controls);
+    final LdapMessage.Result result = message.decodeResult();
+    throwOnError(message, result);
+    return createResponse(null, message, result);
+  }
+
+
+  /**
+   * Sends the supplied operation and waits for its response.
+   *
+   * @param  op  protocol operation
+   * @param  controls  request controls
+   *
+   * @return  response message
+   *
+   * @throws  LdapException  if the operation cannot be sent or no response is received
+   */
+  protected LdapMessage execute(final DEREncoder op, final RequestControl[] controls)
+    throws LdapException
+  {
+    final ResponseFuture future = new ResponseFuture();
+    final int id = send(op, controls, future);
+    try {
+      final LdapMessage message;
+      if (responseTimeout != null && !responseTimeout.isZero()) {
+        message = future.get(responseTimeout.toMillis(), TimeUnit.MILLISECONDS);
+      } else {
+        message = future.get();
+      }
+      return message;
+    } catch (TimeoutException e) {
+      abandonPending(id);
+      throw new LdapException("No response received in " + responseTimeout, e, ResultCode.LDAP_TIMEOUT);
+    } catch (InterruptedException e) {
+      abandonPending(id);
+      Thread.currentThread().interrupt();
+      throw new LdapException("Interrupted waiting for response", e);
+    } catch (ExecutionException e) {
+      throw toLdapException(e.getCause());
+    }
+  }
+
+
+  /**
+   * Encodes the supplied search request.
+   *
+   * @param  request  to encode
+   *
+   * @return  search operation
+   *
+   * @throws  LdapException  if the search filter cannot be encoded
+   */
+  protected DEREncoder encodeSearch(final SearchRequest request)
+    throws LdapException
+  {
+    try {
+      return RequestEncoder.search(request);
+    } catch (IllegalArgumentException e) {
+      throw new LdapException(e, ResultCode.FILTER_ERROR);
+    }
+  }
+
+
+  /**
+   * Returns the message ID that follows the supplied ID. Message IDs are positive, so the ID after {@link
+   * Integer#MAX_VALUE} is one.
+   *
+   * @param  id  previous message ID
+   *
+   * @return  next message ID
+   */
+  static int nextMessageId(final int id)
+  {
+    return id <= 0 || id == Integer.MAX_VALUE ? 1 : id + 1;
+  }
+
+
+  /**
+   * Returns a new message ID, skipping any ID still in use by an operation awaiting a response.
+   *
+   * @return  message ID
+   */
+  protected int nextMessageId()
+  {
+    int id = messageId.updateAndGet(NioConnection::nextMessageId);
+    while (pending.containsKey(id)) {
+      id = messageId.updateAndGet(NioConnection::nextMessageId);
+    }
+    return id;
+  }
+
+
+  /**
+   * Sends the supplied operation with a new message ID.
+   *
+   * @param  op  protocol operation
+   * @param  controls  request controls
+   * @param  operation  to receive responses or null if no response is expected
+   *
+   * @return  message ID of the request
+   *
+   * @throws  LdapException  if the request cannot be written
+   */
+  protected int send(final DEREncoder op, final RequestControl[] controls, final PendingOperation operation)
+    throws LdapException
+  {
+    final int id = nextMessageId();
+    send(id, op, controls, operation);
+    return id;
+  }
+
+
+  /**
+   * Sends the supplied operation.
+   *
+   * @param  id  message ID
+   * @param  op  protocol operation
+   * @param  controls  request controls
+   * @param  operation  to receive responses or null if no response is expected
+   *
+   * @throws  LdapException  if the request cannot be written
+   */
+  protected void send(
+    final int id,
+    final DEREncoder op,
+    final RequestControl[] controls,
+    final PendingOperation operation)
+    throws LdapException
+  {
+    if (closed) {
+      throw new ConnectionException("Connection is closed", ResultCode.SERVER_DOWN);
+    }
+    final byte[] message = RequestEncoder.encode(
+      id,
+      op,
+      config.getControlProcessor().processRequestControls(controls));
+    if (operation != null) {
+      pending.put(id, operation);
+    }
+    try {
+      transport.write(message);
+    } catch (IOException e) {
+      pending.remove(id);
+      throw new ConnectionException(e, ResultCode.SERVER_DOWN);
+    }
+  }
+
+
+  /**
+   * Abandons the operation with the supplied message ID when its response is no longer wanted, because the response
+   * timeout expired or the waiting thread was interrupted.
+   *
+   * @param  id  message ID
+   */
+  private void abandonPending(final int id)
+  {
+    try {
+      abandon(id, null);
+    } catch (LdapException e) {
+      logger.debug("Error abandoning operation {}", id, e);
+    }
+  }
+
+
+  /**
+   * Creates a response from the supplied message.
+   *
+   * @param  <T>  type of response
+   * @param  value  of the response
+   * @param  message  containing the result
+   * @param  result  decoded from the message
+   *
+   * @return  response
+   */
+  protected <T> Response<T> createResponse(final T value, final LdapMessage message, final LdapMessage.Result result)
+  {
+    return
+      new Response<>(
+        value,
+        ResultCode.valueOf(result.getResultCode()),
+        emptyToNull(result.getDiagnosticMessage()),
+        emptyToNull(result.getMatchedDn()),
+        config.getControlProcessor().processResponseControls(message.getControls()),
+        result.getReferrals(),
+        message.getMessageId());
+  }
+
+
+  /**
+   * Throws an exception if the supplied result does not indicate success.
+   *
+   * @param  message  containing the result
+   * @param  result  decoded from the message
+   *
+   * @throws  LdapException  if the result code is not a success code
+   */
+  protected void throwOnError(final LdapMessage message, final LdapMessage.Result result)
+    throws LdapException
+  {
+    final ResultCode rc = ResultCode.valueOf(result.getResultCode());
+    if (rc != ResultCode.SUCCESS && rc != ResultCode.COMPARE_FALSE && rc != ResultCode.COMPARE_TRUE &&
+        rc != ResultCode.REFERRAL && rc != ResultCode.SASL_BIND_IN_PROGRESS) {
+      ProviderUtils.throwOperationException(
+        config.getOperationExceptionResultCodes(),
+        String.format(
+          "Operation failed with resultCode=%s, matchedDn=%s, message=%s",
+          rc != null ? rc : result.getResultCode(),
+          result.getMatchedDn(),
+          result.getDiagnosticMessage()),
+        result.getResultCode(),
+        emptyToNull(result.getMatchedDn()),
+        config.getControlProcessor().processResponseControls(message.getControls()),
+        result.getReferrals(),
+        true);
+    }
+  }
+
+
+  /**
+   * Reads messages from the transport until it is closed. Invoked by the reader thread.
+   */
+  private void readMessages()
+  {
+    Exception failure = null;
+    try {
+      ByteBuffer buffer = transport.readMessage();
+      while (buffer != null) {
+        dispatch(LdapMessage.decode(buffer));
+        buffer = closed ? null : transport.readMessage();
+      }
+    } catch (Exception e) {
+      failure = e;
+      if (!closed) {
+        logger.debug("Error reading from {}", transport, e);
+      }
+    } finally {
+      closed = true;
+      try {
+        transport.close();
+      } catch (IOException e) {
+        logger.debug("Error closing transport", e);
+      }
+      failPending(
+        failure != null ? new ConnectionException(failure, ResultCode.SERVER_DOWN)
+                        : new ConnectionException("Connection closed by server", ResultCode.SERVER_DOWN));
+    }
+  }
+
+
+  /**
+   * Dispatches the supplied message to the operation that is waiting for it.
+   *
+   * @param  message  to dispatch
+   */
+  private void dispatch(final LdapMessage message)
+  {
+    logger.trace("received message {}", message);
+    if (message.getMessageId() == 0) {
+      notificationReceived(message);
+    } else {
+      final PendingOperation operation = pending.get(message.getMessageId());
+      if (operation == null) {
+        logger.debug("Discarding message for unknown operation {}", message);
+      } else {
+        try {
+          if (operation.messageReceived(message)) {
+            pending.remove(message.getMessageId());
+          }
+        } catch (RuntimeException e) {
+          logger.debug("Error processing message {}", message, e);
+          pending.remove(message.getMessageId());
+          operation.failed(new LdapException("Error decoding response", e, ResultCode.DECODING_ERROR));
+        }
+      }
+    }
+  }
+
+
+  /**
+   * Notifies listeners of an unsolicited notification. A notice of disconnection closes this connection.
+   *
+   * @param  message  unsolicited notification
+   */
+  private void notificationReceived(final LdapMessage message)
+  {
+    final LdapMessage.Result result = message.decodeResult();
+    final Response<Void> response = createResponse(null, message, result);
+    for (UnsolicitedNotificationListener listener : notificationListeners) {
+      listener.notificationReceived(result.getResponseName(), response);
+    }
+    if (UnsolicitedNotificationListener.NOTICE_OF_DISCONNECTION_OID.equals(result.getResponseName())) {
+      closed = true;
+    }
+  }
+
+
+  /**
+   * Fails all pending operations with the supplied exception.
+   *
+   * @param  e  exception to fail operations with
+   */
+  private void failPending(final LdapException e)
+  {
+    for (Integer id : pending.keySet()) {
+      final PendingOperation operation = pending.remove(id);
+      if (operation != null) {
+        operation.failed(e);
+      }
+    }
+  }
+
+
+  /**
+   * Converts the supplied search response message to a search item.
+   *
+   * @param  message  search result entry, reference or intermediate response
+   * @param  request  search request
+   * @param  binary  predicate that determines whether an attribute is binary
+   *
+   * @return  search item or null if the message is not a search item
+   */
+  private SearchItem toSearchItem(
+    final LdapMessage message,
+    final SearchRequest request,
+    final Predicate<String> binary)
+  {
+    final ResponseControl[] controls = config.getControlProcessor().processResponseControls(message.getControls());
+    SearchItem item = null;
+    switch (message.getOperation()) {
+
+    case LdapMessage.SEARCH_RESULT_ENTRY:
+      item = new SearchItem(message.decodeEntry(controls, request.getSortBehavior(), binary));
+      break;
+
+    case LdapMessage.SEARCH_RESULT_REFERENCE:
+      item = new SearchItem(new SearchReference(message.getMessageId(), controls, message.decodeReference()));
+      break;
+
+    case LdapMessage.INTERMEDIATE_RESPONSE:
+      final LdapMessage.Result result = message.decodeIntermediateResponse();
+      item = new SearchItem(
+        IntermediateResponseFactory.createIntermediateResponse(
+          result.getResponseName(),
+          result.getResponseValue(),
+          controls,
+          message.getMessageId()));
+      break;
+
+    default:
+      break;
+    }
+    return item;
+  }
+
+
+  /**
+   * Returns a predicate that determines whether an attribute in the response to the supplied request is binary.
+   *
+   * @param  request  search request
+   *
+   * @return  binary attribute predicate
+   */
+  private Predicate<String> createBinaryPredicate(final SearchRequest request)
+  {
+    final Set<String> names = new HashSet<>();
+    if (request.getBinaryAttributes() != null) {
+      for (String name : request.getBinaryAttributes()) {
+        names.add(name.toLowerCase());
+      }
+    }
+    final BinaryAttributeDetector detector = config.getBinaryAttributeDetector();
+    return
+      name -> {
+        final String lower = name.toLowerCase();
+        return
+          lower.contains(BINARY_OPTION) || names.contains(lower) || (detector != null && detector.isBinary(name));
+      };
+  }
+
+
+  /**
+   * Returns whether the supplied result code should be ignored for searches.
+   *
+   * @param  code  result code
+   *
+   * @return  whether the result code should be ignored
+   */
+  private boolean ignoreSearchResultCode(final ResultCode code)
+  {
+    boolean ignore = false;
+    if (config.getSearchIgnoreResultCodes() != null) {
+      for (ResultCode rc : config.getSearchIgnoreResultCodes()) {
+        if (rc == code) {
+          logger.debug("Ignoring search result code {}", code);
+          ignore = true;
+          break;
+        }
+      }
+    }
+    return ignore;
+  }
+
+
+  /**
+   * Converts the supplied throwable to an ldap exception.
+   *
+   * @param  t  to convert
+   *
+   * @return  ldap exception
+   */
+  private static LdapException toLdapException(final Throwable t)
+  {
+    final LdapException e;
+    if (t instanceof LdapException) {
+      e = (LdapException) t;
+    } else if (t instanceof Exception) {
+      e = new ConnectionException((Exception) t, ResultCode.SERVER_DOWN);
+    } else {
+      e = new LdapException(new RuntimeException(t));
+    }
+    return e;
+  }
+
+
+  /**
+   * Returns null if the supplied string is empty.
+   *
+   * @param  s  to inspect
+   *
+   * @return  null or s
+   */
+  private static String emptyToNull(final String s)
+  {
+    return s != null && !s.isEmpty() ? s : null;
+  }
+
+
+  @Override
+  public String toString()
+  {
+    return
+      String.format(
+        "[%s@%d::transport=%s, config=%s, responseTimeout=%s, pending=%s, closed=%s]",
+        getClass().getName(),
+        hashCode(),
+        transport,
+        config,
+        responseTimeout,
+        pending.size(),
+        closed);
+  }
+
+
+  /** Operation that is waiting for one or more response messages. */
+  protected interface PendingOperation
+  {
+
+
+    /**
+     * Invoked when a message for this operation is received.
+     *
+     * @param  message  response message
+     *
+     * @return  whether the operation is complete
+     */
+    boolean messageReceived(LdapMessage message);
+
+
+    /**
+     * Invoked when the operation cannot be completed.
+     *
+     * @param  e  cause of the failure
+     */
+    void failed(LdapException e);
+  }
+
+
+  /** Pending operation that completes with a single response message. */
+  protected static class ResponseFuture extends CompletableFuture<LdapMessage> implements PendingOperation
+  {
+
+
+    @Override
+    public boolean messageReceived(final LdapMessage message)
+    {
+      // intermediate responses are only processed for searches
+      final boolean done = message.getOperation() != LdapMessage.INTERMEDIATE_RESPONSE;
+      if (done) {
+        complete(message);
+      }
+      return done;
+    }
+
+
+    @Override
+    public void failed(final LdapException e)
+    {
+      completeExceptionally(e);
+    }
+  }
+
+
+  /** Async request that abandons an operation on this connection. */
+  protected class NioAsyncRequest implements AsyncRequest
+  {
+
+    /** Message ID of the operation. */
+    private final int id;
+
+
+    /**
+     * Creates a new nio async request.
+     *
+     * @param  i  message ID
+     */
+    public NioAsyncRequest(final int i)
+    {
+      id = i;
+    }
+
+
+    @Override
+    public int getMessageId()
+    {
+      return id;
+    }
+
+
+    @Override
+    public void abandon()
+      throws LdapException
+    {
+      abandon(null);
+    }
+
+
+    @Override
+    public void abandon(final RequestControl[] controls)
+      throws LdapException
+    {
+      NioConnection.this.abandon(id, controls);
+    }
+  }
+
+
+  /**
+   * Search iterator that reads search items as they are dispatched by the reader thread. The reader thread never waits
+   * for the consumer, since every operation on this connection shares it. Instead, once {@link
+   * NioProviderConfig#getSearchQueueCapacity()} items are waiting the search is abandoned and the consumer receives an
+   * exception after the queued items. Searches consumed by a thread that has invoked {@link #beginNestedOperations()}
+   * are not limited.
+   */
+  protected class NioSearchIterator implements SearchIterator, PendingOperation
+  {
+
+    /** Search request. */
+    private final SearchRequest request;
+
+    /** Determines whether attributes are binary. */
+    private final Predicate<String> binary;
+
+    /** Search items, the search result done message or a failure. */
+    private final BlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+
+    /** Maximum number of search items queued before the search is abandoned. */
+    private final int capacity = config.getSearchQueueCapacity();
+
+    /** Thread consuming search items. */
+    private volatile Thread consumer = Thread.currentThread();
+
+    /** Message ID of the search. */
+    private int searchId;
+
+    /** Next search item. */
+    private SearchItem next;
+
+    /** Search response. */
+    private Response<Void> response;
+
+
+    /**
+     * Creates a new nio search iterator.
+     *
+     * @param  sr  search request
+     */
+    public NioSearchIterator(final SearchRequest sr)
+    {
+      request = sr;
+      binary = createBinaryPredicate(sr);
+    }
+
+
+    /**
+     * Sets the message ID of the search.
+     *
+     * @param  id  message ID
+     */
+    void setMessageId(final int id)
+    {
+      searchId = id;
+    }
+
+
+    @Override
+    public boolean messageReceived(final LdapMessage message)
+    {
+      boolean done = message.getOperation() == LdapMessage.SEARCH_RESULT_DONE;
+      if (done) {
+        queue.add(message);
+      } else {
+        final SearchItem item = toSearchItem(message, request, binary);
+        if (item != null) {
+          if (queue.size() < capacity || nestedOperations.containsKey(consumer)) {
+            queue.add(item);
+          } else {
+            logger.debug("Abandoning search {}, {} items are queued for {}", searchId, queue.size(), consumer);
+            queue.add(
+              new LdapException(
+                "Search abandoned, consumer did not keep up with " + capacity + " queued search items",
+                ResultCode.LOCAL_ERROR));
+            abandonPending(searchId);
+            done = true;
+          }
+        }
+      }
+      return done;
+    }
+
+
+    @Override
+    public void failed(final LdapException e)
+    {
+      queue.add(e);
+    }
+
+
+    @Override
+    public boolean hasNext()
+      throws LdapException
+    {
+      if (next == null && response == null) {
+        final Object o = poll();
+        if (o instanceof SearchItem) {
+          next = (SearchItem) o;
+        } else if (o instanceof LdapMessage) {
+          final LdapMessage message = (LdapMessage) o;
+          final LdapMessage.Result result = message.decodeResult();
+          if (!ignoreSearchResultCode(ResultCode.valueOf(result.getResultCode()))) {
+            throwOnError(message, result);
+          }
+          response = createResponse(null, message, result);
+        } else {
+          throw (LdapException) o;
+        }
+      }
+      return next != null;
+    }
+
+
+    @Override
+    public SearchItem next()
+      throws LdapException
+    {
+      hasNext();
+      final SearchItem item = next;
+      next = null;
+      return item;
+    }
+
+
+    @Override
+    public Response<Void> getResponse()
+    {
+      return response;
+    }
+
+
+    @Override
+    public void close()
+      throws LdapException
+    {
+      if (response == null && pending.containsKey(searchId)) {
+        abandon(searchId, null);
+        response = new Response<>(
+          null,
+          ResultCode.SUCCESS,
+          "Search abandoned before completion",
+          null,
+          null,
+          null,
+          searchId);
+      }
+    }
+
+
+    /**
+     * Waits for the next queued object.
+     *
+     * @return  search item, search result done message or exception
+     *
+     * @throws  LdapException  if the response timeout expires or the thread is interrupted
+     */
+    private Object poll()
+      throws LdapException
+    {
+      consumer = Thread.currentThread();
+      try {
+        final Object o;
+        if (responseTimeout != null && !responseTimeout.isZero()) {
+          o = queue.poll(responseTimeout.toMillis(), TimeUnit.MILLISECONDS);
+          if (o == null) {
+            abandonPending(searchId);
+            throw new LdapException("No response received in " + responseTimeout, ResultCode.LDAP_TIMEOUT);
+          }
+        } else {
+          o = queue.take();
+        }
+        return o;
+      } catch (InterruptedException e) {
+        abandonPending(searchId);
+        Thread.currentThread().interrupt();
+        throw new LdapException("Interrupted waiting for search response", e);
+      }
+    }
+  }
+
+
+  /** Pending search operation that notifies a search listener. */
+  protected class NioAsyncSearch implements PendingOperation
+  {
+
+    /** Search request. */
+    private final SearchRequest request;
+
+    /** Search listener. */
+    private final SearchListener listener;
+
+    /** Determines whether attributes are binary. */
+    private final Predicate<String> binary;
+
+
+    /**
+     * Creates a new nio async search.
+     *
+     * @param  sr  search request
+     * @param  sl  search listener
+     */
+    public NioAsyncSearch(final SearchRequest sr, final SearchListener sl)
+    {
+      request = sr;
+      listener = sl;
+      binary = createBinaryPredicate(sr);
+    }
+
+
+    @Override
+    public boolean messageReceived(final LdapMessage message)
+    {
+      final boolean done = message.getOperation() == LdapMessage.SEARCH_RESULT_DONE;
+      if (done) {
+        listener.responseReceived(createResponse(null, message, message.decodeResult()));
+      } else {
+        final SearchItem item = toSearchItem(message, request, binary);
+        if (item != null) {
+          listener.searchItemReceived(item);
+        }
+      }
+      return done;
+    }
+
+
+    @Override
+    public void failed(final LdapException e)
+    {
+      listener.exceptionReceived(e);
+    }
+  }
+}
@@ -0,0 +1,175 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.provider.nio;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLPeerUnverifiedException;
+import org.ldaptive.ConnectionConfig;
+import org.ldaptive.LdapException;
+import org.ldaptive.LdapURL;
+import org.ldaptive.ResultCode;
+import org.ldaptive.provider.AbstractProviderConnectionFactory;
+import org.ldaptive.provider.ConnectionException;
+import org.ldaptive.ssl.SslConfig;
+
+/**
+ * Creates ldap connections using non-blocking I/O primitives. LDAPS connections and startTLS are negotiated with an
+ * {@link SSLEngine}, hostname verification is performed after the handshake.
+ *
+ * @author  Middleware Services
+ */
+public class NioConnectionFactory extends AbstractProviderConnectionFactory<NioProviderConfig>
+{
+
+  /** OID of the startTLS extended operation. */
+  private static final String START_TLS_OID = "1.3.6.1.4.1.1466.20037";
+
+  /** Connection configuration. */
+  private final ConnectionConfig connectionConfig;
+
+  /** SSL context for LDAPS and startTLS connections. */
+  private final SSLContext sslContext;
+
+  /** Hostname verifier for LDAPS and startTLS connections. */
+  private final HostnameVerifier hostnameVerifier;
+
+
+  /**
+   * Creates a new nio connection factory.
+   *
+   * @param  config  provider configuration
+   * @param  cc  connection configuration
+   * @param  context  SSL context for LDAPS and startTLS connections, may be null if neither is used
+   * @param  verifier  hostname verifier for LDAPS and startTLS connections, may be null if neither is used
+   */
+  public NioConnectionFactory(
+    final NioProviderConfig config,
+    final ConnectionConfig cc,
+    final SSLContext context,
+    final HostnameVerifier verifier)
+  {
+    super(cc.getLdapUrl(), cc.getConnectionStrategy(), config);
+    connectionConfig = cc;
+    sslContext = context;
+    hostnameVerifier = verifier;
+  }
+
+
+  @Override
+  protected NioConnection createInternal(final String url)
+    throws LdapException
+  {
+    final LdapURL.Entry entry = new LdapURL(url).getLastEntry();
+    final boolean useSsl = connectionConfig.getUseSSL() || "ldaps".equalsIgnoreCase(entry.getScheme());
+    SocketChannel channel = null;
+    try {
+      channel = SocketChannel.open();
+      final Duration connectTimeout = connectionConfig.getConnectTimeout();
+      channel.socket().connect(
+        new InetSocketAddress(entry.getHostname(), entry.getPort()),
+        connectTimeout != null ? (int) connectTimeout.toMillis() : 0);
+      final NioTransport transport;
+      if (useSsl) {
+        transport = createTlsTransport(channel, entry);
+      } else if (connectionConfig.getUseStartTLS()) {
+        startTLS(new NioTransport(channel));
+        transport = createTlsTransport(channel, entry);
+      } else {
+        transport = new NioTransport(channel);
+      }
+      return new NioConnection(transport, getProviderConfig(), connectionConfig.getResponseTimeout());
+    } catch (IOException e) {
+      closeQuietly(channel);
+      throw new ConnectionException(e, ResultCode.CONNECT_ERROR);
+    } catch (LdapException | RuntimeException e) {
+      closeQuietly(channel);
+      throw e;
+    }
+  }
+
+
+  /**
+   * Performs the TLS handshake on the supplied channel and verifies the hostname of the peer.
+   *
+   * @param  channel  connected socket channel
+   * @param  entry  LDAP URL of the peer
+   *
+   * @return  TLS transport
+   *
+   * @throws  IOException  if the handshake or hostname verification fails
+   */
+  protected NioTlsTransport createTlsTransport(final SocketChannel channel, final LdapURL.Entry entry)
+    throws IOException
+  {
+    if (sslContext == null) {
+      throw new IllegalStateException("No SSL context configured for " + entry.getUrl());
+    }
+    final SSLEngine engine = sslContext.createSSLEngine(entry.getHostname(), entry.getPort());
+    engine.setUseClientMode(true);
+    final SslConfig sslConfig = connectionConfig.getSslConfig();
+    if (sslConfig != null) {
+      if (sslConfig.getEnabledCipherSuites() != null) {
+        engine.setEnabledCipherSuites(sslConfig.getEnabledCipherSuites());
+      }
+      if (sslConfig.getEnabledProtocols() != null) {
+        engine.setEnabledProtocols(sslConfig.getEnabledProtocols());
+      }
+    }
+    final NioTlsTransport transport = new NioTlsTransport(channel, engine);
+    transport.handshake();
+    if (hostnameVerifier != null && !hostnameVerifier.verify(entry.getHostname(), transport.getSession())) {
+      throw new SSLPeerUnverifiedException("Hostname verification failed for " + entry.getHostname());
+    }
+    return transport;
+  }
+
+
+  /**
+   * Sends a startTLS extended request on the supplied transport and waits for the response. Must be invoked before any
+   * other messages are written to the transport.
+   *
+   * @param  transport  plain transport
+   *
+   * @throws  IOException  if the request cannot be written or the response cannot be read
+   * @throws  LdapException  if the server rejects the request
+   */
+  protected void startTLS(final NioTransport transport)
+    throws IOException, LdapException
+  {
+    transport.write(RequestEncoder.encode(1, RequestEncoder.extended(START_TLS_OID, null), null));
+    final ByteBuffer buffer = transport.readMessage();
+    if (buffer == null) {
+      throw new ConnectionException("Connection closed during startTLS", ResultCode.CONNECT_ERROR);
+    }
+    final LdapMessage message = LdapMessage.decode(buffer);
+    final LdapMessage.Result result = message.decodeResult();
+    if (result.getResultCode() != ResultCode.SUCCESS.value()) {
+      throw new ConnectionException(
+        "StartTLS failed with resultCode=" + result.getResultCode() + ", message=" + result.getDiagnosticMessage(),
+        ResultCode.valueOf(result.getResultCode()));
+    }
+  }
+
+
+  /**
+   * Closes the supplied channel, ignoring any errors.
+   *
+   * @param  channel  to close, may be null
+   */
+  private void closeQuietly(final SocketChannel channel)
+  {
+    if (channel != null) {
+      try {
+        channel.close();
+      } catch (IOException e) {
+        logger.debug("Problem closing channel", e);
+      }
+    }
+  }
+}
@@ -0,0 +1,84 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.provider.nio;
+
+import java.util.Arrays;
+
+/**
+ * Control as it is transmitted on the wire: an OID, a criticality and an optional BER encoded value.
+ *
+ * @author  Middleware Services
+ */
+public class NioControl
+{
+
+  /** Control OID. */
+  private final String oid;
+
+  /** Control criticality. */
+  private final boolean critical;
+
+  /** Encoded control value. */
+  private final byte[] value;
+
+
+  /**
+   * Creates a new nio control.
+   *
+   * @param  id  OID of the control
+   * @param  b  criticality of the control
+   * @param  v  encoded value of the control, may be null
+   */
+  public NioControl(final String id, final boolean b, final byte[] v)
+  {
+    oid = id;
+    critical = b;
+    value = v;
+  }
+
+
+  /**
+   * Returns the OID.
+   *
+   * @return  control OID
+   */
+  public String getOID()
+  {
+    return oid;
+  }
+
+
+  /**
+   * Returns whether this control is critical.
+   *
+   * @return  control criticality
+   */
+  public boolean getCriticality()
+  {
+    return critical;
+  }
+
+
+  /**
+   * Returns the encoded value.
+   *
+   * @return  control value or null
+   */
+  public byte[] getValue()
+  {
+    return value;
+  }
+
+
+  @Override
+  public String toString()
+  {
+    return
+      String.format(
+        "[%s@%d::oid=%s, critical=%s, value=%s]",
+        getClass().getName(),
+        hashCode(),
+        oid,
+        critical,
+        Arrays.toString(value));
+  }
+}
@@ -0,0 +1,48 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.provider.nio;
+
+import org.ldaptive.control.ControlFactory;
+import org.ldaptive.control.RequestControl;
+import org.ldaptive.control.ResponseControl;
+import org.ldaptive.provider.ControlHandler;
+
+/**
+ * Nio control handler.
+ *
+ * @author  Middleware Services
+ */
+public class NioControlHandler implements ControlHandler<NioControl>
+{
+
+
+  @Override
+  public Class<NioControl> getControlType()
+  {
+    return NioControl.class;
+  }
+
+
+  @Override
+  public String getOID(final NioControl control)
+  {
+    return control.getOID();
+  }
+
+
+  @Override
+  public NioControl handleRequest(final RequestControl requestControl)
+  {
+    return new NioControl(requestControl.getOID(), requestControl.getCriticality(), requestControl.encode());
+  }
+
+
+  @Override
+  public ResponseControl handleResponse(final NioControl responseControl)
+  {
+    return
+      ControlFactory.createResponseControl(
+        responseControl.getOID(),
+        responseControl.getCriticality(),
+        responseControl.getValue());
+  }
+}
@@ -0,0 +1,108 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.provider.nio;
+
+import java.security.GeneralSecurityException;
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManager;
+import org.ldaptive.ConnectionConfig;
+import org.ldaptive.provider.Provider;
+import org.ldaptive.provider.ProviderConnectionFactory;
+import org.ldaptive.ssl.CredentialConfig;
+import org.ldaptive.ssl.DefaultHostnameVerifier;
+import org.ldaptive.ssl.DefaultSSLContextInitializer;
+import org.ldaptive.ssl.HostnameVerifierAdapter;
+import org.ldaptive.ssl.SSLContextInitializer;
+import org.ldaptive.ssl.SslConfig;
+
+/**
+ * Provider that speaks the LDAP protocol directly over socket channels, encoding and decoding messages with the
+ * {@link org.ldaptive.asn1} package. No third party libraries are required.
+ *
+ * @author  Middleware Services
+ */
+public class NioProvider implements Provider<NioProviderConfig>
+{
+
+  /** Protocol used to initialize SSL contexts. */
+  private static final String DEFAULT_PROTOCOL = "TLS";
+
+  /** Provider configuration. */
+  private NioProviderConfig config = new NioProviderConfig();
+
+
+  @Override
+  public ProviderConnectionFactory<NioProviderConfig> getConnectionFactory(final ConnectionConfig cc)
+  {
+    SSLContext context = null;
+    HostnameVerifier verifier = null;
+    if (cc.getUseSSL() || cc.getUseStartTLS() || cc.getLdapUrl().toLowerCase().contains("ldaps://")) {
+      context = config.getSSLContext();
+      if (context == null) {
+        try {
+          context = createSSLContextInitializer(cc.getSslConfig()).initSSLContext(DEFAULT_PROTOCOL);
+        } catch (GeneralSecurityException e) {
+          throw new IllegalArgumentException(e);
+        }
+      }
+      if (cc.getSslConfig() != null && cc.getSslConfig().getHostnameVerifier() != null) {
+        verifier = new HostnameVerifierAdapter(cc.getSslConfig().getHostnameVerifier());
+      } else {
+        verifier = new DefaultHostnameVerifier();
+      }
+    }
+    return new NioConnectionFactory(config, cc, context, verifier);
+  }
+
+
+  @Override
+  public NioProviderConfig getProviderConfig()
+  {
+    return config;
+  }
+
+
+  @Override
+  public void setProviderConfig(final NioProviderConfig npc)
+  {
+    config = npc;
+  }
+
+
+  @Override
+  public NioProvider newInstance()
+  {
+    return new NioProvider();
+  }
+
+
+  /**
+   * Creates an SSL context initializer for the supplied SSL configuration.
+   *
+   * @param  sslConfig  SSL configuration, may be null
+   *
+   * @return  SSL context initializer
+   *
+   * @throws  GeneralSecurityException  if the SSL context initializer cannot be created
+   */
+  protected SSLContextInitializer createSSLContextInitializer(final SslConfig sslConfig)
+    throws GeneralSecurityException
+  {
+    final SSLContextInitializer contextInitializer;
+    if (sslConfig != null && !sslConfig.isEmpty()) {
+      final CredentialConfig credConfig = sslConfig.getCredentialConfig();
+      final TrustManager[] managers = sslConfig.getTrustManagers();
+      if (credConfig != null) {
+        contextInitializer = credConfig.createSSLContextInitializer();
+      } else {
+        contextInitializer = new DefaultSSLContextInitializer(managers == null);
+      }
+      if (managers != null) {
+        contextInitializer.setTrustManagers(managers);
+      }
+    } else {
+      contextInitializer = new DefaultSSLContextInitializer();
+    }
+    return contextInitializer;
+  }
+}
@@ -0,0 +1,143 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.provider.nio;
+
+import java.util.Arrays;
+import javax.net.ssl.SSLContext;
+import org.ldaptive.ResultCode;
+import org.ldaptive.provider.ControlProcessor;
+import org.ldaptive.provider.ProviderConfig;
+
+/**
+ * Contains configuration data for the nio provider.
+ *
+ * @author  Middleware Services
+ */
+public class NioProviderConfig extends ProviderConfig<NioControl>
+{
+
+  /** Default maximum number of search items queued for a search iterator. Value is {@value}. */
+  public static final int DEFAULT_SEARCH_QUEUE_CAPACITY = 1000;
+
+  /** Search result codes to ignore. */
+  private ResultCode[] searchIgnoreResultCodes;
+
+  /** Maximum number of search items queued for a search iterator before the search fails. */
+  private int searchQueueCapacity = DEFAULT_SEARCH_QUEUE_CAPACITY;
+
+  /** SSL context for ldaps and startTLS connections. */
+  private SSLContext sslContext;
+
+
+  /** Default constructor. */
+  public NioProviderConfig()
+  {
+    setOperationExceptionResultCodes(ResultCode.SERVER_DOWN);
+    setControlProcessor(new ControlProcessor<>(new NioControlHandler()));
+    searchIgnoreResultCodes = new ResultCode[] {
+      ResultCode.TIME_LIMIT_EXCEEDED,
+      ResultCode.SIZE_LIMIT_EXCEEDED,
+      ResultCode.REFERRAL,
+    };
+  }
+
+
+  /**
+   * Returns the search ignore result codes.
+   *
+   * @return  result codes to ignore
+   */
+  public ResultCode[] getSearchIgnoreResultCodes()
+  {
+    return searchIgnoreResultCodes;
+  }
+
+
+  /**
+   * Sets the search ignore result codes.
+   *
+   * @param  codes  to ignore
+   */
+  public void setSearchIgnoreResultCodes(final ResultCode... codes)
+  {
+    checkImmutable();
+    logger.trace("setting searchIgnoreResultCodes: {}", Arrays.toString(codes));
+    searchIgnoreResultCodes = codes;
+  }
+
+
+  /**
+   * Returns the maximum number of search items queued for a search iterator. A search whose consumer falls this far
+   * behind is abandoned and fails with {@link ResultCode#LOCAL_ERROR}; the connection never stops reading, since that
+   * would stall every other operation on it. The limit does not apply to searches consumed by a thread that has invoked
+   * {@link NioConnection#beginNestedOperations()}.
+   *
+   * @return  search queue capacity
+   */
+  public int getSearchQueueCapacity()
+  {
+    return searchQueueCapacity;
+  }
+
+
+  /**
+   * Sets the maximum number of search items queued for a search iterator.
+   *
+   * @param  capacity  search queue capacity
+   */
+  public void setSearchQueueCapacity(final int capacity)
+  {
+    checkImmutable();
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Search queue capacity must be greater than zero");
+    }
+    logger.trace("setting searchQueueCapacity: {}", capacity);
+    searchQueueCapacity = capacity;
+  }
+
+
+  /**
+   * Returns the SSL context to use for ldaps and startTLS connections. If not set, one is created from the SSL
+   * configuration of the connection config.
+   *
+   * @return  SSL context
+   */
+  public SSLContext getSSLContext()
+  {
+    return sslContext;
+  }
+
+
+  /**
+   * Sets the SSL context to use for ldaps and startTLS connections.
+   *
+   * @param  context  SSL context
+   */
+  public void setSSLContext(final SSLContext context)
+  {
+    checkImmutable();
+    logger.trace("setting sslContext: {}", context);
+    sslContext = context;
+  }
+
+
+  @Override
+  public String toString()
+  {
+    return
+      String.format(
+        "[%s@%d::operationExceptionResultCodes=%s, properties=%s, controlProcessor=%s, " +
+        "binaryAttributeDetector=%s, concurrentConnectAttempts=%s, connectAttemptDelay=%s, " +
+        "searchIgnoreResultCodes=%s, searchQueueCapacity=%s, sslContext=%s]",
+        getClass().getName(),
+        hashCode(),
+        Arrays.toString(getOperationExceptionResultCodes()),
+        getProperties(),
+        getControlProcessor(),
+        getBinaryAttributeDetector(),
+        getConcurrentConnectAttempts(),
+        getConnectAttemptDelay(),
+        Arrays.toString(searchIgnoreResultCodes),
+        searchQueueCapacity,
+        sslContext);
+  }
+}
@@ -0,0 +1,249 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.provider.nio;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLSession;
+
+/**
+ * Reads and writes LDAP messages over a socket channel protected by an {@link SSLEngine}. Used for both LDAPS and
+ * startTLS connections.
+ *
+ * @author  Middleware Services
+ */
+public class NioTlsTransport extends NioTransport
+{
+
+  /** Empty buffer used to produce handshake messages. */
+  private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+  /** SSL engine. */
+  private final SSLEngine engine;
+
+  /** Encrypted bytes read from the channel. */
+  private ByteBuffer netIn;
+
+  /** Decrypted bytes that have not been returned by {@link #read(ByteBuffer)}. */
+  private ByteBuffer appIn;
+
+  /** Encrypted bytes to write to the channel. Guarded by the channel lock. */
+  private ByteBuffer netOut;
+
+
+  /**
+   * Creates a new nio TLS transport. {@link #handshake()} must be invoked before any messages are read or written.
+   *
+   * @param  sc  connected socket channel
+   * @param  e  SSL engine in client mode
+   */
+  public NioTlsTransport(final SocketChannel sc, final SSLEngine e)
+  {
+    super(sc);
+    engine = e;
+    final SSLSession session = engine.getSession();
+    netIn = ByteBuffer.allocate(session.getPacketBufferSize());
+    netOut = ByteBuffer.allocate(session.getPacketBufferSize());
+    appIn = ByteBuffer.allocate(session.getApplicationBufferSize());
+    appIn.flip();
+  }
+
+
+  /**
+   * Returns the SSL session.
+   *
+   * @return  SSL session
+   */
+  public SSLSession getSession()
+  {
+    return engine.getSession();
+  }
+
+
+  /**
+   * Performs the TLS handshake. This method must complete before the connection is used by more than one thread.
+   *
+   * @throws  IOException  if the handshake fails
+   */
+  public void handshake()
+    throws IOException
+  {
+    engine.beginHandshake();
+    SSLEngineResult.HandshakeStatus status = engine.getHandshakeStatus();
+    while (status != SSLEngineResult.HandshakeStatus.FINISHED &&
+           status != SSLEngineResult.HandshakeStatus.NOT_HANDSHAKING) {
+      switch (status) {
+
+      case NEED_WRAP:
+        synchronized (channel) {
+          status = wrap(EMPTY);
+        }
+        break;
+
+      case NEED_UNWRAP:
+        status = unwrap();
+        break;
+
+      case NEED_TASK:
+        status = runTasks();
+        break;
+
+      default:
+        throw new SSLException("Unexpected handshake status: " + status);
+      }
+    }
+  }
+
+
+  @Override
+  protected int read(final ByteBuffer dst)
+    throws IOException
+  {
+    while (!appIn.hasRemaining()) {
+      final SSLEngineResult.HandshakeStatus status = unwrap();
+      if (engine.isInboundDone() && !appIn.hasRemaining()) {
+        return -1;
+      }
+      if (status == SSLEngineResult.HandshakeStatus.NEED_WRAP) {
+        synchronized (channel) {
+          wrap(EMPTY);
+        }
+      } else if (status == SSLEngineResult.HandshakeStatus.NEED_TASK) {
+        runTasks();
+      }
+    }
+    final int count = Math.min(appIn.remaining(), dst.remaining());
+    final ByteBuffer src = appIn.duplicate();
+    src.limit(src.position() + count);
+    dst.put(src);
+    appIn.position(appIn.position() + count);
+    return count;
+  }
+
+
+  @Override
+  protected void writeFully(final ByteBuffer src)
+    throws IOException
+  {
+    while (src.hasRemaining()) {
+      wrap(src);
+    }
+  }
+
+
+  @Override
+  public void close()
+    throws IOException
+  {
+    try {
+      engine.closeOutbound();
+      synchronized (channel) {
+        while (!engine.isOutboundDone()) {
+          wrap(EMPTY);
+        }
+      }
+    } catch (IOException e) {
+      logger.debug("Error sending close notify", e);
+    } finally {
+      super.close();
+    }
+  }
+
+
+  /**
+   * Wraps the supplied bytes and writes the result to the channel. Callers must hold the channel lock.
+   *
+   * @param  src  application bytes to wrap
+   *
+   * @return  handshake status after the wrap
+   *
+   * @throws  IOException  if the bytes cannot be wrapped or written
+   */
+  private SSLEngineResult.HandshakeStatus wrap(final ByteBuffer src)
+    throws IOException
+  {
+    SSLEngineResult result;
+    do {
+      netOut.clear();
+      result = engine.wrap(src, netOut);
+      if (result.getStatus() == SSLEngineResult.Status.BUFFER_OVERFLOW) {
+        netOut = ByteBuffer.allocate(netOut.capacity() * 2);
+      }
+    } while (result.getStatus() == SSLEngineResult.Status.BUFFER_OVERFLOW);
+    netOut.flip();
+    super.writeFully(netOut);
+    return result.getHandshakeStatus();
+  }
+
+
+  /**
+   * Unwraps encrypted bytes into the application buffer, reading from the channel until a complete record is available.
+   *
+   * @return  handshake status after the unwrap
+   *
+   * @throws  IOException  if the bytes cannot be read or unwrapped
+   */
+  private SSLEngineResult.HandshakeStatus unwrap()
+    throws IOException
+  {
+    SSLEngineResult result = null;
+    while (result == null) {
+      netIn.flip();
+      appIn.compact();
+      final SSLEngineResult r;
+      try {
+        r = engine.unwrap(netIn, appIn);
+      } finally {
+        appIn.flip();
+        netIn.compact();
+      }
+      switch (r.getStatus()) {
+
+      case BUFFER_UNDERFLOW:
+        if (netIn.position() == netIn.capacity()) {
+          final ByteBuffer grown = ByteBuffer.allocate(netIn.capacity() * 2);
+          netIn.flip();
+          grown.put(netIn);
+          netIn = grown;
+        }
+        if (channel.read(netIn) == -1) {
+          throw new EOFException("End of stream reached during TLS unwrap");
+        }
+        break;
+
+      case BUFFER_OVERFLOW:
+        final int size = appIn.capacity() + engine.getSession().getApplicationBufferSize();
+        final ByteBuffer larger = ByteBuffer.allocate(size);
+        larger.put(appIn);
+        larger.flip();
+        appIn = larger;
+        break;
+
+      default:
+        result = r;
+        break;
+      }
+    }
+    return result.getHandshakeStatus();
+  }
+
+
+  /**
+   * Runs any delegated tasks of the SSL engine.
+   *
+   * @return  handshake status after the tasks have run
+   */
+  private SSLEngineResult.HandshakeStatus runTasks()
+  {
+    Runnable task = engine.getDelegatedTask();
+    while (task != null) {
+      task.run();
+      task = engine.getDelegatedTask();
+    }
+    return engine.getHandshakeStatus();
+  }
+}
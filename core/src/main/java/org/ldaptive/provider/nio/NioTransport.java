@@ -0,0 +1,193 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.provider.nio;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads and writes LDAP messages over a socket channel. Writes may be invoked concurrently, reads are expected to be
+ * performed by a single thread.
+ *
+ * @author  Middleware Services
+ */
+public class NioTransport
+{
+
+  /** Initial size of the read buffer. */
+  private static final int INITIAL_BUFFER_SIZE = 8192;
+
+  /** Maximum size of a single message. */
+  private static final int MAX_MESSAGE_SIZE = 64 * 1024 * 1024;
+
+  /** Logger for this class. */
+  protected final Logger logger = LoggerFactory.getLogger(getClass());
+
+  /** Channel to read and write. */
+  protected final SocketChannel channel;
+
+  /** Buffer containing bytes read from the channel that have not been returned as a message. */
+  private ByteBuffer readBuffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+
+  /** Offset of the first byte in the read buffer that has not been returned as a message. */
+  private int start;
+
+
+  /**
+   * Creates a new nio transport.
+   *
+   * @param  sc  connected socket channel
+   */
+  public NioTransport(final SocketChannel sc)
+  {
+    channel = sc;
+  }
+
+
+  /**
+   * Returns the socket channel.
+   *
+   * @return  socket channel
+   */
+  public SocketChannel getChannel()
+  {
+    return channel;
+  }
+
+
+  /**
+   * Writes the supplied message.
+   *
+   * @param  message  to write
+   *
+   * @throws  IOException  if the message cannot be written
+   */
+  public void write(final byte[] message)
+    throws IOException
+  {
+    synchronized (channel) {
+      writeFully(ByteBuffer.wrap(message));
+    }
+  }
+
+
+  /**
+   * Reads the next complete message. The returned buffer is a copy that remains valid after subsequent reads.
+   *
+   * @return  buffer containing a single message or null if the end of the stream was reached
+   *
+   * @throws  IOException  if the message cannot be read
+   */
+  public ByteBuffer readMessage()
+    throws IOException
+  {
+    int frame = BerElement.frameLength(readBuffer.array(), start, readBuffer.position() - start);
+    while (frame == -1 || readBuffer.position() - start < frame) {
+      if (frame > MAX_MESSAGE_SIZE) {
+        throw new IOException("Message of " + frame + " bytes exceeds maximum size");
+      }
+      ensureCapacity(frame);
+      if (read(readBuffer) == -1) {
+        if (readBuffer.position() > start) {
+          throw new EOFException("End of stream reached with a partial message");
+        }
+        return null;
+      }
+      frame = BerElement.frameLength(readBuffer.array(), start, readBuffer.position() - start);
+    }
+    final ByteBuffer message = ByteBuffer.wrap(Arrays.copyOfRange(readBuffer.array(), start, start + frame));
+    start += frame;
+    if (start == readBuffer.position()) {
+      readBuffer.clear();
+      start = 0;
+    }
+    return message;
+  }
+
+
+  /**
+   * Reads bytes from the channel into the supplied buffer.
+   *
+   * @param  dst  to read into
+   *
+   * @return  number of bytes read or -1 if the end of the stream was reached
+   *
+   * @throws  IOException  if the channel cannot be read
+   */
+  protected int read(final ByteBuffer dst)
+    throws IOException
+  {
+    return channel.read(dst);
+  }
+
+
+  /**
+   * Writes all remaining bytes of the supplied buffer to the channel. Callers must hold the channel lock. The interrupt
+   * status of the current thread is cleared for the duration of the write and then restored, since interrupting a
+   * write closes the channel and with it every operation on the connection.
+   *
+   * @param  src  to write
+   *
+   * @throws  IOException  if the channel cannot be written
+   */
+  protected void writeFully(final ByteBuffer src)
+    throws IOException
+  {
+    final boolean interrupted = Thread.interrupted();
+    try {
+      while (src.hasRemaining()) {
+        channel.write(src);
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+
+  /**
+   * Closes the channel.
+   *
+   * @throws  IOException  if the channel cannot be closed
+   */
+  public void close()
+    throws IOException
+  {
+    channel.close();
+  }
+
+
+  /**
+   * Makes room in the read buffer for a message of the supplied length, compacting or growing the buffer as needed.
+   *
+   * @param  frame  length of the message being read or -1 if unknown
+   */
+  private void ensureCapacity(final int frame)
+  {
+    final int needed = Math.max(frame, readBuffer.position() - start + 1);
+    if (readBuffer.capacity() - start < needed) {
+      if (readBuffer.capacity() >= needed) {
+        final int length = readBuffer.position() - start;
+        System.arraycopy(readBuffer.array(), start, readBuffer.array(), 0, length);
+        readBuffer.position(length);
+      } else {
+        final ByteBuffer grown = ByteBuffer.allocate(Math.max(needed, readBuffer.capacity() * 2));
+        grown.put(readBuffer.array(), start, readBuffer.position() - start);
+        readBuffer = grown;
+      }
+      start = 0;
+    }
+  }
+
+
+  @Override
+  public String toString()
+  {
+    return String.format("[%s@%d::channel=%s]", getClass().getName(), hashCode(), channel);
+  }
+}
@@ -0,0 +1,521 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.provider.nio;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.ldaptive.AddRequest;
+import org.ldaptive.AttributeModification;
+import org.ldaptive.CompareRequest;
+import org.ldaptive.DerefAliases;
+import org.ldaptive.LdapAttribute;
+import org.ldaptive.ModifyDnRequest;
+import org.ldaptive.ModifyRequest;
+import org.ldaptive.SearchRequest;
+import org.ldaptive.SearchScope;
+import org.ldaptive.asn1.ApplicationDERTag;
+import org.ldaptive.asn1.BooleanType;
+import org.ldaptive.asn1.ConstructedDEREncoder;
+import org.ldaptive.asn1.ContextDERTag;
+import org.ldaptive.asn1.DEREncoder;
+import org.ldaptive.asn1.DERTag;
+import org.ldaptive.asn1.IntegerType;
+import org.ldaptive.asn1.NullType;
+import org.ldaptive.asn1.OctetStringType;
+import org.ldaptive.asn1.UniversalDERTag;
+import org.ldaptive.filter.Filter;
+import org.ldaptive.filter.PresenceFilter;
+
+/**
+ * Encodes LDAP request messages as defined in RFC 4511. Each protocol operation is produced by a static method and
+ * framed with {@link #encode(int, DEREncoder, NioControl[])}.
+ *
+ * @author  Middleware Services
+ */
+public final class RequestEncoder
+{
+
+  /** Bind request tag. */
+  private static final int BIND_REQUEST = 0;
+
+  /** Unbind request tag. */
+  private static final int UNBIND_REQUEST = 2;
+
+  /** Search request tag. */
+  private static final int SEARCH_REQUEST = 3;
+
+  /** Modify request tag. */
+  private static final int MODIFY_REQUEST = 6;
+
+  /** Add request tag. */
+  private static final int ADD_REQUEST = 8;
+
+  /** Delete request tag. */
+  private static final int DELETE_REQUEST = 10;
+
+  /** Modify DN request tag. */
+  private static final int MODIFY_DN_REQUEST = 12;
+
+  /** Compare request tag. */
+  private static final int COMPARE_REQUEST = 14;
+
+  /** Abandon request tag. */
+  private static final int ABANDON_REQUEST = 16;
+
+  /** Extended request tag. */
+  private static final int EXTENDED_REQUEST = 23;
+
+  /** Simple authentication tag. */
+  private static final int SIMPLE_AUTHENTICATION = 0;
+
+  /** SASL authentication tag. */
+  private static final int SASL_AUTHENTICATION = 3;
+
+  /** Controls tag. */
+  private static final int CONTROLS = 0;
+
+  /** New superior tag in a modify DN request. */
+  private static final int NEW_SUPERIOR = 0;
+
+  /** Extended request name tag. */
+  private static final int EXTENDED_REQUEST_NAME = 0;
+
+  /** Extended request value tag. */
+  private static final int EXTENDED_REQUEST_VALUE = 1;
+
+  /** LDAP protocol version. */
+  private static final int VERSION = 3;
+
+  /** Modify operation for add. */
+  private static final int MODIFY_ADD = 0;
+
+  /** Modify operation for delete. */
+  private static final int MODIFY_DELETE = 1;
+
+  /** Modify operation for replace. */
+  private static final int MODIFY_REPLACE = 2;
+
+  /** Filter used when the search request does not contain one. */
+  private static final Filter DEFAULT_FILTER = new PresenceFilter("objectClass");
+
+
+  /** Default constructor. */
+  private RequestEncoder() {}
+
+
+  /**
+   * Encodes an LDAP message:
+   *
+   * <pre>
+     LDAPMessage ::= SEQUENCE {
+       messageID       MessageID,
+       protocolOp      CHOICE { ... },
+       controls       [0] Controls OPTIONAL }
+   * </pre>
+   *
+   * @param  messageId  of the message
+   * @param  protocolOp  request to encode
+   * @param  controls  request controls, may be null
+   *
+   * @return  encoded message
+   */
+  public static byte[] encode(final int messageId, final DEREncoder protocolOp, final NioControl[] controls)
+  {
+    final DEREncoder message;
+    if (controls != null && controls.length > 0) {
+      final DEREncoder[] encodedControls = new DEREncoder[controls.length];
+      for (int i = 0; i < controls.length; i++) {
+        final List<DEREncoder> control = new ArrayList<>(3);
+        control.add(new OctetStringType(controls[i].getOID()));
+        if (controls[i].getCriticality()) {
+          control.add(new BooleanType(true));
+        }
+        if (controls[i].getValue() != null) {
+          control.add(new OctetStringType(controls[i].getValue()));
+        }
+        encodedControls[i] = new ConstructedDEREncoder(UniversalDERTag.SEQ, toArray(control));
+      }
+      message = new ConstructedDEREncoder(
+        UniversalDERTag.SEQ,
+        new IntegerType(messageId),
+        protocolOp,
+        new ConstructedDEREncoder(new ContextDERTag(CONTROLS, true), encodedControls));
+    } else {
+      message = new ConstructedDEREncoder(UniversalDERTag.SEQ, new IntegerType(messageId), protocolOp);
+    }
+    return message.encode();
+  }
+
+
+  /**
+   * Encodes a simple bind request.
+   *
+   * @param  dn  to bind as, may be null for an anonymous bind
+   * @param  password  to bind with, may be null for an anonymous bind
+   *
+   * @return  bind request
+   */
+  public static DEREncoder simpleBind(final String dn, final byte[] password)
+  {
+    return
+      new ConstructedDEREncoder(
+        new ApplicationDERTag(BIND_REQUEST, true),
+        new IntegerType(VERSION),
+        new OctetStringType(dn != null ? dn : ""),
+        new OctetStringType(
+          new ContextDERTag(SIMPLE_AUTHENTICATION, false),
+          password != null ? password : new byte[0]));
+  }
+
+
+  /**
+   * Encodes a SASL bind request.
+   *
+   * @param  dn  to bind as, may be null
+   * @param  mechanism  SASL mechanism
+   * @param  credentials  SASL credentials, may be null
+   *
+   * @return  bind request
+   */
+  public static DEREncoder saslBind(final String dn, final String mechanism, final byte[] credentials)
+  {
+    final DEREncoder sasl;
+    if (credentials != null) {
+      sasl = new ConstructedDEREncoder(
+        new ContextDERTag(SASL_AUTHENTICATION, true),
+        new OctetStringType(mechanism),
+        new OctetStringType(credentials));
+    } else {
+      sasl = new ConstructedDEREncoder(new ContextDERTag(SASL_AUTHENTICATION, true), new OctetStringType(mechanism));
+    }
+    return
+      new ConstructedDEREncoder(
+        new ApplicationDERTag(BIND_REQUEST, true),
+        new IntegerType(VERSION),
+        new OctetStringType(dn != null ? dn : ""),
+        sasl);
+  }
+
+
+  /**
+   * Encodes an unbind request.
+   *
+   * @return  unbind request
+   */
+  public static DEREncoder unbind()
+  {
+    return new NullType(new ApplicationDERTag(UNBIND_REQUEST, false));
+  }
+
+
+  /**
+   * Encodes a search request.
+   *
+   * @param  request  to encode
+   *
+   * @return  search request
+   *
+   * @throws  IllegalArgumentException  if the search filter cannot be encoded
+   */
+  public static DEREncoder search(final SearchRequest request)
+  {
+    final List<DEREncoder> attributes = new ArrayList<>();
+    if (request.getReturnAttributes() != null) {
+      for (String attr : request.getReturnAttributes()) {
+        attributes.add(new OctetStringType(attr));
+      }
+    }
+    return
+      new ConstructedDEREncoder(
+        new ApplicationDERTag(SEARCH_REQUEST, true),
+        new OctetStringType(request.getBaseDn() != null ? request.getBaseDn() : ""),
+        new IntegerType(UniversalDERTag.ENUM, getScope(request.getSearchScope())),
+        new IntegerType(UniversalDERTag.ENUM, getDerefAliases(request.getDerefAliases())),
+        new IntegerType((int) Math.min(request.getSizeLimit(), Integer.MAX_VALUE)),
+        new IntegerType(
+          request.getTimeLimit() != null ? (int) Math.min(request.getTimeLimit().getSeconds(), Integer.MAX_VALUE) : 0),
+        new BooleanType(request.getTypesOnly()),
+        FilterEncoder.encode(request.getSearchFilter() != null ? request.getSearchFilter().parse() : DEFAULT_FILTER),
+        constructed(UniversalDERTag.SEQ, attributes));
+  }
+
+
+  /**
+   * Encodes a modify request.
+   *
+   * @param  request  to encode
+   *
+   * @return  modify request
+   */
+  public static DEREncoder modify(final ModifyRequest request)
+  {
+    final List<DEREncoder> changes = new ArrayList<>();
+    for (AttributeModification mod : request.getAttributeModifications()) {
+      final int operation;
+      switch (mod.getAttributeModificationType()) {
+
+      case ADD:
+        operation = MODIFY_ADD;
+        break;
+
+      case REMOVE:
+        operation = MODIFY_DELETE;
+        break;
+
+      case REPLACE:
+        operation = MODIFY_REPLACE;
+        break;
+
+      default:
+        throw new IllegalArgumentException("Unknown modification type: " + mod.getAttributeModificationType());
+      }
+      changes.add(
+        new ConstructedDEREncoder(
+          UniversalDERTag.SEQ,
+          new IntegerType(UniversalDERTag.ENUM, operation),
+          attribute(mod.getAttribute())));
+    }
+    return
+      new ConstructedDEREncoder(
+        new ApplicationDERTag(MODIFY_REQUEST, true),
+        new OctetStringType(request.getDn()),
+        constructed(UniversalDERTag.SEQ, changes));
+  }
+
+
+  /**
+   * Encodes an add request.
+   *
+   * @param  request  to encode
+   *
+   * @return  add request
+   */
+  public static DEREncoder add(final AddRequest request)
+  {
+    final List<DEREncoder> attributes = new ArrayList<>();
+    for (LdapAttribute attr : request.getLdapAttributes()) {
+      attributes.add(attribute(attr));
+    }
+    return
+      new ConstructedDEREncoder(
+        new ApplicationDERTag(ADD_REQUEST, true),
+        new OctetStringType(request.getDn()),
+        constructed(UniversalDERTag.SEQ, attributes));
+  }
+
+
+  /**
+   * Encodes a delete request.
+   *
+   * @param  dn  to delete
+   *
+   * @return  delete request
+   */
+  public static DEREncoder delete(final String dn)
+  {
+    return new OctetStringType(new ApplicationDERTag(DELETE_REQUEST, false), dn);
+  }
+
+
+  /**
+   * Encodes a modify DN request. The new DN of the request is split into a new RDN and a new superior.
+   *
+   * @param  request  to encode
+   *
+   * @return  modify DN request
+   */
+  public static DEREncoder modifyDn(final ModifyDnRequest request)
+  {
+    final String newDn = request.getNewDn();
+    final int separator = indexOfRdnSeparator(newDn);
+    final List<DEREncoder> encoders = new ArrayList<>(4);
+    encoders.add(new OctetStringType(request.getDn()));
+    encoders.add(new OctetStringType(separator != -1 ? newDn.substring(0, separator).trim() : newDn));
+    encoders.add(new BooleanType(request.getDeleteOldRDn()));
+    if (separator != -1) {
+      encoders.add(
+        new OctetStringType(new ContextDERTag(NEW_SUPERIOR, false), newDn.substring(separator + 1).trim()));
+    }
+    return new ConstructedDEREncoder(new ApplicationDERTag(MODIFY_DN_REQUEST, true), toArray(encoders));
+  }
+
+
+  /**
+   * Encodes a compare request.
+   *
+   * @param  request  to encode
+   *
+   * @return  compare request
+   */
+  public static DEREncoder compare(final CompareRequest request)
+  {
+    final LdapAttribute attr = request.getAttribute();
+    return
+      new ConstructedDEREncoder(
+        new ApplicationDERTag(COMPARE_REQUEST, true),
+        new OctetStringType(request.getDn()),
+        new ConstructedDEREncoder(
+          UniversalDERTag.SEQ,
+          new OctetStringType(attr.getName()),
+          new OctetStringType(attr.getBinaryValue())));
+  }
+
+
+  /**
+   * Encodes an abandon request.
+   *
+   * @param  messageId  of the operation to abandon
+   *
+   * @return  abandon request
+   */
+  public static DEREncoder abandon(final int messageId)
+  {
+    return new IntegerType(new ApplicationDERTag(ABANDON_REQUEST, false), messageId);
+  }
+
+
+  /**
+   * Encodes an extended request.
+   *
+   * @param  oid  of the extended operation
+   * @param  value  of the extended operation, may be null
+   *
+   * @return  extended request
+   */
+  public static DEREncoder extended(final String oid, final byte[] value)
+  {
+    final DEREncoder name = new OctetStringType(new ContextDERTag(EXTENDED_REQUEST_NAME, false), oid);
+    final DEREncoder encoder;
+    if (value != null) {
+      encoder = new ConstructedDEREncoder(
+        new ApplicationDERTag(EXTENDED_REQUEST, true),
+        name,
+        new OctetStringType(new ContextDERTag(EXTENDED_REQUEST_VALUE, false), value));
+    } else {
+      encoder = new ConstructedDEREncoder(new ApplicationDERTag(EXTENDED_REQUEST, true), name);
+    }
+    return encoder;
+  }
+
+
+  /**
+   * Encodes an attribute as a partial attribute: SEQUENCE { type AttributeDescription, vals SET OF value }.
+   *
+   * @param  attr  to encode
+   *
+   * @return  attribute encoder
+   */
+  private static DEREncoder attribute(final LdapAttribute attr)
+  {
+    final Collection<byte[]> values = attr.getBinaryValues();
+    final List<DEREncoder> encodedValues = new ArrayList<>(values.size());
+    for (byte[] value : values) {
+      encodedValues.add(new OctetStringType(value));
+    }
+    return
+      new ConstructedDEREncoder(
+        UniversalDERTag.SEQ,
+        new OctetStringType(attr.getName()),
+        constructed(UniversalDERTag.SET, encodedValues));
+  }
+
+
+  /**
+   * Returns an encoder for the supplied constructed tag that may contain no elements.
+   *
+   * @param  tag  constructed tag
+   * @param  encoders  elements of the constructed type
+   *
+   * @return  encoder
+   */
+  private static DEREncoder constructed(final DERTag tag, final List<DEREncoder> encoders)
+  {
+    final DEREncoder encoder;
+    if (encoders.isEmpty()) {
+      final byte[] empty = new byte[] {(byte) tag.getTagByte(), 0};
+      encoder = () -> empty;
+    } else {
+      encoder = new ConstructedDEREncoder(tag, toArray(encoders));
+    }
+    return encoder;
+  }
+
+
+  /**
+   * Converts the supplied list to an array.
+   *
+   * @param  encoders  to convert
+   *
+   * @return  encoder array
+   */
+  private static DEREncoder[] toArray(final List<DEREncoder> encoders)
+  {
+    return encoders.toArray(new DEREncoder[encoders.size()]);
+  }
+
+
+  /**
+   * Returns the index of the comma separating the first RDN of the supplied DN from the remaining RDNs. Escaped and
+   * quoted commas are ignored.
+   *
+   * @param  dn  to inspect
+   *
+   * @return  index of the separator or -1 if the DN contains a single RDN
+   */
+  static int indexOfRdnSeparator(final String dn)
+  {
+    int index = -1;
+    boolean quoted = false;
+    for (int i = 0; i < dn.length() && index == -1; i++) {
+      final char c = dn.charAt(i);
+      if (c == '\\') {
+        i++;
+      } else if (c == '"') {
+        quoted = !quoted;
+      } else if ((c == ',' || c == ';') && !quoted) {
+        index = i;
+      }
+    }
+    return index;
+  }
+
+
+  /**
+   * Returns the enumerated value of the supplied search scope.
+   *
+   * @param  scope  search scope
+   *
+   * @return  enumerated value
+   */
+  private static int getScope(final SearchScope scope)
+  {
+    int value = 2;
+    if (scope == SearchScope.OBJECT) {
+      value = 0;
+    } else if (scope == SearchScope.ONELEVEL) {
+      value = 1;
+    }
+    return value;
+  }
+
+
+  /**
+   * Returns the enumerated value of the supplied deref aliases.
+   *
+   * @param  deref  deref aliases
+   *
+   * @return  enumerated value
+   */
+  private static int getDerefAliases(final DerefAliases deref)
+  {
+    int value = 0;
+    if (deref == DerefAliases.SEARCHING) {
+      value = 1;
+    } else if (deref == DerefAliases.FINDING) {
+      value = 2;
+    } else if (deref == DerefAliases.ALWAYS) {
+      value = VERSION;
+    }
+    return value;
+  }
+}
@@ -0,0 +1,581 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.referral;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.ldaptive.Connection;
+import org.ldaptive.LdapException;
+import org.ldaptive.LdapURL;
+import org.ldaptive.Response;
+import org.ldaptive.ResultCode;
+import org.ldaptive.SearchEntry;
+import org.ldaptive.SearchReference;
+import org.ldaptive.SearchRequest;
+import org.ldaptive.SearchResult;
+import org.ldaptive.handler.HandlerResult;
+import org.ldaptive.handler.SearchEntryHandler;
+import org.ldaptive.handler.SearchReferenceHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Search reference handler that chases continuation references concurrently. When a search request contains this
+ * handler, {@link org.ldaptive.SearchOperation} hands every continuation reference to a {@link ReferenceChase} instead
+ * of invoking the search reference handlers. The chase follows at most {@link #getMaxParallelism()} references at a
+ * time, skips referral URLs that have already been followed by the same search, and merges the entries of each
+ * referral into the search result as it completes. References that are still being chased when {@link #getTimeout()}
+ * expires are added to the search result unresolved.
+ *
+ * <p>Invoked directly through {@link #handle(Connection, SearchRequest, SearchReference)} this handler follows the
+ * reference synchronously, like {@link SearchReferralHandler.SearchReferenceHandler}.</p>
+ *
+ * @author  Middleware Services
+ */
+public class ConcurrentSearchReferenceHandler implements SearchReferenceHandler
+{
+
+  /** Default maximum number of references chased at once. Value is {@value}. */
+  public static final int DEFAULT_MAX_PARALLELISM = 4;
+
+  /** Default time allowed to chase all references of a search. Value is 30 seconds. */
+  public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(30);
+
+  /** Executes reference chases. */
+  private static final ExecutorService CHASE_EXECUTOR = Executors.newCachedThreadPool(
+    r -> {
+      final Thread t = new Thread(r, "ldaptive-" + ConcurrentSearchReferenceHandler.class.getSimpleName());
+      t.setDaemon(true);
+      return t;
+    });
+
+  /** Logger for this class. */
+  protected final Logger logger = LoggerFactory.getLogger(getClass());
+
+  /** Referral limit. */
+  private final int referralLimit;
+
+  /** Referral depth. */
+  private final int referralDepth;
+
+  /** Referral connection factory. */
+  private final ReferralConnectionFactory connectionFactory;
+
+  /** Maximum number of references chased at once. */
+  private final int maxParallelism;
+
+  /** Time allowed to chase all references of a search. */
+  private final Duration timeout;
+
+
+  /** Creates a new concurrent search reference handler. */
+  public ConcurrentSearchReferenceHandler()
+  {
+    this(DEFAULT_MAX_PARALLELISM, DEFAULT_TIMEOUT, AbstractReferralHandler.DEFAULT_CONNECTION_FACTORY);
+  }
+
+
+  /**
+   * Creates a new concurrent search reference handler.
+   *
+   * @param  factory  referral connection factory
+   */
+  public ConcurrentSearchReferenceHandler(final ReferralConnectionFactory factory)
+  {
+    this(DEFAULT_MAX_PARALLELISM, DEFAULT_TIMEOUT, factory);
+  }
+
+
+  /**
+   * Creates a new concurrent search reference handler.
+   *
+   * @param  parallelism  maximum number of references chased at once
+   * @param  time  allowed to chase all references of a search, null waits indefinitely
+   * @param  factory  referral connection factory
+   */
+  public ConcurrentSearchReferenceHandler(
+    final int parallelism,
+    final Duration time,
+    final ReferralConnectionFactory factory)
+  {
+    this(AbstractReferralHandler.DEFAULT_REFERRAL_LIMIT, 0, parallelism, time, factory);
+  }
+
+
+  /**
+   * Creates a new concurrent search reference handler.
+   *
+   * @param  limit  number of referrals to follow
+   * @param  depth  number of referrals followed
+   * @param  parallelism  maximum number of references chased at once
+   * @param  time  allowed to chase all references of a search, null waits indefinitely
+   * @param  factory  referral connection factory
+   */
+  public ConcurrentSearchReferenceHandler(
+    final int limit,
+    final int depth,
+    final int parallelism,
+    final Duration time,
+    final ReferralConnectionFactory factory)
+  {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("Max parallelism must be greater than zero");
+    }
+    if (time != null && time.isNegative()) {
+      throw new IllegalArgumentException("Timeout cannot be negative");
+    }
+    referralLimit = limit;
+    referralDepth = depth;
+    maxParallelism = parallelism;
+    timeout = time;
+    connectionFactory = factory;
+  }
+
+
+  /**
+   * Returns the maximum number of referrals to follow.
+   *
+   * @return  referral limit
+   */
+  public int getReferralLimit()
+  {
+    return referralLimit;
+  }
+
+
+  /**
+   * Returns the referral depth of this handler.
+   *
+   * @return  referral depth
+   */
+  public int getReferralDepth()
+  {
+    return referralDepth;
+  }
+
+
+  /**
+   * Returns the referral connection factory.
+   *
+   * @return  referral connection factory
+   */
+  public ReferralConnectionFactory getReferralConnectionFactory()
+  {
+    return connectionFactory;
+  }
+
+
+  /**
+   * Returns the maximum number of references chased at once.
+   *
+   * @return  max parallelism
+   */
+  public int getMaxParallelism()
+  {
+    return maxParallelism;
+  }
+
+
+  /**
+   * Returns the time allowed to chase all references of a search.
+   *
+   * @return  timeout or null to wait indefinitely
+   */
+  public Duration getTimeout()
+  {
+    return timeout;
+  }
+
+
+  /**
+   * Returns a copy of this handler for use by a referral of the next depth.
+   *
+   * @return  concurrent search reference handler
+   */
+  ConcurrentSearchReferenceHandler nextDepth()
+  {
+    return new ConcurrentSearchReferenceHandler(
+      referralLimit,
+      referralDepth + 1,
+      maxParallelism,
+      timeout,
+      connectionFactory);
+  }
+
+
+  /**
+   * Follows the supplied referral URLs.
+   *
+   * @param  conn  the search occurred on
+   * @param  request  the search executed
+   * @param  urls  of the reference
+   *
+   * @return  referral response or null
+   *
+   * @throws  LdapException  if a REFERRAL_LIMIT_EXCEEDED is encountered
+   */
+  private Response<SearchResult> follow(final Connection conn, final SearchRequest request, final String[] urls)
+    throws LdapException
+  {
+    return new SearchReferralHandler(referralLimit, referralDepth, connectionFactory).handle(conn, request, urls)
+      .getResult();
+  }
+
+
+  @Override
+  public HandlerResult<SearchReference> handle(
+    final Connection conn,
+    final SearchRequest request,
+    final SearchReference reference)
+    throws LdapException
+  {
+    if (reference != null) {
+      final Response<SearchResult> response = follow(conn, request, reference.getReferralUrls());
+      if (response != null) {
+        reference.setReferenceResponse(response);
+      }
+    }
+    return new HandlerResult<>(reference);
+  }
+
+
+  /**
+   * Begins chasing references for a single search.
+   *
+   * @param  conn  the search is executing on
+   * @param  request  the search is executing
+   *
+   * @return  reference chase
+   */
+  public ReferenceChase start(final Connection conn, final SearchRequest request)
+  {
+    return new ReferenceChase(conn, request);
+  }
+
+
+  @Override
+  public void initializeRequest(final SearchRequest request) {}
+
+
+  @Override
+  public String toString()
+  {
+    return
+      String.format(
+        "[%s@%d::referralLimit=%s, referralDepth=%s, maxParallelism=%s, timeout=%s, connectionFactory=%s]",
+        getClass().getName(),
+        hashCode(),
+        referralLimit,
+        referralDepth,
+        maxParallelism,
+        timeout,
+        connectionFactory);
+  }
+
+
+  /**
+   * Chases the references of a single search. {@link #submit(SearchReference)}, {@link #drain(SearchResult)} and {@link
+   * #complete(SearchResult)} must be invoked by the thread reading the search results; the chases themselves run on a
+   * shared executor.
+   */
+  public final class ReferenceChase
+  {
+
+    /** Connection the search is executing on. */
+    private final Connection connection;
+
+    /** Search request. */
+    private final SearchRequest searchRequest;
+
+    /** Time at which chasing stops in nanoseconds, see {@link System#nanoTime()}. */
+    private final long deadline;
+
+    /** URLs that have been submitted. */
+    private final Set<String> submittedUrls = new HashSet<>();
+
+    /** References waiting for a free slot. */
+    private final Queue<Chase> waiting = new ArrayDeque<>();
+
+    /** References that have been submitted and not merged. */
+    private final Set<Chase> outstanding = ConcurrentHashMap.newKeySet();
+
+    /** Chases that have finished and not been merged. */
+    private final BlockingQueue<Chase> finished = new LinkedBlockingQueue<>();
+
+    /** Running chases. */
+    private final List<Future<?>> running = new ArrayList<>();
+
+    /** Number of chases running. */
+    private int inFlight;
+
+    /** Referral limit exception thrown by a chase. */
+    private volatile LdapException limitException;
+
+    /** Whether chasing has been cancelled. */
+    private volatile boolean cancelled;
+
+
+    /**
+     * Creates a new reference chase.
+     *
+     * @param  conn  the search is executing on
+     * @param  request  the search is executing
+     */
+    private ReferenceChase(final Connection conn, final SearchRequest request)
+    {
+      connection = conn;
+      searchRequest = request;
+      deadline = timeout != null ? System.nanoTime() + timeout.toNanos() : 0;
+    }
+
+
+    /**
+     * Schedules the supplied reference to be chased. URLs that have already been submitted by this search are ignored;
+     * if none remain the reference is dropped.
+     *
+     * @param  reference  continuation reference
+     */
+    public void submit(final SearchReference reference)
+    {
+      final List<String> urls = new ArrayList<>();
+      for (String url : reference.getReferralUrls()) {
+        if (submittedUrls.add(url)) {
+          urls.add(url);
+        }
+      }
+      if (urls.isEmpty()) {
+        logger.debug("ignoring duplicate reference {}", reference);
+      } else {
+        final Chase chase = new Chase(reference, urls.toArray(new String[urls.size()]));
+        outstanding.add(chase);
+        synchronized (this) {
+          waiting.add(chase);
+        }
+        dispatch();
+      }
+    }
+
+
+    /** Starts waiting chases while fewer than the maximum are running. */
+    private synchronized void dispatch()
+    {
+      while (inFlight < maxParallelism && !waiting.isEmpty()) {
+        final Chase chase = waiting.remove();
+        inFlight++;
+        running.add(CHASE_EXECUTOR.submit(() -> run(chase)));
+      }
+    }
+
+
+    /**
+     * Follows the referral URLs of the supplied chase.
+     *
+     * @param  chase  to run
+     */
+    private void run(final Chase chase)
+    {
+      try {
+        chase.response = new ChaseReferralHandler().handle(connection, searchRequest, chase.urls).getResult();
+      } catch (LdapException e) {
+        logger.warn("Could not follow reference {}", chase.reference, e);
+        if (e.getResultCode() == ResultCode.REFERRAL_LIMIT_EXCEEDED) {
+          limitException = e;
+        }
+      } catch (RuntimeException e) {
+        logger.warn("Could not follow reference {}", chase.reference, e);
+      } finally {
+        finished.add(chase);
+        synchronized (this) {
+          inFlight--;
+        }
+        dispatch();
+      }
+    }
+
+
+    /**
+     * Merges the chases that have finished into the supplied result without waiting.
+     *
+     * @param  result  to merge into
+     */
+    public void drain(final SearchResult result)
+    {
+      Chase chase = finished.poll();
+      while (chase != null) {
+        merge(chase, result);
+        chase = finished.poll();
+      }
+    }
+
+
+    /**
+     * Waits for every submitted reference to be chased, merging each into the supplied result as it finishes. If the
+     * timeout expires first, the remaining chases are cancelled and their references are added to the result
+     * unresolved.
+     *
+     * @param  result  to merge into
+     *
+     * @throws  LdapException  if a chase exceeded the referral limit
+     */
+    public void complete(final SearchResult result)
+      throws LdapException
+    {
+      boolean expired = false;
+      try {
+        while (!outstanding.isEmpty() && !expired) {
+          final Chase chase;
+          if (timeout != null) {
+            chase = finished.poll(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+          } else {
+            chase = finished.take();
+          }
+          if (chase != null) {
+            merge(chase, result);
+          } else {
+            expired = true;
+          }
+        }
+      } catch (InterruptedException e) {
+        logger.warn("Interrupted waiting for references to be chased", e);
+        Thread.currentThread().interrupt();
+      }
+      if (!outstanding.isEmpty()) {
+        logger.debug("{} references were not chased before the deadline", outstanding.size());
+        cancel();
+        for (Chase chase : outstanding) {
+          result.addReference(chase.reference);
+        }
+        outstanding.clear();
+      }
+      if (limitException != null) {
+        throw limitException;
+      }
+    }
+
+
+    /**
+     * Stops every chase that has not finished. Chases that are running are not interrupted, since an interrupt may
+     * close a connection shared with other operations. Instead their searches are aborted, and abandoned, when the next
+     * entry is received.
+     */
+    public synchronized void cancel()
+    {
+      cancelled = true;
+      waiting.clear();
+      for (Future<?> future : running) {
+        future.cancel(false);
+      }
+      running.clear();
+    }
+
+
+    /** Referral handler whose searches abort once chasing has been cancelled. */
+    private final class ChaseReferralHandler extends SearchReferralHandler
+    {
+
+
+      /** Creates a new chase referral handler. */
+      ChaseReferralHandler()
+      {
+        super(referralLimit, referralDepth, connectionFactory);
+      }
+
+
+      @Override
+      protected SearchRequest createReferralRequest(final SearchRequest request, final LdapURL url)
+      {
+        final SearchRequest referralRequest = super.createReferralRequest(request, url);
+        final SearchEntryHandler[] handlers = referralRequest.getSearchEntryHandlers();
+        final SearchEntryHandler[] chaseHandlers = new SearchEntryHandler[handlers != null ? handlers.length + 1 : 1];
+        chaseHandlers[0] = new CancelledEntryHandler();
+        if (handlers != null) {
+          System.arraycopy(handlers, 0, chaseHandlers, 1, handlers.length);
+        }
+        // referrals of the referral copy these handlers, so they abort as well
+        referralRequest.setSearchEntryHandlers(chaseHandlers);
+        return referralRequest;
+      }
+    }
+
+
+    /** Search entry handler that aborts the search once chasing has been cancelled. */
+    private final class CancelledEntryHandler implements SearchEntryHandler
+    {
+
+
+      @Override
+      public HandlerResult<SearchEntry> handle(
+        final Connection conn,
+        final SearchRequest request,
+        final SearchEntry entry)
+      {
+        return new HandlerResult<>(entry, cancelled);
+      }
+
+
+      @Override
+      public void initializeRequest(final SearchRequest request) {}
+    }
+
+
+    /**
+     * Adds the result of a finished chase to the search result.
+     *
+     * @param  chase  that finished
+     * @param  result  to merge into
+     */
+    private void merge(final Chase chase, final SearchResult result)
+    {
+      if (outstanding.remove(chase)) {
+        final Response<SearchResult> response = chase.response;
+        if (response != null && response.getResultCode() == ResultCode.SUCCESS) {
+          result.addEntries(response.getResult().getEntries());
+        } else {
+          if (response != null) {
+            chase.reference.setReferenceResponse(response);
+          }
+          result.addReference(chase.reference);
+        }
+      }
+    }
+  }
+
+
+  /** Reference being chased along with the URLs to follow and the response. */
+  private static final class Chase
+  {
+
+    /** Continuation reference. */
+    private final SearchReference reference;
+
+    /** URLs to follow. */
+    private final String[] urls;
+
+    /** Referral response, null until the chase succeeds. */
+    private volatile Response<SearchResult> response;
+
+
+    /**
+     * Creates a new chase.
+     *
+     * @param  ref  continuation reference
+     * @param  u  URLs to follow
+     */
+    Chase(final SearchReference ref, final String[] u)
+    {
+      reference = ref;
+      urls = u;
+    }
+  }
+}
@@ -0,0 +1,540 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.referral;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.ldaptive.BindConnectionInitializer;
+import org.ldaptive.Connection;
+import org.ldaptive.ConnectionConfig;
+import org.ldaptive.ConnectionFactory;
+import org.ldaptive.ConnectionInitializer;
+import org.ldaptive.DefaultConnectionFactory;
+import org.ldaptive.LdapException;
+import org.ldaptive.LdapUtils;
+import org.ldaptive.pool.BlockingConnectionPool;
+import org.ldaptive.pool.IdlePruneStrategy;
+import org.ldaptive.pool.PoolConfig;
+import org.ldaptive.provider.Provider;
+import org.ldaptive.sasl.SaslConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Referral connection factory that keeps a small pool of connections for each referred host. Pools are keyed by the
+ * referral URL, the SSL settings and the bind identity of the connection initializer, so a connection is only reused
+ * for referrals that would have produced an identical connection. Connections that stay idle longer than {@link
+ * #getIdleTime()} are closed, and a pool without connections is discarded once it has been idle for the same period.
+ * Invoke {@link #close()} to release every pooled connection; the factory cannot be used once it has been closed.
+ *
+ * @author  Middleware Services
+ */
+public class PooledReferralConnectionFactory implements ReferralConnectionFactory
+{
+
+  /** Default maximum number of connections per host. Value is {@value}. */
+  public static final int DEFAULT_MAX_POOL_SIZE = 2;
+
+  /** Default idle time. Value is 1 minute. */
+  public static final Duration DEFAULT_IDLE_TIME = Duration.ofMinutes(1);
+
+  /** Default time to wait for a connection when a pool is exhausted. Value is 10 seconds. */
+  public static final Duration DEFAULT_BLOCK_WAIT_TIME = Duration.ofSeconds(10);
+
+  /** Logger for this class. */
+  protected final Logger logger = LoggerFactory.getLogger(getClass());
+
+  /** Pools keyed by host and bind identity. */
+  private final Map<PoolKey, ReferralPool> pools = new ConcurrentHashMap<>();
+
+  /** Maximum number of connections per host. */
+  private int maxPoolSize = DEFAULT_MAX_POOL_SIZE;
+
+  /** Time a connection may stay idle before it is closed. */
+  private Duration idleTime = DEFAULT_IDLE_TIME;
+
+  /** Time to wait for a connection when a pool is exhausted. */
+  private Duration blockWaitTime = DEFAULT_BLOCK_WAIT_TIME;
+
+  /** Provider used by referral connections, null for the default provider. */
+  private Provider<?> provider;
+
+  /** Whether this factory has been closed. */
+  private volatile boolean closed;
+
+
+  /** Creates a new pooled referral connection factory. */
+  public PooledReferralConnectionFactory() {}
+
+
+  /**
+   * Creates a new pooled referral connection factory.
+   *
+   * @param  size  maximum number of connections per host
+   * @param  time  that a connection may stay idle before it is closed
+   */
+  public PooledReferralConnectionFactory(final int size, final Duration time)
+  {
+    setMaxPoolSize(size);
+    setIdleTime(time);
+  }
+
+
+  /**
+   * Returns the maximum number of connections per host.
+   *
+   * @return  max pool size
+   */
+  public int getMaxPoolSize()
+  {
+    return maxPoolSize;
+  }
+
+
+  /**
+   * Sets the maximum number of connections per host. Applies to pools created after this is invoked.
+   *
+   * @param  size  max pool size
+   */
+  public void setMaxPoolSize(final int size)
+  {
+    if (size < 1) {
+      throw new IllegalArgumentException("Max pool size must be greater than zero");
+    }
+    logger.trace("setting maxPoolSize: {}", size);
+    maxPoolSize = size;
+  }
+
+
+  /**
+   * Returns the time a connection may stay idle before it is closed.
+   *
+   * @return  idle time
+   */
+  public Duration getIdleTime()
+  {
+    return idleTime;
+  }
+
+
+  /**
+   * Sets the time a connection may stay idle before it is closed. Applies to pools created after this is invoked.
+   *
+   * @param  time  idle time
+   */
+  public void setIdleTime(final Duration time)
+  {
+    if (time == null || time.isNegative() || time.isZero()) {
+      throw new IllegalArgumentException("Idle time must be greater than zero");
+    }
+    logger.trace("setting idleTime: {}", time);
+    idleTime = time;
+  }
+
+
+  /**
+   * Returns the time to wait for a connection when a pool is exhausted.
+   *
+   * @return  block wait time
+   */
+  public Duration getBlockWaitTime()
+  {
+    return blockWaitTime;
+  }
+
+
+  /**
+   * Sets the time to wait for a connection when a pool is exhausted. Null waits indefinitely. Applies to pools created
+   * after this is invoked.
+   *
+   * @param  time  block wait time
+   */
+  public void setBlockWaitTime(final Duration time)
+  {
+    if (time != null && time.isNegative()) {
+      throw new IllegalArgumentException("Block wait time cannot be negative");
+    }
+    logger.trace("setting blockWaitTime: {}", time);
+    blockWaitTime = time;
+  }
+
+
+  /**
+   * Returns the provider used by referral connections.
+   *
+   * @return  provider or null if the default provider is used
+   */
+  public Provider<?> getProvider()
+  {
+    return provider;
+  }
+
+
+  /**
+   * Sets the provider used by referral connections. Null uses {@link DefaultConnectionFactory#getDefaultProvider()}.
+   * Applies to pools created after this is invoked.
+   *
+   * @param  p  provider
+   */
+  public void setProvider(final Provider<?> p)
+  {
+    logger.trace("setting provider: {}", p);
+    provider = p;
+  }
+
+
+  /**
+   * Returns a connection factory that retrieves connections from the pool for the supplied referral.
+   *
+   * @param  config  of the connection that received the referral
+   * @param  ldapUrl  of the referred host
+   *
+   * @return  connection factory
+   *
+   * @throws  IllegalStateException  if this factory has been closed
+   */
+  @Override
+  public ConnectionFactory getConnectionFactory(final ConnectionConfig config, final String ldapUrl)
+  {
+    checkClosed();
+    evictIdlePools();
+    final PoolKey key = new PoolKey(ldapUrl, config);
+    return () -> getConnection(key, config, ldapUrl);
+  }
+
+
+  /**
+   * Returns a connection from the pool for the supplied key, creating the pool if necessary.
+   *
+   * @param  key  of the pool
+   * @param  config  of the connection that received the referral
+   * @param  ldapUrl  of the referred host
+   *
+   * @return  pooled connection
+   *
+   * @throws  LdapException  if a connection cannot be retrieved from the pool
+   * @throws  IllegalStateException  if this factory has been closed
+   */
+  private Connection getConnection(final PoolKey key, final ConnectionConfig config, final String ldapUrl)
+    throws LdapException
+  {
+    Connection conn = null;
+    while (conn == null) {
+      checkClosed();
+      final ReferralPool pool = pools.computeIfAbsent(key, k -> createPool(config, ldapUrl));
+      if (closed) {
+        // the pool may have been created after close released every pool
+        pool.close();
+        pools.remove(key, pool);
+      }
+      conn = pool.getConnection();
+    }
+    return conn;
+  }
+
+
+  /**
+   * Throws if this factory has been closed.
+   *
+   * @throws  IllegalStateException  if this factory has been closed
+   */
+  private void checkClosed()
+  {
+    if (closed) {
+      throw new IllegalStateException("Referral connection factory has been closed");
+    }
+  }
+
+
+  /**
+   * Creates a new pool for the supplied referral URL.
+   *
+   * @param  config  of the connection that received the referral
+   * @param  ldapUrl  of the referred host
+   *
+   * @return  referral pool
+   */
+  private ReferralPool createPool(final ConnectionConfig config, final String ldapUrl)
+  {
+    final ConnectionConfig cc = ConnectionConfig.newConnectionConfig(config);
+    cc.setLdapUrl(ldapUrl);
+    final PoolConfig pc = new PoolConfig();
+    pc.setMinPoolSize(0);
+    pc.setMaxPoolSize(maxPoolSize);
+    final BlockingConnectionPool pool = new BlockingConnectionPool(
+      pc,
+      provider != null ? new DefaultConnectionFactory(cc, provider) : new DefaultConnectionFactory(cc));
+    pool.setName("referral-" + ldapUrl);
+    pool.setBlockWaitTime(blockWaitTime);
+    pool.setPruneStrategy(new IdlePruneStrategy(idleTime.dividedBy(2).plusMillis(1), idleTime));
+    pool.initialize();
+    logger.debug("created referral pool {} for {}", pool, ldapUrl);
+    return new ReferralPool(pool);
+  }
+
+
+  /** Closes and removes pools that have no connections and have not been used for the idle time. */
+  private void evictIdlePools()
+  {
+    final long now = System.nanoTime();
+    for (Map.Entry<PoolKey, ReferralPool> entry : pools.entrySet()) {
+      if (entry.getValue().closeIfIdle(now)) {
+        pools.remove(entry.getKey(), entry.getValue());
+        logger.debug("evicted idle referral pool for {}", entry.getKey());
+      }
+    }
+  }
+
+
+  /**
+   * Returns the number of pools.
+   *
+   * @return  number of referred hosts with a pool
+   */
+  public int getPoolCount()
+  {
+    return pools.size();
+  }
+
+
+  /** Closes every pool. Subsequent attempts to retrieve connections fail. */
+  public void close()
+  {
+    closed = true;
+    for (Map.Entry<PoolKey, ReferralPool> entry : pools.entrySet()) {
+      entry.getValue().close();
+      pools.remove(entry.getKey(), entry.getValue());
+    }
+  }
+
+
+  @Override
+  public String toString()
+  {
+    return
+      String.format(
+        "[%s@%d::maxPoolSize=%s, idleTime=%s, blockWaitTime=%s, provider=%s, poolCount=%s, closed=%s]",
+        getClass().getName(),
+        hashCode(),
+        maxPoolSize,
+        idleTime,
+        blockWaitTime,
+        provider,
+        pools.size(),
+        closed);
+  }
+
+
+  /** Identifies connections that are interchangeable for referrals. */
+  private static final class PoolKey
+  {
+
+    /** hash code seed. */
+    private static final int HASH_CODE_SEED = 10459;
+
+    /** Referral URL. */
+    private final String ldapUrl;
+
+    /** Whether SSL is used. */
+    private final boolean useSSL;
+
+    /** Whether startTLS is used. */
+    private final boolean useStartTLS;
+
+    /** Bind identity, null for anonymous connections. */
+    private final Object identity;
+
+    /** Bind credential, null if the initializer does not bind with a credential. */
+    private final byte[] credential;
+
+
+    /**
+     * Creates a new pool key.
+     *
+     * @param  url  of the referred host
+     * @param  config  of the connection that received the referral
+     */
+    PoolKey(final String url, final ConnectionConfig config)
+    {
+      ldapUrl = url;
+      useSSL = config.getUseSSL();
+      useStartTLS = config.getUseStartTLS();
+      identity = bindIdentity(config.getConnectionInitializer());
+      credential = bindCredential(config.getConnectionInitializer());
+    }
+
+
+    /**
+     * Returns an object that is equal for initializers that bind as the same identity. Bind initializers are compared
+     * by DN, SASL mechanism and authorization ID, their credentials are compared separately. Any other initializer is
+     * compared by instance.
+     *
+     * @param  ci  connection initializer
+     *
+     * @return  bind identity or null
+     */
+    private static Object bindIdentity(final ConnectionInitializer ci)
+    {
+      final Object id;
+      if (ci instanceof BindConnectionInitializer) {
+        final BindConnectionInitializer bci = (BindConnectionInitializer) ci;
+        final SaslConfig sasl = bci.getBindSaslConfig();
+        id = String.join(
+          "\u0000",
+          String.valueOf(bci.getBindDn()),
+          sasl != null ? String.valueOf(sasl.getMechanism()) : "",
+          sasl != null ? String.valueOf(sasl.getAuthorizationId()) : "");
+      } else {
+        id = ci;
+      }
+      return id;
+    }
+
+
+    /**
+     * Returns the credential of the supplied initializer.
+     *
+     * @param  ci  connection initializer
+     *
+     * @return  bind credential or null
+     */
+    private static byte[] bindCredential(final ConnectionInitializer ci)
+    {
+      byte[] bytes = null;
+      if (ci instanceof BindConnectionInitializer && ((BindConnectionInitializer) ci).getBindCredential() != null) {
+        bytes = ((BindConnectionInitializer) ci).getBindCredential().getBytes();
+      }
+      return bytes;
+    }
+
+
+    @Override
+    public boolean equals(final Object o)
+    {
+      if (o == this) {
+        return true;
+      }
+      if (o instanceof PoolKey) {
+        final PoolKey k = (PoolKey) o;
+        return LdapUtils.areEqual(ldapUrl, k.ldapUrl) &&
+               LdapUtils.areEqual(useSSL, k.useSSL) &&
+               LdapUtils.areEqual(useStartTLS, k.useStartTLS) &&
+               LdapUtils.areEqual(identity, k.identity) &&
+               Arrays.equals(credential, k.credential);
+      }
+      return false;
+    }
+
+
+    @Override
+    public int hashCode()
+    {
+      return LdapUtils.computeHashCode(HASH_CODE_SEED, ldapUrl, useSSL, useStartTLS, identity, credential);
+    }
+
+
+    @Override
+    public String toString()
+    {
+      return ldapUrl;
+    }
+  }
+
+
+  /**
+   * Pool for a single key. Check outs hold the read lock so that the pool cannot be evicted while a connection is
+   * being retrieved.
+   */
+  private final class ReferralPool
+  {
+
+    /** Connection pool. */
+    private final BlockingConnectionPool pool;
+
+    /** Guards eviction. */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /** Last time a connection was checked out. */
+    private volatile long lastUsed = System.nanoTime();
+
+    /** Whether the pool has been closed. */
+    private volatile boolean closed;
+
+
+    /**
+     * Creates a new referral pool.
+     *
+     * @param  p  connection pool
+     */
+    ReferralPool(final BlockingConnectionPool p)
+    {
+      pool = p;
+    }
+
+
+    /**
+     * Returns a connection from the pool.
+     *
+     * @return  pooled connection or null if this pool has been closed
+     *
+     * @throws  LdapException  if a connection cannot be retrieved from the pool
+     */
+    Connection getConnection()
+      throws LdapException
+    {
+      Connection conn = null;
+      lock.readLock().lock();
+      try {
+        if (!closed) {
+          lastUsed = System.nanoTime();
+          conn = pool.getConnection();
+        }
+      } finally {
+        lock.readLock().unlock();
+      }
+      return conn;
+    }
+
+
+    /**
+     * Closes this pool if it has no connections and has not been used for the idle time.
+     *
+     * @param  now  current time in nanoseconds
+     *
+     * @return  whether this pool was closed
+     */
+    boolean closeIfIdle(final long now)
+    {
+      boolean evicted = false;
+      if (now - lastUsed > idleTime.toNanos() && lock.writeLock().tryLock()) {
+        try {
+          if (!closed && pool.activeCount() == 0 && pool.availableCount() == 0) {
+            closed = true;
+            pool.close();
+            evicted = true;
+          }
+        } finally {
+          lock.writeLock().unlock();
+        }
+      }
+      return evicted;
+    }
+
+
+    /** Closes this pool. */
+    void close()
+    {
+      lock.writeLock().lock();
+      try {
+        if (!closed) {
+          closed = true;
+          pool.close();
+        }
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+  }
+}
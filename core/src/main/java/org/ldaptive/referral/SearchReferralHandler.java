@@ -1,6 +1,7 @@
 /* See LICENSE for licensing and NOTICE for copyright. */
 package org.ldaptive.referral;
 
+import java.util.stream.Stream;
 import org.ldaptive.Connection;
 import org.ldaptive.LdapException;
 import org.ldaptive.LdapURL;
@@ -71,7 +72,7 @@ public class SearchReferralHandler extends AbstractReferralHandler<SearchRequest
    * @param  depth  number of referrals followed
    * @param  factory  referral connection factory
    */
-  private SearchReferralHandler(final int limit, final int depth, final ReferralConnectionFactory factory)
+  SearchReferralHandler(final int limit, final int depth, final ReferralConnectionFactory factory)
   {
     super(limit, depth, factory);
   }
@@ -97,15 +98,23 @@ public class SearchReferralHandler extends AbstractReferralHandler<SearchRequest
 
     final org.ldaptive.handler.SearchReferenceHandler[] searchReferenceHandlers = request.getSearchReferenceHandlers();
     if (searchReferenceHandlers != null) {
+      // copy the handlers so that the original request is not modified by concurrent referrals
+      final org.ldaptive.handler.SearchReferenceHandler[] referralHandlers =
+        new org.ldaptive.handler.SearchReferenceHandler[searchReferenceHandlers.length];
       for (int i = 0; i < searchReferenceHandlers.length; i++) {
         if (searchReferenceHandlers[i] instanceof SearchReferenceHandler) {
           final SearchReferenceHandler handler = (SearchReferenceHandler) searchReferenceHandlers[i];
-          searchReferenceHandlers[i] = new SearchReferenceHandler(
+          referralHandlers[i] = new SearchReferenceHandler(
             handler.getReferralLimit(),
             handler.getReferralDepth() + 1,
             handler.getReferralConnectionFactory());
+        } else if (searchReferenceHandlers[i] instanceof ConcurrentSearchReferenceHandler) {
+          referralHandlers[i] = ((ConcurrentSearchReferenceHandler) searchReferenceHandlers[i]).nextDepth();
+        } else {
+          referralHandlers[i] = searchReferenceHandlers[i];
         }
       }
+      referralRequest.setSearchReferenceHandlers(referralHandlers);
     }
     referralRequest.setReturnAttributes(request.getReturnAttributes());
     if (!url.getEntry().isDefaultFilter()) {
@@ -138,10 +147,14 @@ public class SearchReferralHandler extends AbstractReferralHandler<SearchRequest
   public void initializeRequest(final SearchRequest request)
   {
     if (request.getSearchReferenceHandlers() != null) {
-      request.setSearchReferenceHandlers(
-        LdapUtils.concatArrays(
-          request.getSearchReferenceHandlers(),
-          new org.ldaptive.handler.SearchReferenceHandler[] {new SearchReferenceHandler(), }));
+      // references are chased by a concurrent handler if one is present
+      if (Stream.of(request.getSearchReferenceHandlers()).noneMatch(
+        h -> h instanceof ConcurrentSearchReferenceHandler)) {
+        request.setSearchReferenceHandlers(
+          LdapUtils.concatArrays(
+            request.getSearchReferenceHandlers(),
+            new org.ldaptive.handler.SearchReferenceHandler[] {new SearchReferenceHandler(), }));
+      }
     } else {
       request.setSearchReferenceHandlers(new SearchReferenceHandler());
     }
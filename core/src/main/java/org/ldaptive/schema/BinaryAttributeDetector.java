@@ -0,0 +1,304 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.schema;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import org.ldaptive.ConnectionFactory;
+import org.ldaptive.LdapException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Determines whether attribute values should be treated as binary based on the attribute syntaxes defined in a schema.
+ * The schema is processed once into a lookup table of attribute names and OIDs so that providers can decide whether to
+ * decode an attribute as binary or string data without scanning the schema. An attribute is binary if its syntax, or
+ * the syntax inherited from its superior type, is one of {@link #BINARY_SYNTAX_OIDS} or declares the
+ * 'X-NOT-HUMAN-READABLE' or 'X-BINARY-TRANSFER-REQUIRED' extension.
+ *
+ * <p>When created with a connection factory the schema is read lazily through {@link SchemaCache#getDefault()} the
+ * first time a lookup is performed. Lookups made while the schema itself is being read report every attribute as not
+ * binary. If the schema cannot be read the lookup table is left empty and a warning is logged; call {@link #refresh()}
+ * to try again.</p>
+ *
+ * @author  Middleware Services
+ */
+public class BinaryAttributeDetector
+{
+
+  /**
+   * Syntax OIDs that contain binary data. Includes Audio, Binary, Certificate, Certificate List, Certificate Pair, Fax,
+   * JPEG, Octet String, Supported Algorithm and X.509 Attribute Certificate.
+   */
+  public static final Set<String> BINARY_SYNTAX_OIDS = Collections.unmodifiableSet(
+    new HashSet<>(
+      Arrays.asList(
+        "1.3.6.1.4.1.1466.115.121.1.4",
+        "1.3.6.1.4.1.1466.115.121.1.5",
+        "1.3.6.1.4.1.1466.115.121.1.8",
+        "1.3.6.1.4.1.1466.115.121.1.9",
+        "1.3.6.1.4.1.1466.115.121.1.10",
+        "1.3.6.1.4.1.1466.115.121.1.23",
+        "1.3.6.1.4.1.1466.115.121.1.28",
+        "1.3.6.1.4.1.1466.115.121.1.40",
+        "1.3.6.1.4.1.1466.115.121.1.49",
+        "1.3.6.1.4.1.4203.666.11.10.2.1")));
+
+  /** Attribute option that indicates binary transfer. */
+  private static final String BINARY_OPTION = ";binary";
+
+  /** Maximum depth of superior types to follow when resolving a syntax. */
+  private static final int MAX_SUPERIOR_DEPTH = 16;
+
+  /** Logger for this class. */
+  protected final Logger logger = LoggerFactory.getLogger(getClass());
+
+  /** Lock held while the schema is loaded. */
+  private final ReentrantLock loadLock = new ReentrantLock();
+
+  /** Connection factory to read the schema from. */
+  private final ConnectionFactory connectionFactory;
+
+  /** Lookup table. */
+  private volatile Table table;
+
+
+  /**
+   * Creates a new binary attribute detector.
+   *
+   * @param  schema  to read attribute syntaxes from
+   */
+  public BinaryAttributeDetector(final Schema schema)
+  {
+    if (schema == null) {
+      throw new IllegalArgumentException("Schema cannot be null");
+    }
+    connectionFactory = null;
+    table = new Table(schema);
+  }
+
+
+  /**
+   * Creates a new binary attribute detector that reads the schema from the supplied connection factory the first time
+   * it is needed.
+   *
+   * @param  factory  to read the schema from
+   */
+  public BinaryAttributeDetector(final ConnectionFactory factory)
+  {
+    if (factory == null) {
+      throw new IllegalArgumentException("Connection factory cannot be null");
+    }
+    connectionFactory = factory;
+  }
+
+
+  /**
+   * Returns whether the supplied attribute contains binary data. Attribute descriptions with the binary option are
+   * always binary, other options are ignored.
+   *
+   * @param  attributeDescription  name or OID of the attribute, may include options
+   *
+   * @return  whether the attribute is binary
+   */
+  public boolean isBinary(final String attributeDescription)
+  {
+    boolean binary = false;
+    if (attributeDescription != null) {
+      final int optionIndex = attributeDescription.indexOf(';');
+      if (optionIndex == -1) {
+        binary = getTable().contains(attributeDescription);
+      } else if (attributeDescription.toLowerCase().contains(BINARY_OPTION)) {
+        binary = true;
+      } else {
+        binary = getTable().contains(attributeDescription.substring(0, optionIndex));
+      }
+    }
+    return binary;
+  }
+
+
+  /**
+   * Returns the names and OIDs of all binary attributes in the schema.
+   *
+   * @return  binary attribute names and OIDs
+   */
+  public String[] getBinaryAttributeNames()
+  {
+    return getTable().names.clone();
+  }
+
+
+  /**
+   * Reloads the lookup table. If this detector was created with a connection factory the schema is refreshed from the
+   * directory.
+   *
+   * @throws  LdapException  if the schema cannot be read
+   */
+  public void refresh()
+    throws LdapException
+  {
+    if (connectionFactory != null) {
+      loadLock.lock();
+      try {
+        table = new Table(SchemaCache.getDefault().refresh(connectionFactory));
+      } finally {
+        loadLock.unlock();
+      }
+    }
+  }
+
+
+  /**
+   * Returns the lookup table, reading the schema if it has not been read.
+   *
+   * @return  lookup table
+   */
+  private Table getTable()
+  {
+    Table t = table;
+    if (t == null && loadLock.isHeldByCurrentThread()) {
+      t = Table.EMPTY;
+    } else if (t == null) {
+      loadLock.lock();
+      try {
+        t = table;
+        if (t == null) {
+          try {
+            t = new Table(SchemaCache.getDefault().getSchema(connectionFactory));
+          } catch (LdapException e) {
+            logger.warn("Could not read schema from {}, binary attributes will not be detected", connectionFactory, e);
+            t = Table.EMPTY;
+          }
+          table = t;
+        }
+      } finally {
+        loadLock.unlock();
+      }
+    }
+    return t;
+  }
+
+
+  @Override
+  public String toString()
+  {
+    return
+      String.format(
+        "[%s@%d::connectionFactory=%s, binaryAttributeNames=%s]",
+        getClass().getName(),
+        hashCode(),
+        connectionFactory,
+        table != null ? Arrays.toString(table.names) : null);
+  }
+
+
+  /** Lookup table of binary attribute names. */
+  private static final class Table
+  {
+
+    /** Empty table. */
+    private static final Table EMPTY = new Table();
+
+    /** Names and OIDs as defined in the schema. */
+    private final String[] names;
+
+    /** Names and OIDs as defined in the schema and in lower case. */
+    private final Set<String> lookup;
+
+
+    /** Creates a new empty table. */
+    private Table()
+    {
+      names = new String[0];
+      lookup = Collections.emptySet();
+    }
+
+
+    /**
+     * Creates a new table.
+     *
+     * @param  schema  to read attribute syntaxes from
+     */
+    Table(final Schema schema)
+    {
+      final List<String> binaryNames = new ArrayList<>();
+      for (AttributeType type : schema.getAttributeTypes()) {
+        if (isBinarySyntax(schema, resolveSyntaxOID(schema, type))) {
+          if (type.getOID() != null) {
+            binaryNames.add(type.getOID());
+          }
+          if (type.getNames() != null) {
+            Collections.addAll(binaryNames, type.getNames());
+          }
+        }
+      }
+      names = binaryNames.toArray(new String[binaryNames.size()]);
+      final Set<String> s = new HashSet<>(names.length * 4);
+      for (String name : names) {
+        s.add(name);
+        s.add(name.toLowerCase());
+      }
+      lookup = s;
+    }
+
+
+    /**
+     * Returns whether the supplied name is in this table. The name is checked as is before falling back to a lower
+     * case comparison.
+     *
+     * @param  name  to check
+     *
+     * @return  whether name is binary
+     */
+    boolean contains(final String name)
+    {
+      return lookup.contains(name) || lookup.contains(name.toLowerCase());
+    }
+
+
+    /**
+     * Returns the syntax OID for the supplied type, following superior types if no syntax is defined.
+     *
+     * @param  schema  containing the type
+     * @param  type  to resolve the syntax for
+     *
+     * @return  syntax OID or null
+     */
+    private static String resolveSyntaxOID(final Schema schema, final AttributeType type)
+    {
+      String oid = null;
+      AttributeType t = type;
+      for (int i = 0; i < MAX_SUPERIOR_DEPTH && t != null && oid == null; i++) {
+        oid = t.getSyntaxOID(false);
+        t = t.getSuperiorType() != null ? schema.getAttributeType(t.getSuperiorType()) : null;
+      }
+      return oid;
+    }
+
+
+    /**
+     * Returns whether the supplied syntax contains binary data.
+     *
+     * @param  schema  containing the syntax
+     * @param  syntaxOid  to check
+     *
+     * @return  whether the syntax is binary
+     */
+    private static boolean isBinarySyntax(final Schema schema, final String syntaxOid)
+    {
+      if (syntaxOid == null) {
+        return false;
+      }
+      final Syntax syntax = schema.getSyntax(syntaxOid);
+      return
+        BINARY_SYNTAX_OIDS.contains(syntaxOid) ||
+        Syntax.containsBooleanExtension(syntax, "X-NOT-HUMAN-READABLE") ||
+        Syntax.containsBooleanExtension(syntax, "X-BINARY-TRANSFER-REQUIRED");
+    }
+  }
+}
@@ -4,11 +4,16 @@ package org.ldaptive.schema;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 import org.ldaptive.LdapUtils;
 
 /**
- * Bean that contains the schema definitions in RFC 4512.
+ * Bean that contains the schema definitions in RFC 4512. Lookups by OID or name are served from case-insensitive hash
+ * indexes which are built when each collection is set. Collections should not be modified after they are set on this
+ * bean, changes will not be reflected in the indexes unless the collection is set again.
  *
  * @author  Middleware Services
  */
@@ -42,6 +47,36 @@ public class Schema
   /** Object classes. */
   private Collection<ObjectClass> objectClasses = Collections.emptySet();
 
+  /** Attribute types indexed by OID and name. */
+  private Map<String, AttributeType> attributeTypeIndex = Collections.emptyMap();
+
+  /** DIT content rules indexed by OID and name. */
+  private Map<String, DITContentRule> ditContentRuleIndex = Collections.emptyMap();
+
+  /** DIT structure rules indexed by name. */
+  private Map<String, DITStructureRule> ditStructureRuleIndex = Collections.emptyMap();
+
+  /** DIT structure rules indexed by ID. */
+  private Map<Integer, DITStructureRule> ditStructureRuleIdIndex = Collections.emptyMap();
+
+  /** Syntaxes indexed by OID. */
+  private Map<String, Syntax> syntaxIndex = Collections.emptyMap();
+
+  /** Matching rules indexed by OID and name. */
+  private Map<String, MatchingRule> matchingRuleIndex = Collections.emptyMap();
+
+  /** Matching rule uses indexed by OID and name. */
+  private Map<String, MatchingRuleUse> matchingRuleUseIndex = Collections.emptyMap();
+
+  /** Name forms indexed by OID and name. */
+  private Map<String, NameForm> nameFormIndex = Collections.emptyMap();
+
+  /** Object classes indexed by OID and name. */
+  private Map<String, ObjectClass> objectClassIndex = Collections.emptyMap();
+
+  /** Binary attribute names, computed lazily from the attribute types and syntaxes. */
+  private volatile String[] binaryAttributeNames;
+
 
   /** Default constructor. */
   public Schema() {}
@@ -102,12 +137,7 @@ public class Schema
    */
   public AttributeType getAttributeType(final String name)
   {
-    for (AttributeType at : attributeTypes) {
-      if (at.getOID().equals(name) || at.hasName(name)) {
-        return at;
-      }
-    }
-    return null;
+    return name != null ? attributeTypeIndex.get(name.toLowerCase()) : null;
   }
 
 
@@ -119,6 +149,8 @@ public class Schema
   public void setAttributeTypes(final Collection<AttributeType> c)
   {
     attributeTypes = c;
+    attributeTypeIndex = createIndex(c, AttributeType::getOID);
+    binaryAttributeNames = null;
   }
 
 
@@ -130,23 +162,28 @@ public class Schema
    */
   public String[] getBinaryAttributeNames()
   {
-    final List<String> binaryAttrs = new ArrayList<>();
-    for (AttributeType type : attributeTypes) {
-      boolean isBinary = false;
-      final String syntaxOid = type.getSyntaxOID(false);
-      if ("1.3.6.1.4.1.1466.115.121.1.5".equals(syntaxOid)) {
-        isBinary = true;
-      } else {
-        final Syntax syntax = getSyntax(syntaxOid);
-        if (syntax != null && Syntax.containsBooleanExtension(syntax, "X-NOT-HUMAN-READABLE")) {
+    String[] names = binaryAttributeNames;
+    if (names == null) {
+      final List<String> binaryAttrs = new ArrayList<>();
+      for (AttributeType type : attributeTypes) {
+        boolean isBinary = false;
+        final String syntaxOid = type.getSyntaxOID(false);
+        if ("1.3.6.1.4.1.1466.115.121.1.5".equals(syntaxOid)) {
           isBinary = true;
+        } else {
+          final Syntax syntax = getSyntax(syntaxOid);
+          if (syntax != null && Syntax.containsBooleanExtension(syntax, "X-NOT-HUMAN-READABLE")) {
+            isBinary = true;
+          }
+        }
+        if (isBinary) {
+          Collections.addAll(binaryAttrs, type.getNames());
         }
       }
-      if (isBinary) {
-        Collections.addAll(binaryAttrs, type.getNames());
-      }
+      names = binaryAttrs.toArray(new String[binaryAttrs.size()]);
+      binaryAttributeNames = names;
     }
-    return binaryAttrs.toArray(new String[binaryAttrs.size()]);
+    return names.clone();
   }
 
 
@@ -170,12 +207,7 @@ public class Schema
    */
   public DITContentRule getDITContentRule(final String name)
   {
-    for (DITContentRule rule : ditContentRules) {
-      if (rule.getOID().equals(name) || rule.hasName(name)) {
-        return rule;
-      }
-    }
-    return null;
+    return name != null ? ditContentRuleIndex.get(name.toLowerCase()) : null;
   }
 
 
@@ -187,6 +219,7 @@ public class Schema
   public void setDitContentRules(final Collection<DITContentRule> c)
   {
     ditContentRules = c;
+    ditContentRuleIndex = createIndex(c, DITContentRule::getOID);
   }
 
 
@@ -210,12 +243,7 @@ public class Schema
    */
   public DITStructureRule getDITStructureRule(final int id)
   {
-    for (DITStructureRule rule : ditStructureRules) {
-      if (rule.getID() == id) {
-        return rule;
-      }
-    }
-    return null;
+    return ditStructureRuleIdIndex.get(id);
   }
 
 
@@ -228,12 +256,7 @@ public class Schema
    */
   public DITStructureRule getDITStructureRule(final String name)
   {
-    for (DITStructureRule rule : ditStructureRules) {
-      if (rule.hasName(name)) {
-        return rule;
-      }
-    }
-    return null;
+    return name != null ? ditStructureRuleIndex.get(name.toLowerCase()) : null;
   }
 
 
@@ -245,6 +268,16 @@ public class Schema
   public void setDitStructureRules(final Collection<DITStructureRule> c)
   {
     ditStructureRules = c;
+    ditStructureRuleIndex = createIndex(c, null);
+    if (c != null) {
+      final Map<Integer, DITStructureRule> idIndex = new HashMap<>(c.size());
+      for (DITStructureRule rule : c) {
+        idIndex.putIfAbsent(rule.getID(), rule);
+      }
+      ditStructureRuleIdIndex = idIndex;
+    } else {
+      ditStructureRuleIdIndex = Collections.emptyMap();
+    }
   }
 
 
@@ -268,12 +301,7 @@ public class Schema
    */
   public Syntax getSyntax(final String oid)
   {
-    for (Syntax syntax : syntaxes) {
-      if (syntax.getOID().equals(oid)) {
-        return syntax;
-      }
-    }
-    return null;
+    return oid != null ? syntaxIndex.get(oid.toLowerCase()) : null;
   }
 
 
@@ -285,6 +313,18 @@ public class Schema
   public void setSyntaxes(final Collection<Syntax> c)
   {
     syntaxes = c;
+    if (c != null) {
+      final Map<String, Syntax> index = new HashMap<>(c.size());
+      for (Syntax syntax : c) {
+        if (syntax.getOID() != null) {
+          index.putIfAbsent(syntax.getOID().toLowerCase(), syntax);
+        }
+      }
+      syntaxIndex = index;
+    } else {
+      syntaxIndex = Collections.emptyMap();
+    }
+    binaryAttributeNames = null;
   }
 
 
@@ -308,12 +348,7 @@ public class Schema
    */
   public MatchingRule getMatchingRule(final String name)
   {
-    for (MatchingRule rule : matchingRules) {
-      if (rule.getOID().equals(name) || rule.hasName(name)) {
-        return rule;
-      }
-    }
-    return null;
+    return name != null ? matchingRuleIndex.get(name.toLowerCase()) : null;
   }
 
 
@@ -325,6 +360,7 @@ public class Schema
   public void setMatchingRules(final Collection<MatchingRule> c)
   {
     matchingRules = c;
+    matchingRuleIndex = createIndex(c, MatchingRule::getOID);
   }
 
 
@@ -348,12 +384,7 @@ public class Schema
    */
   public MatchingRuleUse getMatchingRuleUse(final String name)
   {
-    for (MatchingRuleUse rule : matchingRuleUses) {
-      if (rule.getOID().equals(name) || rule.hasName(name)) {
-        return rule;
-      }
-    }
-    return null;
+    return name != null ? matchingRuleUseIndex.get(name.toLowerCase()) : null;
   }
 
 
@@ -365,6 +396,7 @@ public class Schema
   public void setMatchingRuleUses(final Collection<MatchingRuleUse> c)
   {
     matchingRuleUses = c;
+    matchingRuleUseIndex = createIndex(c, MatchingRuleUse::getOID);
   }
 
 
@@ -388,12 +420,7 @@ public class Schema
    */
   public NameForm getNameForm(final String name)
   {
-    for (NameForm form : nameForms) {
-      if (form.getOID().equals(name) || form.hasName(name)) {
-        return form;
-      }
-    }
-    return null;
+    return name != null ? nameFormIndex.get(name.toLowerCase()) : null;
   }
 
 
@@ -405,6 +432,7 @@ public class Schema
   public void setNameForms(final Collection<NameForm> c)
   {
     nameForms = c;
+    nameFormIndex = createIndex(c, NameForm::getOID);
   }
 
 
@@ -428,12 +456,7 @@ public class Schema
    */
   public ObjectClass getObjectClass(final String name)
   {
-    for (ObjectClass oc : objectClasses) {
-      if (oc.getOID().equals(name) || oc.hasName(name)) {
-        return oc;
-      }
-    }
-    return null;
+    return name != null ? objectClassIndex.get(name.toLowerCase()) : null;
   }
 
 
@@ -445,6 +468,42 @@ public class Schema
   public void setObjectClasses(final Collection<ObjectClass> c)
   {
     objectClasses = c;
+    objectClassIndex = createIndex(c, ObjectClass::getOID);
+  }
+
+
+  /**
+   * Creates a case-insensitive index of the supplied schema elements keyed by OID and by each name. If multiple
+   * elements share a key the first element in the collection is indexed.
+   *
+   * @param  <T>  type of schema element
+   * @param  c  schema elements to index
+   * @param  oidFunc  to read the OID from each element, may be null if elements have no OID
+   *
+   * @return  index of schema elements
+   */
+  private static <T extends AbstractNamedSchemaElement> Map<String, T> createIndex(
+    final Collection<T> c,
+    final Function<T, String> oidFunc)
+  {
+    if (c == null) {
+      return Collections.emptyMap();
+    }
+    final Map<String, T> index = new HashMap<>(c.size() * 2);
+    for (T element : c) {
+      if (oidFunc != null) {
+        final String oid = oidFunc.apply(element);
+        if (oid != null) {
+          index.putIfAbsent(oid.toLowerCase(), element);
+        }
+      }
+      if (element.getNames() != null) {
+        for (String name : element.getNames()) {
+          index.putIfAbsent(name.toLowerCase(), element);
+        }
+      }
+    }
+    return index;
   }
 
 
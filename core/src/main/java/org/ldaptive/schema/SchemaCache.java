@@ -0,0 +1,392 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.schema;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.ldaptive.ConnectionFactory;
+import org.ldaptive.LdapAttribute;
+import org.ldaptive.LdapEntry;
+import org.ldaptive.LdapException;
+import org.ldaptive.SearchResult;
+import org.ldaptive.io.LdifWriter;
+import org.ldaptive.io.ValueTranscoder;
+import org.ldaptive.schema.io.AttributeTypeValueTranscoder;
+import org.ldaptive.schema.io.DITContentRuleValueTranscoder;
+import org.ldaptive.schema.io.DITStructureRuleValueTranscoder;
+import org.ldaptive.schema.io.MatchingRuleUseValueTranscoder;
+import org.ldaptive.schema.io.MatchingRuleValueTranscoder;
+import org.ldaptive.schema.io.NameFormValueTranscoder;
+import org.ldaptive.schema.io.ObjectClassValueTranscoder;
+import org.ldaptive.schema.io.SyntaxValueTranscoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Caches schemas keyed by the connection factory they were read from, so that the subschema entry is searched for and
+ * parsed once per factory. A snapshot file may be associated with a factory, in which case the schema is read from the
+ * snapshot if it exists and the snapshot is written whenever the schema is loaded from the directory. Cached schemas
+ * can be refreshed on demand or periodically.
+ *
+ * @author  Middleware Services
+ */
+public class SchemaCache
+{
+
+  /** Default cache instance. */
+  private static final SchemaCache DEFAULT_CACHE = new SchemaCache();
+
+  /** DN of the subschema entry written to snapshots. */
+  private static final String SNAPSHOT_DN = "cn=Subschema";
+
+  /** Logger for this class. */
+  protected final Logger logger = LoggerFactory.getLogger(getClass());
+
+  /** Cached schemas. */
+  private final Map<ConnectionFactory, Schema> cache = new ConcurrentHashMap<>();
+
+  /** Loads in progress, so that concurrent requests for the same factory share a single search. */
+  private final ConcurrentMap<ConnectionFactory, FutureTask<Schema>> loading = new ConcurrentHashMap<>();
+
+  /** Snapshot files. */
+  private final Map<ConnectionFactory, Path> snapshots = new ConcurrentHashMap<>();
+
+  /** Executor for performing refreshes. */
+  private final ScheduledExecutorService executor;
+
+
+  /** Creates a new schema cache that is only refreshed on demand. */
+  public SchemaCache()
+  {
+    executor = null;
+  }
+
+
+  /**
+   * Creates a new schema cache that refreshes every cached schema on the supplied interval.
+   *
+   * @param  refreshInterval  to reload schemas from the directory
+   */
+  public SchemaCache(final Duration refreshInterval)
+  {
+    if (refreshInterval == null || refreshInterval.isNegative() || refreshInterval.isZero()) {
+      throw new IllegalArgumentException("Refresh interval must be positive");
+    }
+    executor = Executors.newSingleThreadScheduledExecutor(
+      r -> {
+        final Thread t = new Thread(r, "ldaptive-" + getClass().getSimpleName());
+        t.setDaemon(true);
+        return t;
+      });
+    executor.scheduleAtFixedRate(
+      this::refreshAll,
+      refreshInterval.toMillis(),
+      refreshInterval.toMillis(),
+      TimeUnit.MILLISECONDS);
+  }
+
+
+  /**
+   * Returns the shared schema cache instance. This instance is only refreshed on demand.
+   *
+   * @return  default schema cache
+   */
+  public static SchemaCache getDefault()
+  {
+    return DEFAULT_CACHE;
+  }
+
+
+  /**
+   * Returns the schema for the supplied connection factory. The schema is loaded from the directory the first time it
+   * is requested. Concurrent requests for the same factory wait on a single load, requests for other factories are not
+   * blocked.
+   *
+   * @param  factory  to read the schema with
+   *
+   * @return  schema
+   *
+   * @throws  LdapException  if the schema cannot be read
+   */
+  public Schema getSchema(final ConnectionFactory factory)
+    throws LdapException
+  {
+    Schema schema = cache.get(factory);
+    if (schema == null) {
+      final FutureTask<Schema> task = new FutureTask<>(
+        () -> {
+          // another load may have completed since the cache was checked
+          Schema s = cache.get(factory);
+          if (s == null) {
+            s = readSnapshot(snapshots.get(factory));
+            if (s == null) {
+              s = load(factory);
+            }
+            cache.put(factory, s);
+          }
+          return s;
+        });
+      final FutureTask<Schema> existing = loading.putIfAbsent(factory, task);
+      if (existing == null) {
+        try {
+          task.run();
+        } finally {
+          loading.remove(factory, task);
+        }
+      }
+      schema = awaitLoad(existing != null ? existing : task);
+    }
+    return schema;
+  }
+
+
+  /**
+   * Waits for the supplied load to complete.
+   *
+   * @param  task  loading a schema
+   *
+   * @return  loaded schema
+   *
+   * @throws  LdapException  if the load failed or the thread is interrupted
+   */
+  private static Schema awaitLoad(final FutureTask<Schema> task)
+    throws LdapException
+  {
+    try {
+      return task.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new LdapException("Interrupted waiting for schema", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof LdapException) {
+        throw (LdapException) e.getCause();
+      }
+      throw new LdapException("Could not load schema", e);
+    }
+  }
+
+
+  /**
+   * Returns the schema for the supplied connection factory. The snapshot is used to create the schema if it exists,
+   * otherwise the schema is loaded from the directory and the snapshot is written.
+   *
+   * @param  factory  to read the schema with
+   * @param  snapshot  file containing the subschema entry in LDIF format
+   *
+   * @return  schema
+   *
+   * @throws  LdapException  if the schema cannot be read
+   */
+  public Schema getSchema(final ConnectionFactory factory, final Path snapshot)
+    throws LdapException
+  {
+    if (snapshot != null) {
+      snapshots.putIfAbsent(factory, snapshot);
+    }
+    return getSchema(factory);
+  }
+
+
+  /**
+   * Loads the schema for the supplied connection factory from the directory, replacing any cached schema and writing
+   * the snapshot if one is configured.
+   *
+   * @param  factory  to read the schema with
+   *
+   * @return  refreshed schema
+   *
+   * @throws  LdapException  if the schema cannot be read
+   */
+  public Schema refresh(final ConnectionFactory factory)
+    throws LdapException
+  {
+    final Schema schema = load(factory);
+    cache.put(factory, schema);
+    return schema;
+  }
+
+
+  /**
+   * Removes the schema for the supplied connection factory from this cache. Any snapshot file is left in place.
+   *
+   * @param  factory  to remove
+   */
+  public void invalidate(final ConnectionFactory factory)
+  {
+    cache.remove(factory);
+  }
+
+
+  /** Removes all schemas from this cache. */
+  public void clear()
+  {
+    cache.clear();
+  }
+
+
+  /**
+   * Returns the number of schemas in this cache.
+   *
+   * @return  size of this cache
+   */
+  public int size()
+  {
+    return cache.size();
+  }
+
+
+  /** Frees any resources associated with this cache. */
+  public void close()
+  {
+    if (executor != null) {
+      executor.shutdown();
+    }
+    cache.clear();
+    snapshots.clear();
+  }
+
+
+  /** Refreshes every cached schema. Failures are logged and the previous schema is retained. */
+  protected void refreshAll()
+  {
+    for (ConnectionFactory factory : cache.keySet()) {
+      try {
+        refresh(factory);
+      } catch (Exception e) {
+        logger.warn("Could not refresh schema for {}", factory, e);
+      }
+    }
+  }
+
+
+  /**
+   * Reads the schema from the directory and writes the snapshot if one is configured for the factory.
+   *
+   * @param  factory  to read the schema with
+   *
+   * @return  schema
+   *
+   * @throws  LdapException  if the schema cannot be read
+   */
+  protected Schema load(final ConnectionFactory factory)
+    throws LdapException
+  {
+    final Schema schema = SchemaFactory.createSchema(factory);
+    final Path snapshot = snapshots.get(factory);
+    if (snapshot != null) {
+      try {
+        writeSnapshot(schema, snapshot);
+      } catch (IOException e) {
+        logger.warn("Could not write schema snapshot to {}", snapshot, e);
+      }
+    }
+    return schema;
+  }
+
+
+  /**
+   * Reads a schema from the supplied snapshot file.
+   *
+   * @param  snapshot  to read
+   *
+   * @return  schema or null if the snapshot does not exist or cannot be read
+   */
+  protected Schema readSnapshot(final Path snapshot)
+  {
+    Schema schema = null;
+    if (snapshot != null && Files.isReadable(snapshot)) {
+      try (InputStream is = Files.newInputStream(snapshot)) {
+        schema = SchemaFactory.createSchema(is);
+      } catch (Exception e) {
+        logger.warn("Could not read schema snapshot from {}", snapshot, e);
+      }
+    }
+    return schema;
+  }
+
+
+  /**
+   * Writes the supplied schema to a snapshot file in LDIF format. The file is written to a temporary file and then
+   * moved into place so that readers never observe a partial snapshot.
+   *
+   * @param  schema  to write
+   * @param  snapshot  to write to
+   *
+   * @throws  IOException  if the snapshot cannot be written
+   */
+  public static void writeSnapshot(final Schema schema, final Path snapshot)
+    throws IOException
+  {
+    final Path parent = snapshot.toAbsolutePath().getParent();
+    final Path tmp = Files.createTempFile(parent, snapshot.getFileName().toString(), ".tmp");
+    try {
+      try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+        new LdifWriter(writer).write(new SearchResult(createSchemaEntry(schema)));
+      }
+      Files.move(tmp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+
+  /**
+   * Creates a subschema entry containing the definitions in the supplied schema. This entry can be parsed with {@link
+   * SchemaFactory#createSchema(LdapEntry)}.
+   *
+   * @param  schema  to format
+   *
+   * @return  subschema entry
+   */
+  public static LdapEntry createSchemaEntry(final Schema schema)
+  {
+    final Map<String, LdapAttribute> attrs = new HashMap<>();
+    addAttribute(attrs, "ldapSyntaxes", new SyntaxValueTranscoder(), schema.getSyntaxes());
+    addAttribute(attrs, "matchingRules", new MatchingRuleValueTranscoder(), schema.getMatchingRules());
+    addAttribute(attrs, "attributeTypes", new AttributeTypeValueTranscoder(), schema.getAttributeTypes());
+    addAttribute(attrs, "objectClasses", new ObjectClassValueTranscoder(), schema.getObjectClasses());
+    addAttribute(attrs, "matchingRuleUse", new MatchingRuleUseValueTranscoder(), schema.getMatchingRuleUses());
+    addAttribute(attrs, "dITContentRules", new DITContentRuleValueTranscoder(), schema.getDitContentRules());
+    addAttribute(attrs, "dITStructureRules", new DITStructureRuleValueTranscoder(), schema.getDitStructureRules());
+    addAttribute(attrs, "nameForms", new NameFormValueTranscoder(), schema.getNameForms());
+    return new LdapEntry(SNAPSHOT_DN, attrs.values());
+  }
+
+
+  /**
+   * Adds an attribute with the supplied values to the attribute map if values is not empty.
+   *
+   * @param  <T>  type of schema element
+   * @param  attrs  to add the attribute to
+   * @param  name  of the attribute
+   * @param  transcoder  to encode values with
+   * @param  values  of the attribute
+   */
+  private static <T> void addAttribute(
+    final Map<String, LdapAttribute> attrs,
+    final String name,
+    final ValueTranscoder<T> transcoder,
+    final Collection<T> values)
+  {
+    if (values != null && !values.isEmpty()) {
+      final LdapAttribute attr = new LdapAttribute(name);
+      attr.addValues(transcoder, values);
+      attrs.put(name, attr);
+    }
+  }
+}
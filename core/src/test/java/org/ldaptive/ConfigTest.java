@@ -32,6 +32,7 @@ public class ConfigTest
     PRIMITIVE_TYPES.put(int.class, 0);
     PRIMITIVE_TYPES.put(long.class, 0);
     PRIMITIVE_TYPES.put(boolean.class, false);
+    PRIMITIVE_TYPES.put(double.class, 0d);
   }
 
 
@@ -2,6 +2,11 @@
 package org.ldaptive;
 
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.naming.NamingException;
 import org.testng.Assert;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
@@ -72,4 +77,95 @@ public class DnsSrvConnectionStrategyTest
       strategy.sortSrvRecords(Arrays.asList(records)).toArray(new DnsSrvConnectionStrategy.SrvRecord[records.length]),
       sorted);
   }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"provider"})
+  public void weightedSelection()
+    throws Exception
+  {
+    final DnsSrvConnectionStrategy.SrvRecord heavy = new DnsSrvConnectionStrategy.SrvRecord(
+      "0 90 389 heavy.ldaptive.org.", 0);
+    final DnsSrvConnectionStrategy.SrvRecord light = new DnsSrvConnectionStrategy.SrvRecord(
+      "0 10 389 light.ldaptive.org.", 0);
+    final DnsSrvConnectionStrategy.SrvRecord backup = new DnsSrvConnectionStrategy.SrvRecord(
+      "1 0 389 backup.ldaptive.org.", 0);
+    int heavyFirst = 0;
+    for (int i = 0; i < 1000; i++) {
+      final List<DnsSrvConnectionStrategy.SrvRecord> sorted = strategy.sortSrvRecords(
+        Arrays.asList(light, backup, heavy));
+      Assert.assertEquals(sorted.size(), 3);
+      Assert.assertEquals(sorted.get(2), backup);
+      if (sorted.get(0).equals(heavy)) {
+        heavyFirst++;
+      }
+    }
+    Assert.assertTrue(heavyFirst > 800 && heavyFirst < 980, "Heavy record was first " + heavyFirst + " times");
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"provider"})
+  public void staleWhileRevalidate()
+    throws Exception
+  {
+    final AtomicInteger lookups = new AtomicInteger();
+    final DnsSrvConnectionStrategy.SrvRecord[] current = new DnsSrvConnectionStrategy.SrvRecord[1];
+    final DnsSrvConnectionStrategy s = new DnsSrvConnectionStrategy(100) {
+      @Override
+      protected List<SrvRecord> retrieveDNSRecords(final String name, final Map<String, Object> props, final long ttl)
+        throws NamingException
+      {
+        lookups.incrementAndGet();
+        if (current[0] == null) {
+          throw new NamingException("DNS unavailable");
+        }
+        return Collections.singletonList(current[0]);
+      }
+    };
+    final ConnectionFactoryMetadata metadata = new TestConnectionFactoryMetadata("_ldap._tcp.ldaptive.org");
+
+    // initial lookup failure is reported to the caller
+    try {
+      s.getLdapUrls(metadata);
+      Assert.fail("Should have thrown IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      Assert.assertEquals(e.getCause().getClass(), NamingException.class);
+    }
+
+    current[0] = new DnsSrvConnectionStrategy.SrvRecord("0 0 389 larry.ldaptive.org.", 0);
+    Assert.assertEquals(s.getLdapUrls(metadata), new String[] {"ldap://larry.ldaptive.org:389"});
+    Assert.assertEquals(lookups.get(), 2);
+
+    // expired records are used while DNS is unavailable
+    current[0] = null;
+    Thread.sleep(150);
+    Assert.assertEquals(s.getLdapUrls(metadata), new String[] {"ldap://larry.ldaptive.org:389"});
+    waitForLookups(lookups, 3);
+    Assert.assertEquals(s.getLdapUrls(metadata), new String[] {"ldap://larry.ldaptive.org:389"});
+    Assert.assertEquals(lookups.get(), 3);
+
+    // refresh replaces the records in the background
+    current[0] = new DnsSrvConnectionStrategy.SrvRecord("0 0 389 curly.ldaptive.org.", 0);
+    s.refresh("_ldap._tcp.ldaptive.org");
+    Assert.assertEquals(s.getLdapUrls(metadata), new String[] {"ldap://curly.ldaptive.org:389"});
+  }
+
+
+  /**
+   * Waits for the supplied number of lookups to occur.
+   *
+   * @param  lookups  counter
+   * @param  count  to wait for
+   *
+   * @throws  Exception  if the lookups do not occur
+   */
+  private static void waitForLookups(final AtomicInteger lookups, final int count)
+    throws Exception
+  {
+    for (int i = 0; i < 100 && lookups.get() < count; i++) {
+      Thread.sleep(10);
+    }
+    Assert.assertEquals(lookups.get(), count);
+  }
 }
@@ -0,0 +1,171 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.ldaptive.schema.AttributeType;
+import org.ldaptive.schema.Schema;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for {@link EntryDiff}.
+ *
+ * @author  Middleware Services
+ */
+public class EntryDiffTest
+{
+
+  /** Schema with equality rules. */
+  private Schema schema;
+
+
+  /** @throws  Exception  On test failure. */
+  @BeforeClass(groups = {"bean"})
+  public void createSchema()
+    throws Exception
+  {
+    schema = new Schema();
+    schema.setAttributeTypes(
+      Arrays.asList(
+        AttributeType.parse("( 2.5.4.41 NAME 'name' EQUALITY caseIgnoreMatch )"),
+        AttributeType.parse("( 2.5.4.3 NAME ( 'cn' 'commonName' ) SUP name )"),
+        AttributeType.parse("( 0.9.2342.19200300.100.1.1 NAME 'uid' EQUALITY caseExactMatch SINGLE-VALUE )"),
+        AttributeType.parse("( 1.3.6.1.1.1.1.0 NAME 'uidNumber' EQUALITY integerMatch )"),
+        AttributeType.parse("( 2.5.4.31 NAME 'member' EQUALITY distinguishedNameMatch )")));
+  }
+
+
+  /**
+   * Asserts that the supplied modifications contain one with the supplied type, attribute name and values.
+   *
+   * @param  mods  to search
+   * @param  type  expected modification type
+   * @param  name  expected attribute name
+   * @param  values  expected values
+   */
+  private static void assertModification(
+    final AttributeModification[] mods,
+    final AttributeModificationType type,
+    final String name,
+    final String... values)
+  {
+    AttributeModification mod = null;
+    for (AttributeModification am : mods) {
+      if (am.getAttributeModificationType() == type && am.getAttribute().getName().equals(name)) {
+        mod = am;
+      }
+    }
+    Assert.assertNotNull(mod, type + " " + name + " not found in " + Arrays.toString(mods));
+    Assert.assertEquals(mod.getAttribute().getStringValues().toArray(), values);
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"bean"})
+  public void exact()
+    throws Exception
+  {
+    final LdapEntry source = new LdapEntry(
+      "uid=jdoe,dc=ldaptive,dc=org",
+      new LdapAttribute("cn", "a", "b", "c"),
+      new LdapAttribute("mail", "jdoe@ldaptive.org"),
+      new LdapAttribute("uid", "jdoe"));
+    final LdapEntry target = new LdapEntry(
+      "uid=jdoe,dc=ldaptive,dc=org",
+      new LdapAttribute("cn", "a", "b", "d"),
+      new LdapAttribute("description", "old"),
+      new LdapAttribute("UID", "JDoe"));
+    final AttributeModification[] mods = new EntryDiff().computeModifications(source, target);
+    Assert.assertEquals(mods.length, 5);
+    assertModification(mods, AttributeModificationType.REMOVE, "cn", "d");
+    assertModification(mods, AttributeModificationType.ADD, "cn", "c");
+    assertModification(mods, AttributeModificationType.ADD, "mail", "jdoe@ldaptive.org");
+    assertModification(mods, AttributeModificationType.REPLACE, "uid", "jdoe");
+    assertModification(mods, AttributeModificationType.REMOVE, "description");
+
+    Assert.assertEquals(new EntryDiff().computeModifications(source, source).length, 0);
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"bean"})
+  public void matchingRules()
+    throws Exception
+  {
+    final LdapEntry source = new LdapEntry(
+      "uid=jdoe,dc=ldaptive,dc=org",
+      new LdapAttribute("cn", "John  Doe", "JD"),
+      new LdapAttribute("uid", "jdoe"),
+      new LdapAttribute("uidNumber", "0100"),
+      new LdapAttribute("member", "uid=JSmith, DC=ldaptive,dc=org", "uid=bjones,dc=ldaptive,dc=org"));
+    final LdapEntry target = new LdapEntry(
+      "uid=jdoe,dc=ldaptive,dc=org",
+      new LdapAttribute("cn", "john doe", "jd"),
+      new LdapAttribute("uid", "JDoe"),
+      new LdapAttribute("uidNumber", "100"),
+      new LdapAttribute("member", "UID=jsmith,dc=ldaptive,dc=org"));
+
+    final AttributeModification[] mods = new EntryDiff(schema).computeModifications(source, target);
+    Assert.assertEquals(mods.length, 2);
+    assertModification(mods, AttributeModificationType.REPLACE, "uid", "jdoe");
+    assertModification(mods, AttributeModificationType.ADD, "member", "uid=bjones,dc=ldaptive,dc=org");
+
+    // without a schema no value is kept, so every attribute is replaced
+    Assert.assertEquals(new EntryDiff().computeModifications(source, target).length, 4);
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"bean"})
+  public void binary()
+    throws Exception
+  {
+    final EntryDiff diff = new EntryDiff(schema);
+    final LdapEntry source = new LdapEntry(
+      "uid=jdoe,dc=ldaptive,dc=org",
+      new LdapAttribute("jpegPhoto", new byte[] {1, 2, 3}, new byte[] {4, 5, 6}),
+      new LdapAttribute("description", "abc"));
+    final LdapEntry target = new LdapEntry(
+      "uid=jdoe,dc=ldaptive,dc=org",
+      new LdapAttribute("jpegPhoto", new byte[] {4, 5, 6}, new byte[] {1, 2, 3}),
+      new LdapAttribute("description", new byte[] {'a', 'b', 'c'}));
+    Assert.assertEquals(diff.computeModifications(source, target).length, 0);
+
+    target.addAttribute(new LdapAttribute("jpegPhoto", new byte[] {1, 2, 3}, new byte[] {7}));
+    final AttributeModification[] mods = diff.computeModifications(source, target);
+    Assert.assertEquals(mods.length, 2);
+    Assert.assertEquals(mods[0].getAttributeModificationType(), AttributeModificationType.REMOVE);
+    Assert.assertEquals(mods[0].getAttribute().getBinaryValue(), new byte[] {7});
+    Assert.assertEquals(mods[1].getAttributeModificationType(), AttributeModificationType.ADD);
+    Assert.assertEquals(mods[1].getAttribute().getBinaryValue(), new byte[] {4, 5, 6});
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"bean"})
+  public void largeAttribute()
+    throws Exception
+  {
+    final List<String> targetValues = new ArrayList<>();
+    final List<String> sourceValues = new ArrayList<>();
+    for (int i = 0; i < 100000; i++) {
+      final String value = "uid=user" + i + ",ou=people,dc=ldaptive,dc=org";
+      targetValues.add(value);
+      sourceValues.add(i == 500 ? "uid=new,ou=people,dc=ldaptive,dc=org" : value.toUpperCase());
+    }
+    final LdapAttribute targetAttr = new LdapAttribute("member");
+    targetAttr.addStringValues(targetValues);
+    final LdapAttribute sourceAttr = new LdapAttribute("member");
+    sourceAttr.addStringValues(sourceValues);
+
+    final AttributeModification[] mods = new EntryDiff(schema).computeModifications(
+      new LdapEntry("cn=group,dc=ldaptive,dc=org", sourceAttr),
+      new LdapEntry("cn=group,dc=ldaptive,dc=org", targetAttr));
+    Assert.assertEquals(mods.length, 2);
+    assertModification(mods, AttributeModificationType.REMOVE, "member", "uid=user500,ou=people,dc=ldaptive,dc=org");
+    assertModification(mods, AttributeModificationType.ADD, "member", "uid=new,ou=people,dc=ldaptive,dc=org");
+  }
+}
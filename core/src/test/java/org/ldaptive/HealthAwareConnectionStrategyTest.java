@@ -0,0 +1,93 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive;
+
+import java.time.Duration;
+import org.ldaptive.provider.ConnectionException;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for {@link HealthAwareConnectionStrategy}.
+ *
+ * @author  Middleware Services
+ */
+public class HealthAwareConnectionStrategyTest
+{
+
+  /** URL 1. */
+  private static final String URL_1 = "ldap://directory-1.ldaptive.org";
+
+  /** URL 2. */
+  private static final String URL_2 = "ldap://directory-2.ldaptive.org";
+
+  /** URL 3. */
+  private static final String URL_3 = "ldap://directory-3.ldaptive.org";
+
+  /** Metadata containing all URLs. */
+  private static final ConnectionFactoryMetadata METADATA = new TestConnectionFactoryMetadata(
+    URL_1 + " " + URL_2 + " " + URL_3);
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"conn"})
+  public void ejection()
+    throws Exception
+  {
+    final HealthAwareConnectionStrategy strategy = new HealthAwareConnectionStrategy();
+    strategy.setLatencyWeighted(false);
+    strategy.setFailureThreshold(2);
+    strategy.setEjectionTime(Duration.ofMillis(200));
+    Assert.assertNull(strategy.getLdapUrls(new TestConnectionFactoryMetadata()));
+    Assert.assertEquals(strategy.getLdapUrls(METADATA), new String[] {URL_1, URL_2, URL_3});
+
+    strategy.connectionFailed(URL_1, new ConnectionException("test"));
+    Assert.assertFalse(strategy.isEjected(URL_1));
+    Assert.assertEquals(strategy.getLdapUrls(METADATA), new String[] {URL_1, URL_2, URL_3});
+
+    strategy.connectionFailed(URL_1, new ConnectionException("test"));
+    Assert.assertTrue(strategy.isEjected(URL_1));
+    Assert.assertEquals(strategy.getLdapUrls(METADATA), new String[] {URL_2, URL_3, URL_1});
+
+    strategy.connectionFailed(URL_2, new ConnectionException("test"));
+    strategy.connectionFailed(URL_2, new ConnectionException("test"));
+    Assert.assertEquals(strategy.getLdapUrls(METADATA), new String[] {URL_3, URL_1, URL_2});
+
+    Thread.sleep(250);
+    Assert.assertFalse(strategy.isEjected(URL_1));
+    Assert.assertEquals(strategy.getLdapUrls(METADATA), new String[] {URL_1, URL_2, URL_3});
+
+    // second ejection doubles the ejection time
+    strategy.connectionFailed(URL_1, new ConnectionException("test"));
+    strategy.connectionFailed(URL_1, new ConnectionException("test"));
+    Thread.sleep(250);
+    Assert.assertTrue(strategy.isEjected(URL_1));
+
+    strategy.connectionSucceeded(URL_1, Duration.ofMillis(5));
+    Assert.assertFalse(strategy.isEjected(URL_1));
+    Assert.assertEquals(strategy.getLatency(URL_1), Duration.ofMillis(5));
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"conn"})
+  public void latencyWeighted()
+    throws Exception
+  {
+    final HealthAwareConnectionStrategy strategy = new HealthAwareConnectionStrategy();
+    strategy.connectionSucceeded(URL_1, Duration.ofMillis(500));
+    strategy.connectionSucceeded(URL_2, Duration.ofMillis(5));
+    strategy.connectionSucceeded(URL_3, Duration.ofMillis(500));
+    strategy.connectionSucceeded(URL_3, Duration.ofMillis(1000));
+    Assert.assertEquals(strategy.getLatency(URL_3), Duration.ofMillis(650));
+
+    int fastestFirst = 0;
+    for (int i = 0; i < 1000; i++) {
+      final String[] urls = strategy.getLdapUrls(METADATA);
+      Assert.assertEquals(urls.length, 3);
+      if (URL_2.equals(urls[0])) {
+        fastestFirst++;
+      }
+    }
+    Assert.assertTrue(fastestFirst > 900, "Fastest URL was first " + fastestFirst + " times");
+  }
+}
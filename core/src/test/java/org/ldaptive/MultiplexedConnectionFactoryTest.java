@@ -0,0 +1,190 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.ldaptive.handler.ConcurrentSearchEntryHandler;
+import org.ldaptive.handler.RecursiveEntryHandler;
+import org.ldaptive.provider.nio.NioProvider;
+import org.ldaptive.provider.nio.TestLdapServer;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for {@link MultiplexedConnectionFactory}.
+ *
+ * @author  Middleware Services
+ */
+public class MultiplexedConnectionFactoryTest
+{
+
+
+  /**
+   * Creates a test server with five entries.
+   *
+   * @param  delay  time to wait before each entry is returned
+   *
+   * @return  test server
+   *
+   * @throws  Exception  if the server cannot be started
+   */
+  private static TestLdapServer createServer(final long delay)
+    throws Exception
+  {
+    final TestLdapServer server = new TestLdapServer(null, false);
+    server.setEntryDelay(delay);
+    for (int i = 1; i <= 5; i++) {
+      server.addEntry(new LdapEntry("uid=" + i + ",dc=ldaptive", new LdapAttribute("uid", String.valueOf(i))));
+    }
+    return server;
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"conn"})
+  public void concurrentSearches()
+    throws Exception
+  {
+    final TestLdapServer server = createServer(20);
+    final MultiplexedConnectionFactory factory = new MultiplexedConnectionFactory(
+      new DefaultConnectionFactory(new ConnectionConfig(server.getLdapUrl()), new NioProvider()), 2, 4);
+    final ExecutorService executor = Executors.newFixedThreadPool(16);
+    try {
+      final List<Future<SearchResult>> results = new ArrayList<>();
+      for (int i = 0; i < 32; i++) {
+        final int uid = i % 5 + 1;
+        results.add(
+          executor.submit(
+            () -> {
+              try (Connection conn = factory.getConnection()) {
+                conn.open();
+                return new SearchOperation(conn).execute(new SearchRequest("", "(uid=" + uid + ")")).getResult();
+              }
+            }));
+      }
+      for (int i = 0; i < results.size(); i++) {
+        final SearchResult result = results.get(i).get(10, TimeUnit.SECONDS);
+        Assert.assertEquals(result.getEntry().getAttribute("uid").getStringValue(), String.valueOf(i % 5 + 1));
+      }
+      Assert.assertEquals(server.getClientCount(), 2);
+      Assert.assertTrue(factory.getPeakInFlight() > 1);
+      Assert.assertTrue(factory.getPeakInFlight() <= 4);
+      Assert.assertEquals(factory.getInFlightCount(), 0);
+    } finally {
+      executor.shutdown();
+      factory.close();
+      server.close();
+    }
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"conn"}, timeOut = 60000)
+  public void concurrentRecursiveHandler()
+    throws Exception
+  {
+    final TestLdapServer server = new TestLdapServer(null, false);
+    server.addEntry(new LdapEntry("cn=group,dc=ldaptive", new LdapAttribute("cn", "group")));
+    final int count = 1200;
+    for (int i = 1; i <= count; i++) {
+      server.addEntry(
+        new LdapEntry(
+          "uid=" + i + ",dc=ldaptive",
+          new LdapAttribute("uid", String.valueOf(i)),
+          new LdapAttribute("member", "cn=group,dc=ldaptive")));
+    }
+    // more results than the search queue capacity, each handled by a search on the same physical connection
+    final MultiplexedConnectionFactory factory = new MultiplexedConnectionFactory(
+      new DefaultConnectionFactory(new ConnectionConfig(server.getLdapUrl()), new NioProvider()), 1, 4);
+    try (Connection conn = factory.getConnection()) {
+      conn.open();
+      final SearchRequest request = new SearchRequest("", "(uid=*)");
+      request.setSearchEntryHandlers(
+        new ConcurrentSearchEntryHandler(),
+        new RecursiveEntryHandler("member", "cn"));
+      final SearchResult result = new SearchOperation(conn).execute(request).getResult();
+      Assert.assertEquals(result.size(), count);
+      for (LdapEntry e : result.getEntries()) {
+        Assert.assertEquals(e.getAttribute("cn").getStringValue(), "group");
+      }
+    } finally {
+      factory.close();
+      server.close();
+    }
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"conn"})
+  public void blockWaitTime()
+    throws Exception
+  {
+    final TestLdapServer server = createServer(500);
+    final MultiplexedConnectionFactory factory = new MultiplexedConnectionFactory(
+      new DefaultConnectionFactory(new ConnectionConfig(server.getLdapUrl()), new NioProvider()), 1, 1);
+    factory.setBlockWaitTime(Duration.ofMillis(50));
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    try (Connection conn = factory.getConnection()) {
+      conn.open();
+      final Future<SearchResult> slow = executor.submit(
+        () -> new SearchOperation(conn).execute(new SearchRequest("", "(uid=1)")).getResult());
+      while (factory.getInFlightCount() == 0) {
+        Thread.sleep(5);
+      }
+      try {
+        new SearchOperation(conn).execute(new SearchRequest("", "(uid=2)"));
+        Assert.fail("Should have thrown exception");
+      } catch (LdapException e) {
+        Assert.assertEquals(e.getResultCode(), ResultCode.LDAP_TIMEOUT);
+      }
+      Assert.assertEquals(slow.get(10, TimeUnit.SECONDS).size(), 1);
+    } finally {
+      executor.shutdown();
+      factory.close();
+      server.close();
+    }
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"conn"})
+  public void reconnect()
+    throws Exception
+  {
+    final TestLdapServer server = createServer(0);
+    final MultiplexedConnectionFactory factory = new MultiplexedConnectionFactory(
+      new DefaultConnectionFactory(new ConnectionConfig(server.getLdapUrl()), new NioProvider()), 1, 8);
+    try (Connection conn = factory.getConnection()) {
+      conn.open();
+      Assert.assertEquals(new SearchOperation(conn).execute(new SearchRequest("", "(uid=1)")).getResult().size(), 1);
+      server.disconnectAll();
+      Thread.sleep(100);
+      try {
+        new SearchOperation(conn).execute(new SearchRequest("", "(uid=2)"));
+      } catch (LdapException e) {
+        // first operation after the disconnect may fail
+        Assert.assertEquals(e.getResultCode(), ResultCode.SERVER_DOWN);
+      }
+      Assert.assertEquals(new SearchOperation(conn).execute(new SearchRequest("", "(uid=3)")).getResult().size(), 1);
+    } finally {
+      factory.close();
+      server.close();
+    }
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"conn"}, expectedExceptions = UnsupportedOperationException.class)
+  public void bind()
+    throws Exception
+  {
+    final MultiplexedConnectionFactory factory = new MultiplexedConnectionFactory(
+      new DefaultConnectionFactory(new ConnectionConfig("ldap://localhost:389"), new NioProvider()));
+    factory.getConnection().open(new BindRequest("uid=1,dc=ldaptive", new Credential("password")));
+  }
+}
@@ -0,0 +1,249 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import org.ldaptive.io.LdifWriter;
+import org.ldaptive.provider.nio.NioProvider;
+import org.ldaptive.provider.nio.TestLdapServer;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for {@link OffHeapSearchResult}.
+ *
+ * @author  Middleware Services
+ */
+public class OffHeapSearchResultTest
+{
+
+
+  /**
+   * Creates a new entry.
+   *
+   * @param  uid  of the entry
+   * @param  mail  value of the entry
+   *
+   * @return  ldap entry
+   */
+  private static LdapEntry createEntry(final String uid, final String mail)
+  {
+    return new LdapEntry(
+      "uid=" + uid + ",ou=people,dc=ldaptive,dc=org",
+      new LdapAttribute("uid", uid),
+      new LdapAttribute("mail", mail, uid + "@alias.ldaptive.org"));
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"bean"})
+  public void addGetRemove()
+    throws Exception
+  {
+    try (OffHeapSearchResult result = new OffHeapSearchResult()) {
+      Assert.assertEquals(result.size(), 0);
+      Assert.assertNull(result.getEntry());
+      result.addEntry(createEntry("jdoe", "jdoe@ldaptive.org"), createEntry("jjones", "jjones@ldaptive.org"));
+      Assert.assertEquals(result.size(), 2);
+      Assert.assertEquals(result.getEntry(), createEntry("jdoe", "jdoe@ldaptive.org"));
+      Assert.assertEquals(
+        result.getEntry("UID=JJONES,OU=PEOPLE,DC=LDAPTIVE,DC=ORG"),
+        createEntry("jjones", "jjones@ldaptive.org"));
+      Assert.assertNull(result.getEntry("uid=bjohnson,ou=people,dc=ldaptive,dc=org"));
+
+      // replacing an entry keeps its position
+      result.addEntry(createEntry("jdoe", "john.doe@ldaptive.org"));
+      Assert.assertEquals(result.size(), 2);
+      Assert.assertEquals(result.getEntry(), createEntry("jdoe", "john.doe@ldaptive.org"));
+
+      result.removeEntry("uid=jdoe,ou=people,dc=ldaptive,dc=org");
+      Assert.assertEquals(result.size(), 1);
+      Assert.assertNull(result.getEntry("uid=jdoe,ou=people,dc=ldaptive,dc=org"));
+      Assert.assertEquals(result.getEntry(), createEntry("jjones", "jjones@ldaptive.org"));
+      Assert.assertEquals(result.getEntryDns(), new String[] {"uid=jjones,ou=people,dc=ldaptive,dc=org"});
+
+      result.removeEntry(createEntry("jjones", "jjones@ldaptive.org"));
+      Assert.assertEquals(result.size(), 0);
+      Assert.assertFalse(result.getEntries().iterator().hasNext());
+
+      result.addEntry(createEntry("jdoe", "jdoe@ldaptive.org"));
+      Assert.assertEquals(result.size(), 1);
+      result.clear();
+      Assert.assertEquals(result.size(), 0);
+      Assert.assertEquals(result.getDataSize(), 0);
+      Assert.assertNull(result.getEntry("uid=jdoe,ou=people,dc=ldaptive,dc=org"));
+    }
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"bean"})
+  public void largeResult()
+    throws Exception
+  {
+    final int count = 10000;
+    try (OffHeapSearchResult result = new OffHeapSearchResult()) {
+      final SearchResult heap = new SearchResult(SortBehavior.ORDERED);
+      for (int i = 0; i < count; i++) {
+        final LdapEntry entry = createEntry("u" + i, "u" + i + "@ldaptive.org");
+        result.addEntry(entry);
+        heap.addEntry(entry);
+      }
+      // removes enough entries for the index to be compacted
+      for (int i = 0; i < count; i += 2) {
+        result.removeEntry("uid=u" + i + ",ou=people,dc=ldaptive,dc=org");
+        heap.removeEntry("uid=u" + i + ",ou=people,dc=ldaptive,dc=org");
+      }
+      for (int i = count; i < count * 2; i++) {
+        final LdapEntry entry = createEntry("u" + i, "u" + i + "@ldaptive.org");
+        result.addEntry(entry);
+        heap.addEntry(entry);
+      }
+      Assert.assertEquals(result.size(), count / 2 + count);
+      for (int i = 0; i < count * 2; i++) {
+        final LdapEntry entry = result.getEntry("uid=u" + i + ",ou=people,dc=ldaptive,dc=org");
+        if (i < count && i % 2 == 0) {
+          Assert.assertNull(entry);
+        } else {
+          Assert.assertEquals(entry, createEntry("u" + i, "u" + i + "@ldaptive.org"));
+        }
+      }
+
+      final Iterator<LdapEntry> i = heap.getEntries().iterator();
+      for (LdapEntry e : result.getEntries()) {
+        Assert.assertEquals(e, i.next());
+      }
+      Assert.assertFalse(i.hasNext());
+      Assert.assertEquals(result, heap);
+      Assert.assertEquals(heap, result);
+      Assert.assertEquals(result.hashCode(), heap.hashCode());
+      Assert.assertEquals(result.getEntryDns(), heap.getEntryDns());
+    }
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"bean"})
+  public void binary()
+    throws Exception
+  {
+    final LdapEntry entry = new LdapEntry(
+      "cn=Jösé,dc=ldaptive,dc=org",
+      new LdapAttribute("cn", "Jösé"),
+      new LdapAttribute("jpegPhoto", new byte[] {0, 1, 2, (byte) 0xFF}));
+    try (OffHeapSearchResult result = new OffHeapSearchResult()) {
+      result.addEntry(entry);
+      final LdapEntry e = result.getEntry("cn=jösé,dc=ldaptive,dc=org");
+      Assert.assertEquals(e, entry);
+      Assert.assertTrue(e.getAttribute("jpegPhoto").isBinary());
+      Assert.assertEquals(e.getAttribute("jpegPhoto").getBinaryValue(), new byte[] {0, 1, 2, (byte) 0xFF});
+      Assert.assertFalse(e.getAttribute("cn").isBinary());
+    }
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"bean"})
+  public void segments()
+    throws Exception
+  {
+    try (OffHeapSearchResult result = new OffHeapSearchResult(64)) {
+      final LdapAttribute large = new LdapAttribute("description");
+      for (int i = 0; i < 100; i++) {
+        large.addStringValue("description value " + i);
+      }
+      final LdapEntry oversized = new LdapEntry("uid=large,ou=people,dc=ldaptive,dc=org", large);
+      result.addEntry(
+        createEntry("jdoe", "jdoe@ldaptive.org"),
+        oversized,
+        createEntry("jjones", "jjones@ldaptive.org"));
+      Assert.assertEquals(result.getEntry("uid=large,ou=people,dc=ldaptive,dc=org"), oversized);
+      Assert.assertEquals(
+        result.getEntry("uid=jjones,ou=people,dc=ldaptive,dc=org"),
+        createEntry("jjones", "jjones@ldaptive.org"));
+      Assert.assertTrue(result.getDataSize() > 64);
+    }
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"bean"})
+  public void mappedFile()
+    throws Exception
+  {
+    final Path file = Files.createTempFile("ldaptive", ".dat");
+    final OffHeapSearchResult result = new OffHeapSearchResult(file, 1024);
+    for (int i = 0; i < 100; i++) {
+      result.addEntry(createEntry("u" + i, "u" + i + "@ldaptive.org"));
+    }
+    Assert.assertEquals(result.size(), 100);
+    Assert.assertEquals(
+      result.getEntry("uid=u42,ou=people,dc=ldaptive,dc=org"),
+      createEntry("u42", "u42@ldaptive.org"));
+    result.close();
+    Assert.assertFalse(Files.exists(file));
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"bean"})
+  public void serialize()
+    throws Exception
+  {
+    try (OffHeapSearchResult result = new OffHeapSearchResult()) {
+      result.addEntry(createEntry("jdoe", "jdoe@ldaptive.org"), createEntry("jjones", "jjones@ldaptive.org"));
+      final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+        out.writeObject(result);
+      }
+      try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+        final Object o = in.readObject();
+        Assert.assertEquals(o.getClass(), SearchResult.class);
+        Assert.assertEquals(o, result);
+      }
+    }
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"bean"})
+  public void search()
+    throws Exception
+  {
+    final TestLdapServer server = new TestLdapServer(null, false);
+    try {
+      for (int i = 0; i < 50; i++) {
+        server.addEntry(createEntry("u" + i, "u" + i + "@ldaptive.org"));
+      }
+      try (Connection conn = new DefaultConnectionFactory(
+          new ConnectionConfig(server.getLdapUrl()), new NioProvider()).getConnection()) {
+        conn.open();
+        final SearchOperation search = new SearchOperation(conn);
+        search.setSearchResultFactory(request -> new OffHeapSearchResult());
+        final SearchResult result = search.execute(new SearchRequest("", "(uid=*)")).getResult();
+        Assert.assertTrue(result instanceof OffHeapSearchResult);
+        Assert.assertEquals(result.size(), 50);
+        Assert.assertEquals(
+          result.getEntry("uid=u7,ou=people,dc=ldaptive,dc=org"),
+          createEntry("u7", "u7@ldaptive.org"));
+
+        final StringWriter offHeap = new StringWriter();
+        new LdifWriter(offHeap).write(result);
+        final StringWriter heap = new StringWriter();
+        final SearchResult copy = new SearchResult(SortBehavior.ORDERED);
+        copy.addEntries(result.getEntries());
+        new LdifWriter(heap).write(copy);
+        Assert.assertEquals(offHeap.toString(), heap.toString());
+        ((OffHeapSearchResult) result).close();
+      }
+    } finally {
+      server.close();
+    }
+  }
+}
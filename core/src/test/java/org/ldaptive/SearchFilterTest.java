@@ -1,6 +1,9 @@
 /* See LICENSE for licensing and NOTICE for copyright. */
 package org.ldaptive;
 
+import org.ldaptive.filter.AndFilter;
+import org.ldaptive.filter.EqualityFilter;
+import org.ldaptive.filter.Filter;
 import org.testng.Assert;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
@@ -65,4 +68,25 @@ public class SearchFilterTest
   {
     Assert.assertEquals(filter.format(), encodedFilter);
   }
+
+
+  /**
+   * @throws  Exception  On test failure.
+   */
+  @Test(groups = {"filter"})
+  public void testParse()
+    throws Exception
+  {
+    final Filter parsed = new AndFilter(new EqualityFilter("givenName", "Bill"), new EqualityFilter("sn", "Wallace"));
+    final SearchFilter sf1 = new SearchFilter(parsed);
+    Assert.assertEquals(sf1.getFilter(), "(&(givenName=Bill)(sn=Wallace))");
+    Assert.assertSame(sf1.getParsedFilter(), parsed);
+    Assert.assertSame(sf1.parse(), parsed);
+
+    final SearchFilter sf2 = new SearchFilter("(&(givenName={0})(sn={1}))");
+    sf2.setParameter(0, "Bill");
+    sf2.setParameter(1, "Wallace");
+    Assert.assertNull(sf2.getParsedFilter());
+    Assert.assertEquals(sf2.parse(), parsed);
+  }
 }
@@ -40,6 +40,10 @@ public class SecurityIdentifierTest
           "S-1-5-21-1051162837-3568060411-1686669321-1000",
           LdapUtils.base64Decode("AQUAAAAAAAUVAAAA1XinPvtHrNQJiIhk6AMAAA=="),
         },
+        new Object[] {
+          "S-1-5-18",
+          LdapUtils.base64Decode("AQEAAAAAAAUSAAAA"),
+        },
       };
   }
 
@@ -0,0 +1,258 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.concurrent;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.ldaptive.AddRequest;
+import org.ldaptive.AttributeModification;
+import org.ldaptive.AttributeModificationType;
+import org.ldaptive.CompareRequest;
+import org.ldaptive.Connection;
+import org.ldaptive.ConnectionConfig;
+import org.ldaptive.DefaultConnectionFactory;
+import org.ldaptive.DeleteRequest;
+import org.ldaptive.LdapAttribute;
+import org.ldaptive.LdapException;
+import org.ldaptive.ModifyRequest;
+import org.ldaptive.Request;
+import org.ldaptive.Response;
+import org.ldaptive.ResultCode;
+import org.ldaptive.pool.BlockingConnectionPool;
+import org.ldaptive.pool.PoolConfig;
+import org.ldaptive.pool.PooledConnectionFactory;
+import org.ldaptive.provider.nio.NioProvider;
+import org.ldaptive.provider.nio.TestLdapServer;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for {@link BulkWriteExecutor}.
+ *
+ * @author  Middleware Services
+ */
+public class BulkWriteExecutorTest
+{
+
+  /** Directory to write to. */
+  private TestLdapServer server;
+
+  /** Pool of connections to the directory. */
+  private BlockingConnectionPool pool;
+
+
+  /** @throws  Exception  On test failure. */
+  @BeforeClass(groups = {"concurrent"})
+  public void startServer()
+    throws Exception
+  {
+    server = new TestLdapServer(null, false);
+    final PoolConfig pc = new PoolConfig();
+    pc.setMinPoolSize(1);
+    pc.setMaxPoolSize(4);
+    pool = new BlockingConnectionPool(
+      pc,
+      new DefaultConnectionFactory(new ConnectionConfig(server.getLdapUrl()), new NioProvider()));
+    pool.initialize();
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @AfterClass(groups = {"concurrent"})
+  public void stopServer()
+    throws Exception
+  {
+    pool.close();
+    server.close();
+  }
+
+
+  /**
+   * Creates an add request.
+   *
+   * @param  dn  of the entry
+   * @param  description  of the entry
+   *
+   * @return  add request
+   */
+  private static AddRequest add(final String dn, final String description)
+  {
+    return new AddRequest(dn, Collections.singletonList(new LdapAttribute("description", description)));
+  }
+
+
+  /**
+   * Creates a modify request that replaces the description.
+   *
+   * @param  dn  of the entry
+   * @param  description  of the entry
+   *
+   * @return  modify request
+   */
+  private static ModifyRequest modify(final String dn, final String description)
+  {
+    return new ModifyRequest(
+      dn,
+      new AttributeModification(AttributeModificationType.REPLACE, new LdapAttribute("description", description)));
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"concurrent"})
+  public void perDnOrder()
+    throws Exception
+  {
+    final List<Request> requests = new ArrayList<>();
+    for (int i = 0; i < 25; i++) {
+      final String dn = "uid=order" + i + ",dc=ldaptive";
+      requests.add(add(dn, "added"));
+      requests.add(modify(dn, "modified"));
+      requests.add(new DeleteRequest(dn));
+      requests.add(add(dn, "readded"));
+      requests.add(modify(dn, "final"));
+    }
+    requests.add(new DeleteRequest("uid=missing,dc=ldaptive"));
+
+    final BulkWriteExecutor executor = new BulkWriteExecutor(new PooledConnectionFactory(pool));
+    executor.setCapacity(8);
+    try {
+      final BulkWriteResult result = executor.execute(requests);
+      Assert.assertEquals(result.getSuccessCount(), 125);
+      Assert.assertEquals(result.getFailureCount(), 1);
+      Assert.assertEquals(result.getRetryCount(), 0);
+      Assert.assertEquals(result.getItems().size(), 126);
+      for (int i = 0; i < result.getItems().size(); i++) {
+        final BulkWriteItem item = result.getItems().get(i);
+        Assert.assertEquals(item.getSequence(), i);
+        Assert.assertSame(item.getRequest(), requests.get(i));
+        Assert.assertEquals(item.getAttempts(), 1);
+      }
+      final BulkWriteItem missing = result.getItems().get(125);
+      Assert.assertFalse(missing.isSuccess());
+      Assert.assertEquals(missing.getException().getResultCode(), ResultCode.NO_SUCH_OBJECT);
+      for (int i = 0; i < 25; i++) {
+        Assert.assertEquals(
+          server.getEntry("uid=order" + i + ",dc=ldaptive").getAttribute("description").getStringValue(),
+          "final");
+      }
+      Assert.assertTrue(result.getThroughput() > 0);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"concurrent"})
+  public void retry()
+    throws Exception
+  {
+    final AtomicInteger busy = new AtomicInteger();
+    final BulkWriteExecutor executor = new BulkWriteExecutor(new PooledConnectionFactory(pool))
+    {
+      @Override
+      protected Response<Void> executeRequest(final Connection conn, final Request request)
+        throws LdapException
+      {
+        if (((AddRequest) request).getDn().startsWith("uid=busy") && busy.getAndIncrement() % 2 == 0) {
+          throw new LdapException("Server busy", ResultCode.BUSY);
+        }
+        return super.executeRequest(conn, request);
+      }
+    };
+    executor.setRetryWait(Duration.ZERO);
+    executor.setRetry(1);
+    final List<BulkWriteItem> items = Collections.synchronizedList(new ArrayList<>());
+    try {
+      final BulkWriteResult result = executor.execute(
+        Collections.singletonList(add("uid=busy,dc=ldaptive", "retried")),
+        items::add);
+      Assert.assertEquals(result.getSuccessCount(), 1);
+      Assert.assertEquals(result.getRetryCount(), 1);
+      Assert.assertTrue(result.getItems().isEmpty());
+      Assert.assertEquals(items.size(), 1);
+      Assert.assertEquals(items.get(0).getAttempts(), 2);
+      Assert.assertNotNull(server.getEntry("uid=busy,dc=ldaptive"));
+
+      busy.set(0);
+      executor.setRetry(0);
+      final BulkWriteResult failed = executor.execute(add("uid=busy2,dc=ldaptive", "failed"));
+      Assert.assertEquals(failed.getFailureCount(), 1);
+      Assert.assertEquals(failed.getRetryCount(), 0);
+      Assert.assertEquals(failed.getItems().get(0).getException().getResultCode(), ResultCode.BUSY);
+      Assert.assertNull(server.getEntry("uid=busy2,dc=ldaptive"));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"concurrent"}, timeOut = 10000)
+  public void runtimeException()
+    throws Exception
+  {
+    final BulkWriteExecutor executor = new BulkWriteExecutor(new PooledConnectionFactory(pool))
+    {
+      @Override
+      protected Response<Void> executeRequest(final Connection conn, final Request request)
+        throws LdapException
+      {
+        if (((AddRequest) request).getDn().startsWith("uid=broken")) {
+          throw new IllegalStateException("Provider failure");
+        }
+        return super.executeRequest(conn, request);
+      }
+    };
+    executor.setConcurrency(1);
+    executor.setCapacity(2);
+    executor.setRetry(1);
+    executor.setRetryWait(Duration.ZERO);
+    final List<Request> requests = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      requests.add(add("uid=broken" + i + ",dc=ldaptive", "broken"));
+      requests.add(add("uid=working" + i + ",dc=ldaptive", "working"));
+    }
+    try {
+      final BulkWriteResult result = executor.execute(requests);
+      Assert.assertEquals(result.getFailureCount(), 5);
+      Assert.assertEquals(result.getSuccessCount(), 5);
+      Assert.assertEquals(result.getRetryCount(), 0);
+      final BulkWriteItem failed = result.getItems().get(0);
+      Assert.assertFalse(failed.isSuccess());
+      Assert.assertEquals(failed.getAttempts(), 1);
+      Assert.assertEquals(failed.getException().getResultCode(), ResultCode.LOCAL_ERROR);
+      Assert.assertTrue(failed.getException().getCause() instanceof IllegalStateException);
+      Assert.assertNotNull(server.getEntry("uid=working4,dc=ldaptive"));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"concurrent"})
+  public void unsupportedRequest()
+    throws Exception
+  {
+    final BulkWriteExecutor executor = new BulkWriteExecutor(new PooledConnectionFactory(pool));
+    try {
+      executor.execute(add("uid=supported,dc=ldaptive", "added"), new CompareRequest());
+      Assert.fail("Should have thrown IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      Assert.assertNotNull(server.getEntry("uid=supported,dc=ldaptive"));
+    } finally {
+      executor.shutdown();
+    }
+    try {
+      executor.setConcurrency(0);
+      Assert.fail("Should have thrown IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      Assert.assertEquals(executor.getConcurrency(), BulkWriteExecutor.DEFAULT_CONCURRENCY);
+    }
+  }
+}
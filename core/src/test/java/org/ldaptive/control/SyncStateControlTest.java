@@ -108,4 +108,24 @@ public class SyncStateControlTest
     actual.decode(berValue);
     Assert.assertEquals(actual, expected);
   }
+
+
+  /**
+   * @param  berValue  to encode.
+   * @param  expected  sync state control to test.
+   *
+   * @throws  Exception  On test failure.
+   */
+  @Test(groups = {"control"}, dataProvider = "response")
+  public void decodeLazily(final byte[] berValue, final SyncStateControl expected)
+    throws Exception
+  {
+    final SyncStateControl actual = new SyncStateControl(expected.getCriticality());
+    Assert.assertTrue(actual.isDecoded());
+    actual.decode(berValue);
+    Assert.assertFalse(actual.isDecoded());
+    Assert.assertEquals(actual.getSyncState(), expected.getSyncState());
+    Assert.assertTrue(actual.isDecoded());
+    Assert.assertEquals(actual, expected);
+  }
 }
@@ -0,0 +1,110 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.control.util;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for {@link FileCookieManager}.
+ *
+ * @author  Middleware Services
+ */
+public class FileCookieManagerTest
+{
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"control"})
+  public void readMissingFile()
+    throws Exception
+  {
+    final Path dir = Files.createTempDirectory("cookie");
+    final FileCookieManager manager = new FileCookieManager(dir.resolve("cookie"));
+    Assert.assertNull(manager.readCookie());
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"control"})
+  public void batchedWrites()
+    throws Exception
+  {
+    final Path file = Files.createTempDirectory("cookie").resolve("cookie");
+    final FileCookieManager manager = new FileCookieManager(file);
+    manager.setSyncCount(2);
+    manager.setSyncInterval(Duration.ofHours(1));
+
+    manager.writeCookie("one".getBytes(StandardCharsets.UTF_8));
+    Assert.assertFalse(Files.exists(file));
+    manager.writeCookie("two".getBytes(StandardCharsets.UTF_8));
+    Assert.assertEquals(new String(Files.readAllBytes(file), StandardCharsets.UTF_8), "two");
+    manager.writeCookie("three".getBytes(StandardCharsets.UTF_8));
+    Assert.assertEquals(new String(Files.readAllBytes(file), StandardCharsets.UTF_8), "two");
+    Assert.assertEquals(new String(manager.readCookie(), StandardCharsets.UTF_8), "three");
+
+    manager.flush();
+    Assert.assertEquals(new String(Files.readAllBytes(file), StandardCharsets.UTF_8), "three");
+    Assert.assertFalse(Files.exists(file.resolveSibling("cookie.tmp")));
+    Assert.assertEquals(new String(new FileCookieManager(file).readCookie(), StandardCharsets.UTF_8), "three");
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"control"})
+  public void syncInterval()
+    throws Exception
+  {
+    final Path file = Files.createTempDirectory("cookie").resolve("cookie");
+    final FileCookieManager manager = new FileCookieManager(file);
+    manager.setSyncCount(Integer.MAX_VALUE);
+    manager.setSyncInterval(Duration.ZERO);
+    manager.writeCookie("one".getBytes(StandardCharsets.UTF_8));
+    Assert.assertEquals(new String(Files.readAllBytes(file), StandardCharsets.UTF_8), "one");
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"control"}, timeOut = 10000)
+  public void scheduledSync()
+    throws Exception
+  {
+    final Path file = Files.createTempDirectory("cookie").resolve("cookie");
+    final FileCookieManager manager = new FileCookieManager(file);
+    manager.setSyncCount(Integer.MAX_VALUE);
+    manager.setSyncInterval(Duration.ofMillis(200));
+    Thread.sleep(250);
+    manager.writeCookie("one".getBytes(StandardCharsets.UTF_8));
+    Assert.assertEquals(new String(Files.readAllBytes(file), StandardCharsets.UTF_8), "one");
+
+    manager.writeCookie("two".getBytes(StandardCharsets.UTF_8));
+    Assert.assertEquals(new String(Files.readAllBytes(file), StandardCharsets.UTF_8), "one");
+    while (!"two".equals(new String(Files.readAllBytes(file), StandardCharsets.UTF_8))) {
+      Thread.sleep(50);
+    }
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"control"})
+  public void close()
+    throws Exception
+  {
+    final Path file = Files.createTempDirectory("cookie").resolve("cookie");
+    final FileCookieManager manager = new FileCookieManager(file);
+    manager.setSyncInterval(Duration.ofHours(1));
+    manager.writeCookie("one".getBytes(StandardCharsets.UTF_8));
+    Assert.assertFalse(Files.exists(file));
+    manager.close();
+    Assert.assertEquals(new String(Files.readAllBytes(file), StandardCharsets.UTF_8), "one");
+    try {
+      manager.writeCookie("two".getBytes(StandardCharsets.UTF_8));
+      Assert.fail("Should have thrown IllegalStateException");
+    } catch (IllegalStateException e) {
+      Assert.assertNotNull(e);
+    }
+  }
+}
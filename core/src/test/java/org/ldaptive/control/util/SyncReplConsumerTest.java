@@ -0,0 +1,190 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.control.util;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.ldaptive.Response;
+import org.ldaptive.ResultCode;
+import org.ldaptive.SearchEntry;
+import org.ldaptive.SearchResult;
+import org.ldaptive.control.ResponseControl;
+import org.ldaptive.control.SyncDoneControl;
+import org.ldaptive.control.SyncStateControl;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for {@link SyncReplConsumer}.
+ *
+ * @author  Middleware Services
+ */
+public class SyncReplConsumerTest
+{
+
+  /** Entry UUIDs. */
+  private static final UUID[] UUIDS = new UUID[] {UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID()};
+
+
+  /**
+   * Creates an entry item.
+   *
+   * @param  dn  of the entry
+   * @param  state  of the entry
+   * @param  uuid  of the entry
+   * @param  cookie  of the entry
+   *
+   * @return  sync repl item
+   */
+  private static SyncReplItem createEntry(
+    final String dn,
+    final SyncStateControl.State state,
+    final UUID uuid,
+    final String cookie)
+  {
+    final SearchEntry entry = new SearchEntry(
+      1,
+      new ResponseControl[] {
+        new SyncStateControl(state, uuid, cookie != null ? cookie.getBytes(StandardCharsets.UTF_8) : null, false),
+      });
+    entry.setDn(dn);
+    return new SyncReplItem(new SyncReplItem.Entry(entry));
+  }
+
+
+  /**
+   * Creates a response item.
+   *
+   * @param  cookie  of the response
+   *
+   * @return  sync repl item
+   */
+  private static SyncReplItem createResponse(final String cookie)
+  {
+    return new SyncReplItem(
+      new SyncReplItem.Response(
+        new Response<>(
+          new SearchResult(),
+          ResultCode.SUCCESS,
+          null,
+          null,
+          new ResponseControl[] {new SyncDoneControl(cookie.getBytes(StandardCharsets.UTF_8))},
+          null,
+          1)));
+  }
+
+
+  /**
+   * Waits for the supplied consumer to stop.
+   *
+   * @param  consumer  to wait for
+   *
+   * @throws  Exception  On test failure.
+   */
+  private static void awaitStopped(final SyncReplConsumer consumer)
+    throws Exception
+  {
+    final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (consumer.isRunning() && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    Assert.assertFalse(consumer.isRunning());
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"control"})
+  public void batchAndCoalesce()
+    throws Exception
+  {
+    final List<List<SyncReplItem>> batches = new CopyOnWriteArrayList<>();
+    final DefaultCookieManager manager = new DefaultCookieManager();
+    final SyncReplConsumer consumer = new SyncReplConsumer(null, manager, batches::add);
+    consumer.setBatchSize(4);
+    consumer.setBatchDelay(Duration.ofSeconds(5));
+
+    final BlockingQueue<SyncReplItem> queue = new LinkedBlockingQueue<>();
+    queue.add(createEntry("uid=1", SyncStateControl.State.ADD, UUIDS[0], "c1"));
+    queue.add(createEntry("uid=2", SyncStateControl.State.ADD, UUIDS[1], null));
+    queue.add(createEntry("uid=1", SyncStateControl.State.MODIFY, UUIDS[0], "c3"));
+    queue.add(createEntry("uid=3", SyncStateControl.State.ADD, UUIDS[2], null));
+    queue.add(createEntry("uid=3", SyncStateControl.State.DELETE, UUIDS[2], "c5"));
+    queue.add(createResponse("done"));
+    consumer.consume(queue);
+    awaitStopped(consumer);
+
+    Assert.assertEquals(batches.size(), 2);
+    Assert.assertEquals(batches.get(0).size(), 3);
+    Assert.assertEquals(batches.get(0).get(0).getEntry().getSearchEntry().getDn(), "uid=2");
+    Assert.assertEquals(batches.get(0).get(1).getEntry().getSearchEntry().getDn(), "uid=1");
+    Assert.assertEquals(
+      batches.get(0).get(1).getEntry().getSyncStateControl().getSyncState(),
+      SyncStateControl.State.MODIFY);
+    Assert.assertEquals(batches.get(0).get(2).getEntry().getSearchEntry().getDn(), "uid=3");
+    Assert.assertEquals(batches.get(1).size(), 2);
+    Assert.assertTrue(batches.get(1).get(1).isResponse());
+    Assert.assertEquals(consumer.getBatchCount(), 2);
+    Assert.assertEquals(consumer.getItemCount(), 5);
+    Assert.assertEquals(consumer.getCoalescedCount(), 1);
+    Assert.assertEquals(new String(manager.readCookie(), StandardCharsets.UTF_8), "done");
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"control"})
+  public void batchDelay()
+    throws Exception
+  {
+    final List<List<SyncReplItem>> batches = new CopyOnWriteArrayList<>();
+    final SyncReplConsumer consumer = new SyncReplConsumer(null, new DefaultCookieManager(), batches::add);
+    consumer.setBatchSize(100);
+    consumer.setBatchDelay(Duration.ofMillis(50));
+    consumer.setCoalesceEntries(false);
+
+    final BlockingQueue<SyncReplItem> queue = new LinkedBlockingQueue<>();
+    consumer.consume(queue);
+    queue.add(createEntry("uid=1", SyncStateControl.State.ADD, UUIDS[0], null));
+    queue.add(createEntry("uid=1", SyncStateControl.State.MODIFY, UUIDS[0], null));
+    final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (batches.isEmpty() && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    Assert.assertEquals(batches.size(), 1);
+    Assert.assertEquals(batches.get(0).size(), 2);
+    Assert.assertTrue(consumer.isRunning());
+
+    consumer.stop();
+    Assert.assertFalse(consumer.isRunning());
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"control"})
+  public void handlerFailure()
+    throws Exception
+  {
+    final DefaultCookieManager manager = new DefaultCookieManager("start".getBytes(StandardCharsets.UTF_8));
+    final SyncReplConsumer consumer = new SyncReplConsumer(
+      null,
+      manager,
+      batch -> {
+        throw new IllegalStateException("failed");
+      });
+    consumer.setBatchDelay(Duration.ofMillis(50));
+
+    final BlockingQueue<SyncReplItem> queue = new LinkedBlockingQueue<>();
+    queue.add(createEntry("uid=1", SyncStateControl.State.ADD, UUIDS[0], "c1"));
+    queue.add(createResponse("done"));
+    consumer.consume(queue);
+    awaitStopped(consumer);
+
+    Assert.assertEquals(consumer.getHandlerException().getMessage(), "failed");
+    Assert.assertEquals(consumer.getBatchCount(), 0);
+    Assert.assertEquals(new String(manager.readCookie(), StandardCharsets.UTF_8), "start");
+  }
+}
@@ -0,0 +1,181 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.ext;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.ldaptive.AddRequest;
+import org.ldaptive.ConnectionConfig;
+import org.ldaptive.DefaultConnectionFactory;
+import org.ldaptive.DeleteRequest;
+import org.ldaptive.LdapAttribute;
+import org.ldaptive.LdapEntry;
+import org.ldaptive.ModifyRequest;
+import org.ldaptive.concurrent.BulkWriteItem;
+import org.ldaptive.concurrent.BulkWriteResult;
+import org.ldaptive.pool.BlockingConnectionPool;
+import org.ldaptive.pool.PoolConfig;
+import org.ldaptive.pool.PooledConnectionFactory;
+import org.ldaptive.provider.nio.NioProvider;
+import org.ldaptive.provider.nio.TestLdapServer;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for {@link BatchMergeExecutor}.
+ *
+ * @author  Middleware Services
+ */
+public class BatchMergeExecutorTest
+{
+
+  /** Directory to merge into. */
+  private TestLdapServer server;
+
+  /** Pool of connections to the directory. */
+  private BlockingConnectionPool pool;
+
+
+  /** @throws  Exception  On test failure. */
+  @BeforeClass(groups = {"ext"})
+  public void startServer()
+    throws Exception
+  {
+    server = new TestLdapServer(null, false);
+    server.addEntry(new LdapEntry("ou=people,dc=ldaptive", new LdapAttribute("ou", "people")));
+    for (int i = 0; i < 50; i++) {
+      server.addEntry(createEntry("u" + i, "old"));
+    }
+    final PoolConfig pc = new PoolConfig();
+    pc.setMinPoolSize(4);
+    pc.setMaxPoolSize(4);
+    pool = new BlockingConnectionPool(
+      pc,
+      new DefaultConnectionFactory(new ConnectionConfig(server.getLdapUrl()), new NioProvider()));
+    pool.initialize();
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @AfterClass(groups = {"ext"})
+  public void stopServer()
+    throws Exception
+  {
+    pool.close();
+    server.close();
+  }
+
+
+  /**
+   * Creates an entry beneath ou=people.
+   *
+   * @param  uid  of the entry
+   * @param  description  of the entry
+   *
+   * @return  ldap entry
+   */
+  private static LdapEntry createEntry(final String uid, final String description)
+  {
+    return new LdapEntry(
+      "uid=" + uid + ",ou=people,dc=ldaptive",
+      new LdapAttribute("uid", uid),
+      new LdapAttribute("description", description));
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"ext"})
+  public void merge()
+    throws Exception
+  {
+    final List<MergeRequest> requests = new ArrayList<>();
+    for (int i = 0; i < 30; i++) {
+      requests.add(new MergeRequest(createEntry("u" + i, i < 10 ? "old" : "new")));
+    }
+    requests.get(10).setExcludeAttributes("description");
+    for (int i = 30; i < 40; i++) {
+      requests.add(new MergeRequest(createEntry("u" + i, "old"), true));
+    }
+    for (int i = 0; i < 20; i++) {
+      requests.add(new MergeRequest(createEntry("n" + i, "added")));
+    }
+    requests.add(new MergeRequest(createEntry("gone", "old"), true));
+    requests.add(new MergeRequest(createEntry("U20", "second")));
+
+    final BatchMergeExecutor executor = new BatchMergeExecutor(new PooledConnectionFactory(pool));
+    executor.setBatchSize(25);
+    try {
+      final int requestCount = server.getRequestCount();
+      final BulkWriteResult result = executor.execute(requests);
+      Assert.assertEquals(result.getFailureCount(), 0);
+      Assert.assertEquals(result.getSuccessCount(), 50);
+      int adds = 0;
+      int modifies = 0;
+      int deletes = 0;
+      int merges = 0;
+      for (BulkWriteItem item : result.getItems()) {
+        if (item.getRequest() instanceof AddRequest) {
+          adds++;
+        } else if (item.getRequest() instanceof ModifyRequest) {
+          modifies++;
+        } else if (item.getRequest() instanceof DeleteRequest) {
+          deletes++;
+        } else if (item.getRequest() instanceof MergeRequest) {
+          merges++;
+        }
+      }
+      Assert.assertEquals(adds, 20);
+      Assert.assertEquals(modifies, 19);
+      Assert.assertEquals(deletes, 10);
+      Assert.assertEquals(merges, 1);
+      // one search per batch plus the search and modify of the repeated DN
+      Assert.assertEquals(server.getRequestCount() - requestCount, 49 + 3 + 2);
+
+      Assert.assertEquals(
+        server.getEntry("uid=u5,ou=people,dc=ldaptive").getAttribute("description").getStringValue(), "old");
+      Assert.assertEquals(
+        server.getEntry("uid=u10,ou=people,dc=ldaptive").getAttribute("description").getStringValue(), "old");
+      Assert.assertEquals(
+        server.getEntry("uid=u15,ou=people,dc=ldaptive").getAttribute("description").getStringValue(), "new");
+      Assert.assertEquals(
+        server.getEntry("uid=u20,ou=people,dc=ldaptive").getAttribute("description").getStringValue(), "second");
+      Assert.assertNull(server.getEntry("uid=u35,ou=people,dc=ldaptive"));
+      Assert.assertEquals(
+        server.getEntry("uid=n7,ou=people,dc=ldaptive").getAttribute("description").getStringValue(), "added");
+      Assert.assertEquals(
+        server.getEntry("uid=u45,ou=people,dc=ldaptive").getAttribute("description").getStringValue(), "old");
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"ext"})
+  public void siblingWithSameValue()
+    throws Exception
+  {
+    // a sibling named by a different attribute matches the target filter
+    server.addEntry(
+      new LdapEntry(
+        "cn=sibling,ou=people,dc=ldaptive",
+        new LdapAttribute("cn", "sibling"),
+        new LdapAttribute("uid", "sibling"),
+        new LdapAttribute("description", "cn")));
+
+    final BatchMergeExecutor executor = new BatchMergeExecutor(new PooledConnectionFactory(pool));
+    try {
+      final BulkWriteResult result = executor.execute(new MergeRequest(createEntry("sibling", "uid")));
+      Assert.assertEquals(result.getFailureCount(), 0);
+      Assert.assertEquals(result.getItems().size(), 1);
+      Assert.assertTrue(result.getItems().get(0).getRequest() instanceof AddRequest);
+      Assert.assertEquals(
+        server.getEntry("uid=sibling,ou=people,dc=ldaptive").getAttribute("description").getStringValue(), "uid");
+      Assert.assertEquals(
+        server.getEntry("cn=sibling,ou=people,dc=ldaptive").getAttribute("description").getStringValue(), "cn");
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
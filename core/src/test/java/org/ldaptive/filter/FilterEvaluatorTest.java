@@ -0,0 +1,182 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.filter;
+
+import java.util.Arrays;
+import org.ldaptive.LdapAttribute;
+import org.ldaptive.LdapEntry;
+import org.ldaptive.SearchResult;
+import org.ldaptive.schema.AttributeType;
+import org.ldaptive.schema.Schema;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for {@link FilterEvaluator}.
+ *
+ * @author  Middleware Services
+ */
+public class FilterEvaluatorTest
+{
+
+  /** Entry to evaluate filters against. */
+  private static final LdapEntry ENTRY = new LdapEntry(
+    "uid=bwallace,ou=People,dc=ldaptive,dc=org",
+    new LdapAttribute("objectClass", "top", "person", "inetOrgPerson"),
+    new LdapAttribute("uid", "bwallace"),
+    new LdapAttribute("cn", "William  Wallace", "Bill Wallace"),
+    new LdapAttribute("cn;lang-fr", "Guillaume Wallace"),
+    new LdapAttribute("sn", "Wallace"),
+    new LdapAttribute("uidNumber", "1024"),
+    new LdapAttribute("telephoneNumber", "+1 555-123-4567"),
+    new LdapAttribute("modifyTimestamp", "20240101000000Z"),
+    new LdapAttribute("jpegPhoto", new byte[] {(byte) 0xFF, 'a'}));
+
+
+
+  /** Schema with non default matching rules. */
+  private Schema schema;
+
+
+  /** @throws  Exception  On test failure. */
+  @BeforeClass(groups = {"filter"})
+  public void createSchema()
+    throws Exception
+  {
+    schema = new Schema();
+    schema.setAttributeTypes(
+      Arrays.asList(
+        AttributeType.parse(
+          "( 2.5.4.41 NAME 'name' EQUALITY caseIgnoreMatch SUBSTR caseIgnoreSubstringsMatch " +
+          "SYNTAX 1.3.6.1.4.1.1466.115.121.1.15 )"),
+        AttributeType.parse("( 2.5.4.3 NAME ( 'cn' 'commonName' ) SUP name )"),
+        AttributeType.parse("( 0.9.2342.19200300.100.1.1 NAME 'uid' EQUALITY caseExactMatch )"),
+        AttributeType.parse(
+          "( 1.3.6.1.1.1.1.0 NAME 'uidNumber' EQUALITY integerMatch ORDERING integerOrderingMatch )"),
+        AttributeType.parse(
+          "( 2.5.4.20 NAME 'telephoneNumber' EQUALITY telephoneNumberMatch " +
+          "SUBSTR telephoneNumberSubstringsMatch )"),
+        AttributeType.parse(
+          "( 2.5.18.2 NAME 'modifyTimestamp' EQUALITY generalizedTimeMatch " +
+          "ORDERING generalizedTimeOrderingMatch )")));
+  }
+
+
+  /**
+   * Filter test data.
+   *
+   * @return  filters and whether they match with and without a schema
+   */
+  @DataProvider(name = "filters")
+  public Object[][] createFilters()
+  {
+    return
+      new Object[][] {
+        {"(uid=bwallace)", true, true},
+        {"(UID=BWallace)", true, false},
+        {"(cn=william wallace)", true, true},
+        {"(cn= Bill   WALLACE )", true, true},
+        {"(cn=Guillaume Wallace)", true, true},
+        {"(cn;lang-fr=Guillaume Wallace)", true, true},
+        {"(cn;lang-fr=Bill Wallace)", false, false},
+        {"(cn=*)", true, true},
+        {"(mail=*)", false, false},
+        {"(cn=bill*)", true, true},
+        {"(cn=*wall*)", true, true},
+        {"(cn=*ace)", true, true},
+        {"(cn=b*l*w*e)", true, true},
+        {"(cn=b*wall*wall*)", false, false},
+        {"(cn=*ll*ll*)", true, true},
+        {"(uidNumber=01024)", false, true},
+        {"(uidNumber>=999)", false, true},
+        {"(uidNumber<=999)", true, false},
+        {"(uidNumber>=abc)", false, false},
+        {"(!(uidNumber>=abc))", true, false},
+        {"(telephoneNumber=+15551234567)", false, true},
+        {"(telephoneNumber=*1234567)", false, true},
+        {"(modifyTimestamp=20240101010000+0100)", false, true},
+        {"(modifyTimestamp=20240101000000.000Z)", false, true},
+        {"(modifyTimestamp<=20240101003000+0100)", true, false},
+        {"(modifyTimestamp>=20231231232959.5-0030)", true, true},
+        {"(modifyTimestamp:generalizedTimeMatch:=2024010100Z)", true, true},
+        {"(modifyTimestamp=2024*)", true, false},
+        {"(!(modifyTimestamp=2024*))", false, false},
+        {"(modifyTimestamp=1999*)", false, false},
+        {"(!(modifyTimestamp=1999*))", true, false},
+        {"(modifyTimestamp=*1999)", false, false},
+        {"(!(modifyTimestamp=*1999))", true, false},
+        {"(uidNumber=10*)", true, false},
+        {"(!(uidNumber=*24))", false, false},
+        {"(uid=bwall*)", true, false},
+        {"(sn~=wallace)", true, true},
+        {"(jpegPhoto=\\ffa)", true, true},
+        {"(jpegPhoto=\\ffA)", false, false},
+        {"(&(objectClass=person)(uid=bwallace))", true, true},
+        {"(&(objectClass=person)(uid=bob))", false, false},
+        {"(|(uid=bob)(sn=wallace))", true, true},
+        {"(!(uid=bob))", true, true},
+        {"(&(!(uidNumber>=abc))(sn=wallace))", true, false},
+        {"(|(uidNumber<=abc)(sn=wallace))", true, true},
+        {"(uid:caseExactMatch:=BWALLACE)", false, false},
+        {"(uid:2.5.13.2:=BWALLACE)", true, true},
+        {"(ou:dn:=people)", true, true},
+        {"(ou:=people)", false, false},
+        {"(:caseIgnoreMatch:=Bill Wallace)", true, true},
+        {"(:dn:caseIgnoreMatch:=LDAPTIVE)", true, true},
+        {"(uid:unknownMatch:=bwallace)", false, false},
+        {"(!(uid:unknownMatch:=bwallace))", false, false},
+      };
+  }
+
+
+  /**
+   * @param  filter  to evaluate
+   * @param  match  whether the filter matches without a schema
+   * @param  schemaMatch  whether the filter matches with a schema
+   *
+   * @throws  Exception  On test failure.
+   */
+  @Test(groups = {"filter"}, dataProvider = "filters")
+  public void matches(final String filter, final boolean match, final boolean schemaMatch)
+    throws Exception
+  {
+    final Filter f = FilterParser.parse(filter);
+    Assert.assertEquals(new FilterEvaluator().matches(f, ENTRY), match);
+    Assert.assertEquals(new FilterEvaluator(schema).matches(f, ENTRY), schemaMatch);
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"filter"})
+  public void filterResult()
+    throws Exception
+  {
+    final LdapEntry other = new LdapEntry("uid=jdoe,ou=People,dc=ldaptive,dc=org", new LdapAttribute("uid", "jdoe"));
+    final SearchResult result = new SearchResult(ENTRY, other);
+    final FilterEvaluator evaluator = new FilterEvaluator();
+    Assert.assertEquals(evaluator.filter(FilterParser.parse("(uid=jdoe)"), result), new SearchResult(other));
+    Assert.assertEquals(evaluator.filter(FilterParser.parse("(uid=*)"), result).size(), 2);
+    Assert.assertEquals(evaluator.filter(FilterParser.parse("(sn=*)"), result).getEntry(), ENTRY);
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"filter"})
+  public void standardMatchingRules()
+    throws Exception
+  {
+    Assert.assertEquals(StandardMatchingRule.forName("2.5.13.15"), StandardMatchingRule.INTEGER);
+    Assert.assertEquals(StandardMatchingRule.forName("CASEEXACTSUBSTRINGSMATCH"), StandardMatchingRule.CASE_EXACT);
+    Assert.assertNull(StandardMatchingRule.forEqualityName("caseExactSubstringsMatch"));
+    Assert.assertEquals(
+      StandardMatchingRule.DISTINGUISHED_NAME.normalize("UID=BWallace, OU=People"),
+      "uid=bwallace,ou=people");
+    Assert.assertEquals(
+      StandardMatchingRule.forName("generalizedTimeOrderingMatch"),
+      StandardMatchingRule.GENERALIZED_TIME);
+    Assert.assertEquals(
+      StandardMatchingRule.GENERALIZED_TIME.normalize("20240101010000,5+0100"),
+      StandardMatchingRule.GENERALIZED_TIME.normalize("20240101000000.500Z"));
+  }
+}
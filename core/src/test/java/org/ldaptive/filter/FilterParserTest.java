@@ -0,0 +1,114 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.filter;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for {@link FilterParser}.
+ *
+ * @author  Middleware Services
+ */
+public class FilterParserTest
+{
+
+
+  /**
+   * Filter test data.
+   *
+   * @return  test data
+   */
+  @DataProvider(name = "filters")
+  public Object[][] createFilters()
+  {
+    return
+      new Object[][] {
+        new Object[] {"(cn=a)", new EqualityFilter("cn", "a"), "(cn=a)"},
+        new Object[] {"cn=a", new EqualityFilter("cn", "a"), "(cn=a)"},
+        new Object[] {"(objectClass=*)", new PresenceFilter("objectClass"), "(objectClass=*)"},
+        new Object[] {
+          "(cn=a*b*c)",
+          new SubstringFilter("cn", "a", new String[] {"b"}, "c"),
+          "(cn=a*b*c)",
+        },
+        new Object[] {"(cn=*b)", new SubstringFilter("cn", null, null, "b"), "(cn=*b)"},
+        new Object[] {"(cn=*b*)", new SubstringFilter("cn", null, new String[] {"b"}, null), "(cn=*b*)"},
+        new Object[] {"(!(cn=a))", new NotFilter(new EqualityFilter("cn", "a")), "(!(cn=a))"},
+        new Object[] {
+          "(&(cn=a)(sn=b))",
+          new AndFilter(new EqualityFilter("cn", "a"), new EqualityFilter("sn", "b")),
+          "(&(cn=a)(sn=b))",
+        },
+        new Object[] {
+          "(|(cn>=a)(sn<=b)(cn~=c))",
+          new OrFilter(
+            new GreaterOrEqualFilter("cn", "a"),
+            new LessOrEqualFilter("sn", "b"),
+            new ApproximateFilter("cn", "c")),
+          "(|(cn>=a)(sn<=b)(cn~=c))",
+        },
+        new Object[] {"(cn=\\2a\\28)", new EqualityFilter("cn", "*("), "(cn=\\2a\\28)"},
+        new Object[] {
+          "(cn=caf\\c3\\a9)",
+          new EqualityFilter("cn", new byte[] {'c', 'a', 'f', (byte) 0xC3, (byte) 0xA9}),
+          "(cn=caf\\c3\\a9)",
+        },
+        new Object[] {
+          "(cn:dn:2.5.13.5:=a)",
+          new ExtensibleFilter("2.5.13.5", "cn", "a", true),
+          "(cn:dn:2.5.13.5:=a)",
+        },
+        new Object[] {
+          ":caseExactMatch:=a",
+          new ExtensibleFilter("caseExactMatch", null, "a", false),
+          "(:caseExactMatch:=a)",
+        },
+      };
+  }
+
+
+  /**
+   * Invalid filter test data.
+   *
+   * @return  test data
+   */
+  @DataProvider(name = "invalid-filters")
+  public Object[][] createInvalidFilters()
+  {
+    return
+      new Object[][] {
+        new Object[] {"(cn=a"},
+        new Object[] {"(=a)"},
+        new Object[] {"(&)x"},
+        new Object[] {"(cn=a)(sn=b)"},
+        new Object[] {"(!(cn=a)(sn=b))"},
+        new Object[] {"(cn=**)"},
+        new Object[] {"(:=a)"},
+      };
+  }
+
+
+  /**
+   * @param  filter  to parse
+   * @param  expected  parsed filter
+   * @param  formatted  string representation of the parsed filter
+   */
+  @Test(groups = {"filter"}, dataProvider = "filters")
+  public void parse(final String filter, final Filter expected, final String formatted)
+  {
+    final Filter parsed = FilterParser.parse(filter);
+    Assert.assertEquals(parsed, expected);
+    Assert.assertEquals(parsed.hashCode(), expected.hashCode());
+    Assert.assertEquals(parsed.format(), formatted);
+    Assert.assertEquals(FilterParser.parse(parsed.format()), parsed);
+  }
+
+
+  /** @param  filter  to parse */
+  @Test(groups = {"filter"}, dataProvider = "invalid-filters", expectedExceptions = IllegalArgumentException.class)
+  public void parseInvalid(final String filter)
+  {
+    FilterParser.parse(filter);
+  }
+}
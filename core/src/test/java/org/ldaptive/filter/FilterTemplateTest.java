@@ -0,0 +1,55 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.filter;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for {@link FilterTemplate}.
+ *
+ * @author  Middleware Services
+ */
+public class FilterTemplateTest
+{
+
+
+  /** Named parameters. */
+  @Test(groups = {"filter"})
+  public void formatNamed()
+  {
+    final FilterTemplate template = FilterTemplate.compile("(&(uid={user})(ou={context}))");
+    Assert.assertSame(FilterTemplate.compile("(&(uid={user})(ou={context}))"), template);
+    Assert.assertEquals(template.getParameterNames(), new String[] {"user", "context"});
+
+    final Map<String, Object> params = new HashMap<>();
+    params.put("user", "b*(ob)");
+    params.put("context", new byte[] {'i', 't'});
+    Assert.assertEquals(template.format(params), "(&(uid=b\\2a\\28ob\\29)(ou=\\69\\74))");
+
+    params.remove("context");
+    Assert.assertEquals(template.format(params), "(&(uid=b\\2a\\28ob\\29)(ou={context}))");
+  }
+
+
+  /** Positional parameters. */
+  @Test(groups = {"filter"})
+  public void formatPositional()
+  {
+    final FilterTemplate template = new FilterTemplate("(&(givenName={0})(sn={1})(cn={0}))");
+    Assert.assertEquals(template.format("Bill", "Wallace"), "(&(givenName=Bill)(sn=Wallace)(cn=Bill))");
+    Assert.assertEquals(template.format("Bill"), "(&(givenName=Bill)(sn={1})(cn=Bill))");
+  }
+
+
+  /** Braces that do not enclose a parameter name. */
+  @Test(groups = {"filter"})
+  public void literalBraces()
+  {
+    final FilterTemplate template = new FilterTemplate("(cn={{0}}{}{)");
+    Assert.assertEquals(template.getParameterNames(), new String[] {"0"});
+    Assert.assertEquals(template.format("{1}"), "(cn={{1}}{}{)");
+    Assert.assertEquals(new FilterTemplate("(cn=a)").format(), "(cn=a)");
+  }
+}
@@ -0,0 +1,367 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.handler;
+
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.ldaptive.Connection;
+import org.ldaptive.LdapAttribute;
+import org.ldaptive.LdapEntry;
+import org.ldaptive.SearchEntry;
+import org.ldaptive.SearchRequest;
+import org.ldaptive.SearchResult;
+import org.ldaptive.SortBehavior;
+import org.ldaptive.provider.MultiplexedProviderConnection;
+import org.ldaptive.provider.ProviderConnection;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for {@link ConcurrentSearchEntryHandler}.
+ *
+ * @author  Middleware Services
+ */
+public class ConcurrentSearchEntryHandlerTest
+{
+
+  /** Number of entries to handle. */
+  private static final int ENTRY_COUNT = 50;
+
+
+  /**
+   * Creates a search entry with the supplied index.
+   *
+   * @param  i  index of the entry
+   *
+   * @return  search entry
+   */
+  private static SearchEntry createEntry(final int i)
+  {
+    final SearchEntry entry = new SearchEntry(i, null);
+    entry.setDn("uid=" + i + ",dc=ldaptive,dc=org");
+    entry.addAttribute(new LdapAttribute("uid", String.valueOf(i)));
+    return entry;
+  }
+
+
+  /**
+   * Submits {@link #ENTRY_COUNT} entries to a new handler execution.
+   *
+   * @param  request  search request
+   * @param  handler  concurrent search entry handler in the request
+   *
+   * @return  search result
+   */
+  private static SearchResult execute(final SearchRequest request, final ConcurrentSearchEntryHandler handler)
+  {
+    return execute(null, request, handler);
+  }
+
+
+  /**
+   * Submits {@link #ENTRY_COUNT} entries to a new handler execution.
+   *
+   * @param  conn  the search is executing on
+   * @param  request  search request
+   * @param  handler  concurrent search entry handler in the request
+   *
+   * @return  search result
+   */
+  private static SearchResult execute(
+    final Connection conn,
+    final SearchRequest request,
+    final ConcurrentSearchEntryHandler handler)
+  {
+    final SearchResult result = new SearchResult(request.getSortBehavior());
+    final ConcurrentSearchEntryHandler.HandlerExecution execution = handler.start(conn, request);
+    try {
+      for (int i = 0; i < ENTRY_COUNT && !execution.isAborted(); i++) {
+        execution.submit(createEntry(i), result);
+      }
+      execution.complete(result);
+    } finally {
+      execution.cancel();
+    }
+    return result;
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"handler"})
+  public void ordered()
+    throws Exception
+  {
+    final AtomicInteger running = new AtomicInteger();
+    final AtomicInteger maxRunning = new AtomicInteger();
+    final ConcurrentSearchEntryHandler handler = new ConcurrentSearchEntryHandler(4, 8);
+    final SearchRequest request = new SearchRequest();
+    request.setSortBehavior(SortBehavior.ORDERED);
+    request.setSearchEntryHandlers(
+      handler,
+      new SleepHandler(running, maxRunning),
+      new DnAttributeEntryHandler());
+    final SearchResult result = execute(request, handler);
+    Assert.assertEquals(result.size(), ENTRY_COUNT);
+    int i = 0;
+    for (LdapEntry entry : result.getEntries()) {
+      Assert.assertEquals(entry.getDn(), "uid=" + i++ + ",dc=ldaptive,dc=org");
+      Assert.assertNotNull(entry.getAttribute("entryDN"));
+    }
+    Assert.assertTrue(maxRunning.get() > 1);
+    Assert.assertTrue(maxRunning.get() <= 4);
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"handler"})
+  public void removeAndAbort()
+    throws Exception
+  {
+    final ConcurrentSearchEntryHandler handler = new ConcurrentSearchEntryHandler(2, 4);
+    final SearchRequest request = new SearchRequest();
+    request.setSortBehavior(SortBehavior.ORDERED);
+    request.setSearchEntryHandlers(
+      handler,
+      new SleepHandler(new AtomicInteger(), new AtomicInteger()),
+      new AbstractSearchEntryHandler()
+      {
+        @Override
+        public HandlerResult<SearchEntry> handle(
+          final Connection conn,
+          final SearchRequest request,
+          final SearchEntry entry)
+        {
+          final int uid = Integer.parseInt(entry.getAttribute("uid").getStringValue());
+          return new HandlerResult<>(uid % 2 == 0 ? entry : null, uid == ENTRY_COUNT / 2);
+        }
+
+
+        @Override
+        public boolean equals(final Object o)
+        {
+          return o == this;
+        }
+
+
+        @Override
+        public int hashCode()
+        {
+          return System.identityHashCode(this);
+        }
+      });
+    final SearchResult result = execute(request, handler);
+    Assert.assertEquals(result.size(), ENTRY_COUNT / 4 + 1);
+    int i = 0;
+    for (LdapEntry entry : result.getEntries()) {
+      Assert.assertEquals(entry.getDn(), "uid=" + i + ",dc=ldaptive,dc=org");
+      i += 2;
+    }
+  }
+
+
+  /**
+   * Creates an open connection whose provider connection implements the supplied interface.
+   *
+   * @param  type  of provider connection
+   * @param  multiplexed  whether the provider connection reports multiplexing enabled
+   *
+   * @return  connection
+   */
+  private static Connection createConnection(final Class<? extends ProviderConnection> type, final boolean multiplexed)
+  {
+    final Object pc = Proxy.newProxyInstance(
+      type.getClassLoader(),
+      new Class<?>[] {type},
+      (proxy, method, args) -> {
+        final Object value;
+        switch (method.getName()) {
+
+        case "isMultiplexingEnabled":
+          value = multiplexed;
+          break;
+
+        case "hashCode":
+          value = System.identityHashCode(proxy);
+          break;
+
+        case "equals":
+          value = proxy == args[0];
+          break;
+
+        default:
+          value = null;
+          break;
+        }
+        return value;
+      });
+    return (Connection) Proxy.newProxyInstance(
+      Connection.class.getClassLoader(),
+      new Class<?>[] {Connection.class},
+      (proxy, method, args) -> {
+        final Object value;
+        if ("isOpen".equals(method.getName())) {
+          value = Boolean.TRUE;
+        } else if ("getProviderConnection".equals(method.getName())) {
+          value = pc;
+        } else {
+          value = method.getName();
+        }
+        return value;
+      });
+  }
+
+
+  /**
+   * Returns the provider connections seen by a search entry handler for a search on the supplied connection.
+   *
+   * @param  conn  the search is executing on
+   *
+   * @return  provider connections or exceptions thrown retrieving them
+   */
+  private static Set<Object> handlerProviderConnections(final Connection conn)
+  {
+    final Set<Object> seen = ConcurrentHashMap.newKeySet();
+    final ConcurrentSearchEntryHandler handler = new ConcurrentSearchEntryHandler(4, 8);
+    final SearchRequest request = new SearchRequest();
+    request.setSearchEntryHandlers(
+      handler,
+      new AbstractSearchEntryHandler()
+      {
+        @Override
+        public HandlerResult<SearchEntry> handle(
+          final Connection c,
+          final SearchRequest request,
+          final SearchEntry entry)
+        {
+          try {
+            seen.add(c.getProviderConnection());
+          } catch (IllegalStateException e) {
+            seen.add(e.getClass());
+          }
+          return new HandlerResult<>(entry);
+        }
+
+
+        @Override
+        public boolean equals(final Object o)
+        {
+          return o == this;
+        }
+
+
+        @Override
+        public int hashCode()
+        {
+          return System.identityHashCode(this);
+        }
+      });
+    Assert.assertEquals(execute(conn, request, handler).size(), ENTRY_COUNT);
+    return seen;
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"handler"})
+  public void connectionAccess()
+    throws Exception
+  {
+    final Connection multiplexed = createConnection(MultiplexedProviderConnection.class, true);
+    Assert.assertEquals(
+      handlerProviderConnections(multiplexed),
+      Collections.singleton(multiplexed.getProviderConnection()));
+
+    Assert.assertEquals(
+      handlerProviderConnections(createConnection(MultiplexedProviderConnection.class, false)),
+      Collections.singleton(IllegalStateException.class));
+    Assert.assertEquals(
+      handlerProviderConnections(createConnection(ProviderConnection.class, false)),
+      Collections.singleton(IllegalStateException.class));
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"handler"})
+  public void invalidConfiguration()
+    throws Exception
+  {
+    try {
+      new ConcurrentSearchEntryHandler(0, 1);
+      Assert.fail("Should have thrown IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      Assert.assertNotNull(e);
+    }
+    try {
+      new ConcurrentSearchEntryHandler(4, 2);
+      Assert.fail("Should have thrown IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      Assert.assertNotNull(e);
+    }
+  }
+
+
+  /** Sleeps for a random interval and records the number of concurrent invocations. */
+  private static class SleepHandler extends AbstractSearchEntryHandler
+  {
+
+    /** Maximum sleep in milliseconds. */
+    private static final int MAX_SLEEP = 5;
+
+    /** Random sleep intervals. */
+    private final Random random = new Random();
+
+    /** Number of handlers running. */
+    private final AtomicInteger running;
+
+    /** Maximum number of handlers running. */
+    private final AtomicInteger maxRunning;
+
+
+    /**
+     * Creates a new sleep handler.
+     *
+     * @param  current  number of handlers running
+     * @param  max  number of handlers running
+     */
+    SleepHandler(final AtomicInteger current, final AtomicInteger max)
+    {
+      running = current;
+      maxRunning = max;
+    }
+
+
+    @Override
+    public HandlerResult<SearchEntry> handle(
+      final Connection conn,
+      final SearchRequest request,
+      final SearchEntry entry)
+    {
+      final int n = running.incrementAndGet();
+      maxRunning.accumulateAndGet(n, Math::max);
+      try {
+        Thread.sleep(random.nextInt(MAX_SLEEP) + 1);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } finally {
+        running.decrementAndGet();
+      }
+      return new HandlerResult<>(entry);
+    }
+
+
+    @Override
+    public boolean equals(final Object o)
+    {
+      return o == this;
+    }
+
+
+    @Override
+    public int hashCode()
+    {
+      return System.identityHashCode(this);
+    }
+  }
+}
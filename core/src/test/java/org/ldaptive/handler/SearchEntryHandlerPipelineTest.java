@@ -0,0 +1,218 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.handler;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.ldaptive.Connection;
+import org.ldaptive.LdapAttribute;
+import org.ldaptive.SearchEntry;
+import org.ldaptive.SearchRequest;
+import org.ldaptive.ad.handler.ObjectGuidHandler;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for {@link SearchEntryHandlerPipeline}.
+ *
+ * @author  Middleware Services
+ */
+public class SearchEntryHandlerPipelineTest
+{
+
+
+  /**
+   * Creates a new entry to process.
+   *
+   * @return  search entry
+   */
+  private static SearchEntry createEntry()
+  {
+    final SearchEntry entry = new SearchEntry(1, null);
+    entry.setDn("UID=JDoe,DC=ldaptive,DC=org");
+    entry.addAttribute(
+      new LdapAttribute("uid", "JDoe"),
+      new LdapAttribute("cn", "John Doe"),
+      new LdapAttribute("mail", "jdoe@ldaptive.org"),
+      new LdapAttribute("objectGUID", new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16}));
+    return entry;
+  }
+
+
+  /**
+   * Creates handlers to apply.
+   *
+   * @return  search entry handlers
+   */
+  private static SearchEntryHandler[] createHandlers()
+  {
+    final CaseChangeEntryHandler lower = new CaseChangeEntryHandler();
+    lower.setDnCaseChange(CaseChangeEntryHandler.CaseChange.LOWER);
+    lower.setAttributeNameCaseChange(CaseChangeEntryHandler.CaseChange.UPPER);
+    final CaseChangeEntryHandler upper = new CaseChangeEntryHandler();
+    upper.setAttributeValueCaseChange(CaseChangeEntryHandler.CaseChange.UPPER);
+    upper.setAttributeNames("cn", "email");
+    return new SearchEntryHandler[] {
+      new ObjectGuidHandler(),
+      lower,
+      new RenameHandler("mail", "email"),
+      upper,
+      new DnAttributeEntryHandler(),
+      new ObjectGuidHandler("uid"),
+    };
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"handler"})
+  public void sameAsSequential()
+    throws Exception
+  {
+    final SearchRequest request = new SearchRequest();
+    SearchEntry expected = createEntry();
+    for (SearchEntryHandler handler : createHandlers()) {
+      expected = handler.handle(null, request, expected).getResult();
+    }
+
+    final SearchEntryHandlerPipeline pipeline = new SearchEntryHandlerPipeline(createHandlers());
+    request.setSearchEntryHandlers(pipeline);
+    Assert.assertEquals(request.getBinaryAttributes(), new String[] {"objectGUID", "uid"});
+    final SearchEntry entry = pipeline.handle(null, request, createEntry()).getResult();
+    Assert.assertEquals(entry, expected);
+    Assert.assertEquals(entry.getDn(), "uid=jdoe,dc=ldaptive,dc=org");
+    Assert.assertEquals(entry.getAttribute("objectGUID").getStringValue(), "{04030201-0605-0807-090A-0B0C0D0E0F10}");
+    Assert.assertEquals(entry.getAttribute("email").getStringValue(), "JDOE@LDAPTIVE.ORG");
+    Assert.assertEquals(entry.getAttribute("cn").getName(), "CN");
+    Assert.assertEquals(entry.getAttribute("cn").getStringValue(), "JOHN DOE");
+    Assert.assertEquals(entry.getAttribute("entryDN").getStringValue(), "uid=jdoe,dc=ldaptive,dc=org");
+    Assert.assertNull(entry.getAttribute("mail"));
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"handler"})
+  public void dispatch()
+    throws Exception
+  {
+    final AtomicInteger count = new AtomicInteger();
+    final CaseChangeEntryHandler counting = new CaseChangeEntryHandler()
+    {
+      @Override
+      public LdapAttribute processAttribute(
+        final Connection conn,
+        final SearchRequest request,
+        final LdapAttribute attr)
+      {
+        count.incrementAndGet();
+        return attr;
+      }
+    };
+    counting.setAttributeNames("cn");
+    final SearchEntryHandlerPipeline pipeline = new SearchEntryHandlerPipeline(
+      new ObjectGuidHandler(),
+      counting,
+      new RemoveHandler("uid"));
+    final SearchEntry entry = pipeline.handle(null, new SearchRequest(), createEntry()).getResult();
+    Assert.assertEquals(count.get(), 1);
+    Assert.assertNull(entry.getAttribute("uid"));
+    Assert.assertEquals(entry.size(), 3);
+  }
+
+
+  /** Renames an attribute. */
+  private static class RenameHandler extends AbstractSearchEntryHandler implements AttributeEntryHandler
+  {
+
+    /** Attribute to rename. */
+    private final String from;
+
+    /** New name. */
+    private final String to;
+
+
+    /**
+     * Creates a new rename handler.
+     *
+     * @param  oldName  attribute to rename
+     * @param  newName  new name
+     */
+    RenameHandler(final String oldName, final String newName)
+    {
+      from = oldName;
+      to = newName;
+    }
+
+
+    @Override
+    public String[] getHandledAttributeNames()
+    {
+      return new String[] {from};
+    }
+
+
+    @Override
+    public String processDn(final Connection conn, final SearchRequest request, final String dn)
+    {
+      return dn;
+    }
+
+
+    @Override
+    public LdapAttribute processAttribute(final Connection conn, final SearchRequest request, final LdapAttribute attr)
+    {
+      final LdapAttribute renamed = new LdapAttribute(to);
+      renamed.addStringValues(attr.getStringValues());
+      return renamed;
+    }
+
+
+    @Override
+    protected void handleAttributes(final Connection conn, final SearchRequest request, final SearchEntry entry)
+    {
+      final LdapAttribute attr = entry.getAttribute(from);
+      if (attr != null) {
+        entry.removeAttribute(from);
+        final LdapAttribute processed = processAttribute(conn, request, attr);
+        if (processed != null) {
+          entry.addAttribute(processed);
+        }
+      }
+    }
+
+
+    @Override
+    public boolean equals(final Object o)
+    {
+      return o == this;
+    }
+
+
+    @Override
+    public int hashCode()
+    {
+      return System.identityHashCode(this);
+    }
+  }
+
+
+  /** Removes an attribute. */
+  private static class RemoveHandler extends RenameHandler
+  {
+
+
+    /**
+     * Creates a new remove handler.
+     *
+     * @param  name  attribute to remove
+     */
+    RemoveHandler(final String name)
+    {
+      super(name, null);
+    }
+
+
+    @Override
+    public LdapAttribute processAttribute(final Connection conn, final SearchRequest request, final LdapAttribute attr)
+    {
+      return null;
+    }
+  }
+}
@@ -55,4 +55,22 @@ public class UUIDValueTranscoderTest
     Assert.assertEquals(uuid, transcoder.decodeStringValue(s));
     Assert.assertEquals(s, transcoder.encodeStringValue(uuid));
   }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"io"})
+  public void testNonCanonical()
+    throws Exception
+  {
+    Assert.assertEquals(
+      transcoder.decodeStringValue("313DEF52-1E6B-102A-99BA-D6537704AD77"),
+      UUID.fromString("313def52-1e6b-102a-99ba-d6537704ad77"));
+    Assert.assertEquals(transcoder.decodeStringValue("1-2-3-4-5"), UUID.fromString("1-2-3-4-5"));
+    try {
+      transcoder.decodeStringValue("313def52-1e6b-102a-99ba-d6537704ad7g");
+      Assert.fail("Should have thrown IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      Assert.assertNotNull(e);
+    }
+  }
 }
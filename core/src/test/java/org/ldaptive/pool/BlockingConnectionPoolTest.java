@@ -0,0 +1,362 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.pool;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.ldaptive.Connection;
+import org.ldaptive.ConnectionConfig;
+import org.ldaptive.DefaultConnectionFactory;
+import org.ldaptive.LdapAttribute;
+import org.ldaptive.LdapEntry;
+import org.ldaptive.Response;
+import org.ldaptive.SearchOperation;
+import org.ldaptive.SearchRequest;
+import org.ldaptive.provider.nio.NioProvider;
+import org.ldaptive.provider.nio.TestLdapServer;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for {@link BlockingConnectionPool} against an in-process directory.
+ *
+ * @author  Middleware Services
+ */
+public class BlockingConnectionPoolTest
+{
+
+  /** Directory to connect to. */
+  private TestLdapServer server;
+
+
+  /** @throws  Exception  On test failure. */
+  @BeforeClass(groups = {"pool"})
+  public void startServer()
+    throws Exception
+  {
+    server = new TestLdapServer(null, false);
+    server.addEntry(new LdapEntry("uid=1,dc=ldaptive", new LdapAttribute("uid", "1")));
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @AfterClass(groups = {"pool"})
+  public void stopServer()
+    throws Exception
+  {
+    server.close();
+  }
+
+
+  /**
+   * Creates a blocking pool against the test server.
+   *
+   * @param  pc  pool configuration
+   *
+   * @return  blocking connection pool
+   */
+  private BlockingConnectionPool createPool(final PoolConfig pc)
+  {
+    return new BlockingConnectionPool(
+      pc,
+      new DefaultConnectionFactory(new ConnectionConfig(server.getLdapUrl()), new NioProvider()));
+  }
+
+
+  /**
+   * Creates a blocking pool against the test server whose connections take the supplied time to open.
+   *
+   * @param  pc  pool configuration
+   * @param  openTime  time each connection takes to open in milliseconds
+   *
+   * @return  blocking connection pool
+   */
+  private BlockingConnectionPool createSlowPool(final PoolConfig pc, final long openTime)
+  {
+    final ConnectionConfig cc = new ConnectionConfig(server.getLdapUrl());
+    cc.setConnectionInitializer(
+      conn -> {
+        try {
+          Thread.sleep(openTime);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        return new Response<>(null, null);
+      });
+    return new BlockingConnectionPool(pc, new DefaultConnectionFactory(cc, new NioProvider()));
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"pool"})
+  public void parallelInitialize()
+    throws Exception
+  {
+    final PoolConfig pc = new PoolConfig();
+    pc.setMinPoolSize(8);
+    pc.setMaxPoolSize(8);
+    pc.setGrowParallelism(8);
+    final BlockingConnectionPool pool = createSlowPool(pc, 200);
+    final long start = System.currentTimeMillis();
+    pool.initialize();
+    try {
+      Assert.assertTrue(System.currentTimeMillis() - start < 1000, "Connections were not created in parallel");
+      Assert.assertEquals(pool.availableCount(), 8);
+    } finally {
+      pool.close();
+    }
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"pool"})
+  public void initializeInBackground()
+    throws Exception
+  {
+    final PoolConfig pc = new PoolConfig();
+    pc.setMinPoolSize(4);
+    pc.setMaxPoolSize(4);
+    pc.setGrowParallelism(1);
+    final BlockingConnectionPool pool = createSlowPool(pc, 100);
+    pool.setInitializeInBackground(true);
+    pool.initialize();
+    try {
+      Assert.assertTrue(pool.availableCount() >= 1);
+      Assert.assertTrue(pool.availableCount() < 4);
+      final List<Connection> conns = new ArrayList<>();
+      for (int i = 0; i < 4; i++) {
+        conns.add(pool.getConnection());
+      }
+      Assert.assertEquals(pool.activeCount(), 4);
+      for (Connection conn : conns) {
+        conn.close();
+      }
+      Assert.assertEquals(pool.availableCount(), 4);
+    } finally {
+      pool.close();
+    }
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"pool"})
+  public void closeWhileGrowing()
+    throws Exception
+  {
+    final int clients = server.getClientCount();
+    final PoolConfig pc = new PoolConfig();
+    pc.setMinPoolSize(4);
+    pc.setMaxPoolSize(4);
+    pc.setGrowParallelism(1);
+    // the connection is opened before the grow executor is shut down and added afterward
+    final BlockingConnectionPool pool = new BlockingConnectionPool(
+      pc,
+      new DefaultConnectionFactory(new ConnectionConfig(server.getLdapUrl()), new NioProvider()))
+    {
+      @Override
+      protected PooledConnectionProxy createConnection(final boolean throwOnFailure)
+      {
+        final PooledConnectionProxy conn = super.createConnection(throwOnFailure);
+        if (availableCount() > 0) {
+          final long end = System.currentTimeMillis() + 200;
+          while (System.currentTimeMillis() < end) {
+            try {
+              Thread.sleep(10);
+            } catch (InterruptedException e) {
+              logger.trace("ignoring interrupt", e);
+            }
+          }
+        }
+        return conn;
+      }
+    };
+    pool.setInitializeInBackground(true);
+    pool.initialize();
+    // the second connection is still being created
+    pool.close();
+    Thread.sleep(400);
+    Assert.assertEquals(pool.available.size(), 0);
+    final long deadline = System.currentTimeMillis() + 5000;
+    while (server.getClientCount() > clients && System.currentTimeMillis() < deadline) {
+      Thread.sleep(50);
+    }
+    Assert.assertEquals(server.getClientCount(), clients);
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"pool"})
+  public void adaptiveSizing()
+    throws Exception
+  {
+    final PoolConfig pc = new PoolConfig();
+    pc.setMinPoolSize(1);
+    pc.setMaxPoolSize(10);
+    pc.setAdaptiveSizing(true);
+    pc.setSizingPeriod(Duration.ofMillis(50));
+    pc.setSizingShrinkDelay(Duration.ofMillis(200));
+    final BlockingConnectionPool pool = createPool(pc);
+    pool.initialize();
+    final ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      Assert.assertEquals(pool.availableCount(), 1);
+      final List<Future<Integer>> results = new ArrayList<>();
+      for (int i = 0; i < 40; i++) {
+        results.add(
+          executor.submit(
+            () -> {
+              final Connection conn = pool.getConnection();
+              try {
+                final int size = new SearchOperation(conn).execute(
+                  new SearchRequest("", "(uid=1)")).getResult().size();
+                Thread.sleep(50);
+                return size;
+              } finally {
+                conn.close();
+              }
+            }));
+      }
+      int peakSize = 0;
+      for (Future<Integer> result : results) {
+        Assert.assertEquals(result.get(10, TimeUnit.SECONDS).intValue(), 1);
+        peakSize = Math.max(peakSize, pool.availableCount() + pool.activeCount());
+      }
+      Assert.assertTrue(peakSize > 1, "Pool did not grow");
+      Assert.assertNotNull(pool.getLastSizingDecision());
+
+      // idle pool shrinks back to the minimum
+      final long deadline = System.currentTimeMillis() + 5000;
+      while (pool.availableCount() + pool.activeCount() > 1 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(50);
+      }
+      Assert.assertEquals(pool.availableCount() + pool.activeCount(), 1);
+    } finally {
+      executor.shutdown();
+      pool.close();
+    }
+  }
+
+
+  /**
+   * Queues a thread for each priority, in order, behind a held connection and returns the order in which they were
+   * served.
+   *
+   * @param  pool  with a single connection
+   * @param  priorities  of each waiter
+   *
+   * @return  indexes of the waiters in the order they received a connection
+   *
+   * @throws  Exception  On test failure.
+   */
+  private static List<Integer> serveWaiters(final BlockingConnectionPool pool, final int... priorities)
+    throws Exception
+  {
+    final List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+    final ExecutorService executor = Executors.newFixedThreadPool(priorities.length);
+    try {
+      final Connection held = pool.getConnection();
+      final List<Future<?>> results = new ArrayList<>();
+      for (int i = 0; i < priorities.length; i++) {
+        final int index = i;
+        results.add(
+          executor.submit(
+            () -> {
+              final Connection conn = pool.getConnection(Duration.ofSeconds(10), priorities[index]);
+              order.add(index);
+              conn.close();
+              return null;
+            }));
+        while (pool.getWaiterCount() < i + 1) {
+          Thread.sleep(5);
+        }
+      }
+      held.close();
+      for (Future<?> result : results) {
+        result.get(10, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdown();
+    }
+    return order;
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"pool"})
+  public void fairHandOff()
+    throws Exception
+  {
+    final PoolConfig pc = new PoolConfig();
+    pc.setMinPoolSize(1);
+    pc.setMaxPoolSize(1);
+    final BlockingConnectionPool pool = createPool(pc);
+    pool.initialize();
+    try {
+      Assert.assertEquals(serveWaiters(pool, 0, 0, 0, 0), Arrays.asList(0, 1, 2, 3));
+      Assert.assertEquals(pool.getWaiterCount(), 0);
+      Assert.assertEquals(pool.getPeakWaiterCount(), 4);
+      Assert.assertEquals(pool.getWaitTimeHistogram().getCount(), 4);
+      Assert.assertEquals(pool.availableCount(), 1);
+      Assert.assertEquals(pool.activeCount(), 0);
+    } finally {
+      pool.close();
+    }
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"pool"})
+  public void priorityHandOff()
+    throws Exception
+  {
+    final PoolConfig pc = new PoolConfig();
+    pc.setMinPoolSize(1);
+    pc.setMaxPoolSize(1);
+    final BlockingConnectionPool pool = createPool(pc);
+    pool.initialize();
+    try {
+      Assert.assertEquals(serveWaiters(pool, 0, 5, 1, 5), Arrays.asList(1, 3, 2, 0));
+    } finally {
+      pool.close();
+    }
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"pool"})
+  public void perCallTimeout()
+    throws Exception
+  {
+    final PoolConfig pc = new PoolConfig();
+    pc.setMinPoolSize(1);
+    pc.setMaxPoolSize(1);
+    final BlockingConnectionPool pool = createPool(pc);
+    pool.initialize();
+    try {
+      final Connection held = pool.getConnection();
+      final long start = System.currentTimeMillis();
+      try {
+        pool.getConnection(Duration.ofMillis(100));
+        Assert.fail("Should have thrown exception");
+      } catch (BlockingTimeoutException e) {
+        Assert.assertTrue(System.currentTimeMillis() - start >= 100);
+      }
+      Assert.assertEquals(pool.getWaiterCount(), 0);
+      Assert.assertEquals(pool.getTimeoutCount(), 1);
+      Assert.assertEquals(pool.getWaitTimeHistogram().getCount(), 0);
+      held.close();
+      pool.getConnection(Duration.ZERO).close();
+      Assert.assertEquals(pool.availableCount(), 1);
+    } finally {
+      pool.close();
+    }
+  }
+}
@@ -0,0 +1,139 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.pool;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for {@link PoolSizingController}.
+ *
+ * @author  Middleware Services
+ */
+public class PoolSizingControllerTest
+{
+
+  /** One second in nanoseconds. */
+  private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+
+  /**
+   * Creates a pool config for sizing tests.
+   *
+   * @return  pool config
+   */
+  private static PoolConfig createPoolConfig()
+  {
+    final PoolConfig pc = new PoolConfig();
+    pc.setMinPoolSize(2);
+    pc.setMaxPoolSize(20);
+    pc.setSizingHeadroom(0.5);
+    pc.setSizingWaitThreshold(Duration.ofMillis(10));
+    pc.setSizingShrinkDelay(Duration.ofSeconds(2));
+    return pc;
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"pool"})
+  public void growOnDemand()
+    throws Exception
+  {
+    final PoolSizingController controller = new PoolSizingController(createPoolConfig());
+    final long start = System.nanoTime();
+    controller.evaluate(0, 2, start);
+    // 100 check outs per second held for 80ms each keeps 8 connections busy
+    for (int i = 0; i < 100; i++) {
+      controller.checkOutCompleted(0, 2);
+      controller.checkInCompleted(TimeUnit.MILLISECONDS.toNanos(80));
+    }
+    final PoolSizingController.Decision decision = controller.evaluate(2, 0, start + SECOND);
+    Assert.assertEquals(decision.getAction(), PoolSizingController.Action.GROW);
+    Assert.assertEquals(decision.getCurrentSize(), 2);
+    Assert.assertEquals(decision.getTargetSize(), 12);
+    Assert.assertEquals(decision.getCheckOutCount(), 100);
+    Assert.assertEquals(decision.getMeanHoldTime(), Duration.ofMillis(80));
+    Assert.assertEquals(decision.getThroughput(), 100d, 0.01);
+    Assert.assertEquals(decision.getUtilization(), 1d, 0.01);
+    Assert.assertSame(controller.getLastDecision(), decision);
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"pool"})
+  public void growOnWait()
+    throws Exception
+  {
+    final PoolSizingController controller = new PoolSizingController(createPoolConfig());
+    final long start = System.nanoTime();
+    controller.evaluate(0, 4, start);
+    controller.checkOutCompleted(TimeUnit.MILLISECONDS.toNanos(50), 1);
+    final PoolSizingController.Decision decision = controller.evaluate(1, 3, start + SECOND);
+    Assert.assertEquals(decision.getAction(), PoolSizingController.Action.GROW);
+    Assert.assertEquals(decision.getTargetSize(), 6);
+    Assert.assertEquals(decision.getMeanWaitTime(), Duration.ofMillis(50));
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"pool"})
+  public void growLimitedByMax()
+    throws Exception
+  {
+    final PoolSizingController controller = new PoolSizingController(createPoolConfig());
+    final long start = System.nanoTime();
+    controller.evaluate(0, 2, start);
+    for (int i = 0; i < 1000; i++) {
+      controller.checkOutCompleted(0, 2);
+      controller.checkInCompleted(TimeUnit.MILLISECONDS.toNanos(100));
+    }
+    Assert.assertEquals(controller.evaluate(2, 0, start + SECOND).getTargetSize(), 20);
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"pool"})
+  public void shrinkGradually()
+    throws Exception
+  {
+    final PoolSizingController controller = new PoolSizingController(createPoolConfig());
+    final long start = System.nanoTime();
+    controller.evaluate(0, 10, start);
+
+    PoolSizingController.Decision decision = controller.evaluate(0, 10, start + SECOND);
+    Assert.assertEquals(decision.getAction(), PoolSizingController.Action.HOLD);
+    Assert.assertEquals(decision.getTargetSize(), 10);
+
+    decision = controller.evaluate(0, 10, start + 2 * SECOND);
+    Assert.assertEquals(decision.getAction(), PoolSizingController.Action.SHRINK);
+    Assert.assertEquals(decision.getTargetSize(), 9);
+
+    decision = controller.evaluate(0, 9, start + 3 * SECOND);
+    Assert.assertEquals(decision.getAction(), PoolSizingController.Action.SHRINK);
+    Assert.assertEquals(decision.getTargetSize(), 8);
+
+    // demand returns, shrink delay starts over
+    controller.checkOutCompleted(0, 8);
+    decision = controller.evaluate(8, 0, start + 4 * SECOND);
+    Assert.assertEquals(decision.getAction(), PoolSizingController.Action.GROW);
+    decision = controller.evaluate(0, 12, start + 5 * SECOND);
+    Assert.assertEquals(decision.getAction(), PoolSizingController.Action.HOLD);
+    decision = controller.evaluate(0, 12, start + 6 * SECOND);
+    Assert.assertEquals(decision.getAction(), PoolSizingController.Action.HOLD);
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"pool"})
+  public void holdAtMin()
+    throws Exception
+  {
+    final PoolSizingController controller = new PoolSizingController(createPoolConfig());
+    final long start = System.nanoTime();
+    controller.evaluate(0, 2, start);
+    final PoolSizingController.Decision decision = controller.evaluate(0, 2, start + 10 * SECOND);
+    Assert.assertEquals(decision.getAction(), PoolSizingController.Action.HOLD);
+    Assert.assertEquals(decision.getTargetSize(), 2);
+  }
+}
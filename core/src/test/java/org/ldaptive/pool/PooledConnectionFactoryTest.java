@@ -0,0 +1,190 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.pool;
+
+import java.time.Duration;
+import org.ldaptive.Connection;
+import org.ldaptive.ConnectionConfig;
+import org.ldaptive.DefaultConnectionFactory;
+import org.ldaptive.LdapAttribute;
+import org.ldaptive.LdapEntry;
+import org.ldaptive.SearchOperation;
+import org.ldaptive.SearchRequest;
+import org.ldaptive.provider.nio.NioProvider;
+import org.ldaptive.provider.nio.TestLdapServer;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for {@link PooledConnectionFactory}.
+ *
+ * @author  Middleware Services
+ */
+public class PooledConnectionFactoryTest
+{
+
+  /** Directory to connect to. */
+  private TestLdapServer server;
+
+
+  /** @throws  Exception  On test failure. */
+  @BeforeClass(groups = {"pool"})
+  public void startServer()
+    throws Exception
+  {
+    server = new TestLdapServer(null, false);
+    server.addEntry(new LdapEntry("uid=1,dc=ldaptive", new LdapAttribute("uid", "1")));
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @AfterClass(groups = {"pool"})
+  public void stopServer()
+    throws Exception
+  {
+    server.close();
+  }
+
+
+  /**
+   * Creates an initialized blocking pool with a single connection against the test server.
+   *
+   * @return  blocking connection pool
+   */
+  private BlockingConnectionPool createPool()
+  {
+    final PoolConfig pc = new PoolConfig();
+    pc.setMinPoolSize(1);
+    pc.setMaxPoolSize(2);
+    final BlockingConnectionPool pool = new BlockingConnectionPool(
+      pc,
+      new DefaultConnectionFactory(new ConnectionConfig(server.getLdapUrl()), new NioProvider()));
+    pool.initialize();
+    return pool;
+  }
+
+
+  /**
+   * Waits up to five seconds for the cache to have no bound connections.
+   *
+   * @param  cache  to wait on
+   *
+   * @throws  Exception  On test failure.
+   */
+  private static void awaitUnbound(final ThreadConnectionCache cache)
+    throws Exception
+  {
+    final long deadline = System.currentTimeMillis() + 5000;
+    while (cache.getBoundCount() > 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"pool"})
+  public void noAffinity()
+    throws Exception
+  {
+    final BlockingConnectionPool pool = createPool();
+    try {
+      final PooledConnectionFactory factory = new PooledConnectionFactory(pool);
+      Assert.assertNull(factory.getThreadConnectionCache());
+      factory.getConnection().close();
+      Assert.assertEquals(pool.availableCount(), 1);
+      Assert.assertEquals(pool.activeCount(), 0);
+    } finally {
+      pool.close();
+    }
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"pool"})
+  public void threadAffinity()
+    throws Exception
+  {
+    final BlockingConnectionPool pool = createPool();
+    try {
+      final PooledConnectionFactory factory = new PooledConnectionFactory(pool);
+      factory.setAffinityIdleTime(Duration.ofMinutes(1));
+      final ThreadConnectionCache cache = factory.getThreadConnectionCache();
+      for (int i = 0; i < 5; i++) {
+        try (Connection conn = factory.getConnection()) {
+          Assert.assertEquals(
+            new SearchOperation(conn).execute(new SearchRequest("", "(uid=1)")).getResult().size(), 1);
+        }
+        Assert.assertEquals(cache.getBoundCount(), 1);
+        Assert.assertEquals(pool.activeCount(), 1);
+      }
+      Assert.assertEquals(cache.getMissCount(), 1);
+      Assert.assertEquals(cache.getHitCount(), 4);
+
+      // a second connection checked out while the first is in use comes from the pool
+      final Connection first = factory.getConnection();
+      final Connection second = factory.getConnection();
+      Assert.assertEquals(pool.activeCount(), 2);
+      second.close();
+      first.close();
+      Assert.assertEquals(cache.getBoundCount(), 1);
+      Assert.assertEquals(pool.activeCount(), 1);
+      Assert.assertEquals(pool.availableCount(), 1);
+
+      factory.releaseThreadConnection();
+      Assert.assertEquals(cache.getBoundCount(), 0);
+      Assert.assertEquals(pool.activeCount(), 0);
+      Assert.assertEquals(pool.availableCount(), 2);
+    } finally {
+      pool.close();
+    }
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"pool"})
+  public void releaseIdle()
+    throws Exception
+  {
+    final BlockingConnectionPool pool = createPool();
+    try {
+      final PooledConnectionFactory factory = new PooledConnectionFactory(pool);
+      factory.setAffinityIdleTime(Duration.ofMillis(100));
+      factory.getConnection().close();
+      Assert.assertEquals(pool.activeCount(), 1);
+      awaitUnbound(factory.getThreadConnectionCache());
+      Assert.assertEquals(pool.activeCount(), 0);
+      Assert.assertEquals(pool.availableCount(), 1);
+    } finally {
+      pool.close();
+    }
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"pool"})
+  public void releaseOnThreadExit()
+    throws Exception
+  {
+    final BlockingConnectionPool pool = createPool();
+    try {
+      final PooledConnectionFactory factory = new PooledConnectionFactory(pool);
+      factory.setAffinityIdleTime(Duration.ofSeconds(1));
+      final Thread t = new Thread(
+        () -> {
+          try {
+            factory.getConnection().close();
+          } catch (Exception e) {
+            throw new IllegalStateException(e);
+          }
+        });
+      t.start();
+      t.join();
+      Assert.assertEquals(pool.activeCount(), 1);
+      awaitUnbound(factory.getThreadConnectionCache());
+      Assert.assertEquals(pool.activeCount(), 0);
+    } finally {
+      pool.close();
+    }
+  }
+}
@@ -0,0 +1,65 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.pool;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for {@link WaitTimeHistogram}.
+ *
+ * @author  Middleware Services
+ */
+public class WaitTimeHistogramTest
+{
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"pool"})
+  public void record()
+    throws Exception
+  {
+    final WaitTimeHistogram histogram = new WaitTimeHistogram();
+    Assert.assertEquals(histogram.getCount(), 0);
+    Assert.assertEquals(histogram.getPercentile(0.5), Duration.ZERO);
+
+    histogram.record(TimeUnit.MICROSECONDS.toNanos(500));
+    histogram.record(TimeUnit.MILLISECONDS.toNanos(1));
+    histogram.record(TimeUnit.MILLISECONDS.toNanos(3));
+    histogram.record(TimeUnit.MILLISECONDS.toNanos(6));
+    histogram.record(TimeUnit.SECONDS.toNanos(60));
+
+    final long[] counts = histogram.getCounts();
+    Assert.assertEquals(counts.length, WaitTimeHistogram.BUCKET_COUNT);
+    Assert.assertEquals(counts[0], 1);
+    Assert.assertEquals(counts[1], 1);
+    Assert.assertEquals(counts[2], 1);
+    Assert.assertEquals(counts[3], 1);
+    Assert.assertEquals(counts[WaitTimeHistogram.BUCKET_COUNT - 1], 1);
+    Assert.assertEquals(histogram.getCount(), 5);
+
+    Assert.assertEquals(histogram.getPercentile(0), Duration.ofMillis(1));
+    Assert.assertEquals(histogram.getPercentile(0.4), Duration.ofMillis(2));
+    Assert.assertEquals(histogram.getPercentile(0.8), Duration.ofMillis(8));
+    Assert.assertNull(histogram.getPercentile(1));
+
+    histogram.reset();
+    Assert.assertEquals(histogram.getCount(), 0);
+    Assert.assertEquals(histogram.getMean(), Duration.ZERO);
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"pool"})
+  public void upperBound()
+    throws Exception
+  {
+    Assert.assertEquals(WaitTimeHistogram.getUpperBound(0), Duration.ofMillis(1));
+    Assert.assertEquals(WaitTimeHistogram.getUpperBound(4), Duration.ofMillis(16));
+    Assert.assertEquals(
+      WaitTimeHistogram.getUpperBound(WaitTimeHistogram.BUCKET_COUNT - 2),
+      Duration.ofMillis(WaitTimeHistogram.MAX_BOUND_MILLIS));
+    Assert.assertNull(WaitTimeHistogram.getUpperBound(WaitTimeHistogram.BUCKET_COUNT - 1));
+  }
+}
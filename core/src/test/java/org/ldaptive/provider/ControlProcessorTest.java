@@ -0,0 +1,71 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.provider;
+
+import org.ldaptive.LdapUtils;
+import org.ldaptive.control.PagedResultsControl;
+import org.ldaptive.control.ResponseControl;
+import org.ldaptive.control.SyncStateControl;
+import org.ldaptive.provider.nio.NioControl;
+import org.ldaptive.provider.nio.NioControlHandler;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for {@link ControlProcessor}.
+ *
+ * @author  Middleware Services
+ */
+public class ControlProcessorTest
+{
+
+  /** Provider controls returned with a response. */
+  private static final NioControl[] CONTROLS = new NioControl[] {
+    new NioControl(SyncStateControl.OID, false, LdapUtils.base64Decode("MBUKAQEEEIQxd+xbDhAxgn8Rb/VuTlk=")),
+    new NioControl(PagedResultsControl.OID, false, LdapUtils.base64Decode("MAUCAQAEAA==")),
+    new NioControl("1.2.3.4", false, null),
+  };
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"provider"})
+  public void processAll()
+    throws Exception
+  {
+    final ControlProcessor<NioControl> processor = new ControlProcessor<>(new NioControlHandler());
+    final ResponseControl[] ctls = processor.processResponseControls(CONTROLS);
+    Assert.assertEquals(ctls.length, 2);
+    Assert.assertEquals(ctls[0].getOID(), SyncStateControl.OID);
+    Assert.assertFalse(((SyncStateControl) ctls[0]).isDecoded());
+    Assert.assertEquals(((SyncStateControl) ctls[0]).getSyncState(), SyncStateControl.State.ADD);
+    Assert.assertEquals(ctls[1].getOID(), PagedResultsControl.OID);
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"provider"})
+  public void processAllowed()
+    throws Exception
+  {
+    final ProviderConfig<NioControl> config = new ProviderConfig<>();
+    config.setAllowedResponseControls(PagedResultsControl.OID);
+    config.setControlProcessor(new ControlProcessor<>(new NioControlHandler()));
+    final ResponseControl[] ctls = config.getControlProcessor().processResponseControls(CONTROLS);
+    Assert.assertEquals(ctls.length, 1);
+    Assert.assertEquals(ctls[0].getOID(), PagedResultsControl.OID);
+
+    config.setAllowedResponseControls((String[]) null);
+    Assert.assertEquals(config.getControlProcessor().processResponseControls(CONTROLS).length, 2);
+
+    config.setAllowedResponseControls(SyncStateControl.OID);
+    config.makeImmutable();
+    try {
+      config.setAllowedResponseControls(PagedResultsControl.OID);
+      Assert.fail("Should have thrown IllegalStateException");
+    } catch (IllegalStateException e) {
+      Assert.assertNotNull(e);
+    }
+    Assert.assertEquals(
+      config.getControlProcessor().processResponseControls(CONTROLS)[0].getOID(),
+      SyncStateControl.OID);
+  }
+}
@@ -0,0 +1,156 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.provider;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.ldaptive.ActivePassiveConnectionStrategy;
+import org.ldaptive.LdapException;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for {@link AbstractProviderConnectionFactory}.
+ *
+ * @author  Middleware Services
+ */
+public class ProviderConnectionFactoryTest
+{
+
+  /** URL that connects slowly. */
+  private static final String SLOW_URL = "ldap://slow.ldaptive.org";
+
+  /** URL that connects quickly. */
+  private static final String FAST_URL = "ldap://fast.ldaptive.org";
+
+  /** URL that fails to connect. */
+  private static final String FAILED_URL = "ldap://failed.ldaptive.org";
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"provider"})
+  public void sequential()
+    throws Exception
+  {
+    final TestConnectionFactory factory = new TestConnectionFactory(
+      FAILED_URL + " " + SLOW_URL + " " + FAST_URL,
+      new ProviderConfig());
+    Assert.assertEquals(factory.connect(), SLOW_URL);
+    Assert.assertEquals(factory.getMetadata().getConnectionCount(), 1);
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"provider"})
+  public void concurrent()
+    throws Exception
+  {
+    final ProviderConfig config = new ProviderConfig();
+    config.setConcurrentConnectAttempts(2);
+    config.setConnectAttemptDelay(Duration.ofMillis(50));
+    final TestConnectionFactory factory = new TestConnectionFactory(
+      SLOW_URL + " " + FAST_URL + " " + FAILED_URL,
+      config);
+
+    final long start = System.nanoTime();
+    Assert.assertEquals(factory.connect(), FAST_URL);
+    Assert.assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 500);
+    Assert.assertFalse(factory.attempted.containsKey(FAILED_URL));
+
+    // slow connection is closed once it completes
+    Assert.assertTrue(factory.closed.await(2, TimeUnit.SECONDS));
+    Assert.assertEquals(factory.getMetadata().getConnectionCount(), 1);
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"provider"})
+  public void concurrentFailure()
+    throws Exception
+  {
+    final ProviderConfig config = new ProviderConfig();
+    config.setConcurrentConnectAttempts(3);
+    final TestConnectionFactory factory = new TestConnectionFactory(
+      FAILED_URL + " " + FAILED_URL + " " + FAST_URL,
+      config);
+    // failed attempts start the next attempt without waiting for the delay
+    final long start = System.nanoTime();
+    Assert.assertEquals(factory.connect(), FAST_URL);
+    Assert.assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 250);
+    Assert.assertEquals(factory.getMetadata().getConnectionCount(), 1);
+
+    final TestConnectionFactory failFactory = new TestConnectionFactory(FAILED_URL + " " + FAILED_URL, config);
+    try {
+      failFactory.connect();
+      Assert.fail("Should have thrown ConnectionException");
+    } catch (ConnectionException e) {
+      Assert.assertEquals(e.getMessage(), FAILED_URL);
+    }
+  }
+
+
+  /** Connection factory that simulates connection behavior based on the URL. */
+  private static class TestConnectionFactory extends AbstractProviderConnectionFactory<ProviderConfig>
+  {
+
+    /** URLs that connections have been attempted to. */
+    private final Map<String, Boolean> attempted = new ConcurrentHashMap<>();
+
+    /** Counts down when a connection is closed. */
+    private final CountDownLatch closed = new CountDownLatch(1);
+
+
+    /**
+     * Creates a new test connection factory.
+     *
+     * @param  url  to connect to
+     * @param  config  provider config
+     */
+    TestConnectionFactory(final String url, final ProviderConfig config)
+    {
+      super(url, new ActivePassiveConnectionStrategy(), config);
+    }
+
+
+    /**
+     * Creates a connection and returns the URL it was created for.
+     *
+     * @return  URL of the connection
+     *
+     * @throws  LdapException  if a connection cannot be established
+     */
+    String connect()
+      throws LdapException
+    {
+      return create().toString();
+    }
+
+
+    @Override
+    protected ProviderConnection createInternal(final String url)
+      throws LdapException
+    {
+      attempted.put(url, Boolean.TRUE);
+      if (FAILED_URL.equals(url)) {
+        throw new ConnectionException(url);
+      }
+      try {
+        Thread.sleep(SLOW_URL.equals(url) ? 1000 : 10);
+      } catch (InterruptedException e) {
+        throw new ConnectionException(e);
+      }
+      return (ProviderConnection) Proxy.newProxyInstance(
+        getClass().getClassLoader(),
+        new Class<?>[] {ProviderConnection.class},
+        (proxy, method, args) -> {
+          if ("close".equals(method.getName())) {
+            closed.countDown();
+          }
+          return "toString".equals(method.getName()) ? url : null;
+        });
+    }
+  }
+}
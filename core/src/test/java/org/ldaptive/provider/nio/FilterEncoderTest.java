@@ -0,0 +1,94 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.provider.nio;
+
+import org.ldaptive.LdapUtils;
+import org.ldaptive.filter.FilterParser;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for {@link FilterEncoder}.
+ *
+ * @author  Middleware Services
+ */
+public class FilterEncoderTest
+{
+
+
+  /**
+   * Filter test data.
+   *
+   * @return  test data
+   */
+  @DataProvider(name = "filters")
+  public Object[][] createFilters()
+  {
+    return
+      new Object[][] {
+        new Object[] {"(cn=a)", "A3070402636E040161"},
+        new Object[] {"cn=a", "A3070402636E040161"},
+        new Object[] {"(objectClass=*)", "870B6F626A656374436C617373"},
+        new Object[] {"(cn=a*b*c)", "A40F0402636E3009800161810162820163"},
+        new Object[] {"(cn=*b)", "A4090402636E3003820162"},
+        new Object[] {"(!(cn=a))", "A209A3070402636E040161"},
+        new Object[] {"(&(cn=a)(sn=b))", "A012A3070402636E040161A3070402736E040162"},
+        new Object[] {"(|(cn>=a)(sn<=b)(cn~=c))", "A11BA5070402636E040161A6070402736E040162A8070402636E040163"},
+        new Object[] {"(cn=\\2a\\28)", "A3080402636E04022A28"},
+        new Object[] {"(cn:dn:2.5.13.5:=a)", "A9148108322E352E31332E358202636E8301618401FF"},
+      };
+  }
+
+
+  /**
+   * Invalid filter test data.
+   *
+   * @return  test data
+   */
+  @DataProvider(name = "invalid-filters")
+  public Object[][] createInvalidFilters()
+  {
+    return
+      new Object[][] {
+        new Object[] {"(cn=a"},
+        new Object[] {"(=a)"},
+        new Object[] {"(&)x"},
+        new Object[] {"(cn=a)(sn=b)"},
+        new Object[] {"(!(cn=a)(sn=b))"},
+      };
+  }
+
+
+  /**
+   * @param  filter  to encode
+   * @param  expected  hex encoding
+   */
+  @Test(groups = {"provider"}, dataProvider = "filters")
+  public void encode(final String filter, final String expected)
+  {
+    Assert.assertEquals(
+      new String(LdapUtils.hexEncode(FilterEncoder.encode(filter).encode())).toUpperCase(),
+      expected);
+  }
+
+
+  /**
+   * @param  filter  to encode
+   * @param  expected  hex encoding
+   */
+  @Test(groups = {"provider"}, dataProvider = "filters")
+  public void encodeParsed(final String filter, final String expected)
+  {
+    Assert.assertEquals(
+      new String(LdapUtils.hexEncode(FilterEncoder.encode(FilterParser.parse(filter)).encode())).toUpperCase(),
+      expected);
+  }
+
+
+  /** @param  filter  to encode */
+  @Test(groups = {"provider"}, dataProvider = "invalid-filters", expectedExceptions = IllegalArgumentException.class)
+  public void encodeInvalid(final String filter)
+  {
+    FilterEncoder.encode(filter);
+  }
+}
@@ -0,0 +1,479 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.provider.nio;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.ldaptive.AddOperation;
+import org.ldaptive.AddRequest;
+import org.ldaptive.AttributeModification;
+import org.ldaptive.AttributeModificationType;
+import org.ldaptive.BindOperation;
+import org.ldaptive.BindRequest;
+import org.ldaptive.CompareOperation;
+import org.ldaptive.CompareRequest;
+import org.ldaptive.Connection;
+import org.ldaptive.ConnectionConfig;
+import org.ldaptive.Credential;
+import org.ldaptive.DefaultConnectionFactory;
+import org.ldaptive.DeleteOperation;
+import org.ldaptive.DeleteRequest;
+import org.ldaptive.LdapAttribute;
+import org.ldaptive.LdapEntry;
+import org.ldaptive.LdapException;
+import org.ldaptive.ModifyDnOperation;
+import org.ldaptive.ModifyDnRequest;
+import org.ldaptive.ModifyOperation;
+import org.ldaptive.ModifyRequest;
+import org.ldaptive.ResultCode;
+import org.ldaptive.SearchEntry;
+import org.ldaptive.SearchOperation;
+import org.ldaptive.SearchRequest;
+import org.ldaptive.SearchResult;
+import org.ldaptive.async.AsyncSearchOperation;
+import org.ldaptive.extended.WhoAmIOperation;
+import org.ldaptive.extended.WhoAmIRequest;
+import org.ldaptive.handler.HandlerResult;
+import org.ldaptive.handler.SearchEntryHandler;
+import org.ldaptive.provider.SearchIterator;
+import org.ldaptive.ssl.AllowAnyHostnameVerifier;
+import org.ldaptive.ssl.AllowAnyTrustManager;
+import org.ldaptive.ssl.SslConfig;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for {@link NioConnection} against an in-process directory.
+ *
+ * @author  Middleware Services
+ */
+public class NioConnectionTest
+{
+
+  /** Base DN of the test entries. */
+  private static final String BASE_DN = "ou=people,dc=ldaptive,dc=org";
+
+  /** Directory to connect to. */
+  private TestLdapServer server;
+
+
+  /** @throws  Exception  On test failure. */
+  @BeforeClass(groups = {"provider"})
+  public void startServer()
+    throws Exception
+  {
+    server = new TestLdapServer(TestLdapServer.createSSLContext(), false);
+    server.addEntry(new LdapEntry(BASE_DN, new LdapAttribute("ou", "people")));
+    for (int i = 1; i <= 10; i++) {
+      server.addEntry(
+        new LdapEntry(
+          "uid=" + i + "," + BASE_DN,
+          new LdapAttribute("uid", String.valueOf(i)),
+          new LdapAttribute("cn", "Person " + i),
+          new LdapAttribute("mail", "person" + i + "@ldaptive.org"),
+          new LdapAttribute("userPassword", "password" + i)));
+    }
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @AfterClass(groups = {"provider"})
+  public void stopServer()
+    throws Exception
+  {
+    server.close();
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"provider"})
+  public void operations()
+    throws Exception
+  {
+    try (Connection conn = createConnectionFactory(new ConnectionConfig(server.getLdapUrl())).getConnection()) {
+      conn.open(new BindRequest("uid=1," + BASE_DN, new Credential("password1")));
+      try {
+        new BindOperation(conn).execute(new BindRequest("uid=1," + BASE_DN, new Credential("wrong")));
+        Assert.fail("Should have thrown exception");
+      } catch (LdapException e) {
+        Assert.assertEquals(e.getResultCode(), ResultCode.INVALID_CREDENTIALS);
+      }
+
+      final String dn = "uid=nio," + BASE_DN;
+      final List<LdapAttribute> attrs = new ArrayList<>();
+      attrs.add(new LdapAttribute("uid", "nio"));
+      attrs.add(new LdapAttribute("cn", "Nio Provider", "Non-blocking"));
+      new AddOperation(conn).execute(new AddRequest(dn, attrs));
+      Assert.assertNotNull(server.getEntry(dn));
+
+      SearchResult result = new SearchOperation(conn).execute(
+        new SearchRequest(BASE_DN, "(&(uid=nio)(cn=Non-*))", "cn")).getResult();
+      Assert.assertEquals(result.size(), 1);
+      Assert.assertEquals(result.getEntry().getDn(), dn);
+      Assert.assertEquals(result.getEntry().getAttributes().size(), 1);
+      Assert.assertEquals(result.getEntry().getAttribute("cn").size(), 2);
+
+      final CompareOperation compare = new CompareOperation(conn);
+      Assert.assertTrue(compare.execute(new CompareRequest(dn, new LdapAttribute("cn", "Nio Provider"))).getResult());
+      Assert.assertFalse(
+        compare.execute(new CompareRequest(dn, new LdapAttribute("cn", "Other"))).getResult());
+
+      new ModifyOperation(conn).execute(
+        new ModifyRequest(
+          dn,
+          new AttributeModification(AttributeModificationType.ADD, new LdapAttribute("mail", "nio@ldaptive.org")),
+          new AttributeModification(AttributeModificationType.REMOVE, new LdapAttribute("cn", "Non-blocking"))));
+      Assert.assertEquals(server.getEntry(dn).getAttribute("mail").getStringValue(), "nio@ldaptive.org");
+      Assert.assertEquals(server.getEntry(dn).getAttribute("cn").size(), 1);
+
+      final String newDn = "uid=nio2," + BASE_DN;
+      new ModifyDnOperation(conn).execute(new ModifyDnRequest(dn, newDn));
+      Assert.assertNull(server.getEntry(dn));
+      Assert.assertNotNull(server.getEntry(newDn));
+
+      new DeleteOperation(conn).execute(new DeleteRequest(newDn));
+      Assert.assertNull(server.getEntry(newDn));
+      try {
+        new DeleteOperation(conn).execute(new DeleteRequest(newDn));
+        Assert.fail("Should have thrown exception");
+      } catch (LdapException e) {
+        Assert.assertEquals(e.getResultCode(), ResultCode.NO_SUCH_OBJECT);
+      }
+
+      Assert.assertEquals(new WhoAmIOperation(conn).execute(new WhoAmIRequest()).getResult(), "dn:");
+
+      result = new SearchOperation(conn).execute(new SearchRequest(BASE_DN, "(uid=*)")).getResult();
+      Assert.assertEquals(result.size(), 10);
+      Assert.assertEquals(
+        result.getEntry("uid=7," + BASE_DN).getAttribute("mail").getStringValue(),
+        "person7@ldaptive.org");
+
+      try {
+        new SearchOperation(conn).execute(new SearchRequest(BASE_DN, "(uid=1"));
+        Assert.fail("Should have thrown exception");
+      } catch (LdapException e) {
+        Assert.assertEquals(e.getResultCode(), ResultCode.FILTER_ERROR);
+      }
+    }
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"provider"})
+  public void asyncSearch()
+    throws Exception
+  {
+    try (Connection conn = createConnectionFactory(new ConnectionConfig(server.getLdapUrl())).getConnection()) {
+      conn.open();
+      final AsyncSearchOperation search = new AsyncSearchOperation(conn);
+      try {
+        final SearchResult result = search.execute(new SearchRequest(BASE_DN, "(|(uid=2)(uid=3))")).getResult();
+        Assert.assertEquals(result.size(), 2);
+      } finally {
+        search.shutdown();
+      }
+    }
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"provider"})
+  public void multiplexedSearches()
+    throws Exception
+  {
+    final TestLdapServer slowServer = new TestLdapServer(null, false);
+    slowServer.setEntryDelay(20);
+    for (int i = 1; i <= 5; i++) {
+      slowServer.addEntry(new LdapEntry("uid=" + i + ",dc=ldaptive", new LdapAttribute("uid", String.valueOf(i))));
+    }
+    final ExecutorService executor = Executors.newFixedThreadPool(8);
+    try (Connection conn = createConnectionFactory(new ConnectionConfig(slowServer.getLdapUrl())).getConnection()) {
+      conn.open();
+      final List<Future<SearchResult>> results = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        final int uid = i % 5 + 1;
+        results.add(
+          executor.submit(
+            () -> new SearchOperation(conn).execute(new SearchRequest("", "(uid=" + uid + ")")).getResult()));
+      }
+      for (int i = 0; i < results.size(); i++) {
+        final SearchResult result = results.get(i).get(10, TimeUnit.SECONDS);
+        Assert.assertEquals(result.size(), 1);
+        Assert.assertEquals(result.getEntry().getAttribute("uid").getStringValue(), String.valueOf(i % 5 + 1));
+      }
+      Assert.assertEquals(slowServer.getClientCount(), 1);
+    } finally {
+      executor.shutdown();
+      slowServer.close();
+    }
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"provider"})
+  public void responseTimeout()
+    throws Exception
+  {
+    final TestLdapServer slowServer = new TestLdapServer(null, false);
+    slowServer.setEntryDelay(1000);
+    slowServer.addEntry(new LdapEntry("uid=1,dc=ldaptive", new LdapAttribute("uid", "1")));
+    final ConnectionConfig cc = new ConnectionConfig(slowServer.getLdapUrl());
+    cc.setResponseTimeout(Duration.ofMillis(100));
+    try (Connection conn = createConnectionFactory(cc).getConnection()) {
+      conn.open();
+      new SearchOperation(conn).execute(new SearchRequest("", "(uid=1)"));
+      Assert.fail("Should have thrown exception");
+    } catch (LdapException e) {
+      Assert.assertEquals(e.getResultCode(), ResultCode.LDAP_TIMEOUT);
+    } finally {
+      slowServer.close();
+    }
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"provider"})
+  public void interruptAbandons()
+    throws Exception
+  {
+    final TestLdapServer slowServer = new TestLdapServer(null, false);
+    slowServer.setEntryDelay(500);
+    slowServer.addEntry(new LdapEntry("uid=1,dc=ldaptive", new LdapAttribute("uid", "1")));
+    try (Connection conn = createConnectionFactory(new ConnectionConfig(slowServer.getLdapUrl())).getConnection()) {
+      conn.open();
+      final int requestCount = slowServer.getRequestCount();
+      final AtomicReference<Exception> thrown = new AtomicReference<>();
+      final Thread t = new Thread(
+        () -> {
+          try {
+            new SearchOperation(conn).execute(new SearchRequest("", "(uid=1)"));
+          } catch (Exception e) {
+            thrown.set(e);
+          }
+        });
+      t.start();
+      Thread.sleep(100);
+      t.interrupt();
+      t.join(5000);
+      Assert.assertTrue(thrown.get() instanceof LdapException);
+      final long deadline = System.currentTimeMillis() + 5000;
+      while (slowServer.getRequestCount() < requestCount + 2 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(50);
+      }
+      // search and abandon
+      Assert.assertEquals(slowServer.getRequestCount(), requestCount + 2);
+      Assert.assertTrue(((NioConnection) conn.getProviderConnection()).isOpen());
+    } finally {
+      slowServer.close();
+    }
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"provider"})
+  public void interruptedWrite()
+    throws Exception
+  {
+    try (Connection conn = createConnectionFactory(new ConnectionConfig(server.getLdapUrl())).getConnection()) {
+      conn.open();
+      final CompareRequest request = new CompareRequest("uid=1," + BASE_DN, new LdapAttribute("uid", "1"));
+      Thread.currentThread().interrupt();
+      try {
+        // either the response arrives before the wait or the wait is interrupted
+        new CompareOperation(conn).execute(request);
+      } catch (LdapException e) {
+        Assert.assertTrue(e.getCause() instanceof InterruptedException);
+      } finally {
+        Assert.assertTrue(Thread.interrupted());
+      }
+      // the request was written without closing the channel
+      Assert.assertTrue(((NioConnection) conn.getProviderConnection()).isOpen());
+      Assert.assertTrue(new CompareOperation(conn).execute(request).getResult());
+    }
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"provider"}, timeOut = 10000)
+  public void searchQueueCapacity()
+    throws Exception
+  {
+    final NioProvider provider = new NioProvider();
+    provider.getProviderConfig().setSearchQueueCapacity(1);
+    try (Connection conn = new DefaultConnectionFactory(
+        new ConnectionConfig(server.getLdapUrl()), provider).getConnection()) {
+      conn.open();
+
+      // the search whose results are not consumed fails, other operations on the connection proceed
+      final SearchIterator si = conn.getProviderConnection().search(new SearchRequest(BASE_DN, "(uid=*)"));
+      Assert.assertTrue(
+        new CompareOperation(conn).execute(
+          new CompareRequest("uid=1," + BASE_DN, new LdapAttribute("uid", "1"))).getResult());
+      try {
+        while (si.hasNext()) {
+          si.next();
+        }
+        Assert.fail("Should have thrown exception");
+      } catch (LdapException e) {
+        Assert.assertEquals(e.getResultCode(), ResultCode.LOCAL_ERROR);
+      } finally {
+        si.close();
+      }
+
+      // handler that searches on the same connection is not limited
+      final SearchRequest request = new SearchRequest(BASE_DN, "(uid=*)");
+      request.setSearchEntryHandlers(
+        new SearchEntryHandler()
+        {
+          @Override
+          public HandlerResult<SearchEntry> handle(
+            final Connection c,
+            final SearchRequest r,
+            final SearchEntry entry)
+            throws LdapException
+          {
+            final SearchResult result = new SearchOperation(c).execute(
+              new SearchRequest(entry.getDn(), "(objectClass=*)")).getResult();
+            entry.addAttribute(new LdapAttribute("found", String.valueOf(result.size())));
+            return new HandlerResult<>(entry);
+          }
+
+
+          @Override
+          public void initializeRequest(final SearchRequest r) {}
+        });
+      final SearchResult result = new SearchOperation(conn).execute(request).getResult();
+      Assert.assertEquals(result.size(), 10);
+      for (LdapEntry e : result.getEntries()) {
+        Assert.assertEquals(e.getAttribute("found").getStringValue(), "1");
+      }
+    }
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"provider"})
+  public void messageIds()
+    throws Exception
+  {
+    Assert.assertEquals(NioConnection.nextMessageId(0), 1);
+    Assert.assertEquals(NioConnection.nextMessageId(41), 42);
+    Assert.assertEquals(NioConnection.nextMessageId(Integer.MAX_VALUE), 1);
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"provider"})
+  public void startTLS()
+    throws Exception
+  {
+    final ConnectionConfig cc = new ConnectionConfig(server.getLdapUrl());
+    cc.setUseStartTLS(true);
+    cc.setSslConfig(createSslConfig());
+    try (Connection conn = createConnectionFactory(cc).getConnection()) {
+      conn.open();
+      final NioConnection nioConn = (NioConnection) conn.getProviderConnection();
+      Assert.assertTrue(nioConn.getTransport() instanceof NioTlsTransport);
+      Assert.assertEquals(
+        new SearchOperation(conn).execute(new SearchRequest(BASE_DN, "(uid=4)")).getResult().size(),
+        1);
+    }
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"provider"})
+  public void ldaps()
+    throws Exception
+  {
+    final TestLdapServer ldapsServer = new TestLdapServer(TestLdapServer.createSSLContext(), true);
+    ldapsServer.addEntry(new LdapEntry("uid=1,dc=ldaptive", new LdapAttribute("uid", "1")));
+    try {
+      final ConnectionConfig cc = new ConnectionConfig(ldapsServer.getLdapUrl());
+      cc.setSslConfig(createSslConfig());
+      try (Connection conn = createConnectionFactory(cc).getConnection()) {
+        conn.open();
+        Assert.assertEquals(
+          new SearchOperation(conn).execute(new SearchRequest("", "(uid=1)")).getResult().size(),
+          1);
+      }
+
+      // the test certificate is not issued for localhost
+      final ConnectionConfig verifyConfig = new ConnectionConfig(ldapsServer.getLdapUrl());
+      verifyConfig.setSslConfig(new SslConfig(new AllowAnyTrustManager()));
+      try (Connection conn = createConnectionFactory(verifyConfig).getConnection()) {
+        conn.open();
+        Assert.fail("Should have thrown exception");
+      } catch (LdapException e) {
+        Assert.assertEquals(e.getResultCode(), ResultCode.CONNECT_ERROR);
+      }
+    } finally {
+      ldapsServer.close();
+    }
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"provider"})
+  public void noticeOfDisconnection()
+    throws Exception
+  {
+    final TestLdapServer disconnectServer = new TestLdapServer(null, false);
+    final CountDownLatch latch = new CountDownLatch(1);
+    final AtomicReference<String> oid = new AtomicReference<>();
+    try (Connection conn = createConnectionFactory(
+        new ConnectionConfig(disconnectServer.getLdapUrl())).getConnection()) {
+      conn.open();
+      conn.getProviderConnection().addUnsolicitedNotificationListener(
+        (o, response) -> {
+          oid.set(o);
+          latch.countDown();
+        });
+      disconnectServer.disconnectAll();
+      Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+      Assert.assertEquals(oid.get(), "1.3.6.1.4.1.1466.20036");
+      try {
+        new SearchOperation(conn).execute(new SearchRequest("", "(uid=1)"));
+        Assert.fail("Should have thrown exception");
+      } catch (LdapException e) {
+        Assert.assertEquals(e.getResultCode(), ResultCode.SERVER_DOWN);
+      }
+    } finally {
+      disconnectServer.close();
+    }
+  }
+
+
+  /**
+   * Returns a connection factory that uses the nio provider.
+   *
+   * @param  cc  connection config
+   *
+   * @return  connection factory
+   */
+  private static DefaultConnectionFactory createConnectionFactory(final ConnectionConfig cc)
+  {
+    return new DefaultConnectionFactory(cc, new NioProvider());
+  }
+
+
+  /**
+   * Returns an SSL config that trusts the test certificate.
+   *
+   * @return  SSL config
+   */
+  private static SslConfig createSslConfig()
+  {
+    final SslConfig sslConfig = new SslConfig(new AllowAnyTrustManager());
+    sslConfig.setHostnameVerifier(new AllowAnyHostnameVerifier());
+    return sslConfig;
+  }
+}
@@ -0,0 +1,919 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.provider.nio;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import org.ldaptive.LdapAttribute;
+import org.ldaptive.LdapEntry;
+import org.ldaptive.ResultCode;
+import org.ldaptive.asn1.ApplicationDERTag;
+import org.ldaptive.asn1.BooleanType;
+import org.ldaptive.asn1.ConstructedDEREncoder;
+import org.ldaptive.asn1.ContextDERTag;
+import org.ldaptive.asn1.DEREncoder;
+import org.ldaptive.asn1.IntegerType;
+import org.ldaptive.asn1.OctetStringType;
+import org.ldaptive.asn1.UniversalDERTag;
+
+/**
+ * Minimal in-process LDAP server used to test the nio provider. Entries are kept in memory and every connection is
+ * served by its own thread. Supports bind, add, delete, modify, modify DN, compare, search, startTLS, who am i and
+ * unbind.
+ *
+ * @author  Middleware Services
+ */
+public class TestLdapServer implements Closeable
+{
+
+  // CheckStyle:MagicNumber OFF
+
+  /** Start TLS OID. */
+  private static final String START_TLS_OID = "1.3.6.1.4.1.1466.20037";
+
+  /** Who am I OID. */
+  private static final String WHO_AM_I_OID = "1.3.6.1.4.1.4203.1.11.3";
+
+  /** Entries keyed by lower case DN. */
+  private final Map<String, LdapEntry> entries = new ConcurrentHashMap<>();
+
+  /** Open client sockets. */
+  private final Set<Socket> clients = ConcurrentHashMap.newKeySet();
+
+  /** Number of requests received. */
+  private final AtomicInteger requestCount = new AtomicInteger();
+
+  /** Server socket. */
+  private final ServerSocket serverSocket;
+
+  /** SSL context for LDAPS and startTLS, may be null. */
+  private final SSLContext sslContext;
+
+  /** Whether connections are LDAPS. */
+  private final boolean ldaps;
+
+  /** Continuation references returned after the entries of every successful search. */
+  private final List<String[]> references = new CopyOnWriteArrayList<>();
+
+  /** Milliseconds to wait before each search entry is returned. */
+  private volatile long entryDelay;
+
+
+  /**
+   * Creates a new test ldap server listening on an ephemeral loopback port.
+   *
+   * @param  context  SSL context for LDAPS and startTLS or null
+   * @param  useLdaps  whether to accept LDAPS connections
+   *
+   * @throws  IOException  if the server socket cannot be created
+   */
+  public TestLdapServer(final SSLContext context, final boolean useLdaps)
+    throws IOException
+  {
+    sslContext = context;
+    ldaps = useLdaps;
+    serverSocket = ldaps ?
+      sslContext.getServerSocketFactory().createServerSocket(0, 0, InetAddress.getLoopbackAddress()) :
+      new ServerSocket(0, 0, InetAddress.getLoopbackAddress());
+    final Thread acceptor = new Thread(this::accept, "test-ldap-server");
+    acceptor.setDaemon(true);
+    acceptor.start();
+  }
+
+
+  /**
+   * Creates an SSL context from the test keystore.
+   *
+   * @return  SSL context
+   *
+   * @throws  Exception  if the keystore cannot be read
+   */
+  public static SSLContext createSSLContext()
+    throws Exception
+  {
+    final KeyStore ks = KeyStore.getInstance("PKCS12");
+    try (InputStream in = TestLdapServer.class.getResourceAsStream("ldaptive.p12")) {
+      ks.load(in, "changeit".toCharArray());
+    }
+    final KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+    kmf.init(ks, "changeit".toCharArray());
+    final SSLContext ctx = SSLContext.getInstance("TLS");
+    ctx.init(kmf.getKeyManagers(), null, null);
+    return ctx;
+  }
+
+
+  /**
+   * Returns the LDAP URL of this server.
+   *
+   * @return  LDAP URL
+   */
+  public String getLdapUrl()
+  {
+    return (ldaps ? "ldaps" : "ldap") + "://localhost:" + serverSocket.getLocalPort();
+  }
+
+
+  /**
+   * Adds an entry to this server.
+   *
+   * @param  entry  to add
+   */
+  public void addEntry(final LdapEntry entry)
+  {
+    entries.put(entry.getDn().toLowerCase(), entry);
+  }
+
+
+  /**
+   * Returns the entry with the supplied DN.
+   *
+   * @param  dn  of the entry
+   *
+   * @return  entry or null
+   */
+  public LdapEntry getEntry(final String dn)
+  {
+    return entries.get(dn.toLowerCase());
+  }
+
+
+  /**
+   * Returns the number of requests received.
+   *
+   * @return  request count
+   */
+  public int getRequestCount()
+  {
+    return requestCount.get();
+  }
+
+
+  /**
+   * Returns the number of open client connections.
+   *
+   * @return  client count
+   */
+  public int getClientCount()
+  {
+    return clients.size();
+  }
+
+
+  /**
+   * Sets the time to wait before each search entry is returned.
+   *
+   * @param  millis  delay in milliseconds
+   */
+  public void setEntryDelay(final long millis)
+  {
+    entryDelay = millis;
+  }
+
+
+  /**
+   * Adds a continuation reference that is returned by every successful search.
+   *
+   * @param  urls  of the reference
+   */
+  public void addReference(final String... urls)
+  {
+    references.add(urls);
+  }
+
+
+  /**
+   * Sends a notice of disconnection to every client and closes its socket.
+   *
+   * @throws  IOException  if a notice cannot be sent
+   */
+  public void disconnectAll()
+    throws IOException
+  {
+    for (Socket s : clients) {
+      synchronized (s) {
+        s.getOutputStream().write(
+          message(
+            0,
+            new ConstructedDEREncoder(
+              new ApplicationDERTag(LdapMessage.EXTENDED_RESPONSE, true),
+              new IntegerType(UniversalDERTag.ENUM, ResultCode.UNAVAILABLE.value()),
+              new OctetStringType(""),
+              new OctetStringType("shutting down"),
+              new OctetStringType(new ContextDERTag(10, false), "1.3.6.1.4.1.1466.20036"))));
+      }
+      s.close();
+    }
+  }
+
+
+  @Override
+  public void close()
+    throws IOException
+  {
+    serverSocket.close();
+    for (Socket s : clients) {
+      s.close();
+    }
+  }
+
+
+  /** Accepts client connections until the server socket is closed. */
+  private void accept()
+  {
+    try {
+      while (!serverSocket.isClosed()) {
+        final Socket socket = serverSocket.accept();
+        clients.add(socket);
+        final Thread t = new Thread(() -> serve(socket), "test-ldap-client");
+        t.setDaemon(true);
+        t.start();
+      }
+    } catch (IOException e) {
+      // server socket closed
+    }
+  }
+
+
+  /**
+   * Serves requests on the supplied socket until it is closed.
+   *
+   * @param  client  socket
+   */
+  private void serve(final Socket client)
+  {
+    Socket socket = client;
+    try {
+      byte[] request = readMessage(socket.getInputStream());
+      while (request != null) {
+        requestCount.incrementAndGet();
+        final ByteBuffer seq = BerElement.read(ByteBuffer.wrap(request)).getValue();
+        final int id = IntegerType.decode(BerElement.read(seq).getValue()).intValue();
+        final BerElement op = BerElement.read(seq);
+        if (op.getTagNo() == 2) {
+          break;
+        }
+        final boolean startTls = handle(socket, id, op);
+        if (startTls) {
+          clients.remove(socket);
+          final SSLSocket tls = (SSLSocket) sslContext.getSocketFactory().createSocket(
+            socket,
+            socket.getInetAddress().getHostAddress(),
+            socket.getPort(),
+            true);
+          tls.setUseClientMode(false);
+          tls.startHandshake();
+          socket = tls;
+          clients.add(socket);
+        }
+        request = readMessage(socket.getInputStream());
+      }
+    } catch (IOException e) {
+      // client disconnected
+    } finally {
+      clients.remove(socket);
+      try {
+        socket.close();
+      } catch (IOException e) {
+        // ignore
+      }
+    }
+  }
+
+
+  /**
+   * Handles a single request.
+   *
+   * @param  socket  to write responses to
+   * @param  id  message ID
+   * @param  op  protocol operation
+   *
+   * @return  whether the connection should switch to TLS
+   *
+   * @throws  IOException  if a response cannot be written
+   */
+  private boolean handle(final Socket socket, final int id, final BerElement op)
+    throws IOException
+  {
+    final ByteBuffer body = op.getValue();
+    boolean startTls = false;
+    switch (op.getTagNo()) {
+
+    case 0:
+      write(socket, id, 1, bind(body));
+      break;
+
+    case 3:
+      search(socket, id, body);
+      break;
+
+    case 6:
+      write(socket, id, LdapMessage.MODIFY_RESPONSE, modify(body));
+      break;
+
+    case 8:
+      write(socket, id, LdapMessage.ADD_RESPONSE, add(body));
+      break;
+
+    case 10:
+      write(
+        socket,
+        id,
+        LdapMessage.DELETE_RESPONSE,
+        entries.remove(OctetStringType.decode(body).toLowerCase()) != null ? ResultCode.SUCCESS
+                                                                          : ResultCode.NO_SUCH_OBJECT);
+      break;
+
+    case 12:
+      write(socket, id, LdapMessage.MODIFY_DN_RESPONSE, modifyDn(body));
+      break;
+
+    case 14:
+      write(socket, id, LdapMessage.COMPARE_RESPONSE, compare(body));
+      break;
+
+    case 16:
+      // abandon
+      break;
+
+    case 23:
+      startTls = extended(socket, id, body);
+      break;
+
+    default:
+      write(socket, id, LdapMessage.EXTENDED_RESPONSE, ResultCode.PROTOCOL_ERROR);
+      break;
+    }
+    return startTls;
+  }
+
+
+  /**
+   * Processes a bind request. Anonymous binds succeed, simple binds succeed if the entry has a matching userPassword.
+   *
+   * @param  body  of the request
+   *
+   * @return  result code
+   */
+  private ResultCode bind(final ByteBuffer body)
+  {
+    BerElement.read(body);
+    final String dn = OctetStringType.decode(BerElement.read(body).getValue());
+    final BerElement auth = BerElement.read(body);
+    final ResultCode rc;
+    if (auth.getTagNo() == 3) {
+      rc = ResultCode.AUTH_METHOD_NOT_SUPPORTED;
+    } else if (dn.isEmpty()) {
+      rc = ResultCode.SUCCESS;
+    } else {
+      final LdapEntry entry = entries.get(dn.toLowerCase());
+      final LdapAttribute password = entry != null ? entry.getAttribute("userPassword") : null;
+      rc = password != null && password.getStringValues().contains(OctetStringType.decode(auth.getValue())) ?
+        ResultCode.SUCCESS : ResultCode.INVALID_CREDENTIALS;
+    }
+    return rc;
+  }
+
+
+  /**
+   * Processes an add request.
+   *
+   * @param  body  of the request
+   *
+   * @return  result code
+   */
+  private ResultCode add(final ByteBuffer body)
+  {
+    final String dn = OctetStringType.decode(BerElement.read(body).getValue());
+    if (entries.containsKey(dn.toLowerCase())) {
+      return ResultCode.ENTRY_ALREADY_EXISTS;
+    }
+    final LdapEntry entry = new LdapEntry(dn);
+    final ByteBuffer attrs = BerElement.read(body).getValue();
+    while (attrs.hasRemaining()) {
+      entry.addAttribute(readAttribute(BerElement.read(attrs).getValue()));
+    }
+    entries.put(dn.toLowerCase(), entry);
+    return ResultCode.SUCCESS;
+  }
+
+
+  /**
+   * Processes a modify request.
+   *
+   * @param  body  of the request
+   *
+   * @return  result code
+   */
+  private ResultCode modify(final ByteBuffer body)
+  {
+    final LdapEntry entry = entries.get(OctetStringType.decode(BerElement.read(body).getValue()).toLowerCase());
+    if (entry == null) {
+      return ResultCode.NO_SUCH_OBJECT;
+    }
+    final ByteBuffer changes = BerElement.read(body).getValue();
+    while (changes.hasRemaining()) {
+      final ByteBuffer change = BerElement.read(changes).getValue();
+      final int operation = IntegerType.decode(BerElement.read(change).getValue()).intValue();
+      final LdapAttribute attr = readAttribute(BerElement.read(change).getValue());
+      final LdapAttribute existing = entry.getAttribute(attr.getName());
+      if (operation == 0 && existing != null) {
+        existing.addStringValues(attr.getStringValues());
+      } else if (operation == 1 && existing != null && attr.size() > 0) {
+        existing.removeStringValues(attr.getStringValues());
+        if (existing.size() == 0) {
+          entry.removeAttribute(attr.getName());
+        }
+      } else if (operation == 1 || (operation == 2 && attr.size() == 0)) {
+        entry.removeAttribute(attr.getName());
+      } else {
+        entry.removeAttribute(attr.getName());
+        entry.addAttribute(attr);
+      }
+    }
+    return ResultCode.SUCCESS;
+  }
+
+
+  /**
+   * Processes a modify DN request.
+   *
+   * @param  body  of the request
+   *
+   * @return  result code
+   */
+  private ResultCode modifyDn(final ByteBuffer body)
+  {
+    final String dn = OctetStringType.decode(BerElement.read(body).getValue());
+    final String newRdn = OctetStringType.decode(BerElement.read(body).getValue());
+    BerElement.read(body);
+    String newSuperior = null;
+    if (body.hasRemaining()) {
+      newSuperior = OctetStringType.decode(BerElement.read(body).getValue());
+    } else if (RequestEncoder.indexOfRdnSeparator(dn) != -1) {
+      newSuperior = dn.substring(RequestEncoder.indexOfRdnSeparator(dn) + 1);
+    }
+    final LdapEntry entry = entries.remove(dn.toLowerCase());
+    if (entry == null) {
+      return ResultCode.NO_SUCH_OBJECT;
+    }
+    entry.setDn(newSuperior != null ? newRdn + "," + newSuperior : newRdn);
+    entries.put(entry.getDn().toLowerCase(), entry);
+    return ResultCode.SUCCESS;
+  }
+
+
+  /**
+   * Processes a compare request.
+   *
+   * @param  body  of the request
+   *
+   * @return  result code
+   */
+  private ResultCode compare(final ByteBuffer body)
+  {
+    final LdapEntry entry = entries.get(OctetStringType.decode(BerElement.read(body).getValue()).toLowerCase());
+    if (entry == null) {
+      return ResultCode.NO_SUCH_OBJECT;
+    }
+    final ByteBuffer ava = BerElement.read(body).getValue();
+    final LdapAttribute attr = entry.getAttribute(OctetStringType.decode(BerElement.read(ava).getValue()));
+    final String value = OctetStringType.decode(BerElement.read(ava).getValue());
+    return attr != null && attr.getStringValues().contains(value) ? ResultCode.COMPARE_TRUE : ResultCode.COMPARE_FALSE;
+  }
+
+
+  /**
+   * Processes an extended request.
+   *
+   * @param  socket  to write the response to
+   * @param  id  message ID
+   * @param  body  of the request
+   *
+   * @return  whether the connection should switch to TLS
+   *
+   * @throws  IOException  if the response cannot be written
+   */
+  private boolean extended(final Socket socket, final int id, final ByteBuffer body)
+    throws IOException
+  {
+    final String oid = OctetStringType.decode(BerElement.read(body).getValue());
+    boolean startTls = false;
+    if (START_TLS_OID.equals(oid) && sslContext != null) {
+      write(socket, id, LdapMessage.EXTENDED_RESPONSE, ResultCode.SUCCESS);
+      startTls = true;
+    } else if (WHO_AM_I_OID.equals(oid)) {
+      writeMessage(
+        socket,
+        id,
+        new ConstructedDEREncoder(
+          new ApplicationDERTag(LdapMessage.EXTENDED_RESPONSE, true),
+          new IntegerType(UniversalDERTag.ENUM, ResultCode.SUCCESS.value()),
+          new OctetStringType(""),
+          new OctetStringType(""),
+          new OctetStringType(new ContextDERTag(11, false), "dn:")));
+    } else {
+      write(socket, id, LdapMessage.EXTENDED_RESPONSE, ResultCode.PROTOCOL_ERROR);
+    }
+    return startTls;
+  }
+
+
+  /**
+   * Processes a search request.
+   *
+   * @param  socket  to write responses to
+   * @param  id  message ID
+   * @param  body  of the request
+   *
+   * @throws  IOException  if a response cannot be written
+   */
+  private void search(final Socket socket, final int id, final ByteBuffer body)
+    throws IOException
+  {
+    final String base = OctetStringType.decode(BerElement.read(body).getValue()).toLowerCase();
+    final int scope = IntegerType.decode(BerElement.read(body).getValue()).intValue();
+    BerElement.read(body);
+    final int sizeLimit = IntegerType.decode(BerElement.read(body).getValue()).intValue();
+    BerElement.read(body);
+    final boolean typesOnly = BooleanType.decode(BerElement.read(body).getValue());
+    final Predicate<LdapEntry> filter = readFilter(BerElement.read(body));
+    final List<String> attrs = new ArrayList<>();
+    final ByteBuffer attrSeq = BerElement.read(body).getValue();
+    while (attrSeq.hasRemaining()) {
+      attrs.add(OctetStringType.decode(BerElement.read(attrSeq).getValue()));
+    }
+    ResultCode rc = ResultCode.SUCCESS;
+    if (!base.isEmpty() && !entries.containsKey(base)) {
+      rc = ResultCode.NO_SUCH_OBJECT;
+    } else {
+      int count = 0;
+      for (LdapEntry entry : new ArrayList<>(entries.values())) {
+        if (inScope(entry.getDn().toLowerCase(), base, scope) && filter.test(entry)) {
+          if (sizeLimit > 0 && count == sizeLimit) {
+            rc = ResultCode.SIZE_LIMIT_EXCEEDED;
+            break;
+          }
+          if (entryDelay > 0) {
+            try {
+              Thread.sleep(entryDelay);
+            } catch (InterruptedException e) {
+              throw new IOException(e);
+            }
+          }
+          writeMessage(socket, id, encodeEntry(entry, attrs, typesOnly));
+          count++;
+        }
+      }
+      if (rc == ResultCode.SUCCESS) {
+        final int referenceTag = new ApplicationDERTag(LdapMessage.SEARCH_RESULT_REFERENCE, true).getTagByte();
+        for (String[] urls : references) {
+          final List<DEREncoder> encodedUrls = new ArrayList<>();
+          for (String url : urls) {
+            encodedUrls.add(new OctetStringType(url));
+          }
+          writeMessage(socket, id, constructed(referenceTag, encodedUrls));
+        }
+      }
+    }
+    write(socket, id, LdapMessage.SEARCH_RESULT_DONE, rc);
+  }
+
+
+  /**
+   * Returns whether the supplied DN is within the scope of a search.
+   *
+   * @param  dn  lower case DN
+   * @param  base  lower case base DN
+   * @param  scope  search scope
+   *
+   * @return  whether the DN is in scope
+   */
+  private static boolean inScope(final String dn, final String base, final int scope)
+  {
+    final boolean inScope;
+    if (scope == 0) {
+      inScope = dn.equals(base);
+    } else if (base.isEmpty()) {
+      inScope = scope == 2 || RequestEncoder.indexOfRdnSeparator(dn) == -1;
+    } else if (scope == 1) {
+      final int sep = RequestEncoder.indexOfRdnSeparator(dn);
+      inScope = sep != -1 && dn.substring(sep + 1).equals(base);
+    } else {
+      inScope = dn.equals(base) || dn.endsWith("," + base);
+    }
+    return inScope;
+  }
+
+
+  /**
+   * Reads a search filter into a predicate.
+   *
+   * @param  filter  encoded filter
+   *
+   * @return  predicate
+   */
+  private static Predicate<LdapEntry> readFilter(final BerElement filter)
+  {
+    final ByteBuffer value = filter.getValue();
+    final Predicate<LdapEntry> p;
+    switch (filter.getTagNo()) {
+
+    case 0:
+    case 1:
+      final List<Predicate<LdapEntry>> components = new ArrayList<>();
+      while (value.hasRemaining()) {
+        components.add(readFilter(BerElement.read(value)));
+      }
+      p = filter.getTagNo() == 0 ?
+        e -> components.stream().allMatch(c -> c.test(e)) : e -> components.stream().anyMatch(c -> c.test(e));
+      break;
+
+    case 2:
+      final Predicate<LdapEntry> negated = readFilter(BerElement.read(value));
+      p = negated.negate();
+      break;
+
+    case 3:
+    case 8:
+      final String attr = OctetStringType.decode(BerElement.read(value).getValue());
+      final String assertion = OctetStringType.decode(BerElement.read(value).getValue());
+      p = e -> values(e, attr).stream().anyMatch(v -> v.equalsIgnoreCase(assertion));
+      break;
+
+    case 4:
+      final String subAttr = OctetStringType.decode(BerElement.read(value).getValue());
+      final StringBuilder regex = new StringBuilder();
+      final ByteBuffer subs = BerElement.read(value).getValue();
+      boolean hasFinal = false;
+      while (subs.hasRemaining()) {
+        final BerElement sub = BerElement.read(subs);
+        if (sub.getTagNo() != 0) {
+          regex.append(".*");
+        }
+        regex.append(Pattern.quote(OctetStringType.decode(sub.getValue())));
+        hasFinal = sub.getTagNo() == 2;
+      }
+      if (!hasFinal) {
+        regex.append(".*");
+      }
+      final Pattern pattern = Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+      p = e -> values(e, subAttr).stream().anyMatch(v -> pattern.matcher(v).matches());
+      break;
+
+    case 5:
+    case 6:
+      final boolean ge = filter.getTagNo() == 5;
+      final String ordAttr = OctetStringType.decode(BerElement.read(value).getValue());
+      final String bound = OctetStringType.decode(BerElement.read(value).getValue());
+      p = e -> values(e, ordAttr).stream().anyMatch(v -> ge ? v.compareTo(bound) >= 0 : v.compareTo(bound) <= 0);
+      break;
+
+    case 7:
+      final String present = OctetStringType.decode(value);
+      p = e -> "objectClass".equalsIgnoreCase(present) || e.getAttribute(present) != null;
+      break;
+
+    default:
+      p = e -> false;
+      break;
+    }
+    return p;
+  }
+
+
+  /**
+   * Returns the string values of an attribute.
+   *
+   * @param  entry  containing the attribute
+   * @param  name  of the attribute
+   *
+   * @return  values, never null
+   */
+  private static Collection<String> values(final LdapEntry entry, final String name)
+  {
+    final LdapAttribute attr = entry.getAttribute(name);
+    return attr != null ? attr.getStringValues() : new ArrayList<>();
+  }
+
+
+  /**
+   * Reads a partial attribute.
+   *
+   * @param  buffer  containing the attribute type and values
+   *
+   * @return  ldap attribute
+   */
+  private static LdapAttribute readAttribute(final ByteBuffer buffer)
+  {
+    final LdapAttribute attr = new LdapAttribute(OctetStringType.decode(BerElement.read(buffer).getValue()));
+    final ByteBuffer values = BerElement.read(buffer).getValue();
+    while (values.hasRemaining()) {
+      attr.addStringValue(OctetStringType.decode(BerElement.read(values).getValue()));
+    }
+    return attr;
+  }
+
+
+  /**
+   * Encodes a search result entry.
+   *
+   * @param  entry  to encode
+   * @param  attrs  requested attributes
+   * @param  typesOnly  whether to omit values
+   *
+   * @return  encoder
+   */
+  private static DEREncoder encodeEntry(final LdapEntry entry, final List<String> attrs, final boolean typesOnly)
+  {
+    final List<DEREncoder> encodedAttrs = new ArrayList<>();
+    for (LdapAttribute attr : entry.getAttributes()) {
+      if (attrs.isEmpty() || attrs.contains("*") || attrs.stream().anyMatch(a -> a.equalsIgnoreCase(attr.getName()))) {
+        final List<DEREncoder> values = new ArrayList<>();
+        if (!typesOnly) {
+          for (byte[] v : attr.getBinaryValues()) {
+            values.add(new OctetStringType(v));
+          }
+        }
+        encodedAttrs.add(
+          new ConstructedDEREncoder(
+            UniversalDERTag.SEQ,
+            new OctetStringType(attr.getName()),
+            constructed(UniversalDERTag.SET.getTagByte(), values)));
+      }
+    }
+    return
+      new ConstructedDEREncoder(
+        new ApplicationDERTag(LdapMessage.SEARCH_RESULT_ENTRY, true),
+        new OctetStringType(entry.getDn()),
+        constructed(UniversalDERTag.SEQ.getTagByte(), encodedAttrs));
+  }
+
+
+  /**
+   * Returns an encoder for a constructed type that may be empty.
+   *
+   * @param  tag  tag byte
+   * @param  encoders  elements
+   *
+   * @return  encoder
+   */
+  private static DEREncoder constructed(final int tag, final List<DEREncoder> encoders)
+  {
+    return () -> {
+      final ByteArrayOutputStream content = new ByteArrayOutputStream();
+      for (DEREncoder e : encoders) {
+        final byte[] b = e.encode();
+        content.write(b, 0, b.length);
+      }
+      final byte[] c = content.toByteArray();
+      final ByteArrayOutputStream out = new ByteArrayOutputStream();
+      out.write(tag);
+      writeLength(out, c.length);
+      out.write(c, 0, c.length);
+      return out.toByteArray();
+    };
+  }
+
+
+  /**
+   * Writes a DER length.
+   *
+   * @param  out  to write to
+   * @param  length  to write
+   */
+  private static void writeLength(final ByteArrayOutputStream out, final int length)
+  {
+    if (length < 0x80) {
+      out.write(length);
+    } else if (length < 0x100) {
+      out.write(0x81);
+      out.write(length);
+    } else if (length < 0x10000) {
+      out.write(0x82);
+      out.write(length >> 8);
+      out.write(length);
+    } else {
+      out.write(0x83);
+      out.write(length >> 16);
+      out.write(length >> 8);
+      out.write(length);
+    }
+  }
+
+
+  /**
+   * Writes an LDAP result.
+   *
+   * @param  socket  to write to
+   * @param  id  message ID
+   * @param  tag  response tag
+   * @param  rc  result code
+   *
+   * @throws  IOException  if the result cannot be written
+   */
+  private void write(final Socket socket, final int id, final int tag, final ResultCode rc)
+    throws IOException
+  {
+    writeMessage(
+      socket,
+      id,
+      new ConstructedDEREncoder(
+        new ApplicationDERTag(tag, true),
+        new IntegerType(UniversalDERTag.ENUM, rc.value()),
+        new OctetStringType(""),
+        new OctetStringType(rc == ResultCode.SUCCESS ? "" : rc.name())));
+  }
+
+
+  /**
+   * Writes an LDAP message.
+   *
+   * @param  socket  to write to
+   * @param  id  message ID
+   * @param  op  protocol operation
+   *
+   * @throws  IOException  if the message cannot be written
+   */
+  private void writeMessage(final Socket socket, final int id, final DEREncoder op)
+    throws IOException
+  {
+    final OutputStream out = socket.getOutputStream();
+    synchronized (socket) {
+      out.write(message(id, op));
+      out.flush();
+    }
+  }
+
+
+  /**
+   * Encodes an LDAP message.
+   *
+   * @param  id  message ID
+   * @param  op  protocol operation
+   *
+   * @return  encoded message
+   */
+  private static byte[] message(final int id, final DEREncoder op)
+  {
+    return new ConstructedDEREncoder(UniversalDERTag.SEQ, new IntegerType(id), op).encode();
+  }
+
+
+  /**
+   * Reads a single LDAP message.
+   *
+   * @param  in  to read from
+   *
+   * @return  message bytes or null if the end of the stream was reached
+   *
+   * @throws  IOException  if the message cannot be read
+   */
+  private static byte[] readMessage(final InputStream in)
+    throws IOException
+  {
+    final DataInputStream data = new DataInputStream(in);
+    final int tag = data.read();
+    if (tag == -1) {
+      return null;
+    }
+    final ByteArrayOutputStream header = new ByteArrayOutputStream();
+    header.write(tag);
+    final int first = data.readUnsignedByte();
+    header.write(first);
+    int length = first;
+    if ((first & 0x80) != 0) {
+      length = 0;
+      for (int i = 0; i < (first & 0x7F); i++) {
+        final int b = data.readUnsignedByte();
+        header.write(b);
+        length = (length << 8) | b;
+      }
+    }
+    final byte[] value = new byte[length];
+    data.readFully(value);
+    header.write(value, 0, value.length);
+    return header.toByteArray();
+  }
+}
@@ -0,0 +1,141 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.referral;
+
+import java.time.Duration;
+import org.ldaptive.Connection;
+import org.ldaptive.ConnectionConfig;
+import org.ldaptive.DefaultConnectionFactory;
+import org.ldaptive.LdapAttribute;
+import org.ldaptive.LdapEntry;
+import org.ldaptive.SearchOperation;
+import org.ldaptive.SearchRequest;
+import org.ldaptive.SearchResult;
+import org.ldaptive.provider.nio.NioProvider;
+import org.ldaptive.provider.nio.TestLdapServer;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for {@link ConcurrentSearchReferenceHandler}.
+ *
+ * @author  Middleware Services
+ */
+public class ConcurrentSearchReferenceHandlerTest
+{
+
+  /** Time each referred server waits before returning its entry. */
+  private static final long ENTRY_DELAY = 300;
+
+  /** Server that returns the references. */
+  private TestLdapServer server;
+
+  /** Servers that are referred to. */
+  private final TestLdapServer[] referred = new TestLdapServer[3];
+
+  /** Referral connection factory. */
+  private PooledReferralConnectionFactory referralFactory;
+
+
+  /** @throws  Exception  On test failure. */
+  @BeforeClass(groups = {"referral"})
+  public void startServers()
+    throws Exception
+  {
+    server = new TestLdapServer(null, false);
+    server.addEntry(new LdapEntry("uid=1,dc=ldaptive", new LdapAttribute("uid", "1")));
+    for (int i = 0; i < referred.length; i++) {
+      referred[i] = new TestLdapServer(null, false);
+      referred[i].setEntryDelay(ENTRY_DELAY);
+      referred[i].addEntry(
+        new LdapEntry("uid=" + (i + 2) + ",dc=ldaptive", new LdapAttribute("uid", String.valueOf(i + 2))));
+      server.addReference(referred[i].getLdapUrl());
+    }
+    // duplicate reference is only chased once
+    server.addReference(referred[0].getLdapUrl());
+    referralFactory = new PooledReferralConnectionFactory();
+    referralFactory.setProvider(new NioProvider());
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @AfterClass(groups = {"referral"})
+  public void stopServers()
+    throws Exception
+  {
+    referralFactory.close();
+    server.close();
+    for (TestLdapServer s : referred) {
+      s.close();
+    }
+  }
+
+
+  /**
+   * Searches the main server with the supplied reference handler.
+   *
+   * @param  handler  search reference handler
+   *
+   * @return  search result
+   *
+   * @throws  Exception  On test failure.
+   */
+  private SearchResult search(final ConcurrentSearchReferenceHandler handler)
+    throws Exception
+  {
+    try (Connection conn = new DefaultConnectionFactory(
+        new ConnectionConfig(server.getLdapUrl()), new NioProvider()).getConnection()) {
+      conn.open();
+      final SearchRequest request = new SearchRequest("", "(uid=*)");
+      request.setSearchReferenceHandlers(handler);
+      request.setReferralHandler(new SearchReferralHandler(referralFactory));
+      return new SearchOperation(conn).execute(request).getResult();
+    }
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"referral"})
+  public void concurrentChase()
+    throws Exception
+  {
+    final long start = System.currentTimeMillis();
+    final SearchResult result = search(
+      new ConcurrentSearchReferenceHandler(4, Duration.ofSeconds(10), referralFactory));
+    final long elapsed = System.currentTimeMillis() - start;
+    Assert.assertEquals(result.size(), 4);
+    for (int i = 1; i <= 4; i++) {
+      Assert.assertNotNull(result.getEntry("uid=" + i + ",dc=ldaptive"));
+    }
+    Assert.assertEquals(result.getReferences().size(), 0);
+    Assert.assertTrue(elapsed < ENTRY_DELAY * referred.length, "References were not chased concurrently");
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"referral"})
+  public void boundedParallelism()
+    throws Exception
+  {
+    final long start = System.currentTimeMillis();
+    final SearchResult result = search(
+      new ConcurrentSearchReferenceHandler(1, Duration.ofSeconds(10), referralFactory));
+    Assert.assertTrue(System.currentTimeMillis() - start >= ENTRY_DELAY * referred.length);
+    Assert.assertEquals(result.size(), 4);
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"referral"})
+  public void deadline()
+    throws Exception
+  {
+    final long start = System.currentTimeMillis();
+    final SearchResult result = search(
+      new ConcurrentSearchReferenceHandler(4, Duration.ofMillis(50), referralFactory));
+    Assert.assertTrue(System.currentTimeMillis() - start < ENTRY_DELAY * referred.length);
+    Assert.assertEquals(result.size(), 1);
+    Assert.assertEquals(result.getReferences().size(), 3);
+  }
+}
@@ -0,0 +1,223 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.referral;
+
+import java.time.Duration;
+import org.ldaptive.BindConnectionInitializer;
+import org.ldaptive.Connection;
+import org.ldaptive.ConnectionConfig;
+import org.ldaptive.ConnectionFactory;
+import org.ldaptive.Credential;
+import org.ldaptive.LdapAttribute;
+import org.ldaptive.LdapEntry;
+import org.ldaptive.LdapException;
+import org.ldaptive.SearchOperation;
+import org.ldaptive.SearchRequest;
+import org.ldaptive.provider.nio.NioProvider;
+import org.ldaptive.provider.nio.TestLdapServer;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for {@link PooledReferralConnectionFactory}.
+ *
+ * @author  Middleware Services
+ */
+public class PooledReferralConnectionFactoryTest
+{
+
+
+  /**
+   * Creates a test server with a single entry that can bind.
+   *
+   * @return  test server
+   *
+   * @throws  Exception  if the server cannot be started
+   */
+  private static TestLdapServer createServer()
+    throws Exception
+  {
+    final TestLdapServer server = new TestLdapServer(null, false);
+    server.addEntry(
+      new LdapEntry(
+        "uid=1,dc=ldaptive",
+        new LdapAttribute("uid", "1"),
+        new LdapAttribute("userPassword", "password")));
+    server.addEntry(
+      new LdapEntry(
+        "uid=2,dc=ldaptive",
+        new LdapAttribute("uid", "2"),
+        new LdapAttribute("userPassword", "Aa")));
+    return server;
+  }
+
+
+  /**
+   * Creates a referral connection factory that uses the NIO provider.
+   *
+   * @return  pooled referral connection factory
+   */
+  private static PooledReferralConnectionFactory createFactory()
+  {
+    final PooledReferralConnectionFactory factory = new PooledReferralConnectionFactory();
+    factory.setProvider(new NioProvider());
+    return factory;
+  }
+
+
+  /**
+   * Opens a connection from the supplied factory, performs a search and closes it.
+   *
+   * @param  cf  connection factory
+   *
+   * @throws  Exception  On test failure.
+   */
+  private static void search(final ConnectionFactory cf)
+    throws Exception
+  {
+    try (Connection conn = cf.getConnection()) {
+      conn.open();
+      Assert.assertEquals(new SearchOperation(conn).execute(new SearchRequest("", "(uid=1)")).getResult().size(), 1);
+    }
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"referral"})
+  public void reuseConnections()
+    throws Exception
+  {
+    final TestLdapServer server = createServer();
+    final PooledReferralConnectionFactory factory = createFactory();
+    try {
+      final ConnectionConfig config = new ConnectionConfig("ldap://localhost:1");
+      for (int i = 0; i < 3; i++) {
+        search(factory.getConnectionFactory(config, server.getLdapUrl()));
+      }
+      Assert.assertEquals(factory.getPoolCount(), 1);
+      Assert.assertEquals(server.getClientCount(), 1);
+    } finally {
+      factory.close();
+      server.close();
+    }
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"referral"})
+  public void bindIdentity()
+    throws Exception
+  {
+    final TestLdapServer server = createServer();
+    final PooledReferralConnectionFactory factory = createFactory();
+    try {
+      final ConnectionConfig anonymous = new ConnectionConfig("ldap://localhost:1");
+      final ConnectionConfig bound = new ConnectionConfig("ldap://localhost:1");
+      bound.setConnectionInitializer(
+        new BindConnectionInitializer("uid=1,dc=ldaptive", new Credential("password")));
+      final ConnectionConfig sameBound = new ConnectionConfig("ldap://localhost:1");
+      sameBound.setConnectionInitializer(
+        new BindConnectionInitializer("uid=1,dc=ldaptive", new Credential("password")));
+      search(factory.getConnectionFactory(anonymous, server.getLdapUrl()));
+      search(factory.getConnectionFactory(bound, server.getLdapUrl()));
+      search(factory.getConnectionFactory(sameBound, server.getLdapUrl()));
+      Assert.assertEquals(factory.getPoolCount(), 2);
+      Assert.assertEquals(server.getClientCount(), 2);
+    } finally {
+      factory.close();
+      server.close();
+    }
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"referral"})
+  public void credentialHashCollision()
+    throws Exception
+  {
+    final TestLdapServer server = createServer();
+    final PooledReferralConnectionFactory factory = createFactory();
+    try {
+      final ConnectionConfig bound = new ConnectionConfig("ldap://localhost:1");
+      bound.setConnectionInitializer(new BindConnectionInitializer("uid=2,dc=ldaptive", new Credential("Aa")));
+      search(factory.getConnectionFactory(bound, server.getLdapUrl()));
+
+      // byte arrays of "Aa" and "BB" have the same hash code
+      final ConnectionConfig colliding = new ConnectionConfig("ldap://localhost:1");
+      colliding.setConnectionInitializer(new BindConnectionInitializer("uid=2,dc=ldaptive", new Credential("BB")));
+      try {
+        search(factory.getConnectionFactory(colliding, server.getLdapUrl()));
+        Assert.fail("Should have thrown LdapException");
+      } catch (LdapException e) {
+        Assert.assertNotNull(e);
+      }
+      Assert.assertEquals(factory.getPoolCount(), 2);
+    } finally {
+      factory.close();
+      server.close();
+    }
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"referral"})
+  public void closed()
+    throws Exception
+  {
+    final TestLdapServer server = createServer();
+    final PooledReferralConnectionFactory factory = createFactory();
+    try {
+      final ConnectionConfig config = new ConnectionConfig("ldap://localhost:1");
+      final ConnectionFactory cf = factory.getConnectionFactory(config, server.getLdapUrl());
+      search(cf);
+      factory.close();
+      Assert.assertEquals(factory.getPoolCount(), 0);
+      try {
+        cf.getConnection();
+        Assert.fail("Should have thrown IllegalStateException");
+      } catch (IllegalStateException e) {
+        Assert.assertNotNull(e);
+      }
+      try {
+        factory.getConnectionFactory(config, server.getLdapUrl());
+        Assert.fail("Should have thrown IllegalStateException");
+      } catch (IllegalStateException e) {
+        Assert.assertNotNull(e);
+      }
+      Assert.assertEquals(factory.getPoolCount(), 0);
+    } finally {
+      factory.close();
+      server.close();
+    }
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"referral"})
+  public void evictIdle()
+    throws Exception
+  {
+    final TestLdapServer server = createServer();
+    final PooledReferralConnectionFactory factory = createFactory();
+    factory.setIdleTime(Duration.ofMillis(100));
+    try {
+      final ConnectionConfig config = new ConnectionConfig("ldap://localhost:1");
+      search(factory.getConnectionFactory(config, server.getLdapUrl()));
+      Assert.assertEquals(server.getClientCount(), 1);
+
+      final long deadline = System.currentTimeMillis() + 5000;
+      while (server.getClientCount() > 0 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(20);
+      }
+      Assert.assertEquals(server.getClientCount(), 0);
+      Thread.sleep(150);
+      factory.getConnectionFactory(config, server.getLdapUrl());
+      Assert.assertEquals(factory.getPoolCount(), 0);
+
+      search(factory.getConnectionFactory(config, server.getLdapUrl()));
+      Assert.assertEquals(factory.getPoolCount(), 1);
+    } finally {
+      factory.close();
+      server.close();
+    }
+  }
+}
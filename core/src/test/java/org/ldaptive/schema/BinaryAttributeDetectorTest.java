@@ -0,0 +1,56 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.schema;
+
+import java.util.Arrays;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for {@link BinaryAttributeDetector}.
+ *
+ * @author  Middleware Services
+ */
+public class BinaryAttributeDetectorTest
+{
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"schema"})
+  public void isBinary()
+    throws Exception
+  {
+    final Schema schema = new Schema();
+    schema.setSyntaxes(
+      Arrays.asList(
+        Syntax.parse("( 1.3.6.1.4.1.1466.115.121.1.15 DESC 'Directory String' )"),
+        Syntax.parse("( 1.3.6.1.4.1.1466.115.121.1.4 DESC 'Audio' X-NOT-HUMAN-READABLE 'TRUE' )"),
+        Syntax.parse("( 1.2.3.4 DESC 'Custom' X-BINARY-TRANSFER-REQUIRED 'TRUE' )")));
+    schema.setAttributeTypes(
+      Arrays.asList(
+        AttributeType.parse("( 2.5.4.41 NAME 'name' SYNTAX 1.3.6.1.4.1.1466.115.121.1.15{32768} )"),
+        AttributeType.parse("( 2.5.4.3 NAME ( 'cn' 'commonName' ) SUP name )"),
+        AttributeType.parse("( 2.5.4.36 NAME 'userCertificate' SYNTAX 1.3.6.1.4.1.1466.115.121.1.8 )"),
+        AttributeType.parse("( 1.2.840.113556.1.4.146 NAME 'objectSid' SYNTAX 1.3.6.1.4.1.1466.115.121.1.40 )"),
+        AttributeType.parse("( 1.2.3.5 NAME 'custom' SYNTAX 1.2.3.4 )"),
+        AttributeType.parse("( 1.2.3.6 NAME 'customChild' SUP custom )"),
+        AttributeType.parse("( 0.9.2342.19200300.100.1.55 NAME 'audio' SYNTAX 1.3.6.1.4.1.1466.115.121.1.4 )")));
+
+    final BinaryAttributeDetector detector = new BinaryAttributeDetector(schema);
+    Assert.assertFalse(detector.isBinary("cn"));
+    Assert.assertFalse(detector.isBinary("commonName;lang-en"));
+    Assert.assertFalse(detector.isBinary("unknown"));
+    Assert.assertFalse(detector.isBinary(null));
+    Assert.assertTrue(detector.isBinary("cn;binary"));
+    Assert.assertTrue(detector.isBinary("userCertificate"));
+    Assert.assertTrue(detector.isBinary("usercertificate;binary"));
+    Assert.assertTrue(detector.isBinary("2.5.4.36"));
+    Assert.assertTrue(detector.isBinary("OBJECTSID"));
+    Assert.assertTrue(detector.isBinary("custom"));
+    Assert.assertTrue(detector.isBinary("customChild"));
+    Assert.assertTrue(detector.isBinary("audio"));
+
+    final String[] names = detector.getBinaryAttributeNames();
+    Assert.assertTrue(Arrays.asList(names).contains("objectSid"));
+    Assert.assertFalse(Arrays.asList(names).contains("cn"));
+  }
+}
@@ -0,0 +1,160 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.schema;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.ldaptive.ConnectionFactory;
+import org.ldaptive.DefaultConnectionFactory;
+import org.ldaptive.LdapEntry;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for {@link Schema}.
+ *
+ * @author  Middleware Services
+ */
+public class SchemaTest
+{
+
+
+  /**
+   * Creates a schema for testing.
+   *
+   * @return  schema
+   *
+   * @throws  Exception  if a definition cannot be parsed
+   */
+  private static Schema createSchema()
+    throws Exception
+  {
+    final Schema schema = new Schema();
+    schema.setSyntaxes(
+      Arrays.asList(
+        Syntax.parse("( 1.3.6.1.4.1.1466.115.121.1.15 DESC 'Directory String' )"),
+        Syntax.parse("( 1.3.6.1.4.1.1466.115.121.1.28 DESC 'JPEG' X-NOT-HUMAN-READABLE 'TRUE' )")));
+    schema.setMatchingRules(
+      Collections.singletonList(
+        MatchingRule.parse("( 2.5.13.2 NAME 'caseIgnoreMatch' SYNTAX 1.3.6.1.4.1.1466.115.121.1.15 )")));
+    schema.setAttributeTypes(
+      Arrays.asList(
+        AttributeType.parse(
+          "( 2.5.4.3 NAME ( 'cn' 'commonName' ) EQUALITY caseIgnoreMatch SYNTAX 1.3.6.1.4.1.1466.115.121.1.15 )"),
+        AttributeType.parse("( 0.9.2342.19200300.100.1.60 NAME 'jpegPhoto' SYNTAX 1.3.6.1.4.1.1466.115.121.1.28 )"),
+        AttributeType.parse("( 2.5.4.35 NAME 'userPassword' SYNTAX 1.3.6.1.4.1.1466.115.121.1.5 )")));
+    schema.setObjectClasses(
+      Collections.singletonList(
+        ObjectClass.parse("( 2.5.6.6 NAME 'person' SUP top STRUCTURAL MUST ( sn $ cn ) )")));
+    return schema;
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"schema"})
+  public void lookup()
+    throws Exception
+  {
+    final Schema schema = createSchema();
+    Assert.assertEquals(schema.getAttributeType("cn").getOID(), "2.5.4.3");
+    Assert.assertEquals(schema.getAttributeType("COMMONNAME").getOID(), "2.5.4.3");
+    Assert.assertEquals(schema.getAttributeType("2.5.4.3").getName(), "cn");
+    Assert.assertNull(schema.getAttributeType("sn"));
+    Assert.assertNull(schema.getAttributeType(null));
+    Assert.assertEquals(schema.getMatchingRule("CaseIgnoreMatch").getOID(), "2.5.13.2");
+    Assert.assertEquals(schema.getObjectClass("Person").getOID(), "2.5.6.6");
+    Assert.assertEquals(schema.getSyntax("1.3.6.1.4.1.1466.115.121.1.28").getDescription(), "JPEG");
+    Assert.assertNull(schema.getSyntax("1.3.6.1.4.1.1466.115.121.1.5"));
+
+    schema.setAttributeTypes(Collections.emptyList());
+    Assert.assertNull(schema.getAttributeType("cn"));
+    Assert.assertEquals(schema.getBinaryAttributeNames().length, 0);
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"schema"})
+  public void binaryAttributeNames()
+    throws Exception
+  {
+    final Schema schema = createSchema();
+    final String[] names = schema.getBinaryAttributeNames();
+    Arrays.sort(names);
+    Assert.assertEquals(names, new String[] {"jpegPhoto", "userPassword"});
+    names[0] = "cn";
+    Assert.assertEquals(schema.getBinaryAttributeNames().length, 2);
+    Assert.assertNotEquals(schema.getBinaryAttributeNames()[0], "cn");
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"schema"})
+  public void snapshot()
+    throws Exception
+  {
+    final Schema schema = createSchema();
+    final LdapEntry entry = SchemaCache.createSchemaEntry(schema);
+    Assert.assertEquals(SchemaCache.createSchemaEntry(SchemaFactory.createSchema(entry)), entry);
+
+    final Path snapshot = Files.createTempFile("ldaptive-schema", ".ldif");
+    try {
+      SchemaCache.writeSnapshot(schema, snapshot);
+      final Schema read = new SchemaCache().readSnapshot(snapshot);
+      Assert.assertEquals(SchemaCache.createSchemaEntry(read), entry);
+      Assert.assertEquals(read.getAttributeType("commonname").getOID(), "2.5.4.3");
+    } finally {
+      Files.deleteIfExists(snapshot);
+    }
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"schema"}, timeOut = 10000)
+  public void concurrentLoads()
+    throws Exception
+  {
+    final ConnectionFactory slow = new DefaultConnectionFactory("ldap://slow.ldaptive.org");
+    final ConnectionFactory fast = new DefaultConnectionFactory("ldap://fast.ldaptive.org");
+    final CountDownLatch loadStarted = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final AtomicInteger slowLoads = new AtomicInteger();
+    final SchemaCache cache = new SchemaCache() {
+      @Override
+      protected Schema load(final ConnectionFactory factory)
+      {
+        try {
+          if (factory == slow) {
+            slowLoads.incrementAndGet();
+            loadStarted.countDown();
+            release.await();
+          }
+          return createSchema();
+        } catch (Exception e) {
+          throw new IllegalStateException(e);
+        }
+      }
+    };
+    final ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      final Future<Schema> first = executor.submit(() -> cache.getSchema(slow));
+      loadStarted.await();
+      final Future<Schema> second = executor.submit(() -> cache.getSchema(slow));
+      // a load for another factory must not wait on the slow load
+      Assert.assertNotNull(cache.getSchema(fast));
+      Assert.assertFalse(first.isDone());
+      release.countDown();
+      Assert.assertSame(first.get(), second.get());
+      Assert.assertEquals(slowLoads.get(), 1);
+      Assert.assertEquals(cache.size(), 2);
+    } finally {
+      release.countDown();
+      executor.shutdownNow();
+    }
+  }
+}
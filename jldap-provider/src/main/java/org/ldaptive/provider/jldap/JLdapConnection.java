@@ -764,6 +764,7 @@ public class JLdapConnection implements ProviderConnection
       request = sr;
       util = new JLdapUtils(request.getSortBehavior());
       util.setBinaryAttributes(request.getBinaryAttributes());
+      util.setBinaryAttributeDetector(config.getBinaryAttributeDetector());
     }
 
 
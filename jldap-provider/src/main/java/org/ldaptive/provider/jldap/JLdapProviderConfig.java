@@ -116,13 +116,17 @@ public class JLdapProviderConfig extends ProviderConfig<LDAPControl>
   {
     return
       String.format(
-        "[%s@%d::operationExceptionResultCodes=%s, properties=%s, controlProcessor=%s, ldapConstraints=%s, " +
+        "[%s@%d::operationExceptionResultCodes=%s, properties=%s, controlProcessor=%s, " +
+        "binaryAttributeDetector=%s, concurrentConnectAttempts=%s, connectAttemptDelay=%s, ldapConstraints=%s, " +
         "searchIgnoreResultCodes=%s, sslSocketFactory=%s]",
         getClass().getName(),
         hashCode(),
         Arrays.toString(getOperationExceptionResultCodes()),
         getProperties(),
         getControlProcessor(),
+        getBinaryAttributeDetector(),
+        getConcurrentConnectAttempts(),
+        getConnectAttemptDelay(),
         ldapConstraints,
         Arrays.toString(searchIgnoreResultCodes),
         sslSocketFactory);
@@ -17,6 +17,7 @@ import org.ldaptive.SearchEntry;
 import org.ldaptive.SortBehavior;
 import org.ldaptive.control.ResponseControl;
 import org.ldaptive.control.SortKey;
+import org.ldaptive.schema.BinaryAttributeDetector;
 
 /**
  * Provides methods for converting between JLDAP specific objects and ldaptive specific objects.
@@ -32,6 +33,9 @@ public class JLdapUtils
   /** Attributes that should be treated as binary. */
   private List<String> binaryAttrs;
 
+  /** Detects binary attributes from the schema. */
+  private BinaryAttributeDetector binaryAttrDetector;
+
 
   /** Default constructor. */
   public JLdapUtils()
@@ -75,6 +79,29 @@ public class JLdapUtils
   }
 
 
+  /**
+   * Returns the binary attribute detector.
+   *
+   * @return  binary attribute detector
+   */
+  public BinaryAttributeDetector getBinaryAttributeDetector()
+  {
+    return binaryAttrDetector;
+  }
+
+
+  /**
+   * Sets the binary attribute detector. Attributes it reports as binary are treated as binary in addition to the list
+   * of binary attributes.
+   *
+   * @param  detector  binary attribute detector
+   */
+  public void setBinaryAttributeDetector(final BinaryAttributeDetector detector)
+  {
+    binaryAttrDetector = detector;
+  }
+
+
   /**
    * Returns a jldap attribute that represents the values in the supplied ldap attribute.
    *
@@ -108,6 +135,8 @@ public class JLdapUtils
       isBinary = true;
     } else if (binaryAttrs != null && binaryAttrs.contains(a.getName())) {
       isBinary = true;
+    } else if (binaryAttrDetector != null && binaryAttrDetector.isBinary(a.getName())) {
+      isBinary = true;
     }
 
     final LdapAttribute la = new LdapAttribute(sortBehavior, isBinary);
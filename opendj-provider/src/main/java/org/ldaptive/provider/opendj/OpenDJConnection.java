@@ -917,6 +917,7 @@ public class OpenDJConnection implements org.ldaptive.provider.ProviderConnectio
       request = sr;
       util = new OpenDJUtils(request.getSortBehavior());
       util.setBinaryAttributes(request.getBinaryAttributes());
+      util.setBinaryAttributeDetector(config.getBinaryAttributeDetector());
     }
 
 
@@ -87,13 +87,17 @@ public class OpenDJProviderConfig extends ProviderConfig<Control>
   {
     return
       String.format(
-        "[%s@%d::operationExceptionResultCodes=%s, properties=%s, controlProcessor=%s, options=%s, " +
+        "[%s@%d::operationExceptionResultCodes=%s, properties=%s, controlProcessor=%s, " +
+        "binaryAttributeDetector=%s, concurrentConnectAttempts=%s, connectAttemptDelay=%s, options=%s, " +
         "searchIgnoreResultCodes=%s]",
         getClass().getName(),
         hashCode(),
         Arrays.toString(getOperationExceptionResultCodes()),
         getProperties(),
         getControlProcessor(),
+        getBinaryAttributeDetector(),
+        getConcurrentConnectAttempts(),
+        getConnectAttemptDelay(),
         options,
         Arrays.toString(searchIgnoreResultCodes));
   }
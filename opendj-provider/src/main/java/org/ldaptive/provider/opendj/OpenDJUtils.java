@@ -21,6 +21,7 @@ import org.ldaptive.LdapEntry;
 import org.ldaptive.SearchEntry;
 import org.ldaptive.SortBehavior;
 import org.ldaptive.control.ResponseControl;
+import org.ldaptive.schema.BinaryAttributeDetector;
 
 /**
  * Provides methods for converting between OpenDJ specific objects and ldaptive specific objects.
@@ -36,6 +37,9 @@ public class OpenDJUtils
   /** Attributes that should be treated as binary. */
   private List<String> binaryAttrs;
 
+  /** Detects binary attributes from the schema. */
+  private BinaryAttributeDetector binaryAttrDetector;
+
 
   /** Default constructor. */
   public OpenDJUtils()
@@ -79,6 +83,29 @@ public class OpenDJUtils
   }
 
 
+  /**
+   * Returns the binary attribute detector.
+   *
+   * @return  binary attribute detector
+   */
+  public BinaryAttributeDetector getBinaryAttributeDetector()
+  {
+    return binaryAttrDetector;
+  }
+
+
+  /**
+   * Sets the binary attribute detector. Attributes it reports as binary are treated as binary in addition to the list
+   * of binary attributes.
+   *
+   * @param  detector  binary attribute detector
+   */
+  public void setBinaryAttributeDetector(final BinaryAttributeDetector detector)
+  {
+    binaryAttrDetector = detector;
+  }
+
+
   /**
    * Returns an opendj byte string that represents the values in the supplied collection.
    *
@@ -186,6 +213,8 @@ public class OpenDJUtils
       isBinary = true;
     } else if (binaryAttrs != null && binaryAttrs.contains(a.getAttributeDescriptionAsString())) {
       isBinary = true;
+    } else if (binaryAttrDetector != null && binaryAttrDetector.isBinary(a.getAttributeDescriptionAsString())) {
+      isBinary = true;
     }
 
     final LdapAttribute la = new LdapAttribute(sortBehavior, isBinary);
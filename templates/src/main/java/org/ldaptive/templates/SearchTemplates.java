@@ -40,6 +40,17 @@ public class SearchTemplates
   }
 
 
+  /**
+   * Returns the search filter templates.
+   *
+   * @return  filter templates
+   */
+  public String[] getFilterTemplates()
+  {
+    return filterTemplates;
+  }
+
+
   /**
    * Returns the filter to use for search restrictions.
    *
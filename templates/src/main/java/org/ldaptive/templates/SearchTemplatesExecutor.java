@@ -10,6 +10,7 @@ import org.ldaptive.SearchFilter;
 import org.ldaptive.SearchResult;
 import org.ldaptive.SortBehavior;
 import org.ldaptive.concurrent.AggregatePooledSearchExecutor;
+import org.ldaptive.handler.SearchEntryHandler;
 import org.ldaptive.pool.PooledConnectionFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -138,7 +139,36 @@ public class SearchTemplatesExecutor
   {
     logger.debug("Query: {}", query);
 
-    // get a search object
+    final SearchTemplates templates = selectSearchTemplates(query);
+    if (templates != null) {
+      return search(templates.format(query), query.getReturnAttributes(), query.getFromResult(), query.getToResult());
+    } else {
+      return null;
+    }
+  }
+
+
+  /**
+   * Creates a new typeahead search that uses this executor. See {@link TypeaheadSearch}.
+   *
+   * @return  typeahead search
+   */
+  public TypeaheadSearch createTypeahead()
+  {
+    return new TypeaheadSearch(this);
+  }
+
+
+  /**
+   * Returns the search templates to use for the supplied query. Templates are selected by the number of terms in the
+   * query.
+   *
+   * @param  query  to select templates for
+   *
+   * @return  search templates or null if no templates are defined for the query
+   */
+  protected SearchTemplates selectSearchTemplates(final Query query)
+  {
     SearchTemplates templates = null;
     if (query.getTerms().length > 0) {
 
@@ -161,12 +191,7 @@ public class SearchTemplatesExecutor
         logger.debug("No terms found in query {}", query);
       }
     }
-
-    if (templates != null) {
-      return search(templates.format(query), query.getReturnAttributes(), query.getFromResult(), query.getToResult());
-    } else {
-      return null;
-    }
+    return templates;
   }
 
 
@@ -188,15 +213,44 @@ public class SearchTemplatesExecutor
     final Integer fromResult,
     final Integer toResult)
     throws LdapException
+  {
+    return subResult(aggregate(executeSearch(filters, returnAttrs)), fromResult, toResult);
+  }
+
+
+  /**
+   * Performs parallel LDAP searches with the supplied filters against every connection factory.
+   *
+   * @param  filters  to execute
+   * @param  returnAttrs  attributes to return from the search
+   * @param  handlers  entry handlers to apply to each search
+   *
+   * @return  responses of the searches that completed
+   *
+   * @throws  LdapException  if the search fails
+   */
+  protected Collection<Response<SearchResult>> executeSearch(
+    final SearchFilter[] filters,
+    final String[] returnAttrs,
+    final SearchEntryHandler... handlers)
+    throws LdapException
   {
     logger.debug("Performing search with {} filters", Arrays.toString(filters));
 
     // perform parallel searches
-    final Collection<Response<SearchResult>> responses = searchExecutor.search(
-      connectionFactories,
-      filters,
-      returnAttrs);
+    return searchExecutor.search(connectionFactories, filters, returnAttrs, handlers);
+  }
+
 
+  /**
+   * Aggregates the entries of the supplied responses into a single ordered search result.
+   *
+   * @param  responses  to aggregate
+   *
+   * @return  search result containing every entry
+   */
+  protected SearchResult aggregate(final Collection<Response<SearchResult>> responses)
+  {
     // iterate over all results and store each entry
     final SearchResult result = new SearchResult(SortBehavior.ORDERED);
     for (Response<SearchResult> r : responses) {
@@ -205,7 +259,21 @@ public class SearchTemplatesExecutor
         logger.debug("Search found: {}", le.getDn());
       }
     }
+    return result;
+  }
+
 
+  /**
+   * Returns the portion of the supplied result between the supplied indexes.
+   *
+   * @param  result  to return a portion of
+   * @param  fromResult  index to return results from
+   * @param  toResult  index to return results to
+   *
+   * @return  portion of the result
+   */
+  protected SearchResult subResult(final SearchResult result, final Integer fromResult, final Integer toResult)
+  {
     final SearchResult subResult;
     if (fromResult != null) {
       if (toResult != null) {
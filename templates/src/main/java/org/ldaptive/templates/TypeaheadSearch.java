@@ -0,0 +1,449 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.templates;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import org.ldaptive.Connection;
+import org.ldaptive.LdapEntry;
+import org.ldaptive.LdapException;
+import org.ldaptive.LdapUtils;
+import org.ldaptive.Response;
+import org.ldaptive.ResultCode;
+import org.ldaptive.SearchEntry;
+import org.ldaptive.SearchFilter;
+import org.ldaptive.SearchRequest;
+import org.ldaptive.SearchResult;
+import org.ldaptive.SortBehavior;
+import org.ldaptive.filter.AbstractAssertionFilter;
+import org.ldaptive.filter.AbstractCompositeFilter;
+import org.ldaptive.filter.ExtensibleFilter;
+import org.ldaptive.filter.Filter;
+import org.ldaptive.filter.FilterEvaluator;
+import org.ldaptive.filter.NotFilter;
+import org.ldaptive.filter.PresenceFilter;
+import org.ldaptive.filter.SubstringFilter;
+import org.ldaptive.handler.HandlerResult;
+import org.ldaptive.handler.SearchEntryHandler;
+import org.ldaptive.schema.Schema;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Executes a sequence of queries typed by a single user, such as the keystrokes of a search box. The complete result
+ * of the last query is cached; when a query refines it, the cached result is filtered locally with a {@link
+ * FilterEvaluator} rather than searching the directory. A query refines the cached query when:
+ *
+ * <ul>
+ *   <li>both select the same search templates and have the same search restrictions and return attributes</li>
+ *   <li>each term of the query starts with the corresponding term of the cached query</li>
+ *   <li>the cached result is complete: every search succeeded and none exceeded a size or time limit</li>
+ *   <li>every filter template is narrowed by longer terms, i.e. every parameter other than an initial is immediately
+ *     followed by a wildcard, as in <code>(givenName={term1}*)</code></li>
+ *   <li>the return attributes include every attribute referenced by the filters</li>
+ * </ul>
+ *
+ * <p>Starting a query supersedes any query still in progress. Searches for a superseded query are aborted as soon as
+ * their next entry arrives, which abandons the search, and the superseded query returns null. Since queries supersede
+ * each other, create one instance per user session with {@link SearchTemplatesExecutor#createTypeahead()}.</p>
+ *
+ * @author  Middleware Services
+ */
+public class TypeaheadSearch
+{
+
+  /** Logger for this class. */
+  protected final Logger logger = LoggerFactory.getLogger(getClass());
+
+  /** Executor to search the directory with. */
+  private final SearchTemplatesExecutor executor;
+
+  /** Evaluates filters against cached entries. */
+  private FilterEvaluator evaluator = new FilterEvaluator();
+
+  /** Identifies the latest query. */
+  private final AtomicLong generation = new AtomicLong();
+
+  /** Result of the last complete query. */
+  private volatile CachedResult cache;
+
+  /** Number of queries answered by the directory. */
+  private final AtomicLong directoryCount = new AtomicLong();
+
+  /** Number of queries answered from the cache. */
+  private final AtomicLong localCount = new AtomicLong();
+
+
+  /**
+   * Creates a new typeahead search.
+   *
+   * @param  ste  executor to search the directory with
+   */
+  public TypeaheadSearch(final SearchTemplatesExecutor ste)
+  {
+    if (ste == null) {
+      throw new IllegalArgumentException("Search templates executor cannot be null");
+    }
+    executor = ste;
+  }
+
+
+  /**
+   * Returns the schema used to evaluate filters against cached entries.
+   *
+   * @return  schema or null
+   */
+  public Schema getSchema()
+  {
+    return evaluator.getSchema();
+  }
+
+
+  /**
+   * Sets the schema used to evaluate filters against cached entries. Matching rules should agree with the directory,
+   * otherwise local results may differ from directory results.
+   *
+   * @param  s  schema
+   */
+  public void setSchema(final Schema s)
+  {
+    evaluator = new FilterEvaluator(s);
+  }
+
+
+  /**
+   * Returns the number of queries that were answered by searching the directory.
+   *
+   * @return  directory search count
+   */
+  public long getDirectorySearchCount()
+  {
+    return directoryCount.get();
+  }
+
+
+  /**
+   * Returns the number of queries that were answered by filtering a cached result.
+   *
+   * @return  local search count
+   */
+  public long getLocalSearchCount()
+  {
+    return localCount.get();
+  }
+
+
+  /**
+   * Executes the supplied query, superseding any query in progress.
+   *
+   * @param  query  to execute
+   *
+   * @return  search result, or null if no search templates apply or the query was superseded before it completed
+   *
+   * @throws  LdapException  if the search fails
+   */
+  public SearchResult search(final Query query)
+    throws LdapException
+  {
+    final long id = generation.incrementAndGet();
+    final SearchTemplates templates = executor.selectSearchTemplates(query);
+    SearchResult result = null;
+    if (templates != null) {
+      final SearchFilter[] filters = templates.format(query);
+      final CachedResult cached = cache;
+      if (cached != null && cached.isRefinedBy(query, templates, filters)) {
+        logger.debug("Filtering cached result of {} for {}", cached.query, query);
+        result = filter(filters, cached.result);
+        localCount.incrementAndGet();
+        update(id, new CachedResult(query, templates, result));
+      } else {
+        final Collection<Response<SearchResult>> responses = executor.executeSearch(
+          filters,
+          query.getReturnAttributes(),
+          new SupersededEntryHandler(id));
+        directoryCount.incrementAndGet();
+        if (isSuperseded(id)) {
+          logger.debug("Discarding result of superseded query {}", query);
+        } else {
+          result = executor.aggregate(responses);
+          if (isComplete(responses, filters) && isRefinable(templates)) {
+            update(id, new CachedResult(query, templates, result));
+          }
+        }
+      }
+    }
+    return result != null ? executor.subResult(result, query.getFromResult(), query.getToResult()) : null;
+  }
+
+
+  /** Supersedes any query in progress. */
+  public void cancel()
+  {
+    generation.incrementAndGet();
+  }
+
+
+  /** Supersedes any query in progress and discards the cached result. */
+  public void clear()
+  {
+    synchronized (this) {
+      generation.incrementAndGet();
+      cache = null;
+    }
+  }
+
+
+  /**
+   * Returns whether the query with the supplied id has been superseded.
+   *
+   * @param  id  of the query
+   *
+   * @return  whether a later query has started
+   */
+  private boolean isSuperseded(final long id)
+  {
+    return generation.get() != id;
+  }
+
+
+  /**
+   * Caches the supplied result if the query with the supplied id is still the latest query.
+   *
+   * @param  id  of the query
+   * @param  cached  result to cache
+   */
+  private void update(final long id, final CachedResult cached)
+  {
+    synchronized (this) {
+      if (!isSuperseded(id)) {
+        cache = cached;
+      }
+    }
+  }
+
+
+  /**
+   * Returns the cached entries that match any of the supplied filters. Like a directory search, entries are ordered by
+   * the first filter they match.
+   *
+   * @param  filters  to evaluate
+   * @param  cached  result to filter
+   *
+   * @return  matching entries
+   */
+  private SearchResult filter(final SearchFilter[] filters, final SearchResult cached)
+  {
+    final SearchResult result = new SearchResult(SortBehavior.ORDERED);
+    for (SearchFilter sf : filters) {
+      final Filter f = sf.parse();
+      for (LdapEntry e : cached.getEntries()) {
+        if (evaluator.matches(f, e)) {
+          result.addEntry(e);
+        }
+      }
+    }
+    return result;
+  }
+
+
+  /**
+   * Returns whether the supplied responses contain every entry matching the supplied filters.
+   *
+   * @param  responses  of the directory searches
+   * @param  filters  that were searched
+   *
+   * @return  whether a response was received for each search and every search succeeded
+   */
+  private boolean isComplete(final Collection<Response<SearchResult>> responses, final SearchFilter[] filters)
+  {
+    final int factories = executor.getConnectionFactories() != null ? executor.getConnectionFactories().length : 0;
+    boolean complete = responses.size() == factories * filters.length;
+    for (Response<SearchResult> r : responses) {
+      if (r.getResultCode() != ResultCode.SUCCESS) {
+        logger.debug("Not caching incomplete result with result code {}", r.getResultCode());
+        complete = false;
+      }
+    }
+    return complete;
+  }
+
+
+  /**
+   * Returns whether longer terms narrow the results of every filter template. Parameters created by {@link
+   * SearchTemplates.InitialTermParser} do not change when a term is extended; every other parameter must be followed by
+   * a wildcard.
+   *
+   * @param  templates  to inspect
+   *
+   * @return  whether the templates can be refined
+   */
+  private static boolean isRefinable(final SearchTemplates templates)
+  {
+    boolean refinable = true;
+    for (String template : templates.getFilterTemplates()) {
+      int start = template.indexOf('{');
+      while (refinable && start != -1) {
+        final int end = template.indexOf('}', start);
+        if (end == -1) {
+          break;
+        }
+        if (!template.startsWith("initial", start + 1)) {
+          refinable = end + 1 < template.length() && template.charAt(end + 1) == '*';
+        }
+        start = template.indexOf('{', end);
+      }
+    }
+    return refinable;
+  }
+
+
+  /**
+   * Adds the lower case names of the attributes referenced by the supplied filter to the supplied set. Extensible
+   * filters without an attribute add <code>*</code>.
+   *
+   * @param  filter  to inspect
+   * @param  names  to add attribute names to
+   */
+  private static void addAttributeNames(final Filter filter, final Set<String> names)
+  {
+    if (filter instanceof AbstractCompositeFilter) {
+      for (Filter f : ((AbstractCompositeFilter) filter).getComponents()) {
+        addAttributeNames(f, names);
+      }
+    } else if (filter instanceof NotFilter) {
+      addAttributeNames(((NotFilter) filter).getComponent(), names);
+    } else {
+      String attr = null;
+      if (filter instanceof AbstractAssertionFilter) {
+        attr = ((AbstractAssertionFilter) filter).getAttributeDescription();
+      } else if (filter instanceof SubstringFilter) {
+        attr = ((SubstringFilter) filter).getAttributeDescription();
+      } else if (filter instanceof PresenceFilter) {
+        attr = ((PresenceFilter) filter).getAttributeDescription();
+      } else if (filter instanceof ExtensibleFilter) {
+        attr = ((ExtensibleFilter) filter).getAttributeDescription();
+      }
+      names.add(attr != null ? attr.split(";")[0].toLowerCase() : "*");
+    }
+  }
+
+
+  @Override
+  public String toString()
+  {
+    return
+      String.format(
+        "[%s@%d::executor=%s, directorySearchCount=%s, localSearchCount=%s]",
+        getClass().getName(),
+        hashCode(),
+        executor,
+        directoryCount,
+        localCount);
+  }
+
+
+  /** Complete result of a query. */
+  private static final class CachedResult
+  {
+
+    /** Query that produced the result. */
+    private final Query query;
+
+    /** Templates the query was formatted with. */
+    private final SearchTemplates templates;
+
+    /** Every entry matching the query. */
+    private final SearchResult result;
+
+
+    /**
+     * Creates a new cached result.
+     *
+     * @param  q  query
+     * @param  st  search templates
+     * @param  sr  search result
+     */
+    CachedResult(final Query q, final SearchTemplates st, final SearchResult sr)
+    {
+      query = q;
+      templates = st;
+      result = sr;
+    }
+
+
+    /**
+     * Returns whether the results of the supplied query are a subset of this result.
+     *
+     * @param  q  query
+     * @param  st  search templates selected for the query
+     * @param  filters  formatted for the query
+     *
+     * @return  whether the query can be answered by filtering this result
+     */
+    boolean isRefinedBy(final Query q, final SearchTemplates st, final SearchFilter[] filters)
+    {
+      boolean refined = templates == st &&
+        LdapUtils.areEqual(query.getSearchRestrictions(), q.getSearchRestrictions()) &&
+        Arrays.equals(query.getReturnAttributes(), q.getReturnAttributes()) &&
+        query.getTerms().length == q.getTerms().length;
+      for (int i = 0; refined && i < q.getTerms().length; i++) {
+        refined = q.getTerms()[i].startsWith(query.getTerms()[i]);
+      }
+      final String[] attrs = q.getReturnAttributes();
+      if (refined && attrs != null && !Arrays.asList(attrs).contains("*")) {
+        final Set<String> returned = new HashSet<>();
+        for (String attr : attrs) {
+          returned.add(attr.split(";")[0].toLowerCase());
+        }
+        final Set<String> referenced = new HashSet<>();
+        for (SearchFilter sf : filters) {
+          addAttributeNames(sf.parse(), referenced);
+        }
+        refined = returned.containsAll(referenced);
+      }
+      return refined;
+    }
+  }
+
+
+  /**
+   * Aborts the search once the query it belongs to has been superseded. The search operation then closes its search
+   * iterator, which abandons the operation if the server has not completed it.
+   */
+  private final class SupersededEntryHandler implements SearchEntryHandler
+  {
+
+    /** Id of the query. */
+    private final long id;
+
+
+    /**
+     * Creates a new superseded entry handler.
+     *
+     * @param  i  id of the query
+     */
+    SupersededEntryHandler(final long i)
+    {
+      id = i;
+    }
+
+
+    @Override
+    public HandlerResult<SearchEntry> handle(
+      final Connection conn,
+      final SearchRequest request,
+      final SearchEntry entry)
+    {
+      if (isSuperseded(id)) {
+        return new HandlerResult<>(null, true);
+      }
+      return new HandlerResult<>(entry);
+    }
+
+
+    @Override
+    public void initializeRequest(final SearchRequest request) {}
+  }
+}
@@ -0,0 +1,358 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.ldaptive.templates;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.ldaptive.LdapAttribute;
+import org.ldaptive.LdapEntry;
+import org.ldaptive.LdapException;
+import org.ldaptive.Response;
+import org.ldaptive.ResultCode;
+import org.ldaptive.SearchEntry;
+import org.ldaptive.SearchFilter;
+import org.ldaptive.SearchOperation;
+import org.ldaptive.SearchRequest;
+import org.ldaptive.SearchResult;
+import org.ldaptive.filter.FilterEvaluator;
+import org.ldaptive.handler.SearchEntryHandler;
+import org.ldaptive.pool.PooledConnectionFactory;
+import org.ldaptive.provider.SearchItem;
+import org.ldaptive.provider.SearchIterator;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for {@link TypeaheadSearch}.
+ *
+ * @author  Middleware Services
+ */
+public class TypeaheadSearchTest
+{
+
+  /** Entries in the directory. */
+  private static final LdapEntry[] ENTRIES = new LdapEntry[] {
+    new LdapEntry(
+      "uid=jdoe,dc=ldaptive,dc=org",
+      new LdapAttribute("givenName", "John"),
+      new LdapAttribute("sn", "Doe")),
+    new LdapEntry(
+      "uid=jjones,dc=ldaptive,dc=org",
+      new LdapAttribute("givenName", "Jane"),
+      new LdapAttribute("sn", "Jones")),
+    new LdapEntry(
+      "uid=bjohnson,dc=ldaptive,dc=org",
+      new LdapAttribute("givenName", "Bob"),
+      new LdapAttribute("sn", "Johnson")),
+  };
+
+
+  /**
+   * Creates an executor that evaluates filters against {@link #ENTRIES}.
+   *
+   * @param  count  incremented for each directory search
+   * @param  code  result code of each search
+   * @param  templates  search templates
+   *
+   * @return  search templates executor
+   */
+  private static SearchTemplatesExecutor createExecutor(
+    final AtomicInteger count,
+    final ResultCode code,
+    final SearchTemplates templates)
+  {
+    final SearchTemplatesExecutor executor = new SearchTemplatesExecutor()
+    {
+      @Override
+      protected Collection<Response<SearchResult>> executeSearch(
+        final SearchFilter[] filters,
+        final String[] returnAttrs,
+        final SearchEntryHandler... handlers)
+      {
+        count.incrementAndGet();
+        final FilterEvaluator evaluator = new FilterEvaluator();
+        final List<Response<SearchResult>> responses = new ArrayList<>();
+        for (SearchFilter filter : filters) {
+          final SearchResult result = new SearchResult();
+          for (LdapEntry e : ENTRIES) {
+            if (evaluator.matches(filter.parse(), e)) {
+              result.addEntry(e);
+            }
+          }
+          responses.add(new Response<>(result, code));
+        }
+        return responses;
+      }
+    };
+    executor.setConnectionFactories(new PooledConnectionFactory[] {new PooledConnectionFactory()});
+    executor.setSearchTemplates(new SearchTemplates[] {templates});
+    return executor;
+  }
+
+
+  /**
+   * Returns the DNs of the supplied result.
+   *
+   * @param  result  search result
+   *
+   * @return  entry DNs
+   */
+  private static String[] dns(final SearchResult result)
+  {
+    return result.getEntryDns();
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"templates"})
+  public void refine()
+    throws Exception
+  {
+    final AtomicInteger count = new AtomicInteger();
+    final TypeaheadSearch typeahead = createExecutor(
+      count,
+      ResultCode.SUCCESS,
+      new SearchTemplates("(givenName={term1}*)", "(sn={term1}*)")).createTypeahead();
+
+    Assert.assertEquals(dns(typeahead.search(new Query("j"))).length, 3);
+    Assert.assertEquals(
+      dns(typeahead.search(new Query("jo"))),
+      new String[] {"uid=jdoe,dc=ldaptive,dc=org", "uid=jjones,dc=ldaptive,dc=org", "uid=bjohnson,dc=ldaptive,dc=org"});
+    Assert.assertEquals(
+      dns(typeahead.search(new Query("joh"))),
+      new String[] {"uid=jdoe,dc=ldaptive,dc=org", "uid=bjohnson,dc=ldaptive,dc=org"});
+    Assert.assertEquals(dns(typeahead.search(new Query("johns"))), new String[] {"uid=bjohnson,dc=ldaptive,dc=org"});
+    Assert.assertEquals(count.get(), 1);
+    Assert.assertEquals(typeahead.getLocalSearchCount(), 3);
+
+    // backspace is not a refinement
+    Assert.assertEquals(dns(typeahead.search(new Query("joh"))).length, 2);
+    Assert.assertEquals(count.get(), 2);
+
+    // different return attributes
+    final Query query = new Query("john");
+    query.setReturnAttributes(new String[] {"givenName", "sn"});
+    Assert.assertEquals(dns(typeahead.search(query)).length, 2);
+    Assert.assertEquals(count.get(), 3);
+
+    // return attributes do not include sn
+    query.setReturnAttributes(new String[] {"givenName"});
+    typeahead.search(query);
+    final Query refined = new Query("johnso");
+    refined.setReturnAttributes(new String[] {"givenName"});
+    Assert.assertEquals(dns(typeahead.search(refined)).length, 1);
+    Assert.assertEquals(count.get(), 5);
+
+    typeahead.clear();
+    typeahead.search(new Query("john"));
+    Assert.assertEquals(count.get(), 6);
+    Assert.assertEquals(typeahead.getDirectorySearchCount(), 6);
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"templates"})
+  public void notRefinable()
+    throws Exception
+  {
+    final AtomicInteger count = new AtomicInteger();
+    final TypeaheadSearch typeahead = createExecutor(
+      count,
+      ResultCode.SUCCESS,
+      new SearchTemplates("(givenName={term1})", "(sn={term1}*)")).createTypeahead();
+    typeahead.search(new Query("jo"));
+    typeahead.search(new Query("joh"));
+    Assert.assertEquals(count.get(), 2);
+
+    final TypeaheadSearch initials = createExecutor(
+      count,
+      ResultCode.SUCCESS,
+      new SearchTemplates("(&(givenName={initial1}*)(sn=*{term1}*))")).createTypeahead();
+    initials.search(new Query("jo"));
+    Assert.assertEquals(dns(initials.search(new Query("jon"))), new String[] {"uid=jjones,dc=ldaptive,dc=org"});
+    Assert.assertEquals(count.get(), 3);
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"templates"})
+  public void incomplete()
+    throws Exception
+  {
+    final AtomicInteger count = new AtomicInteger();
+    final TypeaheadSearch typeahead = createExecutor(
+      count,
+      ResultCode.SIZE_LIMIT_EXCEEDED,
+      new SearchTemplates("(givenName={term1}*)")).createTypeahead();
+    typeahead.search(new Query("j"));
+    typeahead.search(new Query("jo"));
+    Assert.assertEquals(count.get(), 2);
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"templates"})
+  public void superseded()
+    throws Exception
+  {
+    final AtomicInteger count = new AtomicInteger();
+    final TypeaheadSearch[] typeahead = new TypeaheadSearch[1];
+    final SearchTemplatesExecutor executor = new SearchTemplatesExecutor()
+    {
+      @Override
+      protected Collection<Response<SearchResult>> executeSearch(
+        final SearchFilter[] filters,
+        final String[] returnAttrs,
+        final SearchEntryHandler... handlers)
+      {
+        // a later keystroke arrives while the search is in progress
+        if (count.incrementAndGet() == 1) {
+          typeahead[0].cancel();
+        }
+        final List<Response<SearchResult>> responses = new ArrayList<>();
+        responses.add(new Response<>(new SearchResult(ENTRIES), ResultCode.SUCCESS));
+        return responses;
+      }
+    };
+    executor.setConnectionFactories(new PooledConnectionFactory[] {new PooledConnectionFactory()});
+    executor.setSearchTemplates(new SearchTemplates[] {new SearchTemplates("(givenName={term1}*)")});
+    typeahead[0] = executor.createTypeahead();
+
+    Assert.assertNull(typeahead[0].search(new Query("j")));
+    Assert.assertEquals(dns(typeahead[0].search(new Query("jo"))).length, 3);
+    Assert.assertEquals(count.get(), 2);
+  }
+
+
+  /** @throws  Exception  On test failure. */
+  @Test(groups = {"templates"})
+  public void supersededAborts()
+    throws Exception
+  {
+    final AtomicInteger count = new AtomicInteger();
+    final TypeaheadSearch[] typeahead = new TypeaheadSearch[1];
+    final EntryIterator[] iterator = new EntryIterator[1];
+    final SearchTemplatesExecutor executor = new SearchTemplatesExecutor()
+    {
+      @Override
+      protected Collection<Response<SearchResult>> executeSearch(
+        final SearchFilter[] filters,
+        final String[] returnAttrs,
+        final SearchEntryHandler... handlers)
+        throws LdapException
+      {
+        // a later keystroke arrives while the first search is reading entries
+        iterator[0] = new EntryIterator(count.incrementAndGet() == 1 ? typeahead[0] : null);
+        final SearchRequest request = new SearchRequest("dc=ldaptive,dc=org", filters[0]);
+        request.setSearchEntryHandlers(handlers);
+        final List<Response<SearchResult>> responses = new ArrayList<>();
+        responses.add(
+          new Response<>(new ReadingSearchOperation().read(request, iterator[0]), ResultCode.SUCCESS));
+        return responses;
+      }
+    };
+    executor.setConnectionFactories(new PooledConnectionFactory[] {new PooledConnectionFactory()});
+    executor.setSearchTemplates(new SearchTemplates[] {new SearchTemplates("(givenName={term1}*)")});
+    typeahead[0] = executor.createTypeahead();
+
+    Assert.assertNull(typeahead[0].search(new Query("j")));
+    Assert.assertEquals(iterator[0].read, 1);
+    Assert.assertTrue(iterator[0].closed);
+
+    Assert.assertEquals(dns(typeahead[0].search(new Query("jo"))).length, 3);
+    Assert.assertEquals(iterator[0].read, ENTRIES.length);
+    Assert.assertTrue(iterator[0].closed);
+  }
+
+
+  /** Exposes reading a search result through the search entry handlers of the request. */
+  private static class ReadingSearchOperation extends SearchOperation
+  {
+
+
+    /** Creates a new reading search operation. */
+    ReadingSearchOperation()
+    {
+      super(null);
+    }
+
+
+    /**
+     * Reads the supplied iterator into a search result.
+     *
+     * @param  request  search request
+     * @param  si  search iterator
+     *
+     * @return  search result
+     *
+     * @throws  LdapException  if an error occurs
+     */
+    SearchResult read(final SearchRequest request, final SearchIterator si)
+      throws LdapException
+    {
+      return readResult(request, si);
+    }
+  }
+
+
+  /** Iterates over {@link #ENTRIES}, optionally cancelling a typeahead search once the first entry is read. */
+  private static class EntryIterator implements SearchIterator
+  {
+
+    /** Typeahead search to cancel. */
+    private final TypeaheadSearch cancel;
+
+    /** Number of entries read. */
+    private int read;
+
+    /** Whether the iterator was closed. */
+    private boolean closed;
+
+
+    /**
+     * Creates a new entry iterator.
+     *
+     * @param  ts  typeahead search to cancel or null
+     */
+    EntryIterator(final TypeaheadSearch ts)
+    {
+      cancel = ts;
+    }
+
+
+    @Override
+    public boolean hasNext()
+    {
+      return read < ENTRIES.length;
+    }
+
+
+    @Override
+    public SearchItem next()
+    {
+      final SearchEntry entry = new SearchEntry(read + 1, null);
+      entry.setDn(ENTRIES[read].getDn());
+      entry.addAttributes(ENTRIES[read].getAttributes());
+      read++;
+      if (cancel != null) {
+        cancel.cancel();
+      }
+      return new SearchItem(entry);
+    }
+
+
+    @Override
+    public Response<Void> getResponse()
+    {
+      return null;
+    }
+
+
+    @Override
+    public void close()
+    {
+      closed = true;
+    }
+  }
+}
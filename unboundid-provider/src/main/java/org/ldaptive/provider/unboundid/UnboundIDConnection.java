@@ -58,7 +58,7 @@ import org.ldaptive.extended.ExtendedResponse;
 import org.ldaptive.extended.ExtendedResponseFactory;
 import org.ldaptive.extended.UnsolicitedNotificationListener;
 import org.ldaptive.intermediate.IntermediateResponseFactory;
-import org.ldaptive.provider.ProviderConnection;
+import org.ldaptive.provider.MultiplexedProviderConnection;
 import org.ldaptive.provider.ProviderUtils;
 import org.ldaptive.provider.SearchItem;
 import org.ldaptive.provider.SearchIterator;
@@ -72,7 +72,7 @@ import org.slf4j.LoggerFactory;
  *
  * @author  Middleware Services
  */
-public class UnboundIDConnection implements ProviderConnection
+public class UnboundIDConnection implements MultiplexedProviderConnection
 {
 
   /** Logger for this class. */
@@ -124,6 +124,19 @@ public class UnboundIDConnection implements ProviderConnection
   }
 
 
+  /**
+   * Returns true unless the connection options specify synchronous mode, in which case the UnboundID SDK does not
+   * allow more than one outstanding operation.
+   *
+   * @return  whether concurrent operations are supported
+   */
+  @Override
+  public boolean isMultiplexingEnabled()
+  {
+    return connection != null && !connection.getConnectionOptions().useSynchronousMode();
+  }
+
+
   @Override
   public void close(final RequestControl[] controls)
     throws LdapException
@@ -862,6 +875,7 @@ public class UnboundIDConnection implements ProviderConnection
       request = sr;
       util = new UnboundIDUtils(request.getSortBehavior());
       util.setBinaryAttributes(request.getBinaryAttributes());
+      util.setBinaryAttributeDetector(config.getBinaryAttributeDetector());
     }
 
 
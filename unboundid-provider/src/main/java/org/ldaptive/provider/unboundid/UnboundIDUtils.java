@@ -15,6 +15,7 @@ import org.ldaptive.LdapAttribute;
 import org.ldaptive.SearchEntry;
 import org.ldaptive.SortBehavior;
 import org.ldaptive.control.ResponseControl;
+import org.ldaptive.schema.BinaryAttributeDetector;
 
 /**
  * Provides methods for converting between Unbound ID specific objects and ldaptive specific objects.
@@ -30,6 +31,9 @@ public class UnboundIDUtils
   /** Attributes that should be treated as binary. */
   private List<String> binaryAttrs;
 
+  /** Detects binary attributes from the schema. */
+  private BinaryAttributeDetector binaryAttrDetector;
+
 
   /** Default constructor. */
   public UnboundIDUtils()
@@ -73,6 +77,29 @@ public class UnboundIDUtils
   }
 
 
+  /**
+   * Returns the binary attribute detector.
+   *
+   * @return  binary attribute detector
+   */
+  public BinaryAttributeDetector getBinaryAttributeDetector()
+  {
+    return binaryAttrDetector;
+  }
+
+
+  /**
+   * Sets the binary attribute detector. Attributes it reports as binary are treated as binary in addition to the list
+   * of binary attributes.
+   *
+   * @param  detector  binary attribute detector
+   */
+  public void setBinaryAttributeDetector(final BinaryAttributeDetector detector)
+  {
+    binaryAttrDetector = detector;
+  }
+
+
   /**
    * Returns an unbound id attribute that represents the values in the supplied ldap attribute.
    *
@@ -106,6 +133,8 @@ public class UnboundIDUtils
       isBinary = true;
     } else if (binaryAttrs != null && binaryAttrs.contains(a.getName())) {
       isBinary = true;
+    } else if (binaryAttrDetector != null && binaryAttrDetector.isBinary(a.getName())) {
+      isBinary = true;
     }
 
     final LdapAttribute la = new LdapAttribute(sortBehavior, isBinary);